@@ -0,0 +1,367 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * Per-kernel parallelism thresholds and grain sizes.
+ * <p>
+ * By default every kernel uses the global thresholds of
+ * {@link ConcurrencyUtils} (<tt>getThreadsBeginN_1D/2D/3D</tt>). The right
+ * crossover between sequential and parallel execution however depends on the
+ * kernel and on the host, so a kernel may instead look up its own threshold
+ * here, falling back to the global one if none has been set.
+ * <p>
+ * The values are normally produced by
+ * {@link cern.colt.matrix.tdouble.algo.DoubleConcurrencyCalibration}, which
+ * benchmarks the kernels on the current host and saves the result as a profile
+ * (a properties file). The profile is loaded when this class is initialized,
+ * i.e. on the first call of a tuned kernel, from the file named by the system
+ * property <tt>parallelcolt.tuning</tt>, or from
+ * <tt>~/.parallelcolt/tuning.properties</tt> if that property is not set. A
+ * missing profile leaves all defaults in place.
+ * <p>
+ * Thresholds and grain sizes are expressed in the unit of work of the kernel:
+ * cells for {@link #ASSIGN} and {@link #AGGREGATE}, floating point operations
+ * for {@link #ZMULT}, nonzeros for {@link #SPMV} and the transform length for
+ * {@link #FFT_2THREADS} and {@link #FFT_4THREADS}. The FFT thresholds are
+ * forwarded to JTransforms.
+ */
+public class ConcurrencyTuning {
+
+    /**
+     * Elementwise assignments (<tt>assign(f)</tt>, <tt>assign(y, f)</tt>).
+     */
+    public static final String ASSIGN = "assign";
+
+    /**
+     * Reductions (<tt>aggregate</tt>, <tt>zSum</tt>, <tt>zDotProduct</tt>).
+     */
+    public static final String AGGREGATE = "aggregate";
+
+    /**
+     * Dense matrix-matrix multiplication.
+     */
+    public static final String ZMULT = "zMult";
+
+    /**
+     * Sparse matrix-vector multiplication.
+     */
+    public static final String SPMV = "spmv";
+
+    /**
+     * One-dimensional FFT computed by two threads.
+     */
+    public static final String FFT_2THREADS = "fft2";
+
+    /**
+     * One-dimensional FFT computed by four threads.
+     */
+    public static final String FFT_4THREADS = "fft4";
+
+    /**
+     * The system property naming the profile file.
+     */
+    public static final String PROFILE_PROPERTY = "parallelcolt.tuning";
+
+    private static final String THREADS_BEGIN_N = ".threadsBeginN";
+
+    private static final String GRAIN = ".grain";
+
+    private static final Map<String, Integer> thresholds = new ConcurrentHashMap<String, Integer>();
+
+    private static final Map<String, Integer> grains = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * The JTransforms thresholds of the FFT kernels before they were first set
+     * here.
+     */
+    private static final Map<String, Integer> previousFFT = new ConcurrentHashMap<String, Integer>();
+
+    static {
+        try {
+            File file = getProfileFile();
+            if (file.isFile()) {
+                load(file);
+            }
+        } catch (Exception e) {
+            // a broken or inaccessible profile must not prevent the library
+            // from working; the defaults remain in place
+            reset();
+        }
+    }
+
+    /**
+     * Makes this class non instantiable, but still let's others inherit from
+     * it.
+     */
+    protected ConcurrencyTuning() {
+        throw new Error("Non instantiable");
+    }
+
+    /**
+     * Returns the file the profile is loaded from at startup.
+     *
+     * @return the file named by the system property
+     *         <tt>parallelcolt.tuning</tt>, or
+     *         <tt>~/.parallelcolt/tuning.properties</tt>.
+     */
+    public static File getProfileFile() {
+        String name = System.getProperty(PROFILE_PROPERTY);
+        if (name != null) {
+            return new File(name);
+        }
+        return new File(new File(System.getProperty("user.home"), ".parallelcolt"), "tuning.properties");
+    }
+
+    /**
+     * Returns the minimal amount of work for which the given kernel uses
+     * threads.
+     *
+     * @param kernel
+     *            the kernel.
+     * @param defaultValue
+     *            the value returned if no threshold is set for the kernel.
+     * @return the threshold of the kernel.
+     */
+    public static int getThreadsBeginN(String kernel, int defaultValue) {
+        Integer n = thresholds.get(kernel);
+        return (n != null) ? n.intValue() : defaultValue;
+    }
+
+    /**
+     * Returns the minimal size of 1D data for which the given kernel uses
+     * threads.
+     *
+     * @param kernel
+     *            the kernel.
+     * @return the threshold of the kernel, or
+     *         {@link ConcurrencyUtils#getThreadsBeginN_1D()} if none is set.
+     */
+    public static int getThreadsBeginN_1D(String kernel) {
+        return getThreadsBeginN(kernel, ConcurrencyUtils.getThreadsBeginN_1D());
+    }
+
+    /**
+     * Returns the minimal size of 2D data for which the given kernel uses
+     * threads.
+     *
+     * @param kernel
+     *            the kernel.
+     * @return the threshold of the kernel, or
+     *         {@link ConcurrencyUtils#getThreadsBeginN_2D()} if none is set.
+     */
+    public static int getThreadsBeginN_2D(String kernel) {
+        return getThreadsBeginN(kernel, ConcurrencyUtils.getThreadsBeginN_2D());
+    }
+
+    /**
+     * Returns the minimal size of 3D data for which the given kernel uses
+     * threads.
+     *
+     * @param kernel
+     *            the kernel.
+     * @return the threshold of the kernel, or
+     *         {@link ConcurrencyUtils#getThreadsBeginN_3D()} if none is set.
+     */
+    public static int getThreadsBeginN_3D(String kernel) {
+        return getThreadsBeginN(kernel, ConcurrencyUtils.getThreadsBeginN_3D());
+    }
+
+    /**
+     * Sets the minimal amount of work for which the given kernel uses threads.
+     *
+     * @param kernel
+     *            the kernel.
+     * @param n
+     *            the threshold.
+     */
+    public static void setThreadsBeginN(String kernel, int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("threshold must be positive: " + n);
+        }
+        thresholds.put(kernel, Integer.valueOf(n));
+        if (isFFT(kernel)) {
+            if (!previousFFT.containsKey(kernel)) {
+                previousFFT.put(kernel, Integer.valueOf(getFFT(kernel)));
+            }
+            setFFT(kernel, n);
+        }
+    }
+
+    /**
+     * Returns the minimal amount of work done by one task of the given kernel.
+     *
+     * @param kernel
+     *            the kernel.
+     * @param defaultValue
+     *            the value returned if no grain size is set for the kernel.
+     * @return the grain size of the kernel.
+     */
+    public static int getGrain(String kernel, int defaultValue) {
+        Integer n = grains.get(kernel);
+        return (n != null) ? n.intValue() : defaultValue;
+    }
+
+    /**
+     * Sets the minimal amount of work done by one task of the given kernel.
+     *
+     * @param kernel
+     *            the kernel.
+     * @param n
+     *            the grain size.
+     */
+    public static void setGrain(String kernel, int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("grain size must be positive: " + n);
+        }
+        grains.put(kernel, Integer.valueOf(n));
+    }
+
+    /**
+     * Removes all thresholds and grain sizes, so that every kernel uses the
+     * global defaults again. The FFT thresholds set here are restored to their
+     * previous values in JTransforms, unless they have been changed there
+     * since; FFT thresholds set directly in JTransforms are left alone.
+     */
+    public static void reset() {
+        restoreFFT(FFT_2THREADS);
+        restoreFFT(FFT_4THREADS);
+        thresholds.clear();
+        grains.clear();
+    }
+
+    /**
+     * Returns the current thresholds and grain sizes as properties.
+     *
+     * @return the current profile.
+     */
+    public static Properties toProperties() {
+        Properties properties = new Properties();
+        for (Iterator<Map.Entry<String, Integer>> it = thresholds.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Integer> entry = it.next();
+            properties.setProperty(entry.getKey() + THREADS_BEGIN_N, entry.getValue().toString());
+        }
+        for (Iterator<Map.Entry<String, Integer>> it = grains.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Integer> entry = it.next();
+            properties.setProperty(entry.getKey() + GRAIN, entry.getValue().toString());
+        }
+        return properties;
+    }
+
+    /**
+     * Replaces the current thresholds and grain sizes with the given ones.
+     *
+     * @param properties
+     *            a profile as returned by {@link #toProperties()}.
+     * @throws IllegalArgumentException
+     *             if a value is not a valid number.
+     */
+    public static void setProperties(Properties properties) {
+        reset();
+        for (Iterator<Object> it = properties.keySet().iterator(); it.hasNext();) {
+            String key = (String) it.next();
+            String value = properties.getProperty(key).trim();
+            try {
+                if (key.endsWith(THREADS_BEGIN_N)) {
+                    setThreadsBeginN(key.substring(0, key.length() - THREADS_BEGIN_N.length()), Integer
+                            .parseInt(value));
+                } else if (key.endsWith(GRAIN)) {
+                    setGrain(key.substring(0, key.length() - GRAIN.length()), Integer.parseInt(value));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Illegal value of " + key + ": " + value);
+            }
+        }
+    }
+
+    /**
+     * Loads a profile, replacing the current thresholds and grain sizes.
+     *
+     * @param file
+     *            the profile.
+     * @throws IOException
+     *             if the file cannot be read.
+     */
+    public static void load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        setProperties(properties);
+    }
+
+    /**
+     * Saves the current thresholds and grain sizes to a profile, creating the
+     * parent directory if necessary.
+     *
+     * @param file
+     *            the profile.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    public static void save(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create directory " + parent);
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            toProperties().store(out, "Parallel Colt tuning profile");
+        } finally {
+            out.close();
+        }
+    }
+
+    private static boolean isFFT(String kernel) {
+        return FFT_2THREADS.equals(kernel) || FFT_4THREADS.equals(kernel);
+    }
+
+    private static int getFFT(String kernel) {
+        if (FFT_2THREADS.equals(kernel)) {
+            return ConcurrencyUtils.getThreadsBeginN_1D_FFT_2Threads();
+        }
+        return ConcurrencyUtils.getThreadsBeginN_1D_FFT_4Threads();
+    }
+
+    private static void setFFT(String kernel, int n) {
+        if (FFT_2THREADS.equals(kernel)) {
+            ConcurrencyUtils.setThreadsBeginN_1D_FFT_2Threads(n);
+        } else {
+            ConcurrencyUtils.setThreadsBeginN_1D_FFT_4Threads(n);
+        }
+    }
+
+    /**
+     * Restores the JTransforms threshold of the given FFT kernel to the value
+     * it had before it was set here, unless it has been changed since.
+     */
+    private static void restoreFFT(String kernel) {
+        Integer n = thresholds.get(kernel);
+        Integer previous = previousFFT.remove(kernel);
+        if (n != null && previous != null && getFFT(kernel) == n.intValue()) {
+            setFFT(kernel, previous.intValue());
+        }
+    }
+}
@@ -0,0 +1,384 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+
+/**
+ * Fork/join execution layer with recursive splitting and adaptive granularity.
+ * <p>
+ * A range of indexes is split in halves until either the pieces reach the
+ * leaf size or the pool already has enough queued work to keep every worker
+ * busy; the right half of every split is forked, the left half is processed
+ * by the calling thread, and the right half is joined afterwards. Irregular
+ * work (sparse rows, selection views, triangular loops) is therefore balanced
+ * dynamically instead of being cut into <tt>getNumberOfThreads()</tt> equal
+ * pieces up front.
+ * <p>
+ * Joining never blocks on a task that has not started: such a task is simply
+ * executed by the joining thread itself, and while waiting for a task that is
+ * running elsewhere the joining thread executes other queued tasks. Nested
+ * parallel calls (e.g. a parallel <tt>zMult</tt> inside a parallel solver
+ * inside a user thread pool) therefore neither deadlock nor start more threads
+ * than {@link ConcurrencyUtils#getNumberOfThreads()}: all of them share one
+ * pool of <tt>getNumberOfThreads() - 1</tt> daemon workers, the calling thread
+ * being the remaining one.
+ */
+public class ForkJoinUtils {
+
+    /**
+     * Number of leaves per thread the range is split into at most. More leaves
+     * give better balancing of irregular work at the price of more tasks.
+     */
+    private static final int LEAVES_PER_THREAD = 8;
+
+    /**
+     * A range is not split any further once this many tasks per worker are
+     * waiting in the queue.
+     */
+    private static final int SURPLUS_PER_THREAD = 2;
+
+    private static volatile Pool pool;
+
+    /**
+     * A procedure applied to a half-open range of indexes.
+     */
+    public interface RangeProcedure {
+        /**
+         * Processes the indexes <tt>from, ..., to - 1</tt>.
+         *
+         * @param from
+         *            the first index (inclusive).
+         * @param to
+         *            the last index (exclusive).
+         */
+        void apply(int from, int to);
+    }
+
+    /**
+     * A function computing a partial result over a half-open range of
+     * indexes.
+     */
+    public interface DoubleRangeFunction {
+        /**
+         * Computes the partial result over the indexes
+         * <tt>from, ..., to - 1</tt>. The range is never empty.
+         *
+         * @param from
+         *            the first index (inclusive).
+         * @param to
+         *            the last index (exclusive).
+         * @return the partial result.
+         */
+        double apply(int from, int to);
+    }
+
+    /**
+     * A forked task. A task is run at most once, either by a worker of the pool
+     * or by the thread that joins it.
+     */
+    public static final class Task {
+        private static final int NEW = 0;
+
+        private static final int RUNNING = 1;
+
+        private static final int DONE = 2;
+
+        private final AtomicInteger state = new AtomicInteger(NEW);
+
+        private final Runnable body;
+
+        private Throwable failure;
+
+        private Task(Runnable body) {
+            this.body = body;
+        }
+
+        /**
+         * Waits until this task is completed, running it in the current thread
+         * if no worker has started it yet.
+         *
+         * @throws RuntimeException
+         *             if the task threw a checked exception (the unchecked
+         *             ones are rethrown as they are).
+         */
+        public void join() {
+            if (!tryRun()) {
+                boolean interrupted = false;
+                Pool p = pool;
+                while (state.get() != DONE) {
+                    Task other = (p != null) ? p.queue.poll() : null;
+                    if (other != null) {
+                        other.tryRun();
+                    } else {
+                        synchronized (this) {
+                            while (state.get() != DONE) {
+                                try {
+                                    wait();
+                                } catch (InterruptedException e) {
+                                    interrupted = true;
+                                }
+                            }
+                        }
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failure != null) {
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                throw new RuntimeException(failure);
+            }
+        }
+
+        /**
+         * Returns true if this task has completed.
+         *
+         * @return true if this task has completed.
+         */
+        public boolean isDone() {
+            return state.get() == DONE;
+        }
+
+        private boolean tryRun() {
+            if (!state.compareAndSet(NEW, RUNNING)) {
+                return false;
+            }
+            try {
+                body.run();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                synchronized (this) {
+                    state.set(DONE);
+                    notifyAll();
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class Pool {
+        private final int parallelism;
+
+        private final BlockingQueue<Task> queue = new LinkedBlockingQueue<Task>();
+
+        private volatile boolean shutdown;
+
+        private Pool(int parallelism) {
+            this.parallelism = parallelism;
+            for (int i = 1; i < parallelism; i++) {
+                Thread worker = new Thread(new Runnable() {
+                    public void run() {
+                        work();
+                    }
+                }, "ForkJoinUtils-worker-" + i);
+                worker.setDaemon(true);
+                worker.start();
+            }
+        }
+
+        private void work() {
+            while (true) {
+                Task task;
+                try {
+                    task = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    task = null;
+                }
+                if (task != null) {
+                    task.tryRun();
+                } else if (shutdown) {
+                    return;
+                }
+            }
+        }
+
+        private boolean isSaturated() {
+            return queue.size() >= SURPLUS_PER_THREAD * parallelism;
+        }
+    }
+
+    /**
+     * Makes this class non instantiable, but still let's others inherit from
+     * it.
+     */
+    protected ForkJoinUtils() {
+        throw new Error("Non instantiable");
+    }
+
+    /**
+     * Returns the pool matching the current number of threads, replacing the
+     * previous one if the number of threads has changed.
+     */
+    private static Pool pool() {
+        int nthreads = Math.max(1, ConcurrencyUtils.getNumberOfThreads());
+        Pool p = pool;
+        if (p == null || p.parallelism != nthreads) {
+            synchronized (ForkJoinUtils.class) {
+                p = pool;
+                if (p == null || p.parallelism != nthreads) {
+                    if (p != null) {
+                        p.shutdown = true;
+                    }
+                    p = new Pool(nthreads);
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Schedules the given task for asynchronous execution. The returned task
+     * must be joined; if no worker is free it is executed by the joining
+     * thread.
+     *
+     * @param body
+     *            the work to do.
+     * @return a handle to be joined.
+     */
+    public static Task fork(Runnable body) {
+        Task task = new Task(body);
+        Pool p = pool();
+        if (p.parallelism > 1) {
+            p.queue.offer(task);
+        }
+        return task;
+    }
+
+    /**
+     * Applies the given procedure to the range <tt>from, ..., to - 1</tt>,
+     * splitting it recursively into pieces of at least <tt>minGrain</tt>
+     * indexes that are processed concurrently.
+     *
+     * @param from
+     *            the first index (inclusive).
+     * @param to
+     *            the last index (exclusive).
+     * @param minGrain
+     *            the minimal number of indexes processed by one task.
+     * @param procedure
+     *            the procedure.
+     */
+    public static void invoke(int from, int to, int minGrain, RangeProcedure procedure) {
+        int n = to - from;
+        if (n <= 0) {
+            return;
+        }
+        Pool p = pool();
+        if (p.parallelism < 2 || n <= minGrain) {
+            procedure.apply(from, to);
+            return;
+        }
+        split(p, from, to, leafSize(p, n, minGrain), procedure);
+    }
+
+    /**
+     * Computes partial results over the range <tt>from, ..., to - 1</tt>
+     * concurrently, splitting it recursively into pieces of at least
+     * <tt>minGrain</tt> indexes, and combines them with the given aggregation
+     * function in the order of the indexes.
+     *
+     * @param from
+     *            the first index (inclusive).
+     * @param to
+     *            the last index (exclusive), must be greater than
+     *            <tt>from</tt>.
+     * @param minGrain
+     *            the minimal number of indexes processed by one task.
+     * @param f
+     *            computes the partial result of a range.
+     * @param aggr
+     *            combines two partial results.
+     * @return the aggregated result.
+     */
+    public static double invoke(int from, int to, int minGrain, DoubleRangeFunction f, DoubleDoubleFunction aggr) {
+        int n = to - from;
+        if (n <= 0) {
+            throw new IllegalArgumentException("empty range");
+        }
+        Pool p = pool();
+        if (p.parallelism < 2 || n <= minGrain) {
+            return f.apply(from, to);
+        }
+        return split(p, from, to, leafSize(p, n, minGrain), f, aggr);
+    }
+
+    /**
+     * Returns true if ranges of the given size are processed by more than one
+     * thread.
+     *
+     * @param n
+     *            the size of the range.
+     * @param minGrain
+     *            the minimal number of indexes processed by one task.
+     * @return true if <tt>n > minGrain</tt> and more than one thread is
+     *         available.
+     */
+    public static boolean isParallel(int n, int minGrain) {
+        return n > minGrain && ConcurrencyUtils.getNumberOfThreads() > 1;
+    }
+
+    private static int leafSize(Pool p, int n, int minGrain) {
+        int leaves = p.parallelism * LEAVES_PER_THREAD;
+        return Math.max(Math.max(1, minGrain), (n + leaves - 1) / leaves);
+    }
+
+    private static void split(final Pool p, int from, final int to, final int leafSize,
+            final RangeProcedure procedure) {
+        if ((to - from) / 2 < leafSize || p.isSaturated()) {
+            procedure.apply(from, to);
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        Task right = fork(new Runnable() {
+            public void run() {
+                split(p, mid, to, leafSize, procedure);
+            }
+        });
+        try {
+            split(p, from, mid, leafSize, procedure);
+        } finally {
+            right.join();
+        }
+    }
+
+    private static double split(final Pool p, int from, final int to, final int leafSize,
+            final DoubleRangeFunction f, final DoubleDoubleFunction aggr) {
+        if ((to - from) / 2 < leafSize || p.isSaturated()) {
+            return f.apply(from, to);
+        }
+        final int mid = (from + to) >>> 1;
+        final double[] result = new double[1];
+        Task right = fork(new Runnable() {
+            public void run() {
+                result[0] = split(p, mid, to, leafSize, f, aggr);
+            }
+        });
+        double left;
+        try {
+            left = split(p, from, mid, leafSize, f, aggr);
+        } finally {
+            right.join();
+        }
+        return aggr.apply(left, result[0]);
+    }
+}
@@ -9,8 +9,6 @@ It is provided "as is" without expressed or implied warranty.
 package cern.colt;
 
 import java.util.Comparator;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 
 import cern.colt.function.tbyte.ByteComparator;
 import cern.colt.function.tchar.CharComparator;
@@ -19,7 +17,6 @@ import cern.colt.function.tfloat.FloatComparator;
 import cern.colt.function.tint.IntComparator;
 import cern.colt.function.tlong.LongComparator;
 import cern.colt.function.tshort.ShortComparator;
-import edu.emory.mathcs.utils.ConcurrencyUtils;
 
 /**
  * Multithreaded implementation of quicksort.
@@ -100,12 +97,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, comp, nThreads / 2);
                     }
@@ -115,7 +112,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, comp, nThreads / 2);
                         }
@@ -124,12 +121,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, comp, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
@@ -205,12 +198,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, comp, nThreads / 2);
                     }
@@ -220,7 +213,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, comp, nThreads / 2);
                         }
@@ -229,12 +222,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, comp, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
@@ -311,12 +300,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, comp, nThreads / 2);
                     }
@@ -326,7 +315,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, comp, nThreads / 2);
                         }
@@ -335,12 +324,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, comp, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
@@ -416,12 +401,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, comp, nThreads / 2);
                     }
@@ -431,7 +416,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, comp, nThreads / 2);
                         }
@@ -440,12 +425,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, comp, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
@@ -521,12 +502,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, comp, nThreads / 2);
                     }
@@ -536,7 +517,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, comp, nThreads / 2);
                         }
@@ -545,12 +526,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, comp, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
@@ -626,12 +603,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, comp, nThreads / 2);
                     }
@@ -641,7 +618,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, comp, nThreads / 2);
                         }
@@ -650,12 +627,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, comp, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
@@ -729,12 +702,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, nThreads / 2);
                     }
@@ -744,7 +717,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, nThreads / 2);
                         }
@@ -753,12 +726,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
@@ -834,12 +803,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, comp, nThreads / 2);
                     }
@@ -849,7 +818,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, comp, nThreads / 2);
                         }
@@ -858,12 +827,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, comp, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
@@ -939,12 +904,12 @@ public class ParallelQuickSort {
         s = Math.min(d - c, n - d - 1);
         vecswap(x, b, n - s, s);
 
-        Future other = null;
+        ForkJoinUtils.Task other = null;
         if (nThreads > 1) {
             // Recursively sort non-partition-elements
             if ((s = b - a) > 1) {
                 final int s_f = s;
-                other = ConcurrencyUtils.submit(new Runnable() {
+                other = ForkJoinUtils.fork(new Runnable() {
                     public void run() {
                         quickSort(x, off, s_f, comp, nThreads / 2);
                     }
@@ -954,7 +919,7 @@ public class ParallelQuickSort {
                 if (other == null) {
                     final int s_f = s;
                     final int ns_f = n - s;
-                    other = ConcurrencyUtils.submit(new Runnable() {
+                    other = ForkJoinUtils.fork(new Runnable() {
                         public void run() {
                             quickSort(x, ns_f, s_f, comp, nThreads / 2);
                         }
@@ -963,12 +928,8 @@ public class ParallelQuickSort {
                     quickSort(x, n - s, s, comp, nThreads / 2);
                 }
             }
-            try {
-                other.get();
-            } catch (InterruptedException e) {
-                throw new RuntimeException("thread interrupted");
-            } catch (ExecutionException e) {
-                e.printStackTrace();
+            if (other != null) {
+                other.join();
             }
         } else {
             if ((s = b - a) > 1)
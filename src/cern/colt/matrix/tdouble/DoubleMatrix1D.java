@@ -39,6 +39,15 @@ import cern.jet.math.tdouble.DoubleFunctions;
 public abstract class DoubleMatrix1D extends AbstractMatrix1D {
     private static final long serialVersionUID = 1L;
 
+    /*
+     * The version stamp and the frozen flag of the 2-d matrix this is a row,
+     * column or selection view of, shared with the views created by cloning;
+     * null otherwise.
+     */
+    private long[] version;
+
+    private boolean[] frozen;
+
     /**
      * Makes this class non instantiable, but still let's others inherit from
      * it.
@@ -261,6 +270,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      * @see cern.jet.math.tdouble.DoubleFunctions
      */
     public DoubleMatrix1D assign(final cern.colt.function.tdouble.DoubleFunction f) {
+        checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
             nthreads = Math.min(nthreads, size);
@@ -300,6 +310,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      */
     public DoubleMatrix1D assign(final cern.colt.function.tdouble.DoubleProcedure cond,
             final cern.colt.function.tdouble.DoubleFunction f) {
+        checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
             nthreads = Math.min(nthreads, size);
@@ -345,6 +356,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      * 
      */
     public DoubleMatrix1D assign(final cern.colt.function.tdouble.DoubleProcedure cond, final double value) {
+        checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
             nthreads = Math.min(nthreads, size);
@@ -387,6 +399,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      * @return <tt>this</tt> (for convenience only).
      */
     public DoubleMatrix1D assign(final double value) {
+        checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
             nthreads = Math.min(nthreads, size);
@@ -427,6 +440,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      *             if <tt>values.length != size()</tt>.
      */
     public DoubleMatrix1D assign(final double[] values) {
+        checkNotFrozen();
         if (values.length != size)
             throw new IllegalArgumentException("Must have same number of cells: length=" + values.length + "size()="
                     + size());
@@ -471,6 +485,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      *             if <tt>size() != other.size()</tt>.
      */
     public DoubleMatrix1D assign(DoubleMatrix1D other) {
+        checkNotFrozen();
         if (other == this)
             return this;
         checkSize(other);
@@ -537,6 +552,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      * @see cern.jet.math.tdouble.DoubleFunctions
      */
     public DoubleMatrix1D assign(final DoubleMatrix1D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        checkNotFrozen();
         checkSize(y);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
@@ -606,6 +622,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      */
     public DoubleMatrix1D assign(DoubleMatrix1D y, cern.colt.function.tdouble.DoubleDoubleFunction function,
             cern.colt.list.tint.IntArrayList nonZeroIndexes) {
+        checkNotFrozen();
         checkSize(y);
         int[] nonZeroElements = nonZeroIndexes.elements();
 
@@ -1188,6 +1205,35 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      */
     public abstract DoubleMatrix2D like2D(int rows, int columns);
 
+    /**
+     * Returns true if this is a view of a frozen 2-d matrix, in which case
+     * every attempt to modify the cells throws an
+     * <tt>IllegalStateException</tt>.
+     * 
+     * @return true if the cells are read-only.
+     */
+    public boolean isFrozen() {
+        return frozen != null && frozen[0];
+    }
+
+    /**
+     * Records that the cells of this matrix have been modified. For a row,
+     * column or selection view of a 2-d matrix this changes the version stamp
+     * of that matrix, see {@link DoubleMatrix2D#getVersion()}.
+     * 
+     * @throws IllegalStateException
+     *             if the cells are frozen.
+     */
+    public void markModified() {
+        checkNotFrozen();
+        if (version != null) {
+            long v = version[0];
+            if ((v & 1) != 0) {
+                version[0] = v + 1;
+            }
+        }
+    }
+
     /**
      * Normalizes this matrix, i.e. makes the sum of all elements equal to 1.0
      * If the matrix contains negative elements then all the values are shifted
@@ -1271,6 +1317,8 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
      */
     public void swap(final DoubleMatrix1D other) {
         checkSize(other);
+        checkNotFrozen();
+        other.checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
             nthreads = Math.min(nthreads, size);
@@ -1490,7 +1538,7 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
         for (int i = 0; i < indexes.length; i++) {
             offsets[i] = (int) index(indexes[i]);
         }
-        return viewSelectionLike(offsets);
+        return viewSelectionLike(offsets).shareCells(version, frozen);
     }
 
     /**
@@ -1698,6 +1746,25 @@ public abstract class DoubleMatrix1D extends AbstractMatrix1D {
         return false;
     }
 
+    /**
+     * Throws an <tt>IllegalStateException</tt> if the cells of this matrix are
+     * frozen.
+     */
+    protected void checkNotFrozen() {
+        if (isFrozen())
+            throw new IllegalStateException("matrix is frozen");
+    }
+
+    /*
+     * Makes this view share the version stamp and the frozen flag of the 2-d
+     * matrix it was created from.
+     */
+    DoubleMatrix1D shareCells(long[] version, boolean[] frozen) {
+        this.version = version;
+        this.frozen = frozen;
+        return this;
+    }
+
     /**
      * Constructs and returns a new view equal to the receiver. The view is a
      * shallow clone. Calls <code>clone()</code> and casts the result.
@@ -17,7 +17,9 @@ import java.util.concurrent.Future;
 import cern.colt.list.tdouble.DoubleArrayList;
 import cern.colt.list.tint.IntArrayList;
 import cern.colt.matrix.AbstractMatrix2D;
+import cern.colt.ConcurrencyTuning;
 import cern.colt.ConcurrencyUtils;
+import cern.colt.ForkJoinUtils;
 import cern.jet.math.tdouble.DoubleFunctions;
 
 /**
@@ -44,6 +46,19 @@ import cern.jet.math.tdouble.DoubleFunctions;
 public abstract class DoubleMatrix2D extends AbstractMatrix2D {
     private static final long serialVersionUID = 1L;
 
+    /*
+     * The version stamp of the cells, shared with the views created by
+     * cloning. It is odd if it has been read since the last modification, so
+     * that setQuick only writes it after getVersion has been called.
+     */
+    private long[] version = new long[1];
+
+    /*
+     * Set once the cells have been frozen, shared with the views like the
+     * version stamp.
+     */
+    private boolean[] frozen = new boolean[1];
+
     /**
      * Makes this class non instantiable, but still let's others inherit from
      * it.
@@ -89,29 +104,22 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
             return Double.NaN;
         double a = 0;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (rows * columns >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
-
-                    public Double call() throws Exception {
-                        double a = f.apply(getQuick(firstRow, 0));
-                        int d = 1;
-                        for (int r = firstRow; r < lastRow; r++) {
-                            for (int c = d; c < columns; c++) {
-                                a = aggr.apply(a, f.apply(getQuick(r, c)));
-                            }
-                            d = 0;
+        if ((nthreads > 1) && (rows * columns >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.AGGREGATE))) {
+            int minRows = ConcurrencyTuning.getGrain(ConcurrencyTuning.AGGREGATE, columns) / columns;
+            a = ForkJoinUtils.invoke(0, rows, minRows, new ForkJoinUtils.DoubleRangeFunction() {
+
+                public double apply(int firstRow, int lastRow) {
+                    double a = f.apply(getQuick(firstRow, 0));
+                    int d = 1;
+                    for (int r = firstRow; r < lastRow; r++) {
+                        for (int c = d; c < columns; c++) {
+                            a = aggr.apply(a, f.apply(getQuick(r, c)));
                         }
-                        return Double.valueOf(a);
+                        d = 0;
                     }
-                });
-            }
-            a = ConcurrencyUtils.waitForCompletion(futures, aggr);
+                    return a;
+                }
+            }, aggr);
         } else {
             a = f.apply(getQuick(0, 0));
             int d = 1; // first cell already done
@@ -307,29 +315,22 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
             return Double.NaN;
         double a = 0;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (rows * columns >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
-
-                    public Double call() throws Exception {
-                        double a = f.apply(getQuick(firstRow, 0), other.getQuick(firstRow, 0));
-                        int d = 1;
-                        for (int r = firstRow; r < lastRow; r++) {
-                            for (int c = d; c < columns; c++) {
-                                a = aggr.apply(a, f.apply(getQuick(r, c), other.getQuick(r, c)));
-                            }
-                            d = 0;
+        if ((nthreads > 1) && (rows * columns >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.AGGREGATE))) {
+            int minRows = ConcurrencyTuning.getGrain(ConcurrencyTuning.AGGREGATE, columns) / columns;
+            a = ForkJoinUtils.invoke(0, rows, minRows, new ForkJoinUtils.DoubleRangeFunction() {
+
+                public double apply(int firstRow, int lastRow) {
+                    double a = f.apply(getQuick(firstRow, 0), other.getQuick(firstRow, 0));
+                    int d = 1;
+                    for (int r = firstRow; r < lastRow; r++) {
+                        for (int c = d; c < columns; c++) {
+                            a = aggr.apply(a, f.apply(getQuick(r, c), other.getQuick(r, c)));
                         }
-                        return Double.valueOf(a);
+                        d = 0;
                     }
-                });
-            }
-            a = ConcurrencyUtils.waitForCompletion(futures, aggr);
+                    return a;
+                }
+            }, aggr);
         } else {
             a = f.apply(getQuick(0, 0), other.getQuick(0, 0));
             int d = 1; // first cell already done
@@ -372,26 +373,20 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      * @see cern.jet.math.tdouble.DoubleFunctions
      */
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction f) {
+        checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (rows * columns >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-
-                    public void run() {
-                        for (int r = firstRow; r < lastRow; r++) {
-                            for (int c = 0; c < columns; c++) {
-                                setQuick(r, c, f.apply(getQuick(r, c)));
-                            }
+        if ((nthreads > 1) && (rows * columns >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN))) {
+            int minRows = ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, columns) / columns;
+            ForkJoinUtils.invoke(0, rows, minRows, new ForkJoinUtils.RangeProcedure() {
+
+                public void apply(int firstRow, int lastRow) {
+                    for (int r = firstRow; r < lastRow; r++) {
+                        for (int c = 0; c < columns; c++) {
+                            setQuick(r, c, f.apply(getQuick(r, c)));
                         }
                     }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
+                }
+            });
         } else {
             for (int r = 0; r < rows; r++) {
                 for (int c = 0; c < columns; c++) {
@@ -415,6 +410,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      */
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleProcedure cond,
             final cern.colt.function.tdouble.DoubleFunction f) {
+        checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (rows * columns >= ConcurrencyUtils.getThreadsBeginN_2D())) {
             nthreads = Math.min(nthreads, rows);
@@ -464,6 +460,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      * 
      */
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleProcedure cond, final double value) {
+        checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (rows * columns >= ConcurrencyUtils.getThreadsBeginN_2D())) {
             nthreads = Math.min(nthreads, rows);
@@ -510,6 +507,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      * @return <tt>this</tt> (for convenience only).
      */
     public DoubleMatrix2D assign(final double value) {
+        checkNotFrozen();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (rows * columns >= ConcurrencyUtils.getThreadsBeginN_2D())) {
             nthreads = Math.min(nthreads, rows);
@@ -555,6 +553,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      *             if <tt>values.length != rows()*columns()</tt>.
      */
     public DoubleMatrix2D assign(final double[] values) {
+        checkNotFrozen();
         if (values.length != rows * columns)
             throw new IllegalArgumentException("Must have same length: length=" + values.length + "rows()*columns()="
                     + rows() * columns());
@@ -609,6 +608,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      *             .
      */
     public DoubleMatrix2D assign(final double[][] values) {
+        checkNotFrozen();
         if (values.length != rows)
             throw new IllegalArgumentException("Must have same number of rows: rows=" + values.length + "rows()="
                     + rows());
@@ -668,6 +668,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      *             <tt>columns() != other.columns() || rows() != other.rows()</tt>
      */
     public DoubleMatrix2D assign(DoubleMatrix2D other) {
+        checkNotFrozen();
         if (other == this)
             return this;
         checkShape(other);
@@ -747,28 +748,21 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      * @see cern.jet.math.tdouble.DoubleFunctions
      */
     public DoubleMatrix2D assign(final DoubleMatrix2D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        checkNotFrozen();
         checkShape(y);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (rows * columns >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-
-                    public void run() {
-                        for (int r = firstRow; r < lastRow; r++) {
-                            for (int c = 0; c < columns; c++) {
-                                setQuick(r, c, function.apply(getQuick(r, c), y.getQuick(r, c)));
-                            }
+        if ((nthreads > 1) && (rows * columns >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN))) {
+            int minRows = ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, columns) / columns;
+            ForkJoinUtils.invoke(0, rows, minRows, new ForkJoinUtils.RangeProcedure() {
+
+                public void apply(int firstRow, int lastRow) {
+                    for (int r = firstRow; r < lastRow; r++) {
+                        for (int c = 0; c < columns; c++) {
+                            setQuick(r, c, function.apply(getQuick(r, c), y.getQuick(r, c)));
                         }
                     }
-
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
+                }
+            });
         } else {
             for (int r = 0; r < rows; r++) {
                 for (int c = 0; c < columns; c++) {
@@ -802,6 +796,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
     public DoubleMatrix2D assign(final DoubleMatrix2D y,
             final cern.colt.function.tdouble.DoubleDoubleFunction function, IntArrayList rowList,
             IntArrayList columnList) {
+        checkNotFrozen();
         checkShape(y);
         final int size = rowList.size();
         final int[] rowElements = rowList.elements();
@@ -850,6 +845,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      *             if <tt>values.length != rows()*columns()</tt>.
      */
     public DoubleMatrix2D assign(final float[] values) {
+        checkNotFrozen();
         if (values.length != rows * columns)
             throw new IllegalArgumentException("Must have same length: length=" + values.length + "rows()*columns()="
                     + rows() * columns());
@@ -1025,7 +1021,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
                                 double value = getQuick(r, c);
                                 if (value != 0) {
                                     double a = function.apply(r, c, value);
-                                    if (a != value)
+                                    if (Double.doubleToLongBits(a) != Double.doubleToLongBits(value))
                                         setQuick(r, c, a);
                                 }
                             }
@@ -1040,7 +1036,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
                     double value = getQuick(r, c);
                     if (value != 0) {
                         double a = function.apply(r, c, value);
-                        if (a != value)
+                        if (Double.doubleToLongBits(a) != Double.doubleToLongBits(value))
                             setQuick(r, c, a);
                     }
                 }
@@ -1352,6 +1348,28 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      */
     public abstract double getQuick(int row, int column);
 
+    /**
+     * Returns the version stamp of the cells of this matrix. The stamp changes
+     * whenever the cells are modified through <tt>setQuick</tt>, an
+     * <tt>assign</tt> method, <tt>forEachNonZero</tt> or as the result of a
+     * <tt>zMult</tt>, either on this matrix or on a view obtained by
+     * <tt>viewPart</tt>, <tt>viewDice</tt>, <tt>viewStrides</tt> or the flip
+     * views, or on a row, column or selection view. Modifications made through
+     * <tt>elements()</tt> or by other aliases of the storage are not tracked
+     * and must be reported with {@link #markModified()}.
+     * <p>
+     * Factorization caches use this stamp to detect stale entries.
+     * 
+     * @return the version stamp.
+     */
+    public long getVersion() {
+        long v = version[0];
+        if ((v & 1) == 0) {
+            version[0] = ++v;
+        }
+        return v;
+    }
+
     /**
      * Construct and returns a new empty matrix <i>of the same dynamic type</i>
      * as the receiver, having the same number of rows and columns. For example,
@@ -1400,6 +1418,72 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      */
     public abstract DoubleMatrix1D like1D(int size);
 
+    /**
+     * Returns true if the cells of this matrix have been frozen, in which case
+     * every attempt to modify them, through this matrix or its views, throws
+     * an <tt>IllegalStateException</tt>.
+     * 
+     * @return true if the cells are read-only.
+     */
+    public boolean isFrozen() {
+        return frozen[0];
+    }
+
+    /**
+     * Records that the cells of this matrix have been modified, so that the
+     * next call to {@link #getVersion()} returns a new stamp.
+     * 
+     * @throws IllegalStateException
+     *             if the cells are frozen.
+     */
+    public void markModified() {
+        checkNotFrozen();
+        long v = version[0];
+        if ((v & 1) != 0) {
+            version[0] = v + 1;
+        }
+    }
+
+    /**
+     * Throws an <tt>IllegalStateException</tt> if the cells of this matrix are
+     * frozen.
+     */
+    protected void checkNotFrozen() {
+        if (isFrozen())
+            throw new IllegalStateException("matrix is frozen");
+    }
+
+    /**
+     * Makes the cells of this matrix and of all its views read-only. The
+     * version stamp is fixed first, so that reading it does not write.
+     */
+    protected void freezeCells() {
+        getVersion();
+        frozen[0] = true;
+    }
+
+    /**
+     * Makes the given row, column or selection view of this matrix share the
+     * version stamp and the frozen flag of this matrix.
+     * 
+     * @return <tt>view</tt>.
+     */
+    protected DoubleMatrix1D shareCells(DoubleMatrix1D view) {
+        return view.shareCells(version, frozen);
+    }
+
+    /**
+     * Makes the given selection view of this matrix share the version stamp
+     * and the frozen flag of this matrix.
+     * 
+     * @return <tt>view</tt>.
+     */
+    protected DoubleMatrix2D shareCells(DoubleMatrix2D view) {
+        view.version = version;
+        view.frozen = frozen;
+        return view;
+    }
+
     /**
      * Normalizes this matrix, i.e. makes the sum of all elements equal to 1.0
      * If the matrix contains negative elements then all the values are shifted
@@ -1552,7 +1636,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
         int viewSize = this.rows;
         int viewZero = (int) index(0, column);
         int viewStride = this.rowStride;
-        return like1D(viewSize, viewZero, viewStride);
+        return shareCells(like1D(viewSize, viewZero, viewStride));
     }
 
     /**
@@ -1693,7 +1777,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
         int viewSize = this.columns;
         int viewZero = (int) index(row, 0);
         int viewStride = this.columnStride;
-        return like1D(viewSize, viewZero, viewStride);
+        return shareCells(like1D(viewSize, viewZero, viewStride));
     }
 
     /**
@@ -1846,7 +1930,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
         for (int i = 0; i < columnIndexes.length; i++) {
             columnOffsets[i] = _columnOffset(_columnRank(columnIndexes[i]));
         }
-        return viewSelectionLike(rowOffsets, columnOffsets);
+        return shareCells(viewSelectionLike(rowOffsets, columnOffsets));
     }
 
     public DoubleMatrix2D viewSelection(Set<int[]> indexes) {
@@ -1870,7 +1954,7 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
         for (int i = 0; i < columnIndexes.length; i++) {
             columnOffsets[i] = _columnOffset(_columnRank(columnIndexes[i]));
         }
-        return viewSelectionLike(rowOffsets, columnOffsets);
+        return shareCells(viewSelectionLike(rowOffsets, columnOffsets));
     }
 
     /**
@@ -2017,6 +2101,8 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      * Equivalent to <tt>return A.zMult(y,z,1,0);</tt>
      */
     public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z) {
+        if (z != null)
+            z.markModified();
         return zMult(y, z, 1, 0, false);
     }
 
@@ -2041,6 +2127,8 @@ public abstract class DoubleMatrix2D extends AbstractMatrix2D {
      */
     public DoubleMatrix1D zMult(final DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
             final boolean transposeA) {
+        if (z != null)
+            z.markModified();
         if (transposeA)
             return viewDice().zMult(y, z, alpha, beta, false);
         final DoubleMatrix1D zz;
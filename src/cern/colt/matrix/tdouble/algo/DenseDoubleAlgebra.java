@@ -19,11 +19,13 @@ import cern.colt.matrix.tdouble.DoubleFactory2D;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.DoubleMatrix3D;
+import cern.colt.matrix.tdouble.algo.decomposition.BandDoubleLUDecomposition;
 import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleCholeskyDecomposition;
 import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleEigenvalueDecomposition;
 import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleLUDecomposition;
 import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleQRDecomposition;
 import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleSingularValueDecomposition;
+import cern.colt.matrix.tdouble.impl.BandDoubleMatrix2D;
 import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
 import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
 import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix3D;
@@ -75,6 +77,11 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
      */
     protected DoubleProperty property;
 
+    /**
+     * The cache of factorizations consulted by this instance, or null.
+     */
+    protected transient DoubleFactorizationCache factorizationCache;
+
     static {
         // don't use new Algebra(Property.DEFAULT.tolerance()), because then
         // property object would be mutable.
@@ -105,9 +112,21 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
 
     /**
      * Constructs and returns the cholesky-decomposition of the given matrix.
+     * With a factorization cache attached, the returned decomposition is a
+     * private copy of the cached one, so that updating it does not affect
+     * other callers.
      */
     public DenseDoubleCholeskyDecomposition chol(DoubleMatrix2D matrix) {
-        return new DenseDoubleCholeskyDecomposition(matrix);
+        if (factorizationCache == null)
+            return new DenseDoubleCholeskyDecomposition(matrix);
+        long version = matrix.getVersion();
+        DenseDoubleCholeskyDecomposition chol = (DenseDoubleCholeskyDecomposition) factorizationCache.get(matrix,
+                "Cholesky", version);
+        if (chol == null) {
+            chol = new DenseDoubleCholeskyDecomposition(matrix);
+            factorizationCache.put(matrix, "Cholesky", version, chol, 8L * matrix.rows() * matrix.columns());
+        }
+        return chol.copy();
     }
 
     /**
@@ -118,7 +137,9 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
      */
 
     public Object clone() {
-        return new DenseDoubleAlgebra(property.tolerance());
+        DenseDoubleAlgebra copy = new DenseDoubleAlgebra(property.tolerance());
+        copy.factorizationCache = factorizationCache;
+        return copy;
     }
 
     /**
@@ -135,6 +156,8 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
      * @return the determinant.
      */
     public double det(DoubleMatrix2D A) {
+        if (A instanceof BandDoubleMatrix2D)
+            return bandLU((BandDoubleMatrix2D) A).det();
         return lu(A).det();
     }
 
@@ -173,6 +196,15 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
         };
     }
 
+    /**
+     * Returns the cache of factorizations attached to this Algebra.
+     * 
+     * @return the cache, or null if factorizations are not cached.
+     */
+    public DoubleFactorizationCache getFactorizationCache() {
+        return factorizationCache;
+    }
+
     /**
      * Returns the inverse or pseudo-inverse of matrix <tt>A</tt>.
      * 
@@ -199,7 +231,16 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
      * Constructs and returns the LU-decomposition of the given matrix.
      */
     public DenseDoubleLUDecomposition lu(DoubleMatrix2D matrix) {
-        return new DenseDoubleLUDecomposition(matrix);
+        if (factorizationCache == null)
+            return new DenseDoubleLUDecomposition(matrix);
+        long version = matrix.getVersion();
+        DenseDoubleLUDecomposition lu = (DenseDoubleLUDecomposition) factorizationCache.get(matrix, "LU", version);
+        if (lu == null) {
+            lu = new DenseDoubleLUDecomposition(matrix);
+            factorizationCache.put(matrix, "LU", version, lu, 8L * matrix.rows() * matrix.columns() + 4L
+                    * matrix.rows());
+        }
+        return lu;
     }
 
     /**
@@ -1015,10 +1056,31 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
     }
 
     /**
-     * Constructs and returns the QR-decomposition of the given matrix.
+     * Constructs and returns the QR-decomposition of the given matrix. With a
+     * factorization cache attached, the returned decomposition is a private
+     * copy of the cached one, so that updating it does not affect other
+     * callers.
      */
     public DenseDoubleQRDecomposition qr(DoubleMatrix2D matrix) {
-        return new DenseDoubleQRDecomposition(matrix);
+        if (factorizationCache == null)
+            return new DenseDoubleQRDecomposition(matrix);
+        return cachedQr(matrix).copy();
+    }
+
+    /**
+     * Returns the cached QR-decomposition of the given matrix, computing it if
+     * necessary; the result must not be updated.
+     */
+    private DenseDoubleQRDecomposition cachedQr(DoubleMatrix2D matrix) {
+        if (factorizationCache == null)
+            return new DenseDoubleQRDecomposition(matrix);
+        long version = matrix.getVersion();
+        DenseDoubleQRDecomposition qr = (DenseDoubleQRDecomposition) factorizationCache.get(matrix, "QR", version);
+        if (qr == null) {
+            qr = new DenseDoubleQRDecomposition(matrix);
+            factorizationCache.put(matrix, "QR", version, qr, 8L * matrix.rows() * matrix.columns());
+        }
+        return qr;
     }
 
     /**
@@ -1029,6 +1091,31 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
         return svd(A).rank();
     }
 
+    /**
+     * Attaches the given cache to this Algebra. The decompositions returned by
+     * <tt>lu</tt>, <tt>qr</tt> and <tt>chol</tt>, and those used by
+     * <tt>solve</tt>, <tt>det</tt> and <tt>inverse</tt>, are then looked up in
+     * the cache and shared between calls as long as the matrix is not
+     * modified.
+     * <p>
+     * The decompositions returned by <tt>lu</tt> are the cached objects
+     * themselves and thus shared by all callers. Those returned by <tt>qr</tt>
+     * and <tt>chol</tt> are private copies of the cached ones, since their
+     * <tt>update</tt> methods modify them in place.
+     * 
+     * @param cache
+     *            the cache, or null to factorize on every call.
+     * @throws IllegalArgumentException
+     *             if <tt>this==DEFAULT || this==ZERO</tt> - The DEFAULT and
+     *             ZERO Algebra objects are immutable.
+     * @see DoubleMatrix2D#getVersion()
+     */
+    public void setFactorizationCache(DoubleFactorizationCache cache) {
+        if (this == DEFAULT || this == ZERO)
+            throw new IllegalArgumentException("Attempted to modify immutable object.");
+        this.factorizationCache = cache;
+    }
+
     /**
      * Attaches the given property object to this Algebra, defining tolerance.
      * 
@@ -1050,6 +1137,22 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
         this.property = property;
     }
 
+    /**
+     * Returns the banded LU-decomposition of the given band matrix.
+     */
+    private BandDoubleLUDecomposition bandLU(BandDoubleMatrix2D A) {
+        if (factorizationCache == null)
+            return new BandDoubleLUDecomposition(A);
+        long version = A.getVersion();
+        BandDoubleLUDecomposition lu = (BandDoubleLUDecomposition) factorizationCache.get(A, "BandLU", version);
+        if (lu == null) {
+            lu = new BandDoubleLUDecomposition(A);
+            factorizationCache.put(A, "BandLU", version, lu, 8L * A.rows()
+                    * (2 * A.lowerBandwidth() + A.upperBandwidth() + 1) + 4L * A.rows());
+        }
+        return lu;
+    }
+
     /**
      * Solves the upper triangular system U*x=b;
      * 
@@ -1096,14 +1199,17 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
      * Solves A*x = b.
      * 
      * @return x; a new independent matrix; solution if A is square, least
-     *         squares solution otherwise.
+     *         squares solution otherwise. A square band matrix is solved by a
+     *         banded LU decomposition.
      */
     public DoubleMatrix1D solve(DoubleMatrix2D A, DoubleMatrix1D b) {
         if (A.rows() == A.columns()) {
+            if (A instanceof BandDoubleMatrix2D)
+                return bandLU((BandDoubleMatrix2D) A).solve(b);
             return lu(A).solve(b);
         } else {
             DoubleMatrix1D x = b.copy();
-            qr(A).solve(x);
+            cachedQr(A).solve(x);
             return x.viewPart(0, A.columns()).copy();
         }
     }
@@ -1112,14 +1218,17 @@ public class DenseDoubleAlgebra extends cern.colt.PersistentObject {
      * Solves A*X = B.
      * 
      * @return X; a new independent matrix; solution if A is square, least
-     *         squares solution otherwise.
+     *         squares solution otherwise. A square band matrix is solved by a
+     *         banded LU decomposition.
      */
     public DoubleMatrix2D solve(DoubleMatrix2D A, DoubleMatrix2D B) {
         if (A.rows() == A.columns()) {
+            if (A instanceof BandDoubleMatrix2D)
+                return bandLU((BandDoubleMatrix2D) A).solve(B);
             return lu(A).solve(B);
         } else {
             DoubleMatrix2D X = B.copy();
-            qr(A).solve(X);
+            cachedQr(A).solve(X);
             return X.viewPart(0, 0, A.columns(), B.columns()).copy();
         }
     }
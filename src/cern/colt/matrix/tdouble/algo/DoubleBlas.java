@@ -58,6 +58,9 @@ import cern.colt.matrix.tdouble.DoubleMatrix2D;
  * <li>3.BLAS Level 3: Matrix-Matrix operations
  * <ul>
  * <li>dgemm : matrix-matrix multiply with general matrices</li>
+ * <li>dsyrk : symmetric rank-k update</li>
+ * <li>dtrmm : matrix-matrix multiply with triangular matrix</li>
+ * <li>dtrsm : solve triangular system with multiple right-hand sides</li>
  * </ul>
  * </li>
  * </ol>
@@ -379,6 +382,56 @@ public interface DoubleBlas {
     public void dsymv(boolean isUpperTriangular, double alpha, DoubleMatrix2D A, DoubleMatrix1D x, double beta,
             DoubleMatrix1D y);
 
+    /**
+     * Symmetric rank-k update; <tt>C = alpha*A*A' + beta*C</tt> or
+     * <tt>C = alpha*A'*A + beta*C</tt>. Where alpha and beta are scalars, C is
+     * an n by n symmetric matrix and A is an n by k matrix in the first case
+     * and a k by n matrix in the second case. If C is a
+     * {@link cern.colt.matrix.tdouble.impl.PackedSymmetricDoubleMatrix2D} only
+     * its stored triangle is computed.
+     * 
+     * @param transposeA
+     *            set this flag to compute <tt>A'*A</tt> instead of
+     *            <tt>A*A'</tt>.
+     * @param alpha
+     *            scaling factor.
+     * @param A
+     *            the source matrix.
+     * @param beta
+     *            scaling factor.
+     * @param C
+     *            the symmetric matrix holding source and destination.
+     * @throws IllegalArgumentException
+     *             if <tt>C</tt> is not square or has not as many rows as
+     *             <tt>op(A)</tt>.
+     */
+    public void dsyrk(boolean transposeA, double alpha, DoubleMatrix2D A, double beta, DoubleMatrix2D C);
+
+    /**
+     * Triangular matrix-matrix multiplication; <tt>B = alpha*A*B</tt> or
+     * <tt>B = alpha*A'*B</tt>. Where alpha is a scalar, B is an n by m matrix
+     * and A is an n by n unit, or non-unit, upper or lower triangular matrix.
+     * 
+     * @param isUpperTriangular
+     *            is A upper triangular or lower triangular?
+     * @param transposeA
+     *            set this flag to indicate that the multiplication shall be
+     *            performed on A'.
+     * @param isUnitTriangular
+     *            true --> A is assumed to be unit triangular; false --> A is
+     *            not assumed to be unit triangular
+     * @param alpha
+     *            scaling factor.
+     * @param A
+     *            the triangular matrix.
+     * @param B
+     *            the matrix holding source and destination.
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square or <tt>B.rows() != A.rows()</tt>.
+     */
+    public void dtrmm(boolean isUpperTriangular, boolean transposeA, boolean isUnitTriangular, double alpha,
+            DoubleMatrix2D A, DoubleMatrix2D B);
+
     /**
      * Triangular matrix-vector multiplication; <tt>x = A*x</tt> or <tt>x = A'*x</tt>.
      * Where x is an n element vector and A is an n by n unit, or non-unit,
@@ -400,6 +453,32 @@ public interface DoubleBlas {
     public void dtrmv(boolean isUpperTriangular, boolean transposeA, boolean isUnitTriangular, DoubleMatrix2D A,
             DoubleMatrix1D x);
 
+    /**
+     * Solves a triangular system with multiple right-hand sides;
+     * <tt>A*X = alpha*B</tt> or <tt>A'*X = alpha*B</tt>. Where alpha is a
+     * scalar, X and B are n by m matrices and A is an n by n unit, or non-unit,
+     * upper or lower triangular matrix. <tt>X</tt> overwrites <tt>B</tt>.
+     * 
+     * @param isUpperTriangular
+     *            is A upper triangular or lower triangular?
+     * @param transposeA
+     *            set this flag to indicate that the system with A' shall be
+     *            solved.
+     * @param isUnitTriangular
+     *            true --> A is assumed to be unit triangular; false --> A is
+     *            not assumed to be unit triangular
+     * @param alpha
+     *            scaling factor.
+     * @param A
+     *            the triangular matrix.
+     * @param B
+     *            the right-hand sides on input, the solution on output.
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square or <tt>B.rows() != A.rows()</tt>.
+     */
+    public void dtrsm(boolean isUpperTriangular, boolean transposeA, boolean isUnitTriangular, double alpha,
+            DoubleMatrix2D A, DoubleMatrix2D B);
+
     /**
      * Returns the index of largest absolute value;
      * <tt>i such that |x[i]| == max(|x[0]|,|x[1]|,...).</tt>.
@@ -0,0 +1,336 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.algo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * Calibrates the per-kernel parallelism thresholds of
+ * {@link ConcurrencyTuning} on the current host.
+ * <p>
+ * Each kernel is timed on problems of increasing size, once sequentially and
+ * once with {@link ConcurrencyUtils#getNumberOfThreads()} threads. The
+ * threshold of the kernel is the smallest size from which on the parallel run
+ * is at least 10% faster than the sequential one for all larger sizes, and its
+ * grain size is half of that (the least amount of work that still amortizes
+ * the cost of a task). Kernels that never profit from threads get a threshold
+ * of <tt>Integer.MAX_VALUE</tt>. The four threads FFT is compared against the
+ * two threads FFT instead of the sequential one, since JTransforms only
+ * considers four threads above the two threads threshold.
+ * <p>
+ * Run <tt>java cern.colt.matrix.tdouble.algo.DoubleConcurrencyCalibration
+ * [profile]</tt> to calibrate all kernels and save the result to the given
+ * profile, or to {@link ConcurrencyTuning#getProfileFile()}, where it is picked
+ * up at the next startup.
+ */
+public class DoubleConcurrencyCalibration {
+
+    /**
+     * Minimal speedup of the parallel run.
+     */
+    private static final double MIN_SPEEDUP = 1.1;
+
+    /**
+     * Minimal duration of one timing in nanoseconds.
+     */
+    private static final long MIN_TIME = 20000000L;
+
+    /**
+     * Number of timings of which the fastest one is taken.
+     */
+    private static final int REPEATS = 3;
+
+    /**
+     * A timed kernel.
+     */
+    private static abstract class Benchmark {
+        /**
+         * Allocates a problem of about the given size and returns its actual
+         * size; a size of 0 releases the problem.
+         */
+        abstract long prepare(long size);
+
+        abstract void run();
+
+        /**
+         * Called before the sequential and before the parallel timings.
+         */
+        void setParallel(boolean parallel) {
+        }
+    }
+
+    /**
+     * Makes this class non instantiable, but still let's others inherit from
+     * it.
+     */
+    protected DoubleConcurrencyCalibration() {
+        throw new Error("Non instantiable");
+    }
+
+    /**
+     * Calibrates all kernels and saves the result to the given profile, or to
+     * {@link ConcurrencyTuning#getProfileFile()} if no argument is given.
+     *
+     * @param args
+     *            the name of the profile (optional).
+     * @throws IOException
+     *             if the profile cannot be written.
+     */
+    public static void main(String[] args) throws IOException {
+        File file = (args.length > 0) ? new File(args[0]) : ConcurrencyTuning.getProfileFile();
+        System.out.println("Calibrating using " + ConcurrencyUtils.getNumberOfThreads() + " threads.");
+        calibrate();
+        ConcurrencyTuning.save(file);
+        System.out.println(ConcurrencyTuning.toProperties());
+        System.out.println("Saved to " + file);
+    }
+
+    /**
+     * Calibrates all kernels, replacing their current thresholds and grain
+     * sizes.
+     */
+    public static void calibrate() {
+        calibrate(ConcurrencyTuning.ASSIGN, 1L << 22);
+        calibrate(ConcurrencyTuning.AGGREGATE, 1L << 22);
+        calibrate(ConcurrencyTuning.SPMV, 1L << 22);
+        calibrate(ConcurrencyTuning.ZMULT, 1L << 28);
+        calibrate(ConcurrencyTuning.FFT_2THREADS, 1L << 20);
+        calibrate(ConcurrencyTuning.FFT_4THREADS, 1L << 20);
+    }
+
+    /**
+     * Calibrates the given kernel on problems of up to <tt>maxSize</tt> units
+     * of work, replacing its current threshold and grain size.
+     *
+     * @param kernel
+     *            one of the kernels of {@link ConcurrencyTuning}.
+     * @param maxSize
+     *            the size of the largest problem.
+     * @return the threshold of the kernel.
+     * @throws IllegalArgumentException
+     *             if the kernel is unknown.
+     */
+    public static int calibrate(String kernel, long maxSize) {
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        int ntasks = nthreads;
+        int baseThreads = 1;
+        if (ConcurrencyTuning.FFT_2THREADS.equals(kernel)) {
+            ntasks = 2;
+        } else if (ConcurrencyTuning.FFT_4THREADS.equals(kernel)) {
+            // four threads are only used above the two threads threshold, so
+            // they have to beat two threads
+            ntasks = 4;
+            baseThreads = 2;
+        }
+        if (ntasks < 2 || nthreads < ntasks) {
+            // the kernel is never run in parallel with this many threads
+            ConcurrencyTuning.setThreadsBeginN(kernel, Integer.MAX_VALUE);
+            ConcurrencyTuning.setGrain(kernel, Integer.MAX_VALUE / 2);
+            return Integer.MAX_VALUE;
+        }
+        Benchmark benchmark = benchmark(kernel);
+        int fft2Threads = ConcurrencyUtils.getThreadsBeginN_1D_FFT_2Threads();
+        int fft4Threads = ConcurrencyUtils.getThreadsBeginN_1D_FFT_4Threads();
+        int threshold = Integer.MAX_VALUE;
+        try {
+            for (long size = 1L << 10; size <= maxSize; size <<= 1) {
+                long work = benchmark.prepare(size);
+                ConcurrencyUtils.setNumberOfThreads(baseThreads);
+                benchmark.setParallel(false);
+                long sequential = time(benchmark);
+                ConcurrencyUtils.setNumberOfThreads(ntasks);
+                ConcurrencyTuning.setThreadsBeginN(kernel, 1);
+                ConcurrencyTuning.setGrain(kernel, 1);
+                benchmark.setParallel(true);
+                long parallel = time(benchmark);
+                if (sequential >= MIN_SPEEDUP * parallel) {
+                    if (threshold == Integer.MAX_VALUE) {
+                        threshold = (int) Math.min(work, Integer.MAX_VALUE - 1);
+                    }
+                } else {
+                    threshold = Integer.MAX_VALUE;
+                }
+            }
+        } finally {
+            ConcurrencyUtils.setNumberOfThreads(nthreads);
+            ConcurrencyUtils.setThreadsBeginN_1D_FFT_2Threads(fft2Threads);
+            ConcurrencyUtils.setThreadsBeginN_1D_FFT_4Threads(fft4Threads);
+            benchmark.prepare(0);
+            ConcurrencyTuning.setThreadsBeginN(kernel, threshold);
+            ConcurrencyTuning.setGrain(kernel, Math.max(1, threshold / 2));
+        }
+        return threshold;
+    }
+
+    /**
+     * Returns the fastest of several timings of the given benchmark.
+     */
+    private static long time(Benchmark benchmark) {
+        benchmark.run(); // warm up
+        long best = Long.MAX_VALUE;
+        for (int r = 0; r < REPEATS; r++) {
+            int iterations = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                benchmark.run();
+                iterations++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < MIN_TIME);
+            best = Math.min(best, elapsed / iterations);
+        }
+        return best;
+    }
+
+    private static Benchmark benchmark(String kernel) {
+        if (ConcurrencyTuning.ASSIGN.equals(kernel)) {
+            return new Benchmark() {
+                DoubleMatrix2D A, B;
+
+                long prepare(long size) {
+                    A = B = null;
+                    if (size == 0) {
+                        return 0;
+                    }
+                    int rows = 1 << (63 - Long.numberOfLeadingZeros(size)) / 2;
+                    int columns = (int) (size / rows);
+                    A = new DenseDoubleMatrix2D(rows, columns).assign(1);
+                    B = new DenseDoubleMatrix2D(rows, columns).assign(2);
+                    return (long) rows * columns;
+                }
+
+                void run() {
+                    A.assign(B, DoubleFunctions.plusMultSecond(1e-9));
+                }
+            };
+        }
+        if (ConcurrencyTuning.AGGREGATE.equals(kernel)) {
+            return new Benchmark() {
+                DoubleMatrix2D A;
+
+                long prepare(long size) {
+                    A = null;
+                    if (size == 0) {
+                        return 0;
+                    }
+                    int rows = 1 << (63 - Long.numberOfLeadingZeros(size)) / 2;
+                    int columns = (int) (size / rows);
+                    A = new DenseDoubleMatrix2D(rows, columns).assign(1);
+                    return (long) rows * columns;
+                }
+
+                void run() {
+                    A.aggregate(DoubleFunctions.plus, DoubleFunctions.square);
+                }
+            };
+        }
+        if (ConcurrencyTuning.SPMV.equals(kernel)) {
+            return new Benchmark() {
+                static final int NNZ_PER_ROW = 8;
+
+                DoubleMatrix2D A;
+
+                DoubleMatrix1D x, y;
+
+                long prepare(long size) {
+                    A = null;
+                    x = y = null;
+                    if (size == 0) {
+                        return 0;
+                    }
+                    int n = (int) (size / NNZ_PER_ROW);
+                    Random random = new Random(0);
+                    int[] rowPointers = new int[n + 1];
+                    int[] columnIndexes = new int[n * NNZ_PER_ROW];
+                    double[] values = new double[n * NNZ_PER_ROW];
+                    for (int i = 0; i < n; i++) {
+                        rowPointers[i + 1] = rowPointers[i] + NNZ_PER_ROW;
+                        for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                            columnIndexes[k] = random.nextInt(n);
+                            values[k] = random.nextDouble();
+                        }
+                    }
+                    A = new SparseRCDoubleMatrix2D(n, n, rowPointers, columnIndexes, values);
+                    x = new DenseDoubleMatrix1D(n).assign(1);
+                    y = new DenseDoubleMatrix1D(n);
+                    return (long) n * NNZ_PER_ROW;
+                }
+
+                void run() {
+                    A.zMult(x, y);
+                }
+            };
+        }
+        if (ConcurrencyTuning.ZMULT.equals(kernel)) {
+            return new Benchmark() {
+                DoubleMatrix2D A, B, C;
+
+                long prepare(long size) {
+                    A = B = C = null;
+                    if (size == 0) {
+                        return 0;
+                    }
+                    // size is the number of flops, 2 * n^3
+                    int n = (int) Math.round(Math.cbrt(size / 2.0));
+                    A = new DenseDoubleMatrix2D(n, n).assign(1);
+                    B = new DenseDoubleMatrix2D(n, n).assign(2);
+                    C = new DenseDoubleMatrix2D(n, n);
+                    return 2L * n * n * n;
+                }
+
+                void run() {
+                    A.zMult(B, C);
+                }
+            };
+        }
+        if (ConcurrencyTuning.FFT_2THREADS.equals(kernel) || ConcurrencyTuning.FFT_4THREADS.equals(kernel)) {
+            final boolean fourThreads = ConcurrencyTuning.FFT_4THREADS.equals(kernel);
+            return new Benchmark() {
+                DoubleFFT_1D fft;
+
+                double[] a;
+
+                long prepare(long size) {
+                    fft = null;
+                    a = null;
+                    if (size == 0) {
+                        return 0;
+                    }
+                    fft = new DoubleFFT_1D((int) size);
+                    a = new double[2 * (int) size];
+                    return size;
+                }
+
+                void setParallel(boolean parallel) {
+                    ConcurrencyUtils.setThreadsBeginN_1D_FFT_2Threads((fourThreads || parallel) ? 1
+                            : Integer.MAX_VALUE);
+                    ConcurrencyUtils.setThreadsBeginN_1D_FFT_4Threads((fourThreads && parallel) ? 1
+                            : Integer.MAX_VALUE);
+                }
+
+                void run() {
+                    fft.complexForward(a);
+                }
+            };
+        }
+        throw new IllegalArgumentException("Unknown kernel: " + kernel);
+    }
+}
@@ -0,0 +1,614 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.algo;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.DoubleMatrix3D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix3D;
+import cern.jet.math.tdouble.DoubleFunctions;
+import cern.jet.math.tdouble.DoubleMult;
+import cern.jet.math.tdouble.DoublePlusMultSecond;
+
+/**
+ * Lazily evaluated chain of elementwise operations on matrices of the same
+ * shape, fused into a single parallel pass over the data.
+ * <p>
+ * A chain of <tt>assign</tt> calls such as
+ *
+ * <pre>
+ * A.assign(B, F.plus).assign(F.square).assign(C, F.mult);
+ * double s = A.aggregate(F.plus, F.abs);
+ * </pre>
+ *
+ * reads and writes <tt>A</tt> three times and reads it once more for the
+ * reduction. The equivalent expression
+ *
+ * <pre>
+ * double s = DoubleExpression.of(A).assign(B, F.plus).assign(F.square).assign(C, F.mult).evaluate(F.plus, F.abs);
+ * </pre>
+ *
+ * only records the operations; {@link #evaluate(DoubleDoubleFunction, DoubleFunction)}
+ * then reads <tt>A</tt>, <tt>B</tt> and <tt>C</tt> once, applies all
+ * operations to small blocks of cells that stay in the cache, writes the
+ * result back to <tt>A</tt> and reduces it on the fly. Expressions may be
+ * nested, e.g. <tt>of(A).assign(of(B).assign(C, F.minus), F.mult)</tt>
+ * computes <tt>A * (B - C)</tt> without a temporary copy of <tt>B</tt>.
+ * <p>
+ * Expressions are immutable: every <tt>assign</tt> returns a new expression
+ * and leaves the receiver unchanged, nothing is computed before
+ * {@link #evaluate()}, {@link #assignTo(DoubleMatrix2D)} or
+ * {@link #aggregate(DoubleDoubleFunction, DoubleFunction)} is called, and the
+ * matrices are read at that time. The cells are processed in row major order
+ * in blocks that are distributed over the threads of {@link ForkJoinUtils} if
+ * the matrices are larger than the thresholds of {@link ConcurrencyTuning}.
+ * Dense matrices are accessed directly, all other matrices through
+ * <tt>getQuick</tt> and <tt>setQuick</tt>.
+ */
+public class DoubleExpression {
+
+    /**
+     * Number of cells processed at a time; the blocks of all operands stay in
+     * the L1 cache.
+     */
+    private static final int BLOCK = 512;
+
+    private final Cells source;
+
+    private final Operation[] operations;
+
+    /**
+     * One operation of the chain: <tt>x = f(x)</tt> if <tt>g</tt> is null,
+     * <tt>x = g(x, y)</tt> otherwise, where <tt>y</tt> is a matrix or an
+     * expression.
+     */
+    private static final class Operation {
+        final DoubleFunction f;
+
+        final DoubleDoubleFunction g;
+
+        final Cells matrix;
+
+        final DoubleExpression expression;
+
+        Operation(DoubleFunction f, DoubleDoubleFunction g, Cells matrix, DoubleExpression expression) {
+            this.f = f;
+            this.g = g;
+            this.matrix = matrix;
+            this.expression = expression;
+        }
+    }
+
+    private DoubleExpression(Cells source, Operation[] operations) {
+        this.source = source;
+        this.operations = operations;
+    }
+
+    /**
+     * Returns an expression whose value is the given matrix.
+     *
+     * @param x
+     *            the matrix.
+     * @return the expression <tt>x</tt>.
+     */
+    public static DoubleExpression of(DoubleMatrix1D x) {
+        return new DoubleExpression(new Cells(x, null, null), new Operation[0]);
+    }
+
+    /**
+     * Returns an expression whose value is the given matrix.
+     *
+     * @param x
+     *            the matrix.
+     * @return the expression <tt>x</tt>.
+     */
+    public static DoubleExpression of(DoubleMatrix2D x) {
+        return new DoubleExpression(new Cells(null, x, null), new Operation[0]);
+    }
+
+    /**
+     * Returns an expression whose value is the given matrix.
+     *
+     * @param x
+     *            the matrix.
+     * @return the expression <tt>x</tt>.
+     */
+    public static DoubleExpression of(DoubleMatrix3D x) {
+        return new DoubleExpression(new Cells(null, null, x), new Operation[0]);
+    }
+
+    /**
+     * Returns the expression <tt>f(this)</tt>, applied to each cell.
+     *
+     * @param f
+     *            a function.
+     * @return a new expression.
+     */
+    public DoubleExpression assign(DoubleFunction f) {
+        return append(new Operation(f, null, null, null));
+    }
+
+    /**
+     * Returns the expression <tt>f(this, y)</tt>, applied to each cell.
+     *
+     * @param y
+     *            a matrix of the same size.
+     * @param f
+     *            a function.
+     * @return a new expression.
+     * @throws IllegalArgumentException
+     *             if <tt>y</tt> has a different size.
+     */
+    public DoubleExpression assign(DoubleMatrix1D y, DoubleDoubleFunction f) {
+        return append(new Operation(null, f, checkShape(new Cells(y, null, null)), null));
+    }
+
+    /**
+     * Returns the expression <tt>f(this, y)</tt>, applied to each cell.
+     *
+     * @param y
+     *            a matrix of the same shape.
+     * @param f
+     *            a function.
+     * @return a new expression.
+     * @throws IllegalArgumentException
+     *             if <tt>y</tt> has a different shape.
+     */
+    public DoubleExpression assign(DoubleMatrix2D y, DoubleDoubleFunction f) {
+        return append(new Operation(null, f, checkShape(new Cells(null, y, null)), null));
+    }
+
+    /**
+     * Returns the expression <tt>f(this, y)</tt>, applied to each cell.
+     *
+     * @param y
+     *            a matrix of the same shape.
+     * @param f
+     *            a function.
+     * @return a new expression.
+     * @throws IllegalArgumentException
+     *             if <tt>y</tt> has a different shape.
+     */
+    public DoubleExpression assign(DoubleMatrix3D y, DoubleDoubleFunction f) {
+        return append(new Operation(null, f, checkShape(new Cells(null, null, y)), null));
+    }
+
+    /**
+     * Returns the expression <tt>f(this, y)</tt>, applied to each cell.
+     *
+     * @param y
+     *            an expression of the same shape.
+     * @param f
+     *            a function.
+     * @return a new expression.
+     * @throws IllegalArgumentException
+     *             if <tt>y</tt> has a different shape.
+     */
+    public DoubleExpression assign(DoubleExpression y, DoubleDoubleFunction f) {
+        checkShape(y.source);
+        return append(new Operation(null, f, null, y));
+    }
+
+    /**
+     * Evaluates this expression and stores the result in the matrix it was
+     * created from; this is equivalent to the chain of <tt>assign</tt> calls
+     * the expression was built with.
+     */
+    public void evaluate() {
+        evaluate(source, null, null);
+    }
+
+    /**
+     * Evaluates this expression, stores the result in the matrix it was
+     * created from and returns the aggregation of the result, all in a single
+     * pass; this is equivalent to the chain of <tt>assign</tt> calls the
+     * expression was built with, followed by
+     * <tt>aggregate(aggr, f)</tt>.
+     *
+     * @param aggr
+     *            an aggregation function taking as first argument the current
+     *            aggregation and as second argument the transformed current
+     *            cell value.
+     * @param f
+     *            a function transforming the current cell value.
+     * @return the aggregated measure, or <tt>Double.NaN</tt> if the matrix
+     *         has no cells.
+     */
+    public double evaluate(DoubleDoubleFunction aggr, DoubleFunction f) {
+        return evaluate(source, aggr, f);
+    }
+
+    /**
+     * Evaluates this expression and returns the aggregation of its cells,
+     * without storing them anywhere.
+     *
+     * @param aggr
+     *            an aggregation function taking as first argument the current
+     *            aggregation and as second argument the transformed current
+     *            cell value.
+     * @param f
+     *            a function transforming the current cell value.
+     * @return the aggregated measure, or <tt>Double.NaN</tt> if the matrix
+     *         has no cells.
+     */
+    public double aggregate(DoubleDoubleFunction aggr, DoubleFunction f) {
+        return evaluate(null, aggr, f);
+    }
+
+    /**
+     * Evaluates this expression and stores the result in the given matrix,
+     * which may be one of the operands but must not share cells with an
+     * operand at a different position.
+     *
+     * @param target
+     *            a matrix of the same size.
+     * @throws IllegalArgumentException
+     *             if <tt>target</tt> has a different size.
+     */
+    public void assignTo(DoubleMatrix1D target) {
+        evaluate(checkShape(new Cells(target, null, null)), null, null);
+    }
+
+    /**
+     * Evaluates this expression and stores the result in the given matrix,
+     * which may be one of the operands but must not share cells with an
+     * operand at a different position.
+     *
+     * @param target
+     *            a matrix of the same shape.
+     * @throws IllegalArgumentException
+     *             if <tt>target</tt> has a different shape.
+     */
+    public void assignTo(DoubleMatrix2D target) {
+        evaluate(checkShape(new Cells(null, target, null)), null, null);
+    }
+
+    /**
+     * Evaluates this expression and stores the result in the given matrix,
+     * which may be one of the operands but must not share cells with an
+     * operand at a different position.
+     *
+     * @param target
+     *            a matrix of the same shape.
+     * @throws IllegalArgumentException
+     *             if <tt>target</tt> has a different shape.
+     */
+    public void assignTo(DoubleMatrix3D target) {
+        evaluate(checkShape(new Cells(null, null, target)), null, null);
+    }
+
+    private DoubleExpression append(Operation operation) {
+        Operation[] operations = new Operation[this.operations.length + 1];
+        System.arraycopy(this.operations, 0, operations, 0, this.operations.length);
+        operations[this.operations.length] = operation;
+        return new DoubleExpression(source, operations);
+    }
+
+    private Cells checkShape(Cells other) {
+        if (!java.util.Arrays.equals(source.shape, other.shape)) {
+            throw new IllegalArgumentException("Incompatible dimensions: " + source + " and " + other);
+        }
+        return other;
+    }
+
+    /**
+     * Returns the number of block buffers needed to evaluate this expression.
+     */
+    private int buffers() {
+        int n = 1;
+        for (int k = 0; k < operations.length; k++) {
+            if (operations[k].matrix != null) {
+                n = Math.max(n, 2);
+            } else if (operations[k].expression != null) {
+                n = Math.max(n, 1 + operations[k].expression.buffers());
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Evaluates the cells <tt>from, ..., from + length - 1</tt> into
+     * <tt>buffers[depth]</tt>, using the buffers behind it for the operands.
+     */
+    private void evaluate(long from, int length, double[][] buffers, int depth) {
+        double[] x = buffers[depth];
+        source.get(from, x, length);
+        for (int k = 0; k < operations.length; k++) {
+            Operation op = operations[k];
+            if (op.g == null) {
+                DoubleFunction f = op.f;
+                if (f instanceof DoubleMult) {
+                    // specialized for speed: x[i] = x[i] * multiplicator
+                    double multiplicator = ((DoubleMult) f).multiplicator;
+                    for (int i = 0; i < length; i++) {
+                        x[i] *= multiplicator;
+                    }
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        x[i] = f.apply(x[i]);
+                    }
+                }
+            } else {
+                double[] y = buffers[depth + 1];
+                if (op.matrix != null) {
+                    op.matrix.get(from, y, length);
+                } else {
+                    op.expression.evaluate(from, length, buffers, depth + 1);
+                }
+                DoubleDoubleFunction g = op.g;
+                if (g == DoubleFunctions.mult) {
+                    // specialized for speed: x[i] = x[i] * y[i]
+                    for (int i = 0; i < length; i++) {
+                        x[i] *= y[i];
+                    }
+                } else if (g instanceof DoublePlusMultSecond) {
+                    // specialized for speed: x[i] = x[i] + y[i] *
+                    // multiplicator, which covers plus and minus
+                    double multiplicator = ((DoublePlusMultSecond) g).multiplicator;
+                    if (multiplicator == 1) {
+                        for (int i = 0; i < length; i++) {
+                            x[i] += y[i];
+                        }
+                    } else if (multiplicator == -1) {
+                        for (int i = 0; i < length; i++) {
+                            x[i] -= y[i];
+                        }
+                    } else {
+                        for (int i = 0; i < length; i++) {
+                            x[i] += y[i] * multiplicator;
+                        }
+                    }
+                } else {
+                    for (int i = 0; i < length; i++) {
+                        x[i] = g.apply(x[i], y[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates this expression, stores the result in <tt>target</tt> if it
+     * is not null and returns its aggregation if <tt>aggr</tt> is not null.
+     */
+    private double evaluate(final Cells target, final DoubleDoubleFunction aggr, final DoubleFunction f) {
+        final long size = source.size;
+        if (size == 0) {
+            return Double.NaN;
+        }
+        if (target != null) {
+            target.markModified();
+        }
+        final int nbuffers = buffers();
+        int nblocks = (int) ((size + BLOCK - 1) / BLOCK);
+        String kernel = (aggr == null) ? ConcurrencyTuning.ASSIGN : ConcurrencyTuning.AGGREGATE;
+        int threshold;
+        switch (source.shape.length) {
+        case 1:
+            threshold = ConcurrencyTuning.getThreadsBeginN_1D(kernel);
+            break;
+        case 2:
+            threshold = ConcurrencyTuning.getThreadsBeginN_2D(kernel);
+            break;
+        default:
+            threshold = ConcurrencyTuning.getThreadsBeginN_3D(kernel);
+            break;
+        }
+        int minBlocks = (size >= threshold) ? Math.max(1, ConcurrencyTuning.getGrain(kernel, BLOCK) / BLOCK)
+                : Integer.MAX_VALUE;
+        ForkJoinUtils.DoubleRangeFunction blocks = new ForkJoinUtils.DoubleRangeFunction() {
+            public double apply(int firstBlock, int lastBlock) {
+                double[][] buffers = new double[nbuffers][BLOCK];
+                double[] x = buffers[0];
+                double a = 0;
+                for (int b = firstBlock; b < lastBlock; b++) {
+                    long from = (long) b * BLOCK;
+                    int length = (int) Math.min(BLOCK, size - from);
+                    evaluate(from, length, buffers, 0);
+                    if (target != null) {
+                        target.set(from, x, length);
+                    }
+                    if (aggr != null) {
+                        int i = 0;
+                        if (b == firstBlock) {
+                            a = f.apply(x[0]);
+                            i = 1;
+                        }
+                        for (; i < length; i++) {
+                            a = aggr.apply(a, f.apply(x[i]));
+                        }
+                    }
+                }
+                return a;
+            }
+        };
+        if (aggr == null) {
+            final ForkJoinUtils.DoubleRangeFunction procedure = blocks;
+            ForkJoinUtils.invoke(0, nblocks, minBlocks, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int from, int to) {
+                    procedure.apply(from, to);
+                }
+            });
+            return Double.NaN;
+        }
+        return ForkJoinUtils.invoke(0, nblocks, minBlocks, blocks, aggr);
+    }
+
+    /**
+     * The cells of a 1-d, 2-d or 3-d matrix, read and written in row major
+     * order.
+     */
+    private static final class Cells {
+        final int[] shape;
+
+        final long size;
+
+        private final DoubleMatrix1D x1;
+
+        private final DoubleMatrix2D x2;
+
+        private final DoubleMatrix3D x3;
+
+        /**
+         * The elements of a dense matrix, or null.
+         */
+        private final double[] elements;
+
+        private final int zero;
+
+        private final int[] strides;
+
+        Cells(DoubleMatrix1D x1, DoubleMatrix2D x2, DoubleMatrix3D x3) {
+            this.x1 = x1;
+            this.x2 = x2;
+            this.x3 = x3;
+            if (x1 != null) {
+                shape = new int[] { (int) x1.size() };
+                strides = new int[] { x1.stride() };
+                if (x1 instanceof DenseDoubleMatrix1D) {
+                    elements = (double[]) x1.elements();
+                    zero = (int) x1.index(0);
+                } else {
+                    elements = null;
+                    zero = 0;
+                }
+            } else if (x2 != null) {
+                shape = new int[] { x2.rows(), x2.columns() };
+                strides = new int[] { x2.rowStride(), x2.columnStride() };
+                if (x2 instanceof DenseDoubleMatrix2D || x2 instanceof DenseColumnDoubleMatrix2D) {
+                    elements = (double[]) x2.elements();
+                    zero = (int) x2.index(0, 0);
+                } else {
+                    elements = null;
+                    zero = 0;
+                }
+            } else {
+                shape = new int[] { x3.slices(), x3.rows(), x3.columns() };
+                strides = new int[] { x3.sliceStride(), x3.rowStride(), x3.columnStride() };
+                if (x3 instanceof DenseDoubleMatrix3D) {
+                    elements = (double[]) x3.elements();
+                    zero = (int) x3.index(0, 0, 0);
+                } else {
+                    elements = null;
+                    zero = 0;
+                }
+            }
+            long n = 1;
+            for (int d = 0; d < shape.length; d++) {
+                n *= shape[d];
+            }
+            size = n;
+        }
+
+        /**
+         * Records that the cells are about to be modified, see
+         * {@link DoubleMatrix2D#markModified()}.
+         */
+        void markModified() {
+            if (x1 != null) {
+                x1.markModified();
+            } else if (x2 != null) {
+                x2.markModified();
+            }
+        }
+
+        void get(long from, double[] x, int length) {
+            transfer(from, x, length, false);
+        }
+
+        void set(long from, double[] x, int length) {
+            transfer(from, x, length, true);
+        }
+
+        /**
+         * Copies the cells <tt>from, ..., from + length - 1</tt> (in row major
+         * order) to <tt>x</tt>, or <tt>x</tt> to the cells if <tt>store</tt>.
+         */
+        private void transfer(long from, double[] x, int length, boolean store) {
+            int rank = shape.length;
+            int columns = shape[rank - 1];
+            int columnStride = strides[rank - 1];
+            long line = from / columns;
+            int column = (int) (from % columns);
+            int i = 0;
+            while (i < length) {
+                int n = Math.min(length - i, columns - column);
+                int slice = 0;
+                int row = 0;
+                if (rank == 2) {
+                    row = (int) line;
+                } else if (rank == 3) {
+                    slice = (int) (line / shape[1]);
+                    row = (int) (line % shape[1]);
+                }
+                if (elements != null) {
+                    int idx = zero + column * columnStride;
+                    if (rank == 2) {
+                        idx += row * strides[0];
+                    } else if (rank == 3) {
+                        idx += slice * strides[0] + row * strides[1];
+                    }
+                    if (store) {
+                        for (int end = i + n; i < end; i++, idx += columnStride) {
+                            elements[idx] = x[i];
+                        }
+                    } else {
+                        for (int end = i + n; i < end; i++, idx += columnStride) {
+                            x[i] = elements[idx];
+                        }
+                    }
+                } else if (rank == 1) {
+                    for (int end = i + n; i < end; i++, column++) {
+                        if (store) {
+                            x1.setQuick(column, x[i]);
+                        } else {
+                            x[i] = x1.getQuick(column);
+                        }
+                    }
+                } else if (rank == 2) {
+                    for (int end = i + n; i < end; i++, column++) {
+                        if (store) {
+                            x2.setQuick(row, column, x[i]);
+                        } else {
+                            x[i] = x2.getQuick(row, column);
+                        }
+                    }
+                } else {
+                    for (int end = i + n; i < end; i++, column++) {
+                        if (store) {
+                            x3.setQuick(slice, row, column, x[i]);
+                        } else {
+                            x[i] = x3.getQuick(slice, row, column);
+                        }
+                    }
+                }
+                line++;
+                column = 0;
+            }
+        }
+
+        public String toString() {
+            StringBuffer buf = new StringBuffer();
+            for (int d = 0; d < shape.length; d++) {
+                if (d > 0) {
+                    buf.append(" x ");
+                }
+                buf.append(shape[d]);
+            }
+            return buf.append(" matrix").toString();
+        }
+    }
+}
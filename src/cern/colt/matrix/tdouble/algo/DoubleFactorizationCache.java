@@ -0,0 +1,282 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.algo;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Bounded cache of matrix factorizations, keyed by the identity of the matrix,
+ * the kind of the factorization and the version stamp of the matrix (see
+ * {@link DoubleMatrix2D#getVersion()}). A factorization is only returned as
+ * long as the matrix has not been modified since it was computed, so that
+ * repeated solves with the same matrix reuse its LU, Cholesky or QR factors.
+ * <p>
+ * The cache holds the matrices weakly; entries of matrices that have been
+ * garbage collected are dropped. The total size of the cached factorizations,
+ * as estimated by the caller, is kept below the capacity by evicting the least
+ * recently used entries. Hit, miss and eviction counts are recorded for
+ * monitoring.
+ * <p>
+ * A cache is attached to an algebra object with
+ * {@link DenseDoubleAlgebra#setFactorizationCache(DoubleFactorizationCache)}
+ * or {@link SparseDoubleAlgebra#setFactorizationCache(DoubleFactorizationCache)}.
+ * The methods of this class are synchronized; the cached factorizations are
+ * shared and must not be modified.
+ */
+public class DoubleFactorizationCache {
+
+    /**
+     * The default capacity, 256 MB.
+     */
+    public static final long DEFAULT_CAPACITY = 256L << 20;
+
+    private final long capacity;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    private final ReferenceQueue<DoubleMatrix2D> queue = new ReferenceQueue<DoubleMatrix2D>();
+
+    private long memory;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    /**
+     * Constructs a cache with {@link #DEFAULT_CAPACITY}.
+     */
+    public DoubleFactorizationCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a cache that holds at most the given number of bytes.
+     *
+     * @param capacity
+     *            the maximum total size of the cached factorizations in bytes
+     * @throws IllegalArgumentException
+     *             if <tt>capacity < 0</tt>.
+     */
+    public DoubleFactorizationCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity < 0: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Removes all entries. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        memory = 0;
+    }
+
+    /**
+     * Returns the factorization of the given kind computed for <tt>A</tt> at
+     * the given version, or <tt>null</tt> if there is none. An entry computed
+     * for an older version is removed.
+     *
+     * @param A
+     *            the factorized matrix
+     * @param kind
+     *            the kind of the factorization, for example <tt>"LU"</tt>
+     * @param version
+     *            the current version stamp of <tt>A</tt>
+     * @return the cached factorization or <tt>null</tt>.
+     */
+    public synchronized Object get(DoubleMatrix2D A, String kind, long version) {
+        expunge();
+        Key key = new Key(A, kind, null);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            hits++;
+            return entry.factorization;
+        }
+        if (entry != null) {
+            remove(key);
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Returns the maximum total size of the cached factorizations in bytes.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of entries that were evicted to stay within the
+     * capacity.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns the number of lookups that found a valid factorization.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the fraction of lookups that found a valid factorization, or 0
+     * if there were none.
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns the estimated total size of the cached factorizations in bytes.
+     */
+    public synchronized long getMemoryUsage() {
+        expunge();
+        return memory;
+    }
+
+    /**
+     * Returns the number of lookups that did not find a valid factorization.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Stores the factorization of the given kind computed for <tt>A</tt> at the
+     * given version. The least recently used entries are evicted until the
+     * factorization fits; a factorization larger than the capacity is not
+     * stored.
+     *
+     * @param A
+     *            the factorized matrix
+     * @param kind
+     *            the kind of the factorization, for example <tt>"LU"</tt>
+     * @param version
+     *            the version stamp of <tt>A</tt> read before the factorization
+     *            was computed
+     * @param factorization
+     *            the factorization
+     * @param bytes
+     *            the estimated size of the factorization in bytes
+     */
+    public synchronized void put(DoubleMatrix2D A, String kind, long version, Object factorization, long bytes) {
+        expunge();
+        Key key = new Key(A, kind, queue);
+        remove(key);
+        if (bytes > capacity) {
+            return;
+        }
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (memory + bytes > capacity && it.hasNext()) {
+            memory -= it.next().getValue().bytes;
+            it.remove();
+            evictions++;
+        }
+        entries.put(key, new Entry(version, factorization, bytes));
+        memory += bytes;
+    }
+
+    /**
+     * Resets the hit, miss and eviction counts.
+     */
+    public synchronized void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+     * Returns the number of cached factorizations.
+     */
+    public synchronized int size() {
+        expunge();
+        return entries.size();
+    }
+
+    /**
+     * Returns a String with the statistics of this cache.
+     */
+    public synchronized String toString() {
+        return "DoubleFactorizationCache[size=" + entries.size() + ", memory=" + memory + ", capacity=" + capacity
+                + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+
+    private void expunge() {
+        Object key;
+        while ((key = queue.poll()) != null) {
+            remove((Key) key);
+        }
+    }
+
+    private void remove(Key key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            memory -= entry.bytes;
+        }
+    }
+
+    private static final class Entry {
+        final long version;
+
+        final Object factorization;
+
+        final long bytes;
+
+        Entry(long version, Object factorization, long bytes) {
+            this.version = version;
+            this.factorization = factorization;
+            this.bytes = bytes;
+        }
+    }
+
+    /*
+     * Compares the matrices by identity; a cleared key is only equal to
+     * itself.
+     */
+    private static final class Key extends WeakReference<DoubleMatrix2D> {
+        final String kind;
+
+        final int hash;
+
+        Key(DoubleMatrix2D A, String kind, ReferenceQueue<DoubleMatrix2D> queue) {
+            super(A, queue);
+            this.kind = kind;
+            this.hash = 31 * System.identityHashCode(A) + kind.hashCode();
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            Object A = get();
+            return A != null && A == other.get() && kind.equals(other.kind);
+        }
+    }
+}
@@ -10,14 +10,14 @@ package cern.colt.matrix.tdouble.algo;
 
 import hep.aida.tdouble.bin.DynamicDoubleBin1D;
 
-import java.util.concurrent.Future;
-
+import cern.colt.ForkJoinUtils;
 import cern.colt.function.tdouble.DoubleDoubleFunction;
 import cern.colt.matrix.tdouble.DoubleFactory1D;
 import cern.colt.matrix.tdouble.DoubleFactory2D;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.DoubleMatrix3D;
+import cern.colt.matrix.tdouble.impl.PackedSymmetricDoubleMatrix2D;
 import cern.jet.math.tdouble.DoubleFunctions;
 import cern.jet.random.tdouble.engine.DoubleRandomEngine;
 import edu.emory.mathcs.utils.ConcurrencyUtils;
@@ -308,25 +308,52 @@ public class DoubleStatistic extends Object {
      * @return the covariance matrix (<tt>n x n, n=matrix.columns</tt>).
      */
     public static DoubleMatrix2D covariance(DoubleMatrix2D matrix) {
-        int rows = matrix.rows();
         int columns = matrix.columns();
-        DoubleMatrix2D covariance = new cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D(columns, columns);
+        return covariance(matrix, new cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D(columns, columns));
+    }
 
-        double[] sums = new double[columns];
-        DoubleMatrix1D[] cols = new DoubleMatrix1D[columns];
+    /**
+     * Constructs and returns the covariance matrix of the given matrix in
+     * packed symmetric storage, which holds each covariance coefficient only
+     * once. Otherwise the same as {@link #covariance(DoubleMatrix2D)}.
+     * 
+     * @param matrix
+     *            any matrix; a column holds the values of a given variable.
+     * @return the covariance matrix (<tt>n x n, n=matrix.columns</tt>).
+     */
+    public static PackedSymmetricDoubleMatrix2D covariancePacked(DoubleMatrix2D matrix) {
+        return (PackedSymmetricDoubleMatrix2D) covariance(matrix, new PackedSymmetricDoubleMatrix2D(matrix.columns()));
+    }
+
+    private static DoubleMatrix2D covariance(DoubleMatrix2D matrix, final DoubleMatrix2D covariance) {
+        final int rows = matrix.rows();
+        int columns = matrix.columns();
+        // a packed matrix sets both cells at once
+        final boolean mirror = !(covariance instanceof PackedSymmetricDoubleMatrix2D);
+
+        final double[] sums = new double[columns];
+        final DoubleMatrix1D[] cols = new DoubleMatrix1D[columns];
         for (int i = columns; --i >= 0;) {
             cols[i] = matrix.viewColumn(i);
             sums[i] = cols[i].zSum();
         }
 
-        for (int i = columns; --i >= 0;) {
-            for (int j = i + 1; --j >= 0;) {
-                double sumOfProducts = cols[i].zDotProduct(cols[j]);
-                double cov = (sumOfProducts - sums[i] * sums[j] / rows) / rows;
-                covariance.setQuick(i, j, cov);
-                covariance.setQuick(j, i, cov); // symmetric
+        // column i computes i + 1 entries, so the work is split adaptively
+        ForkJoinUtils.invoke(0, columns, (int) Math.max(1, ConcurrencyUtils.getThreadsBeginN_2D()
+                / ((long) rows * columns)), new ForkJoinUtils.RangeProcedure() {
+
+            public void apply(int firstColumn, int lastColumn) {
+                for (int i = lastColumn; --i >= firstColumn;) {
+                    for (int j = i + 1; --j >= 0;) {
+                        double sumOfProducts = cols[i].zDotProduct(cols[j]);
+                        double cov = (sumOfProducts - sums[i] * sums[j] / rows) / rows;
+                        covariance.setQuick(i, j, cov);
+                        if (mirror)
+                            covariance.setQuick(j, i, cov); // symmetric
+                    }
+                }
             }
-        }
+        });
         return covariance;
     }
 
@@ -623,27 +650,19 @@ public class DoubleStatistic extends Object {
 
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (rows * columns >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, m);
-            Future<?>[] futures = new Future[nthreads];
-            int k = m / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? m : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-
-                    public void run() {
-                        DoubleMatrix2D view = null;
-                        for (int r = firstRow; r < lastRow; r++) {
-                            for (int c = 0; c < n; c++) {
-                                view = matrix.viewPart(r * row_size, c * col_size, height[r], width[c]);
-                                histo[r][c].fill_2D((double[]) view.elements(), view.rows(), view.columns(), (int) view
-                                        .index(0, 0), view.rowStride(), view.columnStride());
-                            }
-                        }
+            ForkJoinUtils.invoke(0, m * n, 1, new ForkJoinUtils.RangeProcedure() {
+
+                public void apply(int firstPiece, int lastPiece) {
+                    DoubleMatrix2D view = null;
+                    for (int p = firstPiece; p < lastPiece; p++) {
+                        int r = p / n;
+                        int c = p % n;
+                        view = matrix.viewPart(r * row_size, c * col_size, height[r], width[c]);
+                        histo[r][c].fill_2D((double[]) view.elements(), view.rows(), view.columns(), (int) view
+                                .index(0, 0), view.rowStride(), view.columnStride());
                     }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
+                }
+            });
         } else {
             DoubleMatrix2D view = null;
             for (int r = 0; r < m; r++) {
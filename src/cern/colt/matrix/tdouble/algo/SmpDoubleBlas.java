@@ -10,8 +10,12 @@ package cern.colt.matrix.tdouble.algo;
 
 import java.util.concurrent.Future;
 
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.PackedSymmetricDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.PackedTriangularDoubleMatrix2D;
 import cern.jet.math.tdouble.DoubleFunctions;
 import edu.emory.mathcs.utils.ConcurrencyUtils;
 
@@ -28,6 +32,12 @@ import edu.emory.mathcs.utils.ConcurrencyUtils;
  */
 public class SmpDoubleBlas implements DoubleBlas {
 
+    /**
+     * Number of rows of <tt>C</tt> computed by one product in
+     * {@link #dsyrk(boolean, double, DoubleMatrix2D, double, DoubleMatrix2D)}.
+     */
+    private static final int SYRK_BLOCK = 64;
+
     public SmpDoubleBlas() {
     }
 
@@ -168,11 +178,16 @@ public class SmpDoubleBlas implements DoubleBlas {
             A_loc = A;
         }
         DoubleProperty.DEFAULT.checkSquare(A_loc);
-        int size = A_loc.rows();
+        final int size = A_loc.rows();
         if (size != x.size() || size != y.size()) {
             throw new IllegalArgumentException(A_loc.toStringShort() + ", " + x.toStringShort() + ", "
                     + y.toStringShort());
         }
+        if (A instanceof PackedSymmetricDoubleMatrix2D) {
+            // both triangles are the stored one
+            A.zMult(x, y, alpha, beta, false);
+            return;
+        }
         final DoubleMatrix1D tmp = x.like();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_2D())) {
@@ -190,7 +205,7 @@ public class SmpDoubleBlas implements DoubleBlas {
                             for (int j = 0; j <= i; j++) {
                                 sum += A_loc.getQuick(i, j) * x.getQuick(j);
                             }
-                            for (int j = i + 1; j < lastIdx; j++) {
+                            for (int j = i + 1; j < size; j++) {
                                 sum += A_loc.getQuick(j, i) * x.getQuick(j);
                             }
                             tmp.setQuick(i, alpha * sum + beta * y.getQuick(i));
@@ -214,6 +229,66 @@ public class SmpDoubleBlas implements DoubleBlas {
         y.assign(tmp);
     }
 
+    public void dsyrk(boolean transposeA, final double alpha, DoubleMatrix2D A, final double beta,
+            final DoubleMatrix2D C) {
+        final DoubleMatrix2D A_loc = transposeA ? A.viewDice() : A;
+        DoubleProperty.DEFAULT.checkSquare(C);
+        final int n = A_loc.rows();
+        if (C.rows() != n) {
+            throw new IllegalArgumentException(A_loc.toStringShort() + ", " + C.toStringShort());
+        }
+        if (!(C instanceof PackedSymmetricDoubleMatrix2D)) {
+            A_loc.zMult(A_loc, C, alpha, beta, false, true);
+            return;
+        }
+        // only the lower triangle is computed, one block of rows at a time
+        final int k = A_loc.columns();
+        int blocks = (n + SYRK_BLOCK - 1) / SYRK_BLOCK;
+        int minBlocks = ((long) n * n * k >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ZMULT)) ? 1
+                : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, blocks, minBlocks, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                for (int t = firstBlock; t < lastBlock; t++) {
+                    int firstRow = t * SYRK_BLOCK;
+                    int lastRow = Math.min(n, firstRow + SYRK_BLOCK);
+                    DoubleMatrix2D T = A_loc.viewPart(firstRow, 0, lastRow - firstRow, k).zMult(
+                            A_loc.viewPart(0, 0, lastRow, k), null, alpha, 0, false, true);
+                    for (int i = firstRow; i < lastRow; i++) {
+                        for (int j = 0; j <= i; j++) {
+                            double value = T.getQuick(i - firstRow, j);
+                            C.setQuick(i, j, (beta == 0) ? value : value + beta * C.getQuick(i, j));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    public void dtrmm(boolean isUpperTriangular, boolean transposeA, boolean isUnitTriangular, double alpha,
+            DoubleMatrix2D A, DoubleMatrix2D B) {
+        DoubleProperty.DEFAULT.checkSquare(A);
+        int size = A.rows();
+        if (size != B.rows()) {
+            throw new IllegalArgumentException(A.toStringShort() + ", " + B.toStringShort());
+        }
+        PackedTriangularDoubleMatrix2D T = packedTriangular(isUpperTriangular, A);
+        if (T != A && isUnitTriangular) {
+            for (int i = 0; i < size; i++) {
+                T.setQuick(i, i, 1);
+            }
+        }
+        DoubleMatrix2D product = T.zMult(B, null, alpha, 0, transposeA, false);
+        if (T == A && isUnitTriangular) {
+            for (int i = 0; i < size; i++) {
+                double d = alpha * (1 - T.getQuick(i, i));
+                if (d != 0) {
+                    product.viewRow(i).assign(B.viewRow(i), DoubleFunctions.plusMultSecond(d));
+                }
+            }
+        }
+        B.assign(product);
+    }
+
     public void dtrmv(boolean isUpperTriangular, final boolean transposeA, final boolean isUnitTriangular,
             DoubleMatrix2D A, final DoubleMatrix1D x) {
         final DoubleMatrix2D A_loc;
@@ -227,10 +302,21 @@ public class SmpDoubleBlas implements DoubleBlas {
         }
 
         DoubleProperty.DEFAULT.checkSquare(A_loc);
-        int size = A_loc.rows();
+        final int size = A_loc.rows();
         if (size != x.size()) {
             throw new IllegalArgumentException(A_loc.toStringShort() + ", " + x.toStringShort());
         }
+        if (A instanceof PackedTriangularDoubleMatrix2D
+                && ((PackedTriangularDoubleMatrix2D) A).isUpperTriangular() == isUpperTriangular) {
+            DoubleMatrix1D b = A.zMult(x, null, 1, 0, transposeA);
+            if (isUnitTriangular) {
+                for (int i = 0; i < size; i++) {
+                    b.setQuick(i, b.getQuick(i) + (1 - A.getQuick(i, i)) * x.getQuick(i));
+                }
+            }
+            x.assign(b);
+            return;
+        }
 
         final DoubleMatrix1D b = x.like();
         final DoubleMatrix1D y = x.like();
@@ -261,7 +347,7 @@ public class SmpDoubleBlas implements DoubleBlas {
                                 sum += y.getQuick(i) * x.getQuick(i);
                             } else {
                                 sum += y.getQuick(i) * x.getQuick(i);
-                                for (int j = i + 1; j < lastIdx; j++) {
+                                for (int j = i + 1; j < size; j++) {
                                     sum += A_loc.getQuick(i, j) * x.getQuick(j);
                                 }
                             }
@@ -291,6 +377,18 @@ public class SmpDoubleBlas implements DoubleBlas {
         x.assign(b);
     }
 
+    public void dtrsm(boolean isUpperTriangular, boolean transposeA, boolean isUnitTriangular, double alpha,
+            DoubleMatrix2D A, DoubleMatrix2D B) {
+        DoubleProperty.DEFAULT.checkSquare(A);
+        if (A.rows() != B.rows()) {
+            throw new IllegalArgumentException(A.toStringShort() + ", " + B.toStringShort());
+        }
+        if (alpha != 1) {
+            B.assign(DoubleFunctions.mult(alpha));
+        }
+        packedTriangular(isUpperTriangular, A).solve(transposeA, isUnitTriangular, B);
+    }
+
     public int idamax(DoubleMatrix1D x) {
         DoubleMatrix1D x_abs = x.copy();
         x_abs.assign(DoubleFunctions.abs);
@@ -313,4 +411,18 @@ public class SmpDoubleBlas implements DoubleBlas {
             return Math.abs(a);
         }
     }
+
+    /**
+     * Returns <tt>A</tt> if it is packed with the given triangle, otherwise a
+     * packed copy of this triangle of <tt>A</tt>.
+     */
+    private static PackedTriangularDoubleMatrix2D packedTriangular(boolean isUpperTriangular, DoubleMatrix2D A) {
+        if (A instanceof PackedTriangularDoubleMatrix2D
+                && ((PackedTriangularDoubleMatrix2D) A).isUpperTriangular() == isUpperTriangular) {
+            return (PackedTriangularDoubleMatrix2D) A;
+        }
+        PackedTriangularDoubleMatrix2D T = new PackedTriangularDoubleMatrix2D(A.rows(), isUpperTriangular);
+        T.assign(A);
+        return T;
+    }
 }
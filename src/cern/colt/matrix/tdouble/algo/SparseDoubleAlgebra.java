@@ -11,13 +11,16 @@ package cern.colt.matrix.tdouble.algo;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.algo.decomposition.SparseDoubleCholeskyDecomposition;
+import cern.colt.matrix.tdouble.algo.decomposition.SparseDoubleEigenvalueDecomposition;
 import cern.colt.matrix.tdouble.algo.decomposition.SparseDoubleLUDecomposition;
 import cern.colt.matrix.tdouble.algo.decomposition.SparseDoubleQRDecomposition;
 import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
 import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2D;
 import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
 import edu.emory.mathcs.csparsej.tdouble.Dcs_norm;
 import edu.emory.mathcs.csparsej.tdouble.Dcs_common.Dcs;
+import edu.emory.mathcs.csparsej.tdouble.Dcs_common.Dcss;
 
 /**
  * Linear algebraic matrix operations operating on sparse matrices.
@@ -77,6 +80,11 @@ public class SparseDoubleAlgebra {
      */
     protected DoubleProperty property;
 
+    /**
+     * The cache of factorizations consulted by this instance, or null.
+     */
+    protected DoubleFactorizationCache factorizationCache;
+
     /**
      * Constructs a new instance with an equality tolerance given by
      * <tt>Property.DEFAULT.tolerance()</tt>.
@@ -105,7 +113,18 @@ public class SparseDoubleAlgebra {
      * @return Cholesky-decomposition of the given matrix
      */
     public SparseDoubleCholeskyDecomposition chol(DoubleMatrix2D matrix, int order) {
-        return new SparseDoubleCholeskyDecomposition(matrix, order);
+        if (factorizationCache == null)
+            return new SparseDoubleCholeskyDecomposition(matrix, order);
+        String kind = "Cholesky" + order;
+        long version = matrix.getVersion();
+        SparseDoubleCholeskyDecomposition chol = (SparseDoubleCholeskyDecomposition) factorizationCache.get(matrix,
+                kind, version);
+        if (chol == null) {
+            chol = new SparseDoubleCholeskyDecomposition(matrix, order);
+            Dcss S = chol.getSymbolicAnalysis();
+            factorizationCache.put(matrix, kind, version, chol, 12L * S.lnz + 16L * matrix.rows());
+        }
+        return chol;
     }
 
     /**
@@ -116,7 +135,9 @@ public class SparseDoubleAlgebra {
      */
 
     public Object clone() {
-        return new SparseDoubleAlgebra(property.tolerance());
+        SparseDoubleAlgebra copy = new SparseDoubleAlgebra(property.tolerance());
+        copy.factorizationCache = factorizationCache;
+        return copy;
     }
 
     /**
@@ -130,6 +151,49 @@ public class SparseDoubleAlgebra {
         return lu(A, 0).det();
     }
 
+    /**
+     * Constructs and returns the partial eigenvalue decomposition of the given
+     * symmetric matrix.
+     * 
+     * @param matrix
+     *            symmetric sparse matrix
+     * @param nev
+     *            the number of eigenvalues to compute
+     * @param which
+     *            the part of the spectrum
+     * @return the eigenvalue decomposition of the given matrix
+     */
+    public SparseDoubleEigenvalueDecomposition eig(DoubleMatrix2D matrix, int nev,
+            SparseDoubleEigenvalueDecomposition.Which which) {
+        return new SparseDoubleEigenvalueDecomposition(matrix, nev, which);
+    }
+
+    /**
+     * Constructs and returns the partial eigenvalue decomposition of the given
+     * symmetric matrix for the eigenvalues closest to <tt>sigma</tt>, using
+     * the shift-invert mode.
+     * 
+     * @param matrix
+     *            symmetric sparse matrix
+     * @param nev
+     *            the number of eigenvalues to compute
+     * @param sigma
+     *            the shift
+     * @return the eigenvalue decomposition of the given matrix
+     */
+    public SparseDoubleEigenvalueDecomposition eig(DoubleMatrix2D matrix, int nev, double sigma) {
+        return new SparseDoubleEigenvalueDecomposition(matrix, nev, sigma);
+    }
+
+    /**
+     * Returns the cache of factorizations attached to this Algebra.
+     * 
+     * @return the cache, or null if factorizations are not cached.
+     */
+    public DoubleFactorizationCache getFactorizationCache() {
+        return factorizationCache;
+    }
+
     /**
      * Constructs and returns the LU-decomposition of the given matrix.
      * 
@@ -141,7 +205,17 @@ public class SparseDoubleAlgebra {
      * @return the LU-decomposition of the given matrix
      */
     public SparseDoubleLUDecomposition lu(DoubleMatrix2D matrix, int order) {
-        return new SparseDoubleLUDecomposition(matrix, order, true);
+        if (factorizationCache == null)
+            return new SparseDoubleLUDecomposition(matrix, order, true);
+        String kind = "LU" + order;
+        long version = matrix.getVersion();
+        SparseDoubleLUDecomposition lu = (SparseDoubleLUDecomposition) factorizationCache.get(matrix, kind, version);
+        if (lu == null) {
+            lu = new SparseDoubleLUDecomposition(matrix, order, true);
+            Dcss S = lu.getSymbolicAnalysis();
+            factorizationCache.put(matrix, kind, version, lu, 12L * (S.lnz + S.unz) + 16L * matrix.rows());
+        }
+        return lu;
     }
 
     /**
@@ -195,7 +269,37 @@ public class SparseDoubleAlgebra {
      * @return the QR-decomposition of the given matrix
      */
     public SparseDoubleQRDecomposition qr(DoubleMatrix2D matrix, int order) {
-        return new SparseDoubleQRDecomposition(matrix, order);
+        if (factorizationCache == null)
+            return new SparseDoubleQRDecomposition(matrix, order);
+        String kind = "QR" + order;
+        long version = matrix.getVersion();
+        SparseDoubleQRDecomposition qr = (SparseDoubleQRDecomposition) factorizationCache.get(matrix, kind, version);
+        if (qr == null) {
+            qr = new SparseDoubleQRDecomposition(matrix, order);
+            Dcss S = qr.getSymbolicAnalysis();
+            factorizationCache.put(matrix, kind, version, qr, 12L * (S.lnz + S.unz) + 16L * Math.max(matrix.rows(),
+                    matrix.columns()));
+        }
+        return qr;
+    }
+
+    /**
+     * Attaches the given cache to this Algebra. The decompositions returned by
+     * <tt>lu</tt>, <tt>qr</tt> and <tt>chol</tt>, and those used by
+     * <tt>solve</tt> and <tt>det</tt>, are then looked up in the cache and
+     * shared between calls as long as the matrix is not modified.
+     * 
+     * @param cache
+     *            the cache, or null to factorize on every call.
+     * @throws IllegalArgumentException
+     *             if <tt>this==DEFAULT || this==ZERO</tt> - The DEFAULT and
+     *             ZERO Algebra objects are immutable.
+     * @see DoubleMatrix2D#getVersion()
+     */
+    public void setFactorizationCache(DoubleFactorizationCache cache) {
+        if (this == DEFAULT || this == ZERO)
+            throw new IllegalArgumentException("Attempted to modify immutable object.");
+        this.factorizationCache = cache;
     }
 
     /**
@@ -241,4 +345,27 @@ public class SparseDoubleAlgebra {
             return x.viewPart(0, A.columns()).copy();
         }
     }
+
+    /**
+     * Solves A*X = B.
+     * 
+     * @param A
+     *            sparse matrix
+     * @param B
+     *            right hand sides
+     * @return X; a new independent matrix; solution if A is square, least
+     *         squares solution if A.rows() > A.columns(), underdetermined
+     *         system solution if A.rows() < A.columns().
+     */
+    public DoubleMatrix2D solve(DoubleMatrix2D A, DoubleMatrix2D B) {
+        DoubleMatrix2D X = new DenseDoubleMatrix2D(Math.max(A.rows(), A.columns()), B.columns());
+        X.viewPart(0, 0, B.rows(), B.columns()).assign(B);
+        if (A.rows() == A.columns()) {
+            lu(A, 0).solve(X);
+            return X;
+        } else {
+            qr(A, 0).solve(X);
+            return X.viewPart(0, 0, A.columns(), B.columns()).copy();
+        }
+    }
 }
@@ -0,0 +1,172 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DoubleProperty;
+import cern.colt.matrix.tdouble.impl.BandDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * For a symmetric, positive definite band matrix <tt>A</tt>, the Cholesky
+ * decomposition is a lower triangular band matrix <tt>L</tt> with the same
+ * lower bandwidth so that <tt>A = L*L'</tt>, as computed by LAPACK's
+ * <tt>dpbtrf</tt>. Only the diagonal and the subdiagonals of <tt>A</tt> are
+ * read. The factorization takes <tt>O(n*kd^2)</tt> and each solve
+ * <tt>O(n*kd)</tt> operations; right-hand sides are solved concurrently. If
+ * the matrix is not positive definite, the IllegalArgumentException is thrown.
+ */
+public class BandDoubleCholeskyDecomposition implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int n;
+
+    private final int kd;
+
+    /*
+     * L in band storage: cell (i,j) at l[i - j + j * (kd + 1)].
+     */
+    private final BandDoubleMatrix2D L;
+
+    private final double[] l;
+
+    /**
+     * Constructs and returns a new Cholesky decomposition object for a
+     * symmetric and positive definite band matrix; The decomposed matrices can
+     * be retrieved via instance methods of the returned decomposition object.
+     *
+     * @param A
+     *            Square, symmetric positive definite band matrix.
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square or is not positive definite.
+     */
+    public BandDoubleCholeskyDecomposition(BandDoubleMatrix2D A) {
+        DoubleProperty.DEFAULT.checkSquare(A);
+        n = A.rows();
+        kd = A.lowerBandwidth();
+        L = new BandDoubleMatrix2D(n, n, kd, 0);
+        L.assign(A);
+        l = L.elements();
+        factor();
+    }
+
+    /**
+     * Returns the triangular factor, <tt>L</tt>.
+     *
+     * @return <tt>L</tt>
+     */
+    public BandDoubleMatrix2D getL() {
+        return (BandDoubleMatrix2D) L.copy();
+    }
+
+    /**
+     * Solves <tt>A*X = B</tt>.
+     *
+     * @param B
+     *            A matrix with as many rows as <tt>A</tt> and any number of
+     *            columns.
+     * @return <tt>X</tt>; a new matrix.
+     * @exception IllegalArgumentException
+     *                if </tt>B.rows() != A.rows()</tt>.
+     */
+    public DoubleMatrix2D solve(DoubleMatrix2D B) {
+        if (B.rows() != n)
+            throw new IllegalArgumentException("B.rows() != A.rows()");
+        final DoubleMatrix2D X = B.copy();
+        int columns = X.columns();
+        boolean dense = X instanceof DenseDoubleMatrix2D || X instanceof DenseColumnDoubleMatrix2D;
+        int minColumns = (dense && ConcurrencyUtils.getNumberOfThreads() > 1 && (long) l.length * columns >= ConcurrencyTuning
+                .getThreadsBeginN_2D(ConcurrencyTuning.SPMV)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, columns, minColumns, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstColumn, int lastColumn) {
+                for (int c = firstColumn; c < lastColumn; c++) {
+                    DoubleMatrix1D column = X.viewColumn(c);
+                    double[] x = column.toArray();
+                    solve(x);
+                    column.assign(x);
+                }
+            }
+        });
+        return X;
+    }
+
+    /**
+     * Solves <tt>A*x = b</tt>.
+     *
+     * @param b
+     *            A vector of size <tt>A.rows()</tt>
+     * @return <tt>x</tt>; a new vector.
+     * @exception IllegalArgumentException
+     *                if </tt>b.size() != A.rows()</tt>.
+     */
+    public DoubleMatrix1D solve(DoubleMatrix1D b) {
+        if (b.size() != n)
+            throw new IllegalArgumentException("b.size() != A.rows()");
+        double[] x = b.toArray();
+        solve(x);
+        DoubleMatrix1D result = b.like();
+        result.assign(x);
+        return result;
+    }
+
+    private void factor() {
+        int ldab = kd + 1;
+        for (int j = 0; j < n; j++) {
+            int diag = j * ldab;
+            double ajj = l[diag];
+            if (ajj <= 0) {
+                throw new IllegalArgumentException("Matrix is not symmetric positive definite.");
+            }
+            ajj = Math.sqrt(ajj);
+            l[diag] = ajj;
+            int kn = Math.min(kd, n - 1 - j);
+            double r = 1 / ajj;
+            for (int t = 1; t <= kn; t++) {
+                l[diag + t] *= r;
+            }
+            // symmetric rank one update of the trailing kn x kn block
+            for (int c = 1; c <= kn; c++) {
+                double a = l[diag + c];
+                if (a != 0) {
+                    for (int t = c, idx = (j + c) * ldab; t <= kn; t++) {
+                        l[idx + t - c] -= l[diag + t] * a;
+                    }
+                }
+            }
+        }
+    }
+
+    private void solve(double[] x) {
+        int ldab = kd + 1;
+        // L*y = b
+        for (int j = 0; j < n; j++) {
+            int diag = j * ldab;
+            double xj = (x[j] /= l[diag]);
+            if (xj != 0) {
+                for (int t = 1, kn = Math.min(kd, n - 1 - j); t <= kn; t++) {
+                    x[j + t] -= l[diag + t] * xj;
+                }
+            }
+        }
+        // L'*x = y
+        for (int j = n; --j >= 0;) {
+            int diag = j * ldab;
+            double sum = x[j];
+            for (int t = 1, kn = Math.min(kd, n - 1 - j); t <= kn; t++) {
+                sum -= l[diag + t] * x[j + t];
+            }
+            x[j] = sum / l[diag];
+        }
+    }
+}
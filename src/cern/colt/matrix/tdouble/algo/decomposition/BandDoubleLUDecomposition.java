@@ -0,0 +1,325 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DoubleProperty;
+import cern.colt.matrix.tdouble.impl.BandDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * LU decomposition with partial pivoting of a square band matrix, as computed
+ * by LAPACK's <tt>dgbtrf</tt>. For an <tt>n x n</tt> matrix <tt>A</tt> with
+ * <tt>kl</tt> subdiagonals and <tt>ku</tt> superdiagonals, <tt>U</tt> is an
+ * upper triangular band matrix with <tt>kl + ku</tt> superdiagonals, and
+ * <tt>L</tt> is a product of permutations and unit lower triangular band
+ * matrices with <tt>kl</tt> subdiagonals. The factorization and each solve
+ * take <tt>O(n*kl*(kl + ku))</tt> operations; right-hand sides are solved
+ * concurrently.
+ * <P>
+ * The LU decomposition with pivoting always exists, even if the matrix is
+ * singular, so the constructor will never fail. The primary use of the LU
+ * decomposition is in the solution of square systems of simultaneous linear
+ * equations. This will fail if <tt>isNonsingular()</tt> returns false.
+ */
+public class BandDoubleLUDecomposition implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int n;
+
+    private final int kl;
+
+    private final int kv;
+
+    private final int ldab;
+
+    /*
+     * U and the multipliers of L in band storage with kl + ku superdiagonals.
+     */
+    private final double[] lu;
+
+    /*
+     * Row i was interchanged with row piv[i].
+     */
+    private final int[] piv;
+
+    private boolean isNonSingular = true;
+
+    /**
+     * Constructs and returns a new LU Decomposition object; The decomposed
+     * matrices can be retrieved via instance methods of the returned
+     * decomposition object.
+     *
+     * @param A
+     *            square band matrix.
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square.
+     */
+    public BandDoubleLUDecomposition(BandDoubleMatrix2D A) {
+        DoubleProperty.DEFAULT.checkSquare(A);
+        n = A.rows();
+        kl = A.lowerBandwidth();
+        int ku = A.upperBandwidth();
+        kv = kl + ku;
+        // the row interchanges fill in kl more superdiagonals
+        BandDoubleMatrix2D LU = new BandDoubleMatrix2D(n, n, kl, kv);
+        LU.assign(A);
+        lu = LU.elements();
+        ldab = kl + kv + 1;
+        piv = new int[n];
+        factor();
+    }
+
+    /**
+     * Returns the determinant, <tt>det(A)</tt>.
+     */
+    public double det() {
+        double det = 1;
+        for (int j = 0; j < n; j++) {
+            det *= lu[kv + j * ldab];
+            if (piv[j] != j) {
+                det = -det;
+            }
+        }
+        return det;
+    }
+
+    /**
+     * Returns the upper triangular factor, <tt>U</tt>.
+     *
+     * @return <tt>U</tt>
+     */
+    public BandDoubleMatrix2D getU() {
+        BandDoubleMatrix2D U = new BandDoubleMatrix2D(n, n, 0, kv);
+        double[] u = U.elements();
+        for (int j = 0; j < n; j++) {
+            System.arraycopy(lu, j * ldab, u, j * (kv + 1), kv + 1);
+        }
+        return U;
+    }
+
+    /**
+     * Returns whether the matrix is nonsingular (has an inverse).
+     *
+     * @return true if <tt>U</tt>, and hence <tt>A</tt>, is nonsingular; false
+     *         otherwise.
+     */
+    public boolean isNonsingular() {
+        return isNonSingular;
+    }
+
+    /**
+     * Solves <tt>A*X = B</tt>.
+     *
+     * @param B
+     *            A matrix with as many rows as <tt>A</tt> and any number of
+     *            columns.
+     * @return <tt>X</tt>; a new matrix.
+     * @exception IllegalArgumentException
+     *                if </tt>B.rows() != A.rows()</tt>.
+     * @exception IllegalArgumentException
+     *                if A is singular, that is, if
+     *                <tt>!this.isNonsingular()</tt>.
+     */
+    public DoubleMatrix2D solve(DoubleMatrix2D B) {
+        return solve(B, false);
+    }
+
+    /**
+     * Solves <tt>A*x = b</tt>.
+     *
+     * @param b
+     *            A vector of size <tt>A.rows()</tt>
+     * @return <tt>x</tt>; a new vector.
+     * @exception IllegalArgumentException
+     *                if </tt>b.size() != A.rows()</tt>.
+     * @exception IllegalArgumentException
+     *                if A is singular, that is, if
+     *                <tt>!this.isNonsingular()</tt>.
+     */
+    public DoubleMatrix1D solve(DoubleMatrix1D b) {
+        return solve(b, false);
+    }
+
+    /**
+     * Solves <tt>A'*x = b</tt>.
+     *
+     * @param b
+     *            A vector of size <tt>A.rows()</tt>
+     * @return <tt>x</tt>; a new vector.
+     * @exception IllegalArgumentException
+     *                if </tt>b.size() != A.rows()</tt>.
+     * @exception IllegalArgumentException
+     *                if A is singular, that is, if
+     *                <tt>!this.isNonsingular()</tt>.
+     */
+    public DoubleMatrix1D solveTranspose(DoubleMatrix1D b) {
+        return solve(b, true);
+    }
+
+    /**
+     * Returns a String with the size, the bandwidths and whether the matrix is
+     * nonsingular.
+     */
+    public String toString() {
+        return "BandDoubleLUDecomposition(n=" + n + ", kl=" + kl + ", ku=" + (kv - kl) + ", nonsingular="
+                + isNonSingular + ")";
+    }
+
+    private void factor() {
+        for (int j = 0; j < n; j++) {
+            piv[j] = j;
+        }
+        // the last column of U reached by a row interchange so far
+        int ju = 0;
+        for (int j = 0; j < n; j++) {
+            int km = Math.min(kl, n - 1 - j);
+            int diag = kv + j * ldab;
+            // find the pivot in column j
+            int jp = 0;
+            double max = Math.abs(lu[diag]);
+            for (int t = 1; t <= km; t++) {
+                double abs = Math.abs(lu[diag + t]);
+                if (abs > max) {
+                    max = abs;
+                    jp = t;
+                }
+            }
+            piv[j] = j + jp;
+            if (lu[diag + jp] == 0) {
+                isNonSingular = false;
+                continue;
+            }
+            ju = Math.max(ju, Math.min(j + kv - kl + jp, n - 1));
+            if (jp != 0) {
+                // interchange rows j and j + jp in columns j, ..., ju
+                for (int c = j, idx = diag; c <= ju; c++, idx += ldab - 1) {
+                    double t = lu[idx];
+                    lu[idx] = lu[idx + jp];
+                    lu[idx + jp] = t;
+                }
+            }
+            if (km > 0) {
+                double r = 1 / lu[diag];
+                for (int t = 1; t <= km; t++) {
+                    lu[diag + t] *= r;
+                }
+                // rank one update of the trailing band
+                for (int c = j + 1, idx = diag + ldab - 1; c <= ju; c++, idx += ldab - 1) {
+                    double a = lu[idx];
+                    if (a != 0) {
+                        for (int t = 1; t <= km; t++) {
+                            lu[idx + t] -= lu[diag + t] * a;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private DoubleMatrix1D solve(DoubleMatrix1D b, boolean transpose) {
+        if (b.size() != n)
+            throw new IllegalArgumentException("b.size() != A.rows()");
+        if (!isNonSingular)
+            throw new IllegalArgumentException("Matrix is singular.");
+        double[] x = b.toArray();
+        if (transpose) {
+            solveTranspose(x);
+        } else {
+            solve(x);
+        }
+        DoubleMatrix1D result = b.like();
+        result.assign(x);
+        return result;
+    }
+
+    private DoubleMatrix2D solve(DoubleMatrix2D B, final boolean transpose) {
+        if (B.rows() != n)
+            throw new IllegalArgumentException("B.rows() != A.rows()");
+        if (!isNonSingular)
+            throw new IllegalArgumentException("Matrix is singular.");
+        final DoubleMatrix2D X = B.copy();
+        int columns = X.columns();
+        boolean dense = X instanceof DenseDoubleMatrix2D || X instanceof DenseColumnDoubleMatrix2D;
+        int minColumns = (dense && ConcurrencyUtils.getNumberOfThreads() > 1 && (long) lu.length * columns >= ConcurrencyTuning
+                .getThreadsBeginN_2D(ConcurrencyTuning.SPMV)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, columns, minColumns, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstColumn, int lastColumn) {
+                for (int c = firstColumn; c < lastColumn; c++) {
+                    DoubleMatrix1D column = X.viewColumn(c);
+                    double[] x = column.toArray();
+                    if (transpose) {
+                        solveTranspose(x);
+                    } else {
+                        solve(x);
+                    }
+                    column.assign(x);
+                }
+            }
+        });
+        return X;
+    }
+
+    private void solve(double[] x) {
+        // L*y = P*b
+        for (int j = 0; j < n - 1; j++) {
+            int l = piv[j];
+            double xj = x[l];
+            if (l != j) {
+                x[l] = x[j];
+                x[j] = xj;
+            }
+            if (xj != 0) {
+                for (int t = 1, km = Math.min(kl, n - 1 - j), idx = kv + j * ldab; t <= km; t++) {
+                    x[j + t] -= lu[idx + t] * xj;
+                }
+            }
+        }
+        // U*x = y, column by column
+        for (int j = n; --j >= 0;) {
+            int diag = kv + j * ldab;
+            double xj = (x[j] /= lu[diag]);
+            if (xj != 0) {
+                for (int i = Math.max(0, j - kv); i < j; i++) {
+                    x[i] -= lu[diag + i - j] * xj;
+                }
+            }
+        }
+    }
+
+    private void solveTranspose(double[] x) {
+        // U'*y = b
+        for (int j = 0; j < n; j++) {
+            int diag = kv + j * ldab;
+            double sum = x[j];
+            for (int i = Math.max(0, j - kv); i < j; i++) {
+                sum -= lu[diag + i - j] * x[i];
+            }
+            x[j] = sum / lu[diag];
+        }
+        // L'*P*x = y
+        for (int j = n - 1; --j >= 0;) {
+            double sum = x[j];
+            for (int t = 1, km = Math.min(kl, n - 1 - j), idx = kv + j * ldab; t <= km; t++) {
+                sum -= lu[idx + t] * x[j + t];
+            }
+            x[j] = sum;
+            int l = piv[j];
+            if (l != j) {
+                x[j] = x[l];
+                x[l] = sum;
+            }
+        }
+    }
+}
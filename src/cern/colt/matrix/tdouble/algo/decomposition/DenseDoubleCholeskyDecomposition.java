@@ -13,6 +13,7 @@ import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.algo.DoubleProperty;
 import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
 import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.PackedTriangularDoubleMatrix2D;
 import edu.emory.mathcs.jplasma.tdouble.Dplasma;
 
 /**
@@ -20,6 +21,10 @@ import edu.emory.mathcs.jplasma.tdouble.Dplasma;
  * decomposition is a lower triangular matrix <tt>L</tt> so that <tt>A = L*L'</tt>; If
  * the matrix is not symmetric positive definite, the IllegalArgumentException
  * is thrown.
+ * <p>
+ * The factor can be modified in place to the factor of <tt>A + x*x'</tt> or
+ * <tt>A - x*x'</tt> in <tt>O(n^2)</tt> operations, see
+ * {@link #update(DoubleMatrix1D)} and {@link #downdate(DoubleMatrix1D)}.
  */
 public class DenseDoubleCholeskyDecomposition implements java.io.Serializable {
     static final long serialVersionUID = 1020;
@@ -65,6 +70,25 @@ public class DenseDoubleCholeskyDecomposition implements java.io.Serializable {
         }
     }
 
+    /**
+     * Constructs a copy of the given decomposition.
+     */
+    private DenseDoubleCholeskyDecomposition(DenseDoubleCholeskyDecomposition other) {
+        elementsA = other.elementsA.clone();
+        columnMatrix = other.columnMatrix;
+        n = other.n;
+    }
+
+    /**
+     * Returns a copy of this decomposition, which can be updated without
+     * affecting the receiver.
+     * 
+     * @return a deep copy of the receiver.
+     */
+    public DenseDoubleCholeskyDecomposition copy() {
+        return new DenseDoubleCholeskyDecomposition(this);
+    }
+
     /**
      * Returns the triangular factor, <tt>L</tt>.
      * 
@@ -95,6 +119,23 @@ public class DenseDoubleCholeskyDecomposition implements java.io.Serializable {
         }
     }
 
+    /**
+     * Returns the triangular factor, <tt>L</tt>, in packed storage, which holds
+     * only the <tt>n*(n+1)/2</tt> elements of the lower triangle.
+     * 
+     * @return <tt>L</tt>
+     */
+    public PackedTriangularDoubleMatrix2D getLPacked() {
+        PackedTriangularDoubleMatrix2D L = new PackedTriangularDoubleMatrix2D(n, false);
+        double[] Lelems = L.elements();
+        // row r of L is stored contiguously in both layouts
+        for (int r = 0, idx = 0; r < n; r++) {
+            System.arraycopy(elementsA, r * n, Lelems, idx, r + 1);
+            idx += r + 1;
+        }
+        return L;
+    }
+
     public DoubleMatrix2D getLtranspose() {
         if (Lt != null) {
             return Lt;
@@ -194,6 +235,98 @@ public class DenseDoubleCholeskyDecomposition implements java.io.Serializable {
         }
     }
 
+    /**
+     * Replaces this decomposition with the Cholesky decomposition of
+     * <tt>A + x*x'</tt> (rank-1 update). The factor is modified in place by
+     * Givens rotations in <tt>O(n^2)</tt> operations.
+     *
+     * @param x
+     *            a vector of size <tt>A.rows()</tt>.
+     * @exception IllegalArgumentException
+     *                if <tt>x.size() != A.rows()</tt>.
+     */
+    public void update(DoubleMatrix1D x) {
+        if (x.size() != n) {
+            throw new IllegalArgumentException("x.size() != A.rows()");
+        }
+        double[] elementsX = x.toArray();
+        double[] c = new double[n];
+        double[] s = new double[n];
+        // elementsA holds Lt column by column: Lt[i][j] = elementsA[j * n + i]
+        for (int j = 0; j < n; j++) {
+            int idx = j * n;
+            double xj = elementsX[j];
+            for (int i = 0; i < j; i++) {
+                double t = c[i] * elementsA[idx + i] + s[i] * xj;
+                xj = c[i] * xj - s[i] * elementsA[idx + i];
+                elementsA[idx + i] = t;
+            }
+            double rjj = elementsA[idx + j];
+            double r = Math.sqrt(rjj * rjj + xj * xj);
+            c[j] = rjj / r;
+            s[j] = xj / r;
+            elementsA[idx + j] = r;
+        }
+        Lt = null;
+    }
+
+    /**
+     * Replaces this decomposition with the Cholesky decomposition of
+     * <tt>A - x*x'</tt> (rank-1 downdate). The factor is modified in place in
+     * <tt>O(n^2)</tt> operations. If <tt>A - x*x'</tt> is not positive
+     * definite the decomposition is left unchanged.
+     *
+     * @param x
+     *            a vector of size <tt>A.rows()</tt>.
+     * @exception IllegalArgumentException
+     *                if <tt>x.size() != A.rows()</tt> or if <tt>A - x*x'</tt>
+     *                is not positive definite.
+     */
+    public void downdate(DoubleMatrix1D x) {
+        if (x.size() != n) {
+            throw new IllegalArgumentException("x.size() != A.rows()");
+        }
+        // solve L*p = x
+        double[] p = x.toArray();
+        double norm = 0;
+        for (int i = 0; i < n; i++) {
+            int idx = i * n;
+            double sum = p[i];
+            for (int k = 0; k < i; k++) {
+                sum -= elementsA[idx + k] * p[k];
+            }
+            p[i] = sum / elementsA[idx + i];
+            norm += p[i] * p[i];
+        }
+        if (!(norm < 1)) {
+            throw new IllegalArgumentException("Downdated matrix is not positive definite.");
+        }
+        // rotations that reduce (p, alpha) to a multiple of the last unit
+        // vector, as in LINPACK's dchdd
+        double[] c = new double[n];
+        double[] s = new double[n];
+        double alpha = Math.sqrt(1 - norm);
+        for (int i = n; --i >= 0;) {
+            double scale = alpha + Math.abs(p[i]);
+            double a = alpha / scale;
+            double b = p[i] / scale;
+            norm = Math.sqrt(a * a + b * b);
+            c[i] = a / norm;
+            s[i] = b / norm;
+            alpha = scale * norm;
+        }
+        for (int j = 0; j < n; j++) {
+            int idx = j * n;
+            double xx = 0;
+            for (int i = j; i >= 0; i--) {
+                double t = c[i] * xx + s[i] * elementsA[idx + i];
+                elementsA[idx + i] = c[i] * elementsA[idx + i] - s[i] * xx;
+                xx = t;
+            }
+        }
+        Lt = null;
+    }
+
     /**
      * Returns a String with (propertyName, propertyValue) pairs. Useful for
      * debugging or to quickly get the rough picture. For example,
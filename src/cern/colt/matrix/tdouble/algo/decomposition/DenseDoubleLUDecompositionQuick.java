@@ -8,10 +8,14 @@ It is provided "as is" without expressed or implied warranty.
  */
 package cern.colt.matrix.tdouble.algo.decomposition;
 
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.algo.DenseDoubleAlgebra;
 import cern.colt.matrix.tdouble.algo.DoubleProperty;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
 
 /**
  * A low level version of {@link DenseDoubleLUDecomposition}, avoiding
@@ -54,6 +58,16 @@ import cern.colt.matrix.tdouble.algo.DoubleProperty;
 public class DenseDoubleLUDecompositionQuick implements java.io.Serializable {
     static final long serialVersionUID = 1020;
 
+    /*
+     * Number of columns of a panel of the blocked decomposition.
+     */
+    private static final int BLOCK_SIZE = 64;
+
+    /*
+     * Panels of at most this many columns are factorized without recursion.
+     */
+    private static final int PANEL_BASE = 8;
+
     /**
      * Array for internal storage of decomposition.
      * 
@@ -105,7 +119,10 @@ public class DenseDoubleLUDecompositionQuick implements java.io.Serializable {
      * Decomposes matrix <tt>A</tt> into <tt>L</tt> and <tt>U</tt> (in-place).
      * Upon return <tt>A</tt> is overridden with the result <tt>LU</tt>, such
      * that <tt>L*U = A</tt>. Uses a "left-looking", dot-product,
-     * Crout/Doolittle algorithm.
+     * Crout/Doolittle algorithm. Large {@link DenseDoubleMatrix2D} matrices
+     * are decomposed by a blocked "right-looking" algorithm instead: panels of
+     * columns are factorized recursively, and the trailing matrix is updated
+     * by concurrent matrix-matrix multiplications.
      * 
      * @param A
      *            any matrix.
@@ -129,6 +146,12 @@ public class DenseDoubleLUDecompositionQuick implements java.io.Serializable {
             return; // nothing to do
         }
 
+        if (A instanceof DenseDoubleMatrix2D && A.elements() != null && Math.min(m, n) > BLOCK_SIZE) {
+            decomposeBlocked(A);
+            setLU(LU);
+            return;
+        }
+
         // precompute and cache some views to avoid regenerating them time and
         // again
         DoubleMatrix1D[] LUrows = new DoubleMatrix1D[m];
@@ -207,6 +230,143 @@ public class DenseDoubleLUDecompositionQuick implements java.io.Serializable {
         setLU(LU);
     }
 
+    /*
+     * Right-looking LU decomposition with partial pivoting, as LAPACK's
+     * dgetrf: factorizes a panel of BLOCK_SIZE columns, applies its row
+     * interchanges to the other columns, computes the block row of U and
+     * updates the trailing matrix.
+     */
+    private void decomposeBlocked(final DoubleMatrix2D A) {
+        int m = A.rows();
+        int n = A.columns();
+        final double[] a = (double[]) A.elements();
+        final int zero = (int) A.index(0, 0);
+        final int rs = A.rowStride();
+        final int cs = A.columnStride();
+        final int[] ipiv = new int[Math.min(m, n)];
+        for (int j = 0; j < ipiv.length; j += BLOCK_SIZE) {
+            final int first = j;
+            final int jb = Math.min(BLOCK_SIZE, ipiv.length - j);
+            factorPanel(A, a, zero, rs, cs, ipiv, j, jb);
+            swapRows(a, zero, rs, cs, ipiv, j, j + jb, 0, j);
+            if (j + jb < n) {
+                int minColumns = Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ZMULT)
+                        / (jb * jb));
+                ForkJoinUtils.invoke(j + jb, n, minColumns, new ForkJoinUtils.RangeProcedure() {
+                    public void apply(int firstColumn, int lastColumn) {
+                        swapRows(a, zero, rs, cs, ipiv, first, first + jb, firstColumn, lastColumn);
+                        solveUnitLower(a, zero, rs, cs, first, jb, firstColumn, lastColumn);
+                    }
+                });
+                if (j + jb < m) {
+                    A.viewPart(j + jb, j, m - j - jb, jb).zMult(A.viewPart(j, j + jb, jb, n - j - jb),
+                            A.viewPart(j + jb, j + jb, m - j - jb, n - j - jb), -1, 1, false, false);
+                }
+            }
+        }
+        for (int k = 0; k < ipiv.length; k++) {
+            int p = ipiv[k];
+            if (p != k) {
+                int t = piv[p];
+                piv[p] = piv[k];
+                piv[k] = t;
+                pivsign = -pivsign;
+            }
+        }
+    }
+
+    /*
+     * Factorizes the columns j0, ..., j0 + w - 1 of rows j0, ..., m - 1 by
+     * splitting them into two halves; the row interchanges are applied within
+     * the panel only.
+     */
+    private void factorPanel(DoubleMatrix2D A, double[] a, int zero, int rs, int cs, int[] ipiv, int j0, int w) {
+        int m = A.rows();
+        if (w <= PANEL_BASE) {
+            for (int j = j0; j < j0 + w; j++) {
+                int idx = zero + j * rs + j * cs;
+                // find pivot
+                int p = j;
+                double max = Math.abs(a[idx]);
+                for (int i = j + 1, k = idx + rs; i < m; i++, k += rs) {
+                    double v = Math.abs(a[k]);
+                    if (v > max) {
+                        p = i;
+                        max = v;
+                    }
+                }
+                ipiv[j] = p;
+                if (p != j) {
+                    for (int c = j0, k = zero + j * rs + j0 * cs, d = (p - j) * rs; c < j0 + w; c++, k += cs) {
+                        double t = a[k];
+                        a[k] = a[k + d];
+                        a[k + d] = t;
+                    }
+                }
+                double jj = a[idx];
+                if (jj == 0) {
+                    continue;
+                }
+                // compute multipliers and update the rest of the panel
+                double r = 1 / jj;
+                for (int i = j + 1, k = idx + rs; i < m; i++, k += rs) {
+                    double l = (a[k] *= r);
+                    if (l != 0) {
+                        for (int c = j + 1, kc = k + cs, kj = idx + cs; c < j0 + w; c++, kc += cs, kj += cs) {
+                            a[kc] -= l * a[kj];
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        int w1 = w / 2;
+        int w2 = w - w1;
+        factorPanel(A, a, zero, rs, cs, ipiv, j0, w1);
+        swapRows(a, zero, rs, cs, ipiv, j0, j0 + w1, j0 + w1, j0 + w);
+        solveUnitLower(a, zero, rs, cs, j0, w1, j0 + w1, j0 + w);
+        A.viewPart(j0 + w1, j0, m - j0 - w1, w1).zMult(A.viewPart(j0, j0 + w1, w1, w2),
+                A.viewPart(j0 + w1, j0 + w1, m - j0 - w1, w2), -1, 1, false, false);
+        factorPanel(A, a, zero, rs, cs, ipiv, j0 + w1, w2);
+        swapRows(a, zero, rs, cs, ipiv, j0 + w1, j0 + w, j0, j0 + w1);
+    }
+
+    /*
+     * Interchanges row k with row ipiv[k] for k = k0, ..., k1 - 1 in the
+     * columns c0, ..., c1 - 1.
+     */
+    private static void swapRows(double[] a, int zero, int rs, int cs, int[] ipiv, int k0, int k1, int c0, int c1) {
+        for (int k = k0; k < k1; k++) {
+            int p = ipiv[k];
+            if (p != k) {
+                for (int c = c0, idx = zero + k * rs + c0 * cs, d = (p - k) * rs; c < c1; c++, idx += cs) {
+                    double t = a[idx];
+                    a[idx] = a[idx + d];
+                    a[idx + d] = t;
+                }
+            }
+        }
+    }
+
+    /*
+     * Overwrites the rows j0, ..., j0 + w - 1 of the columns c0, ..., c1 - 1
+     * with the solution of L*X = B, where L is the unit lower triangular
+     * diagonal block of the rows.
+     */
+    private static void solveUnitLower(double[] a, int zero, int rs, int cs, int j0, int w, int c0, int c1) {
+        for (int i = j0 + 1; i < j0 + w; i++) {
+            int rowI = zero + i * rs;
+            for (int k = j0; k < i; k++) {
+                double l = a[rowI + k * cs];
+                if (l != 0) {
+                    for (int c = c0, idx = rowI + c0 * cs, d = (k - i) * rs; c < c1; c++, idx += cs) {
+                        a[idx] -= l * a[idx + d];
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Decomposes the banded and square matrix <tt>A</tt> into <tt>L</tt> and
      * <tt>U</tt> (in-place). Upon return <tt>A</tt> is overridden with the
@@ -532,7 +692,9 @@ public class DenseDoubleLUDecompositionQuick implements java.io.Serializable {
     /**
      * Solves the system of equations <tt>A*X = B</tt> (in-place). Upon return
      * <tt>B</tt> is overridden with the result <tt>X</tt>, such that
-     * <tt>L*U*X = B(piv,:)</tt>.
+     * <tt>L*U*X = B(piv,:)</tt>. If <tt>LU</tt> and <tt>B</tt> are dense, the
+     * triangular systems are solved by blocks of rows, and the other rows are
+     * updated by concurrent matrix-matrix multiplications.
      * 
      * @param B
      *            A matrix with as many rows as <tt>A</tt> and any number of
@@ -564,6 +726,10 @@ public class DenseDoubleLUDecompositionQuick implements java.io.Serializable {
 
         if (m * n == 0)
             return; // nothing to do
+        if (isDense(LU) && isDense(B)) {
+            solveBlocked(B);
+            return;
+        }
         int nx = B.columns();
 
         // precompute and cache some views to avoid regenerating them time and
@@ -649,6 +815,84 @@ public class DenseDoubleLUDecompositionQuick implements java.io.Serializable {
         }
     }
 
+    /*
+     * Solves L*U*X = B for the permuted dense B, BLOCK_SIZE rows at a time: the
+     * diagonal blocks are solved concurrently for ranges of columns, then the
+     * remaining rows are updated by a matrix-matrix multiplication.
+     */
+    private void solveBlocked(final DoubleMatrix2D B) {
+        final int n = n();
+        final int nx = B.columns();
+        final double[] lu = (double[]) LU.elements();
+        final int luZero = (int) LU.index(0, 0);
+        final int luRs = LU.rowStride();
+        final int luCs = LU.columnStride();
+        final double[] b = (double[]) B.elements();
+        final int bZero = (int) B.index(0, 0);
+        final int bRs = B.rowStride();
+        final int bCs = B.columnStride();
+        // Solve L*Y = B(piv,:)
+        for (int j = 0; j < n; j += BLOCK_SIZE) {
+            final int first = j;
+            final int jb = Math.min(BLOCK_SIZE, n - j);
+            int minColumns = Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ZMULT) / (jb * jb));
+            ForkJoinUtils.invoke(0, nx, minColumns, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int firstColumn, int lastColumn) {
+                    for (int i = first + 1; i < first + jb; i++) {
+                        int rowI = bZero + i * bRs;
+                        for (int k = first; k < i; k++) {
+                            double l = lu[luZero + i * luRs + k * luCs];
+                            if (l != 0) {
+                                int d = (k - i) * bRs;
+                                for (int c = firstColumn, idx = rowI + c * bCs; c < lastColumn; c++, idx += bCs) {
+                                    b[idx] -= l * b[idx + d];
+                                }
+                            }
+                        }
+                    }
+                }
+            });
+            if (j + jb < n) {
+                LU.viewPart(j + jb, j, n - j - jb, jb).zMult(B.viewPart(j, 0, jb, nx),
+                        B.viewPart(j + jb, 0, n - j - jb, nx), -1, 1, false, false);
+            }
+        }
+        // Solve U*X = Y
+        for (int j = (n - 1) / BLOCK_SIZE * BLOCK_SIZE; j >= 0; j -= BLOCK_SIZE) {
+            final int first = j;
+            final int jb = Math.min(BLOCK_SIZE, n - j);
+            int minColumns = Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ZMULT) / (jb * jb));
+            ForkJoinUtils.invoke(0, nx, minColumns, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int firstColumn, int lastColumn) {
+                    for (int i = first + jb; --i >= first;) {
+                        int rowI = bZero + i * bRs;
+                        for (int k = i + 1; k < first + jb; k++) {
+                            double u = lu[luZero + i * luRs + k * luCs];
+                            if (u != 0) {
+                                int d = (k - i) * bRs;
+                                for (int c = firstColumn, idx = rowI + c * bCs; c < lastColumn; c++, idx += bCs) {
+                                    b[idx] -= u * b[idx + d];
+                                }
+                            }
+                        }
+                        double ii = lu[luZero + i * luRs + i * luCs];
+                        for (int c = firstColumn, idx = rowI + c * bCs; c < lastColumn; c++, idx += bCs) {
+                            b[idx] /= ii;
+                        }
+                    }
+                }
+            });
+            if (j > 0) {
+                LU.viewPart(0, j, j, jb).zMult(B.viewPart(j, 0, jb, nx), B.viewPart(0, 0, j, nx), -1, 1, false,
+                        false);
+            }
+        }
+    }
+
+    private static boolean isDense(DoubleMatrix2D A) {
+        return (A instanceof DenseDoubleMatrix2D || A instanceof DenseColumnDoubleMatrix2D) && A.elements() != null;
+    }
+
     /**
      * Solves <tt>A*X = B</tt>.
      * 
@@ -8,6 +8,8 @@ It is provided "as is" without expressed or implied warranty.
  */
 package cern.colt.matrix.tdouble.algo.decomposition;
 
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.algo.DoubleProperty;
@@ -25,6 +27,13 @@ import edu.emory.mathcs.jplasma.tdouble.Dplasma;
  * decomposition is in the least squares solution of nonsquare systems of
  * simultaneous linear equations. This will fail if <tt>isFullRank()</tt>
  * returns <tt>false</tt>.
+ * <P>
+ * The decomposition can be modified in place to that of a rank-1 update of
+ * <tt>A</tt>, or of <tt>A</tt> with a row or column inserted or removed, in
+ * <tt>O(m*n)</tt> operations. The first such modification forms the first
+ * <tt>n</tt> columns of <tt>Q</tt> explicitly; Givens rotations are then
+ * applied to them and to <tt>R</tt>, which are kept in arrays with spare rows
+ * and columns so that inserting does not reallocate every time.
  * 
  * @author Piotr Wendykier (piotr.wendykier@gmail.com)
  */
@@ -38,6 +47,21 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
      */
     private double[] elementsA;
 
+    /**
+     * Leading dimension of <tt>elementsA</tt>: <tt>m</tt> for the Householder
+     * representation, the row capacity of <tt>R</tt> once it is updated.
+     */
+    private int lda;
+
+    /**
+     * The first <tt>n</tt> columns of <tt>Q</tt> once the decomposition has
+     * been updated, and room for more, with leading dimension <tt>ldq</tt>;
+     * null before.
+     */
+    private double[] elementsQ;
+
+    private int ldq;
+
     private double[] T;
 
     private boolean columnMatrix = false;
@@ -77,7 +101,7 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
         }
         m = A.rows();
         n = A.columns();
-        int lda = m;
+        lda = m;
         Dplasma.plasma_Init(m, n, 1);
         T = Dplasma.plasma_Allocate_T(m, n);
         int info = Dplasma.plasma_DGEQRF(m, n, elementsA, 0, lda, T, 0);
@@ -87,6 +111,34 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
         }
     }
 
+    /**
+     * Constructs a copy of the given decomposition. The factors <tt>Q</tt>
+     * and <tt>R</tt> formed so far are shared, since they are never modified
+     * in place.
+     */
+    private DenseDoubleQRDecomposition(DenseDoubleQRDecomposition other) {
+        elementsA = other.elementsA.clone();
+        lda = other.lda;
+        elementsQ = (other.elementsQ != null) ? other.elementsQ.clone() : null;
+        ldq = other.ldq;
+        T = other.T;
+        columnMatrix = other.columnMatrix;
+        R = other.R;
+        Q = other.Q;
+        m = other.m;
+        n = other.n;
+    }
+
+    /**
+     * Returns a copy of this decomposition, which can be updated without
+     * affecting the receiver.
+     * 
+     * @return a deep copy of the receiver.
+     */
+    public DenseDoubleQRDecomposition copy() {
+        return new DenseDoubleQRDecomposition(this);
+    }
+
     /**
      * Generates and returns a copy of the orthogonal factor <tt>Q</tt>.
      * 
@@ -96,6 +148,29 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
      * @return <tt>Q</tt>
      */
     public DoubleMatrix2D getQ(boolean economySize) {
+        if (T == null) {
+            return getUpdatedQ(economySize);
+        }
+        factorQ();
+        if (!columnMatrix) {
+            if (economySize) {
+                return ((DenseColumnDoubleMatrix2D) Q.viewPart(0, 0, m, n)).getRowMajor();
+            } else {
+                return ((DenseColumnDoubleMatrix2D) Q).getRowMajor();
+            }
+        } else {
+            if (economySize) {
+                return Q.viewPart(0, 0, m, n).copy();
+            } else {
+                return Q.copy();
+            }
+        }
+    }
+
+    /*
+     * Forms the m x m matrix Q.
+     */
+    private void factorQ() {
         if (Q == null) {
             Dplasma.plasma_Init(m, n, 1);
             Q = new DenseColumnDoubleMatrix2D(m, m);
@@ -110,19 +185,46 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
             }
             Q = Q.viewDice().copy();
         }
-        if (!columnMatrix) {
-            if (economySize) {
-                return ((DenseColumnDoubleMatrix2D) Q.viewPart(0, 0, m, n)).getRowMajor();
-            } else {
-                return ((DenseColumnDoubleMatrix2D) Q).getRowMajor();
+    }
+
+    /*
+     * Returns a copy of Q after the decomposition has been updated, completing
+     * the stored columns by those of the QR decomposition of them if the full
+     * matrix is asked for.
+     */
+    private DoubleMatrix2D getUpdatedQ(boolean economySize) {
+        DenseColumnDoubleMatrix2D Qc = new DenseColumnDoubleMatrix2D(m, economySize ? n : m);
+        double[] elementsQc = Qc.elements();
+        if (!economySize) {
+            double[] H = new double[m * m];
+            for (int i = 0; i < m; i++)
+                H[m * i + i] = 1.0;
+            double[] Q1 = new double[m * n];
+            for (int j = 0; j < n; j++) {
+                System.arraycopy(elementsQ, j * ldq, Q1, j * m, m);
             }
-        } else {
-            if (economySize) {
-                return Q.viewPart(0, 0, m, n).copy();
-            } else {
-                return Q.copy();
+            Dplasma.plasma_Init(m, n, 1);
+            double[] T1 = Dplasma.plasma_Allocate_T(m, n);
+            int info = Dplasma.plasma_DGEQRF(m, n, Q1, 0, m, T1, 0);
+            if (info == 0) {
+                info = Dplasma.plasma_DORMQR(Dplasma.PlasmaLeft, Dplasma.PlasmaNoTrans, m, m, n, Q1, 0, m, T1, 0, H,
+                        0, m);
             }
+            Dplasma.plasma_Finalize();
+            if (info != 0) {
+                throw new IllegalArgumentException("Error occured while computing matrix Q: " + info);
+            }
+            // H holds the transpose, see factorQ()
+            for (int j = n; j < m; j++) {
+                for (int i = 0; i < m; i++) {
+                    elementsQc[j * m + i] = H[i * m + j];
+                }
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            System.arraycopy(elementsQ, j * ldq, elementsQc, j * m, m);
         }
+        return columnMatrix ? Qc : Qc.getRowMajor();
     }
 
     /**
@@ -140,7 +242,7 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
             for (int c = 0; c < n; c++) {
                 for (int r = 0; r < m; r++) {
                     if (r <= c)
-                        elementsR[c * m + r] = elementsA[c * m + r];
+                        elementsR[c * m + r] = elementsA[c * lda + r];
                 }
             }
         }
@@ -166,7 +268,7 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
      */
     public boolean hasFullRank() {
         for (int j = 0; j < n; j++) {
-            if (elementsA[j * m + j] == 0)
+            if (elementsA[j * lda + j] == 0)
                 return false;
         }
         return true;
@@ -199,14 +301,19 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
             elementsX = (double[]) b.elements();
         }
         Dplasma.plasma_Init(m, n, 1);
-        int info = Dplasma.plasma_DORMQR(Dplasma.PlasmaLeft, Dplasma.PlasmaNoTrans, m, 1, n, elementsA, 0, m, T, 0,
-                elementsX, 0, m);
+        int info = 0;
+        if (T != null) {
+            info = Dplasma.plasma_DORMQR(Dplasma.PlasmaLeft, Dplasma.PlasmaNoTrans, m, 1, n, elementsA, 0, m, T, 0,
+                    elementsX, 0, m);
+        } else {
+            multiplyQt(elementsX, 1);
+        }
         if (info != 0) {
             throw new IllegalArgumentException(
                     "Error occured while solving the system of equation using QR decomposition: " + info);
         }
         info = Dplasma.plasma_DTRSM(Dplasma.PlasmaLeft, Dplasma.PlasmaUpper, Dplasma.PlasmaNoTrans,
-                Dplasma.PlasmaNonUnit, n, 1, elementsA, 0, m, elementsX, 0, m);
+                Dplasma.PlasmaNonUnit, n, 1, elementsA, 0, lda, elementsX, 0, m);
         Dplasma.plasma_Finalize();
         if (info != 0) {
             throw new IllegalArgumentException(
@@ -250,14 +357,19 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
         }
         int nrhs = B.columns();
         Dplasma.plasma_Init(m, n, nrhs);
-        int info = Dplasma.plasma_DORMQR(Dplasma.PlasmaLeft, Dplasma.PlasmaNoTrans, m, nrhs, n, elementsA, 0, m, T, 0,
-                elementsX, 0, m);
+        int info = 0;
+        if (T != null) {
+            info = Dplasma.plasma_DORMQR(Dplasma.PlasmaLeft, Dplasma.PlasmaNoTrans, m, nrhs, n, elementsA, 0, m, T, 0,
+                    elementsX, 0, m);
+        } else {
+            multiplyQt(elementsX, nrhs);
+        }
         if (info != 0) {
             throw new IllegalArgumentException(
                     "Error occured while solving the system of equation using QR decomposition: " + info);
         }
         info = Dplasma.plasma_DTRSM(Dplasma.PlasmaLeft, Dplasma.PlasmaUpper, Dplasma.PlasmaNoTrans,
-                Dplasma.PlasmaNonUnit, n, nrhs, elementsA, 0, m, elementsX, 0, m);
+                Dplasma.PlasmaNonUnit, n, nrhs, elementsA, 0, lda, elementsX, 0, m);
         Dplasma.plasma_Finalize();
         if (info != 0) {
             throw new IllegalArgumentException(
@@ -272,6 +384,393 @@ public class DenseDoubleQRDecomposition implements java.io.Serializable {
         }
     }
 
+    /**
+     * Replaces this decomposition with the QR decomposition of
+     * <tt>A + u*v'</tt> (rank-1 update) in <tt>O(m*n)</tt> operations.
+     *
+     * @param u
+     *            a vector of size <tt>A.rows()</tt>.
+     * @param v
+     *            a vector of size <tt>A.columns()</tt>.
+     * @exception IllegalArgumentException
+     *                if <tt>u.size() != A.rows() || v.size() != A.columns()</tt>.
+     */
+    public void update(DoubleMatrix1D u, DoubleMatrix1D v) {
+        if (u.size() != m) {
+            throw new IllegalArgumentException("u.size() != A.rows()");
+        }
+        if (v.size() != n) {
+            throw new IllegalArgumentException("v.size() != A.columns()");
+        }
+        explicitQ();
+        ensureCapacity(m, n + 1);
+        int offset = n * ldq;
+        for (int i = 0; i < m; i++) {
+            elementsQ[offset + i] = u.getQuick(i);
+        }
+        double[] w = new double[n + 1];
+        w[n] = orthogonalize(w);
+        // reduce [Q'*u; |u - Q*Q'*u|] to a multiple of the first unit vector,
+        // which turns R into an upper Hessenberg matrix
+        for (int k = n; k > 0; k--) {
+            if (w[k] != 0) {
+                double r = Math.hypot(w[k - 1], w[k]);
+                double c = w[k - 1] / r;
+                double s = w[k] / r;
+                w[k - 1] = r;
+                w[k] = 0;
+                rotateRows(k - 1, k, k - 1, c, s);
+                rotateColumns(k - 1, k, c, s);
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            elementsA[j * lda] += w[0] * v.getQuick(j);
+        }
+        for (int k = 0; k < n; k++) {
+            eliminate(k, k + 1, k);
+        }
+        R = null;
+    }
+
+    /**
+     * Replaces this decomposition with the QR decomposition of <tt>A</tt> with
+     * the row <tt>x</tt> inserted before row <tt>k</tt>; <tt>k = A.rows()</tt>
+     * appends the row. Requires <tt>O(m*n)</tt> operations.
+     *
+     * @param k
+     *            the index of the new row.
+     * @param x
+     *            a vector of size <tt>A.columns()</tt>.
+     * @exception IllegalArgumentException
+     *                if <tt>k < 0 || k > A.rows() || x.size() != A.columns()</tt>.
+     */
+    public void insertRow(int k, DoubleMatrix1D x) {
+        if (k < 0 || k > m) {
+            throw new IllegalArgumentException("Row index out of range: " + k);
+        }
+        if (x.size() != n) {
+            throw new IllegalArgumentException("x.size() != A.columns()");
+        }
+        explicitQ();
+        ensureCapacity(m + 1, n + 1);
+        for (int j = 0; j < n; j++) {
+            int idx = j * ldq;
+            System.arraycopy(elementsQ, idx + k, elementsQ, idx + k + 1, m - k);
+            elementsQ[idx + k] = 0;
+        }
+        m++;
+        // [Q 0; 0 1] with the last row moved to k times [R; x] is the new A
+        int offset = n * ldq;
+        for (int i = 0; i < m; i++) {
+            elementsQ[offset + i] = 0;
+        }
+        elementsQ[offset + k] = 1;
+        for (int j = 0; j < n; j++) {
+            elementsA[j * lda + n] = x.getQuick(j);
+        }
+        // annihilate x
+        for (int j = 0; j < n; j++) {
+            eliminate(j, n, j);
+        }
+        R = null;
+    }
+
+    /**
+     * Replaces this decomposition with the QR decomposition of <tt>A</tt> with
+     * row <tt>k</tt> removed. Requires <tt>O(m*n)</tt> operations.
+     *
+     * @param k
+     *            the index of the row to remove.
+     * @exception IllegalArgumentException
+     *                if <tt>k < 0 || k >= A.rows()</tt> or if
+     *                <tt>A.rows() == A.columns()</tt>.
+     */
+    public void deleteRow(int k) {
+        if (k < 0 || k >= m) {
+            throw new IllegalArgumentException("Row index out of range: " + k);
+        }
+        if (m == n) {
+            throw new IllegalArgumentException("Matrix must have at least as many rows as columns.");
+        }
+        explicitQ();
+        ensureCapacity(m, n + 1);
+        // complete Q by the part of the k-th unit vector orthogonal to it
+        int offset = n * ldq;
+        for (int i = 0; i < m; i++) {
+            elementsQ[offset + i] = 0;
+        }
+        elementsQ[offset + k] = 1;
+        orthogonalize(new double[n]);
+        // reduce row k of the completed Q to the last unit vector; its last
+        // column is then the k-th unit vector and the last row of [R; 0]
+        // belongs to the removed row of A
+        for (int j = n; --j >= 0;) {
+            double a = elementsQ[offset + k];
+            double b = elementsQ[j * ldq + k];
+            if (b != 0) {
+                double r = Math.hypot(a, b);
+                double c = a / r;
+                double s = b / r;
+                rotateRows(n, j, j, c, s);
+                rotateColumns(n, j, c, s);
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            elementsA[j * lda + n] = 0;
+            int idx = j * ldq;
+            System.arraycopy(elementsQ, idx + k + 1, elementsQ, idx + k, m - k - 1);
+        }
+        m--;
+        R = null;
+    }
+
+    /**
+     * Replaces this decomposition with the QR decomposition of <tt>A</tt> with
+     * the column <tt>x</tt> inserted before column <tt>j</tt>;
+     * <tt>j = A.columns()</tt> appends the column. Requires <tt>O(m*n)</tt>
+     * operations.
+     *
+     * @param j
+     *            the index of the new column.
+     * @param x
+     *            a vector of size <tt>A.rows()</tt>.
+     * @exception IllegalArgumentException
+     *                if <tt>j < 0 || j > A.columns() || x.size() != A.rows()</tt>
+     *                or if <tt>A.rows() == A.columns()</tt>.
+     */
+    public void insertColumn(int j, DoubleMatrix1D x) {
+        if (j < 0 || j > n) {
+            throw new IllegalArgumentException("Column index out of range: " + j);
+        }
+        if (x.size() != m) {
+            throw new IllegalArgumentException("x.size() != A.rows()");
+        }
+        if (m == n) {
+            throw new IllegalArgumentException("Matrix must have at least as many rows as columns.");
+        }
+        explicitQ();
+        ensureCapacity(m, n + 2);
+        int offset = n * ldq;
+        for (int i = 0; i < m; i++) {
+            elementsQ[offset + i] = x.getQuick(i);
+        }
+        double[] w = new double[n + 1];
+        w[n] = orthogonalize(w);
+        for (int c = n; --c >= j;) {
+            System.arraycopy(elementsA, c * lda, elementsA, (c + 1) * lda, n + 1);
+        }
+        System.arraycopy(w, 0, elementsA, j * lda, n + 1);
+        n++;
+        // annihilate the new column below the diagonal
+        for (int k = n; --k > j;) {
+            eliminate(k - 1, k, j);
+        }
+        R = null;
+    }
+
+    /**
+     * Replaces this decomposition with the QR decomposition of <tt>A</tt> with
+     * column <tt>j</tt> removed. Requires <tt>O(m*n)</tt> operations.
+     *
+     * @param j
+     *            the index of the column to remove.
+     * @exception IllegalArgumentException
+     *                if <tt>j < 0 || j >= A.columns()</tt> or if
+     *                <tt>A.columns() == 1</tt>.
+     */
+    public void deleteColumn(int j) {
+        if (j < 0 || j >= n) {
+            throw new IllegalArgumentException("Column index out of range: " + j);
+        }
+        if (n == 1) {
+            throw new IllegalArgumentException("Matrix must have at least one column.");
+        }
+        explicitQ();
+        for (int c = j; c < n - 1; c++) {
+            System.arraycopy(elementsA, (c + 1) * lda, elementsA, c * lda, n);
+        }
+        for (int r = 0; r < n; r++) {
+            elementsA[(n - 1) * lda + r] = 0;
+        }
+        n--;
+        // R is upper Hessenberg from column j on
+        for (int k = j; k < n; k++) {
+            eliminate(k, k + 1, k);
+        }
+        R = null;
+    }
+
+    /*
+     * Switches from the Householder representation of Q computed by PLASMA to
+     * its first n columns and an n x n matrix R, which is what the updating
+     * methods modify. Rows and columns of R beyond n are kept zero.
+     */
+    private void explicitQ() {
+        if (T != null) {
+            factorQ();
+            ldq = m;
+            elementsQ = new double[ldq * (n + 1)];
+            System.arraycopy(Q.elements(), 0, elementsQ, 0, m * n);
+            int ldr = n + 1;
+            double[] elementsR = new double[ldr * (n + 1)];
+            for (int c = 0; c < n; c++) {
+                System.arraycopy(elementsA, c * m, elementsR, c * ldr, c + 1);
+            }
+            elementsA = elementsR;
+            lda = ldr;
+            T = null;
+            Q = null;
+        }
+    }
+
+    /*
+     * Makes room for the given number of rows of Q and columns of Q and R,
+     * growing the arrays geometrically.
+     */
+    private void ensureCapacity(int rows, int columns) {
+        int qColumns = elementsQ.length / ldq;
+        if (rows > ldq || columns > qColumns) {
+            int newLdq = grow(rows, ldq);
+            double[] newQ = new double[newLdq * grow(columns, qColumns)];
+            for (int j = 0; j < n; j++) {
+                System.arraycopy(elementsQ, j * ldq, newQ, j * newLdq, m);
+            }
+            elementsQ = newQ;
+            ldq = newLdq;
+        }
+        int rColumns = elementsA.length / lda;
+        if (columns > lda || columns > rColumns) {
+            int newLda = grow(columns, lda);
+            double[] newA = new double[newLda * grow(columns, rColumns)];
+            for (int j = 0; j < n; j++) {
+                System.arraycopy(elementsA, j * lda, newA, j * newLda, n);
+            }
+            elementsA = newA;
+            lda = newLda;
+        }
+    }
+
+    private static int grow(int needed, int capacity) {
+        return (needed <= capacity) ? capacity : Math.max(needed, 2 * capacity);
+    }
+
+    /*
+     * Replaces column n of Q by the normalized part of it orthogonal to the
+     * first n columns, which it is projected on twice for accuracy, and
+     * returns the norm of that part; w receives the coefficients of the
+     * projection.
+     */
+    private double orthogonalize(double[] w) {
+        int offset = n * ldq;
+        double[] s = new double[n];
+        multiplyQt(elementsQ, offset, w, 0, n);
+        subtractQ(w, offset);
+        multiplyQt(elementsQ, offset, s, 0, n);
+        subtractQ(s, offset);
+        double norm = 0;
+        for (int i = 0; i < m; i++) {
+            norm += elementsQ[offset + i] * elementsQ[offset + i];
+        }
+        for (int j = 0; j < n; j++) {
+            w[j] += s[j];
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < m; i++) {
+                elementsQ[offset + i] /= norm;
+            }
+        }
+        return norm;
+    }
+
+    /*
+     * Subtracts Q*y from the column of Q starting at offset.
+     */
+    private void subtractQ(double[] y, int offset) {
+        for (int j = 0; j < n; j++) {
+            double yj = y[j];
+            if (yj != 0) {
+                int idx = j * ldq;
+                for (int i = 0; i < m; i++) {
+                    elementsQ[offset + i] -= yj * elementsQ[idx + i];
+                }
+            }
+        }
+    }
+
+    /*
+     * Zeroes R[q][column] by a Givens rotation of rows p and q of R, which is
+     * applied to columns p and q of Q as well.
+     */
+    private void eliminate(int p, int q, int column) {
+        int idx = column * lda;
+        double a = elementsA[idx + p];
+        double b = elementsA[idx + q];
+        if (b == 0) {
+            return;
+        }
+        double r = Math.hypot(a, b);
+        double c = a / r;
+        double s = b / r;
+        rotateRows(p, q, column, c, s);
+        elementsA[idx + q] = 0;
+        rotateColumns(p, q, c, s);
+    }
+
+    private void rotateRows(int p, int q, int firstColumn, double c, double s) {
+        for (int j = firstColumn; j < n; j++) {
+            int idx = j * lda;
+            double a = elementsA[idx + p];
+            double b = elementsA[idx + q];
+            elementsA[idx + p] = c * a + s * b;
+            elementsA[idx + q] = c * b - s * a;
+        }
+    }
+
+    private void rotateColumns(int p, int q, double c, double s) {
+        int idxp = p * ldq;
+        int idxq = q * ldq;
+        for (int i = 0; i < m; i++) {
+            double x = elementsQ[idxp + i];
+            double y = elementsQ[idxq + i];
+            elementsQ[idxp + i] = c * x + s * y;
+            elementsQ[idxq + i] = c * y - s * x;
+        }
+    }
+
+    /*
+     * Overwrites the first n elements of each column of X with those of Q'*X.
+     */
+    private void multiplyQt(double[] X, int nrhs) {
+        double[] y = new double[n];
+        for (int k = 0; k < nrhs; k++) {
+            multiplyQt(X, k * m, y, 0, n);
+            System.arraycopy(y, 0, X, k * m, n);
+        }
+    }
+
+    /*
+     * Stores the first count elements of Q'*x, x = X[offset : offset+m], in y
+     * starting at yOffset.
+     */
+    private void multiplyQt(final double[] X, final int offset, final double[] y, final int yOffset, int count) {
+        final double[] elementsQ = this.elementsQ;
+        final int ldq = this.ldq;
+        int minColumns = Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ZMULT) / m);
+        ForkJoinUtils.invoke(0, count, minColumns, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstColumn, int lastColumn) {
+                for (int j = firstColumn; j < lastColumn; j++) {
+                    int idx = j * ldq;
+                    double sum = 0;
+                    for (int i = 0; i < m; i++) {
+                        sum += elementsQ[idx + i] * X[offset + i];
+                    }
+                    y[yOffset + j] = sum;
+                }
+            }
+        });
+    }
+
     /**
      * Returns a String with (propertyName, propertyValue) pairs. Useful for
      * debugging or to quickly get the rough picture. For example,
@@ -0,0 +1,209 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DoubleProperty;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import edu.emory.mathcs.jplasma.tdouble.Dplasma;
+
+/**
+ * Tile LU decomposition with incremental pivoting of a square matrix, as
+ * computed by PLASMA. The matrix is split into square tiles, and the
+ * factorization is expressed as a set of small kernels on tiles whose
+ * dependencies are resolved dynamically by the worker threads, so that the
+ * panel factorization overlaps with the updates of the trailing tiles. The
+ * pivoting only ever exchanges rows of a pair of tiles; hence the
+ * decomposition is not of the form <tt>A(piv,:) = L*U</tt> and only the
+ * upper triangular factor <tt>U</tt> is returned. It is as stable as partial
+ * pivoting in practice, but not in theory.
+ * <P>
+ * The primary use of this decomposition is the solution of large square
+ * systems of simultaneous linear equations on many cores, where it scales
+ * better than {@link DenseDoubleLUDecomposition}. Solving will fail if
+ * <tt>isNonsingular()</tt> returns false.
+ *
+ * @see DenseDoubleCholeskyDecomposition
+ * @see DenseDoubleQRDecomposition
+ */
+public class DenseDoubleTileLUDecomposition implements java.io.Serializable {
+    static final long serialVersionUID = 1020;
+
+    /*
+     * U and the transformations of L of the tiles, in column major.
+     */
+    private double[] elementsA;
+
+    /*
+     * The lower triangular factors of the tile pairs.
+     */
+    private double[] L;
+
+    /*
+     * The pivots within the tile pairs.
+     */
+    private int[] IPIV;
+
+    private boolean isNonSingular = true;
+
+    /**
+     * Row and column dimension (square matrix).
+     */
+    private int n;
+
+    /**
+     * Constructs and returns a new tile LU decomposition object; The decomposed
+     * matrices can be retrieved via instance methods of the returned
+     * decomposition object.
+     *
+     * @param A
+     *            Square matrix.
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square.
+     */
+    public DenseDoubleTileLUDecomposition(DoubleMatrix2D A) {
+        DoubleProperty.DEFAULT.checkSquare(A);
+        DoubleProperty.DEFAULT.checkDense(A);
+        if (A instanceof DenseDoubleMatrix2D) {
+            elementsA = ((DenseDoubleMatrix2D) A).getColumnMajor().elements();
+        } else {
+            elementsA = (double[]) A.copy().elements();
+        }
+        n = A.rows();
+        if (n == 0) {
+            return;
+        }
+        Dplasma.plasma_Init(n, n, 1);
+        L = Dplasma.plasma_Allocate_L(n, n);
+        IPIV = Dplasma.plasma_Allocate_IPIV(n, n);
+        int info = Dplasma.plasma_DGETRF(n, n, elementsA, 0, n, L, 0, IPIV, 0);
+        Dplasma.plasma_Finalize();
+        if (info < 0) {
+            throw new IllegalArgumentException("Error occured while computing LU decomposition: " + info);
+        }
+        for (int j = 0; j < n; j++) {
+            if (elementsA[j * n + j] == 0) {
+                isNonSingular = false;
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the upper triangular factor, <tt>U</tt>.
+     *
+     * @return <tt>U</tt>
+     */
+    public DoubleMatrix2D getU() {
+        DoubleMatrix2D U = new DenseDoubleMatrix2D(n, n);
+        double[] elementsU = (double[]) U.elements();
+        for (int c = 0; c < n; c++) {
+            for (int r = 0; r <= c; r++) {
+                elementsU[r * n + c] = elementsA[c * n + r];
+            }
+        }
+        return U;
+    }
+
+    /**
+     * Returns whether the matrix is nonsingular (has an inverse).
+     *
+     * @return true if <tt>U</tt>, and hence <tt>A</tt>, is nonsingular; false
+     *         otherwise.
+     */
+    public boolean isNonsingular() {
+        return isNonSingular;
+    }
+
+    /**
+     * Solves <tt>A*X = B</tt>(in-place). Upon return <tt>B</tt> is overridden
+     * with the result <tt>X</tt>.
+     *
+     * @param B
+     *            A Matrix with as many rows as <tt>A</tt> and any number of
+     *            columns.
+     * @exception IllegalArgumentException
+     *                if <tt>B.rows() != A.rows()</tt> or if <tt>A</tt> is
+     *                singular.
+     */
+    public void solve(DoubleMatrix2D B) {
+        if (B.rows() != n) {
+            throw new IllegalArgumentException("B.rows() != A.rows()");
+        }
+        DoubleProperty.DEFAULT.checkDense(B);
+        if (!isNonSingular) {
+            throw new IllegalArgumentException("Matrix is singular.");
+        }
+        int nrhs = B.columns();
+        if (n == 0 || nrhs == 0) {
+            return;
+        }
+        double[] elementsX;
+        if (B instanceof DenseDoubleMatrix2D) {
+            elementsX = ((DenseDoubleMatrix2D) B).getColumnMajor().elements();
+        } else {
+            if (B.isView()) {
+                elementsX = (double[]) B.copy().elements();
+            } else {
+                elementsX = (double[]) B.elements();
+            }
+        }
+        Dplasma.plasma_Init(n, n, nrhs);
+        int info = Dplasma.plasma_DGETRS(n, nrhs, n, elementsA, 0, n, L, 0, IPIV, 0, elementsX, 0, n);
+        Dplasma.plasma_Finalize();
+        if (info != 0) {
+            throw new IllegalArgumentException(
+                    "Error occured while solving the system of equation using LU decomposition: " + info);
+        }
+        if (B instanceof DenseDoubleMatrix2D || B.isView()) {
+            B.assign(new DenseColumnDoubleMatrix2D(n, nrhs, elementsX, 0, 0, 1, n, false));
+        }
+    }
+
+    /**
+     * Solves <tt>A*x = b</tt>(in-place). Upon return <tt>b</tt> is overridden
+     * with the result <tt>x</tt>.
+     *
+     * @param b
+     *            A vector with of size A.rows();
+     * @exception IllegalArgumentException
+     *                if <tt>b.size() != A.rows()</tt> or if <tt>A</tt> is
+     *                singular.
+     */
+    public void solve(DoubleMatrix1D b) {
+        if (b.size() != n) {
+            throw new IllegalArgumentException("b.size() != A.rows()");
+        }
+        DoubleProperty.DEFAULT.checkDense(b);
+        if (!isNonSingular) {
+            throw new IllegalArgumentException("Matrix is singular.");
+        }
+        if (n == 0) {
+            return;
+        }
+        double[] elementsX;
+        if (b.isView()) {
+            elementsX = (double[]) b.copy().elements();
+        } else {
+            elementsX = (double[]) b.elements();
+        }
+        Dplasma.plasma_Init(n, n, 1);
+        int info = Dplasma.plasma_DGETRS(n, 1, n, elementsA, 0, n, L, 0, IPIV, 0, elementsX, 0, n);
+        Dplasma.plasma_Finalize();
+        if (info != 0) {
+            throw new IllegalArgumentException(
+                    "Error occured while solving the system of equation using LU decomposition: " + info);
+        }
+        if (b.isView()) {
+            b.assign(elementsX);
+        }
+    }
+}
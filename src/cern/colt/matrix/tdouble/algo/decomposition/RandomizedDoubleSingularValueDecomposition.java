@@ -0,0 +1,288 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import org.netlib.lapack.LAPACK;
+
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DiagonalDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+import cern.jet.random.tdouble.Normal;
+import cern.jet.random.tdouble.engine.DoubleMersenneTwister;
+
+/**
+ * Truncated singular value decomposition computed with a randomized range
+ * finder. For an <tt>m x n</tt> matrix <tt>A</tt> and a target rank
+ * <tt>k</tt>, it computes an <tt>m x k</tt> matrix <tt>U</tt> with orthonormal
+ * columns, a <tt>k x k</tt> diagonal matrix <tt>S</tt> and an <tt>n x k</tt>
+ * matrix <tt>V</tt> with orthonormal columns so that <tt>U*S*V'</tt> is a
+ * rank <tt>k</tt> approximation of <tt>A</tt>.
+ * <P>
+ * The range of <tt>A</tt> is sampled by multiplying it with an
+ * <tt>n x (k+p)</tt> Gaussian random matrix, where <tt>p</tt> is the
+ * oversampling. Each power iteration multiplies the sample once more by
+ * <tt>A'</tt> and <tt>A</tt>, which sharpens the approximation when the
+ * singular values decay slowly. The orthonormal basis <tt>Q</tt> of the
+ * sample is computed by LAPACK's <tt>dgeqrf</tt> and <tt>dorgqr</tt>, and the
+ * singular values and vectors are taken from the small matrix <tt>Q'*A</tt>.
+ * The cost is dominated by <tt>2*(q+1)</tt> products of <tt>A</tt> with
+ * <tt>k+p</tt> vectors, instead of the <tt>O(m*n*min(m,n))</tt> operations of
+ * {@link DenseDoubleSingularValueDecomposition}.
+ * <P>
+ * <tt>A</tt> is only accessed through <tt>rows()</tt>, <tt>columns()</tt>
+ * and <tt>zMult(B, C, alpha, beta, transposeA, false)</tt> with dense
+ * <tt>B</tt> and <tt>C</tt>. Dense and sparse matrices therefore use their
+ * own multiplication kernels, and a matrix-free operator can be decomposed by
+ * overriding these methods in a subclass of <tt>DoubleMatrix2D</tt>.
+ * <P>
+ * The singular values, <tt>sigma[j] = S[j][j]</tt>, are ordered so that
+ * <tt>sigma[0] >= sigma[1] >= ... >= sigma[k-1]</tt>.
+ *
+ * @see DenseDoubleSingularValueDecomposition
+ */
+public class RandomizedDoubleSingularValueDecomposition implements java.io.Serializable {
+    static final long serialVersionUID = 1020;
+
+    /**
+     * The default number of extra samples.
+     */
+    public static final int DEFAULT_OVERSAMPLING = 10;
+
+    /**
+     * The default number of power iterations.
+     */
+    public static final int DEFAULT_POWER_ITERATIONS = 2;
+
+    private DoubleMatrix2D U;
+
+    private DoubleMatrix2D V;
+
+    private double[] elementsS;
+
+    private int m;
+
+    private int n;
+
+    private int k;
+
+    private boolean columnMatrix = false;
+
+    /**
+     * Constructs and returns a new randomized singular value decomposition
+     * object with {@link #DEFAULT_OVERSAMPLING} and
+     * {@link #DEFAULT_POWER_ITERATIONS}.
+     *
+     * @param A
+     *            rectangular matrix or operator.
+     * @param rank
+     *            the number of singular triplets to compute.
+     * @throws IllegalArgumentException
+     *             if <tt>rank < 1 || rank > min(A.rows(), A.columns())</tt>.
+     */
+    public RandomizedDoubleSingularValueDecomposition(DoubleMatrix2D A, int rank) {
+        this(A, rank, DEFAULT_OVERSAMPLING, DEFAULT_POWER_ITERATIONS, 0);
+    }
+
+    /**
+     * Constructs and returns a new randomized singular value decomposition
+     * object; The decomposed matrices can be retrieved via instance methods of
+     * the returned decomposition object.
+     *
+     * @param A
+     *            rectangular matrix or operator.
+     * @param rank
+     *            the number of singular triplets to compute.
+     * @param oversampling
+     *            the number of samples taken in addition to <tt>rank</tt>.
+     * @param powerIterations
+     *            the number of power iterations.
+     * @param seed
+     *            the seed of the random sampling matrix.
+     * @throws IllegalArgumentException
+     *             if <tt>rank < 1 || rank > min(A.rows(), A.columns())</tt>
+     *             or if <tt>oversampling < 0 || powerIterations < 0</tt>.
+     */
+    public RandomizedDoubleSingularValueDecomposition(DoubleMatrix2D A, int rank, int oversampling,
+            int powerIterations, int seed) {
+        m = A.rows();
+        n = A.columns();
+        int mn = Math.min(m, n);
+        if (rank < 1 || rank > mn) {
+            throw new IllegalArgumentException("rank must be in [1, " + mn + "]: " + rank);
+        }
+        if (oversampling < 0) {
+            throw new IllegalArgumentException("oversampling < 0: " + oversampling);
+        }
+        if (powerIterations < 0) {
+            throw new IllegalArgumentException("powerIterations < 0: " + powerIterations);
+        }
+        k = rank;
+        int l = Math.min(rank + oversampling, mn);
+        columnMatrix = A instanceof DenseColumnDoubleMatrix2D;
+
+        // products with A' are computed as products with an explicit transpose
+        DoubleMatrix2D At = null;
+        if (A instanceof SparseRCDoubleMatrix2D) {
+            At = ((SparseRCDoubleMatrix2D) A).getTranspose();
+        }
+
+        DoubleMatrix2D Omega = like(n, l);
+        Normal normal = new Normal(0, 1, new DoubleMersenneTwister(seed));
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < l; c++) {
+                Omega.setQuick(r, c, normal.nextDouble());
+            }
+        }
+        DoubleMatrix2D Q = orthonormalize(multiply(A, At, Omega, m, false));
+        for (int i = 0; i < powerIterations; i++) {
+            DoubleMatrix2D Z = orthonormalize(multiply(A, At, Q, n, true));
+            Q = orthonormalize(multiply(A, At, Z, m, false));
+        }
+        DoubleMatrix2D Bt = multiply(A, At, Q, n, true);
+
+        // Bt = Ub*S*Vb' so that Q'*A = Vb*S*Ub'
+        DenseDoubleSingularValueDecomposition svd = new DenseDoubleSingularValueDecomposition(Bt, true, false);
+        elementsS = new double[k];
+        System.arraycopy(svd.getSingularValues(), 0, elementsS, 0, k);
+        V = svd.getU().viewPart(0, 0, n, k).copy();
+        U = Q.zMult(svd.getV().viewPart(0, 0, l, k).copy(), like(m, k));
+    }
+
+    /**
+     * Returns the diagonal matrix of singular values.
+     *
+     * @return <tt>S</tt>; a <tt>k x k</tt> matrix.
+     */
+    public DoubleMatrix2D getS() {
+        DoubleMatrix2D S = new DiagonalDoubleMatrix2D(k, k, 0);
+        for (int i = 0; i < k; i++) {
+            S.setQuick(i, i, elementsS[i]);
+        }
+        return S;
+    }
+
+    /**
+     * Returns the diagonal of <tt>S</tt>, which is a one-dimensional array of
+     * the <tt>k</tt> largest singular values
+     *
+     * @return diagonal of <tt>S</tt>.
+     */
+    public double[] getSingularValues() {
+        return elementsS;
+    }
+
+    /**
+     * Returns the left singular vectors <tt>U</tt>.
+     *
+     * @return <tt>U</tt>; an <tt>m x k</tt> matrix.
+     */
+    public DoubleMatrix2D getU() {
+        return U.copy();
+    }
+
+    /**
+     * Returns the right singular vectors <tt>V</tt>.
+     *
+     * @return <tt>V</tt>; an <tt>n x k</tt> matrix.
+     */
+    public DoubleMatrix2D getV() {
+        return V.copy();
+    }
+
+    /**
+     * Returns the rank <tt>k</tt> approximation <tt>U*S*V'</tt> of <tt>A</tt>.
+     *
+     * @return a new dense <tt>m x n</tt> matrix.
+     */
+    public DoubleMatrix2D getApproximation() {
+        DoubleMatrix2D US = U.copy();
+        for (int j = 0; j < k; j++) {
+            US.viewColumn(j).assign(DoubleFunctions.mult(elementsS[j]));
+        }
+        return US.zMult(V, like(m, n), 1, 0, false, true);
+    }
+
+    /**
+     * Returns the two norm, which is <tt>max(S)</tt>.
+     */
+    public double norm2() {
+        return elementsS[0];
+    }
+
+    /**
+     * Returns a String with the singular values and the shape of the factors.
+     */
+    public String toString() {
+        StringBuffer buf = new StringBuffer();
+        buf.append("---------------------------------------------------------------------\n");
+        buf.append("RandomizedSingularValueDecomposition(A, " + k + ") --> norm2(A), U, S, V\n");
+        buf.append("---------------------------------------------------------------------\n");
+        buf.append("norm2 = " + norm2());
+        buf.append("\n\nU = ");
+        buf.append(String.valueOf(getU()));
+        buf.append("\n\nS = ");
+        buf.append(String.valueOf(getS()));
+        buf.append("\n\nV = ");
+        buf.append(String.valueOf(getV()));
+        return buf.toString();
+    }
+
+    /*
+     * Returns A*B, or A'*B if transposeA; At is the explicit transpose of A or
+     * null.
+     */
+    private DoubleMatrix2D multiply(DoubleMatrix2D A, DoubleMatrix2D At, DoubleMatrix2D B, int rows,
+            boolean transposeA) {
+        DoubleMatrix2D C = like(rows, B.columns());
+        if (transposeA && At != null) {
+            return At.zMult(B, C, 1, 0, false, false);
+        }
+        return A.zMult(B, C, 1, 0, transposeA, false);
+    }
+
+    /*
+     * Returns the economy size orthogonal factor of the QR decomposition of Y.
+     * Unlike DenseDoubleQRDecomposition.getQ, the full square factor is never
+     * formed.
+     */
+    private DoubleMatrix2D orthonormalize(DoubleMatrix2D Y) {
+        int rows = Y.rows();
+        int columns = Y.columns();
+        double[] elementsQ;
+        if (Y instanceof DenseDoubleMatrix2D) {
+            elementsQ = ((DenseDoubleMatrix2D) Y).getColumnMajor().elements();
+        } else {
+            elementsQ = (double[]) Y.elements();
+        }
+        double[] tau = new double[columns];
+        int lwork = Math.max(1, columns * 64);
+        double[] work = new double[lwork];
+        org.netlib.util.intW info = new org.netlib.util.intW(0);
+        LAPACK.getInstance().dgeqrf(rows, columns, elementsQ, rows, tau, work, lwork, info);
+        if (info.val != 0) {
+            throw new IllegalArgumentException("Error occured while computing QR decomposition: " + info);
+        }
+        LAPACK.getInstance().dorgqr(rows, columns, columns, elementsQ, rows, tau, work, lwork, info);
+        if (info.val != 0) {
+            throw new IllegalArgumentException("Error occured while computing matrix Q: " + info);
+        }
+        DenseColumnDoubleMatrix2D Q = new DenseColumnDoubleMatrix2D(rows, columns, elementsQ, 0, 0, 1, rows, false);
+        return columnMatrix ? (DoubleMatrix2D) Q : Q.getRowMajor();
+    }
+
+    private DoubleMatrix2D like(int rows, int columns) {
+        if (columnMatrix) {
+            return new DenseColumnDoubleMatrix2D(rows, columns);
+        }
+        return new DenseDoubleMatrix2D(rows, columns);
+    }
+}
@@ -0,0 +1,204 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import edu.emory.mathcs.csparsej.tdouble.Dcs_common.Dcs;
+
+/**
+ * Sparse triangular solves and Householder reflections applied to blocks of
+ * right-hand sides; the multi-vector counterparts of <tt>cs_lsolve</tt>,
+ * <tt>cs_ltsolve</tt>, <tt>cs_usolve</tt>, <tt>cs_utsolve</tt> and
+ * <tt>cs_happly</tt>. A block of <tt>w</tt> vectors is stored row by row, with
+ * element <tt>(i, c)</tt> at <tt>x[i * w + c]</tt>, so that every entry of the
+ * factor is loaded once per block instead of once per vector.
+ */
+final class SparseDoubleBlockSolver {
+
+    /**
+     * The number of right-hand sides solved together.
+     */
+    static final int BLOCK_SIZE = 16;
+
+    private SparseDoubleBlockSolver() {
+    }
+
+    /**
+     * Returns the minimal number of columns solved by one thread when each
+     * column costs about <tt>work</tt> operations.
+     */
+    static int minColumns(long work) {
+        return (int) Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV) / Math.max(1, work));
+    }
+
+    /**
+     * Copies the columns <tt>c0, ..., c0 + w - 1</tt> of the first
+     * <tt>count</tt> rows of <tt>B</tt> to the block <tt>x</tt>: row
+     * <tt>k</tt> goes to row <tt>p[k]</tt> if <tt>inverse</tt> is true
+     * (<tt>cs_ipvec</tt>), row <tt>p[k]</tt> goes to row <tt>k</tt> otherwise
+     * (<tt>cs_pvec</tt>). A null permutation is the identity.
+     */
+    static void read(DoubleMatrix2D B, int c0, int w, int[] p, boolean inverse, int count, double[] x) {
+        double[] elements = (double[]) B.elements();
+        int zero = (int) B.index(0, c0);
+        int rs = B.rowStride();
+        int cs = B.columnStride();
+        for (int k = 0; k < count; k++) {
+            int row = (p == null || inverse) ? k : p[k];
+            int dst = ((p == null || !inverse) ? k : p[k]) * w;
+            for (int c = 0, idx = zero + row * rs; c < w; c++, idx += cs) {
+                x[dst + c] = elements[idx];
+            }
+        }
+    }
+
+    /**
+     * Copies the block <tt>x</tt> to the columns <tt>c0, ..., c0 + w - 1</tt>
+     * of <tt>B</tt>: row <tt>k</tt> goes to row <tt>p[k]</tt> if
+     * <tt>inverse</tt> is true (<tt>cs_ipvec</tt>), row <tt>p[k]</tt> goes to
+     * row <tt>k</tt> otherwise (<tt>cs_pvec</tt>), for <tt>k < count</tt>.
+     */
+    static void write(double[] x, int[] p, boolean inverse, int count, DoubleMatrix2D B, int c0, int w) {
+        double[] elements = (double[]) B.elements();
+        int zero = (int) B.index(0, c0);
+        int rs = B.rowStride();
+        int cs = B.columnStride();
+        for (int k = 0; k < count; k++) {
+            int row = (p == null || !inverse) ? k : p[k];
+            int src = ((p == null || inverse) ? k : p[k]) * w;
+            for (int c = 0, idx = zero + row * rs; c < w; c++, idx += cs) {
+                elements[idx] = x[src + c];
+            }
+        }
+    }
+
+    /**
+     * Solves <tt>L*X = B</tt> in place, where <tt>L</tt> is lower triangular
+     * with the diagonal entry first in each column.
+     */
+    static void lsolve(Dcs L, double[] x, int w) {
+        int n = L.n;
+        int[] Lp = L.p;
+        int[] Li = L.i;
+        double[] Lx = L.x;
+        for (int j = 0; j < n; j++) {
+            int xj = j * w;
+            double d = Lx[Lp[j]];
+            for (int c = 0; c < w; c++) {
+                x[xj + c] /= d;
+            }
+            for (int p = Lp[j] + 1; p < Lp[j + 1]; p++) {
+                int xi = Li[p] * w;
+                double l = Lx[p];
+                for (int c = 0; c < w; c++) {
+                    x[xi + c] -= l * x[xj + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves <tt>L'*X = B</tt> in place, where <tt>L</tt> is lower triangular
+     * with the diagonal entry first in each column.
+     */
+    static void ltsolve(Dcs L, double[] x, int w) {
+        int n = L.n;
+        int[] Lp = L.p;
+        int[] Li = L.i;
+        double[] Lx = L.x;
+        for (int j = n - 1; j >= 0; j--) {
+            int xj = j * w;
+            for (int p = Lp[j] + 1; p < Lp[j + 1]; p++) {
+                int xi = Li[p] * w;
+                double l = Lx[p];
+                for (int c = 0; c < w; c++) {
+                    x[xj + c] -= l * x[xi + c];
+                }
+            }
+            double d = Lx[Lp[j]];
+            for (int c = 0; c < w; c++) {
+                x[xj + c] /= d;
+            }
+        }
+    }
+
+    /**
+     * Solves <tt>U*X = B</tt> in place, where <tt>U</tt> is upper triangular
+     * with the diagonal entry last in each column.
+     */
+    static void usolve(Dcs U, double[] x, int w) {
+        int n = U.n;
+        int[] Up = U.p;
+        int[] Ui = U.i;
+        double[] Ux = U.x;
+        for (int j = n - 1; j >= 0; j--) {
+            int xj = j * w;
+            double d = Ux[Up[j + 1] - 1];
+            for (int c = 0; c < w; c++) {
+                x[xj + c] /= d;
+            }
+            for (int p = Up[j]; p < Up[j + 1] - 1; p++) {
+                int xi = Ui[p] * w;
+                double u = Ux[p];
+                for (int c = 0; c < w; c++) {
+                    x[xi + c] -= u * x[xj + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves <tt>U'*X = B</tt> in place, where <tt>U</tt> is upper triangular
+     * with the diagonal entry last in each column.
+     */
+    static void utsolve(Dcs U, double[] x, int w) {
+        int n = U.n;
+        int[] Up = U.p;
+        int[] Ui = U.i;
+        double[] Ux = U.x;
+        for (int j = 0; j < n; j++) {
+            int xj = j * w;
+            for (int p = Up[j]; p < Up[j + 1] - 1; p++) {
+                int xi = Ui[p] * w;
+                double u = Ux[p];
+                for (int c = 0; c < w; c++) {
+                    x[xj + c] -= u * x[xi + c];
+                }
+            }
+            double d = Ux[Up[j + 1] - 1];
+            for (int c = 0; c < w; c++) {
+                x[xj + c] /= d;
+            }
+        }
+    }
+
+    /**
+     * Applies the Householder reflection <tt>I - beta*v*v'</tt>, where
+     * <tt>v</tt> is column <tt>i</tt> of <tt>V</tt>, to each vector of the
+     * block; <tt>tau</tt> is a workspace of size <tt>w</tt>.
+     */
+    static void happly(Dcs V, int i, double beta, double[] x, int w, double[] tau) {
+        int[] Vp = V.p;
+        int[] Vi = V.i;
+        double[] Vx = V.x;
+        for (int c = 0; c < w; c++) {
+            tau[c] = 0;
+        }
+        for (int p = Vp[i]; p < Vp[i + 1]; p++) {
+            int xi = Vi[p] * w;
+            double v = Vx[p];
+            for (int c = 0; c < w; c++) {
+                tau[c] += v * x[xi + c];
+            }
+        }
+        for (int c = 0; c < w; c++) {
+            tau[c] *= beta;
+        }
+        for (int p = Vp[i]; p < Vp[i + 1]; p++) {
+            int xi = Vi[p] * w;
+            double v = Vx[p];
+            for (int c = 0; c < w; c++) {
+                x[xi + c] -= v * tau[c];
+            }
+        }
+    }
+}
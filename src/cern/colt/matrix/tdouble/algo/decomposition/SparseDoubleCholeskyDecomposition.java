@@ -8,11 +8,13 @@ It is provided "as is" without expressed or implied warranty.
  */
 package cern.colt.matrix.tdouble.algo.decomposition;
 
+import cern.colt.ForkJoinUtils;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.algo.DoubleProperty;
 import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2D;
 import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SymmetricSparseRCDoubleMatrix2D;
 import edu.emory.mathcs.csparsej.tdouble.Dcs_chol;
 import edu.emory.mathcs.csparsej.tdouble.Dcs_ipvec;
 import edu.emory.mathcs.csparsej.tdouble.Dcs_lsolve;
@@ -48,7 +50,9 @@ public class SparseDoubleCholeskyDecomposition {
      * retrieved via instance methods of the returned decomposition object.
      * 
      * @param A
-     *            Square, symmetric positive definite matrix .
+     *            Square, symmetric positive definite matrix; a
+     *            {@link SymmetricSparseRCDoubleMatrix2D} is decomposed from
+     *            its upper triangle.
      * @param order
      *            ordering option (0 or 1); 0: natural ordering, 1: amd(A+A')
      * @throws IllegalArgumentException
@@ -59,7 +63,9 @@ public class SparseDoubleCholeskyDecomposition {
      */
     public SparseDoubleCholeskyDecomposition(DoubleMatrix2D A, int order) {
         DoubleProperty.DEFAULT.checkSquare(A);
-        DoubleProperty.DEFAULT.checkSparse(A);
+        if (!(A instanceof SymmetricSparseRCDoubleMatrix2D)) {
+            DoubleProperty.DEFAULT.checkSparse(A);
+        }
         if (order < 0 || order > 1) {
             throw new IllegalArgumentException("order must be equal 0 or 1");
         }
@@ -67,6 +73,10 @@ public class SparseDoubleCholeskyDecomposition {
         if (A instanceof SparseRCDoubleMatrix2D) {
             rcMatrix = true;
             dcs = ((SparseRCDoubleMatrix2D) A).getColumnCompressed().elements();
+        } else if (A instanceof SymmetricSparseRCDoubleMatrix2D) {
+            // only the upper triangle is read by cs_schol and cs_chol
+            rcMatrix = true;
+            dcs = ((SymmetricSparseRCDoubleMatrix2D) A).getUpperTriangle().getColumnCompressed().elements();
         } else {
             dcs = (Dcs) A.elements();
         }
@@ -164,4 +174,39 @@ public class SparseDoubleCholeskyDecomposition {
             b.assign(x);
         }
     }
+
+    /**
+     * Solves <tt>A*X = B</tt>(in-place). Upon return <tt>B</tt> is overridden
+     * with the result <tt>X</tt>. Blocks of columns are solved concurrently.
+     * 
+     * @param B
+     *            A matrix with as many rows as <tt>A</tt> and any number of
+     *            columns.
+     * @exception IllegalArgumentException
+     *                if <tt>B.rows() != A.rows()</tt>.
+     */
+    public void solve(final DoubleMatrix2D B) {
+        if (B.rows() != n) {
+            throw new IllegalArgumentException("B.rows() != A.rows()");
+        }
+        DoubleProperty.DEFAULT.checkDense(B);
+        B.markModified();
+        final Dcs L = N.L;
+        final int[] pinv = S.pinv;
+        int work = 4 * L.p[n];
+        ForkJoinUtils.invoke(0, B.columns(), SparseDoubleBlockSolver.minColumns(work),
+                new ForkJoinUtils.RangeProcedure() {
+                    public void apply(int firstColumn, int lastColumn) {
+                        int block = Math.min(SparseDoubleBlockSolver.BLOCK_SIZE, lastColumn - firstColumn);
+                        double[] y = new double[n * block];
+                        for (int c = firstColumn; c < lastColumn; c += block) {
+                            int w = Math.min(block, lastColumn - c);
+                            SparseDoubleBlockSolver.read(B, c, w, pinv, true, n, y); /* Y = P*B */
+                            SparseDoubleBlockSolver.lsolve(L, y, w); /* Y = L\Y */
+                            SparseDoubleBlockSolver.ltsolve(L, y, w); /* Y = L'\Y */
+                            SparseDoubleBlockSolver.write(y, pinv, false, n, B, c, w); /* B = P'*Y */
+                        }
+                    }
+                });
+    }
 }
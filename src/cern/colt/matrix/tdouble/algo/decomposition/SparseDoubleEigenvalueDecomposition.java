@@ -0,0 +1,325 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import org.netlib.arpack.Dsaupd;
+import org.netlib.arpack.Dseupd;
+import org.netlib.util.doubleW;
+import org.netlib.util.intW;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DoubleProperty;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DiagonalDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+import edu.emory.mathcs.csparsej.tdouble.Dcs_add;
+import edu.emory.mathcs.csparsej.tdouble.Dcs_common.Dcs;
+
+/**
+ * Partial eigenvalue decomposition of a large, sparse, symmetric matrix
+ * <tt>A</tt>. A few eigenvalues <tt>lambda[j]</tt> and the corresponding
+ * orthonormal eigenvectors, the columns of <tt>V</tt>, are computed so that
+ * <tt>A*V = V*D</tt> where <tt>D = diag(lambda)</tt>.
+ * <P>
+ * This implementation uses the implicitly restarted Lanczos method
+ * (dsaupd/dseupd) from ARPACK. The matrix is only accessed through products
+ * with vectors, which run on the parallel <tt>zMult</tt> of
+ * {@link SparseRCDoubleMatrix2D} and {@link SparseCCDoubleMatrix2D}. In the
+ * shift-invert mode the eigenvalues closest to a shift <tt>sigma</tt> are
+ * computed from the largest eigenvalues of <tt>inv(A - sigma*I)</tt>, which is
+ * applied through a sparse LU decomposition; this converges much faster for
+ * eigenvalues at the lower end of the spectrum, such as those of graph
+ * Laplacians.
+ * <P>
+ * The eigenvalues are returned in ascending order. If the maximum number of
+ * iterations is reached, only the converged eigenpairs are returned. The
+ * ARPACK routines keep their state in static fields, hence concurrent
+ * decompositions are computed one at a time.
+ *
+ * @see DenseDoubleEigenvalueDecomposition
+ */
+public class SparseDoubleEigenvalueDecomposition {
+
+    /** The part of the spectrum to compute */
+    public enum Which {
+        /** Largest algebraic eigenvalues */
+        LargestAlgebraic,
+
+        /** Smallest algebraic eigenvalues */
+        SmallestAlgebraic,
+
+        /** Largest eigenvalues in magnitude */
+        LargestMagnitude,
+
+        /** Smallest eigenvalues in magnitude */
+        SmallestMagnitude;
+
+        /**
+         * @return the netlib character version of this designation, for use
+         *         with F2J.
+         */
+        public String netlib() {
+            switch (this) {
+            case LargestAlgebraic:
+                return "LA";
+            case SmallestAlgebraic:
+                return "SA";
+            case LargestMagnitude:
+                return "LM";
+            default:
+                return "SM";
+            }
+        }
+    }
+
+    /**
+     * The default maximum number of restarts.
+     */
+    public static final int DEFAULT_MAX_ITERATIONS = 300;
+
+    private DoubleMatrix1D eigenvalues;
+
+    private DoubleMatrix2D V;
+
+    private int iterations;
+
+    /**
+     * Constructs and returns a new eigenvalue decomposition object for the
+     * <tt>nev</tt> eigenvalues of the given part of the spectrum; The
+     * decomposed matrices can be retrieved via instance methods of the returned
+     * decomposition object.
+     *
+     * @param A
+     *            square, symmetric, sparse matrix
+     * @param nev
+     *            the number of eigenvalues to compute
+     * @param which
+     *            the part of the spectrum
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square or is not sparse, or if
+     *             <tt>nev</tt> is not in <tt>[1, A.rows()-1]</tt>.
+     */
+    public SparseDoubleEigenvalueDecomposition(DoubleMatrix2D A, int nev, Which which) {
+        this(A, nev, which, defaultNcv(A, nev), 0, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Constructs and returns a new eigenvalue decomposition object for the
+     * <tt>nev</tt> eigenvalues closest to <tt>sigma</tt>, computed in the
+     * shift-invert mode.
+     *
+     * @param A
+     *            square, symmetric, sparse matrix
+     * @param nev
+     *            the number of eigenvalues to compute
+     * @param sigma
+     *            the shift
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square or is not sparse, if
+     *             <tt>nev</tt> is not in <tt>[1, A.rows()-1]</tt>, or if
+     *             <tt>A - sigma*I</tt> is singular.
+     */
+    public SparseDoubleEigenvalueDecomposition(DoubleMatrix2D A, int nev, double sigma) {
+        this(A, nev, sigma, defaultNcv(A, nev), 0, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Constructs and returns a new eigenvalue decomposition object for the
+     * <tt>nev</tt> eigenvalues of the given part of the spectrum.
+     *
+     * @param A
+     *            square, symmetric, sparse matrix
+     * @param nev
+     *            the number of eigenvalues to compute
+     * @param which
+     *            the part of the spectrum
+     * @param ncv
+     *            the number of Lanczos vectors, <tt>nev < ncv <= A.rows()</tt>
+     * @param tol
+     *            the relative accuracy of the eigenvalues; if <tt>tol <= 0</tt>
+     *            the machine precision is used
+     * @param maxIterations
+     *            the maximum number of restarts
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square or is not sparse, or if the
+     *             parameters are out of range.
+     */
+    public SparseDoubleEigenvalueDecomposition(DoubleMatrix2D A, int nev, Which which, int ncv, double tol,
+            int maxIterations) {
+        decompose(A, null, nev, which.netlib(), 0, 1, ncv, tol, maxIterations);
+    }
+
+    /**
+     * Constructs and returns a new eigenvalue decomposition object for the
+     * <tt>nev</tt> eigenvalues closest to <tt>sigma</tt>, computed in the
+     * shift-invert mode.
+     *
+     * @param A
+     *            square, symmetric, sparse matrix
+     * @param nev
+     *            the number of eigenvalues to compute
+     * @param sigma
+     *            the shift
+     * @param ncv
+     *            the number of Lanczos vectors, <tt>nev < ncv <= A.rows()</tt>
+     * @param tol
+     *            the relative accuracy of the eigenvalues; if <tt>tol <= 0</tt>
+     *            the machine precision is used
+     * @param maxIterations
+     *            the maximum number of restarts
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square or is not sparse, if the
+     *             parameters are out of range, or if <tt>A - sigma*I</tt> is
+     *             singular.
+     */
+    public SparseDoubleEigenvalueDecomposition(DoubleMatrix2D A, int nev, double sigma, int ncv, double tol,
+            int maxIterations) {
+        DoubleProperty.DEFAULT.checkSquare(A);
+        DoubleProperty.DEFAULT.checkSparse(A);
+        int n = A.rows();
+        Dcs dcs;
+        if (A instanceof SparseRCDoubleMatrix2D) {
+            dcs = ((SparseRCDoubleMatrix2D) A).getColumnCompressed().elements();
+        } else {
+            dcs = (Dcs) A.elements();
+        }
+        int[] diagonal = new int[n];
+        for (int i = 0; i < n; i++) {
+            diagonal[i] = i;
+        }
+        Dcs I = new SparseCCDoubleMatrix2D(n, n, diagonal, diagonal, 1, false, false).elements();
+        SparseDoubleLUDecomposition lu = new SparseDoubleLUDecomposition(new SparseCCDoubleMatrix2D(Dcs_add
+                .cs_add(dcs, I, 1, -sigma)), 1, true);
+        if (!lu.isNonsingular()) {
+            throw new IllegalArgumentException("A - sigma*I is singular");
+        }
+        decompose(A, lu, nev, "LM", sigma, 3, ncv, tol, maxIterations);
+    }
+
+    /**
+     * Returns the block diagonal eigenvalue matrix, <tt>D</tt>.
+     *
+     * @return <tt>D</tt>
+     */
+    public DoubleMatrix2D getD() {
+        int k = (int) eigenvalues.size();
+        DoubleMatrix2D D = new DiagonalDoubleMatrix2D(k, k, 0);
+        for (int i = 0; i < k; i++) {
+            D.setQuick(i, i, eigenvalues.getQuick(i));
+        }
+        return D;
+    }
+
+    /**
+     * Returns the number of Lanczos restarts that were taken.
+     *
+     * @return the number of iterations
+     */
+    public int getNumberOfIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the computed eigenvalues in ascending order.
+     *
+     * @return <tt>lambda</tt>
+     */
+    public DoubleMatrix1D getRealEigenvalues() {
+        return eigenvalues.copy();
+    }
+
+    /**
+     * Returns the eigenvector matrix, <tt>V</tt>.
+     *
+     * @return <tt>V</tt>; a <tt>n x k</tt> matrix, where <tt>k</tt> is the
+     *         number of computed eigenvalues.
+     */
+    public DoubleMatrix2D getV() {
+        return V.copy();
+    }
+
+    /**
+     * Returns a String with the eigenvalues.
+     */
+    public String toString() {
+        StringBuffer buf = new StringBuffer();
+        buf.append("---------------------------------------------------------------------\n");
+        buf.append("SparseEigenvalueDecomposition(A) --> D, V\n");
+        buf.append("---------------------------------------------------------------------\n");
+        buf.append("realEigenvalues = " + String.valueOf(eigenvalues));
+        buf.append("\niterations = " + iterations);
+        return buf.toString();
+    }
+
+    private void decompose(DoubleMatrix2D A, SparseDoubleLUDecomposition lu, int nev, String which, double sigma,
+            int mode, int ncv, double tol, int maxIterations) {
+        DoubleProperty.DEFAULT.checkSquare(A);
+        DoubleProperty.DEFAULT.checkSparse(A);
+        int n = A.rows();
+        if (nev < 1 || nev >= n) {
+            throw new IllegalArgumentException("nev must be in [1, " + (n - 1) + "]: " + nev);
+        }
+        if (ncv <= nev || ncv > n) {
+            throw new IllegalArgumentException("ncv must be in [" + (nev + 1) + ", " + n + "]: " + ncv);
+        }
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("maxIterations < 1: " + maxIterations);
+        }
+        int lworkl = ncv * (ncv + 8);
+        double[] resid = new double[n];
+        double[] v = new double[n * ncv];
+        double[] workd = new double[3 * n];
+        double[] workl = new double[lworkl];
+        int[] iparam = new int[11];
+        int[] ipntr = new int[11];
+        iparam[0] = 1; // exact shifts
+        iparam[2] = maxIterations;
+        iparam[6] = mode;
+        intW ido = new intW(0);
+        intW info = new intW(0);
+        doubleW tolW = new doubleW(Math.max(tol, 0));
+        double[] d = new double[nev];
+        double[] z = new double[n * nev];
+        intW nconv = new intW(nev);
+        synchronized (Dsaupd.class) {
+            while (true) {
+                Dsaupd.dsaupd(ido, "I", n, which, nev, tolW, resid, 0, ncv, v, 0, n, iparam, 0, ipntr, 0, workd, 0,
+                        workl, 0, lworkl, info);
+                if (ido.val != -1 && ido.val != 1) {
+                    break;
+                }
+                DoubleMatrix1D x = new DenseDoubleMatrix1D(n, workd, ipntr[0] - 1, 1, true);
+                DoubleMatrix1D y = new DenseDoubleMatrix1D(n, workd, ipntr[1] - 1, 1, true);
+                if (lu == null) {
+                    A.zMult(x, y);
+                } else {
+                    y.assign(x);
+                    lu.solve(y);
+                }
+            }
+            if (info.val < 0) {
+                throw new IllegalArgumentException("Error occured while computing eigenvalues (dsaupd): "
+                        + info.val);
+            }
+            iterations = iparam[2];
+            if (iparam[4] > 0) {
+                Dseupd.dseupd(true, "A", new boolean[ncv], 0, d, 0, z, 0, n, sigma, "I", n, which, nconv,
+                        tolW.val, resid, 0, ncv, v, 0, n, iparam, 0, ipntr, 0, workd, 0, workl, 0, lworkl, info);
+                if (info.val != 0) {
+                    throw new IllegalArgumentException("Error occured while computing eigenvectors (dseupd): "
+                            + info.val);
+                }
+            }
+        }
+        int k = iparam[4];
+        double[] lambda = new double[k];
+        System.arraycopy(d, 0, lambda, 0, k);
+        eigenvalues = new DenseDoubleMatrix1D(lambda);
+        V = new DenseColumnDoubleMatrix2D(n, k, z, 0, 0, 1, n, false).getRowMajor();
+    }
+
+    private static int defaultNcv(DoubleMatrix2D A, int nev) {
+        return Math.min(A.rows(), Math.max(2 * nev + 1, 20));
+    }
+}
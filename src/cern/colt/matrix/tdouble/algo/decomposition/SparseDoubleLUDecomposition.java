@@ -1,5 +1,6 @@
 package cern.colt.matrix.tdouble.algo.decomposition;
 
+import cern.colt.ForkJoinUtils;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.algo.DoubleProperty;
@@ -220,4 +221,44 @@ public class SparseDoubleLUDecomposition {
             b.assign(x);
         }
     }
+
+    /**
+     * Solves <tt>A*X = B</tt>(in-place). Upon return <tt>B</tt> is overridden
+     * with the result <tt>X</tt>. Blocks of columns are solved concurrently.
+     * 
+     * @param B
+     *            A matrix with as many rows as <tt>A</tt> and any number of
+     *            columns.
+     * @exception IllegalArgumentException
+     *                if <tt>B.rows() != A.rows()</tt> or if A is singular.
+     */
+    public void solve(final DoubleMatrix2D B) {
+        if (B.rows() != n) {
+            throw new IllegalArgumentException("B.rows() != A.rows()");
+        }
+        if (!isNonsingular()) {
+            throw new IllegalArgumentException("A is singular");
+        }
+        DoubleProperty.DEFAULT.checkDense(B);
+        B.markModified();
+        final Dcs L = N.L;
+        final Dcs U = N.U;
+        final int[] pinv = N.pinv;
+        final int[] q = S.q;
+        int work = 2 * (L.p[n] + U.p[n]);
+        ForkJoinUtils.invoke(0, B.columns(), SparseDoubleBlockSolver.minColumns(work),
+                new ForkJoinUtils.RangeProcedure() {
+                    public void apply(int firstColumn, int lastColumn) {
+                        int block = Math.min(SparseDoubleBlockSolver.BLOCK_SIZE, lastColumn - firstColumn);
+                        double[] y = new double[n * block];
+                        for (int c = firstColumn; c < lastColumn; c += block) {
+                            int w = Math.min(block, lastColumn - c);
+                            SparseDoubleBlockSolver.read(B, c, w, pinv, true, n, y); /* Y = B(p,:) */
+                            SparseDoubleBlockSolver.lsolve(L, y, w); /* Y = L\Y */
+                            SparseDoubleBlockSolver.usolve(U, y, w); /* Y = U\Y */
+                            SparseDoubleBlockSolver.write(y, q, true, n, B, c, w); /* B(q,:) = Y */
+                        }
+                    }
+                });
+    }
 }
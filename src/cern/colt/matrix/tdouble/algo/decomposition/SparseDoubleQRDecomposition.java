@@ -1,5 +1,8 @@
 package cern.colt.matrix.tdouble.algo.decomposition;
 
+import java.util.Arrays;
+
+import cern.colt.ForkJoinUtils;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.algo.DoubleProperty;
@@ -214,6 +217,67 @@ public class SparseDoubleQRDecomposition {
             }
             Dcs_pvec.cs_pvec(S.pinv, y, x, n); /* x(0:n-1) = y(p(0:n-1)) */
         }
+        if (b.isView()) {
+            b.assign(x);
+        }
     }
 
+    /**
+     * Solves the least-squares problems (min ||A*X-B||_2, where A is m-by-n
+     * with m >= n) or underdetermined systems (A*X=B, where m < n) for all
+     * columns of <tt>B</tt>. Upon return <tt>B</tt> is overridden with the
+     * result <tt>X</tt>. Blocks of columns are solved concurrently.
+     * 
+     * @param B
+     *            right-hand sides.
+     * @exception IllegalArgumentException
+     *                if <tt>B.rows() != max(A.rows(), A.columns())</tt>.
+     * @exception IllegalArgumentException
+     *                if <tt>!this.hasFullRank()</tt> (<tt>A</tt> is rank
+     *                deficient).
+     */
+    public void solve(final DoubleMatrix2D B) {
+        if (B.rows() != Math.max(m, n)) {
+            throw new IllegalArgumentException("The number of rows of B must be equal to max(A.rows(), A.columns()).");
+        }
+        if (!this.hasFullRank()) {
+            throw new IllegalArgumentException("Matrix is rank deficient.");
+        }
+        DoubleProperty.DEFAULT.checkDense(B);
+        B.markModified();
+        final Dcs V = N.L;
+        final Dcs R = N.U;
+        final double[] beta = N.B;
+        final int[] pinv = S.pinv;
+        final int[] q = S.q;
+        final int m2 = S.m2;
+        int work = 4 * V.p[V.n] + 2 * R.p[R.n];
+        ForkJoinUtils.invoke(0, B.columns(), SparseDoubleBlockSolver.minColumns(work),
+                new ForkJoinUtils.RangeProcedure() {
+                    public void apply(int firstColumn, int lastColumn) {
+                        int block = Math.min(SparseDoubleBlockSolver.BLOCK_SIZE, lastColumn - firstColumn);
+                        double[] y = new double[m2 * block];
+                        double[] tau = new double[block];
+                        for (int c = firstColumn; c < lastColumn; c += block) {
+                            int w = Math.min(block, lastColumn - c);
+                            Arrays.fill(y, 0);
+                            if (m >= n) {
+                                SparseDoubleBlockSolver.read(B, c, w, pinv, true, m, y); /* Y = B(p,:) */
+                                for (int k = 0; k < n; k++) { /* apply Householder refl. to Y */
+                                    SparseDoubleBlockSolver.happly(V, k, beta[k], y, w, tau);
+                                }
+                                SparseDoubleBlockSolver.usolve(R, y, w); /* Y = R\Y */
+                                SparseDoubleBlockSolver.write(y, q, true, n, B, c, w); /* X(q,:) = Y */
+                            } else {
+                                SparseDoubleBlockSolver.read(B, c, w, q, false, m, y); /* Y = B(q,:) */
+                                SparseDoubleBlockSolver.utsolve(R, y, w); /* Y = R'\Y */
+                                for (int k = m - 1; k >= 0; k--) { /* apply Householder refl. to Y */
+                                    SparseDoubleBlockSolver.happly(V, k, beta[k], y, w, tau);
+                                }
+                                SparseDoubleBlockSolver.write(y, pinv, false, n, B, c, w); /* X = Y(p,:) */
+                            }
+                        }
+                    }
+                });
+    }
 }
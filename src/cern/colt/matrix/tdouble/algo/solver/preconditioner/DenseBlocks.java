@@ -0,0 +1,132 @@
+package cern.colt.matrix.tdouble.algo.solver.preconditioner;
+
+/**
+ * Operations on the small dense square blocks of the block preconditioners. A
+ * block of size <tt>b</tt> is stored row by row in <tt>b*b</tt> consecutive
+ * elements of an array, starting at an offset.
+ */
+final class DenseBlocks {
+
+    private DenseBlocks() {
+    }
+
+    /**
+     * Inverts the block <tt>a</tt> in place by Gauss-Jordan elimination with
+     * partial pivoting; <tt>work</tt> is a workspace of size <tt>2*b*b</tt>.
+     *
+     * @return false if the block is singular.
+     */
+    static boolean invert(double[] a, int offset, int b, double[] work) {
+        int w = 2 * b;
+        for (int r = 0; r < b; r++) {
+            for (int c = 0; c < b; c++) {
+                work[r * w + c] = a[offset + r * b + c];
+                work[r * w + b + c] = r == c ? 1 : 0;
+            }
+        }
+        for (int j = 0; j < b; j++) {
+            int pivot = j;
+            for (int r = j + 1; r < b; r++) {
+                if (Math.abs(work[r * w + j]) > Math.abs(work[pivot * w + j]))
+                    pivot = r;
+            }
+            if (work[pivot * w + j] == 0)
+                return false;
+            if (pivot != j) {
+                for (int c = 0; c < w; c++) {
+                    double t = work[j * w + c];
+                    work[j * w + c] = work[pivot * w + c];
+                    work[pivot * w + c] = t;
+                }
+            }
+            double d = 1 / work[j * w + j];
+            for (int c = 0; c < w; c++) {
+                work[j * w + c] *= d;
+            }
+            for (int r = 0; r < b; r++) {
+                double f = work[r * w + j];
+                if (r != j && f != 0) {
+                    for (int c = 0; c < w; c++) {
+                        work[r * w + c] -= f * work[j * w + c];
+                    }
+                }
+            }
+        }
+        for (int r = 0; r < b; r++) {
+            for (int c = 0; c < b; c++) {
+                a[offset + r * b + c] = work[r * w + b + c];
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the block <tt>c = a*b</tt>; <tt>c</tt> must not overlap the
+     * operands.
+     */
+    static void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int n) {
+        for (int r = 0; r < n; r++) {
+            for (int j = 0; j < n; j++) {
+                double s = 0;
+                for (int k = 0; k < n; k++) {
+                    s += a[aOffset + r * n + k] * b[bOffset + k * n + j];
+                }
+                c[cOffset + r * n + j] = s;
+            }
+        }
+    }
+
+    /**
+     * Computes the block <tt>c = c - a*b</tt>.
+     */
+    static void multiplySubtract(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, int n) {
+        for (int r = 0; r < n; r++) {
+            for (int k = 0; k < n; k++) {
+                double f = a[aOffset + r * n + k];
+                if (f != 0) {
+                    for (int j = 0; j < n; j++) {
+                        c[cOffset + r * n + j] -= f * b[bOffset + k * n + j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes <tt>y = a*x</tt>, or <tt>y = a'*x</tt> if <tt>transpose</tt>
+     * is true, where <tt>x</tt> and <tt>y</tt> are vectors of size <tt>n</tt>
+     * that must not overlap.
+     */
+    static void multiply(double[] a, int aOffset, boolean transpose, double[] x, int xOffset, double[] y,
+            int yOffset, int n) {
+        for (int r = 0; r < n; r++) {
+            y[yOffset + r] = 0;
+        }
+        multiplySubtract(a, aOffset, transpose, x, xOffset, y, yOffset, n, -1);
+    }
+
+    /**
+     * Computes <tt>y = y - f*a*x</tt>, or <tt>y = y - f*a'*x</tt> if
+     * <tt>transpose</tt> is true, where <tt>x</tt> and <tt>y</tt> are vectors
+     * of size <tt>n</tt> that must not overlap.
+     */
+    static void multiplySubtract(double[] a, int aOffset, boolean transpose, double[] x, int xOffset, double[] y,
+            int yOffset, int n, double f) {
+        if (transpose) {
+            for (int k = 0; k < n; k++) {
+                double xk = f * x[xOffset + k];
+                for (int r = 0, idx = aOffset + k * n; r < n; r++, idx++) {
+                    y[yOffset + r] -= a[idx] * xk;
+                }
+            }
+        } else {
+            for (int r = 0, idx = aOffset; r < n; r++) {
+                double s = 0;
+                for (int k = 0; k < n; k++, idx++) {
+                    s += a[idx] * x[xOffset + k];
+                }
+                y[yOffset + r] -= f * s;
+            }
+        }
+    }
+}
@@ -695,8 +695,8 @@ public class DoubleAMG implements DoublePreconditioner {
                 // Form a compressed column storage for the operator
                 I = createInterpolationMatrix(P, A.rows());
 
-                // Create the Galerkin operator using a slow method
-                Ac = createGalerkinSlow(I, A);
+                // Create the Galerkin operator by sparse matrix products
+                Ac = createGalerkin(I, A);
             }
 
             /*
@@ -878,44 +878,18 @@ public class DoubleAMG implements DoublePreconditioner {
 
         /**
          * Creates the entries of the Galerkin operator
-         * <code>Ac = I<sup>T</sup> A I</code>. This is a very time-consuming
-         * operation
+         * <code>Ac = I<sup>T</sup> A I</code> by two sparse matrix products
          */
-        private SparseRCDoubleMatrix2D createGalerkinSlow(SparseCCDoubleMatrix2D I, SparseRCDoubleMatrix2D A) {
-            int n = I.rows(), c = I.columns();
-            SparseRCMDoubleMatrix2D Ac = new SparseRCMDoubleMatrix2D(c, c);
-
-            double[] aiCol = new double[n];
-            double[] iCol = new double[n];
-            DenseDoubleMatrix1D aiV = new DenseDoubleMatrix1D(n, aiCol, 0, 1, false);
-            DenseDoubleMatrix1D iV = new DenseDoubleMatrix1D(n, iCol, 0, 1, false);
-            double[] itaiCol = new double[c];
-            DenseDoubleMatrix1D itaiV = new DenseDoubleMatrix1D(c, itaiCol, 0, 1, false);
-
-            int[] colptr = I.getColumnPointers();
-            int[] rowind = I.getRowIndexes();
-            double[] Idata = I.getValues();
-
-            for (int k = 0; k < c; ++k) {
-
-                // Expand column 'k' of I to dense storage
-                iV.assign(0);
-                for (int i = colptr[k]; i < colptr[k + 1]; ++i)
-                    iCol[rowind[i]] = Idata[i];
+        private SparseRCDoubleMatrix2D createGalerkin(SparseCCDoubleMatrix2D I, SparseRCDoubleMatrix2D A) {
+            SparseRCDoubleMatrix2D P = I.getRowCompressed();
 
-                // Form column 'k' of A*I
-                A.zMult(iV, aiV);
+            // Form A*I, then I'*A*I
+            SparseRCDoubleMatrix2D AP = A.zMultSparse(P, null, 1, false, false);
+            SparseRCDoubleMatrix2D Ac = P.zMultSparse(AP, null, 1, true, false);
 
-                // Form column 'k' of I'*A*I
-                I.zMult(aiV, itaiV, 1, 0, true);
-
-                // Store non-zeros into Ac
-                for (int i = 0; i < c; ++i)
-                    if (itaiCol[i] != 0)
-                        Ac.setQuick(i, k, itaiCol[i]);
-            }
-
-            return (SparseRCDoubleMatrix2D) (new SparseRCDoubleMatrix2D(Ac.rows(), Ac.columns()).assign(Ac));
+            // Keep only the non-zeros
+            Ac.removeZeroes();
+            return Ac;
         }
 
         /**
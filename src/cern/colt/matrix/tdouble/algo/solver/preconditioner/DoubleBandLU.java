@@ -0,0 +1,65 @@
+package cern.colt.matrix.tdouble.algo.solver.preconditioner;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.decomposition.BandDoubleLUDecomposition;
+import cern.colt.matrix.tdouble.impl.BandDoubleMatrix2D;
+
+/**
+ * Band preconditioner. Factorizes the band of the system matrix with a banded
+ * LU decomposition and solves with it. The cells outside the band are ignored;
+ * if the band covers all nonzeros, the preconditioner is a direct solver.
+ */
+public class DoubleBandLU implements DoublePreconditioner {
+
+    /**
+     * The band of the system matrix
+     */
+    private final BandDoubleMatrix2D band;
+
+    /**
+     * Factorization of the band
+     */
+    private BandDoubleLUDecomposition lu;
+
+    /**
+     * Constructor for DoubleBandLU
+     *
+     * @param n
+     *            Problem size (number of rows)
+     * @param lowerBandwidth
+     *            Number of subdiagonals of the band
+     * @param upperBandwidth
+     *            Number of superdiagonals of the band
+     */
+    public DoubleBandLU(int n, int lowerBandwidth, int upperBandwidth) {
+        band = new BandDoubleMatrix2D(n, n, lowerBandwidth, upperBandwidth);
+    }
+
+    public DoubleMatrix1D apply(DoubleMatrix1D b, DoubleMatrix1D x) {
+        if (x == null) {
+            x = b.like();
+        }
+
+        return x.assign(lu.solve(b));
+    }
+
+    public DoubleMatrix1D transApply(DoubleMatrix1D b, DoubleMatrix1D x) {
+        if (x == null) {
+            x = b.like();
+        }
+
+        return x.assign(lu.solveTranspose(b));
+    }
+
+    public void setMatrix(DoubleMatrix2D A) {
+        if (A.rows() != band.rows() || A.columns() != band.columns())
+            throw new IllegalArgumentException("Matrix size differs from preconditioner size");
+
+        band.assign(A);
+        lu = new BandDoubleLUDecomposition(band);
+        if (!lu.isNonsingular())
+            throw new RuntimeException("Band of the matrix is singular");
+    }
+
+}
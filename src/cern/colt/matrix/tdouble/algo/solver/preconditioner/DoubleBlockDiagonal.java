@@ -0,0 +1,86 @@
+package cern.colt.matrix.tdouble.algo.solver.preconditioner;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Block diagonal (block Jacobi) preconditioner. Uses the inverses of the
+ * square blocks on the diagonal as preconditioner, which couples the unknowns
+ * of a node in systems with several unknowns per node. A block size of 1 gives
+ * {@link DoubleDiagonal}.
+ */
+public class DoubleBlockDiagonal implements DoublePreconditioner {
+
+    /**
+     * Number of rows and columns of a block
+     */
+    private final int blockSize;
+
+    /**
+     * The inverses of the diagonal blocks, stored row by row
+     */
+    private final double[] invdiag;
+
+    /**
+     * Temporary vectors for applying the inverses
+     */
+    private final double[] xd;
+
+    private final double[] bd;
+
+    /**
+     * Constructor for DoubleBlockDiagonal
+     *
+     * @param n
+     *            Problem size (number of rows), a multiple of the block size
+     * @param blockSize
+     *            Number of rows and columns of a diagonal block
+     */
+    public DoubleBlockDiagonal(int n, int blockSize) {
+        if (blockSize < 1 || n % blockSize != 0)
+            throw new IllegalArgumentException("n is not a multiple of the block size");
+        this.blockSize = blockSize;
+        invdiag = new double[n * blockSize];
+        xd = new double[n];
+        bd = new double[n];
+    }
+
+    public DoubleMatrix1D apply(DoubleMatrix1D b, DoubleMatrix1D x) {
+        return solve(b, x, false);
+    }
+
+    public DoubleMatrix1D transApply(DoubleMatrix1D b, DoubleMatrix1D x) {
+        return solve(b, x, true);
+    }
+
+    public void setMatrix(DoubleMatrix2D A) {
+        if (A.rows() != xd.length)
+            throw new IllegalArgumentException("Matrix size differs from preconditioner size");
+
+        int b = blockSize;
+        double[] work = new double[2 * b * b];
+        for (int I = 0, offset = 0; I < xd.length / b; I++, offset += b * b) {
+            for (int r = 0; r < b; r++) {
+                for (int c = 0; c < b; c++) {
+                    invdiag[offset + r * b + c] = A.getQuick(I * b + r, I * b + c);
+                }
+            }
+            if (!DenseBlocks.invert(invdiag, offset, b, work))
+                throw new RuntimeException("Singular diagonal block on block row " + (I + 1));
+        }
+    }
+
+    private DoubleMatrix1D solve(DoubleMatrix1D b, DoubleMatrix1D x, boolean transpose) {
+        if (x == null) {
+            x = b.like();
+        }
+
+        b.toArray(bd);
+        int n = blockSize;
+        for (int I = 0; I < xd.length / n; I++) {
+            DenseBlocks.multiply(invdiag, I * n * n, transpose, bd, I * n, xd, I * n, n);
+        }
+        return x.assign(xd);
+    }
+
+}
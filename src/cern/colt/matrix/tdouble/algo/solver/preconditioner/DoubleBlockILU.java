@@ -0,0 +1,215 @@
+package cern.colt.matrix.tdouble.algo.solver.preconditioner;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.BlockSparseRCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+
+/**
+ * Block ILU(0) preconditioner using a block compressed row matrix as internal
+ * storage. The factorization keeps the block structure of the system matrix
+ * and treats its square blocks as the entries of {@link DoubleILU}; the
+ * diagonal blocks are inverted. A block size of 1 gives {@link DoubleILU}.
+ */
+public class DoubleBlockILU implements DoublePreconditioner {
+
+    /**
+     * Factorisation matrix
+     */
+    private BlockSparseRCDoubleMatrix2D LU;
+
+    /**
+     * The inverses of the diagonal blocks of U, stored row by row
+     */
+    private double[] invdiag;
+
+    /**
+     * Temporary vectors for solving the factorised system
+     */
+    private final double[] y;
+
+    private final double[] t;
+
+    private int[] diagind;
+
+    private final int n;
+
+    private final int blockSize;
+
+    /**
+     * Sets up the block ILU preconditioner
+     *
+     * @param n
+     *            Problem size (number of rows), a multiple of the block size
+     * @param blockSize
+     *            Number of rows and columns of a block
+     */
+    public DoubleBlockILU(int n, int blockSize) {
+        if (blockSize < 1 || n % blockSize != 0)
+            throw new IllegalArgumentException("n is not a multiple of the block size");
+        this.n = n;
+        this.blockSize = blockSize;
+        y = new double[n];
+        t = new double[blockSize];
+    }
+
+    public DoubleMatrix1D apply(DoubleMatrix1D b, DoubleMatrix1D x) {
+        if (x == null) {
+            x = b.like();
+        }
+
+        b.toArray(y);
+
+        // Ly = b, y = L\b
+        lowerUnitSolve();
+
+        // Ux = L\b = y
+        upperSolve();
+
+        return x.assign(y);
+    }
+
+    public DoubleMatrix1D transApply(DoubleMatrix1D b, DoubleMatrix1D x) {
+        if (x == null) {
+            x = b.like();
+        }
+
+        b.toArray(y);
+
+        // U'y = b, y = U'\b
+        upperTransSolve();
+
+        // L'x = U'\b = y
+        lowerUnitTransSolve();
+
+        return x.assign(y);
+    }
+
+    public void setMatrix(DoubleMatrix2D A) {
+        if (A.rows() != n) {
+            throw new IllegalArgumentException("A.rows() != n");
+        }
+        if (A instanceof BlockSparseRCDoubleMatrix2D && ((BlockSparseRCDoubleMatrix2D) A).getBlockSize() == blockSize) {
+            LU = (BlockSparseRCDoubleMatrix2D) A.copy();
+        } else {
+            SparseRCDoubleMatrix2D R = new SparseRCDoubleMatrix2D(n, n);
+            R.assign(A);
+            LU = new BlockSparseRCDoubleMatrix2D(R, blockSize);
+        }
+        factor();
+    }
+
+    private void factor() {
+
+        // Internal BSR matrix storage
+        int[] colind = LU.getBlockColumnIndexes();
+        int[] rowptr = LU.getBlockRowPointers();
+        double[] data = LU.elements();
+        int b = blockSize;
+        int bb = b * b;
+        int m = n / b;
+
+        // Find the indexes to the diagonal blocks
+        diagind = new int[m];
+        for (int k = 0; k < m; ++k) {
+            diagind[k] = cern.colt.Sorting.binarySearchFromTo(colind, k, rowptr[k], rowptr[k + 1] - 1);
+
+            if (diagind[k] < 0)
+                throw new RuntimeException("Missing diagonal block on block row " + (k + 1));
+        }
+
+        invdiag = new double[m * bb];
+        double[] LUki = new double[bb];
+        double[] work = new double[2 * bb];
+
+        // Go down along the main diagonal
+        for (int k = 0; k < m; ++k) {
+            for (int i = rowptr[k]; i < diagind[k]; ++i) {
+
+                // Elimination factor, using the inverted diagonal block of
+                // the earlier block row
+                int index = colind[i];
+                DenseBlocks.multiply(data, i * bb, invdiag, index * bb, LUki, 0, b);
+                System.arraycopy(LUki, 0, data, i * bb, bb);
+
+                // Traverse the sparse block row index, reducing on row k
+                for (int j = diagind[index] + 1, l = i + 1; j < rowptr[index + 1]; ++j) {
+
+                    while (l < rowptr[k + 1] && colind[l] < colind[j])
+                        l++;
+
+                    if (l < rowptr[k + 1] && colind[l] == colind[j])
+                        DenseBlocks.multiplySubtract(LUki, 0, data, j * bb, data, l * bb, b);
+                }
+            }
+
+            System.arraycopy(data, diagind[k] * bb, invdiag, k * bb, bb);
+            if (!DenseBlocks.invert(invdiag, k * bb, b, work))
+                throw new RuntimeException("Singular diagonal block on block row " + (k + 1)
+                        + " during block ILU process");
+        }
+    }
+
+    private void lowerUnitSolve() {
+        int[] colind = LU.getBlockColumnIndexes();
+        int[] rowptr = LU.getBlockRowPointers();
+        double[] data = LU.elements();
+        int b = blockSize;
+        for (int i = 0; i < n / b; ++i) {
+
+            // yi = bi - sum[j<i] Lij * yj
+            for (int j = rowptr[i]; j < diagind[i]; ++j)
+                DenseBlocks.multiplySubtract(data, j * b * b, false, y, colind[j] * b, y, i * b, b, 1);
+        }
+    }
+
+    private void lowerUnitTransSolve() {
+        int[] colind = LU.getBlockColumnIndexes();
+        int[] rowptr = LU.getBlockRowPointers();
+        double[] data = LU.elements();
+        int b = blockSize;
+
+        for (int i = n / b - 1; i >= 0; --i)
+
+            // At this stage, y[i] is known, so move it over to the right hand
+            // side for the remaining equations
+            for (int j = rowptr[i]; j < diagind[i]; ++j)
+                DenseBlocks.multiplySubtract(data, j * b * b, true, y, i * b, y, colind[j] * b, b, 1);
+    }
+
+    private void upperSolve() {
+        int[] colind = LU.getBlockColumnIndexes();
+        int[] rowptr = LU.getBlockRowPointers();
+        double[] data = LU.elements();
+        int b = blockSize;
+        for (int i = n / b - 1; i >= 0; --i) {
+
+            // yi = Uii \ (bi - sum[j>i] Uij * yj)
+            for (int j = diagind[i] + 1; j < rowptr[i + 1]; ++j)
+                DenseBlocks.multiplySubtract(data, j * b * b, false, y, colind[j] * b, y, i * b, b, 1);
+
+            System.arraycopy(y, i * b, t, 0, b);
+            DenseBlocks.multiply(invdiag, i * b * b, false, t, 0, y, i * b, b);
+        }
+    }
+
+    private void upperTransSolve() {
+        int[] colind = LU.getBlockColumnIndexes();
+        int[] rowptr = LU.getBlockRowPointers();
+        double[] data = LU.elements();
+        int b = blockSize;
+
+        for (int i = 0; i < n / b; ++i) {
+
+            // Solve for the current block
+            System.arraycopy(y, i * b, t, 0, b);
+            DenseBlocks.multiply(invdiag, i * b * b, true, t, 0, y, i * b, b);
+
+            // Move this known solution over to the right hand side for the
+            // remaining equations
+            for (int j = diagind[i] + 1; j < rowptr[i + 1]; ++j)
+                DenseBlocks.multiplySubtract(data, j * b * b, true, y, i * b, y, colind[j] * b, b, 1);
+        }
+    }
+
+}
@@ -0,0 +1,390 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Arrays;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * Band 2-d matrix holding <tt>double</tt> elements. First see the <a
+ * href="package-summary.html">package summary</a> and javadoc <a
+ * href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * Only the cells <tt>(i,j)</tt> with
+ * <tt>j - upperBandwidth <= i <= j + lowerBandwidth</tt> are stored, in the
+ * band storage of LAPACK: column <tt>j</tt> of the band is held contiguously
+ * and cell <tt>(i,j)</tt> at
+ * <tt>elements[upperBandwidth + i - j + j*(lowerBandwidth + upperBandwidth + 1)]</tt>.
+ * The cells outside the band are zero; setting them has no effect. Unlike the
+ * compressed row format no indexes are stored, and a row or a column of the
+ * band is read with a constant stride.
+ * <p>
+ * <tt>zMult</tt> computes the rows of the product concurrently for large
+ * matrices; {@link cern.colt.matrix.tdouble.algo.decomposition.BandDoubleLUDecomposition}
+ * and
+ * {@link cern.colt.matrix.tdouble.algo.decomposition.BandDoubleCholeskyDecomposition}
+ * factorize the matrix in <tt>O(n*bw^2)</tt> operations.
+ * <p>
+ * <b>Memory requirements:</b>
+ * <p>
+ * <tt>memory [bytes] = 8*columns*(lowerBandwidth + upperBandwidth + 1)</tt>.
+ * Thus, a 1000000*1000000 tridiagonal matrix uses 24 MB.
+ */
+public class BandDoubleMatrix2D extends WrapperDoubleMatrix2D {
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * The band, column by column.
+     */
+    protected double[] elements;
+
+    /*
+     * Number of subdiagonals.
+     */
+    protected int kl;
+
+    /*
+     * Number of superdiagonals.
+     */
+    protected int ku;
+
+    /*
+     * Number of elements of a column of the band.
+     */
+    protected int ldab;
+
+    /**
+     * Constructs a matrix with a copy of the given values. <tt>values</tt> is
+     * required to have the form <tt>values[row][column]</tt> and have exactly
+     * the same number of columns in every row. Only the values within the band
+     * are used.
+     *
+     * @param values
+     *            The values to be filled into the new matrix.
+     * @param lowerBandwidth
+     *            the number of subdiagonals.
+     * @param upperBandwidth
+     *            the number of superdiagonals.
+     * @throws IllegalArgumentException
+     *             if
+     *             <tt>for any 1 &lt;= row &lt; values.length: values[row].length != values[row-1].length</tt>
+     *             .
+     */
+    public BandDoubleMatrix2D(double[][] values, int lowerBandwidth, int upperBandwidth) {
+        this(values.length, values.length == 0 ? 0 : values[0].length, lowerBandwidth, upperBandwidth);
+        assign(values);
+    }
+
+    /**
+     * Constructs a matrix with a given number of rows and columns and a given
+     * band. All entries are initially <tt>0</tt>.
+     *
+     * @param rows
+     *            the number of rows the matrix shall have.
+     * @param columns
+     *            the number of columns the matrix shall have.
+     * @param lowerBandwidth
+     *            the number of subdiagonals.
+     * @param upperBandwidth
+     *            the number of superdiagonals.
+     * @throws IllegalArgumentException
+     *             if a bandwidth is negative or if
+     *             <tt>columns*(lowerBandwidth + upperBandwidth + 1) > Integer.MAX_VALUE</tt>
+     *             .
+     */
+    public BandDoubleMatrix2D(int rows, int columns, int lowerBandwidth, int upperBandwidth) {
+        super(null);
+        try {
+            setUp(rows, columns);
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        if (lowerBandwidth < 0 || upperBandwidth < 0)
+            throw new IllegalArgumentException("negative bandwidth: " + lowerBandwidth + ", " + upperBandwidth);
+        this.kl = lowerBandwidth;
+        this.ku = upperBandwidth;
+        long length = ((long) kl + ku + 1) * columns;
+        if (length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("matrix too large");
+        this.ldab = kl + ku + 1;
+        elements = new double[(int) length];
+    }
+
+    public DoubleMatrix2D assign(double value) {
+        markModified();
+        Arrays.fill(elements, value);
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
+        for (int j = elements.length; --j >= 0;) {
+            elements[j] = function.apply(elements[j]);
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final double[][] values) {
+        markModified();
+        if (values.length != rows)
+            throw new IllegalArgumentException("Must have same number of rows: rows=" + values.length + "rows()="
+                    + rows());
+        for (int r = 0; r < rows; r++) {
+            if (values[r].length != columns)
+                throw new IllegalArgumentException("Must have same number of columns in every row: columns="
+                        + values[r].length + "columns()=" + columns());
+            for (int c = Math.max(0, r - kl), last = Math.min(columns - 1, r + ku); c <= last; c++) {
+                elements[ku + r - c + c * ldab] = values[r][c];
+            }
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
+        // overriden for performance only
+        if (source == this)
+            return this; // nothing to do
+        checkShape(source);
+        if (source instanceof BandDoubleMatrix2D && ((BandDoubleMatrix2D) source).kl == kl
+                && ((BandDoubleMatrix2D) source).ku == ku) {
+            System.arraycopy(((BandDoubleMatrix2D) source).elements, 0, elements, 0, elements.length);
+            return this;
+        }
+        for (int c = 0; c < columns; c++) {
+            for (int r = Math.max(0, c - ku), last = Math.min(rows - 1, c + kl); r <= last; r++) {
+                elements[ku + r - c + c * ldab] = source.getQuick(r, c);
+            }
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final DoubleMatrix2D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
+        checkShape(y);
+        if (y instanceof BandDoubleMatrix2D && ((BandDoubleMatrix2D) y).kl == kl && ((BandDoubleMatrix2D) y).ku == ku) {
+            double[] otherElements = ((BandDoubleMatrix2D) y).elements;
+            for (int j = elements.length; --j >= 0;) {
+                elements[j] = function.apply(elements[j], otherElements[j]);
+            }
+        } else {
+            for (int c = 0; c < columns; c++) {
+                for (int r = Math.max(0, c - ku), last = Math.min(rows - 1, c + kl); r <= last; r++) {
+                    int idx = ku + r - c + c * ldab;
+                    elements[idx] = function.apply(elements[idx], y.getQuick(r, c));
+                }
+            }
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D copy() {
+        BandDoubleMatrix2D copy = new BandDoubleMatrix2D(rows, columns, kl, ku);
+        System.arraycopy(elements, 0, copy.elements, 0, elements.length);
+        return copy;
+    }
+
+    public double[] elements() {
+        return elements;
+    }
+
+    public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        markModified();
+        // row by row, so that compressed row matrices are filled in order
+        for (int r = 0; r < rows; r++) {
+            for (int c = Math.max(0, r - kl), last = Math.min(columns - 1, r + ku); c <= last; c++) {
+                int idx = ku + r - c + c * ldab;
+                double value = elements[idx];
+                if (value != 0) {
+                    elements[idx] = function.apply(r, c, value);
+                }
+            }
+        }
+        return this;
+    }
+
+    public double getQuick(int row, int column) {
+        int d = row - column;
+        if (d > kl || -d > ku)
+            return 0;
+        return elements[ku + d + column * ldab];
+    }
+
+    /**
+     * Returns the number of subdiagonals.
+     *
+     * @return the lower bandwidth.
+     */
+    public int lowerBandwidth() {
+        return kl;
+    }
+
+    /**
+     * Returns the number of superdiagonals.
+     *
+     * @return the upper bandwidth.
+     */
+    public int upperBandwidth() {
+        return ku;
+    }
+
+    public DoubleMatrix2D like(int rows, int columns) {
+        return new SparseDoubleMatrix2D(rows, columns);
+    }
+
+    public DoubleMatrix1D like1D(int size) {
+        return new SparseDoubleMatrix1D(size);
+    }
+
+    public void setQuick(int row, int column, double value) {
+        markModified();
+        int d = row - column;
+        if (d > kl || -d > ku)
+            return;
+        elements[ku + d + column * ldab] = value;
+    }
+
+    public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
+            final boolean transposeA) {
+        if (z != null)
+            z.markModified();
+        final int rowsA = transposeA ? columns : rows;
+        int columnsA = transposeA ? rows : columns;
+        final boolean ignore = (z == null);
+        if (z == null)
+            z = new DenseDoubleMatrix1D(rowsA);
+        if (columnsA != y.size() || rowsA > z.size())
+            throw new IllegalArgumentException("Incompatible args: "
+                    + ((transposeA ? viewDice() : this).toStringShort()) + ", " + y.toStringShort() + ", "
+                    + z.toStringShort());
+        final double[] x = y.toArray();
+        final DoubleMatrix1D zz = z;
+        // the rows of a sparse z must not be set concurrently
+        int minRows = (z instanceof DenseDoubleMatrix1D) ? minRows(1) : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, rowsA, minRows, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstRow, int lastRow) {
+                for (int i = firstRow; i < lastRow; i++) {
+                    int first = first(i, transposeA);
+                    int length = last(i, transposeA) - first + 1;
+                    double sum = (length > 0) ? DenseDoubleKernels.dot(elements, offset(i, transposeA) + first
+                            * stride(transposeA), stride(transposeA), x, first, 1, length) : 0;
+                    zz.setQuick(i, ignore ? alpha * sum : alpha * sum + beta * zz.getQuick(i));
+                }
+            }
+        });
+        return z;
+    }
+
+    public DoubleMatrix2D zMult(DoubleMatrix2D B, DoubleMatrix2D C, final double alpha, final double beta,
+            final boolean transposeA, boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
+        final int rowsA = transposeA ? columns : rows;
+        int columnsA = transposeA ? rows : columns;
+        final int n = transposeB ? B.rows() : B.columns();
+        if (C == null)
+            C = new DenseDoubleMatrix2D(rowsA, n);
+        if (!(isDense(B) && isDense(C)))
+            return super.zMult(B, C, alpha, beta, transposeA, transposeB);
+        if ((transposeB ? B.columns() : B.rows()) != columnsA)
+            throw new IllegalArgumentException("Matrix2D inner dimensions must agree:"
+                    + (transposeA ? viewDice() : this).toStringShort() + ", "
+                    + (transposeB ? B.viewDice() : B).toStringShort());
+        if (C.rows() != rowsA || C.columns() != n)
+            throw new IllegalArgumentException("Incompatibe result matrix: " + toStringShort() + ", "
+                    + B.toStringShort() + ", " + C.toStringShort());
+        if (B == C)
+            throw new IllegalArgumentException("Matrices must not be identical");
+
+        final double[] b = (double[]) B.elements();
+        final int bZero = (int) B.index(0, 0);
+        final int bRowStride = transposeB ? B.columnStride() : B.rowStride();
+        final int bColumnStride = transposeB ? B.rowStride() : B.columnStride();
+        final double[] c = (double[]) C.elements();
+        final int cZero = (int) C.index(0, 0);
+        final int cRowStride = C.rowStride();
+        final int cColumnStride = C.columnStride();
+        // row i of C is beta times itself plus a combination of rows of op(B)
+        ForkJoinUtils.invoke(0, rowsA, minRows(n), new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstRow, int lastRow) {
+                int stride = stride(transposeA);
+                for (int i = firstRow; i < lastRow; i++) {
+                    int idxC = cZero + i * cRowStride;
+                    for (int k = 0, idx = idxC; k < n; k++, idx += cColumnStride) {
+                        c[idx] = (beta == 0) ? 0 : beta * c[idx];
+                    }
+                    for (int j = first(i, transposeA), last = last(i, transposeA), idxA = offset(i, transposeA) + j
+                            * stride; j <= last; j++, idxA += stride) {
+                        double a = alpha * elements[idxA];
+                        if (a != 0) {
+                            int idx = idxC;
+                            int idxB = bZero + j * bRowStride;
+                            for (int k = 0; k < n; k++) {
+                                c[idx] += a * b[idxB];
+                                idx += cColumnStride;
+                                idxB += bColumnStride;
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return C;
+    }
+
+    protected DoubleMatrix2D getContent() {
+        return this;
+    }
+
+    /*
+     * Row i of op(A) holds its columns first(i), ..., last(i) at
+     * elements[offset(i) + j * stride].
+     */
+    private int first(int i, boolean transposeA) {
+        return Math.max(0, i - (transposeA ? ku : kl));
+    }
+
+    private int last(int i, boolean transposeA) {
+        return transposeA ? Math.min(rows - 1, i + kl) : Math.min(columns - 1, i + ku);
+    }
+
+    private int offset(int i, boolean transposeA) {
+        return transposeA ? ku + i * (ldab - 1) : ku + i;
+    }
+
+    private int stride(boolean transposeA) {
+        return transposeA ? 1 : ldab - 1;
+    }
+
+    /**
+     * Returns the minimal number of rows of a task computing <tt>n</tt>
+     * columns of the product.
+     */
+    private int minRows(int n) {
+        long work = (long) elements.length * n;
+        if (ConcurrencyUtils.getNumberOfThreads() < 2
+                || work < ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV)) {
+            return Integer.MAX_VALUE;
+        }
+        return 1;
+    }
+
+    private static boolean isDense(DoubleMatrix2D A) {
+        return (A instanceof DenseDoubleMatrix2D || A instanceof DenseColumnDoubleMatrix2D) && A.elements() != null;
+    }
+}
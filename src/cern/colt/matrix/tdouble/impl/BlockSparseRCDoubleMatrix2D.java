@@ -0,0 +1,489 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Arrays;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Block compressed row (BSR) 2-d matrix holding <tt>double</tt> elements.
+ * First see the <a href="package-summary.html">package summary</a> and
+ * javadoc <a href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * The matrix is divided into square blocks of <tt>blockSize</tt> rows and
+ * columns, and the blocks that hold at least one nonzero are stored in
+ * compressed row form: the blocks of block row <tt>I</tt> are
+ * <tt>blockRowPointers[I], ..., blockRowPointers[I + 1] - 1</tt>, sorted by
+ * their block column, and block <tt>k</tt> is stored row by row at
+ * <tt>values[k * blockSize * blockSize]</tt>. Only one column index is stored
+ * per block, which suits matrices of systems with several unknowns per node,
+ * such as those of elasticity problems. <tt>zMult</tt> computes the block rows
+ * concurrently for large matrices, with unrolled kernels for blocks of size 3
+ * and 6.
+ * <p>
+ * The number of rows and columns must be multiples of the block size. The
+ * structure is fixed: the cells outside the stored blocks are zero and setting
+ * them has no effect, while the zeros inside the stored blocks are kept. The
+ * preconditioners {@link cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleBlockILU}
+ * and {@link cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleBlockDiagonal}
+ * work on the blocks of this matrix.
+ * <p>
+ * <b>Memory requirements:</b>
+ * <p>
+ * <tt>memory [bytes] = (8*blockSize*blockSize + 4)*blocks + 4*rows/blockSize</tt>.
+ */
+public class BlockSparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * Number of rows and columns of a block.
+     */
+    protected int blockSize;
+
+    protected int[] blockRowPointers;
+
+    protected int[] blockColumnIndexes;
+
+    protected double[] values;
+
+    /**
+     * Constructs a matrix with the elements of the given matrix. Every block
+     * that holds an element of <tt>A</tt> is stored. The values are copied.
+     *
+     * @param A
+     *            the matrix to convert.
+     * @param blockSize
+     *            the number of rows and columns of a block.
+     * @throws IllegalArgumentException
+     *             if <tt>blockSize < 1</tt>, if the number of rows or columns
+     *             of <tt>A</tt> is not a multiple of <tt>blockSize</tt> or if
+     *             the blocks have more than <tt>Integer.MAX_VALUE</tt>
+     *             elements.
+     */
+    public BlockSparseRCDoubleMatrix2D(SparseRCDoubleMatrix2D A, int blockSize) {
+        super(null);
+        setUp(A.rows(), A.columns(), blockSize);
+        int[] rowPointersA = A.getRowPointers();
+        int[] columnIndexesA = A.getColumnIndexes();
+        double[] valuesA = A.getValues();
+        int blockRows = rows / blockSize;
+        int[] marker = new int[columns / blockSize];
+        Arrays.fill(marker, -1);
+
+        // count the blocks of each block row
+        blockRowPointers = new int[blockRows + 1];
+        for (int I = 0; I < blockRows; I++) {
+            int count = 0;
+            for (int p = rowPointersA[I * blockSize], high = rowPointersA[(I + 1) * blockSize]; p < high; p++) {
+                int J = columnIndexesA[p] / blockSize;
+                if (marker[J] != I) {
+                    marker[J] = I;
+                    count++;
+                }
+            }
+            blockRowPointers[I + 1] = blockRowPointers[I] + count;
+        }
+        int blocks = blockRowPointers[blockRows];
+        long size = (long) blocks * blockSize * blockSize;
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("matrix too large");
+
+        // collect and sort the block columns, then scatter the values
+        Arrays.fill(marker, -1);
+        blockColumnIndexes = new int[blocks];
+        values = new double[(int) size];
+        int[] positions = new int[marker.length];
+        for (int I = 0; I < blockRows; I++) {
+            int low = rowPointersA[I * blockSize];
+            int high = rowPointersA[(I + 1) * blockSize];
+            int k = blockRowPointers[I];
+            for (int p = low; p < high; p++) {
+                int J = columnIndexesA[p] / blockSize;
+                if (marker[J] != I) {
+                    marker[J] = I;
+                    blockColumnIndexes[k++] = J;
+                }
+            }
+            Arrays.sort(blockColumnIndexes, blockRowPointers[I], k);
+            for (k = blockRowPointers[I]; k < blockRowPointers[I + 1]; k++) {
+                positions[blockColumnIndexes[k]] = k;
+            }
+            for (int r = 0; r < blockSize; r++) {
+                int row = I * blockSize + r;
+                for (int p = rowPointersA[row]; p < rowPointersA[row + 1]; p++) {
+                    int column = columnIndexesA[p];
+                    int J = column / blockSize;
+                    values[(positions[J] * blockSize + r) * blockSize + column - J * blockSize] = valuesA[p];
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructs a matrix with given parameters. The arrays are not copied.
+     *
+     * @param rows
+     *            the number of rows the matrix shall have.
+     * @param columns
+     *            the number of columns the matrix shall have.
+     * @param blockSize
+     *            the number of rows and columns of a block.
+     * @param blockRowPointers
+     *            block row pointers
+     * @param blockColumnIndexes
+     *            block column indexes, sorted within each block row
+     * @param values
+     *            numerical values, block by block and row by row within a
+     *            block
+     * @throws IllegalArgumentException
+     *             if <tt>blockSize < 1</tt>, if <tt>rows</tt> or
+     *             <tt>columns</tt> is not a multiple of <tt>blockSize</tt> or
+     *             if the arrays are too short.
+     */
+    public BlockSparseRCDoubleMatrix2D(int rows, int columns, int blockSize, int[] blockRowPointers,
+            int[] blockColumnIndexes, double[] values) {
+        super(null);
+        setUp(rows, columns, blockSize);
+        if (blockRowPointers.length != rows / blockSize + 1) {
+            throw new IllegalArgumentException("blockRowPointers.length != rows / blockSize + 1");
+        }
+        int blocks = blockRowPointers[rows / blockSize];
+        if (blockColumnIndexes.length < blocks || values.length < (long) blocks * blockSize * blockSize) {
+            throw new IllegalArgumentException("blockColumnIndexes or values too short");
+        }
+        this.blockRowPointers = blockRowPointers;
+        this.blockColumnIndexes = blockColumnIndexes;
+        this.values = values;
+    }
+
+    /*
+     * Constructs a copy sharing the structure of the given matrix.
+     */
+    private BlockSparseRCDoubleMatrix2D(BlockSparseRCDoubleMatrix2D other) {
+        super(null);
+        setUp(other.rows, other.columns, other.blockSize);
+        blockRowPointers = other.blockRowPointers;
+        blockColumnIndexes = other.blockColumnIndexes;
+        values = other.values.clone();
+    }
+
+    public DoubleMatrix2D assign(double value) {
+        markModified();
+        Arrays.fill(values, 0, blockSize * blockSize * blockRowPointers[rows / blockSize], value);
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
+        for (int idx = 0, size = blockSize * blockSize * blockRowPointers[rows / blockSize]; idx < size; idx++) {
+            values[idx] = function.apply(values[idx]);
+        }
+        return this;
+    }
+
+    public int cardinality() {
+        return blockSize * blockSize * blockRowPointers[rows / blockSize];
+    }
+
+    public DoubleMatrix2D copy() {
+        return new BlockSparseRCDoubleMatrix2D(this);
+    }
+
+    public double[] elements() {
+        return values;
+    }
+
+    public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        markModified();
+        // row by row, so that compressed row matrices are filled in order
+        for (int row = 0; row < rows; row++) {
+            int I = row / blockSize;
+            int r = row - I * blockSize;
+            for (int k = blockRowPointers[I]; k < blockRowPointers[I + 1]; k++) {
+                int column = blockColumnIndexes[k] * blockSize;
+                for (int c = 0, idx = (k * blockSize + r) * blockSize; c < blockSize; c++, idx++) {
+                    double value = values[idx];
+                    if (value != 0) {
+                        values[idx] = function.apply(row, column + c, value);
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the block column indexes.
+     *
+     * @return block column indexes
+     */
+    public int[] getBlockColumnIndexes() {
+        return blockColumnIndexes;
+    }
+
+    /**
+     * Returns the block row pointers.
+     *
+     * @return block row pointers
+     */
+    public int[] getBlockRowPointers() {
+        return blockRowPointers;
+    }
+
+    /**
+     * Returns the number of rows and columns of a block.
+     *
+     * @return the block size.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public double getQuick(int row, int column) {
+        int k = findBlock(row / blockSize, column / blockSize);
+        if (k < 0)
+            return 0;
+        return values[(k * blockSize + row % blockSize) * blockSize + column % blockSize];
+    }
+
+    /**
+     * Returns a new matrix in compressed row form that has the same elements
+     * as this matrix, including the zeros inside the stored blocks.
+     *
+     * @return this matrix in a compressed row form.
+     */
+    public SparseRCDoubleMatrix2D getRowCompressed() {
+        int[] rowPointersR = new int[rows + 1];
+        for (int row = 0; row < rows; row++) {
+            int I = row / blockSize;
+            rowPointersR[row + 1] = rowPointersR[row] + (blockRowPointers[I + 1] - blockRowPointers[I]) * blockSize;
+        }
+        int[] columnIndexesR = new int[rowPointersR[rows]];
+        double[] valuesR = new double[rowPointersR[rows]];
+        for (int row = 0; row < rows; row++) {
+            int I = row / blockSize;
+            int r = row - I * blockSize;
+            int p = rowPointersR[row];
+            for (int k = blockRowPointers[I]; k < blockRowPointers[I + 1]; k++) {
+                int column = blockColumnIndexes[k] * blockSize;
+                for (int c = 0, idx = (k * blockSize + r) * blockSize; c < blockSize; c++, idx++, p++) {
+                    columnIndexesR[p] = column + c;
+                    valuesR[p] = values[idx];
+                }
+            }
+        }
+        return new SparseRCDoubleMatrix2D(rows, columns, rowPointersR, columnIndexesR, valuesR);
+    }
+
+    public DoubleMatrix2D like(int rows, int columns) {
+        return new SparseDoubleMatrix2D(rows, columns);
+    }
+
+    public DoubleMatrix1D like1D(int size) {
+        return new SparseDoubleMatrix1D(size);
+    }
+
+    public void setQuick(int row, int column, double value) {
+        markModified();
+        int k = findBlock(row / blockSize, column / blockSize);
+        if (k >= 0) {
+            values[(k * blockSize + row % blockSize) * blockSize + column % blockSize] = value;
+        }
+    }
+
+    public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
+            final boolean transposeA) {
+        if (z != null)
+            z.markModified();
+        final int rowsA = transposeA ? columns : rows;
+        int columnsA = transposeA ? rows : columns;
+        final boolean ignore = (z == null);
+        if (z == null)
+            z = new DenseDoubleMatrix1D(rowsA);
+        if (columnsA != y.size() || rowsA > z.size())
+            throw new IllegalArgumentException("Incompatible args: "
+                    + ((transposeA ? viewDice() : this).toStringShort()) + ", " + y.toStringShort() + ", "
+                    + z.toStringShort());
+
+        final double[] elementsY;
+        final int zeroY;
+        final int strideY;
+        if (y instanceof DenseDoubleMatrix1D) {
+            elementsY = ((DenseDoubleMatrix1D) y).elements;
+            zeroY = (int) y.index(0);
+            strideY = y.stride();
+        } else {
+            elementsY = y.toArray();
+            zeroY = 0;
+            strideY = 1;
+        }
+        DenseDoubleMatrix1D zz = (z instanceof DenseDoubleMatrix1D) ? (DenseDoubleMatrix1D) z
+                : new DenseDoubleMatrix1D(z.toArray());
+        final double[] elementsZ = zz.elements;
+        final int zeroZ = (int) zz.index(0);
+        final int strideZ = zz.stride();
+        final int b = blockSize;
+        int blockRows = rows / b;
+
+        if (transposeA) {
+            if (ignore || beta == 0) {
+                zz.assign(0);
+            } else if (beta != 1) {
+                zz.assign(cern.jet.math.tdouble.DoubleFunctions.mult(beta));
+            }
+            for (int I = 0; I < blockRows; I++) {
+                for (int r = 0; r < b; r++) {
+                    double yElem = alpha * elementsY[zeroY + strideY * (I * b + r)];
+                    for (int k = blockRowPointers[I]; k < blockRowPointers[I + 1]; k++) {
+                        int idx = zeroZ + strideZ * blockColumnIndexes[k] * b;
+                        for (int c = 0, v = (k * b + r) * b; c < b; c++, v++, idx += strideZ) {
+                            elementsZ[idx] += values[v] * yElem;
+                        }
+                    }
+                }
+            }
+        } else {
+            long work = Math.max(1, (long) b * b * blockRowPointers[blockRows] / Math.max(1, blockRows));
+            int minBlockRows = (int) Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV) / work);
+            ForkJoinUtils.invoke(0, blockRows, minBlockRows, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int firstBlockRow, int lastBlockRow) {
+                    double[] sum = new double[b];
+                    for (int I = firstBlockRow; I < lastBlockRow; I++) {
+                        switch (b) {
+                        case 3:
+                            multiply3(I, elementsY, zeroY, strideY, sum);
+                            break;
+                        case 6:
+                            multiply6(I, elementsY, zeroY, strideY, sum);
+                            break;
+                        default:
+                            multiply(I, elementsY, zeroY, strideY, sum);
+                        }
+                        for (int r = 0, idx = zeroZ + strideZ * I * b; r < b; r++, idx += strideZ) {
+                            double v = alpha * sum[r];
+                            elementsZ[idx] = (ignore || beta == 0) ? v : v + beta * elementsZ[idx];
+                        }
+                    }
+                }
+            });
+        }
+        if (zz != z) {
+            z.assign(zz);
+        }
+        return z;
+    }
+
+    protected DoubleMatrix2D getContent() {
+        return this;
+    }
+
+    /*
+     * Returns the index of block (I, J), or a negative number if it is not
+     * stored.
+     */
+    private int findBlock(int I, int J) {
+        return cern.colt.Sorting.binarySearchFromTo(blockColumnIndexes, J, blockRowPointers[I],
+                blockRowPointers[I + 1] - 1);
+    }
+
+    /*
+     * Computes sum = A(I, :) * y for block row I, for any block size.
+     */
+    private void multiply(int I, double[] y, int zeroY, int strideY, double[] sum) {
+        int b = blockSize;
+        Arrays.fill(sum, 0);
+        for (int k = blockRowPointers[I]; k < blockRowPointers[I + 1]; k++) {
+            int j = zeroY + strideY * blockColumnIndexes[k] * b;
+            for (int r = 0, v = k * b * b; r < b; r++) {
+                double s = 0;
+                for (int c = 0, idx = j; c < b; c++, v++, idx += strideY) {
+                    s += values[v] * y[idx];
+                }
+                sum[r] += s;
+            }
+        }
+    }
+
+    /*
+     * Computes sum = A(I, :) * y for block row I with 3x3 blocks.
+     */
+    private void multiply3(int I, double[] y, int zeroY, int strideY, double[] sum) {
+        double s0 = 0, s1 = 0, s2 = 0;
+        for (int k = blockRowPointers[I]; k < blockRowPointers[I + 1]; k++) {
+            int v = 9 * k;
+            int j = zeroY + strideY * 3 * blockColumnIndexes[k];
+            double y0 = y[j];
+            double y1 = y[j + strideY];
+            double y2 = y[j + 2 * strideY];
+            s0 += values[v] * y0 + values[v + 1] * y1 + values[v + 2] * y2;
+            s1 += values[v + 3] * y0 + values[v + 4] * y1 + values[v + 5] * y2;
+            s2 += values[v + 6] * y0 + values[v + 7] * y1 + values[v + 8] * y2;
+        }
+        sum[0] = s0;
+        sum[1] = s1;
+        sum[2] = s2;
+    }
+
+    /*
+     * Computes sum = A(I, :) * y for block row I with 6x6 blocks.
+     */
+    private void multiply6(int I, double[] y, int zeroY, int strideY, double[] sum) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0, s4 = 0, s5 = 0;
+        for (int k = blockRowPointers[I]; k < blockRowPointers[I + 1]; k++) {
+            int v = 36 * k;
+            int j = zeroY + strideY * 6 * blockColumnIndexes[k];
+            double y0 = y[j];
+            double y1 = y[j + strideY];
+            double y2 = y[j + 2 * strideY];
+            double y3 = y[j + 3 * strideY];
+            double y4 = y[j + 4 * strideY];
+            double y5 = y[j + 5 * strideY];
+            s0 += values[v] * y0 + values[v + 1] * y1 + values[v + 2] * y2 + values[v + 3] * y3 + values[v + 4]
+                    * y4 + values[v + 5] * y5;
+            s1 += values[v + 6] * y0 + values[v + 7] * y1 + values[v + 8] * y2 + values[v + 9] * y3
+                    + values[v + 10] * y4 + values[v + 11] * y5;
+            s2 += values[v + 12] * y0 + values[v + 13] * y1 + values[v + 14] * y2 + values[v + 15] * y3
+                    + values[v + 16] * y4 + values[v + 17] * y5;
+            s3 += values[v + 18] * y0 + values[v + 19] * y1 + values[v + 20] * y2 + values[v + 21] * y3
+                    + values[v + 22] * y4 + values[v + 23] * y5;
+            s4 += values[v + 24] * y0 + values[v + 25] * y1 + values[v + 26] * y2 + values[v + 27] * y3
+                    + values[v + 28] * y4 + values[v + 29] * y5;
+            s5 += values[v + 30] * y0 + values[v + 31] * y1 + values[v + 32] * y2 + values[v + 33] * y3
+                    + values[v + 34] * y4 + values[v + 35] * y5;
+        }
+        sum[0] = s0;
+        sum[1] = s1;
+        sum[2] = s2;
+        sum[3] = s3;
+        sum[4] = s4;
+        sum[5] = s5;
+    }
+
+    /*
+     * Sets the shape and the block size.
+     */
+    private void setUp(int rows, int columns, int blockSize) {
+        try {
+            setUp(rows, columns);
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        if (blockSize < 1 || rows % blockSize != 0 || columns % blockSize != 0)
+            throw new IllegalArgumentException("blockSize < 1 or rows, columns not multiples of blockSize: " + rows
+                    + ", " + columns + ", " + blockSize);
+        this.blockSize = blockSize;
+    }
+}
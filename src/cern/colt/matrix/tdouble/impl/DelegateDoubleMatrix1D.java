@@ -53,6 +53,14 @@ class DelegateDoubleMatrix1D extends DoubleMatrix1D {
         return content.getQuick(row, index);
     }
 
+    public boolean isFrozen() {
+        return content.isFrozen();
+    }
+
+    public void markModified() {
+        content.markModified();
+    }
+
     public DoubleMatrix1D like(int size) {
         return content.like1D(size);
     }
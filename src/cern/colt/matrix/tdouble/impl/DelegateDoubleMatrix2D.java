@@ -86,6 +86,7 @@ class DelegateDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public synchronized void setQuick(int row, int column, double value) {
+        markModified();
         switch (axis) {
         case 0:
             content.setQuick(index, row, column, value);
@@ -0,0 +1,972 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.PersistentObject;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Batch of many small dense 2-d matrices of the same shape, holding
+ * <tt>double</tt> elements in one contiguous array. First see the <a
+ * href="package-summary.html">package summary</a> and javadoc <a
+ * href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * A batch is meant for millions of independent tiny problems (3x3 transforms,
+ * local 4x4 covariances, small systems of equations), for which wrapping every
+ * problem in a {@link DenseDoubleMatrix2D} costs more in object and view
+ * overhead than the arithmetic. All operations apply to every matrix of the
+ * batch and are distributed over the batch by {@link ForkJoinUtils}.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * The elements are held in one of two layouts:
+ * <ul>
+ * <li><i>non-interleaved</i>: the matrices follow each other, each in row
+ * major; cell <tt>[k,row,column]</tt> is stored at
+ * <tt>(k * rows + row) * columns + column</tt>.</li>
+ * <li><i>interleaved</i>: the same cell of all matrices follow each other;
+ * cell <tt>[k,row,column]</tt> is stored at
+ * <tt>(row * columns + column) * size + k</tt>. Operations on interleaved
+ * batches run their innermost loop over the batch with unit stride.</li>
+ * </ul>
+ * {@link #copy(boolean)} converts between the two layouts. The multiplication,
+ * determinant and inverse of 2x2, 3x3 and 4x4 matrices are fully unrolled;
+ * larger matrices use plain loops, and the solvers use an LU decomposition
+ * with partial pivoting or a Cholesky decomposition per matrix.
+ * <p>
+ * Note that this implementation is not synchronized.
+ */
+public class DenseBatchDoubleMatrix2D extends PersistentObject {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * the number of matrices of this batch
+     */
+    protected int size;
+
+    /**
+     * the number of rows of each matrix
+     */
+    protected int rows;
+
+    /**
+     * the number of columns of each matrix
+     */
+    protected int columns;
+
+    /**
+     * true if the cells of the matrices are interleaved
+     */
+    protected boolean interleaved;
+
+    /**
+     * the elements of this batch
+     */
+    protected double[] elements;
+
+    /**
+     * Constructs a batch of <tt>size</tt> matrices with the given number of
+     * rows and columns. All entries are initially <tt>0</tt>.
+     *
+     * @param size
+     *            the number of matrices.
+     * @param rows
+     *            the number of rows of each matrix.
+     * @param columns
+     *            the number of columns of each matrix.
+     * @param interleaved
+     *            true if the cells of the matrices shall be interleaved.
+     * @throws IllegalArgumentException
+     *             if <tt>size<0 || rows<0 || columns<0</tt> or
+     *             <tt>size * rows * columns > Integer.MAX_VALUE</tt>.
+     */
+    public DenseBatchDoubleMatrix2D(int size, int rows, int columns, boolean interleaved) {
+        this(size, rows, columns, interleaved, null);
+    }
+
+    /**
+     * Constructs a batch of <tt>size</tt> matrices with the given number of
+     * rows and columns, backed by the given elements (no copy is made).
+     *
+     * @param size
+     *            the number of matrices.
+     * @param rows
+     *            the number of rows of each matrix.
+     * @param columns
+     *            the number of columns of each matrix.
+     * @param interleaved
+     *            true if the cells of the matrices are interleaved.
+     * @param elements
+     *            the elements in the given layout, or <tt>null</tt> to
+     *            allocate new elements.
+     * @throws IllegalArgumentException
+     *             if <tt>size<0 || rows<0 || columns<0</tt>, if
+     *             <tt>size * rows * columns > Integer.MAX_VALUE</tt> or if
+     *             <tt>elements</tt> is too short.
+     */
+    public DenseBatchDoubleMatrix2D(int size, int rows, int columns, boolean interleaved, double[] elements) {
+        if (size < 0 || rows < 0 || columns < 0)
+            throw new IllegalArgumentException("negative size");
+        long n = (long) size * rows * columns;
+        if (n > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("batch too large");
+        if (elements == null) {
+            elements = new double[(int) n];
+        } else if (elements.length < n) {
+            throw new IllegalArgumentException("Must have at least " + n + " elements: length=" + elements.length);
+        }
+        this.size = size;
+        this.rows = rows;
+        this.columns = columns;
+        this.interleaved = interleaved;
+        this.elements = elements;
+    }
+
+    /**
+     * Returns the number of matrices of this batch.
+     *
+     * @return the number of matrices.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of rows of each matrix.
+     *
+     * @return the number of rows.
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of each matrix.
+     *
+     * @return the number of columns.
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Returns true if the cells of the matrices are interleaved.
+     *
+     * @return the layout of this batch.
+     */
+    public boolean isInterleaved() {
+        return interleaved;
+    }
+
+    /**
+     * Returns the elements of this batch.
+     *
+     * @return the elements of this batch.
+     */
+    public double[] elements() {
+        return elements;
+    }
+
+    /**
+     * Returns the position of the given cell within {@link #elements()}.
+     *
+     * @param k
+     *            the index of the matrix.
+     * @param row
+     *            the index of the row-coordinate.
+     * @param column
+     *            the index of the column-coordinate.
+     * @return the position of the cell.
+     */
+    public int index(int k, int row, int column) {
+        if (interleaved)
+            return (row * columns + column) * size + k;
+        return (k * rows + row) * columns + column;
+    }
+
+    /**
+     * Returns the matrix cell value at coordinate <tt>[k,row,column]</tt>.
+     *
+     * <p>
+     * Provided with invalid parameters this method may return invalid objects
+     * without throwing any exception. <b>You should only use this method when
+     * you are absolutely sure that the coordinate is within bounds.</b>
+     *
+     * @param k
+     *            the index of the matrix.
+     * @param row
+     *            the index of the row-coordinate.
+     * @param column
+     *            the index of the column-coordinate.
+     * @return the value at the specified coordinate.
+     */
+    public double getQuick(int k, int row, int column) {
+        return elements[index(k, row, column)];
+    }
+
+    /**
+     * Sets the matrix cell at coordinate <tt>[k,row,column]</tt> to the
+     * specified value.
+     *
+     * <p>
+     * Provided with invalid parameters this method may access illegal indexes
+     * without throwing any exception. <b>You should only use this method when
+     * you are absolutely sure that the coordinate is within bounds.</b>
+     *
+     * @param k
+     *            the index of the matrix.
+     * @param row
+     *            the index of the row-coordinate.
+     * @param column
+     *            the index of the column-coordinate.
+     * @param value
+     *            the value to be filled into the specified cell.
+     */
+    public void setQuick(int k, int row, int column, double value) {
+        elements[index(k, row, column)] = value;
+    }
+
+    /**
+     * Constructs and returns a new view of the matrix <tt>k</tt> of this
+     * batch. The view is backed by this batch, so changes in the view are
+     * reflected in this batch and vice versa.
+     *
+     * @param k
+     *            the index of the matrix.
+     * @return a new view.
+     * @throws IndexOutOfBoundsException
+     *             if <tt>k < 0 || k >= size()</tt>.
+     */
+    public DoubleMatrix2D viewMatrix(int k) {
+        if (k < 0 || k >= size)
+            throw new IndexOutOfBoundsException("Attempted to access matrix " + k + " of a batch of " + size);
+        if (interleaved)
+            return new DenseDoubleMatrix2D(rows, columns, elements, k, 0, columns * size, size, true);
+        return new DenseDoubleMatrix2D(rows, columns, elements, k * rows * columns, 0, columns, 1, true);
+    }
+
+    /**
+     * Returns a deep copy of this batch in the same layout.
+     *
+     * @return a deep copy of this batch.
+     */
+    public DenseBatchDoubleMatrix2D copy() {
+        return copy(interleaved);
+    }
+
+    /**
+     * Returns a deep copy of this batch in the given layout.
+     *
+     * @param interleaved
+     *            true if the cells of the copy shall be interleaved.
+     * @return a deep copy of this batch.
+     */
+    public DenseBatchDoubleMatrix2D copy(boolean interleaved) {
+        DenseBatchDoubleMatrix2D copy = new DenseBatchDoubleMatrix2D(size, rows, columns, interleaved);
+        int cells = rows * columns;
+        if (interleaved == this.interleaved) {
+            System.arraycopy(elements, 0, copy.elements, 0, size * cells);
+        } else {
+            // a batch is a size x cells matrix, interleaved in column major
+            DenseDoubleTranspose.copy(size, cells, elements, 0, this.interleaved ? 1 : cells, this.interleaved ? size
+                    : 1, copy.elements, 0, interleaved ? 1 : cells, interleaved ? size : 1);
+        }
+        return copy;
+    }
+
+    /**
+     * Construct and returns a new empty batch of the same shape and layout as
+     * the receiver.
+     *
+     * @return a new empty batch of the same shape.
+     */
+    public DenseBatchDoubleMatrix2D like() {
+        return new DenseBatchDoubleMatrix2D(size, rows, columns, interleaved);
+    }
+
+    /**
+     * Linear algebraic matrix-matrix multiplication of every matrix of this
+     * batch with the corresponding matrix of <tt>B</tt>;
+     * <tt>C[k] = A[k] x B[k]</tt>.
+     *
+     * @param B
+     *            the second source batch.
+     * @param C
+     *            the batch where results are to be stored; set this parameter
+     *            to <tt>null</tt> to indicate that a new result batch shall be
+     *            constructed.
+     * @return C (for convenience only).
+     * @throws IllegalArgumentException
+     *             if the shapes or sizes of the batches do not agree.
+     */
+    public DenseBatchDoubleMatrix2D zMult(DenseBatchDoubleMatrix2D B, DenseBatchDoubleMatrix2D C) {
+        return zMult(B, C, 1, 0, false, false);
+    }
+
+    /**
+     * Linear algebraic matrix-matrix multiplication of every matrix of this
+     * batch with the corresponding matrix of <tt>B</tt>;
+     * <tt>C[k] = alpha * op(A[k]) x op(B[k]) + beta * C[k]</tt>, where
+     * <tt>op(X)</tt> is <tt>X</tt> or its transpose. If <tt>beta == 0</tt>
+     * the previous content of <tt>C</tt> is ignored.
+     *
+     * @param B
+     *            the second source batch.
+     * @param C
+     *            the batch where results are to be stored; set this parameter
+     *            to <tt>null</tt> to indicate that a new result batch in the
+     *            layout of this batch shall be constructed.
+     * @param alpha
+     *            the scaling factor of the product.
+     * @param beta
+     *            the scaling factor of <tt>C</tt>.
+     * @param transposeA
+     *            whether the matrices of this batch must be transposed.
+     * @param transposeB
+     *            whether the matrices of <tt>B</tt> must be transposed.
+     * @return C (for convenience only).
+     * @throws IllegalArgumentException
+     *             if the shapes or sizes of the batches do not agree, or if
+     *             <tt>C</tt> is identical to this batch or <tt>B</tt>.
+     */
+    public DenseBatchDoubleMatrix2D zMult(final DenseBatchDoubleMatrix2D B, DenseBatchDoubleMatrix2D C,
+            final double alpha, final double beta, final boolean transposeA, final boolean transposeB) {
+        final int m = transposeA ? columns : rows;
+        final int p = transposeA ? rows : columns;
+        final int n = transposeB ? B.rows : B.columns;
+        if (C == null)
+            C = new DenseBatchDoubleMatrix2D(size, m, n, interleaved);
+        if ((transposeB ? B.columns : B.rows) != p)
+            throw new IllegalArgumentException("Matrix2D inner dimensions must agree:" + toStringShort() + ", "
+                    + B.toStringShort());
+        if (B.size != size || C.size != size || C.rows != m || C.columns != n)
+            throw new IllegalArgumentException("Incompatibe result batch: " + toStringShort() + ", "
+                    + B.toStringShort() + ", " + C.toStringShort());
+        if (this == C || B == C)
+            throw new IllegalArgumentException("Matrices must not be identical");
+        final DenseBatchDoubleMatrix2D CC = C;
+        final double[] a = elements;
+        final double[] b = B.elements;
+        final double[] c = CC.elements;
+        final int N = size;
+        if (interleaved && B.interleaved && CC.interleaved) {
+            // the innermost loop runs over the batch with unit stride
+            ForkJoinUtils.invoke(0, size, grain(2L * m * n * p), new ForkJoinUtils.RangeProcedure() {
+                public void apply(int from, int to) {
+                    for (int i = 0; i < m; i++) {
+                        for (int j = 0; j < n; j++) {
+                            int idxC = (i * n + j) * N;
+                            if (beta == 0) {
+                                for (int k = from; k < to; k++) {
+                                    c[idxC + k] = 0;
+                                }
+                            } else if (beta != 1) {
+                                for (int k = from; k < to; k++) {
+                                    c[idxC + k] *= beta;
+                                }
+                            }
+                            for (int l = 0; l < p; l++) {
+                                int idxA = (transposeA ? l * columns + i : i * columns + l) * N;
+                                int idxB = (transposeB ? j * B.columns + l : l * B.columns + j) * N;
+                                for (int k = from; k < to; k++) {
+                                    c[idxC + k] += alpha * a[idxA + k] * b[idxB + k];
+                                }
+                            }
+                        }
+                    }
+                }
+            });
+            return CC;
+        }
+        ForkJoinUtils.invoke(0, size, grain(2L * m * n * p), new ForkJoinUtils.RangeProcedure() {
+            public void apply(int from, int to) {
+                double[] x = new double[m * p];
+                double[] y = new double[p * n];
+                double[] t = new double[m * n];
+                double[] z = new double[m * n];
+                for (int k = from; k < to; k++) {
+                    get(k, x, transposeA);
+                    B.get(k, y, transposeB);
+                    if (m == n && n == p && n <= 4) {
+                        switch (n) {
+                        case 4:
+                            mult4(x, y, t);
+                            break;
+                        case 3:
+                            mult3(x, y, t);
+                            break;
+                        case 2:
+                            mult2(x, y, t);
+                            break;
+                        default:
+                            mult(m, n, p, x, y, t);
+                            break;
+                        }
+                    } else {
+                        mult(m, n, p, x, y, t);
+                    }
+                    if (beta == 0) {
+                        for (int i = 0; i < t.length; i++) {
+                            z[i] = alpha * t[i];
+                        }
+                    } else {
+                        CC.get(k, z, false);
+                        for (int i = 0; i < t.length; i++) {
+                            z[i] = alpha * t[i] + beta * z[i];
+                        }
+                    }
+                    CC.set(k, z);
+                }
+            }
+        });
+        return CC;
+    }
+
+    /**
+     * Returns the determinants of the matrices of this batch.
+     *
+     * @return the determinants, one per matrix.
+     * @throws IllegalArgumentException
+     *             if the matrices are not square.
+     */
+    public double[] det() {
+        checkSquare();
+        final int n = rows;
+        final double[] det = new double[size];
+        ForkJoinUtils.invoke(0, size, grain((long) n * n * n), new ForkJoinUtils.RangeProcedure() {
+            public void apply(int from, int to) {
+                double[] x = new double[n * n];
+                int[] piv = new int[n];
+                for (int k = from; k < to; k++) {
+                    get(k, x, false);
+                    switch (n) {
+                    case 0:
+                        det[k] = 1;
+                        break;
+                    case 1:
+                        det[k] = x[0];
+                        break;
+                    case 2:
+                        det[k] = det2(x);
+                        break;
+                    case 3:
+                        det[k] = det3(x);
+                        break;
+                    case 4:
+                        det[k] = det4(x);
+                        break;
+                    default:
+                        double d = lu(n, x, piv);
+                        for (int i = 0; i < n; i++) {
+                            d *= x[i * n + i];
+                        }
+                        det[k] = d;
+                        break;
+                    }
+                }
+            }
+        });
+        return det;
+    }
+
+    /**
+     * Returns the inverses of the matrices of this batch, in the layout of
+     * this batch.
+     *
+     * @return a new batch holding the inverses.
+     * @throws IllegalArgumentException
+     *             if the matrices are not square or if one of them is
+     *             singular.
+     */
+    public DenseBatchDoubleMatrix2D inverse() {
+        checkSquare();
+        final int n = rows;
+        final DenseBatchDoubleMatrix2D X = like();
+        ForkJoinUtils.invoke(0, size, grain(2L * n * n * n), new ForkJoinUtils.RangeProcedure() {
+            public void apply(int from, int to) {
+                double[] x = new double[n * n];
+                double[] y = new double[n * n];
+                int[] piv = new int[n];
+                for (int k = from; k < to; k++) {
+                    get(k, x, false);
+                    boolean regular;
+                    switch (n) {
+                    case 1:
+                        y[0] = 1 / x[0];
+                        regular = x[0] != 0;
+                        break;
+                    case 2:
+                        regular = inverse2(x, y);
+                        break;
+                    case 3:
+                        regular = inverse3(x, y);
+                        break;
+                    case 4:
+                        regular = inverse4(x, y);
+                        break;
+                    default:
+                        for (int i = 0; i < y.length; i++) {
+                            y[i] = 0;
+                        }
+                        for (int i = 0; i < n; i++) {
+                            y[i * n + i] = 1;
+                        }
+                        lu(n, x, piv);
+                        regular = luSolve(n, n, x, piv, y);
+                        break;
+                    }
+                    if (!regular)
+                        throw new IllegalArgumentException("Matrix is singular.");
+                    X.set(k, y);
+                }
+            }
+        });
+        return X;
+    }
+
+    /**
+     * Solves <tt>A[k] * X[k] = B[k]</tt> for every matrix of this batch, using
+     * an LU decomposition with partial pivoting. This batch is not modified.
+     *
+     * @param B
+     *            the right-hand sides, a batch of the same size with as many
+     *            rows as this batch.
+     * @return a new batch in the layout of <tt>B</tt> holding the solutions.
+     * @throws IllegalArgumentException
+     *             if the matrices are not square, if the shapes do not agree or
+     *             if one of the matrices is singular.
+     */
+    public DenseBatchDoubleMatrix2D solve(DenseBatchDoubleMatrix2D B) {
+        return solve(B, false);
+    }
+
+    /**
+     * Solves <tt>A[k] * X[k] = B[k]</tt> for every matrix of this batch, using
+     * a Cholesky decomposition. Only the lower triangle of the matrices is
+     * read; they must be symmetric and positive definite. This batch is not
+     * modified.
+     *
+     * @param B
+     *            the right-hand sides, a batch of the same size with as many
+     *            rows as this batch.
+     * @return a new batch in the layout of <tt>B</tt> holding the solutions.
+     * @throws IllegalArgumentException
+     *             if the matrices are not square, if the shapes do not agree or
+     *             if one of the matrices is not positive definite.
+     */
+    public DenseBatchDoubleMatrix2D solveCholesky(DenseBatchDoubleMatrix2D B) {
+        return solve(B, true);
+    }
+
+    /**
+     * Returns a string representation of the shape of this batch.
+     *
+     * @return a short string representation.
+     */
+    public String toStringShort() {
+        return size + " x " + rows + " x " + columns + (interleaved ? " interleaved" : "") + " batch";
+    }
+
+    public String toString() {
+        StringBuffer buf = new StringBuffer(toStringShort());
+        for (int k = 0; k < size; k++) {
+            buf.append("\n").append(viewMatrix(k).toString());
+        }
+        return buf.toString();
+    }
+
+    private DenseBatchDoubleMatrix2D solve(final DenseBatchDoubleMatrix2D B, final boolean cholesky) {
+        checkSquare();
+        if (B.size != size || B.rows != rows)
+            throw new IllegalArgumentException("Matrix dimensions must agree: " + toStringShort() + ", "
+                    + B.toStringShort());
+        final int n = rows;
+        final int nrhs = B.columns;
+        final DenseBatchDoubleMatrix2D X = B.like();
+        ForkJoinUtils.invoke(0, size, grain((long) n * n * (n + 2 * nrhs)), new ForkJoinUtils.RangeProcedure() {
+            public void apply(int from, int to) {
+                double[] x = new double[n * n];
+                double[] y = new double[n * nrhs];
+                int[] piv = new int[n];
+                for (int k = from; k < to; k++) {
+                    get(k, x, false);
+                    B.get(k, y, false);
+                    if (cholesky) {
+                        if (!cholesky(n, x))
+                            throw new IllegalArgumentException("Matrix is not symmetric positive definite.");
+                        choleskySolve(n, nrhs, x, y);
+                    } else {
+                        lu(n, x, piv);
+                        if (!luSolve(n, nrhs, x, piv, y))
+                            throw new IllegalArgumentException("Matrix is singular.");
+                    }
+                    X.set(k, y);
+                }
+            }
+        });
+        return X;
+    }
+
+    private void checkSquare() {
+        if (rows != columns)
+            throw new IllegalArgumentException("Matrix must be square.");
+    }
+
+    /**
+     * Returns the minimal number of matrices processed by one task.
+     */
+    private int grain(long flopsPerMatrix) {
+        flopsPerMatrix = Math.max(1, flopsPerMatrix);
+        if (flopsPerMatrix * size < ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT,
+                2 * DenseDoubleGemm.MIN_FLOPS_PER_TASK))
+            return Integer.MAX_VALUE;
+        return (int) Math.max(1, ConcurrencyTuning.getGrain(ConcurrencyTuning.ZMULT,
+                DenseDoubleGemm.MIN_FLOPS_PER_TASK)
+                / flopsPerMatrix);
+    }
+
+    /**
+     * Copies the matrix <tt>k</tt>, or its transpose, to <tt>x</tt> in row
+     * major.
+     */
+    void get(int k, double[] x, boolean transpose) {
+        int stride = interleaved ? size : 1;
+        int idx = interleaved ? k : k * rows * columns;
+        if (!transpose) {
+            for (int i = 0, cells = rows * columns; i < cells; i++, idx += stride) {
+                x[i] = elements[idx];
+            }
+        } else {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++, idx += stride) {
+                    x[c * rows + r] = elements[idx];
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies <tt>x</tt> (in row major) to the matrix <tt>k</tt>.
+     */
+    void set(int k, double[] x) {
+        int stride = interleaved ? size : 1;
+        int idx = interleaved ? k : k * rows * columns;
+        for (int i = 0, cells = rows * columns; i < cells; i++, idx += stride) {
+            elements[idx] = x[i];
+        }
+    }
+
+    /**
+     * <tt>t = x * y</tt> for an <tt>m x p</tt> matrix <tt>x</tt> and a
+     * <tt>p x n</tt> matrix <tt>y</tt>, all in row major.
+     */
+    private static void mult(int m, int n, int p, double[] x, double[] y, double[] t) {
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                double s = 0;
+                for (int l = 0; l < p; l++) {
+                    s += x[i * p + l] * y[l * n + j];
+                }
+                t[i * n + j] = s;
+            }
+        }
+    }
+
+    private static void mult2(double[] x, double[] y, double[] t) {
+        double x00 = x[0], x01 = x[1], x10 = x[2], x11 = x[3];
+        double y00 = y[0], y01 = y[1], y10 = y[2], y11 = y[3];
+        t[0] = x00 * y00 + x01 * y10;
+        t[1] = x00 * y01 + x01 * y11;
+        t[2] = x10 * y00 + x11 * y10;
+        t[3] = x10 * y01 + x11 * y11;
+    }
+
+    private static void mult3(double[] x, double[] y, double[] t) {
+        double x00 = x[0], x01 = x[1], x02 = x[2];
+        double x10 = x[3], x11 = x[4], x12 = x[5];
+        double x20 = x[6], x21 = x[7], x22 = x[8];
+        double y00 = y[0], y01 = y[1], y02 = y[2];
+        double y10 = y[3], y11 = y[4], y12 = y[5];
+        double y20 = y[6], y21 = y[7], y22 = y[8];
+        t[0] = x00 * y00 + x01 * y10 + x02 * y20;
+        t[1] = x00 * y01 + x01 * y11 + x02 * y21;
+        t[2] = x00 * y02 + x01 * y12 + x02 * y22;
+        t[3] = x10 * y00 + x11 * y10 + x12 * y20;
+        t[4] = x10 * y01 + x11 * y11 + x12 * y21;
+        t[5] = x10 * y02 + x11 * y12 + x12 * y22;
+        t[6] = x20 * y00 + x21 * y10 + x22 * y20;
+        t[7] = x20 * y01 + x21 * y11 + x22 * y21;
+        t[8] = x20 * y02 + x21 * y12 + x22 * y22;
+    }
+
+    private static void mult4(double[] x, double[] y, double[] t) {
+        double y00 = y[0], y01 = y[1], y02 = y[2], y03 = y[3];
+        double y10 = y[4], y11 = y[5], y12 = y[6], y13 = y[7];
+        double y20 = y[8], y21 = y[9], y22 = y[10], y23 = y[11];
+        double y30 = y[12], y31 = y[13], y32 = y[14], y33 = y[15];
+        for (int i = 0; i < 16; i += 4) {
+            double xi0 = x[i], xi1 = x[i + 1], xi2 = x[i + 2], xi3 = x[i + 3];
+            t[i] = xi0 * y00 + xi1 * y10 + xi2 * y20 + xi3 * y30;
+            t[i + 1] = xi0 * y01 + xi1 * y11 + xi2 * y21 + xi3 * y31;
+            t[i + 2] = xi0 * y02 + xi1 * y12 + xi2 * y22 + xi3 * y32;
+            t[i + 3] = xi0 * y03 + xi1 * y13 + xi2 * y23 + xi3 * y33;
+        }
+    }
+
+    private static double det2(double[] x) {
+        return x[0] * x[3] - x[1] * x[2];
+    }
+
+    private static double det3(double[] x) {
+        return x[0] * (x[4] * x[8] - x[5] * x[7]) + x[1] * (x[5] * x[6] - x[3] * x[8]) + x[2]
+                * (x[3] * x[7] - x[4] * x[6]);
+    }
+
+    private static double det4(double[] x) {
+        double s0 = x[0] * x[5] - x[4] * x[1];
+        double s1 = x[0] * x[6] - x[4] * x[2];
+        double s2 = x[0] * x[7] - x[4] * x[3];
+        double s3 = x[1] * x[6] - x[5] * x[2];
+        double s4 = x[1] * x[7] - x[5] * x[3];
+        double s5 = x[2] * x[7] - x[6] * x[3];
+        double c5 = x[10] * x[15] - x[14] * x[11];
+        double c4 = x[9] * x[15] - x[13] * x[11];
+        double c3 = x[9] * x[14] - x[13] * x[10];
+        double c2 = x[8] * x[15] - x[12] * x[11];
+        double c1 = x[8] * x[14] - x[12] * x[10];
+        double c0 = x[8] * x[13] - x[12] * x[9];
+        return s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+    }
+
+    private static boolean inverse2(double[] x, double[] y) {
+        double det = det2(x);
+        if (det == 0)
+            return false;
+        double inv = 1 / det;
+        y[0] = x[3] * inv;
+        y[1] = -x[1] * inv;
+        y[2] = -x[2] * inv;
+        y[3] = x[0] * inv;
+        return true;
+    }
+
+    private static boolean inverse3(double[] x, double[] y) {
+        double x00 = x[0], x01 = x[1], x02 = x[2];
+        double x10 = x[3], x11 = x[4], x12 = x[5];
+        double x20 = x[6], x21 = x[7], x22 = x[8];
+        double c00 = x11 * x22 - x12 * x21;
+        double c01 = x12 * x20 - x10 * x22;
+        double c02 = x10 * x21 - x11 * x20;
+        double det = x00 * c00 + x01 * c01 + x02 * c02;
+        if (det == 0)
+            return false;
+        double inv = 1 / det;
+        y[0] = c00 * inv;
+        y[1] = (x02 * x21 - x01 * x22) * inv;
+        y[2] = (x01 * x12 - x02 * x11) * inv;
+        y[3] = c01 * inv;
+        y[4] = (x00 * x22 - x02 * x20) * inv;
+        y[5] = (x02 * x10 - x00 * x12) * inv;
+        y[6] = c02 * inv;
+        y[7] = (x01 * x20 - x00 * x21) * inv;
+        y[8] = (x00 * x11 - x01 * x10) * inv;
+        return true;
+    }
+
+    private static boolean inverse4(double[] x, double[] y) {
+        double x00 = x[0], x01 = x[1], x02 = x[2], x03 = x[3];
+        double x10 = x[4], x11 = x[5], x12 = x[6], x13 = x[7];
+        double x20 = x[8], x21 = x[9], x22 = x[10], x23 = x[11];
+        double x30 = x[12], x31 = x[13], x32 = x[14], x33 = x[15];
+        double s0 = x00 * x11 - x10 * x01;
+        double s1 = x00 * x12 - x10 * x02;
+        double s2 = x00 * x13 - x10 * x03;
+        double s3 = x01 * x12 - x11 * x02;
+        double s4 = x01 * x13 - x11 * x03;
+        double s5 = x02 * x13 - x12 * x03;
+        double c5 = x22 * x33 - x32 * x23;
+        double c4 = x21 * x33 - x31 * x23;
+        double c3 = x21 * x32 - x31 * x22;
+        double c2 = x20 * x33 - x30 * x23;
+        double c1 = x20 * x32 - x30 * x22;
+        double c0 = x20 * x31 - x30 * x21;
+        double det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+        if (det == 0)
+            return false;
+        double inv = 1 / det;
+        y[0] = (x11 * c5 - x12 * c4 + x13 * c3) * inv;
+        y[1] = (-x01 * c5 + x02 * c4 - x03 * c3) * inv;
+        y[2] = (x31 * s5 - x32 * s4 + x33 * s3) * inv;
+        y[3] = (-x21 * s5 + x22 * s4 - x23 * s3) * inv;
+        y[4] = (-x10 * c5 + x12 * c2 - x13 * c1) * inv;
+        y[5] = (x00 * c5 - x02 * c2 + x03 * c1) * inv;
+        y[6] = (-x30 * s5 + x32 * s2 - x33 * s1) * inv;
+        y[7] = (x20 * s5 - x22 * s2 + x23 * s1) * inv;
+        y[8] = (x10 * c4 - x11 * c2 + x13 * c0) * inv;
+        y[9] = (-x00 * c4 + x01 * c2 - x03 * c0) * inv;
+        y[10] = (x30 * s4 - x31 * s2 + x33 * s0) * inv;
+        y[11] = (-x20 * s4 + x21 * s2 - x23 * s0) * inv;
+        y[12] = (-x10 * c3 + x11 * c1 - x12 * c0) * inv;
+        y[13] = (x00 * c3 - x01 * c1 + x02 * c0) * inv;
+        y[14] = (-x30 * s3 + x31 * s1 - x32 * s0) * inv;
+        y[15] = (x20 * s3 - x21 * s1 + x22 * s0) * inv;
+        return true;
+    }
+
+    /**
+     * Decomposes the <tt>n x n</tt> matrix <tt>x</tt> (row major) in place
+     * into <tt>L * U</tt> with partial pivoting; row <tt>i</tt> of the
+     * decomposed matrix was row <tt>piv[i]</tt>. Returns the sign of the
+     * permutation.
+     */
+    private static double lu(int n, double[] x, int[] piv) {
+        double sign = 1;
+        for (int i = 0; i < n; i++) {
+            piv[i] = i;
+        }
+        for (int j = 0; j < n; j++) {
+            int p = j;
+            double max = Math.abs(x[j * n + j]);
+            for (int i = j + 1; i < n; i++) {
+                double v = Math.abs(x[i * n + j]);
+                if (v > max) {
+                    max = v;
+                    p = i;
+                }
+            }
+            if (p != j) {
+                for (int c = 0; c < n; c++) {
+                    double t = x[p * n + c];
+                    x[p * n + c] = x[j * n + c];
+                    x[j * n + c] = t;
+                }
+                int t = piv[p];
+                piv[p] = piv[j];
+                piv[j] = t;
+                sign = -sign;
+            }
+            double pivot = x[j * n + j];
+            if (pivot != 0) {
+                for (int i = j + 1; i < n; i++) {
+                    double l = x[i * n + j] /= pivot;
+                    if (l != 0) {
+                        for (int c = j + 1; c < n; c++) {
+                            x[i * n + c] -= l * x[j * n + c];
+                        }
+                    }
+                }
+            }
+        }
+        return sign;
+    }
+
+    /**
+     * Solves <tt>x * z = y</tt> in place of the <tt>n x nrhs</tt> matrix
+     * <tt>y</tt>, given the decomposition computed by {@link #lu}. Returns
+     * false if the matrix is singular.
+     */
+    private static boolean luSolve(int n, int nrhs, double[] x, int[] piv, double[] y) {
+        for (int i = 0; i < n; i++) {
+            if (x[i * n + i] == 0)
+                return false;
+        }
+        double[] t = new double[n * nrhs];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(y, piv[i] * nrhs, t, i * nrhs, nrhs);
+        }
+        // L * w = P * y
+        for (int j = 0; j < n; j++) {
+            for (int i = j + 1; i < n; i++) {
+                double l = x[i * n + j];
+                if (l != 0) {
+                    for (int c = 0; c < nrhs; c++) {
+                        t[i * nrhs + c] -= l * t[j * nrhs + c];
+                    }
+                }
+            }
+        }
+        // U * z = w
+        for (int j = n - 1; j >= 0; j--) {
+            double d = x[j * n + j];
+            for (int c = 0; c < nrhs; c++) {
+                t[j * nrhs + c] /= d;
+            }
+            for (int i = 0; i < j; i++) {
+                double u = x[i * n + j];
+                if (u != 0) {
+                    for (int c = 0; c < nrhs; c++) {
+                        t[i * nrhs + c] -= u * t[j * nrhs + c];
+                    }
+                }
+            }
+        }
+        System.arraycopy(t, 0, y, 0, n * nrhs);
+        return true;
+    }
+
+    /**
+     * Decomposes the <tt>n x n</tt> matrix <tt>x</tt> (row major) in place
+     * into <tt>L * L'</tt>, reading and writing the lower triangle only.
+     * Returns false if the matrix is not positive definite.
+     */
+    private static boolean cholesky(int n, double[] x) {
+        for (int j = 0; j < n; j++) {
+            double d = x[j * n + j];
+            for (int l = 0; l < j; l++) {
+                d -= x[j * n + l] * x[j * n + l];
+            }
+            if (!(d > 0))
+                return false;
+            d = Math.sqrt(d);
+            x[j * n + j] = d;
+            for (int i = j + 1; i < n; i++) {
+                double s = x[i * n + j];
+                for (int l = 0; l < j; l++) {
+                    s -= x[i * n + l] * x[j * n + l];
+                }
+                x[i * n + j] = s / d;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves <tt>L * L' * z = y</tt> in place of the <tt>n x nrhs</tt> matrix
+     * <tt>y</tt>, given the decomposition computed by {@link #cholesky}.
+     */
+    private static void choleskySolve(int n, int nrhs, double[] x, double[] y) {
+        for (int j = 0; j < n; j++) {
+            double d = x[j * n + j];
+            for (int c = 0; c < nrhs; c++) {
+                y[j * nrhs + c] /= d;
+            }
+            for (int i = j + 1; i < n; i++) {
+                double l = x[i * n + j];
+                for (int c = 0; c < nrhs; c++) {
+                    y[i * nrhs + c] -= l * y[j * nrhs + c];
+                }
+            }
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            double d = x[j * n + j];
+            for (int c = 0; c < nrhs; c++) {
+                y[j * nrhs + c] /= d;
+            }
+            for (int i = 0; i < j; i++) {
+                double l = x[j * n + i];
+                for (int c = 0; c < nrhs; c++) {
+                    y[i * nrhs + c] -= l * y[j * nrhs + c];
+                }
+            }
+        }
+    }
+}
@@ -409,6 +409,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleFunction function) {
+        markModified();
         if (function instanceof cern.jet.math.tdouble.DoubleMult) { // x[i] = mult*x[i]
             double multiplicator = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
             if (multiplicator == 1)
@@ -477,6 +478,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleProcedure cond, final DoubleFunction function) {
+        markModified();
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
@@ -523,6 +525,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleProcedure cond, final double value) {
+        markModified();
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
@@ -569,6 +572,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final double value) {
+        markModified();
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
@@ -606,6 +610,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final double[] values) {
+        markModified();
         if (values.length != size())
             throw new IllegalArgumentException("Must have same length: length=" + values.length + " rows()*columns()="
                     + rows() * columns());
@@ -653,6 +658,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final double[][] values) {
+        markModified();
         if (values.length != rows)
             throw new IllegalArgumentException("Must have same number of rows: rows=" + values.length + "columns()="
                     + rows());
@@ -702,7 +708,18 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D source) {
+        markModified();
         // overriden for performance only
+        if (source instanceof DenseDoubleMatrix2D) {
+            DoubleMatrix2D other = source;
+            checkShape(other);
+            if (other.elements() == elements) {
+                other = other.copy();
+            }
+            DenseDoubleTranspose.copy(rows, columns, (double[]) other.elements(), (int) other.index(0, 0), other
+                    .rowStride(), other.columnStride(), elements, (int) index(0, 0), rowStride, columnStride);
+            return this;
+        }
         if (!(source instanceof DenseColumnDoubleMatrix2D)) {
             super.assign(source);
             return this;
@@ -724,6 +741,12 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
             }
             other = (DenseColumnDoubleMatrix2D) c;
         }
+        if (DenseDoubleTranspose.isTransposed(rowStride, columnStride, other.rowStride, other.columnStride)) {
+            // e.g. a diced view, a column by column copy would read it by rows
+            DenseDoubleTranspose.copy(rows, columns, other.elements, (int) other.index(0, 0), other.rowStride,
+                    other.columnStride, elements, (int) index(0, 0), rowStride, columnStride);
+            return this;
+        }
 
         final int zeroOther = (int) other.index(0, 0);
         final int zero = (int) index(0, 0);
@@ -771,6 +794,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D y, final DoubleDoubleFunction function) {
+        markModified();
         if (function instanceof cern.jet.math.tdouble.DoublePlusMultSecond) {
             double multiplicator = ((cern.jet.math.tdouble.DoublePlusMultSecond) function).multiplicator;
             if (multiplicator == 0) { // x[i] = x[i] + 0*y[i]
@@ -1031,6 +1055,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
 
     public DoubleMatrix2D assign(final DoubleMatrix2D y, final DoubleDoubleFunction function, IntArrayList rowList,
             IntArrayList columnList) {
+        markModified();
         checkShape(y);
         if (!(y instanceof DenseColumnDoubleMatrix2D)) {
             super.assign(y, function);
@@ -1082,6 +1107,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final float[] values) {
+        markModified();
         if (values.length != size())
             throw new IllegalArgumentException("Must have same length: length=" + values.length + "rows()*columns()="
                     + rows() * columns());
@@ -1508,6 +1534,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        markModified();
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
@@ -1560,50 +1587,8 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
      */
     public DenseDoubleMatrix2D getRowMajor() {
         DenseDoubleMatrix2D R = new DenseDoubleMatrix2D(rows, columns);
-        final int zeroR = (int) R.index(0, 0);
-        final int rowStrideR = R.rowStride();
-        final int columnStrideR = R.columnStride();
-        final double[] elementsR = R.elements();
-        final int zero = (int) index(0, 0);
-        int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, columns);
-            Future<?>[] futures = new Future[nthreads];
-            int k = columns / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstColumn = columns - j * k;
-                final int lastColumn = (j == (nthreads - 1)) ? 0 : firstColumn - k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-
-                    public void run() {
-                        int idx = zero + (rows - 1) * rowStride + (firstColumn - 1) * columnStride;
-                        int idxR = zeroR + (rows - 1) * rowStrideR + (firstColumn - 1) * columnStrideR;
-                        for (int c = firstColumn; --c >= lastColumn;) {
-                            for (int i = idx, j = idxR, r = rows; --r >= 0;) {
-                                elementsR[j] = elements[i];
-                                i -= rowStride;
-                                j -= rowStrideR;
-                            }
-                            idx -= columnStride;
-                            idxR -= columnStrideR;
-                        }
-                    }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
-        } else {
-            int idx = zero + (rows - 1) * rowStride + (columns - 1) * columnStride;
-            int idxR = zeroR + (rows - 1) * rowStrideR + (columns - 1) * columnStrideR;
-            for (int c = columns; --c >= 0;) {
-                for (int i = idx, j = idxR, r = rows; --r >= 0;) {
-                    elementsR[j] = elements[i];
-                    i -= rowStride;
-                    j -= rowStrideR;
-                }
-                idx -= columnStride;
-                idxR -= columnStrideR;
-            }
-        }
+        DenseDoubleTranspose.copy(rows, columns, elements, (int) index(0, 0), rowStride, columnStride, R.elements(),
+                (int) R.index(0, 0), R.rowStride(), R.columnStride());
         return R;
     }
 
@@ -2467,6 +2452,7 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public void setQuick(int row, int column, double value) {
+        markModified();
         elements[rowZero + row * rowStride + columnZero + column * columnStride] = value;
     }
 
@@ -2508,6 +2494,36 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
         return values;
     }
 
+    /**
+     * Transposes this matrix in place, i.e. afterwards it has
+     * <tt>columns()</tt> rows and <tt>rows()</tt> columns, and the cell
+     * <tt>[row,column]</tt> holds the former value of the cell
+     * <tt>[column,row]</tt>. Unlike {@link #viewDice()} the elements are moved,
+     * so that columns of the result are contiguous in memory again. Views of
+     * this matrix are not adjusted.
+     * <p>
+     * Square matrices are transposed by a recursive, cache-oblivious algorithm,
+     * rectangular ones by following the cycles of the transposition
+     * permutation.
+     * 
+     * @return <tt>this</tt> (for convenience only).
+     * @throws IllegalArgumentException
+     *             if this matrix is a rectangular view.
+     */
+    public DenseColumnDoubleMatrix2D transpose() {
+        markModified();
+        if (rows == columns) {
+            DenseDoubleTranspose.transpose(rows, elements, (int) index(0, 0), rowStride, columnStride);
+            return this;
+        }
+        if (!isNoView)
+            throw new IllegalArgumentException("Only square views can be transposed in place: " + toStringShort());
+        // the elements hold the transpose in row major order
+        DenseDoubleTranspose.transpose(columns, rows, elements, 0);
+        setUp(columns, rows, 0, 0, 1, columns);
+        return this;
+    }
+
     public DoubleMatrix1D vectorize() {
         final int size = (int) size();
         DoubleMatrix1D v = new DenseDoubleMatrix1D(size);
@@ -2562,6 +2578,8 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
 
     public DoubleMatrix1D zMult(final DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
             final boolean transposeA) {
+        if (z != null)
+            z.markModified();
         if (z == null) {
             z = new DenseDoubleMatrix1D(transposeA ? columns : rows);
         }
@@ -2585,6 +2603,9 @@ public class DenseColumnDoubleMatrix2D extends DoubleMatrix2D {
 
     public DoubleMatrix2D zMult(final DoubleMatrix2D B, DoubleMatrix2D C, final double alpha, final double beta,
             final boolean transposeA, final boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
         final int rowsA = transposeA ? columns : rows;
         final int columnsA = transposeA ? rows : columns;
         final int rowsB = transposeB ? B.columns() : B.rows();
@@ -0,0 +1,416 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * Cache-blocked general matrix-matrix multiplication on raw <tt>double</tt>
+ * arrays addressed by (zero, rowStride, columnStride), i.e. the storage layout
+ * of {@link DenseDoubleMatrix2D} and all of its views.
+ * <p>
+ * Computes <tt>C = alpha * op(A) * op(B) + beta * C</tt>. Transposition is
+ * expressed by swapping the strides of the operand, so all four combinations
+ * of <tt>op</tt> run through the same code.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * The classic layered scheme is used. <tt>op(B)</tt> is split into panels of
+ * <tt>KC x NC</tt> elements (sized for the L3 cache) and <tt>op(A)</tt> into
+ * blocks of <tt>MC x KC</tt> elements (sized for the L2 cache). Both are
+ * copied into contiguous packed buffers, <tt>A</tt> in slivers of
+ * <tt>MR</tt> rows and <tt>B</tt> in slivers of <tt>NR</tt> columns, so that
+ * the innermost <tt>MR x NR</tt> register-blocked kernel streams both operands
+ * with unit stride from the L1 cache, regardless of the strides of the
+ * original matrices. <tt>alpha</tt> is folded into the packed copy of
+ * <tt>A</tt>.
+ * <p>
+ * In the multithreaded case <tt>C</tt> is partitioned in two dimensions into a
+ * grid of nearly square tiles, one per task, and each task runs the blocked
+ * algorithm on its own tile with private packing buffers. Square tiles
+ * minimize the amount of <tt>A</tt> and <tt>B</tt> that every task has to
+ * pack.
+ */
+class DenseDoubleGemm {
+
+    /**
+     * Number of rows of the register block.
+     */
+    static final int MR = 4;
+
+    /**
+     * Number of columns of the register block.
+     */
+    static final int NR = 4;
+
+    /**
+     * Depth of the packed panels; a <tt>KC x NR</tt> sliver of <tt>B</tt>
+     * should stay in the L1 cache.
+     */
+    static final int KC = 256;
+
+    /**
+     * Number of rows of a packed block of <tt>A</tt>; a <tt>MC x KC</tt> block
+     * should stay in the L2 cache.
+     */
+    static final int MC = 128;
+
+    /**
+     * Number of columns of a packed panel of <tt>B</tt>; a <tt>KC x NC</tt>
+     * panel should stay in the L3 cache.
+     */
+    static final int NC = 4096;
+
+    /**
+     * Minimal number of floating point operations per task, unless a grain size
+     * is set for {@link ConcurrencyTuning#ZMULT}.
+     */
+    static final int MIN_FLOPS_PER_TASK = 1 << 18;
+
+    private DenseDoubleGemm() {
+    }
+
+    /**
+     * Computes <tt>C = alpha * op(A) * op(B) + beta * C</tt>, where
+     * <tt>op(A)</tt> is <tt>m x k</tt>, <tt>op(B)</tt> is <tt>k x n</tt> and
+     * <tt>C</tt> is <tt>m x n</tt>. Element <tt>(i,j)</tt> of <tt>op(X)</tt>
+     * is stored at <tt>x[xZero + i * xRowStride + j * xColumnStride]</tt>.
+     * <tt>C</tt> must not share cells with <tt>A</tt> or <tt>B</tt>. If
+     * <tt>beta == 0</tt> the previous content of <tt>C</tt> is ignored.
+     */
+    static void gemm(final int m, final int n, final int k, final double alpha, final double[] a,
+            final int aZero, final int aRowStride, final int aColumnStride, final double[] b, final int bZero,
+            final int bRowStride, final int bColumnStride, final double beta, final double[] c, final int cZero,
+            final int cRowStride, final int cColumnStride) {
+        if (m == 0 || n == 0) {
+            return;
+        }
+        long flops = 2L * m * n * k;
+        int nthreads = 1;
+        if (flops >= ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT, 2 * MIN_FLOPS_PER_TASK)) {
+            nthreads = (int) Math.min(ConcurrencyUtils.getNumberOfThreads(), flops
+                    / ConcurrencyTuning.getGrain(ConcurrencyTuning.ZMULT, MIN_FLOPS_PER_TASK));
+        }
+        nthreads = Math.min(nthreads, ((m + MR - 1) / MR) * ((n + NR - 1) / NR));
+        if (nthreads < 2) {
+            gemmTile(0, m, 0, n, k, alpha, a, aZero, aRowStride, aColumnStride, b, bZero, bRowStride,
+                    bColumnStride, beta, c, cZero, cRowStride, cColumnStride);
+            return;
+        }
+
+        /*
+         * choose a pr x pc grid of tiles with pr * pc <= nthreads that
+         * minimizes the size of the largest tile, and among those the
+         * perimeter of a tile (the amount of A and B that has to be packed)
+         */
+        int pr = 1;
+        int pc = 1;
+        long bestArea = Long.MAX_VALUE;
+        long bestPerimeter = Long.MAX_VALUE;
+        for (int r = 1; r <= nthreads; r++) {
+            int q = nthreads / r;
+            int tileRows = roundUp((m + r - 1) / r, MR);
+            int tileColumns = roundUp((n + q - 1) / q, NR);
+            long area = (long) tileRows * tileColumns;
+            long perimeter = (long) tileRows + tileColumns;
+            if (area < bestArea || (area == bestArea && perimeter < bestPerimeter)) {
+                bestArea = area;
+                bestPerimeter = perimeter;
+                pr = r;
+                pc = q;
+            }
+        }
+        final int tileRows = roundUp((m + pr - 1) / pr, MR);
+        final int tileColumns = roundUp((n + pc - 1) / pc, NR);
+        pr = (m + tileRows - 1) / tileRows;
+        pc = (n + tileColumns - 1) / tileColumns;
+
+        final int tileGridColumns = pc;
+        ForkJoinUtils.invoke(0, pr * pc, 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstTile, int lastTile) {
+                for (int t = firstTile; t < lastTile; t++) {
+                    int firstRow = (t / tileGridColumns) * tileRows;
+                    int lastRow = Math.min(m, firstRow + tileRows);
+                    int firstColumn = (t % tileGridColumns) * tileColumns;
+                    int lastColumn = Math.min(n, firstColumn + tileColumns);
+                    gemmTile(firstRow, lastRow, firstColumn, lastColumn, k, alpha, a, aZero, aRowStride,
+                            aColumnStride, b, bZero, bRowStride, bColumnStride, beta, c, cZero, cRowStride,
+                            cColumnStride);
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes the tile <tt>[firstRow, lastRow) x [firstColumn, lastColumn)</tt>
+     * of <tt>C</tt>.
+     */
+    static void gemmTile(int firstRow, int lastRow, int firstColumn, int lastColumn, int k, double alpha,
+            double[] a, int aZero, int aRowStride, int aColumnStride, double[] b, int bZero, int bRowStride,
+            int bColumnStride, double beta, double[] c, int cZero, int cRowStride, int cColumnStride) {
+        int mt = lastRow - firstRow;
+        int nt = lastColumn - firstColumn;
+        if (mt <= 0 || nt <= 0) {
+            return;
+        }
+        scale(mt, nt, beta, c, cZero + firstRow * cRowStride + firstColumn * cColumnStride, cRowStride,
+                cColumnStride);
+        if (alpha == 0 || k == 0) {
+            return;
+        }
+        int kcMax = Math.min(KC, k);
+        double[] packedA = new double[roundUp(Math.min(MC, mt), MR) * kcMax];
+        double[] packedB = new double[roundUp(Math.min(NC, nt), NR) * kcMax];
+        double[] edge = new double[MR * NR];
+        for (int jc = firstColumn; jc < lastColumn; jc += NC) {
+            int nc = Math.min(NC, lastColumn - jc);
+            for (int pc = 0; pc < k; pc += KC) {
+                int kc = Math.min(KC, k - pc);
+                packB(kc, nc, b, bZero + pc * bRowStride + jc * bColumnStride, bRowStride, bColumnStride,
+                        packedB);
+                for (int ic = firstRow; ic < lastRow; ic += MC) {
+                    int mc = Math.min(MC, lastRow - ic);
+                    packA(mc, kc, alpha, a, aZero + ic * aRowStride + pc * aColumnStride, aRowStride,
+                            aColumnStride, packedA);
+                    macroKernel(mc, nc, kc, packedA, packedB, c, cZero + ic * cRowStride + jc * cColumnStride,
+                            cRowStride, cColumnStride, edge);
+                }
+            }
+        }
+    }
+
+    /**
+     * <tt>C = beta * C</tt>; <tt>beta == 0</tt> clears <tt>C</tt> so that
+     * NaNs in uninitialized results do not propagate.
+     */
+    private static void scale(int m, int n, double beta, double[] c, int cZero, int cRowStride, int cColumnStride) {
+        if (beta == 1) {
+            return;
+        }
+        int idxRow = cZero;
+        for (int r = 0; r < m; r++) {
+            int idx = idxRow;
+            if (beta == 0) {
+                for (int j = 0; j < n; j++) {
+                    c[idx] = 0;
+                    idx += cColumnStride;
+                }
+            } else {
+                for (int j = 0; j < n; j++) {
+                    c[idx] *= beta;
+                    idx += cColumnStride;
+                }
+            }
+            idxRow += cRowStride;
+        }
+    }
+
+    /**
+     * Packs a <tt>mc x kc</tt> block of <tt>op(A)</tt>, scaled by
+     * <tt>alpha</tt>, into slivers of <tt>MR</tt> rows stored depth by depth.
+     * Rows beyond <tt>mc</tt> in the last sliver are padded with zeros.
+     */
+    private static void packA(int mc, int kc, double alpha, double[] a, int aIdx, int aRowStride,
+            int aColumnStride, double[] packed) {
+        int dst = 0;
+        for (int ir = 0; ir < mc; ir += MR) {
+            int mr = Math.min(MR, mc - ir);
+            int rowIdx = aIdx + ir * aRowStride;
+            if (mr == MR) {
+                int i0 = rowIdx;
+                int i1 = i0 + aRowStride;
+                int i2 = i1 + aRowStride;
+                int i3 = i2 + aRowStride;
+                for (int p = 0; p < kc; p++) {
+                    packed[dst] = alpha * a[i0];
+                    packed[dst + 1] = alpha * a[i1];
+                    packed[dst + 2] = alpha * a[i2];
+                    packed[dst + 3] = alpha * a[i3];
+                    dst += MR;
+                    i0 += aColumnStride;
+                    i1 += aColumnStride;
+                    i2 += aColumnStride;
+                    i3 += aColumnStride;
+                }
+            } else {
+                for (int p = 0; p < kc; p++) {
+                    int idx = rowIdx + p * aColumnStride;
+                    for (int r = 0; r < MR; r++) {
+                        packed[dst + r] = (r < mr) ? alpha * a[idx] : 0;
+                        idx += aRowStride;
+                    }
+                    dst += MR;
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs a <tt>kc x nc</tt> panel of <tt>op(B)</tt> into slivers of
+     * <tt>NR</tt> columns stored depth by depth. Columns beyond <tt>nc</tt> in
+     * the last sliver are padded with zeros.
+     */
+    private static void packB(int kc, int nc, double[] b, int bIdx, int bRowStride, int bColumnStride,
+            double[] packed) {
+        int dst = 0;
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            int columnIdx = bIdx + jr * bColumnStride;
+            if (nr == NR) {
+                int j0 = columnIdx;
+                int j1 = j0 + bColumnStride;
+                int j2 = j1 + bColumnStride;
+                int j3 = j2 + bColumnStride;
+                for (int p = 0; p < kc; p++) {
+                    packed[dst] = b[j0];
+                    packed[dst + 1] = b[j1];
+                    packed[dst + 2] = b[j2];
+                    packed[dst + 3] = b[j3];
+                    dst += NR;
+                    j0 += bRowStride;
+                    j1 += bRowStride;
+                    j2 += bRowStride;
+                    j3 += bRowStride;
+                }
+            } else {
+                for (int p = 0; p < kc; p++) {
+                    int idx = columnIdx + p * bRowStride;
+                    for (int c = 0; c < NR; c++) {
+                        packed[dst + c] = (c < nr) ? b[idx] : 0;
+                        idx += bColumnStride;
+                    }
+                    dst += NR;
+                }
+            }
+        }
+    }
+
+    /**
+     * Multiplies a packed <tt>mc x kc</tt> block of <tt>A</tt> by a packed
+     * <tt>kc x nc</tt> panel of <tt>B</tt> and adds the result to <tt>C</tt>.
+     */
+    private static void macroKernel(int mc, int nc, int kc, double[] packedA, double[] packedB, double[] c,
+            int cIdx, int cRowStride, int cColumnStride, double[] edge) {
+        for (int jr = 0; jr < nc; jr += NR) {
+            int nr = Math.min(NR, nc - jr);
+            for (int ir = 0; ir < mc; ir += MR) {
+                int mr = Math.min(MR, mc - ir);
+                microKernel(kc, packedA, ir * kc, packedB, jr * kc, c, cIdx + ir * cRowStride + jr
+                        * cColumnStride, cRowStride, cColumnStride, mr, nr, edge);
+            }
+        }
+    }
+
+    /**
+     * <tt>MR x NR</tt> register-blocked kernel. All 16 partial sums are kept
+     * in locals for the whole depth of the panel and <tt>C</tt> is touched
+     * only once at the end.
+     */
+    private static void microKernel(int kc, double[] pa, int ai, double[] pb, int bi, double[] c, int cIdx,
+            int cRowStride, int cColumnStride, int mr, int nr, double[] edge) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+        for (int p = 0; p < kc; p++) {
+            double a0 = pa[ai];
+            double a1 = pa[ai + 1];
+            double a2 = pa[ai + 2];
+            double a3 = pa[ai + 3];
+            double b = pb[bi];
+            c00 += a0 * b;
+            c10 += a1 * b;
+            c20 += a2 * b;
+            c30 += a3 * b;
+            b = pb[bi + 1];
+            c01 += a0 * b;
+            c11 += a1 * b;
+            c21 += a2 * b;
+            c31 += a3 * b;
+            b = pb[bi + 2];
+            c02 += a0 * b;
+            c12 += a1 * b;
+            c22 += a2 * b;
+            c32 += a3 * b;
+            b = pb[bi + 3];
+            c03 += a0 * b;
+            c13 += a1 * b;
+            c23 += a2 * b;
+            c33 += a3 * b;
+            ai += MR;
+            bi += NR;
+        }
+        if (mr == MR && nr == NR) {
+            int i0 = cIdx;
+            int i1 = i0 + cRowStride;
+            int i2 = i1 + cRowStride;
+            int i3 = i2 + cRowStride;
+            c[i0] += c00;
+            c[i1] += c10;
+            c[i2] += c20;
+            c[i3] += c30;
+            i0 += cColumnStride;
+            i1 += cColumnStride;
+            i2 += cColumnStride;
+            i3 += cColumnStride;
+            c[i0] += c01;
+            c[i1] += c11;
+            c[i2] += c21;
+            c[i3] += c31;
+            i0 += cColumnStride;
+            i1 += cColumnStride;
+            i2 += cColumnStride;
+            i3 += cColumnStride;
+            c[i0] += c02;
+            c[i1] += c12;
+            c[i2] += c22;
+            c[i3] += c32;
+            i0 += cColumnStride;
+            i1 += cColumnStride;
+            i2 += cColumnStride;
+            i3 += cColumnStride;
+            c[i0] += c03;
+            c[i1] += c13;
+            c[i2] += c23;
+            c[i3] += c33;
+        } else {
+            edge[0] = c00;
+            edge[1] = c01;
+            edge[2] = c02;
+            edge[3] = c03;
+            edge[4] = c10;
+            edge[5] = c11;
+            edge[6] = c12;
+            edge[7] = c13;
+            edge[8] = c20;
+            edge[9] = c21;
+            edge[10] = c22;
+            edge[11] = c23;
+            edge[12] = c30;
+            edge[13] = c31;
+            edge[14] = c32;
+            edge[15] = c33;
+            int idxRow = cIdx;
+            for (int r = 0; r < mr; r++) {
+                int idx = idxRow;
+                for (int j = 0; j < nr; j++) {
+                    c[idx] += edge[r * NR + j];
+                    idx += cColumnStride;
+                }
+                idxRow += cRowStride;
+            }
+        }
+    }
+
+    private static int roundUp(int x, int multiple) {
+        return ((x + multiple - 1) / multiple) * multiple;
+    }
+}
@@ -0,0 +1,517 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
+import cern.jet.math.tdouble.DoubleFunctions;
+import cern.jet.math.tdouble.DoubleMult;
+import cern.jet.math.tdouble.DoublePlusMultFirst;
+import cern.jet.math.tdouble.DoublePlusMultSecond;
+
+/**
+ * Elementwise kernels on strided <tt>double</tt> arrays for the most common
+ * functions of {@link DoubleFunctions}.
+ * <p>
+ * The generic dense code paths call <tt>DoubleFunction.apply</tt> once per
+ * element, which prevents the JIT from vectorizing the loop and, for
+ * megamorphic call sites, costs a virtual call per element. The kernels below
+ * recognize the function objects (<tt>plus</tt>, <tt>minus</tt>,
+ * <tt>mult</tt>, <tt>div</tt>, <tt>max</tt>, <tt>min</tt>, <tt>abs</tt>,
+ * <tt>square</tt>, <tt>identity</tt>, {@link DoubleMult},
+ * {@link DoublePlusMultFirst} and {@link DoublePlusMultSecond}) and run
+ * call-free loops instead. Unit-stride data is processed by plain counted
+ * loops that the HotSpot superword optimization turns into SIMD code;
+ * reductions use four independent accumulators. Unrecognized functions must
+ * be handled by the caller with the scalar code.
+ */
+class DenseDoubleKernels {
+
+    private static final int IDENTITY = 0;
+
+    private static final int ABS = 1;
+
+    private static final int SQUARE = 2;
+
+    private static final int MULT = 3;
+
+    private static final int PLUS = 4;
+
+    private static final int MAX = 5;
+
+    private static final int MIN = 6;
+
+    private static final int PLUS_MULT_FIRST = 7;
+
+    private static final int TIMES = 8;
+
+    private static final int DIV = 9;
+
+    private static final int UNSUPPORTED = -1;
+
+    private DenseDoubleKernels() {
+    }
+
+    private static int kindOf(DoubleFunction f) {
+        if (f == DoubleFunctions.identity) {
+            return IDENTITY;
+        } else if (f == DoubleFunctions.abs) {
+            return ABS;
+        } else if (f == DoubleFunctions.square) {
+            return SQUARE;
+        } else if (f instanceof DoubleMult) {
+            return MULT;
+        }
+        return UNSUPPORTED;
+    }
+
+    private static int kindOf(DoubleDoubleFunction f) {
+        if (f instanceof DoublePlusMultSecond) {
+            return PLUS;
+        } else if (f instanceof DoublePlusMultFirst) {
+            return PLUS_MULT_FIRST;
+        } else if (f == DoubleFunctions.mult) {
+            return TIMES;
+        } else if (f == DoubleFunctions.div) {
+            return DIV;
+        } else if (f == DoubleFunctions.max) {
+            return MAX;
+        } else if (f == DoubleFunctions.min) {
+            return MIN;
+        }
+        return UNSUPPORTED;
+    }
+
+    /**
+     * Returns whether {@link #assign(double[], int, int, int, DoubleFunction)}
+     * supports the given function.
+     */
+    static boolean isSupported(DoubleFunction f) {
+        return kindOf(f) != UNSUPPORTED;
+    }
+
+    /**
+     * Returns whether
+     * {@link #assign(double[], int, int, double[], int, int, int, DoubleDoubleFunction)}
+     * supports the given function.
+     */
+    static boolean isSupported(DoubleDoubleFunction f) {
+        return kindOf(f) != UNSUPPORTED;
+    }
+
+    /**
+     * Returns whether
+     * {@link #aggregate(double[], int, int, int, DoubleDoubleFunction, DoubleFunction)}
+     * supports the given pair of functions.
+     */
+    static boolean isSupported(DoubleDoubleFunction aggr, DoubleFunction f) {
+        int a = kindOf(aggr);
+        if (a == PLUS) {
+            if (((DoublePlusMultSecond) aggr).multiplicator != 1) {
+                return false;
+            }
+        } else if (a != MAX && a != MIN) {
+            return false;
+        }
+        return kindOf(f) != UNSUPPORTED;
+    }
+
+    /**
+     * <tt>x[i] = f(x[i])</tt> for <tt>n</tt> elements starting at
+     * <tt>x[idx]</tt>.
+     */
+    static void assign(double[] x, int idx, int stride, int n, DoubleFunction f) {
+        switch (kindOf(f)) {
+        case IDENTITY:
+            return;
+        case ABS:
+            if (stride == 1) {
+                for (int i = idx, end = idx + n; i < end; i++) {
+                    x[i] = Math.abs(x[i]);
+                }
+            } else {
+                for (int i = idx, k = 0; k < n; k++, i += stride) {
+                    x[i] = Math.abs(x[i]);
+                }
+            }
+            return;
+        case SQUARE:
+            if (stride == 1) {
+                for (int i = idx, end = idx + n; i < end; i++) {
+                    x[i] *= x[i];
+                }
+            } else {
+                for (int i = idx, k = 0; k < n; k++, i += stride) {
+                    x[i] *= x[i];
+                }
+            }
+            return;
+        case MULT:
+            double multiplicator = ((DoubleMult) f).multiplicator;
+            if (multiplicator == 1) {
+                return;
+            }
+            if (stride == 1) {
+                for (int i = idx, end = idx + n; i < end; i++) {
+                    x[i] *= multiplicator;
+                }
+            } else {
+                for (int i = idx, k = 0; k < n; k++, i += stride) {
+                    x[i] *= multiplicator;
+                }
+            }
+            return;
+        default:
+            throw new IllegalArgumentException("Unsupported function");
+        }
+    }
+
+    /**
+     * <tt>x[i] = f(x[i], y[i])</tt> for <tt>n</tt> elements starting at
+     * <tt>x[ix]</tt> and <tt>y[iy]</tt>.
+     */
+    static void assign(double[] x, int ix, int sx, double[] y, int iy, int sy, int n, DoubleDoubleFunction f) {
+        boolean unit = (sx == 1 && sy == 1);
+        int d = iy - ix;
+        switch (kindOf(f)) {
+        case PLUS:
+            double multiplicator = ((DoublePlusMultSecond) f).multiplicator;
+            if (multiplicator == 0) {
+                return;
+            }
+            if (unit) {
+                if (multiplicator == 1) {
+                    for (int i = ix, end = ix + n; i < end; i++) {
+                        x[i] += y[i + d];
+                    }
+                } else if (multiplicator == -1) {
+                    for (int i = ix, end = ix + n; i < end; i++) {
+                        x[i] -= y[i + d];
+                    }
+                } else {
+                    for (int i = ix, end = ix + n; i < end; i++) {
+                        x[i] += multiplicator * y[i + d];
+                    }
+                }
+            } else {
+                for (int i = ix, j = iy, k = 0; k < n; k++, i += sx, j += sy) {
+                    x[i] += multiplicator * y[j];
+                }
+            }
+            return;
+        case PLUS_MULT_FIRST:
+            multiplicator = ((DoublePlusMultFirst) f).multiplicator;
+            if (multiplicator == 0) {
+                if (unit) {
+                    System.arraycopy(y, iy, x, ix, n);
+                } else {
+                    for (int i = ix, j = iy, k = 0; k < n; k++, i += sx, j += sy) {
+                        x[i] = y[j];
+                    }
+                }
+            } else if (unit) {
+                for (int i = ix, end = ix + n; i < end; i++) {
+                    x[i] = multiplicator * x[i] + y[i + d];
+                }
+            } else {
+                for (int i = ix, j = iy, k = 0; k < n; k++, i += sx, j += sy) {
+                    x[i] = multiplicator * x[i] + y[j];
+                }
+            }
+            return;
+        case TIMES:
+            if (unit) {
+                for (int i = ix, end = ix + n; i < end; i++) {
+                    x[i] *= y[i + d];
+                }
+            } else {
+                for (int i = ix, j = iy, k = 0; k < n; k++, i += sx, j += sy) {
+                    x[i] *= y[j];
+                }
+            }
+            return;
+        case DIV:
+            if (unit) {
+                for (int i = ix, end = ix + n; i < end; i++) {
+                    x[i] /= y[i + d];
+                }
+            } else {
+                for (int i = ix, j = iy, k = 0; k < n; k++, i += sx, j += sy) {
+                    x[i] /= y[j];
+                }
+            }
+            return;
+        case MAX:
+            if (unit) {
+                for (int i = ix, end = ix + n; i < end; i++) {
+                    x[i] = Math.max(x[i], y[i + d]);
+                }
+            } else {
+                for (int i = ix, j = iy, k = 0; k < n; k++, i += sx, j += sy) {
+                    x[i] = Math.max(x[i], y[j]);
+                }
+            }
+            return;
+        case MIN:
+            if (unit) {
+                for (int i = ix, end = ix + n; i < end; i++) {
+                    x[i] = Math.min(x[i], y[i + d]);
+                }
+            } else {
+                for (int i = ix, j = iy, k = 0; k < n; k++, i += sx, j += sy) {
+                    x[i] = Math.min(x[i], y[j]);
+                }
+            }
+            return;
+        default:
+            throw new IllegalArgumentException("Unsupported function");
+        }
+    }
+
+    /**
+     * Returns <tt>aggr(f(x[0]), aggr(f(x[1]), ...))</tt> over <tt>n &gt; 0</tt>
+     * elements starting at <tt>x[idx]</tt>.
+     */
+    static double aggregate(double[] x, int idx, int stride, int n, DoubleDoubleFunction aggr, DoubleFunction f) {
+        int kind = kindOf(f);
+        double c = (kind == MULT) ? ((DoubleMult) f).multiplicator : 1;
+        switch (kindOf(aggr)) {
+        case PLUS:
+            switch (kind) {
+            case ABS:
+                return sumAbs(x, idx, stride, n);
+            case SQUARE:
+                return sumSquares(x, idx, stride, n);
+            default:
+                return c * sum(x, idx, stride, n);
+            }
+        case MAX:
+            switch (kind) {
+            case ABS:
+                return maxAbs(x, idx, stride, n);
+            case SQUARE:
+                double m = maxAbs(x, idx, stride, n);
+                return m * m;
+            default:
+                return (c >= 0) ? c * max(x, idx, stride, n) : c * min(x, idx, stride, n);
+            }
+        case MIN:
+            switch (kind) {
+            case ABS:
+                return minAbs(x, idx, stride, n);
+            case SQUARE:
+                double m = minAbs(x, idx, stride, n);
+                return m * m;
+            default:
+                return (c >= 0) ? c * min(x, idx, stride, n) : c * max(x, idx, stride, n);
+            }
+        default:
+            throw new IllegalArgumentException("Unsupported function");
+        }
+    }
+
+    /**
+     * Returns whether <tt>aggregate(other, aggr, f)</tt> is a dot product and
+     * can be computed by {@link #dot(double[], int, int, double[], int, int, int)}.
+     */
+    static boolean isDot(DoubleDoubleFunction aggr, DoubleDoubleFunction f) {
+        return f == DoubleFunctions.mult && kindOf(aggr) == PLUS
+                && ((DoublePlusMultSecond) aggr).multiplicator == 1;
+    }
+
+    /**
+     * Returns the sum of <tt>n</tt> elements starting at <tt>x[idx]</tt>.
+     */
+    static double sum(double[] x, int idx, int stride, int n) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = idx;
+        if (stride == 1) {
+            int end = idx + (n & ~3);
+            for (; i < end; i += 4) {
+                s0 += x[i];
+                s1 += x[i + 1];
+                s2 += x[i + 2];
+                s3 += x[i + 3];
+            }
+            for (end = idx + n; i < end; i++) {
+                s0 += x[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+        for (int k = n >> 2; --k >= 0;) {
+            s0 += x[i];
+            s1 += x[i + stride];
+            s2 += x[i + 2 * stride];
+            s3 += x[i + 3 * stride];
+            i += 4 * stride;
+        }
+        for (int k = n & 3; --k >= 0;) {
+            s0 += x[i];
+            i += stride;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns the dot product of <tt>n</tt> elements starting at
+     * <tt>x[ix]</tt> and <tt>y[iy]</tt>.
+     */
+    static double dot(double[] x, int ix, int sx, double[] y, int iy, int sy, int n) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = ix;
+        int j = iy;
+        if (sx == 1 && sy == 1) {
+            int d = iy - ix;
+            int end = ix + (n & ~3);
+            for (; i < end; i += 4) {
+                s0 += x[i] * y[i + d];
+                s1 += x[i + 1] * y[i + 1 + d];
+                s2 += x[i + 2] * y[i + 2 + d];
+                s3 += x[i + 3] * y[i + 3 + d];
+            }
+            for (end = ix + n; i < end; i++) {
+                s0 += x[i] * y[i + d];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+        for (int k = n >> 2; --k >= 0;) {
+            s0 += x[i] * y[j];
+            s1 += x[i + sx] * y[j + sy];
+            s2 += x[i + 2 * sx] * y[j + 2 * sy];
+            s3 += x[i + 3 * sx] * y[j + 3 * sy];
+            i += 4 * sx;
+            j += 4 * sy;
+        }
+        for (int k = n & 3; --k >= 0;) {
+            s0 += x[i] * y[j];
+            i += sx;
+            j += sy;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static double sumAbs(double[] x, int idx, int stride, int n) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = idx;
+        for (int k = n >> 2; --k >= 0;) {
+            s0 += Math.abs(x[i]);
+            s1 += Math.abs(x[i + stride]);
+            s2 += Math.abs(x[i + 2 * stride]);
+            s3 += Math.abs(x[i + 3 * stride]);
+            i += 4 * stride;
+        }
+        for (int k = n & 3; --k >= 0;) {
+            s0 += Math.abs(x[i]);
+            i += stride;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static double sumSquares(double[] x, int idx, int stride, int n) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = idx;
+        if (stride == 1) {
+            int end = idx + (n & ~3);
+            for (; i < end; i += 4) {
+                s0 += x[i] * x[i];
+                s1 += x[i + 1] * x[i + 1];
+                s2 += x[i + 2] * x[i + 2];
+                s3 += x[i + 3] * x[i + 3];
+            }
+            for (end = idx + n; i < end; i++) {
+                s0 += x[i] * x[i];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+        for (int k = n >> 2; --k >= 0;) {
+            double x0 = x[i];
+            double x1 = x[i + stride];
+            double x2 = x[i + 2 * stride];
+            double x3 = x[i + 3 * stride];
+            s0 += x0 * x0;
+            s1 += x1 * x1;
+            s2 += x2 * x2;
+            s3 += x3 * x3;
+            i += 4 * stride;
+        }
+        for (int k = n & 3; --k >= 0;) {
+            s0 += x[i] * x[i];
+            i += stride;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static double max(double[] x, int idx, int stride, int n) {
+        double m0 = x[idx], m1 = m0, m2 = m0, m3 = m0;
+        int i = idx;
+        for (int k = n >> 2; --k >= 0;) {
+            m0 = Math.max(m0, x[i]);
+            m1 = Math.max(m1, x[i + stride]);
+            m2 = Math.max(m2, x[i + 2 * stride]);
+            m3 = Math.max(m3, x[i + 3 * stride]);
+            i += 4 * stride;
+        }
+        for (int k = n & 3; --k >= 0;) {
+            m0 = Math.max(m0, x[i]);
+            i += stride;
+        }
+        return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+    }
+
+    private static double min(double[] x, int idx, int stride, int n) {
+        double m0 = x[idx], m1 = m0, m2 = m0, m3 = m0;
+        int i = idx;
+        for (int k = n >> 2; --k >= 0;) {
+            m0 = Math.min(m0, x[i]);
+            m1 = Math.min(m1, x[i + stride]);
+            m2 = Math.min(m2, x[i + 2 * stride]);
+            m3 = Math.min(m3, x[i + 3 * stride]);
+            i += 4 * stride;
+        }
+        for (int k = n & 3; --k >= 0;) {
+            m0 = Math.min(m0, x[i]);
+            i += stride;
+        }
+        return Math.min(Math.min(m0, m1), Math.min(m2, m3));
+    }
+
+    private static double maxAbs(double[] x, int idx, int stride, int n) {
+        double m0 = Math.abs(x[idx]), m1 = m0, m2 = m0, m3 = m0;
+        int i = idx;
+        for (int k = n >> 2; --k >= 0;) {
+            m0 = Math.max(m0, Math.abs(x[i]));
+            m1 = Math.max(m1, Math.abs(x[i + stride]));
+            m2 = Math.max(m2, Math.abs(x[i + 2 * stride]));
+            m3 = Math.max(m3, Math.abs(x[i + 3 * stride]));
+            i += 4 * stride;
+        }
+        for (int k = n & 3; --k >= 0;) {
+            m0 = Math.max(m0, Math.abs(x[i]));
+            i += stride;
+        }
+        return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+    }
+
+    private static double minAbs(double[] x, int idx, int stride, int n) {
+        double m0 = Math.abs(x[idx]), m1 = m0, m2 = m0, m3 = m0;
+        int i = idx;
+        for (int k = n >> 2; --k >= 0;) {
+            m0 = Math.min(m0, Math.abs(x[i]));
+            m1 = Math.min(m1, Math.abs(x[i + stride]));
+            m2 = Math.min(m2, Math.abs(x[i + 2 * stride]));
+            m3 = Math.min(m3, Math.abs(x[i + 3 * stride]));
+            i += 4 * stride;
+        }
+        for (int k = n & 3; --k >= 0;) {
+            m0 = Math.min(m0, Math.abs(x[i]));
+            i += stride;
+        }
+        return Math.min(Math.min(m0, m1), Math.min(m2, m3));
+    }
+}
@@ -22,6 +22,8 @@ import edu.emory.mathcs.jtransforms.dct.DoubleDCT_1D;
 import edu.emory.mathcs.jtransforms.dht.DoubleDHT_1D;
 import edu.emory.mathcs.jtransforms.dst.DoubleDST_1D;
 import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
 import cern.colt.ConcurrencyUtils;
 
 /**
@@ -116,27 +118,29 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
             final cern.colt.function.tdouble.DoubleFunction f) {
         if (size == 0)
             return Double.NaN;
+        // specialization for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(aggr, f);
         double a = 0;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
-            nthreads = Math.min(nthreads, size);
-            Future<?>[] futures = new Future[nthreads];
-            int k = size / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstIdx = size - j * k;
-                final int lastIdx = (j == (nthreads - 1)) ? 0 : firstIdx - k;
-                futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
-                    public Double call() throws Exception {
-                        int idx = zero + (firstIdx - 1) * stride;
-                        double a = f.apply(elements[idx]);
-                        for (int i = firstIdx - 1; --i >= lastIdx;) {
-                            a = aggr.apply(a, f.apply(elements[idx -= stride]));
+        if ((nthreads > 1) && (size >= ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.AGGREGATE))) {
+            a = ForkJoinUtils.invoke(0, size, ConcurrencyTuning.getGrain(ConcurrencyTuning.AGGREGATE, 1),
+                    new ForkJoinUtils.DoubleRangeFunction() {
+
+                        public double apply(int firstIdx, int lastIdx) {
+                            if (kernel) {
+                                return DenseDoubleKernels.aggregate(elements, zero + firstIdx * stride, stride,
+                                        lastIdx - firstIdx, aggr, f);
+                            }
+                            int idx = zero + (lastIdx - 1) * stride;
+                            double a = f.apply(elements[idx]);
+                            for (int i = lastIdx - 1; --i >= firstIdx;) {
+                                a = aggr.apply(a, f.apply(elements[idx -= stride]));
+                            }
+                            return a;
                         }
-                        return a;
-                    }
-                });
-            }
-            a = ConcurrencyUtils.waitForCompletion(futures, aggr);
+                    }, aggr);
+        } else if (kernel) {
+            a = DenseDoubleKernels.aggregate(elements, zero, stride, size, aggr, f);
         } else {
             int idx = zero + (size - 1) * stride;
             a = f.apply(elements[idx]);
@@ -202,30 +206,32 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
         final int zeroOther = (int) other.index(0);
         final int strideOther = other.stride();
         final double[] elementsOther = (double[]) other.elements();
+        // specialization for speed
+        final boolean dot = DenseDoubleKernels.isDot(aggr, f);
         double a = 0;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
-            nthreads = Math.min(nthreads, size);
-            Future<?>[] futures = new Future[nthreads];
-            int k = size / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstIdx = j * k;
-                final int lastIdx = (j == nthreads - 1) ? size : firstIdx + k;
-                futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
-                    public Double call() throws Exception {
-                        int idx = zero + firstIdx * stride;
-                        int idxOther = zeroOther + firstIdx * strideOther;
-                        double a = f.apply(elements[idx], elementsOther[idxOther]);
-                        for (int i = firstIdx + 1; i < lastIdx; i++) {
-                            idx += stride;
-                            idxOther += strideOther;
-                            a = aggr.apply(a, f.apply(elements[idx], elementsOther[idxOther]));
+        if ((nthreads > 1) && (size >= ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.AGGREGATE))) {
+            a = ForkJoinUtils.invoke(0, size, ConcurrencyTuning.getGrain(ConcurrencyTuning.AGGREGATE, 1),
+                    new ForkJoinUtils.DoubleRangeFunction() {
+
+                        public double apply(int firstIdx, int lastIdx) {
+                            int idx = zero + firstIdx * stride;
+                            int idxOther = zeroOther + firstIdx * strideOther;
+                            if (dot) {
+                                return DenseDoubleKernels.dot(elements, idx, stride, elementsOther, idxOther,
+                                        strideOther, lastIdx - firstIdx);
+                            }
+                            double a = f.apply(elements[idx], elementsOther[idxOther]);
+                            for (int i = firstIdx + 1; i < lastIdx; i++) {
+                                idx += stride;
+                                idxOther += strideOther;
+                                a = aggr.apply(a, f.apply(elements[idx], elementsOther[idxOther]));
+                            }
+                            return a;
                         }
-                        return a;
-                    }
-                });
-            }
-            a = ConcurrencyUtils.waitForCompletion(futures, aggr);
+                    }, aggr);
+        } else if (dot) {
+            a = DenseDoubleKernels.dot(elements, zero, stride, elementsOther, zeroOther, strideOther, size);
         } else {
             a = f.apply(elements[zero], elementsOther[zeroOther]);
             int idx = zero;
@@ -240,56 +246,39 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
     }
 
     public DoubleMatrix1D assign(final cern.colt.function.tdouble.DoubleFunction function) {
-        final double multiplicator;
+        markModified();
         if (function instanceof cern.jet.math.tdouble.DoubleMult) {
             // x[i] = mult*x[i]
-            multiplicator = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
-            if (multiplicator == 1) {
+            if (((cern.jet.math.tdouble.DoubleMult) function).multiplicator == 1) {
                 return this;
             }
-        } else {
-            multiplicator = 0;
         }
+        // specialization for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(function);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
-            nthreads = Math.min(nthreads, size);
-            Future<?>[] futures = new Future[nthreads];
-            int k = size / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstIdx = j * k;
-                final int lastIdx = (j == nthreads - 1) ? size : firstIdx + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
+        if ((nthreads > 1) && (size >= ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN))) {
+            ForkJoinUtils.invoke(0, size, ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, 1),
+                    new ForkJoinUtils.RangeProcedure() {
 
-                    public void run() {
-                        int idx = zero + firstIdx * stride;
-                        // specialization for speed
-                        if (function instanceof cern.jet.math.tdouble.DoubleMult) {
-                            // x[i] = mult*x[i]
-                            for (int k = firstIdx; k < lastIdx; k++) {
-                                elements[idx] *= multiplicator;
-                                idx += stride;
-                            }
-                        } else {
-                            // the general case x[i] = f(x[i])
-                            for (int k = firstIdx; k < lastIdx; k++) {
-                                elements[idx] = function.apply(elements[idx]);
-                                idx += stride;
+                        public void apply(int firstIdx, int lastIdx) {
+                            int idx = zero + firstIdx * stride;
+                            if (kernel) {
+                                DenseDoubleKernels.assign(elements, idx, stride, lastIdx - firstIdx, function);
+                            } else {
+                                // the general case x[i] = f(x[i])
+                                for (int k = firstIdx; k < lastIdx; k++) {
+                                    elements[idx] = function.apply(elements[idx]);
+                                    idx += stride;
+                                }
                             }
                         }
-                    }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
+                    });
         } else {
-            int idx = zero - stride;
-            // specialization for speed
-            if (function instanceof cern.jet.math.tdouble.DoubleMult) {
-                // x[i] = mult*x[i]
-                for (int k = size; --k >= 0;) {
-                    elements[idx += stride] *= multiplicator;
-                }
+            if (kernel) {
+                DenseDoubleKernels.assign(elements, zero, stride, size, function);
             } else {
                 // the general case x[i] = f(x[i])
+                int idx = zero - stride;
                 for (int k = size; --k >= 0;) {
                     elements[idx += stride] = function.apply(elements[idx]);
                 }
@@ -300,6 +289,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
 
     public DoubleMatrix1D assign(final cern.colt.function.tdouble.DoubleProcedure cond,
             final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
             nthreads = Math.min(nthreads, size);
@@ -335,6 +325,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
     }
 
     public DoubleMatrix1D assign(final cern.colt.function.tdouble.DoubleProcedure cond, final double value) {
+        markModified();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
             nthreads = Math.min(nthreads, size);
@@ -370,6 +361,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
     }
 
     public DoubleMatrix1D assign(final double value) {
+        markModified();
         final double[] elems = this.elements;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
@@ -401,6 +393,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
     }
 
     public DoubleMatrix1D assign(final double[] values) {
+        markModified();
         if (values.length != size)
             throw new IllegalArgumentException("Must have same number of cells: length=" + values.length + "size()="
                     + size());
@@ -439,6 +432,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
     }
 
     public DoubleMatrix1D assign(DoubleMatrix1D source) {
+        markModified();
         // overriden for performance only
         if (!(source instanceof DenseDoubleMatrix1D)) {
             super.assign(source);
@@ -502,6 +496,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
     }
 
     public DoubleMatrix1D assign(final DoubleMatrix1D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
         // overriden for performance only
         if (!(y instanceof DenseDoubleMatrix1D)) {
             super.assign(y, function);
@@ -511,152 +506,37 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
         final int zeroOther = (int) y.index(0);
         final int strideOther = y.stride();
         final double[] elementsOther = (double[]) y.elements();
+        // specialized for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(function);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
-            nthreads = Math.min(nthreads, size);
-            Future<?>[] futures = new Future[nthreads];
-            int k = size / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstIdx = j * k;
-                final int lastIdx = (j == nthreads - 1) ? size : firstIdx + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-                    public void run() {
-                        int idx = zero + firstIdx * stride;
-                        int idxOther = zeroOther + firstIdx * strideOther;
-                        // specialized for speed
-                        if (function == cern.jet.math.tdouble.DoubleFunctions.mult) {
-                            // x[i] = x[i] * y[i]
-                            for (int k = firstIdx; k < lastIdx; k++) {
-                                elements[idx] *= elementsOther[idxOther];
-                                idx += stride;
-                                idxOther += strideOther;
-                            }
-                        } else if (function == cern.jet.math.tdouble.DoubleFunctions.div) {
-                            // x[i] = x[i] / y[i]
-                            for (int k = firstIdx; k < lastIdx; k++) {
-                                elements[idx] /= elementsOther[idxOther];
-                                idx += stride;
-                                idxOther += strideOther;
+        if ((nthreads > 1) && (size >= ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN))) {
+            ForkJoinUtils.invoke(0, size, ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, 1),
+                    new ForkJoinUtils.RangeProcedure() {
 
-                            }
-                        } else if (function instanceof cern.jet.math.tdouble.DoublePlusMultFirst) {
-                            double multiplicator = ((cern.jet.math.tdouble.DoublePlusMultFirst) function).multiplicator;
-                            if (multiplicator == 0) {
-                                // x[i] = 0*x[i] + y[i]
-                                for (int k = firstIdx; k < lastIdx; k++) {
-                                    elements[idx] = elementsOther[idxOther];
-                                    idx += stride;
-                                    idxOther += strideOther;
-                                }
-                            } else if (multiplicator == 1) {
-                                // x[i] = x[i] + y[i]
-                                for (int k = firstIdx; k < lastIdx; k++) {
-                                    elements[idx] += elementsOther[idxOther];
-                                    idx += stride;
-                                    idxOther += strideOther;
-                                }
-                            } else if (multiplicator == -1) {
-                                // x[i] = -x[i] + y[i]
-                                for (int k = firstIdx; k < lastIdx; k++) {
-                                    elements[idx] = elementsOther[idxOther] - elements[idx];
-                                    idx += stride;
-                                    idxOther += strideOther;
-                                }
-                            } else {
-                                // the general case x[i] = mult*x[i] + y[i]
-                                for (int k = firstIdx; k < lastIdx; k++) {
-                                    elements[idx] = multiplicator * elements[idx] + elementsOther[idxOther];
-                                    idx += stride;
-                                    idxOther += strideOther;
-                                }
-                            }
-                        } else if (function instanceof cern.jet.math.tdouble.DoublePlusMultSecond) {
-                            double multiplicator = ((cern.jet.math.tdouble.DoublePlusMultSecond) function).multiplicator;
-                            if (multiplicator == 0) {
-                                // x[i] = x[i] + 0*y[i]
-                                return;
-                            } else if (multiplicator == 1) {
-                                // x[i] = x[i] + y[i]
-                                for (int k = firstIdx; k < lastIdx; k++) {
-                                    elements[idx] += elementsOther[idxOther];
-                                    idx += stride;
-                                    idxOther += strideOther;
-                                }
-                            } else if (multiplicator == -1) {
-                                // x[i] = x[i] - y[i]
-                                for (int k = firstIdx; k < lastIdx; k++) {
-                                    elements[idx] -= elementsOther[idxOther];
-                                    idx += stride;
-                                    idxOther += strideOther;
-                                }
+                        public void apply(int firstIdx, int lastIdx) {
+                            int idx = zero + firstIdx * stride;
+                            int idxOther = zeroOther + firstIdx * strideOther;
+                            if (kernel) {
+                                DenseDoubleKernels.assign(elements, idx, stride, elementsOther, idxOther,
+                                        strideOther, lastIdx - firstIdx, function);
                             } else {
-                                // the general case x[i] = x[i] + mult*y[i]
+                                // the general case x[i] = f(x[i],y[i])
                                 for (int k = firstIdx; k < lastIdx; k++) {
-                                    elements[idx] += multiplicator * elementsOther[idxOther];
+                                    elements[idx] = function.apply(elements[idx], elementsOther[idxOther]);
                                     idx += stride;
                                     idxOther += strideOther;
                                 }
-
-                            }
-                        } else {
-                            // the general case x[i] = f(x[i],y[i])
-                            for (int k = firstIdx; k < lastIdx; k++) {
-                                elements[idx] = function.apply(elements[idx], elementsOther[idxOther]);
-                                idx += stride;
-                                idxOther += strideOther;
                             }
                         }
-                    }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
+                    });
         } else {
-            // specialized for speed
-            int idx = zero;
-            int idxOther = zeroOther;
-            if (function == cern.jet.math.tdouble.DoubleFunctions.mult) {
-                // x[i] = x[i] * y[i]
-                for (int k = 0; k < size; k++) {
-                    elements[idx] *= elementsOther[idxOther];
-                    idx += stride;
-                    idxOther += strideOther;
-                }
-            } else if (function == cern.jet.math.tdouble.DoubleFunctions.div) {
-                // x[i] = x[i] / y[i]
-                for (int k = 0; k < size; k++) {
-                    elements[idx] /= elementsOther[idxOther];
-                    idx += stride;
-                    idxOther += strideOther;
-                }
-            } else if (function instanceof cern.jet.math.tdouble.DoublePlusMultSecond) {
-                double multiplicator = ((cern.jet.math.tdouble.DoublePlusMultSecond) function).multiplicator;
-                if (multiplicator == 0) {
-                    // x[i] = x[i] + 0*y[i]
-                    return this;
-                } else if (multiplicator == 1) {
-                    // x[i] = x[i] + y[i]
-                    for (int k = 0; k < size; k++) {
-                        elements[idx] += elementsOther[idxOther];
-                        idx += stride;
-                        idxOther += strideOther;
-                    }
-                } else if (multiplicator == -1) {
-                    // x[i] = x[i] - y[i]
-                    for (int k = 0; k < size; k++) {
-                        elements[idx] -= elementsOther[idxOther];
-                        idx += stride;
-                        idxOther += strideOther;
-                    }
-                } else {
-                    // the general case x[i] = x[i] + mult*y[i]
-                    for (int k = 0; k < size; k++) {
-                        elements[idx] += multiplicator * elementsOther[idxOther];
-                        idx += stride;
-                        idxOther += strideOther;
-                    }
-                }
+            if (kernel) {
+                DenseDoubleKernels.assign(elements, zero, stride, elementsOther, zeroOther, strideOther, size,
+                        function);
             } else {
                 // the general case x[i] = f(x[i],y[i])
+                int idx = zero;
+                int idxOther = zeroOther;
                 for (int k = 0; k < size; k++) {
                     elements[idx] = function.apply(elements[idx], elementsOther[idxOther]);
                     idx += stride;
@@ -722,6 +602,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
      *            if true then scaling is performed
      */
     public void dct(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dct == null) {
@@ -742,6 +623,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
      * 
      */
     public void dht() {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dht == null) {
@@ -764,6 +646,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
      *            if true then scaling is performed
      */
     public void dst(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dst == null) {
@@ -800,6 +683,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
      * 
      */
     public void fft() {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (fft == null) {
@@ -1138,6 +1022,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
      *            if true then scaling is performed
      */
     public void idct(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dct == null) {
@@ -1161,6 +1046,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
      *            if true then scaling is performed
      */
     public void idht(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dht == null) {
@@ -1183,6 +1069,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
      *            if true then scaling is performed
      */
     public void idst(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dst == null) {
@@ -1214,6 +1101,7 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
      * 
      */
     public void ifft(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (fft == null) {
@@ -1341,10 +1229,13 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
     }
 
     public void setQuick(int index, double value) {
+        markModified();
         elements[zero + index * stride] = value;
     }
 
     public void swap(final DoubleMatrix1D other) {
+        markModified();
+        other.markModified();
         // overriden for performance only
         if (!(other instanceof DenseDoubleMatrix1D)) {
             super.swap(other);
@@ -1416,72 +1307,34 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
             tail = size;
         if (y.size() < tail)
             tail = (int) y.size();
+        final int n = tail - from;
+        if (n <= 0)
+            return 0;
         final double[] elementsOther = yy.elements;
-        int zeroThis = (int) index(from);
-        int zeroOther = (int) yy.index(from);
-        int strideOther = yy.stride;
+        final int zeroThis = (int) index(from);
+        final int zeroOther = (int) yy.index(from);
+        final int strideOther = yy.stride;
         if (elements == null || elementsOther == null)
             throw new InternalError();
         double sum = 0;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (length >= ConcurrencyUtils.getThreadsBeginN_1D())) {
-            final int zeroThisF = zeroThis;
-            final int zeroOtherF = zeroOther;
-            final int strideOtherF = strideOther;
-            nthreads = Math.min(nthreads, length);
+        if ((nthreads > 1) && (n >= ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.AGGREGATE))) {
+            nthreads = Math.min(nthreads, n);
             Future<?>[] futures = new Future[nthreads];
-            Double[] results = new Double[nthreads];
-            int k = length / nthreads;
+            int k = n / nthreads;
             for (int j = 0; j < nthreads; j++) {
                 final int firstIdx = j * k;
-                final int lastIdx = (j == nthreads - 1) ? length : firstIdx + k;
+                final int lastIdx = (j == nthreads - 1) ? n : firstIdx + k;
                 futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
                     public Double call() throws Exception {
-                        int idx = zeroThisF + firstIdx * stride;
-                        int idxOther = zeroOtherF + firstIdx * strideOtherF;
-                        idx -= stride;
-                        idxOther -= strideOtherF;
-                        double sum = 0;
-                        int min = lastIdx - firstIdx;
-                        for (int k = min / 4; --k >= 0;) {
-                            sum += elements[idx += stride] * elementsOther[idxOther += strideOtherF]
-                                    + elements[idx += stride] * elementsOther[idxOther += strideOtherF]
-                                    + elements[idx += stride] * elementsOther[idxOther += strideOtherF]
-                                    + elements[idx += stride] * elementsOther[idxOther += strideOtherF];
-                        }
-                        for (int k = min % 4; --k >= 0;) {
-                            sum += elements[idx += stride] * elementsOther[idxOther += strideOtherF];
-                        }
-                        return sum;
+                        return DenseDoubleKernels.dot(elements, zeroThis + firstIdx * stride, stride, elementsOther,
+                                zeroOther + firstIdx * strideOther, strideOther, lastIdx - firstIdx);
                     }
                 });
             }
-            try {
-                for (int j = 0; j < nthreads; j++) {
-                    results[j] = (Double) futures[j].get();
-                }
-                sum = results[0];
-                for (int j = 1; j < nthreads; j++) {
-                    sum += results[j];
-                }
-            } catch (ExecutionException ex) {
-                ex.printStackTrace();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            sum = ConcurrencyUtils.waitForCompletion(futures, cern.jet.math.tdouble.DoubleFunctions.plus);
         } else {
-            zeroThis -= stride;
-            zeroOther -= strideOther;
-            int min = tail - from;
-            for (int k = min / 4; --k >= 0;) {
-                sum += elements[zeroThis += stride] * elementsOther[zeroOther += strideOther]
-                        + elements[zeroThis += stride] * elementsOther[zeroOther += strideOther]
-                        + elements[zeroThis += stride] * elementsOther[zeroOther += strideOther]
-                        + elements[zeroThis += stride] * elementsOther[zeroOther += strideOther];
-            }
-            for (int k = min % 4; --k >= 0;) {
-                sum += elements[zeroThis += stride] * elementsOther[zeroOther += strideOther];
-            }
+            sum = DenseDoubleKernels.dot(elements, zeroThis, stride, elementsOther, zeroOther, strideOther, n);
         }
         return sum;
     }
@@ -1492,45 +1345,22 @@ public class DenseDoubleMatrix1D extends DoubleMatrix1D {
         if (elems == null)
             throw new InternalError();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size >= ConcurrencyUtils.getThreadsBeginN_1D())) {
+        if ((nthreads > 1) && (size >= ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.AGGREGATE))) {
             nthreads = Math.min(nthreads, size);
             Future<?>[] futures = new Future[nthreads];
-            Double[] results = new Double[nthreads];
             int k = size / nthreads;
             for (int j = 0; j < nthreads; j++) {
                 final int firstIdx = j * k;
                 final int lastIdx = (j == nthreads - 1) ? size : firstIdx + k;
                 futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
                     public Double call() throws Exception {
-                        double sum = 0;
-                        int idx = zero + firstIdx * stride;
-                        for (int i = firstIdx; i < lastIdx; i++) {
-                            sum += elems[idx];
-                            idx += stride;
-                        }
-                        return Double.valueOf(sum);
+                        return DenseDoubleKernels.sum(elems, zero + firstIdx * stride, stride, lastIdx - firstIdx);
                     }
                 });
             }
-            try {
-                for (int j = 0; j < nthreads; j++) {
-                    results[j] = (Double) futures[j].get();
-                }
-                sum = results[0];
-                for (int j = 1; j < nthreads; j++) {
-                    sum += results[j];
-                }
-            } catch (ExecutionException ex) {
-                ex.printStackTrace();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            sum = ConcurrencyUtils.waitForCompletion(futures, cern.jet.math.tdouble.DoubleFunctions.plus);
         } else {
-            int idx = zero;
-            for (int k = 0; k < size; k++) {
-                sum += elems[idx];
-                idx += stride;
-            }
+            sum = DenseDoubleKernels.sum(elems, zero, stride, size);
         }
         return sum;
     }
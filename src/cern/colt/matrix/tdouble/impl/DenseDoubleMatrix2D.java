@@ -21,7 +21,9 @@ import cern.colt.matrix.io.MatrixVectorReader;
 import cern.colt.matrix.tdcomplex.impl.DenseDComplexMatrix2D;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.ConcurrencyTuning;
 import cern.colt.ConcurrencyUtils;
+import cern.colt.ForkJoinUtils;
 import edu.emory.mathcs.jtransforms.dct.DoubleDCT_2D;
 import edu.emory.mathcs.jtransforms.dht.DoubleDHT_2D;
 import edu.emory.mathcs.jtransforms.dst.DoubleDST_2D;
@@ -206,32 +208,44 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
         if (size() == 0)
             return Double.NaN;
         final int zero = (int) index(0, 0);
+        // specialization for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(aggr, f);
         double a = 0;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = rows - j * k;
-                final int lastRow = (j == (nthreads - 1)) ? 0 : firstRow - k;
-                futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
-
-                    public Double call() throws Exception {
-                        double a = f.apply(elements[zero + (firstRow - 1) * rowStride + (columns - 1) * columnStride]);
-                        int d = 1;
-                        for (int r = firstRow; --r >= lastRow;) {
-                            int ridx = zero + r * rowStride;
-                            for (int c = columns - d; --c >= 0;) {
-                                a = aggr.apply(a, f.apply(elements[ridx + c * columnStride]));
-                            }
-                            d = 0;
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.AGGREGATE))) {
+            int minRows = ConcurrencyTuning.getGrain(ConcurrencyTuning.AGGREGATE, columns) / columns;
+            a = ForkJoinUtils.invoke(0, rows, minRows, new ForkJoinUtils.DoubleRangeFunction() {
+
+                public double apply(int firstRow, int lastRow) {
+                    if (kernel) {
+                        int ridx = zero + firstRow * rowStride;
+                        double a = DenseDoubleKernels.aggregate(elements, ridx, columnStride, columns, aggr, f);
+                        for (int r = firstRow + 1; r < lastRow; r++) {
+                            ridx += rowStride;
+                            a = aggr.apply(a, DenseDoubleKernels.aggregate(elements, ridx, columnStride, columns,
+                                    aggr, f));
                         }
                         return a;
                     }
-                });
+                    double a = f.apply(elements[zero + (lastRow - 1) * rowStride + (columns - 1) * columnStride]);
+                    int d = 1;
+                    for (int r = lastRow; --r >= firstRow;) {
+                        int ridx = zero + r * rowStride;
+                        for (int c = columns - d; --c >= 0;) {
+                            a = aggr.apply(a, f.apply(elements[ridx + c * columnStride]));
+                        }
+                        d = 0;
+                    }
+                    return a;
+                }
+            }, aggr);
+        } else if (kernel) {
+            int ridx = zero;
+            a = DenseDoubleKernels.aggregate(elements, ridx, columnStride, columns, aggr, f);
+            for (int r = 1; r < rows; r++) {
+                ridx += rowStride;
+                a = aggr.apply(a, DenseDoubleKernels.aggregate(elements, ridx, columnStride, columns, aggr, f));
             }
-            a = ConcurrencyUtils.waitForCompletion(futures, aggr);
         } else {
             a = f.apply(elements[zero + (rows - 1) * rowStride + (columns - 1) * columnStride]);
             int d = 1;
@@ -358,33 +372,41 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
         final int rowStrideOther = other.rowStride();
         final int colStrideOther = other.columnStride();
         final double[] elementsOther = (double[]) other.elements();
+        // specialization for speed
+        final boolean dot = DenseDoubleKernels.isDot(aggr, f);
         double a = 0;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.AGGREGATE))) {
+            int minRows = ConcurrencyTuning.getGrain(ConcurrencyTuning.AGGREGATE, columns) / columns;
+            a = ForkJoinUtils.invoke(0, rows, minRows, new ForkJoinUtils.DoubleRangeFunction() {
 
-                    public Double call() throws Exception {
-                        double a = f.apply(elements[zero + firstRow * rowStride], elementsOther[zeroOther + firstRow
-                                * rowStrideOther]);
-                        int d = 1;
+                public double apply(int firstRow, int lastRow) {
+                    if (dot) {
+                        double a = 0;
                         for (int r = firstRow; r < lastRow; r++) {
-                            for (int c = d; c < columns; c++) {
-                                a = aggr.apply(a, f.apply(elements[zero + r * rowStride + c * columnStride],
-                                        elementsOther[zeroOther + r * rowStrideOther + c * colStrideOther]));
-                            }
-                            d = 0;
+                            a += DenseDoubleKernels.dot(elements, zero + r * rowStride, columnStride,
+                                    elementsOther, zeroOther + r * rowStrideOther, colStrideOther, columns);
                         }
                         return a;
                     }
-                });
+                    double a = f.apply(elements[zero + firstRow * rowStride], elementsOther[zeroOther + firstRow
+                            * rowStrideOther]);
+                    int d = 1;
+                    for (int r = firstRow; r < lastRow; r++) {
+                        for (int c = d; c < columns; c++) {
+                            a = aggr.apply(a, f.apply(elements[zero + r * rowStride + c * columnStride],
+                                    elementsOther[zeroOther + r * rowStrideOther + c * colStrideOther]));
+                        }
+                        d = 0;
+                    }
+                    return a;
+                }
+            }, aggr);
+        } else if (dot) {
+            for (int r = 0; r < rows; r++) {
+                a += DenseDoubleKernels.dot(elements, zero + r * rowStride, columnStride, elementsOther, zeroOther
+                        + r * rowStrideOther, colStrideOther, columns);
             }
-            a = ConcurrencyUtils.waitForCompletion(futures, aggr);
         } else {
             int d = 1; // first cell already done
             a = f.apply(elements[zero], elementsOther[zeroOther]);
@@ -400,82 +422,59 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
         final double[] elems = this.elements;
         if (elems == null)
             throw new InternalError();
         final int zero = (int) index(0, 0);
+        if (function instanceof cern.jet.math.tdouble.DoubleMult) { // x[i] =
+            // mult*x[i]
+            double multiplicator = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
+            if (multiplicator == 1)
+                return this;
+            if (multiplicator == 0)
+                return assign(0);
+        }
+        // specialization for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(function);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            if (function instanceof cern.jet.math.tdouble.DoubleMult) { // x[i] =
-                // mult*x[i]
-                double multiplicator = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
-                if (multiplicator == 1)
-                    return this;
-                if (multiplicator == 0)
-                    return assign(0);
-            }
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN))) {
+            int minRows = ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, columns) / columns;
+            ForkJoinUtils.invoke(0, rows, minRows, new ForkJoinUtils.RangeProcedure() {
 
-                    public void run() {
-                        int idx = zero + firstRow * rowStride;
-                        // specialization for speed
-                        if (function instanceof cern.jet.math.tdouble.DoubleMult) {
-                            // x[i] = mult*x[i]
-                            double multiplicator = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
-                            if (multiplicator == 1)
-                                return;
-                            for (int r = firstRow; r < lastRow; r++) {
-                                for (int i = idx, c = 0; c < columns; c++) {
-                                    elems[i] *= multiplicator;
-                                    i += columnStride;
-                                }
-                                idx += rowStride;
-                            }
-                        } else {
-                            // the general case x[i] = f(x[i])
-                            for (int r = firstRow; r < lastRow; r++) {
-                                for (int i = idx, c = 0; c < columns; c++) {
-                                    elems[i] = function.apply(elems[i]);
-                                    i += columnStride;
-                                }
-                                idx += rowStride;
+                public void apply(int firstRow, int lastRow) {
+                    int idx = zero + firstRow * rowStride;
+                    if (kernel) {
+                        for (int r = firstRow; r < lastRow; r++) {
+                            DenseDoubleKernels.assign(elems, idx, columnStride, columns, function);
+                            idx += rowStride;
+                        }
+                    } else {
+                        // the general case x[i] = f(x[i])
+                        for (int r = firstRow; r < lastRow; r++) {
+                            for (int i = idx, c = 0; c < columns; c++) {
+                                elems[i] = function.apply(elems[i]);
+                                i += columnStride;
                             }
+                            idx += rowStride;
                         }
                     }
-                });
+                }
+            });
+        } else if (kernel) {
+            int idx = zero;
+            for (int r = 0; r < rows; r++) {
+                DenseDoubleKernels.assign(elems, idx, columnStride, columns, function);
+                idx += rowStride;
             }
-            ConcurrencyUtils.waitForCompletion(futures);
-        } else {
+        } else { // the general case x[i] = f(x[i])
             int idx = zero + (rows - 1) * rowStride + (columns - 1) * columnStride;
-            // specialization for speed
-            if (function instanceof cern.jet.math.tdouble.DoubleMult) { // x[i] =
-                // mult*x[i]
-                double multiplicator = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
-                if (multiplicator == 1)
-                    return this;
-                if (multiplicator == 0)
-                    return assign(0);
-                for (int r = rows; --r >= 0;) { // the general case
-                    for (int i = idx, c = columns; --c >= 0;) {
-                        elems[i] *= multiplicator;
-                        i -= columnStride;
-                    }
-                    idx -= rowStride;
-                }
-            } else { // the general case x[i] = f(x[i])
-                for (int r = rows; --r >= 0;) {
-                    for (int i = idx, c = columns; --c >= 0;) {
-                        elems[i] = function.apply(elems[i]);
-                        i -= columnStride;
-                    }
-                    idx -= rowStride;
+            for (int r = rows; --r >= 0;) {
+                for (int i = idx, c = columns; --c >= 0;) {
+                    elems[i] = function.apply(elems[i]);
+                    i -= columnStride;
                 }
+                idx -= rowStride;
             }
         }
         return this;
@@ -483,6 +482,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
 
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleProcedure cond,
             final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
@@ -529,6 +529,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleProcedure cond, final double value) {
+        markModified();
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
@@ -575,6 +576,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final double value) {
+        markModified();
         final double[] elems = this.elements;
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -613,6 +615,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final double[] values) {
+        markModified();
         if (values.length != size())
             throw new IllegalArgumentException("Must have same length: length=" + values.length + " rows()*columns()="
                     + rows() * columns());
@@ -661,6 +664,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final double[][] values) {
+        markModified();
         if (values.length != rows)
             throw new IllegalArgumentException("Must have same number of rows: rows=" + values.length + "rows()="
                     + rows());
@@ -749,7 +753,18 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D source) {
+        markModified();
         // overriden for performance only
+        if (source instanceof DenseColumnDoubleMatrix2D) {
+            DoubleMatrix2D other = source;
+            checkShape(other);
+            if (other.elements() == elements) {
+                other = other.copy();
+            }
+            DenseDoubleTranspose.copy(rows, columns, (double[]) other.elements(), (int) other.index(0, 0), other
+                    .rowStride(), other.columnStride(), elements, (int) index(0, 0), rowStride, columnStride);
+            return this;
+        }
         if (!(source instanceof DenseDoubleMatrix2D)) {
             super.assign(source);
             return this;
@@ -771,6 +786,12 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
             }
             other = (DenseDoubleMatrix2D) c;
         }
+        if (DenseDoubleTranspose.isTransposed(rowStride, columnStride, other.rowStride, other.columnStride)) {
+            // e.g. a diced view, a row by row copy would read it by columns
+            DenseDoubleTranspose.copy(rows, columns, other.elements, (int) other.index(0, 0), other.rowStride,
+                    other.columnStride, elements, (int) index(0, 0), rowStride, columnStride);
+            return this;
+        }
 
         final double[] elementsOther = other.elements;
         if (elements == null || elementsOther == null)
@@ -820,6 +841,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
         // overriden for performance only
         if (!(y instanceof DenseDoubleMatrix2D)) {
             super.assign(y, function);
@@ -834,189 +856,53 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
         final int zero = (int) index(0, 0);
         final int columnStrideOther = other.columnStride;
         final int rowStrideOther = other.rowStride;
-        int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            if (function instanceof cern.jet.math.tdouble.DoublePlusMultSecond) {
-                double multiplicator = ((cern.jet.math.tdouble.DoublePlusMultSecond) function).multiplicator;
-                if (multiplicator == 0) { // x[i] = x[i] + 0*y[i]
-                    return this;
-                }
+        if (function instanceof cern.jet.math.tdouble.DoublePlusMultSecond) {
+            double multiplicator = ((cern.jet.math.tdouble.DoublePlusMultSecond) function).multiplicator;
+            if (multiplicator == 0) { // x[i] = x[i] + 0*y[i]
+                return this;
             }
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-
-                    public void run() {
-                        int idx;
-                        int idxOther;
-                        // specialized for speed
-                        if (function == cern.jet.math.tdouble.DoubleFunctions.mult) {
-                            // x[i] = x[i]*y[i]
-                            idx = zero + firstRow * rowStride;
-                            idxOther = zeroOther + firstRow * rowStrideOther;
-                            for (int r = firstRow; r < lastRow; r++) {
-                                for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                                    elements[i] *= elementsOther[j];
-                                    i += columnStride;
-                                    j += columnStrideOther;
-                                }
-                                idx += rowStride;
-                                idxOther += rowStrideOther;
-                            }
-                        } else if (function == cern.jet.math.tdouble.DoubleFunctions.div) {
-                            // x[i] = x[i] / y[i]
-                            idx = zero + firstRow * rowStride;
-                            idxOther = zeroOther + firstRow * rowStrideOther;
-                            for (int r = firstRow; r < lastRow; r++) {
-                                for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                                    elements[i] /= elementsOther[j];
-                                    i += columnStride;
-                                    j += columnStrideOther;
-                                }
-                                idx += rowStride;
-                                idxOther += rowStrideOther;
-                            }
-                        } else if (function instanceof cern.jet.math.tdouble.DoublePlusMultSecond) {
-                            double multiplicator = ((cern.jet.math.tdouble.DoublePlusMultSecond) function).multiplicator;
-                            if (multiplicator == 1) {
-                                // x[i] = x[i] + y[i]
-                                idx = zero + firstRow * rowStride;
-                                idxOther = zeroOther + firstRow * rowStrideOther;
-                                for (int r = firstRow; r < lastRow; r++) {
-                                    for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                                        elements[i] += elementsOther[j];
-                                        i += columnStride;
-                                        j += columnStrideOther;
-                                    }
-                                    idx += rowStride;
-                                    idxOther += rowStrideOther;
-                                }
-                            } else if (multiplicator == -1) {
-                                // x[i] = x[i] - y[i]
-                                idx = zero + firstRow * rowStride;
-                                idxOther = zeroOther + firstRow * rowStrideOther;
-                                for (int r = firstRow; r < lastRow; r++) {
-                                    for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                                        elements[i] -= elementsOther[j];
-                                        i += columnStride;
-                                        j += columnStrideOther;
-                                    }
-                                    idx += rowStride;
-                                    idxOther += rowStrideOther;
-                                }
-                            } else { // the general case
-                                // x[i] = x[i] + mult*y[i]
-                                idx = zero + firstRow * rowStride;
-                                idxOther = zeroOther + firstRow * rowStrideOther;
-                                for (int r = firstRow; r < lastRow; r++) {
-                                    for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                                        elements[i] += multiplicator * elementsOther[j];
-                                        i += columnStride;
-                                        j += columnStrideOther;
-                                    }
-                                    idx += rowStride;
-                                    idxOther += rowStrideOther;
-                                }
-                            }
-                        } else { // the general case x[i] = f(x[i],y[i])
-                            idx = zero + firstRow * rowStride;
-                            idxOther = zeroOther + firstRow * rowStrideOther;
-                            for (int r = firstRow; r < lastRow; r++) {
-                                for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                                    elements[i] = function.apply(elements[i], elementsOther[j]);
-                                    i += columnStride;
-                                    j += columnStrideOther;
-                                }
-                                idx += rowStride;
-                                idxOther += rowStrideOther;
+        }
+        // specialized for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(function);
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN))) {
+            int minRows = ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, columns) / columns;
+            ForkJoinUtils.invoke(0, rows, minRows, new ForkJoinUtils.RangeProcedure() {
+
+                public void apply(int firstRow, int lastRow) {
+                    int idx = zero + firstRow * rowStride;
+                    int idxOther = zeroOther + firstRow * rowStrideOther;
+                    if (kernel) {
+                        for (int r = firstRow; r < lastRow; r++) {
+                            DenseDoubleKernels.assign(elements, idx, columnStride, elementsOther, idxOther,
+                                    columnStrideOther, columns, function);
+                            idx += rowStride;
+                            idxOther += rowStrideOther;
+                        }
+                    } else { // the general case x[i] = f(x[i],y[i])
+                        for (int r = firstRow; r < lastRow; r++) {
+                            for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
+                                elements[i] = function.apply(elements[i], elementsOther[j]);
+                                i += columnStride;
+                                j += columnStrideOther;
                             }
+                            idx += rowStride;
+                            idxOther += rowStrideOther;
                         }
-
-                    }
-
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
-        } else {
-            int idx;
-            int idxOther;
-            // specialized for speed
-            if (function == cern.jet.math.tdouble.DoubleFunctions.mult) {
-                // x[i] = x[i] * y[i]
-                idx = zero;
-                idxOther = zeroOther;
-                for (int r = 0; r < rows; r++) {
-                    for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                        elements[i] *= elementsOther[j];
-                        i += columnStride;
-                        j += columnStrideOther;
                     }
-                    idx += rowStride;
-                    idxOther += rowStrideOther;
                 }
-            } else if (function == cern.jet.math.tdouble.DoubleFunctions.div) {
-                // x[i] = x[i] / y[i]
-                idx = zero;
-                idxOther = zeroOther;
+            });
+        } else {
+            int idx = zero;
+            int idxOther = zeroOther;
+            if (kernel) {
                 for (int r = 0; r < rows; r++) {
-                    for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                        elements[i] /= elementsOther[j];
-                        i += columnStride;
-                        j += columnStrideOther;
-                    }
+                    DenseDoubleKernels.assign(elements, idx, columnStride, elementsOther, idxOther, columnStrideOther,
+                            columns, function);
                     idx += rowStride;
                     idxOther += rowStrideOther;
                 }
-            } else if (function instanceof cern.jet.math.tdouble.DoublePlusMultSecond) {
-                double multiplicator = ((cern.jet.math.tdouble.DoublePlusMultSecond) function).multiplicator;
-                if (multiplicator == 0) { // x[i] = x[i] + 0*y[i]
-                    return this;
-                } else if (multiplicator == 1) { // x[i] = x[i] + y[i]
-                    idx = zero;
-                    idxOther = zeroOther;
-                    for (int r = 0; r < rows; r++) {
-                        for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                            elements[i] += elementsOther[j];
-                            i += columnStride;
-                            j += columnStrideOther;
-                        }
-                        idx += rowStride;
-                        idxOther += rowStrideOther;
-                    }
-
-                } else if (multiplicator == -1) { // x[i] = x[i] - y[i]
-                    idx = zero;
-                    idxOther = zeroOther;
-                    for (int r = 0; r < rows; r++) {
-                        for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                            elements[i] -= elementsOther[j];
-                            i += columnStride;
-                            j += columnStrideOther;
-                        }
-                        idx += rowStride;
-                        idxOther += rowStrideOther;
-                    }
-                } else { // the general case
-                    // x[i] = x[i] + mult*y[i]
-                    idx = zero;
-                    idxOther = zeroOther;
-                    for (int r = 0; r < rows; r++) {
-                        for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
-                            elements[i] += multiplicator * elementsOther[j];
-                            i += columnStride;
-                            j += columnStrideOther;
-                        }
-                        idx += rowStride;
-                        idxOther += rowStrideOther;
-                    }
-                }
             } else { // the general case x[i] = f(x[i],y[i])
-                idx = zero;
-                idxOther = zeroOther;
                 for (int r = 0; r < rows; r++) {
                     for (int i = idx, j = idxOther, c = 0; c < columns; c++) {
                         elements[i] = function.apply(elements[i], elementsOther[j]);
@@ -1034,6 +920,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     public DoubleMatrix2D assign(final DoubleMatrix2D y,
             final cern.colt.function.tdouble.DoubleDoubleFunction function, IntArrayList rowList,
             IntArrayList columnList) {
+        markModified();
         checkShape(y);
         final int size = rowList.size();
         final int[] rowElements = rowList.elements();
@@ -1080,6 +967,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final float[] values) {
+        markModified();
         if (values.length != size())
             throw new IllegalArgumentException("Must have same length: length=" + values.length + "rows()*columns()="
                     + rows() * columns());
@@ -1185,6 +1073,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dct2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dct2 == null) {
@@ -1209,6 +1098,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dctColumns(final boolean scale) {
+        markModified();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
             ConcurrencyUtils.setThreadsBeginN_1D_FFT_2Threads(Integer.MAX_VALUE);
@@ -1246,6 +1136,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dctRows(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -1282,6 +1173,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dht2() {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dht2 == null) {
@@ -1303,6 +1195,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dhtColumns() {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -1339,6 +1232,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dhtRows() {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -1378,6 +1272,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dst2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dst2 == null) {
@@ -1402,6 +1297,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dstColumns(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -1441,6 +1337,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void dstRows(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -1509,6 +1406,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void fft2() {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (fft2 == null) {
@@ -1525,6 +1423,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        markModified();
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
@@ -1577,50 +1476,8 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      */
     public DenseColumnDoubleMatrix2D getColumnMajor() {
         DenseColumnDoubleMatrix2D R = new DenseColumnDoubleMatrix2D(rows, columns);
-        final int zeroR = (int) R.index(0, 0);
-        final int rowStrideR = R.rowStride();
-        final int columnStrideR = R.columnStride();
-        final double[] elementsR = R.elements();
-        final int zero = (int) index(0, 0);
-        int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == (nthreads - 1)) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-
-                    public void run() {
-                        int idx = zero + (firstRow - 1) * rowStride;
-                        int idxR = zeroR + (firstRow - 1) * rowStrideR;
-                        for (int r = firstRow; r < lastRow; r++) {
-                            for (int i = idx, j = idxR, c = 0; r < columns; c++) {
-                                elementsR[j] = elements[i];
-                                i += rowStride;
-                                j += rowStrideR;
-                            }
-                            idx += columnStride;
-                            idxR += columnStrideR;
-                        }
-                    }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
-        } else {
-            int idx = zero;
-            int idxR = zeroR;
-            for (int r = 0; r < rows; r++) {
-                for (int i = idx, j = idxR, c = 0; r < columns; c++) {
-                    elementsR[j] = elements[i];
-                    i += rowStride;
-                    j += rowStrideR;
-                }
-                idx += columnStride;
-                idxR += columnStrideR;
-            }
-        }
+        DenseDoubleTranspose.copy(rows, columns, elements, (int) index(0, 0), rowStride, columnStride, R.elements(),
+                (int) R.index(0, 0), R.rowStride(), R.columnStride());
         return R;
     }
 
@@ -2109,6 +1966,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idct2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dct2 == null) {
@@ -2133,6 +1991,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idctColumns(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -2173,6 +2032,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idctRows(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -2212,6 +2072,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idht2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dht2 == null) {
@@ -2236,6 +2097,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idhtColumns(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -2276,6 +2138,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idhtRows(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -2315,6 +2178,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idst2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dst2 == null) {
@@ -2339,6 +2203,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idstColumns(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -2379,6 +2244,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void idstRows(final boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -2444,6 +2310,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
      * 
      */
     public void ifft2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (fft2 == null) {
@@ -2472,6 +2339,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public void setQuick(int row, int column, double value) {
+        markModified();
         elements[rowZero + row * rowStride + columnZero + column * columnStride] = value;
     }
 
@@ -2515,49 +2383,40 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
         return values;
     }
 
+    /**
+     * Transposes this matrix in place, i.e. afterwards it has
+     * <tt>columns()</tt> rows and <tt>rows()</tt> columns, and the cell
+     * <tt>[row,column]</tt> holds the former value of the cell
+     * <tt>[column,row]</tt>. Unlike {@link #viewDice()} the elements are moved,
+     * so that rows of the result are contiguous in memory again. Views of this
+     * matrix are not adjusted.
+     * <p>
+     * Square matrices are transposed by a recursive, cache-oblivious algorithm,
+     * rectangular ones by following the cycles of the transposition
+     * permutation.
+     * 
+     * @return <tt>this</tt> (for convenience only).
+     * @throws IllegalArgumentException
+     *             if this matrix is a rectangular view.
+     */
+    public DenseDoubleMatrix2D transpose() {
+        markModified();
+        if (rows == columns) {
+            DenseDoubleTranspose.transpose(rows, elements, (int) index(0, 0), rowStride, columnStride);
+            return this;
+        }
+        if (!isNoView)
+            throw new IllegalArgumentException("Only square views can be transposed in place: " + toStringShort());
+        DenseDoubleTranspose.transpose(rows, columns, elements, 0);
+        setUp(columns, rows);
+        return this;
+    }
+
     public DoubleMatrix1D vectorize() {
         final DenseDoubleMatrix1D v = new DenseDoubleMatrix1D((int) size());
-        final int zero = (int) index(0, 0);
-        final int zeroOther = (int) v.index(0);
-        final int strideOther = v.stride();
-        final double[] elementsOther = v.elements();
-        int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, columns);
-            Future<?>[] futures = new Future[nthreads];
-            int k = columns / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstColumn = j * k;
-                final int lastColumn = (j == nthreads - 1) ? columns : firstColumn + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-
-                    public void run() {
-                        int idx = 0;
-                        int idxOther = zeroOther + firstColumn * rows;
-                        for (int c = firstColumn; c < lastColumn; c++) {
-                            idx = zero + c * columnStride;
-                            for (int r = 0; r < rows; r++) {
-                                elementsOther[idxOther] = elements[idx];
-                                idx += rowStride;
-                                idxOther += strideOther;
-                            }
-                        }
-                    }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
-        } else {
-            int idx = zero;
-            int idxOther = zeroOther;
-            for (int c = 0; c < columns; c++) {
-                idx = zero + c * columnStride;
-                for (int r = 0; r < rows; r++) {
-                    elementsOther[idxOther] = elements[idx];
-                    idx += rowStride;
-                    idxOther += strideOther;
-                }
-            }
-        }
+        // stacking the columns is a copy to column major order
+        DenseDoubleTranspose.copy(rows, columns, elements, (int) index(0, 0), rowStride, columnStride, v.elements(),
+                (int) v.index(0), v.stride(), rows * v.stride());
         return v;
     }
 
@@ -2642,6 +2501,8 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
 
     public DoubleMatrix1D zMult(final DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
             final boolean transposeA) {
+        if (z != null)
+            z.markModified();
         if (transposeA)
             return viewDice().zMult(y, z, alpha, beta, false);
         if (z == null) {
@@ -2676,14 +2537,8 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
                         int idxZero = zero + firstRow * rowStride;
                         int idxZeroZ = zeroZ + firstRow * strideZ;
                         for (int r = firstRow; r < lastRow; r++) {
-                            double sum = 0;
-                            int idx = idxZero;
-                            int idxY = zeroY;
-                            for (int c = 0; c < columns; c++) {
-                                sum += elements[idx] * elemsY[idxY];
-                                idx += columnStride;
-                                idxY += strideY;
-                            }
+                            double sum = DenseDoubleKernels.dot(elements, idxZero, columnStride, elemsY, zeroY,
+                                    strideY, columns);
                             elemsZ[idxZeroZ] = alpha * sum + beta * elemsZ[idxZeroZ];
                             idxZero += rowStride;
                             idxZeroZ += strideZ;
@@ -2696,14 +2551,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
             int idxZero = zero;
             int idxZeroZ = zeroZ;
             for (int r = 0; r < rows; r++) {
-                double sum = 0;
-                int idx = idxZero;
-                int idxY = zeroY;
-                for (int c = 0; c < columns; c++) {
-                    sum += elements[idx] * elemsY[idxY];
-                    idx += columnStride;
-                    idxY += strideY;
-                }
+                double sum = DenseDoubleKernels.dot(elements, idxZero, columnStride, elemsY, zeroY, strideY, columns);
                 elemsZ[idxZeroZ] = alpha * sum + beta * elemsZ[idxZeroZ];
                 idxZero += rowStride;
                 idxZeroZ += strideZ;
@@ -2714,96 +2562,50 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
 
     public DoubleMatrix2D zMult(final DoubleMatrix2D B, DoubleMatrix2D C, final double alpha, final double beta,
             final boolean transposeA, final boolean transposeB) {
-        final int rowsA = rows;
-        final int columnsA = columns;
-        final int rowsB = B.rows();
-        final int columnsB = B.columns();
-        final int rowsC = transposeA ? columnsA : rowsA;
-        final int columnsC = transposeB ? rowsB : columnsB;
+        if (C != null) {
+            C.markModified();
+        }
+        final int rowsA = transposeA ? columns : rows;
+        final int columnsA = transposeA ? rows : columns;
+        final int rowsB = transposeB ? B.columns() : B.rows();
+        final int columnsB = transposeB ? B.rows() : B.columns();
 
         if (C == null) {
-            C = new DenseDoubleMatrix2D(rowsC, columnsC);
+            C = new DenseDoubleMatrix2D(rowsA, columnsB);
         }
-
-        /*
-        * determine how to split and parallelize best into blocks if more
-        * B.columns than tasks --> split B.columns, as follows:
-        * 
-        * xx|xx|xxx B xx|xx|xxx xx|xx|xxx A xxx xx|xx|xxx C xxx xx|xx|xxx xxx
-        * xx|xx|xxx xxx xx|xx|xxx xxx xx|xx|xxx
-        * 
-        * if less B.columns than tasks --> split A.rows, as follows:
-        * 
-        * xxxxxxx B xxxxxxx xxxxxxx A xxx xxxxxxx C xxx xxxxxxx --- ------- xxx
-        * xxxxxxx xxx xxxxxxx --- ------- xxx xxxxxxx
-        */
-        if (transposeA)
-            return viewDice().zMult(B, C, alpha, beta, false, transposeB);
         if (B instanceof SparseDoubleMatrix2D || B instanceof SparseRCDoubleMatrix2D) {
+            if (transposeA)
+                return viewDice().zMult(B, C, alpha, beta, false, transposeB);
             // exploit quick sparse mult
             // A*B = (B' * A')'
-            if (C == null) {
-                return B.zMult(this, null, alpha, beta, !transposeB, true).viewDice();
-            } else {
-                B.zMult(this, C.viewDice(), alpha, beta, !transposeB, true);
-                return C;
-            }
+            B.zMult(this, C.viewDice(), alpha, beta, !transposeB, true);
+            return C;
         }
-        if (transposeB)
-            return this.zMult(B.viewDice(), C, alpha, beta, transposeA, false);
-
-        if (!(C instanceof DenseDoubleMatrix2D))
+        if (!(B instanceof DenseDoubleMatrix2D) || !(C instanceof DenseDoubleMatrix2D))
             return super.zMult(B, C, alpha, beta, transposeA, transposeB);
 
-        if (B.rows() != columnsA)
+        if (rowsB != columnsA)
             throw new IllegalArgumentException("Matrix2D inner dimensions must agree:" + this.toStringShort() + ", "
-                    + B.toStringShort());
+                    + (transposeB ? B.viewDice() : B).toStringShort());
         if (C.rows() != rowsA || C.columns() != columnsB)
             throw new IllegalArgumentException("Incompatibe result matrix: " + this.toStringShort() + ", "
                     + B.toStringShort() + ", " + C.toStringShort());
         if (this == C || B == C)
             throw new IllegalArgumentException("Matrices must not be identical");
 
-        long flops = 2L * rowsA * columnsA * columnsB;
-        int noOfTasks = (int) Math.min(flops / 30000, ConcurrencyUtils.getNumberOfThreads()); // each
-        /* thread should process at least 30000 flops */
-        boolean splitB = (columnsB >= noOfTasks);
-        int width = splitB ? columnsB : rowsA;
-        noOfTasks = Math.min(width, noOfTasks);
-
-        if (noOfTasks < 2) { //parallelization doesn't pay off (too much start up overhead)
-            return this.zMultSequential(B, C, alpha, beta, transposeA, transposeB);
-        }
-
-        // set up concurrent tasks
-        int span = width / noOfTasks;
-        final Future<?>[] subTasks = new Future[noOfTasks];
-        for (int i = 0; i < noOfTasks; i++) {
-            final int offset = i * span;
-            if (i == noOfTasks - 1)
-                span = width - span * i; // last span may be a bit larger
-
-            final DoubleMatrix2D AA, BB, CC;
-            if (splitB) {
-                // split B along columns into blocks
-                AA = this;
-                BB = B.viewPart(0, offset, columnsA, span);
-                CC = C.viewPart(0, offset, rowsA, span);
-            } else {
-                // split A along rows into blocks
-                AA = this.viewPart(offset, 0, span, columnsA);
-                BB = B;
-                CC = C.viewPart(offset, 0, span, columnsB);
-            }
-
-            subTasks[i] = ConcurrencyUtils.submit(new Runnable() {
-                public void run() {
-                    ((DenseDoubleMatrix2D) AA).zMultSequential(BB, CC, alpha, beta, transposeA, transposeB);
-                }
-            });
-        }
+        DenseDoubleMatrix2D BB = (DenseDoubleMatrix2D) B;
+        DenseDoubleMatrix2D CC = (DenseDoubleMatrix2D) C;
+        if (elements == null || BB.elements == null || CC.elements == null)
+            throw new InternalError();
 
-        ConcurrencyUtils.waitForCompletion(subTasks);
+        /*
+         * transposition is expressed by swapping the strides of the operand,
+         * the blocked kernel packs the operands into contiguous panels anyway
+         */
+        DenseDoubleGemm.gemm(rowsA, columnsB, columnsA, alpha, elements, (int) index(0, 0),
+                transposeA ? columnStride : rowStride, transposeA ? rowStride : columnStride, BB.elements,
+                (int) BB.index(0, 0), transposeB ? BB.columnStride : BB.rowStride, transposeB ? BB.rowStride
+                        : BB.columnStride, beta, CC.elements, (int) CC.index(0, 0), CC.rowStride, CC.columnStride);
         return C;
     }
 
@@ -2813,7 +2615,7 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
             throw new InternalError();
         final int zero = (int) index(0, 0);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.AGGREGATE))) {
             nthreads = Math.min(nthreads, rows);
             Future<?>[] futures = new Future[nthreads];
             int k = rows / nthreads;
@@ -2826,141 +2628,24 @@ public class DenseDoubleMatrix2D extends DoubleMatrix2D {
                         double sum = 0;
                         int idx = zero + firstRow * rowStride;
                         for (int r = firstRow; r < lastRow; r++) {
-                            for (int i = idx, c = 0; c < columns; c++) {
-                                sum += elements[i];
-                                i += columnStride;
-                            }
+                            sum += DenseDoubleKernels.sum(elements, idx, columnStride, columns);
                             idx += rowStride;
                         }
                         return sum;
                     }
                 });
             }
-            try {
-                for (int j = 0; j < nthreads; j++) {
-                    sum += (Double) futures[j].get();
-                }
-            } catch (ExecutionException ex) {
-                ex.printStackTrace();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            sum = ConcurrencyUtils.waitForCompletion(futures, cern.jet.math.tdouble.DoubleFunctions.plus);
         } else {
             int idx = zero;
             for (int r = 0; r < rows; r++) {
-                for (int i = idx, c = 0; c < columns; c++) {
-                    sum += elements[i];
-                    i += columnStride;
-                }
+                sum += DenseDoubleKernels.sum(elements, idx, columnStride, columns);
                 idx += rowStride;
             }
         }
         return sum;
     }
 
-    private DoubleMatrix2D zMultSequential(DoubleMatrix2D B, DoubleMatrix2D C, double alpha, double beta,
-            boolean transposeA, boolean transposeB) {
-        if (transposeA)
-            return viewDice().zMult(B, C, alpha, beta, false, transposeB);
-        if (B instanceof SparseDoubleMatrix2D || B instanceof SparseRCDoubleMatrix2D
-                || B instanceof SparseCCDoubleMatrix2D) {
-            // exploit quick sparse mult
-            // A*B = (B' * A')'
-            if (C == null) {
-                return B.zMult(this, null, alpha, beta, !transposeB, true).viewDice();
-            } else {
-                B.zMult(this, C.viewDice(), alpha, beta, !transposeB, true);
-                return C;
-            }
-        }
-        if (transposeB)
-            return this.zMult(B.viewDice(), C, alpha, beta, transposeA, false);
-
-        int rowsA = rows;
-        int columnsA = columns;
-        int p = B.columns();
-        if (C == null) {
-            C = new DenseDoubleMatrix2D(rowsA, p);
-        }
-        if (!(B instanceof DenseDoubleMatrix2D) || !(C instanceof DenseDoubleMatrix2D))
-            return super.zMult(B, C, alpha, beta, transposeA, transposeB);
-        if (B.rows() != columnsA)
-            throw new IllegalArgumentException("Matrix2D inner dimensions must agree:" + toStringShort() + ", "
-                    + B.toStringShort());
-        if (C.rows() != rowsA || C.columns() != p)
-            throw new IllegalArgumentException("Incompatibel result matrix: " + toStringShort() + ", "
-                    + B.toStringShort() + ", " + C.toStringShort());
-        if (this == C || B == C)
-            throw new IllegalArgumentException("Matrices must not be identical");
-
-        DenseDoubleMatrix2D BB = (DenseDoubleMatrix2D) B;
-        DenseDoubleMatrix2D CC = (DenseDoubleMatrix2D) C;
-        final double[] AElems = this.elements;
-        final double[] BElems = BB.elements;
-        final double[] CElems = CC.elements;
-        if (AElems == null || BElems == null || CElems == null)
-            throw new InternalError();
-
-        int cA = this.columnStride;
-        int cB = BB.columnStride;
-        int cC = CC.columnStride;
-
-        int rA = this.rowStride;
-        int rB = BB.rowStride;
-        int rC = CC.rowStride;
-
-        /*
-         * A is blocked to hide memory latency xxxxxxx B xxxxxxx xxxxxxx A xxx
-         * xxxxxxx C xxx xxxxxxx --- ------- xxx xxxxxxx xxx xxxxxxx --- -------
-         * xxx xxxxxxx
-         */
-        final int BLOCK_SIZE = 30000; // * 8 == Level 2 cache in bytes
-        int m_optimal = (BLOCK_SIZE - columnsA) / (columnsA + 1);
-        if (m_optimal <= 0)
-            m_optimal = 1;
-        int blocks = rowsA / m_optimal;
-        int rr = 0;
-        if (rowsA % m_optimal != 0)
-            blocks++;
-        for (; --blocks >= 0;) {
-            int jB = (int) BB.index(0, 0);
-            int indexA = (int) index(rr, 0);
-            int jC = (int) CC.index(rr, 0);
-            rr += m_optimal;
-            if (blocks == 0)
-                m_optimal += rowsA - rr;
-
-            for (int j = p; --j >= 0;) {
-                int iA = indexA;
-                int iC = jC;
-                for (int i = m_optimal; --i >= 0;) {
-                    int kA = iA;
-                    int kB = jB;
-                    double s = 0;
-
-                    // loop unrolled
-                    kA -= cA;
-                    kB -= rB;
-
-                    for (int k = columnsA % 4; --k >= 0;) {
-                        s += AElems[kA += cA] * BElems[kB += rB];
-                    }
-                    for (int k = columnsA / 4; --k >= 0;) {
-                        s += AElems[kA += cA] * BElems[kB += rB] + AElems[kA += cA] * BElems[kB += rB]
-                                + AElems[kA += cA] * BElems[kB += rB] + AElems[kA += cA] * BElems[kB += rB];
-                    }
-
-                    CElems[iC] = alpha * s + beta * CElems[iC];
-                    iA += rA;
-                    iC += rC;
-                }
-                jB += cB;
-                jC += cC;
-            }
-        }
-        return C;
-    }
-
     protected boolean haveSharedCellsRaw(DoubleMatrix2D other) {
         if (other instanceof SelectedDenseDoubleMatrix2D) {
             SelectedDenseDoubleMatrix2D otherMatrix = (SelectedDenseDoubleMatrix2D) other;
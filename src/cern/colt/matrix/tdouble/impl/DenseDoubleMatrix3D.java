@@ -18,7 +18,9 @@ import cern.colt.matrix.tdcomplex.impl.DenseDComplexMatrix3D;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.DoubleMatrix3D;
+import cern.colt.ConcurrencyTuning;
 import cern.colt.ConcurrencyUtils;
+import cern.colt.ForkJoinUtils;
 import edu.emory.mathcs.jtransforms.dct.DoubleDCT_3D;
 import edu.emory.mathcs.jtransforms.dht.DoubleDHT_3D;
 import edu.emory.mathcs.jtransforms.dst.DoubleDST_3D;
@@ -177,33 +179,33 @@ public class DenseDoubleMatrix3D extends DoubleMatrix3D {
             return Double.NaN;
         double a = 0;
         final int zero = (int) index(0, 0, 0);
+        // specialization for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(aggr, f);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_3D())) {
-            nthreads = Math.min(nthreads, slices);
-            Future<?>[] futures = new Future[nthreads];
-            int k = slices / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstSlice = j * k;
-                final int lastSlice = (j == nthreads - 1) ? slices : firstSlice + k;
-                futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_3D(ConcurrencyTuning.AGGREGATE))) {
+            int minSlices = ConcurrencyTuning.getGrain(ConcurrencyTuning.AGGREGATE, rows * columns) / (rows * columns);
+            a = ForkJoinUtils.invoke(0, slices, minSlices, new ForkJoinUtils.DoubleRangeFunction() {
 
-                    public Double call() throws Exception {
-                        double a = f.apply(elements[zero + firstSlice * sliceStride]);
-                        int d = 1;
-                        for (int s = firstSlice; s < lastSlice; s++) {
-                            for (int r = 0; r < rows; r++) {
-                                for (int c = d; c < columns; c++) {
-                                    a = aggr.apply(a, f.apply(elements[zero + s * sliceStride + r * rowStride + c
-                                            * columnStride]));
-                                }
-                                d = 0;
+                public double apply(int firstSlice, int lastSlice) {
+                    if (kernel) {
+                        return aggregateSlices(firstSlice, lastSlice, zero, aggr, f);
+                    }
+                    double a = f.apply(elements[zero + firstSlice * sliceStride]);
+                    int d = 1;
+                    for (int s = firstSlice; s < lastSlice; s++) {
+                        for (int r = 0; r < rows; r++) {
+                            for (int c = d; c < columns; c++) {
+                                a = aggr.apply(a, f.apply(elements[zero + s * sliceStride + r * rowStride + c
+                                        * columnStride]));
                             }
+                            d = 0;
                         }
-                        return a;
                     }
-                });
-            }
-            a = ConcurrencyUtils.waitForCompletion(futures, aggr);
+                    return a;
+                }
+            }, aggr);
+        } else if (kernel) {
+            a = aggregateSlices(0, slices, zero, aggr, f);
         } else {
             a = f.apply(elements[zero]);
             int d = 1; // first cell already done
@@ -219,6 +221,21 @@ public class DenseDoubleMatrix3D extends DoubleMatrix3D {
         return a;
     }
 
+    private double aggregateSlices(int firstSlice, int lastSlice, int zero,
+            cern.colt.function.tdouble.DoubleDoubleFunction aggr, cern.colt.function.tdouble.DoubleFunction f) {
+        double a = DenseDoubleKernels.aggregate(elements, zero + firstSlice * sliceStride, columnStride, columns,
+                aggr, f);
+        int d = 1;
+        for (int s = firstSlice; s < lastSlice; s++) {
+            for (int r = d; r < rows; r++) {
+                a = aggr.apply(a, DenseDoubleKernels.aggregate(elements, zero + s * sliceStride + r * rowStride,
+                        columnStride, columns, aggr, f));
+            }
+            d = 0;
+        }
+        return a;
+    }
+
     public double aggregate(final cern.colt.function.tdouble.DoubleDoubleFunction aggr,
             final cern.colt.function.tdouble.DoubleFunction f, final cern.colt.function.tdouble.DoubleProcedure cond) {
         if (size() == 0)
@@ -345,35 +362,29 @@ public class DenseDoubleMatrix3D extends DoubleMatrix3D {
         final int columnStrideOther = other.columnStride();
         final double[] elementsOther = (double[]) other.elements();
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_3D())) {
-            nthreads = Math.min(nthreads, slices);
-            Future<?>[] futures = new Future[nthreads];
-            int k = slices / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstSlice = j * k;
-                final int lastSlice = (j == nthreads - 1) ? slices : firstSlice + k;
-                futures[j] = ConcurrencyUtils.submit(new Callable<Double>() {
-                    public Double call() throws Exception {
-                        int idx = zero + firstSlice * sliceStride;
-                        int idxOther = zeroOther + firstSlice * sliceStrideOther;
-                        double a = f.apply(elements[idx], elementsOther[idxOther]);
-                        int d = 1;
-                        for (int s = firstSlice; s < lastSlice; s++) {
-                            for (int r = 0; r < rows; r++) {
-                                for (int c = d; c < columns; c++) {
-                                    idx = zero + s * sliceStride + r * rowStride + c * columnStride;
-                                    idxOther = zeroOther + s * sliceStrideOther + r * rowStrideOther + c
-                                            * columnStrideOther;
-                                    a = aggr.apply(a, f.apply(elements[idx], elementsOther[idxOther]));
-                                }
-                                d = 0;
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_3D(ConcurrencyTuning.AGGREGATE))) {
+            int minSlices = ConcurrencyTuning.getGrain(ConcurrencyTuning.AGGREGATE, rows * columns) / (rows * columns);
+            a = ForkJoinUtils.invoke(0, slices, minSlices, new ForkJoinUtils.DoubleRangeFunction() {
+
+                public double apply(int firstSlice, int lastSlice) {
+                    int idx = zero + firstSlice * sliceStride;
+                    int idxOther = zeroOther + firstSlice * sliceStrideOther;
+                    double a = f.apply(elements[idx], elementsOther[idxOther]);
+                    int d = 1;
+                    for (int s = firstSlice; s < lastSlice; s++) {
+                        for (int r = 0; r < rows; r++) {
+                            for (int c = d; c < columns; c++) {
+                                idx = zero + s * sliceStride + r * rowStride + c * columnStride;
+                                idxOther = zeroOther + s * sliceStrideOther + r * rowStrideOther + c
+                                        * columnStrideOther;
+                                a = aggr.apply(a, f.apply(elements[idx], elementsOther[idxOther]));
                             }
+                            d = 0;
                         }
-                        return a;
                     }
-                });
-            }
-            a = ConcurrencyUtils.waitForCompletion(futures, aggr);
+                    return a;
+                }
+            }, aggr);
         } else {
             a = f.apply(getQuick(0, 0, 0), other.getQuick(0, 0, 0));
             int d = 1; // first cell already done
@@ -395,36 +406,40 @@ public class DenseDoubleMatrix3D extends DoubleMatrix3D {
 
     public DoubleMatrix3D assign(final cern.colt.function.tdouble.DoubleFunction function) {
         final int zero = (int) index(0, 0, 0);
+        // specialization for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(function);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_3D())) {
-            nthreads = Math.min(nthreads, slices);
-            Future<?>[] futures = new Future[nthreads];
-            int k = slices / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstSlice = j * k;
-                final int lastSlice = (j == nthreads - 1) ? slices : firstSlice + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-                    public void run() {
-                        int idx;
-                        for (int s = firstSlice; s < lastSlice; s++) {
-                            for (int r = 0; r < rows; r++) {
-                                idx = zero + s * sliceStride + r * rowStride;
-                                for (int c = 0; c < columns; c++) {
-                                    elements[idx] = function.apply(elements[idx]);
-                                    idx += columnStride;
-                                }
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_3D(ConcurrencyTuning.ASSIGN))) {
+            int minSlices = ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, rows * columns) / (rows * columns);
+            ForkJoinUtils.invoke(0, slices, minSlices, new ForkJoinUtils.RangeProcedure() {
+
+                public void apply(int firstSlice, int lastSlice) {
+                    int idx;
+                    for (int s = firstSlice; s < lastSlice; s++) {
+                        for (int r = 0; r < rows; r++) {
+                            idx = zero + s * sliceStride + r * rowStride;
+                            if (kernel) {
+                                DenseDoubleKernels.assign(elements, idx, columnStride, columns, function);
+                                continue;
+                            }
+                            for (int c = 0; c < columns; c++) {
+                                elements[idx] = function.apply(elements[idx]);
+                                idx += columnStride;
                             }
                         }
                     }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
+                }
+            });
 
         } else {
             int idx;
             for (int s = 0; s < slices; s++) {
                 for (int r = 0; r < rows; r++) {
                     idx = zero + s * sliceStride + r * rowStride;
+                    if (kernel) {
+                        DenseDoubleKernels.assign(elements, idx, columnStride, columns, function);
+                        continue;
+                    }
                     for (int c = 0; c < columns; c++) {
                         elements[idx] = function.apply(elements[idx]);
                         idx += columnStride;
@@ -864,33 +879,34 @@ public class DenseDoubleMatrix3D extends DoubleMatrix3D {
         final int rowStrideOther = y.rowStride();
         final int columnStrideOther = y.columnStride();
         final double[] elementsOther = (double[]) y.elements();
+        // specialization for speed
+        final boolean kernel = DenseDoubleKernels.isSupported(function);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
-        if ((nthreads > 1) && (size() >= ConcurrencyUtils.getThreadsBeginN_3D())) {
-            nthreads = Math.min(nthreads, slices);
-            Future<?>[] futures = new Future[nthreads];
-            int k = slices / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstSlice = j * k;
-                final int lastSlice = (j == nthreads - 1) ? slices : firstSlice + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-                    public void run() {
-                        int idx;
-                        int idxOther;
-                        for (int s = firstSlice; s < lastSlice; s++) {
-                            for (int r = 0; r < rows; r++) {
-                                idx = zero + s * sliceStride + r * rowStride;
-                                idxOther = zeroOther + s * sliceStrideOther + r * rowStrideOther;
-                                for (int c = 0; c < columns; c++) {
-                                    elements[idx] = function.apply(elements[idx], elementsOther[idxOther]);
-                                    idx += columnStride;
-                                    idxOther += columnStrideOther;
-                                }
+        if ((nthreads > 1) && (size() >= ConcurrencyTuning.getThreadsBeginN_3D(ConcurrencyTuning.ASSIGN))) {
+            int minSlices = ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, rows * columns) / (rows * columns);
+            ForkJoinUtils.invoke(0, slices, minSlices, new ForkJoinUtils.RangeProcedure() {
+
+                public void apply(int firstSlice, int lastSlice) {
+                    int idx;
+                    int idxOther;
+                    for (int s = firstSlice; s < lastSlice; s++) {
+                        for (int r = 0; r < rows; r++) {
+                            idx = zero + s * sliceStride + r * rowStride;
+                            idxOther = zeroOther + s * sliceStrideOther + r * rowStrideOther;
+                            if (kernel) {
+                                DenseDoubleKernels.assign(elements, idx, columnStride, elementsOther, idxOther,
+                                        columnStrideOther, columns, function);
+                                continue;
+                            }
+                            for (int c = 0; c < columns; c++) {
+                                elements[idx] = function.apply(elements[idx], elementsOther[idxOther]);
+                                idx += columnStride;
+                                idxOther += columnStrideOther;
                             }
                         }
                     }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
+                }
+            });
         } else {
             int idx;
             int idxOther;
@@ -898,6 +914,11 @@ public class DenseDoubleMatrix3D extends DoubleMatrix3D {
                 for (int r = 0; r < rows; r++) {
                     idx = zero + s * sliceStride + r * rowStride;
                     idxOther = zeroOther + s * sliceStrideOther + r * rowStrideOther;
+                    if (kernel) {
+                        DenseDoubleKernels.assign(elements, idx, columnStride, elementsOther, idxOther,
+                                columnStrideOther, columns, function);
+                        continue;
+                    }
                     for (int c = 0; c < columns; c++) {
                         elements[idx] = function.apply(elements[idx], elementsOther[idxOther]);
                         idx += columnStride;
@@ -2207,10 +2228,7 @@ public class DenseDoubleMatrix3D extends DoubleMatrix3D {
                         for (int s = firstSlice; s < lastSlice; s++) {
                             for (int r = 0; r < rows; r++) {
                                 idx = zero + s * sliceStride + r * rowStride;
-                                for (int c = 0; c < columns; c++) {
-                                    sum += elements[idx];
-                                    idx += columnStride;
-                                }
+                                sum += DenseDoubleKernels.sum(elements, idx, columnStride, columns);
                             }
                         }
                         return Double.valueOf(sum);
@@ -2231,10 +2249,7 @@ public class DenseDoubleMatrix3D extends DoubleMatrix3D {
             for (int s = 0; s < slices; s++) {
                 for (int r = 0; r < rows; r++) {
                     idx = zero + s * sliceStride + r * rowStride;
-                    for (int c = 0; c < columns; c++) {
-                        sum += elements[idx];
-                        idx += columnStride;
-                    }
+                    sum += DenseDoubleKernels.sum(elements, idx, columnStride, columns);
                 }
             }
         }
@@ -0,0 +1,251 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.BitSet;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * Cache-oblivious copies and in-place transpositions of raw <tt>double</tt>
+ * arrays addressed by (zero, rowStride, columnStride), i.e. the storage layout
+ * of {@link DenseDoubleMatrix2D}, {@link DenseColumnDoubleMatrix2D} and all of
+ * their views.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * A copy between a row major and a column major layout (e.g. materializing a
+ * diced view) reads one of the two arrays with a large stride. Splitting the
+ * larger dimension in half recursively until the blocks have at most
+ * <tt>BLOCK x BLOCK</tt> elements keeps both the source and the destination
+ * block in the cache on every level of the memory hierarchy, without knowing
+ * its sizes. The two halves are independent, so they are forked as tasks of
+ * {@link ForkJoinUtils} down to a grain size.
+ * <p>
+ * A square matrix is transposed in place by transposing the two diagonal
+ * quadrants and swapping the off-diagonal quadrants, recursively in the same
+ * way. A contiguous rectangular matrix is transposed in place by following the
+ * cycles of the permutation <tt>p -> p * rows mod (size - 1)</tt>, using one
+ * bit per element to mark the visited positions; this step is sequential.
+ */
+class DenseDoubleTranspose {
+
+    /**
+     * Maximal number of rows and columns of a block copied by a plain loop;
+     * two blocks stay in the L1 cache.
+     */
+    static final int BLOCK = 32;
+
+    private DenseDoubleTranspose() {
+    }
+
+    /**
+     * Returns true if the two layouts run along different dimensions, i.e. if
+     * a row by row copy reads or writes one of them with a large stride.
+     */
+    static boolean isTransposed(int aRowStride, int aColumnStride, int bRowStride, int bColumnStride) {
+        return (Math.abs(aRowStride) < Math.abs(aColumnStride)) != (Math.abs(bRowStride) < Math.abs(bColumnStride));
+    }
+
+    /**
+     * Copies the <tt>rows x columns</tt> matrix <tt>A</tt> to <tt>B</tt>.
+     * Element <tt>(i,j)</tt> of <tt>X</tt> is stored at
+     * <tt>x[xZero + i * xRowStride + j * xColumnStride]</tt>. <tt>A</tt> and
+     * <tt>B</tt> must not share cells.
+     */
+    static void copy(int rows, int columns, double[] a, int aZero, int aRowStride, int aColumnStride, double[] b,
+            int bZero, int bRowStride, int bColumnStride) {
+        copy(rows, columns, a, aZero, aRowStride, aColumnStride, b, bZero, bRowStride, bColumnStride, grain(rows,
+                columns));
+    }
+
+    /**
+     * Transposes the <tt>n x n</tt> matrix <tt>A</tt> in place. Element
+     * <tt>(i,j)</tt> is stored at
+     * <tt>a[zero + i * rowStride + j * columnStride]</tt>.
+     */
+    static void transpose(int n, double[] a, int zero, int rowStride, int columnStride) {
+        transpose(n, a, zero, rowStride, columnStride, grain(n, n));
+    }
+
+    /**
+     * Transposes the <tt>rows x columns</tt> matrix stored contiguously in row
+     * major order at <tt>a[offset], ..., a[offset + rows * columns - 1]</tt>
+     * in place, i.e. afterwards the same elements hold the
+     * <tt>columns x rows</tt> transposed matrix in row major order. Since a
+     * contiguous matrix in column major order is its transpose in row major
+     * order, this also converts a matrix between the two orders.
+     */
+    static void transpose(int rows, int columns, double[] a, int offset) {
+        if (rows == columns) {
+            transpose(rows, a, offset, columns, 1);
+            return;
+        }
+        if (rows <= 1 || columns <= 1) {
+            return;
+        }
+        int n = rows * columns - 1;
+        BitSet visited = new BitSet(n);
+        for (int start = 1; start < n; start++) {
+            if (visited.get(start)) {
+                continue;
+            }
+            // the element at position p moves to position p * rows mod n
+            double t = a[offset + start];
+            int p = start;
+            do {
+                p = (int) (((long) p * rows) % n);
+                double next = a[offset + p];
+                a[offset + p] = t;
+                t = next;
+                visited.set(p);
+            } while (p != start);
+        }
+    }
+
+    /**
+     * Returns the minimal number of elements copied by one task, or
+     * <tt>Long.MAX_VALUE</tt> if a matrix of the given size is processed
+     * sequentially.
+     */
+    private static long grain(int rows, int columns) {
+        long size = (long) rows * columns;
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        if (nthreads < 2 || size < ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN)) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(BLOCK * BLOCK, ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, (int) Math.min(
+                Integer.MAX_VALUE, size / (4 * nthreads))));
+    }
+
+    private static void copy(final int rows, final int columns, final double[] a, final int aZero,
+            final int aRowStride, final int aColumnStride, final double[] b, final int bZero, final int bRowStride,
+            final int bColumnStride, final long grain) {
+        if (rows <= BLOCK && columns <= BLOCK) {
+            int idxA = aZero;
+            int idxB = bZero;
+            for (int r = 0; r < rows; r++) {
+                for (int i = idxA, j = idxB, c = 0; c < columns; c++) {
+                    b[j] = a[i];
+                    i += aColumnStride;
+                    j += bColumnStride;
+                }
+                idxA += aRowStride;
+                idxB += bRowStride;
+            }
+            return;
+        }
+        final boolean splitRows = rows >= columns;
+        final int h = splitRows ? rows / 2 : columns / 2;
+        final int aSecond = aZero + h * (splitRows ? aRowStride : aColumnStride);
+        final int bSecond = bZero + h * (splitRows ? bRowStride : bColumnStride);
+        final int rows2 = splitRows ? rows - h : rows;
+        final int columns2 = splitRows ? columns : columns - h;
+        if ((long) rows * columns / 2 >= grain) {
+            ForkJoinUtils.Task task = ForkJoinUtils.fork(new Runnable() {
+                public void run() {
+                    copy(rows2, columns2, a, aSecond, aRowStride, aColumnStride, b, bSecond, bRowStride,
+                            bColumnStride, grain);
+                }
+            });
+            copy(splitRows ? h : rows, splitRows ? columns : h, a, aZero, aRowStride, aColumnStride, b, bZero,
+                    bRowStride, bColumnStride, grain);
+            task.join();
+        } else {
+            copy(splitRows ? h : rows, splitRows ? columns : h, a, aZero, aRowStride, aColumnStride, b, bZero,
+                    bRowStride, bColumnStride, grain);
+            copy(rows2, columns2, a, aSecond, aRowStride, aColumnStride, b, bSecond, bRowStride, bColumnStride,
+                    grain);
+        }
+    }
+
+    private static void transpose(final int n, final double[] a, final int zero, final int rowStride,
+            final int columnStride, final long grain) {
+        if (n <= BLOCK) {
+            for (int r = 0; r < n; r++) {
+                for (int i = zero + r * rowStride + (r + 1) * columnStride, j = zero + (r + 1) * rowStride + r
+                        * columnStride, c = r + 1; c < n; c++) {
+                    double t = a[i];
+                    a[i] = a[j];
+                    a[j] = t;
+                    i += columnStride;
+                    j += rowStride;
+                }
+            }
+            return;
+        }
+        // the quadrants A11, A22 and (A12, A21) are disjoint
+        final int h = n / 2;
+        if ((long) n * n / 2 >= grain) {
+            ForkJoinUtils.Task task11 = ForkJoinUtils.fork(new Runnable() {
+                public void run() {
+                    transpose(h, a, zero, rowStride, columnStride, grain);
+                }
+            });
+            ForkJoinUtils.Task task22 = ForkJoinUtils.fork(new Runnable() {
+                public void run() {
+                    transpose(n - h, a, zero + h * rowStride + h * columnStride, rowStride, columnStride, grain);
+                }
+            });
+            swap(h, n - h, a, zero + h * columnStride, rowStride, columnStride, zero + h * rowStride, grain);
+            task11.join();
+            task22.join();
+        } else {
+            transpose(h, a, zero, rowStride, columnStride, grain);
+            transpose(n - h, a, zero + h * rowStride + h * columnStride, rowStride, columnStride, grain);
+            swap(h, n - h, a, zero + h * columnStride, rowStride, columnStride, zero + h * rowStride, grain);
+        }
+    }
+
+    /**
+     * Swaps the <tt>rows x columns</tt> block <tt>X</tt> at <tt>x</tt> with
+     * the transpose of the <tt>columns x rows</tt> block <tt>Y</tt> at
+     * <tt>y</tt>, both with the given strides.
+     */
+    private static void swap(final int rows, final int columns, final double[] a, final int x, final int rowStride,
+            final int columnStride, final int y, final long grain) {
+        if (rows <= BLOCK && columns <= BLOCK) {
+            int idxX = x;
+            int idxY = y;
+            for (int r = 0; r < rows; r++) {
+                for (int i = idxX, j = idxY, c = 0; c < columns; c++) {
+                    double t = a[i];
+                    a[i] = a[j];
+                    a[j] = t;
+                    i += columnStride;
+                    j += rowStride;
+                }
+                idxX += rowStride;
+                idxY += columnStride;
+            }
+            return;
+        }
+        final boolean splitRows = rows >= columns;
+        final int h = splitRows ? rows / 2 : columns / 2;
+        // row i of X pairs with column i of Y and vice versa
+        final int xSecond = x + h * (splitRows ? rowStride : columnStride);
+        final int ySecond = y + h * (splitRows ? columnStride : rowStride);
+        final int rows2 = splitRows ? rows - h : rows;
+        final int columns2 = splitRows ? columns : columns - h;
+        if ((long) rows * columns / 2 >= grain) {
+            ForkJoinUtils.Task task = ForkJoinUtils.fork(new Runnable() {
+                public void run() {
+                    swap(rows2, columns2, a, xSecond, rowStride, columnStride, ySecond, grain);
+                }
+            });
+            swap(splitRows ? h : rows, splitRows ? columns : h, a, x, rowStride, columnStride, y, grain);
+            task.join();
+        } else {
+            swap(splitRows ? h : rows, splitRows ? columns : h, a, x, rowStride, columnStride, y, grain);
+            swap(rows2, columns2, a, xSecond, rowStride, columnStride, ySecond, grain);
+        }
+    }
+}
@@ -93,6 +93,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dct2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dct2 == null) {
@@ -112,6 +113,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dctColumns(final boolean scale) {
+        markModified();
         if (dctColumns == null) {
             dctColumns = new DoubleDCT_1D(rows);
         }
@@ -159,6 +161,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dctRows(final boolean scale) {
+        markModified();
         if (dctRows == null) {
             dctRows = new DoubleDCT_1D(columns);
         }
@@ -196,6 +199,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dht2() {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dht2 == null) {
@@ -212,6 +216,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dhtColumns() {
+        markModified();
         if (dhtColumns == null) {
             dhtColumns = new DoubleDHT_1D(rows);
         }
@@ -255,6 +260,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dhtRows() {
+        markModified();
         if (dhtRows == null) {
             dhtRows = new DoubleDHT_1D(columns);
         }
@@ -295,6 +301,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dst2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dst2 == null) {
@@ -314,6 +321,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dstColumns(final boolean scale) {
+        markModified();
         if (dstColumns == null) {
             dstColumns = new DoubleDST_1D(rows);
         }
@@ -360,6 +368,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void dstRows(final boolean scale) {
+        markModified();
         if (dstRows == null) {
             dstRows = new DoubleDST_1D(columns);
         }
@@ -425,6 +434,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void fft2() {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (fft2 == null) {
@@ -736,6 +746,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idct2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dct2 == null) {
@@ -755,6 +766,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idctColumns(final boolean scale) {
+        markModified();
         if (dctColumns == null) {
             dctColumns = new DoubleDCT_1D(rows);
         }
@@ -802,6 +814,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idctRows(final boolean scale) {
+        markModified();
         if (dctRows == null) {
             dctRows = new DoubleDCT_1D(columns);
         }
@@ -843,6 +856,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idht2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dht2 == null) {
@@ -862,6 +876,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idhtColumns(final boolean scale) {
+        markModified();
         if (dhtColumns == null) {
             dhtColumns = new DoubleDHT_1D(rows);
         }
@@ -909,6 +924,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idhtRows(final boolean scale) {
+        markModified();
         if (dhtRows == null) {
             dhtRows = new DoubleDHT_1D(columns);
         }
@@ -950,6 +966,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idst2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (dst2 == null) {
@@ -969,6 +986,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idstColumns(final boolean scale) {
+        markModified();
         if (dstColumns == null) {
             dstColumns = new DoubleDST_1D(rows);
         }
@@ -1016,6 +1034,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void idstRows(final boolean scale) {
+        markModified();
         if (dstRows == null) {
             dstRows = new DoubleDST_1D(columns);
         }
@@ -1083,6 +1102,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
      */
 
     public void ifft2(boolean scale) {
+        markModified();
         int oldNthreads = ConcurrencyUtils.getNumberOfThreads();
         ConcurrencyUtils.setNumberOfThreads(ConcurrencyUtils.nextPow2(oldNthreads));
         if (fft2 == null) {
@@ -1093,6 +1113,7 @@ public class DenseLargeDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public void setQuick(int row, int column, double value) {
+        markModified();
         elements[row][column] = value;
     }
 
@@ -122,6 +122,7 @@ public class DiagonalDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
         if (function instanceof cern.jet.math.tdouble.DoubleMult) { // x[i] = mult*x[i]
             final double alpha = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
             if (alpha == 1)
@@ -142,12 +143,14 @@ public class DiagonalDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(double value) {
+        markModified();
         for (int i = dlength; --i >= 0;)
             elements[i] = value;
         return this;
     }
 
     public DoubleMatrix2D assign(final double[] values) {
+        markModified();
         if (values.length != dlength)
             throw new IllegalArgumentException("Must have same length: length=" + values.length + " dlength=" + dlength);
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
@@ -177,6 +180,7 @@ public class DiagonalDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final double[][] values) {
+        markModified();
         if (values.length != rows)
             throw new IllegalArgumentException("Must have same number of rows: rows=" + values.length + "rows()="
                     + rows());
@@ -199,6 +203,7 @@ public class DiagonalDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
         // overriden for performance only
         if (source == this)
             return this; // nothing to do
@@ -218,6 +223,7 @@ public class DiagonalDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
         checkShape(y);
         if (y instanceof DiagonalDoubleMatrix2D) {
             DiagonalDoubleMatrix2D other = (DiagonalDoubleMatrix2D) y;
@@ -397,6 +403,7 @@ public class DiagonalDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        markModified();
         for (int j = dlength; --j >= 0;) {
             double value = elements[j];
             if (value != 0) {
@@ -599,6 +606,7 @@ public class DiagonalDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public void setQuick(int row, int column, double value) {
+        markModified();
         if (dindex >= 0) {
             if (column < dindex) {
                 //do nothing
@@ -623,6 +631,8 @@ public class DiagonalDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, double alpha, double beta, final boolean transposeA) {
+        if (z != null)
+            z.markModified();
         int rowsA = rows;
         int columnsA = columns;
         if (transposeA) {
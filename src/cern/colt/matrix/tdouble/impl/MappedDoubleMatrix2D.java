@@ -0,0 +1,660 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Dense 2-d matrix holding <tt>double</tt> elements in a memory-mapped file.
+ * First see the <a href="package-summary.html">package summary</a> and javadoc
+ * <a href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * The matrix is split into square tiles of <tt>tileSize x tileSize</tt>
+ * elements (256 x 256 by default), which are stored one after the other, in
+ * row major order of the tiles and of the elements within a tile, after a
+ * header of 4096 bytes holding the shape of the matrix. Tiles at the bottom and
+ * right edges are padded to the full tile size. The file is mapped into
+ * memory, so the matrix may be larger than both the heap and the physical
+ * memory: the operating system pages the tiles in and out as needed, and
+ * changes are written back to the file. A matrix file can be reopened later
+ * with {@link #MappedDoubleMatrix2D(File, boolean)}, without reading or
+ * converting its content.
+ * <p>
+ * <tt>assign</tt>, <tt>aggregate</tt> and <tt>zMult</tt> work tile by tile:
+ * each task copies a few tiles to the heap, processes them and writes the
+ * result back, so the data is streamed through the page cache in large
+ * contiguous pieces and the tasks run in parallel. Other operations access the
+ * elements one by one.
+ * <p>
+ * The mapping is released by {@link #close()}, or by the garbage collector once
+ * the matrix and all its views are no longer referenced. A closed matrix must
+ * not be used any more, nor the buffers returned by {@link #elements()}, which
+ * share its mapping, and a matrix must not be closed while another thread
+ * still accesses it. Matrices created by {@link #like(int, int)} are stored in
+ * temporary files next to the file of this matrix, which are deleted when they
+ * are closed or when the virtual machine exits. Note that this implementation
+ * is not synchronized.
+ * <p>
+ * <b>Time complexity:</b>
+ * <p>
+ * <tt>O(1)</tt> (i.e. constant time) for the basic operations <tt>get</tt>,
+ * <tt>getQuick</tt>, <tt>set</tt>, <tt>setQuick</tt> and <tt>size</tt>.
+ */
+public class MappedDoubleMatrix2D extends WrapperDoubleMatrix2D {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The default number of rows and columns of a tile.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * The size of the file header in bytes.
+     */
+    static final int HEADER_SIZE = 4096;
+
+    private static final long MAGIC = 0x50434f4c544d3244L; // "PCOLTM2D"
+
+    private static final int VERSION = 1;
+
+    private final File file;
+
+    private int tileSize;
+
+    private int tileShift;
+
+    private int tileMask;
+
+    private int tileRows;
+
+    private int tileColumns;
+
+    private boolean temporary;
+
+    private transient OffHeapDoubleStorage storage;
+
+    /**
+     * Creates a matrix with a given number of rows and columns in the given
+     * file, replacing its previous content. All entries are initially
+     * <tt>0</tt>.
+     *
+     * @param file
+     *            the file holding the matrix.
+     * @param rows
+     *            the number of rows the matrix shall have.
+     * @param columns
+     *            the number of columns the matrix shall have.
+     * @throws IOException
+     *             if the file cannot be created or mapped.
+     * @throws IllegalArgumentException
+     *             if <tt>rows<0 || columns<0</tt>.
+     */
+    public MappedDoubleMatrix2D(File file, int rows, int columns) throws IOException {
+        this(file, rows, columns, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Creates a matrix with a given number of rows and columns and the given
+     * tile size in the given file, replacing its previous content. All entries
+     * are initially <tt>0</tt>.
+     *
+     * @param file
+     *            the file holding the matrix.
+     * @param rows
+     *            the number of rows the matrix shall have.
+     * @param columns
+     *            the number of columns the matrix shall have.
+     * @param tileSize
+     *            the number of rows and columns of a tile, a power of 2.
+     * @throws IOException
+     *             if the file cannot be created or mapped.
+     * @throws IllegalArgumentException
+     *             if <tt>rows<0 || columns<0</tt> or if <tt>tileSize</tt> is
+     *             not a power of 2 or too large.
+     */
+    public MappedDoubleMatrix2D(File file, int rows, int columns, int tileSize) throws IOException {
+        super(null);
+        this.file = file;
+        setUp(rows, columns, tileSize);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(0);
+            raf.writeLong(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(rows);
+            raf.writeInt(columns);
+            raf.writeInt(tileSize);
+            raf.setLength(HEADER_SIZE + 8 * capacity());
+            storage = OffHeapDoubleStorage.map(raf.getChannel(), HEADER_SIZE, capacity(), false);
+        } finally {
+            raf.close();
+        }
+        content = this;
+    }
+
+    /**
+     * Opens a matrix stored in the given file.
+     *
+     * @param file
+     *            a file created by
+     *            {@link #MappedDoubleMatrix2D(File, int, int, int)}.
+     * @param readOnly
+     *            if true the matrix cannot be modified; setting an element
+     *            throws a <tt>ReadOnlyBufferException</tt>.
+     * @throws IOException
+     *             if the file cannot be mapped or does not hold a matrix.
+     */
+    public MappedDoubleMatrix2D(File file, boolean readOnly) throws IOException {
+        super(null);
+        this.file = file;
+        RandomAccessFile raf = new RandomAccessFile(file, readOnly ? "r" : "rw");
+        try {
+            if (raf.length() < HEADER_SIZE || raf.readLong() != MAGIC) {
+                throw new IOException("Not a matrix file: " + file);
+            }
+            int version = raf.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of matrix file " + file);
+            }
+            int rows = raf.readInt();
+            int columns = raf.readInt();
+            int tileSize = raf.readInt();
+            try {
+                setUp(rows, columns, tileSize);
+            } catch (IllegalArgumentException exc) {
+                throw new IOException("Corrupt matrix file " + file + ": " + exc.getMessage());
+            }
+            if (raf.length() < HEADER_SIZE + 8 * capacity()) {
+                throw new IOException("Truncated matrix file: " + file);
+            }
+            storage = OffHeapDoubleStorage.map(raf.getChannel(), HEADER_SIZE, capacity(), readOnly);
+        } finally {
+            raf.close();
+        }
+        content = this;
+    }
+
+    private void setUp(int rows, int columns, int tileSize) {
+        try {
+            setUp(rows, columns);
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        if (tileSize < 1 || (tileSize & (tileSize - 1)) != 0) {
+            throw new IllegalArgumentException("tile size must be a power of 2: " + tileSize);
+        }
+        if ((long) tileSize * tileSize > 1L << OffHeapDoubleStorage.CHUNK_SHIFT) {
+            throw new IllegalArgumentException("tile size too large: " + tileSize);
+        }
+        this.tileSize = tileSize;
+        this.tileShift = Integer.numberOfTrailingZeros(tileSize);
+        this.tileMask = tileSize - 1;
+        this.tileRows = (int) (((long) rows + tileMask) >>> tileShift);
+        this.tileColumns = (int) (((long) columns + tileMask) >>> tileShift);
+        if ((long) tileRows * tileColumns > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many tiles, tile size too small: " + tileSize);
+        }
+    }
+
+    /**
+     * Returns the number of elements of the file, including the padding of
+     * the tiles at the edges.
+     */
+    private long capacity() {
+        return (long) tileRows * tileColumns << (2 * tileShift);
+    }
+
+    /**
+     * Returns the file holding this matrix.
+     *
+     * @return the file holding this matrix.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of rows and columns of a tile.
+     *
+     * @return the tile size.
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Writes all changes of this matrix to the file.
+     *
+     * @throws IllegalStateException
+     *             if this matrix has been closed.
+     */
+    public void flush() {
+        storage.force();
+    }
+
+    /**
+     * Unmaps the file of this matrix; the changes not yet written to the file
+     * are written by the operating system. Calling this method more than once
+     * has no effect.
+     */
+    public void close() {
+        storage.close();
+        if (temporary) {
+            file.delete();
+        }
+    }
+
+    /**
+     * Returns true if this matrix has been closed.
+     *
+     * @return true if {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return storage.isClosed();
+    }
+
+    public DoubleMatrix2D assign(final double value) {
+        markModified();
+        storage.buffers();
+        forEachTile(ConcurrencyTuning.ASSIGN, null, false, new TileProcedure() {
+            public void apply(double[] x, double[] y, int height, int width) {
+                for (int r = 0; r < height; r++) {
+                    for (int i = r * tileSize, end = i + width; i < end; i++) {
+                        x[i] = value;
+                    }
+                }
+            }
+        });
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final DoubleFunction function) {
+        markModified();
+        storage.buffers();
+        final boolean kernel = DenseDoubleKernels.isSupported(function);
+        forEachTile(ConcurrencyTuning.ASSIGN, null, true, new TileProcedure() {
+            public void apply(double[] x, double[] y, int height, int width) {
+                for (int r = 0; r < height; r++) {
+                    int i = r * tileSize;
+                    if (kernel) {
+                        DenseDoubleKernels.assign(x, i, 1, width, function);
+                    } else {
+                        for (int end = i + width; i < end; i++) {
+                            x[i] = function.apply(x[i]);
+                        }
+                    }
+                }
+            }
+        });
+        return this;
+    }
+
+    public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
+        if (!isSameLayout(source)) {
+            return super.assign(source);
+        }
+        checkShape(source);
+        if (source != this) {
+            storage.buffers();
+            forEachTile(ConcurrencyTuning.ASSIGN, ((MappedDoubleMatrix2D) source).storage, false,
+                    new TileProcedure() {
+                        public void apply(double[] x, double[] y, int height, int width) {
+                            System.arraycopy(y, 0, x, 0, height * tileSize);
+                        }
+                    });
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(DoubleMatrix2D y, final DoubleDoubleFunction function) {
+        markModified();
+        if (!isSameLayout(y)) {
+            return super.assign(y, function);
+        }
+        checkShape(y);
+        final OffHeapDoubleStorage other = ((MappedDoubleMatrix2D) y).storage;
+        storage.buffers();
+        other.buffers();
+        final boolean kernel = DenseDoubleKernels.isSupported(function);
+        forEachTile(ConcurrencyTuning.ASSIGN, other, true, new TileProcedure() {
+            public void apply(double[] x, double[] y, int height, int width) {
+                for (int r = 0; r < height; r++) {
+                    int i = r * tileSize;
+                    if (kernel) {
+                        DenseDoubleKernels.assign(x, i, 1, y, i, 1, width, function);
+                    } else {
+                        for (int end = i + width; i < end; i++) {
+                            x[i] = function.apply(x[i], y[i]);
+                        }
+                    }
+                }
+            }
+        });
+        return this;
+    }
+
+    public double aggregate(final DoubleDoubleFunction aggr, final DoubleFunction f) {
+        if (size() == 0)
+            return Double.NaN;
+        storage.buffers();
+        final boolean kernel = DenseDoubleKernels.isSupported(aggr, f);
+        int minTiles = (size() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.AGGREGATE)) ? 1
+                : Integer.MAX_VALUE;
+        return ForkJoinUtils.invoke(0, tileRows * tileColumns, minTiles, new ForkJoinUtils.DoubleRangeFunction() {
+            public double apply(int firstTile, int lastTile) {
+                double[] x = new double[tileSize * tileSize];
+                double a = 0;
+                for (int t = firstTile; t < lastTile; t++) {
+                    int height = tileHeight(t / tileColumns);
+                    int width = tileWidth(t % tileColumns);
+                    storage.get((long) t << (2 * tileShift), x, 0, height << tileShift);
+                    for (int r = 0; r < height; r++) {
+                        int i = r * tileSize;
+                        double partial;
+                        if (kernel) {
+                            partial = DenseDoubleKernels.aggregate(x, i, 1, width, aggr, f);
+                        } else {
+                            partial = f.apply(x[i]);
+                            for (int end = i + width, j = i + 1; j < end; j++) {
+                                partial = aggr.apply(partial, f.apply(x[j]));
+                            }
+                        }
+                        a = (t == firstTile && r == 0) ? partial : aggr.apply(a, partial);
+                    }
+                }
+                return a;
+            }
+        }, aggr);
+    }
+
+    /**
+     * Returns the direct buffers mapping the tiles of this matrix, see
+     * {@link #getTileSize()}.
+     * The buffers are duplicates sharing the memory of this matrix; they must
+     * not be used after this matrix has been closed.
+     *
+     * @return the buffers of this matrix.
+     * @throws IllegalStateException
+     *             if this matrix has been closed.
+     */
+    public DoubleBuffer[] elements() {
+        return storage.duplicateBuffers();
+    }
+
+    public double getQuick(int row, int column) {
+        return storage.get(offset(row, column));
+    }
+
+    /**
+     * Returns a new matrix stored in a temporary file in the directory of the
+     * file of this matrix.
+     */
+    public DoubleMatrix2D like(int rows, int columns) {
+        try {
+            File tmp = File.createTempFile("parallelcolt", ".matrix", file.getAbsoluteFile().getParentFile());
+            tmp.deleteOnExit();
+            MappedDoubleMatrix2D M = new MappedDoubleMatrix2D(tmp, rows, columns, tileSize);
+            M.temporary = true;
+            return M;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create a temporary matrix file: " + e.getMessage());
+        }
+    }
+
+    public DoubleMatrix1D like1D(int size) {
+        return new OffHeapDoubleMatrix1D(size);
+    }
+
+    public void setQuick(int row, int column, double value) {
+        markModified();
+        storage.set(offset(row, column), value);
+    }
+
+    public long size() {
+        return (long) rows * columns;
+    }
+
+    public DoubleMatrix1D zMult(final DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
+            final boolean transposeA) {
+        if (z != null)
+            z.markModified();
+        if (transposeA)
+            return super.zMult(y, z, alpha, beta, transposeA);
+        final DoubleMatrix1D zz;
+        if (z == null) {
+            zz = y.like(rows);
+        } else {
+            zz = z;
+        }
+        if (columns != y.size() || rows > zz.size())
+            throw new IllegalArgumentException("Incompatible args: " + toStringShort() + ", " + y.toStringShort()
+                    + ", " + zz.toStringShort());
+        if (rows == 0)
+            return zz;
+        storage.buffers();
+        final double[] yElements = y.toArray();
+        int minTileRows = (2 * size() >= ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT,
+                2 * DenseDoubleGemm.MIN_FLOPS_PER_TASK)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, tileRows, minTileRows, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstTileRow, int lastTileRow) {
+                double[] x = new double[tileSize * tileSize];
+                double[] sums = new double[tileSize];
+                for (int tr = firstTileRow; tr < lastTileRow; tr++) {
+                    int height = tileHeight(tr);
+                    Arrays.fill(sums, 0);
+                    for (int tc = 0; tc < tileColumns; tc++) {
+                        int width = tileWidth(tc);
+                        storage.get(tileOffset(tr, tc), x, 0, height << tileShift);
+                        for (int r = 0; r < height; r++) {
+                            sums[r] += DenseDoubleKernels.dot(x, r * tileSize, 1, yElements, tc * tileSize, 1, width);
+                        }
+                    }
+                    int firstRow = tr * tileSize;
+                    for (int r = 0; r < height; r++) {
+                        zz.setQuick(firstRow + r, alpha * sums[r] + beta * zz.getQuick(firstRow + r));
+                    }
+                }
+            }
+        });
+        return zz;
+    }
+
+    public DoubleMatrix2D zMult(final DoubleMatrix2D B, DoubleMatrix2D C, final double alpha, final double beta,
+            final boolean transposeA, final boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
+        final int m = transposeA ? columns : rows;
+        final int k = transposeA ? rows : columns;
+        final int n = transposeB ? B.rows() : B.columns();
+        final boolean tiledB = isSameLayout(B);
+        if (!tiledB && (long) k * n > Integer.MAX_VALUE)
+            return super.zMult(B, C, alpha, beta, transposeA, transposeB);
+        final DoubleMatrix2D CC;
+        if (C == null) {
+            CC = like(m, n);
+        } else {
+            CC = C;
+        }
+        if ((transposeB ? B.columns() : B.rows()) != k)
+            throw new IllegalArgumentException("Matrix2D inner dimensions must agree:" + toStringShort() + ", "
+                    + (transposeB ? B.viewDice() : B).toStringShort());
+        if (CC.rows() != m || CC.columns() != n)
+            throw new IllegalArgumentException("Incompatibe result matrix: " + toStringShort() + ", "
+                    + B.toStringShort() + ", " + CC.toStringShort());
+        if (this == CC || B == CC)
+            throw new IllegalArgumentException("Matrices must not be identical");
+        if (m == 0 || n == 0)
+            return CC;
+        storage.buffers();
+
+        // op(B) is read tile by tile if it is tiled like this matrix, otherwise
+        // it is small enough to be multiplied from the heap
+        final MappedDoubleMatrix2D BB = tiledB ? (MappedDoubleMatrix2D) B : null;
+        final double[] b = tiledB ? null : (double[]) new DenseDoubleMatrix2D(k, n).assign(
+                transposeB ? B.viewDice() : B).elements();
+        final MappedDoubleMatrix2D CM = isSameLayout(CC) ? (MappedDoubleMatrix2D) CC : null;
+        final int mTiles = (int) (((long) m + tileMask) >>> tileShift);
+        final int nTiles = (int) (((long) n + tileMask) >>> tileShift);
+        final int kTiles = (int) (((long) k + tileMask) >>> tileShift);
+        if ((long) mTiles * nTiles > Integer.MAX_VALUE)
+            return super.zMult(B, C, alpha, beta, transposeA, transposeB);
+        long flops = 2L * m * n * k;
+        int minTiles = (flops >= ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT,
+                2 * DenseDoubleGemm.MIN_FLOPS_PER_TASK)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, mTiles * nTiles, minTiles, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstTile, int lastTile) {
+                int length = tileSize * tileSize;
+                double[] a = new double[length];
+                double[] bt = tiledB ? new double[length] : null;
+                double[] c = new double[length];
+                for (int t = firstTile; t < lastTile; t++) {
+                    int ti = t / nTiles;
+                    int tj = t % nTiles;
+                    int firstRow = ti * tileSize;
+                    int firstColumn = tj * tileSize;
+                    int height = Math.min(tileSize, m - firstRow);
+                    int width = Math.min(tileSize, n - firstColumn);
+                    if (beta != 0) {
+                        if (CM != null) {
+                            CM.storage.get(CM.tileOffset(ti, tj), c, 0, height << tileShift);
+                        } else {
+                            for (int r = 0; r < height; r++) {
+                                for (int j = 0; j < width; j++) {
+                                    c[(r << tileShift) + j] = CC.getQuick(firstRow + r, firstColumn + j);
+                                }
+                            }
+                        }
+                    }
+                    if (kTiles == 0) {
+                        for (int r = 0; r < height; r++) {
+                            for (int j = 0; j < width; j++) {
+                                c[(r << tileShift) + j] = (beta == 0) ? 0 : beta * c[(r << tileShift) + j];
+                            }
+                        }
+                    }
+                    for (int tp = 0; tp < kTiles; tp++) {
+                        int depth = Math.min(tileSize, k - tp * tileSize);
+                        // tile (i, p) of op(A)
+                        if (transposeA) {
+                            storage.get(tileOffset(tp, ti), a, 0, depth << tileShift);
+                        } else {
+                            storage.get(tileOffset(ti, tp), a, 0, height << tileShift);
+                        }
+                        int aRowStride = transposeA ? 1 : tileSize;
+                        int aColumnStride = transposeA ? tileSize : 1;
+                        double b0 = (tp == 0) ? beta : 1;
+                        if (tiledB) {
+                            // tile (p, j) of op(B)
+                            if (transposeB) {
+                                BB.storage.get(BB.tileOffset(tj, tp), bt, 0, width << tileShift);
+                            } else {
+                                BB.storage.get(BB.tileOffset(tp, tj), bt, 0, depth << tileShift);
+                            }
+                            DenseDoubleGemm.gemm(height, width, depth, alpha, a, 0, aRowStride, aColumnStride, bt,
+                                    0, transposeB ? 1 : tileSize, transposeB ? tileSize : 1, b0, c, 0, tileSize, 1);
+                        } else {
+                            DenseDoubleGemm.gemm(height, width, depth, alpha, a, 0, aRowStride, aColumnStride, b,
+                                    tp * tileSize * n + firstColumn, n, 1, b0, c, 0, tileSize, 1);
+                        }
+                    }
+                    if (CM != null) {
+                        CM.storage.set(CM.tileOffset(ti, tj), c, 0, height << tileShift);
+                    } else {
+                        for (int r = 0; r < height; r++) {
+                            for (int j = 0; j < width; j++) {
+                                CC.setQuick(firstRow + r, firstColumn + j, c[(r << tileShift) + j]);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return CC;
+    }
+
+    protected DoubleMatrix2D getContent() {
+        return this;
+    }
+
+    /**
+     * Processes the valid <tt>height x width</tt> part of a tile copied to the
+     * heap; row <tt>r</tt> of the tile starts at <tt>x[r * tileSize]</tt>.
+     */
+    private interface TileProcedure {
+        void apply(double[] x, double[] y, int height, int width);
+    }
+
+    /**
+     * Applies the procedure to every tile, in parallel if the matrix is large
+     * enough, and writes the tiles back. The tile of this matrix is passed as
+     * <tt>x</tt> (read first only if <tt>read</tt> is set), the matching tile
+     * of <tt>other</tt>, if not null, as <tt>y</tt>.
+     */
+    private void forEachTile(String kernel, final OffHeapDoubleStorage other, final boolean read,
+            final TileProcedure procedure) {
+        int minTiles = (size() >= ConcurrencyTuning.getThreadsBeginN_2D(kernel)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, tileRows * tileColumns, minTiles, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstTile, int lastTile) {
+                double[] x = new double[tileSize * tileSize];
+                double[] y = (other != null) ? new double[tileSize * tileSize] : null;
+                for (int t = firstTile; t < lastTile; t++) {
+                    int height = tileHeight(t / tileColumns);
+                    long offset = (long) t << (2 * tileShift);
+                    int length = height << tileShift;
+                    if (read) {
+                        storage.get(offset, x, 0, length);
+                    }
+                    if (other != null) {
+                        other.get(offset, y, 0, length);
+                    }
+                    procedure.apply(x, y, height, tileWidth(t % tileColumns));
+                    storage.set(offset, x, 0, length);
+                }
+            }
+        });
+    }
+
+    private boolean isSameLayout(DoubleMatrix2D other) {
+        return other instanceof MappedDoubleMatrix2D && ((MappedDoubleMatrix2D) other).tileSize == tileSize;
+    }
+
+    private int tileHeight(int tileRow) {
+        return Math.min(tileSize, rows - (tileRow << tileShift));
+    }
+
+    private int tileWidth(int tileColumn) {
+        return Math.min(tileSize, columns - (tileColumn << tileShift));
+    }
+
+    private long tileOffset(int tileRow, int tileColumn) {
+        return ((long) tileRow * tileColumns + tileColumn) << (2 * tileShift);
+    }
+
+    private long offset(int row, int column) {
+        return tileOffset(row >>> tileShift, column >>> tileShift) + ((row & tileMask) << tileShift)
+                + (column & tileMask);
+    }
+}
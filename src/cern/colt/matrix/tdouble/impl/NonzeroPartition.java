@@ -0,0 +1,326 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose 
+is hereby granted without fee, provided that the above copyright notice appear in all copies and 
+that both that copyright notice and this permission notice appear in supporting documentation. 
+CERN makes no representations about the suitability of this software for any purpose. 
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+
+/**
+ * Partition of a compressed sparse matrix into pieces of equal work for
+ * parallel matrix-vector products. The rows (or columns) of the compressed
+ * dimension and the nonzeros are merged into one sequence, and the sequence is
+ * cut into pieces of the same length (merge path). Each piece therefore holds
+ * about the same number of nonzeros, and a row that is too long for one piece
+ * is split among several pieces.
+ * <p>
+ * A partition only depends on the pointers of the matrix; it is computed once
+ * and cached by the matrix as long as its structure does not change. So is the
+ * buffer the pieces accumulate into when they cannot write to the result
+ * directly, which only covers the range of indexes each piece touches.
+ */
+final class NonzeroPartition {
+
+    private final int[] pointers;
+
+    private final int nnz;
+
+    private final long version;
+
+    /*
+     * Piece t starts at the major index starts[t] and at the nonzero
+     * offsets[t]; the last entries are n and nnz.
+     */
+    final int[] starts;
+
+    final int[] offsets;
+
+    /*
+     * The indexes piece t accumulates into lie in [low[t], high[t]) and are
+     * stored from position[t] on in the buffer. Computed by the first
+     * product that needs a buffer.
+     */
+    private static final class Ranges {
+        final boolean symmetric;
+
+        final int[] low;
+
+        final int[] high;
+
+        final int[] position;
+
+        Ranges(int parts, boolean symmetric) {
+            this.symmetric = symmetric;
+            low = new int[parts];
+            high = new int[parts];
+            position = new int[parts + 1];
+        }
+    }
+
+    private volatile Ranges ranges;
+
+    /*
+     * The buffer, taken by a product while it runs so that concurrent
+     * products on the same matrix never share it.
+     */
+    private final AtomicReference<double[]> spare = new AtomicReference<double[]>();
+
+    private NonzeroPartition(int[] pointers, int n, long version, int parts) {
+        this.pointers = pointers;
+        this.nnz = pointers[n];
+        this.version = version;
+        this.starts = new int[parts + 1];
+        this.offsets = new int[parts + 1];
+        long total = (long) n + nnz;
+        for (int t = 0; t <= parts; t++) {
+            int diagonal = (int) (total * t / parts);
+            int lo = Math.max(diagonal - nnz, 0);
+            int hi = Math.min(diagonal, n);
+            while (lo < hi) {
+                int pivot = (lo + hi) >>> 1;
+                if (pointers[pivot + 1] <= diagonal - pivot - 1) {
+                    lo = pivot + 1;
+                } else {
+                    hi = pivot;
+                }
+            }
+            starts[t] = lo;
+            offsets[t] = diagonal - lo;
+        }
+    }
+
+    /**
+     * Returns the cached partition if it is still valid for the given pointers
+     * and version stamp, or a new partition otherwise.
+     * 
+     * @param cached
+     *            the cached partition or <tt>null</tt>.
+     * @param pointers
+     *            the row (or column) pointers of the matrix.
+     * @param n
+     *            the number of rows (or columns).
+     * @param version
+     *            the version stamp of the matrix.
+     * @param parts
+     *            the number of pieces.
+     * @return a partition of the matrix.
+     */
+    static NonzeroPartition get(NonzeroPartition cached, int[] pointers, int n, long version, int parts) {
+        if (cached != null && cached.pointers == pointers && cached.nnz == pointers[n] && cached.version == version
+                && cached.starts.length == parts + 1) {
+            return cached;
+        }
+        return new NonzeroPartition(pointers, n, version, parts);
+    }
+
+    /**
+     * Returns the number of pieces.
+     */
+    int parts() {
+        return starts.length - 1;
+    }
+
+    /**
+     * Computes <tt>z = alpha * A * y + beta * z</tt>, where the compressed
+     * dimension of <tt>A</tt> indexes <tt>z</tt> (row-compressed storage
+     * multiplied from the right). Every piece computes the full rows that end in
+     * it and carries the partial sum of the row it ends in, which is added
+     * afterwards.
+     */
+    void gather(final int[] indexes, final double[] values, final double[] y, final int zeroY, final int strideY,
+            final double[] z, final int zeroZ, final int strideZ, final double alpha, final double beta) {
+        final int n = starts[starts.length - 1];
+        final double[] carry = new double[parts()];
+        ForkJoinUtils.invoke(0, parts(), 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstPart, int lastPart) {
+                for (int t = firstPart; t < lastPart; t++) {
+                    int k = offsets[t];
+                    int last = starts[t + 1];
+                    for (int i = starts[t]; i < last; i++) {
+                        double sum = 0;
+                        int high = pointers[i + 1];
+                        for (; k < high; k++) {
+                            sum += values[k] * y[zeroY + strideY * indexes[k]];
+                        }
+                        int idx = zeroZ + strideZ * i;
+                        z[idx] = beta == 0 ? alpha * sum : alpha * sum + beta * z[idx];
+                    }
+                    double sum = 0;
+                    for (int high = offsets[t + 1]; k < high; k++) {
+                        sum += values[k] * y[zeroY + strideY * indexes[k]];
+                    }
+                    carry[t] = sum;
+                }
+            }
+        });
+        for (int t = 0; t < carry.length; t++) {
+            if (starts[t + 1] < n) {
+                z[zeroZ + strideZ * starts[t + 1]] += alpha * carry[t];
+            }
+        }
+    }
+
+    /**
+     * Computes <tt>z = alpha * A * y + beta * z</tt>, where the compressed
+     * dimension of <tt>A</tt> indexes <tt>y</tt> (column-compressed storage
+     * multiplied from the right). Every piece accumulates its nonzeros into its
+     * range of the buffer, and the ranges are summed in parallel.
+     */
+    void scatter(final int[] indexes, final double[] values, final double[] y, final int zeroY, final int strideY,
+            final double[] z, final int zeroZ, final int strideZ, int size, final double alpha, final double beta) {
+        final int n = starts[starts.length - 1];
+        final Ranges r = getRanges(indexes, false);
+        final double[] buffer = takeBuffer(r);
+        ForkJoinUtils.invoke(0, parts(), 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstPart, int lastPart) {
+                for (int t = firstPart; t < lastPart; t++) {
+                    Arrays.fill(buffer, r.position[t], r.position[t + 1], 0);
+                    int position = r.position[t] - r.low[t];
+                    int first = offsets[t];
+                    int last = offsets[t + 1];
+                    for (int j = starts[t]; j < n && pointers[j] < last; j++) {
+                        double yElem = y[zeroY + strideY * j];
+                        int high = Math.min(pointers[j + 1], last);
+                        for (int k = Math.max(pointers[j], first); k < high; k++) {
+                            buffer[position + indexes[k]] += values[k] * yElem;
+                        }
+                    }
+                }
+            }
+        });
+        reduce(r, buffer, z, zeroZ, strideZ, size, alpha, beta);
+        spare.set(buffer);
+    }
+
+    /*
+     * Returns the ranges of the pieces, computing them on first use. For the
+     * symmetric product they include the rows of the nonzeros as well.
+     */
+    private Ranges getRanges(final int[] indexes, final boolean symmetric) {
+        Ranges r = ranges;
+        if (r == null || r.symmetric != symmetric) {
+            final int n = starts[starts.length - 1];
+            final Ranges s = new Ranges(parts(), symmetric);
+            ForkJoinUtils.invoke(0, parts(), 1, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int firstPart, int lastPart) {
+                    for (int t = firstPart; t < lastPart; t++) {
+                        int lo = Integer.MAX_VALUE;
+                        int hi = 0;
+                        int first = offsets[t];
+                        int last = offsets[t + 1];
+                        for (int i = starts[t]; i < n && pointers[i] < last; i++) {
+                            int high = Math.min(pointers[i + 1], last);
+                            int k = Math.max(pointers[i], first);
+                            if (symmetric && k < high) {
+                                lo = Math.min(lo, i);
+                                hi = Math.max(hi, i + 1);
+                            }
+                            for (; k < high; k++) {
+                                lo = Math.min(lo, indexes[k]);
+                                hi = Math.max(hi, indexes[k] + 1);
+                            }
+                        }
+                        s.low[t] = Math.min(lo, hi);
+                        s.high[t] = hi;
+                    }
+                }
+            });
+            for (int t = 0; t < parts(); t++) {
+                s.position[t + 1] = s.position[t] + s.high[t] - s.low[t];
+            }
+            ranges = r = s;
+        }
+        return r;
+    }
+
+    /*
+     * Takes the buffer, or allocates one if another product holds it. The
+     * pieces zero their ranges themselves.
+     */
+    private double[] takeBuffer(Ranges r) {
+        int size = r.position[parts()];
+        double[] buffer = spare.getAndSet(null);
+        if (buffer == null || buffer.length != size) {
+            return new double[size];
+        }
+        return buffer;
+    }
+
+    /*
+     * Sets z[i] = alpha * (the sum of the buffer entries of index i) + beta *
+     * z[i] for 0 <= i < size.
+     */
+    private void reduce(final Ranges r, final double[] buffer, final double[] z, final int zeroZ,
+            final int strideZ, int size, final double alpha, final double beta) {
+        final int parts = parts();
+        int grain = Math.max(1, ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN) / parts);
+        ForkJoinUtils.invoke(0, size, grain, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                for (int i = first; i < last; i++) {
+                    double sum = 0;
+                    for (int t = 0; t < parts; t++) {
+                        if (r.low[t] <= i && i < r.high[t]) {
+                            sum += buffer[r.position[t] + i - r.low[t]];
+                        }
+                    }
+                    int idx = zeroZ + strideZ * i;
+                    z[idx] = beta == 0 ? alpha * sum : alpha * sum + beta * z[idx];
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes <tt>z = alpha * A * y + beta * z</tt> for a symmetric matrix
+     * <tt>A</tt> of which only the upper triangle is stored in row-compressed
+     * form. Every stored entry contributes to its own row and, off the
+     * diagonal, to the row of its column. Every piece accumulates both into
+     * its range of the buffer, which spans the rows from the first row of the
+     * piece to the largest column index in it, and the ranges are summed in
+     * parallel.
+     */
+    void symmetric(final int[] indexes, final double[] values, final double[] y, final int zeroY,
+            final int strideY, final double[] z, final int zeroZ, final int strideZ, final double alpha,
+            final double beta) {
+        final int n = starts[starts.length - 1];
+        final Ranges r = getRanges(indexes, true);
+        final double[] buffer = takeBuffer(r);
+        ForkJoinUtils.invoke(0, parts(), 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstPart, int lastPart) {
+                for (int t = firstPart; t < lastPart; t++) {
+                    Arrays.fill(buffer, r.position[t], r.position[t + 1], 0);
+                    int position = r.position[t] - r.low[t];
+                    int first = offsets[t];
+                    int last = offsets[t + 1];
+                    for (int i = starts[t]; i < n && pointers[i] < last; i++) {
+                        int high = Math.min(pointers[i + 1], last);
+                        int k = Math.max(pointers[i], first);
+                        if (k == high) {
+                            continue;
+                        }
+                        double yElem = y[zeroY + strideY * i];
+                        double sum = 0;
+                        for (; k < high; k++) {
+                            int j = indexes[k];
+                            sum += values[k] * y[zeroY + strideY * j];
+                            if (j != i) {
+                                buffer[position + j] += values[k] * yElem;
+                            }
+                        }
+                        buffer[position + i] += sum;
+                    }
+                }
+            }
+        });
+        reduce(r, buffer, z, zeroZ, strideZ, n, alpha, beta);
+        spare.set(buffer);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.nio.DoubleBuffer;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.DoubleMatrix3D;
+
+/**
+ * Dense 1-d matrix (aka <i>vector</i>) holding <tt>double</tt> elements
+ * outside of the Java heap. First see the <a
+ * href="package-summary.html">package summary</a> and javadoc <a
+ * href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * Internally the elements are held in direct buffers, see
+ * {@link OffHeapDoubleMatrix2D}. The size of a 1-d matrix is an <tt>int</tt>,
+ * so a vector holds at most 2^31-1 elements; it is nevertheless useful as the
+ * row, column or result vector of a large off-heap matrix, since it does not
+ * occupy the heap either.
+ * <p>
+ * The memory is released by {@link #close()}, or by the garbage collector once
+ * the vector and all its views are no longer referenced. A closed vector must
+ * not be used any more, nor the buffers returned by {@link #elements()}, which
+ * share its memory. Note that this implementation is not synchronized.
+ * <p>
+ * <b>Time complexity:</b>
+ * <p>
+ * <tt>O(1)</tt> (i.e. constant time) for the basic operations <tt>get</tt>,
+ * <tt>getQuick</tt>, <tt>set</tt>, <tt>setQuick</tt> and <tt>size</tt>.
+ */
+public class OffHeapDoubleMatrix1D extends WrapperDoubleMatrix1D {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient OffHeapDoubleStorage storage;
+
+    /**
+     * Constructs a matrix with a given number of cells. All entries are
+     * initially <tt>0</tt>.
+     *
+     * @param size
+     *            the number of cells the matrix shall have.
+     * @throws IllegalArgumentException
+     *             if <tt>size<0</tt>.
+     */
+    public OffHeapDoubleMatrix1D(int size) {
+        super(null);
+        setUp(size);
+        storage = new OffHeapDoubleStorage(size);
+        content = this;
+    }
+
+    /**
+     * Constructs a matrix with a copy of the given values.
+     *
+     * @param values
+     *            The values to be filled into the new matrix.
+     */
+    public OffHeapDoubleMatrix1D(double[] values) {
+        this(values.length);
+        assign(values);
+    }
+
+    /**
+     * Releases the memory of this matrix. Calling this method more than once
+     * has no effect.
+     */
+    public void close() {
+        storage.close();
+    }
+
+    /**
+     * Returns true if this matrix has been closed.
+     *
+     * @return true if {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return storage.isClosed();
+    }
+
+    public DoubleMatrix1D assign(double value) {
+        markModified();
+        storage.assign(value, ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public DoubleMatrix1D assign(double[] values) {
+        markModified();
+        if (values.length != size)
+            throw new IllegalArgumentException("Must have same number of cells: length=" + values.length + "size()="
+                    + size());
+        storage.set(0, values, 0, values.length);
+        return this;
+    }
+
+    public DoubleMatrix1D assign(DoubleFunction function) {
+        markModified();
+        storage.assign(function, ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public DoubleMatrix1D assign(DoubleMatrix1D source) {
+        markModified();
+        if (!(source instanceof OffHeapDoubleMatrix1D)) {
+            return super.assign(source);
+        }
+        checkSize(source);
+        if (source != this) {
+            storage.assign(((OffHeapDoubleMatrix1D) source).storage, ConcurrencyTuning
+                    .getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN));
+        }
+        return this;
+    }
+
+    public DoubleMatrix1D assign(DoubleMatrix1D y, DoubleDoubleFunction function) {
+        markModified();
+        if (!(y instanceof OffHeapDoubleMatrix1D)) {
+            return super.assign(y, function);
+        }
+        checkSize(y);
+        storage.assign(((OffHeapDoubleMatrix1D) y).storage, function, ConcurrencyTuning
+                .getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public double aggregate(DoubleDoubleFunction aggr, DoubleFunction f) {
+        if (size == 0)
+            return Double.NaN;
+        return storage.aggregate(aggr, f, ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.AGGREGATE));
+    }
+
+    /**
+     * Returns the direct buffers holding the elements of this matrix; element
+     * <tt>i</tt> is element <tt>i % 2^27</tt> of buffer <tt>i / 2^27</tt>.
+     * The buffers are duplicates sharing the memory of this matrix; they must
+     * not be used after this matrix has been closed.
+     *
+     * @return the buffers of this matrix.
+     * @throws IllegalStateException
+     *             if this matrix has been closed.
+     */
+    public DoubleBuffer[] elements() {
+        return storage.duplicateBuffers();
+    }
+
+    public double getQuick(int index) {
+        return storage.get(index);
+    }
+
+    public DoubleMatrix1D like(int size) {
+        return new OffHeapDoubleMatrix1D(size);
+    }
+
+    public DoubleMatrix2D like2D(int rows, int columns) {
+        return new OffHeapDoubleMatrix2D(rows, columns);
+    }
+
+    DoubleMatrix3D like3D(int slices, int rows, int columns) {
+        return new OffHeapDoubleMatrix3D(slices, rows, columns);
+    }
+
+    public void setQuick(int index, double value) {
+        markModified();
+        storage.set(index, value);
+    }
+
+    public double[] toArray() {
+        double[] values = new double[size];
+        storage.get(0, values, 0, size);
+        return values;
+    }
+
+    protected DoubleMatrix1D getContent() {
+        return this;
+    }
+}
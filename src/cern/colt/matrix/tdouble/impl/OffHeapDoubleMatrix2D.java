@@ -0,0 +1,318 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.nio.DoubleBuffer;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Dense 2-d matrix holding <tt>double</tt> elements outside of the Java heap.
+ * First see the <a href="package-summary.html">package summary</a> and javadoc
+ * <a href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * This data structure allows to store more than 2^31 elements. Internally the
+ * elements are held in row major order in direct buffers of 2^27 elements
+ * each, addressed by a <tt>long</tt> index, so that neither the size of a Java
+ * array nor the size of the heap limits the matrix, and the garbage collector
+ * never scans or moves the elements.
+ * <p>
+ * The memory is released by {@link #close()}, or by the garbage collector once
+ * the matrix and all its views are no longer referenced. A closed matrix must
+ * not be used any more, nor the buffers returned by {@link #elements()}, which
+ * share its memory; the bulk operations throw an
+ * <tt>IllegalStateException</tt>, the unchecked <tt>getQuick</tt> and
+ * <tt>setQuick</tt> some other runtime exception. The matrix must not be closed
+ * while another thread still accesses it. Note that this implementation is not
+ * synchronized.
+ * <p>
+ * Elementwise operations, reductions and multiplications copy blocks of the
+ * matrix to the heap and process them in parallel, thus they run at nearly the
+ * speed of {@link DenseDoubleMatrix2D}. Views are supported but accessed
+ * element by element.
+ * <p>
+ * <b>Time complexity:</b>
+ * <p>
+ * <tt>O(1)</tt> (i.e. constant time) for the basic operations <tt>get</tt>,
+ * <tt>getQuick</tt>, <tt>set</tt>, <tt>setQuick</tt> and <tt>size</tt>.
+ */
+public class OffHeapDoubleMatrix2D extends WrapperDoubleMatrix2D {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Maximal number of elements of a block of rows copied to the heap by
+     * <tt>zMult</tt>.
+     */
+    private static final int BLOCK_ELEMENTS = 1 << 16;
+
+    private final transient OffHeapDoubleStorage storage;
+
+    /**
+     * Constructs a matrix with a given number of rows and columns. All entries
+     * are initially <tt>0</tt>.
+     *
+     * @param rows
+     *            the number of rows the matrix shall have.
+     * @param columns
+     *            the number of columns the matrix shall have.
+     * @throws IllegalArgumentException
+     *             if <tt>rows<0 || columns<0</tt>.
+     */
+    public OffHeapDoubleMatrix2D(int rows, int columns) {
+        super(null);
+        try {
+            setUp(rows, columns);
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        storage = new OffHeapDoubleStorage((long) rows * columns);
+        content = this;
+    }
+
+    /**
+     * Releases the memory of this matrix. Calling this method more than once
+     * has no effect.
+     */
+    public void close() {
+        storage.close();
+    }
+
+    /**
+     * Returns true if this matrix has been closed.
+     *
+     * @return true if {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return storage.isClosed();
+    }
+
+    public DoubleMatrix2D assign(double value) {
+        markModified();
+        storage.assign(value, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public DoubleMatrix2D assign(double[] values) {
+        markModified();
+        if (values.length != size())
+            throw new IllegalArgumentException("Must have same length: length=" + values.length + " rows()*columns()="
+                    + size());
+        storage.set(0, values, 0, values.length);
+        return this;
+    }
+
+    public DoubleMatrix2D assign(DoubleFunction function) {
+        markModified();
+        storage.assign(function, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
+        if (!(source instanceof OffHeapDoubleMatrix2D)) {
+            return super.assign(source);
+        }
+        checkShape(source);
+        if (source != this) {
+            storage.assign(((OffHeapDoubleMatrix2D) source).storage, ConcurrencyTuning
+                    .getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN));
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(DoubleMatrix2D y, DoubleDoubleFunction function) {
+        markModified();
+        if (!(y instanceof OffHeapDoubleMatrix2D)) {
+            return super.assign(y, function);
+        }
+        checkShape(y);
+        storage.assign(((OffHeapDoubleMatrix2D) y).storage, function, ConcurrencyTuning
+                .getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public double aggregate(DoubleDoubleFunction aggr, DoubleFunction f) {
+        if (size() == 0)
+            return Double.NaN;
+        return storage.aggregate(aggr, f, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.AGGREGATE));
+    }
+
+    /**
+     * Returns the direct buffers holding the elements of this matrix in row
+     * major order; element <tt>(row, column)</tt> is element <tt>i % 2^27</tt>
+     * of buffer <tt>i / 2^27</tt>, where <tt>i = row * columns() + column</tt>.
+     * The buffers are duplicates sharing the memory of this matrix; they must
+     * not be used after this matrix has been closed.
+     *
+     * @return the buffers of this matrix.
+     * @throws IllegalStateException
+     *             if this matrix has been closed.
+     */
+    public DoubleBuffer[] elements() {
+        return storage.duplicateBuffers();
+    }
+
+    public double getQuick(int row, int column) {
+        return storage.get((long) row * columns + column);
+    }
+
+    public DoubleMatrix2D like(int rows, int columns) {
+        return new OffHeapDoubleMatrix2D(rows, columns);
+    }
+
+    public DoubleMatrix1D like1D(int size) {
+        return new OffHeapDoubleMatrix1D(size);
+    }
+
+    public void setQuick(int row, int column, double value) {
+        markModified();
+        storage.set((long) row * columns + column, value);
+    }
+
+    public long size() {
+        return (long) rows * columns;
+    }
+
+    public DoubleMatrix1D zMult(final DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
+            final boolean transposeA) {
+        if (z != null)
+            z.markModified();
+        if (transposeA)
+            return super.zMult(y, z, alpha, beta, transposeA);
+        final DoubleMatrix1D zz;
+        if (z == null) {
+            zz = y.like(rows);
+        } else {
+            zz = z;
+        }
+        if (columns != y.size() || rows > zz.size())
+            throw new IllegalArgumentException("Incompatible args: " + toStringShort() + ", " + y.toStringShort()
+                    + ", " + zz.toStringShort());
+        if (rows == 0)
+            return zz;
+        final double[] yElements = y.toArray();
+        final int height = Math.max(1, Math.min(rows, BLOCK_ELEMENTS / Math.max(1, columns)));
+        int nblocks = (rows + height - 1) / height;
+        long flops = 2 * size();
+        int minBlocks = (isDense(zz) && flops >= ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT,
+                2 * DenseDoubleGemm.MIN_FLOPS_PER_TASK)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, nblocks, minBlocks, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                double[] a = new double[height * columns];
+                for (int b = firstBlock; b < lastBlock; b++) {
+                    int firstRow = b * height;
+                    int h = Math.min(height, rows - firstRow);
+                    storage.get((long) firstRow * columns, a, 0, h * columns);
+                    for (int r = 0; r < h; r++) {
+                        double s = DenseDoubleKernels.dot(a, r * columns, 1, yElements, 0, 1, columns);
+                        zz.setQuick(firstRow + r, alpha * s + beta * zz.getQuick(firstRow + r));
+                    }
+                }
+            }
+        });
+        return zz;
+    }
+
+    public DoubleMatrix2D zMult(final DoubleMatrix2D B, DoubleMatrix2D C, final double alpha, final double beta,
+            final boolean transposeA, final boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
+        final int k = columns;
+        final int n = transposeB ? B.rows() : B.columns();
+        if (transposeA || (long) k * n > Integer.MAX_VALUE)
+            return super.zMult(B, C, alpha, beta, transposeA, transposeB);
+        final DoubleMatrix2D CC;
+        if (C == null) {
+            CC = like(rows, n);
+        } else {
+            CC = C;
+        }
+        if ((transposeB ? B.columns() : B.rows()) != k)
+            throw new IllegalArgumentException("Matrix2D inner dimensions must agree:" + toStringShort() + ", "
+                    + (transposeB ? B.viewDice() : B).toStringShort());
+        if (CC.rows() != rows || CC.columns() != n)
+            throw new IllegalArgumentException("Incompatibe result matrix: " + toStringShort() + ", "
+                    + B.toStringShort() + ", " + CC.toStringShort());
+        if (this == CC || B == CC)
+            throw new IllegalArgumentException("Matrices must not be identical");
+        if (rows == 0 || n == 0)
+            return CC;
+
+        // op(B) is small enough to be multiplied from the heap, the rows of A
+        // and C are streamed through it block by block
+        final double[] b = (double[]) new DenseDoubleMatrix2D(k, n).assign(transposeB ? B.viewDice() : B).elements();
+        final OffHeapDoubleStorage cStorage = (CC instanceof OffHeapDoubleMatrix2D) ? ((OffHeapDoubleMatrix2D) CC).storage
+                : null;
+        final int height = Math.max(1, Math.min(rows, BLOCK_ELEMENTS / Math.max(1, Math.max(k, n))));
+        int nblocks = (rows + height - 1) / height;
+        long flops = 2L * rows * n * k;
+        int minBlocks = (isDense(CC) && flops >= ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT,
+                2 * DenseDoubleGemm.MIN_FLOPS_PER_TASK)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, nblocks, minBlocks, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                double[] a = new double[height * k];
+                double[] c = new double[height * n];
+                for (int blk = firstBlock; blk < lastBlock; blk++) {
+                    int firstRow = blk * height;
+                    int h = Math.min(height, rows - firstRow);
+                    storage.get((long) firstRow * k, a, 0, h * k);
+                    if (beta != 0) {
+                        if (cStorage != null) {
+                            cStorage.get((long) firstRow * n, c, 0, h * n);
+                        } else {
+                            for (int r = 0, idx = 0; r < h; r++) {
+                                for (int j = 0; j < n; j++) {
+                                    c[idx++] = CC.getQuick(firstRow + r, j);
+                                }
+                            }
+                        }
+                    }
+                    DenseDoubleGemm.gemm(h, n, k, alpha, a, 0, k, 1, b, 0, n, 1, beta, c, 0, n, 1);
+                    if (cStorage != null) {
+                        cStorage.set((long) firstRow * n, c, 0, h * n);
+                    } else {
+                        for (int r = 0, idx = 0; r < h; r++) {
+                            for (int j = 0; j < n; j++) {
+                                CC.setQuick(firstRow + r, j, c[idx++]);
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        return CC;
+    }
+
+    protected DoubleMatrix2D getContent() {
+        return this;
+    }
+
+    /**
+     * Returns whether distinct cells of the given result can be set from
+     * several threads at once; the other results are computed serially.
+     */
+    private static boolean isDense(DoubleMatrix1D z) {
+        return z instanceof DenseDoubleMatrix1D || z instanceof OffHeapDoubleMatrix1D;
+    }
+
+    private static boolean isDense(DoubleMatrix2D C) {
+        return C instanceof DenseDoubleMatrix2D || C instanceof DenseColumnDoubleMatrix2D
+                || C instanceof OffHeapDoubleMatrix2D;
+    }
+}
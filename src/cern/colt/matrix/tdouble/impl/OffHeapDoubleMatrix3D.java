@@ -0,0 +1,173 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.nio.DoubleBuffer;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.DoubleMatrix3D;
+
+/**
+ * Dense 3-d matrix holding <tt>double</tt> elements outside of the Java heap.
+ * First see the <a href="package-summary.html">package summary</a> and javadoc
+ * <a href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * This data structure allows to store more than 2^31 elements. Internally the
+ * elements are held in slice major, row major order in direct buffers, see
+ * {@link OffHeapDoubleMatrix2D}.
+ * <p>
+ * The memory is released by {@link #close()}, or by the garbage collector once
+ * the matrix and all its views are no longer referenced. A closed matrix must
+ * not be used any more, nor the buffers returned by {@link #elements()}, which
+ * share its memory. Note that this implementation is not synchronized.
+ * <p>
+ * <b>Time complexity:</b>
+ * <p>
+ * <tt>O(1)</tt> (i.e. constant time) for the basic operations <tt>get</tt>,
+ * <tt>getQuick</tt>, <tt>set</tt>, <tt>setQuick</tt> and <tt>size</tt>.
+ */
+public class OffHeapDoubleMatrix3D extends WrapperDoubleMatrix3D {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient OffHeapDoubleStorage storage;
+
+    /**
+     * Constructs a matrix with a given number of slices, rows and columns. All
+     * entries are initially <tt>0</tt>.
+     *
+     * @param slices
+     *            the number of slices the matrix shall have.
+     * @param rows
+     *            the number of rows the matrix shall have.
+     * @param columns
+     *            the number of columns the matrix shall have.
+     * @throws IllegalArgumentException
+     *             if <tt>slices<0 || rows<0 || columns<0</tt>.
+     */
+    public OffHeapDoubleMatrix3D(int slices, int rows, int columns) {
+        super(null);
+        try {
+            setUp(slices, rows, columns);
+        } catch (IllegalArgumentException exc) { // we can hold slices*rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        storage = new OffHeapDoubleStorage((long) slices * rows * columns);
+        content = this;
+    }
+
+    /**
+     * Releases the memory of this matrix. Calling this method more than once
+     * has no effect.
+     */
+    public void close() {
+        storage.close();
+    }
+
+    /**
+     * Returns true if this matrix has been closed.
+     *
+     * @return true if {@link #close()} has been called.
+     */
+    public boolean isClosed() {
+        return storage.isClosed();
+    }
+
+    public DoubleMatrix3D assign(double value) {
+        storage.assign(value, ConcurrencyTuning.getThreadsBeginN_3D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public DoubleMatrix3D assign(double[] values) {
+        if (values.length != size())
+            throw new IllegalArgumentException("Must have same length: length=" + values.length
+                    + "slices()*rows()*columns()=" + size());
+        storage.set(0, values, 0, values.length);
+        return this;
+    }
+
+    public DoubleMatrix3D assign(DoubleFunction function) {
+        storage.assign(function, ConcurrencyTuning.getThreadsBeginN_3D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public DoubleMatrix3D assign(DoubleMatrix3D source) {
+        if (!(source instanceof OffHeapDoubleMatrix3D)) {
+            return super.assign(source);
+        }
+        checkShape(source);
+        if (source != this) {
+            storage.assign(((OffHeapDoubleMatrix3D) source).storage, ConcurrencyTuning
+                    .getThreadsBeginN_3D(ConcurrencyTuning.ASSIGN));
+        }
+        return this;
+    }
+
+    public DoubleMatrix3D assign(DoubleMatrix3D y, DoubleDoubleFunction function) {
+        if (!(y instanceof OffHeapDoubleMatrix3D)) {
+            return super.assign(y, function);
+        }
+        checkShape(y);
+        storage.assign(((OffHeapDoubleMatrix3D) y).storage, function, ConcurrencyTuning
+                .getThreadsBeginN_3D(ConcurrencyTuning.ASSIGN));
+        return this;
+    }
+
+    public double aggregate(DoubleDoubleFunction aggr, DoubleFunction f) {
+        if (size() == 0)
+            return Double.NaN;
+        return storage.aggregate(aggr, f, ConcurrencyTuning.getThreadsBeginN_3D(ConcurrencyTuning.AGGREGATE));
+    }
+
+    /**
+     * Returns the direct buffers holding the elements of this matrix; element
+     * <tt>(slice, row, column)</tt> is element <tt>i % 2^27</tt> of buffer
+     * <tt>i / 2^27</tt>, where
+     * <tt>i = (slice * rows() + row) * columns() + column</tt>.
+     * The buffers are duplicates sharing the memory of this matrix; they must
+     * not be used after this matrix has been closed.
+     *
+     * @return the buffers of this matrix.
+     * @throws IllegalStateException
+     *             if this matrix has been closed.
+     */
+    public DoubleBuffer[] elements() {
+        return storage.duplicateBuffers();
+    }
+
+    public double getQuick(int slice, int row, int column) {
+        return storage.get(((long) slice * rows + row) * columns + column);
+    }
+
+    public DoubleMatrix3D like(int slices, int rows, int columns) {
+        return new OffHeapDoubleMatrix3D(slices, rows, columns);
+    }
+
+    public DoubleMatrix2D like2D(int rows, int columns) {
+        return new OffHeapDoubleMatrix2D(rows, columns);
+    }
+
+    public void setQuick(int slice, int row, int column, double value) {
+        storage.set(((long) slice * rows + row) * columns + column, value);
+    }
+
+    public long size() {
+        return (long) slices * rows * columns;
+    }
+
+    protected DoubleMatrix3D getContent() {
+        return this;
+    }
+}
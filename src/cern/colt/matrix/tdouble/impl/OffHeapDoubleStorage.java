@@ -0,0 +1,433 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
+
+/**
+ * Off-heap storage of <tt>double</tt> values addressed by a <tt>long</tt>
+ * index. The values live in direct buffers of at most 2^27 elements (1 GiB)
+ * each, either allocated or mapping a file (see
+ * {@link #map(FileChannel, long, long, boolean)}), so the storage is neither
+ * limited by the size of a Java array nor scanned or moved by the garbage
+ * collector.
+ * <p>
+ * The memory is released by {@link #close()}, or by the garbage collector once
+ * the storage is no longer referenced. Bulk operations on a closed storage
+ * throw an <tt>IllegalStateException</tt>; the storage must not be closed while
+ * another thread still accesses it, and the buffers returned by
+ * {@link #duplicateBuffers()} must not be used after it has been closed.
+ * <p>
+ * The elementwise operations process the storage in blocks that are copied to
+ * and from small heap arrays, so that the kernels of
+ * {@link DenseDoubleKernels} can be used, and spread the blocks over the
+ * threads of {@link ForkJoinUtils}.
+ */
+final class OffHeapDoubleStorage {
+
+    /**
+     * Base 2 logarithm of the maximal number of elements of one buffer.
+     */
+    static final int CHUNK_SHIFT = 27;
+
+    /**
+     * Number of elements copied to the heap by one bulk transfer.
+     */
+    static final int BLOCK = 1 << 12;
+
+    private final long size;
+
+    private final int chunkShift;
+
+    private final long chunkMask;
+
+    private final int blockLength;
+
+    private DoubleBuffer[] chunks;
+
+    private ByteBuffer[] buffers;
+
+    private volatile boolean closed;
+
+    /**
+     * Allocates a zero-filled storage of the given size.
+     */
+    OffHeapDoubleStorage(long size) {
+        this(size, CHUNK_SHIFT);
+    }
+
+    /**
+     * Allocates a zero-filled storage of the given size split into buffers of
+     * <tt>2^chunkShift</tt> elements.
+     */
+    OffHeapDoubleStorage(long size, int chunkShift) {
+        this(size, chunkShift, true);
+    }
+
+    private OffHeapDoubleStorage(long size, int chunkShift, boolean allocate) {
+        if (size < 0) {
+            throw new IllegalArgumentException("negative size");
+        }
+        this.size = size;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1L << chunkShift) - 1;
+        this.blockLength = (int) Math.max(BLOCK, (size + Integer.MAX_VALUE - 1) / Integer.MAX_VALUE);
+        int nchunks = (int) ((size + chunkMask) >>> chunkShift);
+        chunks = new DoubleBuffer[nchunks];
+        buffers = new ByteBuffer[nchunks];
+        if (allocate) {
+            try {
+                for (int i = 0; i < nchunks; i++) {
+                    buffers[i] = ByteBuffer.allocateDirect(8 * chunkLength(i)).order(ByteOrder.nativeOrder());
+                    chunks[i] = buffers[i].asDoubleBuffer();
+                }
+            } catch (OutOfMemoryError e) {
+                close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Maps <tt>size</tt> little endian values of a file, starting at the byte
+     * <tt>position</tt>, into memory. The file must be long enough; changes of
+     * the storage are written back to the file by the operating system, or
+     * explicitly by {@link #force()}.
+     */
+    static OffHeapDoubleStorage map(FileChannel channel, long position, long size, boolean readOnly)
+            throws IOException {
+        OffHeapDoubleStorage storage = new OffHeapDoubleStorage(size, CHUNK_SHIFT, false);
+        FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+        try {
+            for (int i = 0; i < storage.chunks.length; i++) {
+                storage.buffers[i] = channel.map(mode, position + 8 * ((long) i << CHUNK_SHIFT),
+                        8L * storage.chunkLength(i)).order(ByteOrder.LITTLE_ENDIAN);
+                storage.chunks[i] = storage.buffers[i].asDoubleBuffer();
+            }
+        } catch (IOException e) {
+            storage.close();
+            throw e;
+        }
+        return storage;
+    }
+
+    private int chunkLength(int chunk) {
+        return (int) Math.min(1L << chunkShift, size - ((long) chunk << chunkShift));
+    }
+
+    /**
+     * Returns the number of elements.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Returns the element at the given index. No check is done whether the
+     * storage has been closed.
+     */
+    double get(long index) {
+        return chunks[(int) (index >>> chunkShift)].get((int) (index & chunkMask));
+    }
+
+    /**
+     * Sets the element at the given index. No check is done whether the
+     * storage has been closed.
+     */
+    void set(long index, double value) {
+        chunks[(int) (index >>> chunkShift)].put((int) (index & chunkMask), value);
+    }
+
+    /**
+     * Copies <tt>length</tt> elements starting at <tt>index</tt> to
+     * <tt>dst[offset], ..., dst[offset + length - 1]</tt>.
+     */
+    void get(long index, double[] dst, int offset, int length) {
+        DoubleBuffer[] chunks = buffers();
+        while (length > 0) {
+            DoubleBuffer chunk = chunks[(int) (index >>> chunkShift)].duplicate();
+            int position = (int) (index & chunkMask);
+            int n = Math.min(length, chunk.capacity() - position);
+            chunk.position(position);
+            chunk.get(dst, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Copies <tt>src[offset], ..., src[offset + length - 1]</tt> to the
+     * <tt>length</tt> elements starting at <tt>index</tt>.
+     */
+    void set(long index, double[] src, int offset, int length) {
+        DoubleBuffer[] chunks = buffers();
+        while (length > 0) {
+            DoubleBuffer chunk = chunks[(int) (index >>> chunkShift)].duplicate();
+            int position = (int) (index & chunkMask);
+            int n = Math.min(length, chunk.capacity() - position);
+            chunk.position(position);
+            chunk.put(src, offset, n);
+            index += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Returns the direct buffers holding the elements; element <tt>i</tt> is
+     * element <tt>i % 2^27</tt> of buffer <tt>i / 2^27</tt>.
+     */
+    DoubleBuffer[] buffers() {
+        DoubleBuffer[] chunks = this.chunks;
+        if (closed || chunks == null) {
+            throw new IllegalStateException("storage has been closed");
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns duplicates of the buffers returned by {@link #buffers()}, which
+     * share the memory of this storage but not the position and limit of its
+     * own buffers.
+     */
+    DoubleBuffer[] duplicateBuffers() {
+        DoubleBuffer[] chunks = buffers();
+        DoubleBuffer[] duplicates = new DoubleBuffer[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            duplicates[i] = chunks[i].duplicate();
+        }
+        return duplicates;
+    }
+
+    /**
+     * Writes the changes of a mapped storage back to its file.
+     */
+    void force() {
+        buffers();
+        ByteBuffer[] buffers = this.buffers;
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] instanceof MappedByteBuffer) {
+                ((MappedByteBuffer) buffers[i]).force();
+            }
+        }
+    }
+
+    /**
+     * Returns true if {@link #close()} has been called.
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Releases the memory of this storage. Calling this method more than once
+     * has no effect.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ByteBuffer[] buffers = this.buffers;
+        this.chunks = null;
+        this.buffers = null;
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null) {
+                free(buffers[i]);
+            }
+        }
+    }
+
+    /**
+     * <tt>x[i] = value</tt> for all elements.
+     */
+    void assign(final double value, int threadsBeginN) {
+        buffers();
+        forEachBlock(ConcurrencyTuning.ASSIGN, threadsBeginN, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                double[] x = new double[blockLength];
+                Arrays.fill(x, value);
+                for (int b = firstBlock; b < lastBlock; b++) {
+                    long index = (long) b * blockLength;
+                    set(index, x, 0, (int) Math.min(blockLength, size - index));
+                }
+            }
+        });
+    }
+
+    /**
+     * <tt>x[i] = y[i]</tt> for all elements; <tt>y</tt> must have the same
+     * size.
+     */
+    void assign(final OffHeapDoubleStorage y, int threadsBeginN) {
+        buffers();
+        y.buffers();
+        forEachBlock(ConcurrencyTuning.ASSIGN, threadsBeginN, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                double[] x = new double[blockLength];
+                for (int b = firstBlock; b < lastBlock; b++) {
+                    long index = (long) b * blockLength;
+                    int n = (int) Math.min(blockLength, size - index);
+                    y.get(index, x, 0, n);
+                    set(index, x, 0, n);
+                }
+            }
+        });
+    }
+
+    /**
+     * <tt>x[i] = f(x[i])</tt> for all elements.
+     */
+    void assign(final DoubleFunction f, int threadsBeginN) {
+        buffers();
+        final boolean kernel = DenseDoubleKernels.isSupported(f);
+        forEachBlock(ConcurrencyTuning.ASSIGN, threadsBeginN, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                double[] x = new double[blockLength];
+                for (int b = firstBlock; b < lastBlock; b++) {
+                    long index = (long) b * blockLength;
+                    int n = (int) Math.min(blockLength, size - index);
+                    get(index, x, 0, n);
+                    if (kernel) {
+                        DenseDoubleKernels.assign(x, 0, 1, n, f);
+                    } else {
+                        for (int i = 0; i < n; i++) {
+                            x[i] = f.apply(x[i]);
+                        }
+                    }
+                    set(index, x, 0, n);
+                }
+            }
+        });
+    }
+
+    /**
+     * <tt>x[i] = f(x[i], y[i])</tt> for all elements; <tt>y</tt> must have
+     * the same size.
+     */
+    void assign(final OffHeapDoubleStorage y, final DoubleDoubleFunction f, int threadsBeginN) {
+        buffers();
+        y.buffers();
+        final boolean kernel = DenseDoubleKernels.isSupported(f);
+        forEachBlock(ConcurrencyTuning.ASSIGN, threadsBeginN, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                double[] x = new double[blockLength];
+                double[] z = new double[blockLength];
+                for (int b = firstBlock; b < lastBlock; b++) {
+                    long index = (long) b * blockLength;
+                    int n = (int) Math.min(blockLength, size - index);
+                    get(index, x, 0, n);
+                    y.get(index, z, 0, n);
+                    if (kernel) {
+                        DenseDoubleKernels.assign(x, 0, 1, z, 0, 1, n, f);
+                    } else {
+                        for (int i = 0; i < n; i++) {
+                            x[i] = f.apply(x[i], z[i]);
+                        }
+                    }
+                    set(index, x, 0, n);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns <tt>aggr(f(x[0]), aggr(f(x[1]), ...))</tt> over all elements;
+     * the storage must not be empty.
+     */
+    double aggregate(final DoubleDoubleFunction aggr, final DoubleFunction f, int threadsBeginN) {
+        buffers();
+        final boolean kernel = DenseDoubleKernels.isSupported(aggr, f);
+        ForkJoinUtils.DoubleRangeFunction blocks = new ForkJoinUtils.DoubleRangeFunction() {
+            public double apply(int firstBlock, int lastBlock) {
+                double[] x = new double[blockLength];
+                double a = 0;
+                for (int b = firstBlock; b < lastBlock; b++) {
+                    long index = (long) b * blockLength;
+                    int n = (int) Math.min(blockLength, size - index);
+                    get(index, x, 0, n);
+                    double partial;
+                    if (kernel) {
+                        partial = DenseDoubleKernels.aggregate(x, 0, 1, n, aggr, f);
+                    } else {
+                        partial = f.apply(x[0]);
+                        for (int i = 1; i < n; i++) {
+                            partial = aggr.apply(partial, f.apply(x[i]));
+                        }
+                    }
+                    a = (b == firstBlock) ? partial : aggr.apply(a, partial);
+                }
+                return a;
+            }
+        };
+        return ForkJoinUtils.invoke(0, blockCount(), minBlocks(ConcurrencyTuning.AGGREGATE, threadsBeginN),
+                blocks, aggr);
+    }
+
+    private int blockCount() {
+        return (int) ((size + blockLength - 1) / blockLength);
+    }
+
+    /**
+     * Returns the minimal number of blocks per task, or
+     * <tt>Integer.MAX_VALUE</tt> if the storage is smaller than the threshold.
+     */
+    private int minBlocks(String kernel, int threadsBeginN) {
+        if (size < threadsBeginN) {
+            return Integer.MAX_VALUE;
+        }
+        return Math.max(1, ConcurrencyTuning.getGrain(kernel, blockLength) / blockLength);
+    }
+
+    private void forEachBlock(String kernel, int threadsBeginN, ForkJoinUtils.RangeProcedure procedure) {
+        ForkJoinUtils.invoke(0, blockCount(), minBlocks(kernel, threadsBeginN), procedure);
+    }
+
+    /**
+     * Releases the memory of a direct buffer without waiting for the garbage
+     * collector, if the running virtual machine allows it.
+     */
+    private static void free(ByteBuffer buffer) {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (Exception e) {
+        }
+        try {
+            // Java 5 to 8
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // the memory is released by the garbage collector
+        }
+    }
+}
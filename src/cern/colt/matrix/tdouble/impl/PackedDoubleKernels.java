@@ -0,0 +1,382 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Arrays;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * Kernels on a triangle of an <tt>n x n</tt> matrix packed row by row into a
+ * <tt>double</tt> array, the storage of {@link PackedSymmetricDoubleMatrix2D}
+ * and {@link PackedTriangularDoubleMatrix2D}. Row <tt>i</tt> of the lower
+ * triangle holds the columns <tt>0, ..., i</tt>, row <tt>i</tt> of the upper
+ * triangle the columns <tt>i, ..., n - 1</tt>; each row is contiguous.
+ * <p>
+ * All kernels read the packed array along its rows: a product with the
+ * transpose scatters a packed row into the result instead of gathering a
+ * strided column, and the triangular solves pick the row or the column
+ * oriented variant of the substitution accordingly. Matrix-matrix products
+ * unpack blocks of rows and multiply them with {@link DenseDoubleGemm},
+ * skipping the columns of a block that are zero.
+ */
+class PackedDoubleKernels {
+
+    /**
+     * Number of elements of a block of unpacked rows.
+     */
+    static final int BLOCK_ELEMENTS = 1 << 16;
+
+    /**
+     * Number of right-hand sides solved together.
+     */
+    static final int SOLVE_BLOCK = 32;
+
+    private PackedDoubleKernels() {
+    }
+
+    /**
+     * The rows <tt>firstRow, ..., lastRow - 1</tt> of an operand, restricted to
+     * the columns <tt>firstColumn(..), ..., lastColumn(..) - 1</tt> outside of
+     * which they are zero.
+     */
+    abstract static class Rows {
+        abstract int firstColumn(int firstRow, int lastRow);
+
+        abstract int lastColumn(int firstRow, int lastRow);
+
+        /**
+         * Unpacks the rows into <tt>a</tt>, row major with one row of
+         * <tt>lastColumn - firstColumn</tt> elements per row.
+         */
+        abstract void get(int firstRow, int lastRow, int firstColumn, int lastColumn, double[] a);
+    }
+
+    /**
+     * Returns the number of elements of a packed triangle of order <tt>n</tt>,
+     * or throws an exception if it does not fit into an array.
+     */
+    static int length(int n) {
+        long length = (long) n * (n + 1) / 2;
+        if (n < 0 || length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("matrix too large");
+        return (int) length;
+    }
+
+    /**
+     * Returns the position of the first stored element of row <tt>i</tt>.
+     */
+    static int rowOffset(int n, boolean upper, int i) {
+        if (upper) {
+            return (int) ((long) i * n - (long) i * (i - 1) / 2);
+        } else {
+            return (int) ((long) i * (i + 1) / 2);
+        }
+    }
+
+    /**
+     * Copies the elements <tt>(r, j)</tt> of the triangle (or of its
+     * transpose) with <tt>firstRow <= r < lastRow</tt> and
+     * <tt>firstColumn <= j < lastColumn</tt> to
+     * <tt>a[(r - firstRow) * (lastColumn - firstColumn) + j - firstColumn]</tt>;
+     * the zero elements are not written.
+     */
+    static void getRows(int n, double[] p, boolean upper, boolean transpose, int firstRow, int lastRow,
+            int firstColumn, int lastColumn, double[] a) {
+        int width = lastColumn - firstColumn;
+        if (upper == transpose) {
+            // row r holds the columns 0, ..., r
+            if (!transpose) {
+                for (int r = firstRow; r < lastRow; r++) {
+                    int to = Math.min(r + 1, lastColumn);
+                    if (to > firstColumn) {
+                        System.arraycopy(p, rowOffset(n, false, r) + firstColumn, a, (r - firstRow) * width, to
+                                - firstColumn);
+                    }
+                }
+            } else {
+                // element (r, j) is element (j, r) of the upper triangle
+                for (int j = firstColumn, to = Math.min(lastColumn, lastRow); j < to; j++) {
+                    int from = Math.max(firstRow, j);
+                    for (int idx = rowOffset(n, true, j) + from - j, r = from; r < lastRow; r++) {
+                        a[(r - firstRow) * width + j - firstColumn] = p[idx++];
+                    }
+                }
+            }
+        } else {
+            // row r holds the columns r, ..., n - 1
+            if (!transpose) {
+                for (int r = firstRow; r < lastRow; r++) {
+                    int from = Math.max(r, firstColumn);
+                    if (lastColumn > from) {
+                        System.arraycopy(p, rowOffset(n, true, r) + from - r, a, (r - firstRow) * width + from
+                                - firstColumn, lastColumn - from);
+                    }
+                }
+            } else {
+                // element (r, j) is element (j, r) of the lower triangle
+                for (int j = Math.max(firstColumn, firstRow); j < lastColumn; j++) {
+                    int to = Math.min(lastRow, j + 1);
+                    for (int idx = rowOffset(n, false, j) + firstRow, r = firstRow; r < to; r++) {
+                        a[(r - firstRow) * width + j - firstColumn] = p[idx++];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes <tt>z = T*x</tt> (if <tt>direct</tt>) plus <tt>T'*x</tt> (if
+     * <tt>scatter</tt>, without the diagonal unless
+     * <tt>scatterDiagonal</tt>), where <tt>T</tt> is the packed triangle.
+     * <tt>z</tt> must be zero on entry.
+     */
+    static void mult(final int n, final double[] p, final boolean upper, final boolean direct,
+            final boolean scatter, final boolean scatterDiagonal, final double[] x, final double[] z) {
+        long flops = 2L * p.length * ((direct && scatter) ? 2 : 1);
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        int parts = 1;
+        if (nthreads > 1
+                && flops >= ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT,
+                        2 * DenseDoubleGemm.MIN_FLOPS_PER_TASK)) {
+            parts = Math.min(n, 4 * nthreads);
+        }
+        final int[] bounds = split(n, upper, parts);
+        if (!scatter) {
+            // the rows of the parts are disjoint
+            ForkJoinUtils.invoke(0, parts, 1, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int from, int to) {
+                    for (int i = bounds[from]; i < bounds[to]; i++) {
+                        int first = upper ? i : 0;
+                        z[i] = DenseDoubleKernels.dot(p, rowOffset(n, upper, i), 1, x, first, 1, upper ? n - i
+                                : i + 1);
+                    }
+                }
+            });
+            return;
+        }
+        final double[][] partial = new double[parts][];
+        ForkJoinUtils.invoke(0, parts, 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int from, int to) {
+                for (int q = from; q < to; q++) {
+                    double[] acc = (q == 0) ? z : new double[n];
+                    for (int i = bounds[q]; i < bounds[q + 1]; i++) {
+                        int first = upper ? i : 0;
+                        int length = upper ? n - i : i + 1;
+                        int idx = rowOffset(n, upper, i);
+                        if (direct) {
+                            acc[i] += DenseDoubleKernels.dot(p, idx, 1, x, first, 1, length);
+                        }
+                        double xi = x[i];
+                        if (xi != 0) {
+                            for (int j = first, last = first + length; j < last; j++, idx++) {
+                                if (j != i || scatterDiagonal) {
+                                    acc[j] += p[idx] * xi;
+                                }
+                            }
+                        }
+                    }
+                    partial[q] = acc;
+                }
+            }
+        });
+        for (int q = 1; q < parts; q++) {
+            double[] acc = partial[q];
+            for (int j = 0; j < n; j++) {
+                z[j] += acc[j];
+            }
+        }
+    }
+
+    /**
+     * Computes <tt>C = alpha*A*op(B) + beta*C</tt> where <tt>A</tt> is the
+     * <tt>n x n</tt> matrix given by its rows.
+     */
+    static DoubleMatrix2D zMult(final Rows A, final int n, DoubleMatrix2D B, DoubleMatrix2D C, final double alpha,
+            final double beta, boolean transposeB, DoubleMatrix2D self) {
+        final int columns = transposeB ? B.rows() : B.columns();
+        if ((transposeB ? B.columns() : B.rows()) != n)
+            throw new IllegalArgumentException("Matrix2D inner dimensions must agree:" + self.toStringShort() + ", "
+                    + (transposeB ? B.viewDice() : B).toStringShort());
+        if (C == null) {
+            C = new DenseDoubleMatrix2D(n, columns);
+        }
+        if (C.rows() != n || C.columns() != columns)
+            throw new IllegalArgumentException("Incompatibe result matrix: " + self.toStringShort() + ", "
+                    + B.toStringShort() + ", " + C.toStringShort());
+        if (self == C || B == C)
+            throw new IllegalArgumentException("Matrices must not be identical");
+        if (n == 0 || columns == 0)
+            return C;
+
+        // op(B) and C are addressed in place if they are dense
+        DoubleMatrix2D BB = isDense(B) ? B : new DenseDoubleMatrix2D(B.rows(), B.columns()).assign(B);
+        final double[] b = (double[]) BB.elements();
+        final int bZero = (int) BB.index(0, 0);
+        final int bRowStride = transposeB ? BB.columnStride() : BB.rowStride();
+        final int bColumnStride = transposeB ? BB.rowStride() : BB.columnStride();
+        final DoubleMatrix2D CC;
+        if (isDense(C)) {
+            CC = C;
+        } else {
+            CC = new DenseDoubleMatrix2D(n, columns);
+            if (beta != 0)
+                CC.assign(C);
+        }
+        final double[] c = (double[]) CC.elements();
+        final int cZero = (int) CC.index(0, 0);
+        final int cRowStride = CC.rowStride();
+        final int cColumnStride = CC.columnStride();
+
+        final int height = Math.max(1, Math.min(n, BLOCK_ELEMENTS / n));
+        int blocks = (n + height - 1) / height;
+        long flops = 2L * n * n * columns;
+        int minBlocks = (flops >= ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT,
+                2 * DenseDoubleGemm.MIN_FLOPS_PER_TASK)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, blocks, minBlocks, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                double[] a = new double[height * n];
+                for (int t = firstBlock; t < lastBlock; t++) {
+                    int firstRow = t * height;
+                    int lastRow = Math.min(n, firstRow + height);
+                    int firstColumn = A.firstColumn(firstRow, lastRow);
+                    int lastColumn = A.lastColumn(firstRow, lastRow);
+                    int depth = lastColumn - firstColumn;
+                    Arrays.fill(a, 0, (lastRow - firstRow) * depth, 0);
+                    A.get(firstRow, lastRow, firstColumn, lastColumn, a);
+                    DenseDoubleGemm.gemm(lastRow - firstRow, columns, depth, alpha, a, 0, depth, 1, b, bZero
+                            + firstColumn * bRowStride, bRowStride, bColumnStride, beta, c, cZero + firstRow
+                            * cRowStride, cRowStride, cColumnStride);
+                }
+            }
+        });
+        if (CC != C)
+            C.assign(CC);
+        return C;
+    }
+
+    /**
+     * Solves <tt>op(T)*X = B</tt> for the packed triangle <tt>T</tt>,
+     * overwriting <tt>B</tt> with <tt>X</tt>.
+     */
+    static void solve(final int n, final double[] p, final boolean upper, final boolean transpose,
+            final boolean unit, final DoubleMatrix2D B) {
+        final int columns = B.columns();
+        int blocks = (columns + SOLVE_BLOCK - 1) / SOLVE_BLOCK;
+        long flops = (long) n * n * columns;
+        int minBlocks = (flops >= ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT,
+                2 * DenseDoubleGemm.MIN_FLOPS_PER_TASK)) ? 1 : Integer.MAX_VALUE;
+        ForkJoinUtils.invoke(0, blocks, minBlocks, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstBlock, int lastBlock) {
+                double[] x = new double[n * SOLVE_BLOCK];
+                for (int t = firstBlock; t < lastBlock; t++) {
+                    int firstColumn = t * SOLVE_BLOCK;
+                    int w = Math.min(SOLVE_BLOCK, columns - firstColumn);
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < w; j++) {
+                            x[i * w + j] = B.getQuick(i, firstColumn + j);
+                        }
+                    }
+                    solve(n, p, upper, transpose, unit, x, w);
+                    for (int i = 0; i < n; i++) {
+                        for (int j = 0; j < w; j++) {
+                            B.setQuick(i, firstColumn + j, x[i * w + j]);
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Solves <tt>op(T)*X = B</tt> for the <tt>n x w</tt> matrix <tt>x</tt> in
+     * row major order.
+     */
+    private static void solve(int n, double[] p, boolean upper, boolean transpose, boolean unit, double[] x, int w) {
+        if (!upper && !transpose) {
+            for (int i = 0; i < n; i++) {
+                int o = rowOffset(n, false, i);
+                for (int j = 0; j < i; j++) {
+                    axpy(-p[o + j], x, j * w, i * w, w);
+                }
+                if (!unit)
+                    scale(1 / p[o + i], x, i * w, w);
+            }
+        } else if (upper && transpose) {
+            for (int j = 0; j < n; j++) {
+                int o = rowOffset(n, true, j);
+                if (!unit)
+                    scale(1 / p[o], x, j * w, w);
+                for (int i = j + 1; i < n; i++) {
+                    axpy(-p[o + i - j], x, j * w, i * w, w);
+                }
+            }
+        } else if (upper) {
+            for (int i = n; --i >= 0;) {
+                int o = rowOffset(n, true, i);
+                for (int j = i + 1; j < n; j++) {
+                    axpy(-p[o + j - i], x, j * w, i * w, w);
+                }
+                if (!unit)
+                    scale(1 / p[o], x, i * w, w);
+            }
+        } else {
+            for (int j = n; --j >= 0;) {
+                int o = rowOffset(n, false, j);
+                if (!unit)
+                    scale(1 / p[o + j], x, j * w, w);
+                for (int i = 0; i < j; i++) {
+                    axpy(-p[o + i], x, j * w, i * w, w);
+                }
+            }
+        }
+    }
+
+    private static void axpy(double alpha, double[] x, int from, int to, int w) {
+        if (alpha != 0) {
+            for (int k = 0; k < w; k++) {
+                x[to + k] += alpha * x[from + k];
+            }
+        }
+    }
+
+    private static void scale(double alpha, double[] x, int idx, int w) {
+        for (int k = idx + w; --k >= idx;) {
+            x[k] *= alpha;
+        }
+    }
+
+    /**
+     * Splits the rows into parts holding about the same number of stored
+     * elements; part <tt>q</tt> is <tt>bounds[q], ..., bounds[q + 1] - 1</tt>.
+     */
+    private static int[] split(int n, boolean upper, int parts) {
+        int[] bounds = new int[parts + 1];
+        long total = (long) n * (n + 1) / 2;
+        long count = 0;
+        int q = 1;
+        for (int i = 0; i < n && q < parts; i++) {
+            count += upper ? n - i : i + 1;
+            if (count * parts >= total * q) {
+                bounds[q++] = i + 1;
+            }
+        }
+        while (q <= parts) {
+            bounds[q++] = n;
+        }
+        return bounds;
+    }
+
+    private static boolean isDense(DoubleMatrix2D A) {
+        return (A instanceof DenseDoubleMatrix2D || A instanceof DenseColumnDoubleMatrix2D) && A.elements() != null;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Arrays;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Symmetric 2-d matrix holding <tt>double</tt> elements in packed storage.
+ * First see the <a href="package-summary.html">package summary</a> and javadoc
+ * <a href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * Only the lower triangle is stored, row by row: cell <tt>(i,j)</tt> with
+ * <tt>i >= j</tt> is held at <tt>elements[i*(i+1)/2 + j]</tt>, cell
+ * <tt>(j,i)</tt> refers to the same element. Setting a cell therefore also
+ * sets its mirror cell. This halves the memory and the memory traffic of
+ * covariance, Gram and other symmetric matrices.
+ * <p>
+ * <tt>zMult</tt> reads every stored element once: a matrix-vector product
+ * multiplies each packed row with <tt>y</tt> and scatters it, as a column of
+ * the upper triangle, into the result. A matrix-matrix product unpacks blocks
+ * of rows and multiplies them with the blocked kernel of
+ * {@link DenseDoubleMatrix2D}. Both run concurrently for large matrices.
+ * <p>
+ * <b>Memory requirements:</b>
+ * <p>
+ * <tt>memory [bytes] = 8*n*(n+1)/2</tt>. Thus, a 1000*1000 matrix uses 4 MB.
+ *
+ * @see cern.colt.matrix.tdouble.algo.DoubleStatistic#covariancePacked(DoubleMatrix2D)
+ */
+public class PackedSymmetricDoubleMatrix2D extends WrapperDoubleMatrix2D {
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * The lower triangle, packed row by row.
+     */
+    protected double[] elements;
+
+    /**
+     * Constructs a matrix with a copy of the given values. <tt>values</tt> is
+     * required to have the form <tt>values[row][column]</tt> and have exactly
+     * the same number of columns in every row. Only the values on and below
+     * the main diagonal are used.
+     *
+     * @param values
+     *            The values to be filled into the new matrix.
+     * @throws IllegalArgumentException
+     *             if the matrix is not square.
+     */
+    public PackedSymmetricDoubleMatrix2D(double[][] values) {
+        this(values.length);
+        assign(values);
+    }
+
+    /**
+     * Constructs an <tt>n x n</tt> matrix. All entries are initially
+     * <tt>0</tt>.
+     *
+     * @param n
+     *            the number of rows and columns the matrix shall have.
+     * @throws IllegalArgumentException
+     *             if <tt>n<0 || n*(n+1)/2 > Integer.MAX_VALUE</tt>.
+     */
+    public PackedSymmetricDoubleMatrix2D(int n) {
+        super(null);
+        try {
+            setUp(n, n);
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        elements = new double[PackedDoubleKernels.length(n)];
+    }
+
+    public DoubleMatrix2D assign(double value) {
+        markModified();
+        Arrays.fill(elements, value);
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
+        for (int j = elements.length; --j >= 0;) {
+            elements[j] = function.apply(elements[j]);
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final double[][] values) {
+        markModified();
+        if (values.length != rows)
+            throw new IllegalArgumentException("Must have same number of rows: rows=" + values.length + "rows()="
+                    + rows());
+        for (int r = 0, idx = 0; r < rows; r++) {
+            if (values[r].length != columns)
+                throw new IllegalArgumentException("Must have same number of columns in every row: columns="
+                        + values[r].length + "columns()=" + columns());
+            System.arraycopy(values[r], 0, elements, idx, r + 1);
+            idx += r + 1;
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
+        // overriden for performance only
+        if (source == this)
+            return this; // nothing to do
+        checkShape(source);
+        if (source instanceof PackedSymmetricDoubleMatrix2D) {
+            System.arraycopy(((PackedSymmetricDoubleMatrix2D) source).elements, 0, elements, 0, elements.length);
+            return this;
+        }
+        // the lower triangle of source
+        for (int r = 0, idx = 0; r < rows; r++) {
+            for (int c = 0; c <= r; c++) {
+                elements[idx++] = source.getQuick(r, c);
+            }
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final DoubleMatrix2D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
+        checkShape(y);
+        if (y instanceof PackedSymmetricDoubleMatrix2D) {
+            double[] otherElements = ((PackedSymmetricDoubleMatrix2D) y).elements;
+            for (int j = elements.length; --j >= 0;) {
+                elements[j] = function.apply(elements[j], otherElements[j]);
+            }
+        } else {
+            for (int r = 0, idx = 0; r < rows; r++) {
+                for (int c = 0; c <= r; c++, idx++) {
+                    elements[idx] = function.apply(elements[idx], y.getQuick(r, c));
+                }
+            }
+        }
+        return this;
+    }
+
+    public double[] elements() {
+        return elements;
+    }
+
+    public double getQuick(int row, int column) {
+        if (row >= column) {
+            return elements[PackedDoubleKernels.rowOffset(rows, false, row) + column];
+        } else {
+            return elements[PackedDoubleKernels.rowOffset(rows, false, column) + row];
+        }
+    }
+
+    public void setQuick(int row, int column, double value) {
+        markModified();
+        if (row >= column) {
+            elements[PackedDoubleKernels.rowOffset(rows, false, row) + column] = value;
+        } else {
+            elements[PackedDoubleKernels.rowOffset(rows, false, column) + row] = value;
+        }
+    }
+
+    public DoubleMatrix2D like(int rows, int columns) {
+        return new DenseDoubleMatrix2D(rows, columns);
+    }
+
+    public DoubleMatrix1D like1D(int size) {
+        return new DenseDoubleMatrix1D(size);
+    }
+
+    public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, double alpha, double beta, boolean transposeA) {
+        if (z != null)
+            z.markModified();
+        if (!isNoView)
+            return super.zMult(y, z, alpha, beta, transposeA);
+        boolean ignore = (z == null);
+        if (z == null)
+            z = new DenseDoubleMatrix1D(rows);
+        if (columns != y.size() || rows > z.size())
+            throw new IllegalArgumentException("Incompatible args: " + toStringShort() + ", " + y.toStringShort()
+                    + ", " + z.toStringShort());
+        double[] t = new double[rows];
+        PackedDoubleKernels.mult(rows, elements, false, true, true, false, y.toArray(), t);
+        for (int i = 0; i < rows; i++) {
+            z.setQuick(i, ignore ? alpha * t[i] : alpha * t[i] + beta * z.getQuick(i));
+        }
+        return z;
+    }
+
+    public DoubleMatrix2D zMult(DoubleMatrix2D B, DoubleMatrix2D C, double alpha, double beta, boolean transposeA,
+            boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
+        if (!isNoView)
+            return super.zMult(B, C, alpha, beta, transposeA, transposeB);
+        final int n = rows;
+        return PackedDoubleKernels.zMult(new PackedDoubleKernels.Rows() {
+            int firstColumn(int firstRow, int lastRow) {
+                return 0;
+            }
+
+            int lastColumn(int firstRow, int lastRow) {
+                return n;
+            }
+
+            void get(int firstRow, int lastRow, int firstColumn, int lastColumn, double[] a) {
+                PackedDoubleKernels.getRows(n, elements, false, false, firstRow, lastRow, 0, n, a);
+                PackedDoubleKernels.getRows(n, elements, false, true, firstRow, lastRow, 0, n, a);
+            }
+        }, n, B, C, alpha, beta, transposeB, this);
+    }
+
+    protected DoubleMatrix2D getContent() {
+        return this;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Arrays;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Lower or upper triangular 2-d matrix holding <tt>double</tt> elements in
+ * packed storage. First see the <a href="package-summary.html">package
+ * summary</a> and javadoc <a href="package-tree.html">tree view</a> to get the
+ * broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * The triangle is stored row by row: cell <tt>(i,j)</tt> of a lower triangular
+ * matrix (<tt>i >= j</tt>) is held at <tt>elements[i*(i+1)/2 + j]</tt>, cell
+ * <tt>(i,j)</tt> of an upper triangular matrix (<tt>i <= j</tt>) at
+ * <tt>elements[i*n - i*(i-1)/2 + j - i]</tt>. The cells of the other triangle
+ * are zero; setting them has no effect.
+ * <p>
+ * <tt>zMult</tt> and <tt>solve</tt> read the packed rows contiguously, also
+ * when they work on the transpose, and skip the zero triangle. They run
+ * concurrently for large matrices.
+ * <p>
+ * <b>Memory requirements:</b>
+ * <p>
+ * <tt>memory [bytes] = 8*n*(n+1)/2</tt>. Thus, a 1000*1000 matrix uses 4 MB.
+ *
+ * @see cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleCholeskyDecomposition#getLPacked()
+ */
+public class PackedTriangularDoubleMatrix2D extends WrapperDoubleMatrix2D {
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * The triangle, packed row by row.
+     */
+    protected double[] elements;
+
+    /*
+     * Whether the upper or the lower triangle is stored.
+     */
+    protected boolean upper;
+
+    /**
+     * Constructs a matrix with a copy of the given values. <tt>values</tt> is
+     * required to have the form <tt>values[row][column]</tt> and have exactly
+     * the same number of columns in every row. Only the values of the given
+     * triangle are used.
+     *
+     * @param values
+     *            The values to be filled into the new matrix.
+     * @param upper
+     *            true for an upper, false for a lower triangular matrix.
+     * @throws IllegalArgumentException
+     *             if the matrix is not square.
+     */
+    public PackedTriangularDoubleMatrix2D(double[][] values, boolean upper) {
+        this(values.length, upper);
+        assign(values);
+    }
+
+    /**
+     * Constructs an <tt>n x n</tt> matrix. All entries are initially
+     * <tt>0</tt>.
+     *
+     * @param n
+     *            the number of rows and columns the matrix shall have.
+     * @param upper
+     *            true for an upper, false for a lower triangular matrix.
+     * @throws IllegalArgumentException
+     *             if <tt>n<0 || n*(n+1)/2 > Integer.MAX_VALUE</tt>.
+     */
+    public PackedTriangularDoubleMatrix2D(int n, boolean upper) {
+        super(null);
+        try {
+            setUp(n, n);
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        this.upper = upper;
+        elements = new double[PackedDoubleKernels.length(n)];
+    }
+
+    public DoubleMatrix2D assign(double value) {
+        markModified();
+        Arrays.fill(elements, value);
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
+        for (int j = elements.length; --j >= 0;) {
+            elements[j] = function.apply(elements[j]);
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final double[][] values) {
+        markModified();
+        if (values.length != rows)
+            throw new IllegalArgumentException("Must have same number of rows: rows=" + values.length + "rows()="
+                    + rows());
+        for (int r = 0; r < rows; r++) {
+            if (values[r].length != columns)
+                throw new IllegalArgumentException("Must have same number of columns in every row: columns="
+                        + values[r].length + "columns()=" + columns());
+            int first = upper ? r : 0;
+            System.arraycopy(values[r], first, elements, PackedDoubleKernels.rowOffset(rows, upper, r), upper ? rows
+                    - r : r + 1);
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
+        // overriden for performance only
+        if (source == this)
+            return this; // nothing to do
+        checkShape(source);
+        if (source instanceof PackedTriangularDoubleMatrix2D && ((PackedTriangularDoubleMatrix2D) source).upper == upper) {
+            System.arraycopy(((PackedTriangularDoubleMatrix2D) source).elements, 0, elements, 0, elements.length);
+            return this;
+        }
+        for (int r = 0, idx = 0; r < rows; r++) {
+            for (int c = upper ? r : 0, last = upper ? rows : r + 1; c < last; c++) {
+                elements[idx++] = source.getQuick(r, c);
+            }
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final DoubleMatrix2D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
+        checkShape(y);
+        if (y instanceof PackedTriangularDoubleMatrix2D && ((PackedTriangularDoubleMatrix2D) y).upper == upper) {
+            double[] otherElements = ((PackedTriangularDoubleMatrix2D) y).elements;
+            for (int j = elements.length; --j >= 0;) {
+                elements[j] = function.apply(elements[j], otherElements[j]);
+            }
+        } else {
+            for (int r = 0, idx = 0; r < rows; r++) {
+                for (int c = upper ? r : 0, last = upper ? rows : r + 1; c < last; c++, idx++) {
+                    elements[idx] = function.apply(elements[idx], y.getQuick(r, c));
+                }
+            }
+        }
+        return this;
+    }
+
+    public double[] elements() {
+        return elements;
+    }
+
+    public double getQuick(int row, int column) {
+        if (upper) {
+            return (row <= column) ? elements[PackedDoubleKernels.rowOffset(rows, true, row) + column - row] : 0;
+        } else {
+            return (row >= column) ? elements[PackedDoubleKernels.rowOffset(rows, false, row) + column] : 0;
+        }
+    }
+
+    /**
+     * Returns whether the upper or the lower triangle is stored.
+     *
+     * @return true if this matrix is upper triangular, false if it is lower
+     *         triangular.
+     */
+    public boolean isUpperTriangular() {
+        return upper;
+    }
+
+    public void setQuick(int row, int column, double value) {
+        markModified();
+        if (upper) {
+            if (row <= column)
+                elements[PackedDoubleKernels.rowOffset(rows, true, row) + column - row] = value;
+        } else {
+            if (row >= column)
+                elements[PackedDoubleKernels.rowOffset(rows, false, row) + column] = value;
+        }
+    }
+
+    public DoubleMatrix2D like(int rows, int columns) {
+        return new DenseDoubleMatrix2D(rows, columns);
+    }
+
+    public DoubleMatrix1D like1D(int size) {
+        return new DenseDoubleMatrix1D(size);
+    }
+
+    /**
+     * Solves <tt>A*X = B</tt> or <tt>A'*X = B</tt> (in-place) by forward or
+     * backward substitution. Upon return <tt>B</tt> is overridden with the
+     * result <tt>X</tt>. Blocks of columns of <tt>B</tt> are solved
+     * concurrently.
+     *
+     * @param transposeA
+     *            set this flag to solve the system with <tt>A'</tt>.
+     * @param isUnitTriangular
+     *            true --> the diagonal is assumed to be one and is not read.
+     * @param B
+     *            a matrix with as many rows as <tt>A</tt> and any number of
+     *            columns.
+     * @return <tt>B</tt> (for convenience only).
+     * @throws IllegalArgumentException
+     *             if <tt>B.rows() != rows()</tt>.
+     */
+    public DoubleMatrix2D solve(boolean transposeA, boolean isUnitTriangular, DoubleMatrix2D B) {
+        if (B.rows() != rows)
+            throw new IllegalArgumentException("B.rows() != A.rows()");
+        PackedDoubleKernels.solve(rows, elements, upper, transposeA, isUnitTriangular, B);
+        return B;
+    }
+
+    public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, double alpha, double beta, boolean transposeA) {
+        if (z != null)
+            z.markModified();
+        if (!isNoView)
+            return super.zMult(y, z, alpha, beta, transposeA);
+        boolean ignore = (z == null);
+        if (z == null)
+            z = new DenseDoubleMatrix1D(rows);
+        if (columns != y.size() || rows > z.size())
+            throw new IllegalArgumentException("Incompatible args: " + toStringShort() + ", " + y.toStringShort()
+                    + ", " + z.toStringShort());
+        double[] t = new double[rows];
+        PackedDoubleKernels.mult(rows, elements, upper, !transposeA, transposeA, true, y.toArray(), t);
+        for (int i = 0; i < rows; i++) {
+            z.setQuick(i, ignore ? alpha * t[i] : alpha * t[i] + beta * z.getQuick(i));
+        }
+        return z;
+    }
+
+    public DoubleMatrix2D zMult(DoubleMatrix2D B, DoubleMatrix2D C, double alpha, double beta,
+            final boolean transposeA, boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
+        if (!isNoView)
+            return super.zMult(B, C, alpha, beta, transposeA, transposeB);
+        final int n = rows;
+        // op(A) is lower triangular for a transposed upper or a plain lower matrix
+        final boolean lower = (upper == transposeA);
+        return PackedDoubleKernels.zMult(new PackedDoubleKernels.Rows() {
+            int firstColumn(int firstRow, int lastRow) {
+                return lower ? 0 : firstRow;
+            }
+
+            int lastColumn(int firstRow, int lastRow) {
+                return lower ? lastRow : n;
+            }
+
+            void get(int firstRow, int lastRow, int firstColumn, int lastColumn, double[] a) {
+                PackedDoubleKernels.getRows(n, elements, upper, transposeA, firstRow, lastRow, firstColumn,
+                        lastColumn, a);
+            }
+        }, n, B, C, alpha, beta, transposeB, this);
+    }
+
+    protected DoubleMatrix2D getContent() {
+        return this;
+    }
+}
@@ -248,6 +248,7 @@ class SelectedDenseDoubleMatrix1D extends DoubleMatrix1D {
      */
 
     public void setQuick(int index, double value) {
+        markModified();
         // if (debug) if (index<0 || index>=size) checkIndex(index);
         // elements[index(index)] = value;
         // manually inlined:
@@ -232,6 +232,7 @@ class SelectedSparseDoubleMatrix1D extends DoubleMatrix1D {
      */
 
     public void setQuick(int index, double value) {
+        markModified();
         // if (debug) if (index<0 || index>=size) checkIndex(index);
         // int i = index(index);
         // manually inlined:
@@ -233,6 +233,7 @@ class SelectedSparseDoubleMatrix2D extends DoubleMatrix2D {
      */
 
     public void setQuick(int row, int column, double value) {
+        markModified();
         // if (debug) if (column<0 || column>=columns || row<0 || row>=rows)
         // throw new IndexOutOfBoundsException("row:"+row+", column:"+column);
         // int index = index(row,column);
@@ -298,7 +299,7 @@ class SelectedSparseDoubleMatrix2D extends DoubleMatrix2D {
         int viewStride = this.rowStride;
         int[] viewOffsets = this.rowOffsets;
         int viewOffset = this.offset + _columnOffset(_columnRank(column));
-        return new SelectedSparseDoubleMatrix1D(viewSize, this.elements, viewZero, viewStride, viewOffsets, viewOffset);
+        return shareCells(new SelectedSparseDoubleMatrix1D(viewSize, this.elements, viewZero, viewStride, viewOffsets, viewOffset));
     }
 
     /**
@@ -335,7 +336,7 @@ class SelectedSparseDoubleMatrix2D extends DoubleMatrix2D {
         int viewStride = this.columnStride;
         int[] viewOffsets = this.columnOffsets;
         int viewOffset = this.offset + _rowOffset(_rowRank(row));
-        return new SelectedSparseDoubleMatrix1D(viewSize, this.elements, viewZero, viewStride, viewOffsets, viewOffset);
+        return shareCells(new SelectedSparseDoubleMatrix1D(viewSize, this.elements, viewZero, viewStride, viewOffsets, viewOffset));
     }
 
     /**
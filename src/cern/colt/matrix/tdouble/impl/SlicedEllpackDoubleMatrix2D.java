@@ -0,0 +1,419 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Arrays;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+/**
+ * Sliced ELLPACK (SELL-C-<i>sigma</i>) 2-d matrix holding <tt>double</tt>
+ * elements. First see the <a href="package-summary.html">package summary</a>
+ * and javadoc <a href="package-tree.html">tree view</a> to get the broad
+ * picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * The matrix is converted from a {@link SparseRCDoubleMatrix2D}. Within each
+ * window of <tt>sortingScope</tt> consecutive rows the rows are sorted by
+ * decreasing number of nonzeros, and the sorted rows are grouped into chunks
+ * of <tt>chunkHeight</tt> rows. A chunk is stored column by column and padded
+ * to the length of its longest row, so that element <tt>k</tt> of the rows of
+ * a chunk are adjacent. <tt>zMult</tt> thus processes the rows of a chunk in
+ * lock step with unit stride loops, which the compiler can unroll and
+ * vectorize, and computes the chunks concurrently for large matrices. Sorting
+ * keeps the padding small; a scope of 1 disables sorting.
+ * <p>
+ * The structure is fixed by the conversion: the cells outside it are zero and
+ * setting them has no effect. The iterative solvers of
+ * {@link cern.colt.matrix.tdouble.algo.solver} accept this matrix like any
+ * other, and the preconditioners convert it back to the compressed row format.
+ * <p>
+ * <b>Memory requirements:</b>
+ * <p>
+ * <tt>memory [bytes] = 12*(nonzeros + padding) + 16*rows</tt>.
+ */
+public class SlicedEllpackDoubleMatrix2D extends WrapperDoubleMatrix2D {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The default number of rows of a chunk.
+     */
+    public static final int DEFAULT_CHUNK_HEIGHT = 8;
+
+    /**
+     * The default number of rows sorted together.
+     */
+    public static final int DEFAULT_SORTING_SCOPE = 256;
+
+    /*
+     * Number of rows of a chunk (C).
+     */
+    protected int chunkHeight;
+
+    /*
+     * Number of rows sorted together (sigma).
+     */
+    protected int sortingScope;
+
+    /*
+     * The row stored at each position and the position of each row.
+     */
+    protected int[] rowOrder;
+
+    protected int[] rowPositions;
+
+    /*
+     * The number of nonzeros of the row stored at each position; positions
+     * beyond the last row are empty.
+     */
+    protected int[] rowLengths;
+
+    /*
+     * Chunk c starts at chunkPointers[c]; element k of its lane l is at
+     * chunkPointers[c] + k * chunkHeight + l.
+     */
+    protected int[] chunkPointers;
+
+    protected int[] columnIndexes;
+
+    protected double[] values;
+
+    protected int cardinality;
+
+    /**
+     * Constructs a matrix with the elements of the given matrix, using
+     * {@link #DEFAULT_CHUNK_HEIGHT} and {@link #DEFAULT_SORTING_SCOPE}.
+     * 
+     * @param A
+     *            the matrix to convert.
+     */
+    public SlicedEllpackDoubleMatrix2D(SparseRCDoubleMatrix2D A) {
+        this(A, DEFAULT_CHUNK_HEIGHT, DEFAULT_SORTING_SCOPE);
+    }
+
+    /**
+     * Constructs a matrix with the elements of the given matrix. The values
+     * are copied.
+     * 
+     * @param A
+     *            the matrix to convert.
+     * @param chunkHeight
+     *            the number of rows of a chunk.
+     * @param sortingScope
+     *            the number of consecutive rows sorted by their number of
+     *            nonzeros.
+     * @throws IllegalArgumentException
+     *             if <tt>chunkHeight < 1 || sortingScope < 1</tt> or if the
+     *             padded matrix has more than <tt>Integer.MAX_VALUE</tt>
+     *             elements.
+     */
+    public SlicedEllpackDoubleMatrix2D(SparseRCDoubleMatrix2D A, int chunkHeight, int sortingScope) {
+        super(null);
+        try {
+            setUp(A.rows(), A.columns());
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        if (chunkHeight < 1 || sortingScope < 1)
+            throw new IllegalArgumentException("chunkHeight < 1 || sortingScope < 1: " + chunkHeight + ", "
+                    + sortingScope);
+        this.chunkHeight = chunkHeight;
+        this.sortingScope = sortingScope;
+        int[] rowPointersA = A.getRowPointers();
+        int[] columnIndexesA = A.getColumnIndexes();
+        double[] valuesA = A.getValues();
+        cardinality = rowPointersA[rows];
+
+        // sort the rows of each window by decreasing length, stable
+        rowOrder = new int[rows];
+        rowPositions = new int[rows];
+        long[] keys = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            keys[i] = ((long) (Integer.MAX_VALUE - (rowPointersA[i + 1] - rowPointersA[i])) << 32) | i;
+        }
+        for (int first = 0; first < rows; first += sortingScope) {
+            Arrays.sort(keys, first, Math.min(rows, first + sortingScope));
+        }
+        int chunks = (rows + chunkHeight - 1) / chunkHeight;
+        rowLengths = new int[chunks * chunkHeight];
+        for (int s = 0; s < rows; s++) {
+            int i = (int) keys[s];
+            rowOrder[s] = i;
+            rowPositions[i] = s;
+            rowLengths[s] = rowPointersA[i + 1] - rowPointersA[i];
+        }
+
+        // a chunk is as wide as its longest row
+        chunkPointers = new int[chunks + 1];
+        long size = 0;
+        for (int c = 0; c < chunks; c++) {
+            int width = 0;
+            for (int s = c * chunkHeight, last = s + chunkHeight; s < last; s++) {
+                width = Math.max(width, rowLengths[s]);
+            }
+            size += (long) width * chunkHeight;
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("matrix too large");
+            chunkPointers[c + 1] = (int) size;
+        }
+
+        // padding repeats the last column of a row with the value zero
+        columnIndexes = new int[(int) size];
+        values = new double[(int) size];
+        for (int s = 0; s < rows; s++) {
+            int c = s / chunkHeight;
+            int idx = chunkPointers[c] + s - c * chunkHeight;
+            int low = rowPointersA[rowOrder[s]];
+            int length = rowLengths[s];
+            int column = 0;
+            for (int k = 0, last = (chunkPointers[c + 1] - chunkPointers[c]) / chunkHeight; k < last; k++) {
+                if (k < length) {
+                    column = columnIndexesA[low + k];
+                    values[idx] = valuesA[low + k];
+                }
+                columnIndexes[idx] = column;
+                idx += chunkHeight;
+            }
+        }
+    }
+
+    /*
+     * Constructs a copy sharing the structure of the given matrix.
+     */
+    private SlicedEllpackDoubleMatrix2D(SlicedEllpackDoubleMatrix2D other) {
+        super(null);
+        try {
+            setUp(other.rows, other.columns);
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        chunkHeight = other.chunkHeight;
+        sortingScope = other.sortingScope;
+        rowOrder = other.rowOrder;
+        rowPositions = other.rowPositions;
+        rowLengths = other.rowLengths;
+        chunkPointers = other.chunkPointers;
+        columnIndexes = other.columnIndexes;
+        values = other.values.clone();
+        cardinality = other.cardinality;
+    }
+
+    public DoubleMatrix2D assign(double value) {
+        markModified();
+        if (value == 0) {
+            Arrays.fill(values, 0);
+        } else {
+            for (int s = 0; s < rows; s++) {
+                for (int k = 0, idx = index(s); k < rowLengths[s]; k++, idx += chunkHeight) {
+                    values[idx] = value;
+                }
+            }
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
+        for (int s = 0; s < rows; s++) {
+            for (int k = 0, idx = index(s); k < rowLengths[s]; k++, idx += chunkHeight) {
+                values[idx] = function.apply(values[idx]);
+            }
+        }
+        return this;
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public DoubleMatrix2D copy() {
+        return new SlicedEllpackDoubleMatrix2D(this);
+    }
+
+    public double[] elements() {
+        return values;
+    }
+
+    public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        markModified();
+        // row by row, so that compressed row matrices are filled in order
+        for (int r = 0; r < rows; r++) {
+            int s = rowPositions[r];
+            for (int k = 0, idx = index(s); k < rowLengths[s]; k++, idx += chunkHeight) {
+                double value = values[idx];
+                if (value != 0) {
+                    values[idx] = function.apply(r, columnIndexes[idx], value);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the number of rows of a chunk.
+     * 
+     * @return the chunk height.
+     */
+    public int getChunkHeight() {
+        return chunkHeight;
+    }
+
+    public double getQuick(int row, int column) {
+        int s = rowPositions[row];
+        for (int k = 0, idx = index(s); k < rowLengths[s]; k++, idx += chunkHeight) {
+            if (columnIndexes[idx] == column)
+                return values[idx];
+        }
+        return 0;
+    }
+
+    /**
+     * Returns a new matrix in compressed row form that has the same elements
+     * as this matrix.
+     * 
+     * @return this matrix in a compressed row form.
+     */
+    public SparseRCDoubleMatrix2D getRowCompressed() {
+        int[] rowPointersR = new int[rows + 1];
+        for (int r = 0; r < rows; r++) {
+            rowPointersR[r + 1] = rowPointersR[r] + rowLengths[rowPositions[r]];
+        }
+        int[] columnIndexesR = new int[cardinality];
+        double[] valuesR = new double[cardinality];
+        for (int r = 0; r < rows; r++) {
+            int s = rowPositions[r];
+            for (int k = 0, idx = index(s), p = rowPointersR[r]; k < rowLengths[s]; k++, idx += chunkHeight, p++) {
+                columnIndexesR[p] = columnIndexes[idx];
+                valuesR[p] = values[idx];
+            }
+        }
+        return new SparseRCDoubleMatrix2D(rows, columns, rowPointersR, columnIndexesR, valuesR);
+    }
+
+    /**
+     * Returns the number of rows sorted together.
+     * 
+     * @return the sorting scope.
+     */
+    public int getSortingScope() {
+        return sortingScope;
+    }
+
+    public DoubleMatrix2D like(int rows, int columns) {
+        return new SparseDoubleMatrix2D(rows, columns);
+    }
+
+    public DoubleMatrix1D like1D(int size) {
+        return new SparseDoubleMatrix1D(size);
+    }
+
+    public void setQuick(int row, int column, double value) {
+        markModified();
+        int s = rowPositions[row];
+        for (int k = 0, idx = index(s); k < rowLengths[s]; k++, idx += chunkHeight) {
+            if (columnIndexes[idx] == column) {
+                values[idx] = value;
+                return;
+            }
+        }
+    }
+
+    public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
+            final boolean transposeA) {
+        if (z != null)
+            z.markModified();
+        final int rowsA = transposeA ? columns : rows;
+        int columnsA = transposeA ? rows : columns;
+        final boolean ignore = (z == null);
+        if (z == null)
+            z = new DenseDoubleMatrix1D(rowsA);
+        if (columnsA != y.size() || rowsA > z.size())
+            throw new IllegalArgumentException("Incompatible args: "
+                    + ((transposeA ? viewDice() : this).toStringShort()) + ", " + y.toStringShort() + ", "
+                    + z.toStringShort());
+
+        final double[] elementsY;
+        final int zeroY;
+        final int strideY;
+        if (y instanceof DenseDoubleMatrix1D) {
+            elementsY = ((DenseDoubleMatrix1D) y).elements;
+            zeroY = (int) y.index(0);
+            strideY = y.stride();
+        } else {
+            elementsY = y.toArray();
+            zeroY = 0;
+            strideY = 1;
+        }
+        DenseDoubleMatrix1D zz = (z instanceof DenseDoubleMatrix1D) ? (DenseDoubleMatrix1D) z
+                : new DenseDoubleMatrix1D(z.toArray());
+        final double[] elementsZ = zz.elements;
+        final int zeroZ = (int) zz.index(0);
+        final int strideZ = zz.stride();
+
+        if (transposeA) {
+            if (ignore || beta == 0) {
+                zz.assign(0);
+            } else if (beta != 1) {
+                zz.assign(cern.jet.math.tdouble.DoubleFunctions.mult(beta));
+            }
+            for (int s = 0; s < rows; s++) {
+                double yElem = alpha * elementsY[zeroY + strideY * rowOrder[s]];
+                for (int k = 0, idx = index(s); k < rowLengths[s]; k++, idx += chunkHeight) {
+                    elementsZ[zeroZ + strideZ * columnIndexes[idx]] += values[idx] * yElem;
+                }
+            }
+        } else {
+            int chunks = chunkPointers.length - 1;
+            long work = Math.max(1, (long) values.length / Math.max(1, chunks));
+            int minChunks = (int) Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV) / work);
+            ForkJoinUtils.invoke(0, chunks, minChunks, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int firstChunk, int lastChunk) {
+                    int C = chunkHeight;
+                    double[] sum = new double[C];
+                    for (int c = firstChunk; c < lastChunk; c++) {
+                        Arrays.fill(sum, 0);
+                        for (int idx = chunkPointers[c], high = chunkPointers[c + 1]; idx < high; idx += C) {
+                            for (int l = 0; l < C; l++) {
+                                sum[l] += values[idx + l] * elementsY[zeroY + strideY * columnIndexes[idx + l]];
+                            }
+                        }
+                        for (int l = 0, s = c * C, last = Math.min(C, rows - s); l < last; l++, s++) {
+                            // an empty row has no real entries to pad
+                            double v = rowLengths[s] == 0 ? 0 : alpha * sum[l];
+                            int idx = zeroZ + strideZ * rowOrder[s];
+                            elementsZ[idx] = (ignore || beta == 0) ? v : v + beta * elementsZ[idx];
+                        }
+                    }
+                }
+            });
+        }
+        if (zz != z) {
+            z.assign(zz);
+        }
+        return z;
+    }
+
+    protected DoubleMatrix2D getContent() {
+        return this;
+    }
+
+    /*
+     * Returns the index of the first element of the row stored at position s.
+     */
+    private int index(int s) {
+        int c = s / chunkHeight;
+        return chunkPointers[c] + s - c * chunkHeight;
+    }
+}
@@ -9,8 +9,8 @@ It is provided "as is" without expressed or implied warranty.
 package cern.colt.matrix.tdouble.impl;
 
 import java.util.Arrays;
-import java.util.concurrent.Future;
 
+import cern.colt.ConcurrencyTuning;
 import cern.colt.list.tdouble.DoubleArrayList;
 import cern.colt.list.tint.IntArrayList;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
@@ -33,7 +33,9 @@ import edu.emory.mathcs.utils.ConcurrencyUtils;
  * <b>Implementation:</b>
  * <p>
  * Internally uses the standard sparse column-compressed format. <br>
- * Note that this implementation is not synchronized.
+ * Note that this implementation is not synchronized. A matrix that is only
+ * read can be {@link #freeze() frozen}, after which any number of threads can
+ * read it concurrently without locking.
  * <p>
  * Cells that
  * <ul>
@@ -138,6 +140,11 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
 
     protected boolean rowIndexesSorted = false;
 
+    /*
+     * The partition of the nonzeros for parallel matrix-vector products.
+     */
+    private transient volatile NonzeroPartition partition;
+
     /**
      * Constructs a matrix with a copy of the given values. <tt>values</tt> is
      * required to have the form <tt>values[row][column]</tt> and have exactly
@@ -350,6 +357,7 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
         if (function instanceof cern.jet.math.tdouble.DoubleMult) { // x[i] = mult*x[i]
             final double alpha = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
             if (alpha == 1)
@@ -375,6 +383,7 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(double value) {
+        markModified();
         if (value == 0) {
             Arrays.fill(dcs.i, 0);
             Arrays.fill(dcs.p, 0);
@@ -389,6 +398,7 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
         if (source == this)
             return this; // nothing to do
         checkShape(source);
@@ -424,6 +434,7 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D y, cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
         checkShape(y);
 
         if ((y instanceof SparseCCDoubleMatrix2D) && (function == cern.jet.math.tdouble.DoubleFunctions.plus)) { // x[i] = x[i] + y[i] 
@@ -502,6 +513,8 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        if (!isFrozen())
+            markModified();
         final int[] rowIndexesA = dcs.i;
         final int[] columnPointersA = dcs.p;
         final double[] valuesA = dcs.x;
@@ -512,12 +525,43 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
                 int i = rowIndexesA[k];
                 double value = valuesA[k];
                 double r = function.apply(i, j, value);
-                valuesA[k] = r;
+                if (Double.doubleToLongBits(r) != Double.doubleToLongBits(value)) {
+                    checkNotFrozen();
+                    valuesA[k] = r;
+                }
             }
         }
         return this;
     }
 
+    /**
+     * Makes this matrix read-only, so that it can be shared by threads that
+     * only read it. The row indexes are sorted and the storage is trimmed
+     * first. <tt>getQuick</tt> of a frozen matrix does not lock and finds the
+     * cell by binary search, and <tt>forEachNonZero</tt> is allowed as long as
+     * the function returns the values unchanged. Every other attempt to modify
+     * the matrix, through this matrix or its views, throws an
+     * <tt>IllegalStateException</tt>; a modifiable copy is obtained with
+     * {@link #copy()}. The arrays returned by {@link #getColumnPointers()},
+     * {@link #getRowIndexes()}, {@link #getValues()} and {@link #elements()}
+     * must not be modified either.
+     * <p>
+     * The matrix must be frozen before it is shared: the threads that read it
+     * must be started, or otherwise synchronize with this thread, after this
+     * method returns.
+     * 
+     * @return this matrix.
+     */
+    public SparseCCDoubleMatrix2D freeze() {
+        if (!isFrozen()) {
+            if (!rowIndexesSorted)
+                sortRowIndexes();
+            trimToSize();
+            freezeCells();
+        }
+        return this;
+    }
+
     /**
      * Returns column pointers
      * 
@@ -545,13 +589,19 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
         return dense;
     }
 
-    public synchronized double getQuick(int row, int column) {
-        //        int k = cern.colt.Sorting.binarySearchFromTo(dcs.i, row, dcs.p[column], dcs.p[column + 1] - 1);
-        int k = searchFromTo(dcs.i, row, dcs.p[column], dcs.p[column + 1] - 1);
-        double v = 0;
-        if (k >= 0)
-            v = dcs.x[k];
-        return v;
+    public double getQuick(int row, int column) {
+        if (isFrozen()) { // sorted and read-only
+            int k = cern.colt.Sorting.binarySearchFromTo(dcs.i, row, dcs.p[column], dcs.p[column + 1] - 1);
+            return k >= 0 ? dcs.x[k] : 0;
+        }
+        synchronized (this) {
+            //        int k = cern.colt.Sorting.binarySearchFromTo(dcs.i, row, dcs.p[column], dcs.p[column + 1] - 1);
+            int k = searchFromTo(dcs.i, row, dcs.p[column], dcs.p[column + 1] - 1);
+            double v = 0;
+            if (k >= 0)
+                v = dcs.x[k];
+            return v;
+        }
     }
 
     /**
@@ -621,6 +671,7 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public synchronized void setQuick(int row, int column, double value) {
+        markModified();
         //        int k = cern.colt.Sorting.binarySearchFromTo(dcs.i, row, dcs.p[column], dcs.p[column + 1] - 1);
         int k = searchFromTo(dcs.i, row, dcs.p[column], dcs.p[column + 1] - 1);
 
@@ -642,6 +693,8 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
      * Sorts row indexes
      */
     public void sortRowIndexes() {
+        if (isFrozen()) // sorted by freeze()
+            return;
         dcs = Dcs_transpose.cs_transpose(dcs, true);
         dcs = Dcs_transpose.cs_transpose(dcs, true);
         if (dcs == null) {
@@ -654,6 +707,7 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
      * Removes (sums) duplicate entries (if any}
      */
     public void removeDuplicates() {
+        checkNotFrozen();
         if (!Dcs_dupl.cs_dupl(dcs)) { //remove duplicates
             throw new IllegalArgumentException("Exception occured in cs_dupl()!");
         }
@@ -663,10 +717,13 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
      * Removes zero entries (if any)
      */
     public void removeZeroes() {
+        checkNotFrozen();
         Dcs_dropzeros.cs_dropzeros(dcs); //remove zeroes
     }
 
     public void trimToSize() {
+        if (isFrozen()) // trimmed by freeze()
+            return;
         Dcs_util.cs_sprealloc(dcs, 0);
     }
 
@@ -686,6 +743,8 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
 
     public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
             final boolean transposeA) {
+        if (z != null)
+            z.markModified();
         final int rowsA = transposeA ? columns : rows;
         final int columnsA = transposeA ? rows : columns;
 
@@ -719,61 +778,13 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
         int zidx = zeroZ;
         int nthreads = ConcurrencyUtils.getNumberOfThreads();
         if (!transposeA) {
-            if ((!ignore) && (beta / alpha != 1.0)) {
-                z.assign(cern.jet.math.tdouble.DoubleFunctions.mult(beta / alpha));
-            }
-
-            if ((nthreads > 1) && (cardinality() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-                nthreads = 2;
-                Future<?>[] futures = new Future[nthreads];
-                final double[] result = new double[rowsA];
-                int k = columns / nthreads;
-                for (int j = 0; j < nthreads; j++) {
-                    final int firstColumn = j * k;
-                    final int lastColumn = (j == nthreads - 1) ? columns : firstColumn + k;
-                    final int threadID = j;
-                    futures[j] = ConcurrencyUtils.submit(new Runnable() {
-                        public void run() {
-                            if (threadID == 0) {
-                                for (int i = firstColumn; i < lastColumn; i++) {
-                                    int high = columnPointersA[i + 1];
-                                    double yElem = elementsY[zeroY + strideY * i];
-                                    for (int k = columnPointersA[i]; k < high; k++) {
-                                        int j = rowIndexesA[k];
-                                        elementsZ[zeroZ + strideZ * j] += valuesA[k] * yElem;
-                                    }
-                                }
-                            } else {
-                                for (int i = firstColumn; i < lastColumn; i++) {
-                                    int high = columnPointersA[i + 1];
-                                    double yElem = elementsY[zeroY + strideY * i];
-                                    for (int k = columnPointersA[i]; k < high; k++) {
-                                        int j = rowIndexesA[k];
-                                        result[j] += valuesA[k] * yElem;
-                                    }
-                                }
-                            }
-                        }
-                    });
-                }
-                ConcurrencyUtils.waitForCompletion(futures);
-                int rem = rowsA % 10;
-                for (int j = rem; j < rowsA; j += 10) {
-                    elementsZ[zeroZ + j * strideZ] += result[j];
-                    elementsZ[zeroZ + (j + 1) * strideZ] += result[j + 1];
-                    elementsZ[zeroZ + (j + 2) * strideZ] += result[j + 2];
-                    elementsZ[zeroZ + (j + 3) * strideZ] += result[j + 3];
-                    elementsZ[zeroZ + (j + 4) * strideZ] += result[j + 4];
-                    elementsZ[zeroZ + (j + 5) * strideZ] += result[j + 5];
-                    elementsZ[zeroZ + (j + 6) * strideZ] += result[j + 6];
-                    elementsZ[zeroZ + (j + 7) * strideZ] += result[j + 7];
-                    elementsZ[zeroZ + (j + 8) * strideZ] += result[j + 8];
-                    elementsZ[zeroZ + (j + 9) * strideZ] += result[j + 9];
-                }
-                for (int j = 0; j < rem; j++) {
-                    elementsZ[zeroZ + j * strideZ] += result[j];
-                }
+            if ((nthreads > 1) && (cardinality() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV))) {
+                getPartition(nthreads).scatter(rowIndexesA, valuesA, elementsY, zeroY, strideY, elementsZ, zeroZ,
+                        strideZ, rowsA, alpha, ignore ? 0 : beta);
             } else {
+                if ((!ignore) && (beta / alpha != 1.0)) {
+                    z.assign(cern.jet.math.tdouble.DoubleFunctions.mult(beta / alpha));
+                }
                 for (int i = 0; i < columns; i++) {
                     int high = columnPointersA[i + 1];
                     double yElem = elementsY[zeroY + strideY * i];
@@ -782,47 +793,14 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
                         elementsZ[zeroZ + strideZ * j] += valuesA[k] * yElem;
                     }
                 }
-            }
-            if (alpha != 1.0) {
-                z.assign(cern.jet.math.tdouble.DoubleFunctions.mult(alpha));
+                if (alpha != 1.0) {
+                    z.assign(cern.jet.math.tdouble.DoubleFunctions.mult(alpha));
+                }
             }
         } else {
-            if ((nthreads > 1) && (cardinality() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-                Future<?>[] futures = new Future[nthreads];
-                int k = columns / nthreads;
-                for (int j = 0; j < nthreads; j++) {
-                    final int firstColumn = j * k;
-                    final int lastColumn = (j == nthreads - 1) ? columns : firstColumn + k;
-                    futures[j] = ConcurrencyUtils.submit(new Runnable() {
-                        public void run() {
-                            int zidx = zeroZ + firstColumn * strideZ;
-                            int k = dcs.p[firstColumn];
-                            for (int i = firstColumn; i < lastColumn; i++) {
-                                double sum = 0;
-                                int high = dcs.p[i + 1];
-                                for (; k + 10 < high; k += 10) {
-                                    int ind = k + 9;
-                                    sum += valuesA[ind] * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]] + valuesA[ind]
-                                            * elementsY[zeroY + strideY * dcs.i[ind--]];
-                                }
-                                for (; k < high; k++) {
-                                    sum += valuesA[k] * elementsY[dcs.i[k]];
-                                }
-                                elementsZ[zidx] = alpha * sum + beta * elementsZ[zidx];
-                                zidx += strideZ;
-                            }
-                        }
-                    });
-                }
-                ConcurrencyUtils.waitForCompletion(futures);
+            if ((nthreads > 1) && (cardinality() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV))) {
+                getPartition(nthreads).gather(rowIndexesA, valuesA, elementsY, zeroY, strideY, elementsZ, zeroZ,
+                        strideZ, alpha, beta);
             } else {
                 int k = dcs.p[0];
                 for (int i = 0; i < columns; i++) {
@@ -842,7 +820,7 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
                                 * elementsY[zeroY + strideY * dcs.i[ind--]];
                     }
                     for (; k < high; k++) {
-                        sum += valuesA[k] * elementsY[dcs.i[k]];
+                        sum += valuesA[k] * elementsY[zeroY + strideY * dcs.i[k]];
                     }
                     elementsZ[zidx] = alpha * sum + beta * elementsZ[zidx];
                     zidx += strideZ;
@@ -854,6 +832,9 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
 
     public DoubleMatrix2D zMult(DoubleMatrix2D B, DoubleMatrix2D C, final double alpha, double beta,
             final boolean transposeA, boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
         int rowsA = rows;
         int columnsA = columns;
         if (transposeA) {
@@ -983,6 +964,17 @@ public class SparseCCDoubleMatrix2D extends WrapperDoubleMatrix2D {
         return C;
     }
 
+    /*
+     * Returns the partition of the columns into the given number of pieces
+     * with the same number of nonzeros, computing it if the structure has
+     * changed.
+     */
+    private NonzeroPartition getPartition(int parts) {
+        NonzeroPartition p = NonzeroPartition.get(partition, dcs.p, columns, getVersion(), parts);
+        partition = p;
+        return p;
+    }
+
     protected DoubleMatrix2D getContent() {
         return this;
     }
@@ -49,6 +49,7 @@ public class SparseCCMDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public void setQuick(int row, int column, double value) {
+        markModified();
         elements[column].setQuick(row, value);
     }
 
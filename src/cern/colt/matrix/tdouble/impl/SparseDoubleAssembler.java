@@ -0,0 +1,444 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import edu.emory.mathcs.csparsej.tdouble.Dcs_common.Dcs;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * Assembles a sparse matrix from elements added concurrently by many threads,
+ * as in the assembly of finite element matrices. Each thread appends its
+ * <tt>(row, column, value)</tt> triplets to a buffer of its own, without
+ * locking, and elements added several times to the same cell are summed when
+ * the matrix is built. Zeros are stored like other elements, so that the
+ * structure of the result does not depend on the values.
+ * <p>
+ * {@link #getRowCompressed()} and {@link #getColumnCompressed()} sort the
+ * triplets into rows or columns with a counting sort over the pieces of the
+ * buffers, then merge the duplicates and sort the indexes of each row or
+ * column; all passes run concurrently for large matrices. The buffers are
+ * kept, so that more elements can be added and the matrix built again.
+ * <p>
+ * The <tt>add</tt> methods may be called by any number of threads at the same
+ * time. The other methods must not run concurrently with them: the threads
+ * that added elements must have finished or otherwise synchronized with the
+ * thread that builds the matrix, for example by being joined.
+ */
+public class SparseDoubleAssembler {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int rows;
+
+    private final int columns;
+
+    private final ConcurrentLinkedQueue<Buffer> buffers = new ConcurrentLinkedQueue<Buffer>();
+
+    private volatile ThreadLocal<Buffer> local = newLocal();
+
+    /**
+     * Constructs an assembler of a matrix with the given number of rows and
+     * columns.
+     *
+     * @param rows
+     *            the number of rows of the matrix.
+     * @param columns
+     *            the number of columns of the matrix.
+     * @throws IllegalArgumentException
+     *             if <tt>rows<0 || columns<0</tt>.
+     */
+    public SparseDoubleAssembler(int rows, int columns) {
+        if (rows < 0 || columns < 0)
+            throw new IllegalArgumentException("negative size: " + rows + ", " + columns);
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Adds <tt>value</tt> to the cell <tt>[row,column]</tt>.
+     *
+     * @param row
+     *            the index of the row.
+     * @param column
+     *            the index of the column.
+     * @param value
+     *            the value to add.
+     * @throws IndexOutOfBoundsException
+     *             if <tt>row<0 || row>=rows() || column<0 || column>=columns()</tt>.
+     */
+    public void add(int row, int column, double value) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns)
+            throw new IndexOutOfBoundsException("row:" + row + ", column:" + column);
+        Buffer buffer = local.get();
+        buffer.ensureCapacity(1);
+        buffer.add(row, column, value);
+    }
+
+    /**
+     * Adds the element matrix <tt>values</tt> to the cells
+     * <tt>[rowIndexes[i],columnIndexes[j]]</tt>.
+     *
+     * @param rowIndexes
+     *            the row of each row of <tt>values</tt>.
+     * @param columnIndexes
+     *            the column of each column of <tt>values</tt>.
+     * @param values
+     *            the values to add.
+     * @throws IllegalArgumentException
+     *             if the shape of <tt>values</tt> does not match the indexes.
+     * @throws IndexOutOfBoundsException
+     *             if an index is out of bounds.
+     */
+    public void add(int[] rowIndexes, int[] columnIndexes, double[][] values) {
+        if (values.length != rowIndexes.length)
+            throw new IllegalArgumentException("values.length != rowIndexes.length");
+        for (int i = 0; i < rowIndexes.length; i++) {
+            if (values[i].length != columnIndexes.length)
+                throw new IllegalArgumentException("values[" + i + "].length != columnIndexes.length");
+            if (rowIndexes[i] < 0 || rowIndexes[i] >= rows)
+                throw new IndexOutOfBoundsException("row:" + rowIndexes[i]);
+        }
+        for (int j = 0; j < columnIndexes.length; j++) {
+            if (columnIndexes[j] < 0 || columnIndexes[j] >= columns)
+                throw new IndexOutOfBoundsException("column:" + columnIndexes[j]);
+        }
+        Buffer buffer = local.get();
+        buffer.ensureCapacity((long) rowIndexes.length * columnIndexes.length);
+        for (int i = 0; i < rowIndexes.length; i++) {
+            double[] valuesRow = values[i];
+            for (int j = 0; j < columnIndexes.length; j++) {
+                buffer.add(rowIndexes[i], columnIndexes[j], valuesRow[j]);
+            }
+        }
+    }
+
+    /**
+     * Removes all elements and releases the buffers.
+     */
+    public void clear() {
+        // the threads that added elements, typically long-lived pool threads,
+        // keep referring to their buffers until they exit, so empty them
+        for (Buffer buffer : buffers) {
+            buffer.release();
+        }
+        buffers.clear();
+        local = newLocal();
+    }
+
+    /**
+     * Returns the number of columns of the matrix.
+     *
+     * @return the number of columns.
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Returns a new matrix in compressed column form with the sum of the
+     * added elements in each cell. The row indexes are sorted.
+     *
+     * @return the assembled matrix.
+     * @throws IllegalArgumentException
+     *             if more than <tt>Integer.MAX_VALUE</tt> elements were added.
+     */
+    public SparseCCDoubleMatrix2D getColumnCompressed() {
+        Compressed C = compress(false);
+        if (C.indexes.length == 0) { // like cs_spalloc
+            C.indexes = new int[1];
+            C.values = new double[1];
+        }
+        Dcs dcs = new Dcs();
+        dcs.m = rows;
+        dcs.n = columns;
+        dcs.nzmax = C.indexes.length;
+        dcs.nz = -1;
+        dcs.p = C.pointers;
+        dcs.i = C.indexes;
+        dcs.x = C.values;
+        SparseCCDoubleMatrix2D A = new SparseCCDoubleMatrix2D(dcs);
+        A.rowIndexesSorted = true;
+        return A;
+    }
+
+    /**
+     * Returns a new matrix in compressed row form with the sum of the added
+     * elements in each cell. The column indexes are sorted.
+     *
+     * @return the assembled matrix.
+     * @throws IllegalArgumentException
+     *             if more than <tt>Integer.MAX_VALUE</tt> elements were added.
+     */
+    public SparseRCDoubleMatrix2D getRowCompressed() {
+        Compressed C = compress(true);
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(rows, columns, C.pointers, C.indexes, C.values);
+        A.columnIndexesSorted = true;
+        return A;
+    }
+
+    /**
+     * Returns the number of rows of the matrix.
+     *
+     * @return the number of rows.
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of elements added, counting the elements added to
+     * the same cell separately.
+     *
+     * @return the number of added elements.
+     */
+    public long size() {
+        long size = 0;
+        for (Buffer buffer : buffers) {
+            size += buffer.size;
+        }
+        return size;
+    }
+
+    /*
+     * Sorts the triplets by row (or by column), merges the duplicates and
+     * sorts the minor indexes of each row (or column).
+     */
+    private Compressed compress(boolean byRow) {
+        final int major = byRow ? rows : columns;
+        final int minor = byRow ? columns : rows;
+        Buffer[] all = buffers.toArray(new Buffer[0]);
+        long size = 0;
+        for (int b = 0; b < all.length; b++) {
+            size += all[b].size;
+        }
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("matrix too large");
+        final int nnz = (int) size;
+
+        // split the buffers into pieces of about nnz / nthreads triplets
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        int pieces = 1;
+        if (nthreads > 1 && nnz >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV)) {
+            // each piece counts the lengths of all rows
+            pieces = Math.max(1, Math.min(nthreads, nnz / Math.max(1, major)));
+        }
+        int chunk = Math.max(1, (int) (((long) nnz + pieces - 1) / pieces));
+        int segments = 0;
+        for (int b = 0; b < all.length; b++) {
+            segments += (all[b].size + chunk - 1) / chunk;
+        }
+        final int[][] majorSegment = new int[segments][];
+        final int[][] minorSegment = new int[segments][];
+        final double[][] valueSegment = new double[segments][];
+        final int[] from = new int[segments];
+        final int[] to = new int[segments];
+        for (int b = 0, s = 0; b < all.length; b++) {
+            Buffer buffer = all[b];
+            for (int k = 0; k < buffer.size; k += chunk, s++) {
+                majorSegment[s] = byRow ? buffer.rowIndexes : buffer.columnIndexes;
+                minorSegment[s] = byRow ? buffer.columnIndexes : buffer.rowIndexes;
+                valueSegment[s] = buffer.values;
+                from[s] = k;
+                to[s] = Math.min(buffer.size, k + chunk);
+            }
+        }
+
+        // count the triplets of each row in each piece
+        final int[][] counts = new int[segments][];
+        ForkJoinUtils.invoke(0, segments, 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                for (int s = first; s < last; s++) {
+                    int[] count = new int[major];
+                    int[] index = majorSegment[s];
+                    for (int k = from[s]; k < to[s]; k++) {
+                        count[index[k]]++;
+                    }
+                    counts[s] = count;
+                }
+            }
+        });
+        final int[] pointers = new int[major + 1];
+        int grain = Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV) / Math.max(1, segments));
+        ForkJoinUtils.invoke(0, major, grain, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                for (int m = first; m < last; m++) {
+                    int length = 0;
+                    for (int s = 0; s < counts.length; s++) {
+                        length += counts[s][m];
+                    }
+                    pointers[m + 1] = length;
+                }
+            }
+        });
+        for (int m = 0; m < major; m++) {
+            pointers[m + 1] += pointers[m];
+        }
+
+        // the pieces of a row follow each other, in the order of the pieces
+        ForkJoinUtils.invoke(0, major, grain, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                for (int m = first; m < last; m++) {
+                    int position = pointers[m];
+                    for (int s = 0; s < counts.length; s++) {
+                        int length = counts[s][m];
+                        counts[s][m] = position;
+                        position += length;
+                    }
+                }
+            }
+        });
+        final int[] indexes = new int[nnz];
+        final double[] values = new double[nnz];
+        ForkJoinUtils.invoke(0, segments, 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                for (int s = first; s < last; s++) {
+                    int[] position = counts[s];
+                    int[] majorIndex = majorSegment[s];
+                    int[] minorIndex = minorSegment[s];
+                    double[] value = valueSegment[s];
+                    for (int k = from[s]; k < to[s]; k++) {
+                        int p = position[majorIndex[k]]++;
+                        indexes[p] = minorIndex[k];
+                        values[p] = value[k];
+                    }
+                }
+            }
+        });
+
+        // merge the duplicates of each row and sort its indexes
+        final int[] lengths = new int[major];
+        grain = Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV)
+                / (1 + nnz / Math.max(1, major)));
+        ForkJoinUtils.invoke(0, major, grain, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                int[] marker = new int[minor];
+                Arrays.fill(marker, -1);
+                double[] work = new double[INITIAL_CAPACITY];
+                for (int m = first; m < last; m++) {
+                    int low = pointers[m];
+                    int high = low;
+                    boolean sorted = true;
+                    for (int k = low; k < pointers[m + 1]; k++) {
+                        int j = indexes[k];
+                        if (marker[j] < low) {
+                            sorted &= high == low || indexes[high - 1] < j;
+                            marker[j] = high;
+                            indexes[high] = j;
+                            values[high++] = values[k];
+                        } else {
+                            values[marker[j]] += values[k];
+                        }
+                    }
+                    if (!sorted) {
+                        if (work.length < high - low) {
+                            work = new double[Math.max(high - low, 2 * work.length)];
+                        }
+                        Arrays.sort(indexes, low, high);
+                        for (int k = low; k < high; k++) {
+                            work[k - low] = values[marker[indexes[k]]];
+                        }
+                        System.arraycopy(work, 0, values, low, high - low);
+                    }
+                    lengths[m] = high - low;
+                }
+            }
+        });
+
+        // close the gaps left by the duplicates
+        Compressed C = new Compressed();
+        C.pointers = new int[major + 1];
+        for (int m = 0; m < major; m++) {
+            C.pointers[m + 1] = C.pointers[m] + lengths[m];
+        }
+        if (C.pointers[major] == nnz) {
+            C.indexes = indexes;
+            C.values = values;
+        } else {
+            final int[] pointersC = C.pointers;
+            final int[] indexesC = C.indexes = new int[pointersC[major]];
+            final double[] valuesC = C.values = new double[pointersC[major]];
+            ForkJoinUtils.invoke(0, major, grain, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int first, int last) {
+                    for (int m = first; m < last; m++) {
+                        System.arraycopy(indexes, pointers[m], indexesC, pointersC[m], lengths[m]);
+                        System.arraycopy(values, pointers[m], valuesC, pointersC[m], lengths[m]);
+                    }
+                }
+            });
+        }
+        return C;
+    }
+
+    private ThreadLocal<Buffer> newLocal() {
+        return new ThreadLocal<Buffer>() {
+            protected Buffer initialValue() {
+                Buffer buffer = new Buffer();
+                buffers.add(buffer);
+                return buffer;
+            }
+        };
+    }
+
+    /*
+     * The triplets added by one thread.
+     */
+    private static final class Buffer {
+        int[] rowIndexes = new int[INITIAL_CAPACITY];
+
+        int[] columnIndexes = new int[INITIAL_CAPACITY];
+
+        double[] values = new double[INITIAL_CAPACITY];
+
+        int size;
+
+        void add(int row, int column, double value) {
+            rowIndexes[size] = row;
+            columnIndexes[size] = column;
+            values[size++] = value;
+        }
+
+        void release() {
+            rowIndexes = new int[0];
+            columnIndexes = new int[0];
+            values = new double[0];
+            size = 0;
+        }
+
+        void ensureCapacity(long n) {
+            long required = size + n;
+            if (required <= values.length)
+                return;
+            if (required > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("too many elements");
+            int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(required, 2L * values.length));
+            int[] rowIndexesNew = new int[capacity];
+            int[] columnIndexesNew = new int[capacity];
+            double[] valuesNew = new double[capacity];
+            System.arraycopy(rowIndexes, 0, rowIndexesNew, 0, size);
+            System.arraycopy(columnIndexes, 0, columnIndexesNew, 0, size);
+            System.arraycopy(values, 0, valuesNew, 0, size);
+            rowIndexes = rowIndexesNew;
+            columnIndexes = columnIndexesNew;
+            values = valuesNew;
+        }
+    }
+
+    private static final class Compressed {
+        int[] pointers;
+
+        int[] indexes;
+
+        double[] values;
+    }
+}
@@ -155,6 +155,7 @@ public class SparseDoubleMatrix1D extends DoubleMatrix1D {
      */
 
     public DoubleMatrix1D assign(double value) {
+        markModified();
         // overriden for performance only
         if (this.isNoView && value == 0)
             this.elements.clear();
@@ -328,6 +329,7 @@ public class SparseDoubleMatrix1D extends DoubleMatrix1D {
      */
 
     public synchronized void setQuick(int index, double value) {
+        markModified();
         // if (debug) if (index<0 || index>=size) checkIndex(index);
         // int i = index(index);
         // manually inlined:
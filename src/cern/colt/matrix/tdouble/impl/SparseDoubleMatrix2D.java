@@ -27,7 +27,9 @@ import cern.colt.matrix.tdouble.DoubleMatrix2D;
  * <p>
  * Note that this implementation is not synchronized. Uses a
  * {@link cern.colt.map.tdouble.OpenLongDoubleHashMap}, which is a compact and
- * performant hashing technique.
+ * performant hashing technique. A matrix that is only read can be
+ * {@link #freeze() frozen}, after which any number of threads can read it
+ * concurrently without locking.
  * <p>
  * <b>Memory requirements:</b>
  * <p>
@@ -314,6 +316,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
         if (this.isNoView && function instanceof cern.jet.math.tdouble.DoubleMult) { // x[i] = mult*x[i]
             this.elements.assign(function);
         } else {
@@ -323,6 +326,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(double value) {
+        markModified();
         // overriden for performance only
         if (this.isNoView && value == 0)
             this.elements.clear();
@@ -332,6 +336,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
         // overriden for performance only
         if (!(source instanceof SparseDoubleMatrix2D)) {
             return super.assign(source);
@@ -349,6 +354,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D y, cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
         if (!this.isNoView)
             return super.assign(y, function);
 
@@ -370,7 +376,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
                     int i = (int) (key / columns);
                     int j = (int) (key % columns);
                     double r = value * y.getQuick(i, j);
-                    if (r != value)
+                    if (Double.doubleToLongBits(r) != Double.doubleToLongBits(value))
                         elements.put(key, r);
                     return true;
                 }
@@ -381,7 +387,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
                     int i = (int) (key / columns);
                     int j = (int) (key % columns);
                     double r = value / y.getQuick(i, j);
-                    if (r != value)
+                    if (Double.doubleToLongBits(r) != Double.doubleToLongBits(value))
                         elements.put(key, r);
                     return true;
                 }
@@ -412,6 +418,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
      */
     public SparseDoubleMatrix2D assign(final int[] rowIndexes, final int[] columnIndexes, final double value,
             final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
         int size = rowIndexes.length;
         if (function == cern.jet.math.tdouble.DoubleFunctions.plus) { // x[i] = x[i] + y[i]
             for (int i = 0; i < size; i++) {
@@ -468,6 +475,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
      */
     public SparseDoubleMatrix2D assign(final int[] rowIndexes, final int[] columnIndexes, final double[] values,
             final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
         int size = rowIndexes.length;
         if (function == cern.jet.math.tdouble.DoubleFunctions.plus) { // x[i] = x[i] + y[i]
             for (int i = 0; i < size; i++) {
@@ -614,18 +622,24 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public void ensureCapacity(int minCapacity) {
+        if (isFrozen()) // no room needed
+            return;
         this.elements.ensureCapacity(minCapacity);
     }
 
     public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        if (!isFrozen())
+            markModified();
         if (this.isNoView) {
             this.elements.forEachPair(new cern.colt.function.tdouble.LongDoubleProcedure() {
                 public boolean apply(long key, double value) {
                     int i = (int) (key / columns);
                     int j = (int) (key % columns);
                     double r = function.apply(i, j, value);
-                    if (r != value)
+                    if (Double.doubleToLongBits(r) != Double.doubleToLongBits(value)) {
+                        checkNotFrozen();
                         elements.put(key, r);
+                    }
                     return true;
                 }
             });
@@ -635,9 +649,38 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
         return this;
     }
 
-    public synchronized double getQuick(int row, int column) {
-        return this.elements.get((long) rowZero + (long) row * (long) rowStride + (long) columnZero + (long) column
-                * (long) columnStride);
+    /**
+     * Makes this matrix read-only, so that it can be shared by threads that
+     * only read it. The hash table is trimmed first. <tt>getQuick</tt> of a
+     * frozen matrix does not lock, and <tt>forEachNonZero</tt> is allowed as
+     * long as the function returns the values unchanged. Every other attempt
+     * to modify the matrix, through this matrix or its views, throws an
+     * <tt>IllegalStateException</tt>; a modifiable copy is obtained with
+     * {@link #copy()}. The map returned by {@link #elements()} must not be
+     * modified either.
+     * <p>
+     * The matrix must be frozen before it is shared: the threads that read it
+     * must be started, or otherwise synchronize with this thread, after this
+     * method returns.
+     * 
+     * @return this matrix.
+     */
+    public SparseDoubleMatrix2D freeze() {
+        if (!isFrozen()) {
+            trimToSize();
+            freezeCells();
+        }
+        return this;
+    }
+
+    public double getQuick(int row, int column) {
+        if (isFrozen()) // read-only
+            return this.elements.get((long) rowZero + (long) row * (long) rowStride + (long) columnZero
+                    + (long) column * (long) columnStride);
+        synchronized (this) {
+            return this.elements.get((long) rowZero + (long) row * (long) rowStride + (long) columnZero
+                    + (long) column * (long) columnStride);
+        }
     }
 
     public long index(int row, int column) {
@@ -653,6 +696,7 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public synchronized void setQuick(int row, int column, double value) {
+        markModified();
         long index = (long) rowZero + (long) row * (long) rowStride + (long) columnZero + (long) column
                 * (long) columnStride;
         if (value == 0)
@@ -678,6 +722,8 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public void trimToSize() {
+        if (isFrozen()) // trimmed by freeze()
+            return;
         this.elements.trimToSize();
     }
 
@@ -695,6 +741,8 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
 
     public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, double beta,
             final boolean transposeA) {
+        if (z != null)
+            z.markModified();
         int rowsA = rows;
         int columnsA = columns;
         if (transposeA) {
@@ -750,6 +798,9 @@ public class SparseDoubleMatrix2D extends DoubleMatrix2D {
 
     public DoubleMatrix2D zMult(DoubleMatrix2D B, DoubleMatrix2D C, final double alpha, double beta,
             final boolean transposeA, boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
         if (!(this.isNoView)) {
             return super.zMult(B, C, alpha, beta, transposeA, transposeB);
         }
@@ -9,8 +9,9 @@ It is provided "as is" without expressed or implied warranty.
 package cern.colt.matrix.tdouble.impl;
 
 import java.util.Arrays;
-import java.util.concurrent.Future;
 
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
 import cern.colt.list.tdouble.DoubleArrayList;
 import cern.colt.list.tint.IntArrayList;
 import cern.colt.matrix.tdouble.DoubleMatrix1D;
@@ -26,7 +27,9 @@ import edu.emory.mathcs.utils.ConcurrencyUtils;
  * <b>Implementation:</b>
  * <p>
  * Internally uses the standard sparse row-compressed format<br>
- * Note that this implementation is not synchronized.
+ * Note that this implementation is not synchronized. A matrix that is only
+ * read can be {@link #freeze() frozen}, after which any number of threads can
+ * read it concurrently without locking.
  * <p>
  * <b>Memory requirements:</b>
  * <p>
@@ -155,6 +158,11 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
 
     protected boolean columnIndexesSorted = false;
 
+    /*
+     * The partition of the nonzeros for parallel matrix-vector products.
+     */
+    private transient volatile NonzeroPartition partition;
+
     /**
      * Constructs a matrix with a copy of the given values. <tt>values</tt> is
      * required to have the form <tt>values[row][column]</tt> and have exactly
@@ -368,6 +376,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
         if (function instanceof cern.jet.math.tdouble.DoubleMult) { // x[i] = mult*x[i]
             final double alpha = ((cern.jet.math.tdouble.DoubleMult) function).multiplicator;
             if (alpha == 1)
@@ -392,6 +401,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(double value) {
+        markModified();
         if (value == 0) {
             Arrays.fill(rowPointers, 0);
             Arrays.fill(columnIndexes, 0);
@@ -406,6 +416,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(DoubleMatrix2D source) {
+        markModified();
         if (source == this)
             return this; // nothing to do
         checkShape(source);
@@ -427,6 +438,24 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
             columnIndexes = other.getRowIndexes();
             values = other.getValues();
             columnIndexesSorted = true;
+        } else if (source instanceof SlicedEllpackDoubleMatrix2D) {
+            SparseRCDoubleMatrix2D other = ((SlicedEllpackDoubleMatrix2D) source).getRowCompressed();
+            rowPointers = other.rowPointers;
+            columnIndexes = other.columnIndexes;
+            values = other.values;
+            columnIndexesSorted = false;
+        } else if (source instanceof BlockSparseRCDoubleMatrix2D) {
+            SparseRCDoubleMatrix2D other = ((BlockSparseRCDoubleMatrix2D) source).getRowCompressed();
+            rowPointers = other.rowPointers;
+            columnIndexes = other.columnIndexes;
+            values = other.values;
+            columnIndexesSorted = true;
+        } else if (source instanceof SymmetricSparseRCDoubleMatrix2D) {
+            SparseRCDoubleMatrix2D other = ((SymmetricSparseRCDoubleMatrix2D) source).getRowCompressed();
+            rowPointers = other.rowPointers;
+            columnIndexes = other.columnIndexes;
+            values = other.values;
+            columnIndexesSorted = true;
         } else {
             assign(0);
             source.forEachNonZero(new cern.colt.function.tdouble.IntIntDoubleFunction() {
@@ -440,6 +469,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D y, cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        markModified();
         checkShape(y);
         if ((y instanceof SparseRCDoubleMatrix2D) && (function == cern.jet.math.tdouble.DoubleFunctions.plus)) { // x[i] = x[i] + y[i] 
             SparseRCDoubleMatrix2D yy = (SparseRCDoubleMatrix2D) y;
@@ -567,6 +597,9 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        boolean frozen = isFrozen();
+        if (!frozen)
+            markModified();
 
         for (int i = rows; --i >= 0;) {
             int low = rowPointers[i];
@@ -574,13 +607,43 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
                 int j = columnIndexes[k];
                 double value = values[k];
                 double r = function.apply(i, j, value);
-                if (r != value)
+                if (Double.doubleToLongBits(r) != Double.doubleToLongBits(value)) {
+                    checkNotFrozen();
                     values[k] = r;
+                }
             }
         }
         return this;
     }
 
+    /**
+     * Makes this matrix read-only, so that it can be shared by threads that
+     * only read it. The column indexes are sorted and the storage is trimmed
+     * first. <tt>getQuick</tt> of a frozen matrix does not lock and finds the
+     * cell by binary search, and <tt>forEachNonZero</tt> is allowed as long as
+     * the function returns the values unchanged. Every other attempt to modify
+     * the matrix, through this matrix or its views, throws an
+     * <tt>IllegalStateException</tt>; a modifiable copy is obtained with
+     * {@link #copy()}. The arrays returned by {@link #getRowPointers()},
+     * {@link #getColumnIndexes()} and {@link #getValues()} must not be
+     * modified either.
+     * <p>
+     * The matrix must be frozen before it is shared: the threads that read it
+     * must be started, or otherwise synchronize with this thread, after this
+     * method returns.
+     * 
+     * @return this matrix.
+     */
+    public SparseRCDoubleMatrix2D freeze() {
+        if (!isFrozen()) {
+            if (!columnIndexesSorted)
+                sortColumnIndexes();
+            trimToSize();
+            freezeCells();
+        }
+        return this;
+    }
+
     /**
      * Returns a new matrix that has the same elements as this matrix, but is in
      * a column-compressed form. This method creates a new object (not a view),
@@ -626,14 +689,21 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
         return dense;
     }
 
-    public synchronized double getQuick(int row, int column) {
-        //        int k = cern.colt.Sorting.binarySearchFromTo(columnIndexes, column, rowPointers[row], rowPointers[row + 1] - 1);
-        int k = searchFromTo(columnIndexes, column, rowPointers[row], rowPointers[row + 1] - 1);
-
-        double v = 0;
-        if (k >= 0)
-            v = values[k];
-        return v;
+    public double getQuick(int row, int column) {
+        if (isFrozen()) { // sorted and read-only
+            int k = cern.colt.Sorting.binarySearchFromTo(columnIndexes, column, rowPointers[row],
+                    rowPointers[row + 1] - 1);
+            return k >= 0 ? values[k] : 0;
+        }
+        synchronized (this) {
+            //        int k = cern.colt.Sorting.binarySearchFromTo(columnIndexes, column, rowPointers[row], rowPointers[row + 1] - 1);
+            int k = searchFromTo(columnIndexes, column, rowPointers[row], rowPointers[row + 1] - 1);
+
+            double v = 0;
+            if (k >= 0)
+                v = values[k];
+            return v;
+        }
     }
 
     /**
@@ -708,6 +778,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
      * Removes (sums) duplicate entries (if any}
      */
     public void removeDuplicates() {
+        checkNotFrozen();
         int nz = 0;
         int q, i;
         int[] w = new int[columns]; /* get workspace */
@@ -734,6 +805,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
      * Removes zero entries (if any)
      */
     public void removeZeroes() {
+        checkNotFrozen();
         int nz = 0;
         double eps = Math.pow(2, -52);
         for (int j = 0; j < rows; j++) {
@@ -750,6 +822,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public synchronized void setQuick(int row, int column, double value) {
+        markModified();
         //        int k = cern.colt.Sorting.binarySearchFromTo(columnIndexes, column, rowPointers[row], rowPointers[row + 1] - 1);
         int k = searchFromTo(columnIndexes, column, rowPointers[row], rowPointers[row + 1] - 1);
 
@@ -771,6 +844,8 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
      * Sorts column indexes
      */
     public void sortColumnIndexes() {
+        if (isFrozen()) // sorted by freeze()
+            return;
         SparseRCDoubleMatrix2D T = getTranspose();
         this.rows = T.rows;
         this.columns = T.columns;
@@ -807,11 +882,15 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public void trimToSize() {
+        if (isFrozen()) // trimmed by freeze()
+            return;
         realloc(0);
     }
 
     public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
             final boolean transposeA) {
+        if (z != null)
+            z.markModified();
         final int rowsA = transposeA ? columns : rows;
         final int columnsA = transposeA ? rows : columns;
 
@@ -843,56 +922,9 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
             if ((!ignore) && (beta != 1.0))
                 z.assign(cern.jet.math.tdouble.DoubleFunctions.mult(beta));
 
-            if ((nthreads > 1) && (cardinality() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-                nthreads = 2;
-                Future<?>[] futures = new Future[nthreads];
-                final double[] result = new double[rowsA];
-                int k = rows / nthreads;
-                for (int j = 0; j < nthreads; j++) {
-                    final int firstRow = j * k;
-                    final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                    final int threadID = j;
-                    futures[j] = ConcurrencyUtils.submit(new Runnable() {
-                        public void run() {
-                            if (threadID == 0) {
-                                for (int i = firstRow; i < lastRow; i++) {
-                                    int high = rowPointers[i + 1];
-                                    double yElem = alpha * elementsY[zeroY + strideY * i];
-                                    for (int k = rowPointers[i]; k < high; k++) {
-                                        int j = columnIndexes[k];
-                                        elementsZ[zeroZ + strideZ * j] += values[k] * yElem;
-                                    }
-                                }
-                            } else {
-                                for (int i = firstRow; i < lastRow; i++) {
-                                    int high = rowPointers[i + 1];
-                                    double yElem = alpha * elementsY[zeroY + strideY * i];
-                                    for (int k = rowPointers[i]; k < high; k++) {
-                                        int j = columnIndexes[k];
-                                        result[j] += values[k] * yElem;
-                                    }
-                                }
-                            }
-                        }
-                    });
-                }
-                ConcurrencyUtils.waitForCompletion(futures);
-                int rem = rowsA % 10;
-                for (int j = rem; j < rowsA; j += 10) {
-                    elementsZ[zeroZ + j * strideZ] += result[j];
-                    elementsZ[zeroZ + (j + 1) * strideZ] += result[j + 1];
-                    elementsZ[zeroZ + (j + 2) * strideZ] += result[j + 2];
-                    elementsZ[zeroZ + (j + 3) * strideZ] += result[j + 3];
-                    elementsZ[zeroZ + (j + 4) * strideZ] += result[j + 4];
-                    elementsZ[zeroZ + (j + 5) * strideZ] += result[j + 5];
-                    elementsZ[zeroZ + (j + 6) * strideZ] += result[j + 6];
-                    elementsZ[zeroZ + (j + 7) * strideZ] += result[j + 7];
-                    elementsZ[zeroZ + (j + 8) * strideZ] += result[j + 8];
-                    elementsZ[zeroZ + (j + 9) * strideZ] += result[j + 9];
-                }
-                for (int j = 0; j < rem; j++) {
-                    elementsZ[zeroZ + j * strideZ] += result[j];
-                }
+            if ((nthreads > 1) && (cardinality() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV))) {
+                getPartition(nthreads).scatter(columnIndexes, values, elementsY, zeroY, strideY, elementsZ, zeroZ,
+                        strideZ, rowsA, alpha, 1);
             } else {
                 for (int i = 0; i < rows; i++) {
                     int high = rowPointers[i + 1];
@@ -907,68 +939,9 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
             return z;
         }
 
-        if ((nthreads > 1) && (cardinality() >= ConcurrencyUtils.getThreadsBeginN_2D())) {
-            nthreads = Math.min(nthreads, rows);
-            Future<?>[] futures = new Future[nthreads];
-            int k = rows / nthreads;
-            for (int j = 0; j < nthreads; j++) {
-                final int firstRow = j * k;
-                final int lastRow = (j == nthreads - 1) ? rows : firstRow + k;
-                futures[j] = ConcurrencyUtils.submit(new Runnable() {
-                    public void run() {
-                        int zidx = zeroZ + firstRow * strideZ;
-                        int k = rowPointers[firstRow];
-                        if (beta == 0.0) {
-                            for (int i = firstRow; i < lastRow; i++) {
-                                double sum = 0;
-                                int high = rowPointers[i + 1];
-                                for (; k + 10 < high; k += 10) {
-                                    int ind = k + 9;
-                                    sum += values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]];
-                                }
-                                for (; k < high; k++) {
-                                    sum += values[k] * elementsY[columnIndexes[k]];
-                                }
-                                elementsZ[zidx] = alpha * sum;
-                                zidx += strideZ;
-                            }
-                        } else {
-                            for (int i = firstRow; i < lastRow; i++) {
-                                double sum = 0;
-                                int high = rowPointers[i + 1];
-                                for (; k + 10 < high; k += 10) {
-                                    int ind = k + 9;
-                                    sum += values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]]
-                                            + values[ind] * elementsY[zeroY + strideY * columnIndexes[ind--]];
-                                }
-                                for (; k < high; k++) {
-                                    sum += values[k] * elementsY[columnIndexes[k]];
-                                }
-                                elementsZ[zidx] = alpha * sum + beta * elementsZ[zidx];
-                                zidx += strideZ;
-                            }
-                        }
-                    }
-                });
-            }
-            ConcurrencyUtils.waitForCompletion(futures);
+        if ((nthreads > 1) && (cardinality() >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV))) {
+            getPartition(nthreads).gather(columnIndexes, values, elementsY, zeroY, strideY, elementsZ, zeroZ, strideZ,
+                    alpha, beta);
         } else {
             int zidx = zeroZ;
             int k = rowPointers[0];
@@ -990,7 +963,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
                                 * elementsY[zeroY + strideY * columnIndexes[ind--]];
                     }
                     for (; k < high; k++) {
-                        sum += values[k] * elementsY[columnIndexes[k]];
+                        sum += values[k] * elementsY[zeroY + strideY * columnIndexes[k]];
                     }
                     elementsZ[zidx] = alpha * sum;
                     zidx += strideZ;
@@ -1013,7 +986,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
                                 * elementsY[zeroY + strideY * columnIndexes[ind--]];
                     }
                     for (; k < high; k++) {
-                        sum += values[k] * elementsY[columnIndexes[k]];
+                        sum += values[k] * elementsY[zeroY + strideY * columnIndexes[k]];
                     }
                     elementsZ[zidx] = alpha * sum + beta * elementsZ[zidx];
                     zidx += strideZ;
@@ -1025,6 +998,9 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
 
     public DoubleMatrix2D zMult(DoubleMatrix2D B, DoubleMatrix2D C, final double alpha, double beta,
             final boolean transposeA, boolean transposeB) {
+        if (C != null) {
+            C.markModified();
+        }
         int rowsA = rows;
         int columnsA = columns;
         if (transposeA) {
@@ -1041,7 +1017,7 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
         boolean ignore = (C == null);
         if (C == null) {
             if (B instanceof SparseRCDoubleMatrix2D) {
-                C = new SparseRCDoubleMatrix2D(rowsA, p, (rowsA * p));
+                C = new SparseRCDoubleMatrix2D(rowsA, p);
             } else {
                 C = new DenseDoubleMatrix2D(rowsA, p);
             }
@@ -1088,77 +1064,15 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
                 }
             }
         } else if ((B instanceof SparseRCDoubleMatrix2D) && (C instanceof SparseRCDoubleMatrix2D)) {
-            SparseRCDoubleMatrix2D AA;
-            SparseRCDoubleMatrix2D BB;
+            SparseRCDoubleMatrix2D AA = transposeA ? getTranspose() : this;
+            SparseRCDoubleMatrix2D BB = transposeB ? ((SparseRCDoubleMatrix2D) B).getTranspose()
+                    : (SparseRCDoubleMatrix2D) B;
             SparseRCDoubleMatrix2D CC = (SparseRCDoubleMatrix2D) C;
-            if (transposeA) {
-                AA = getTranspose();
-            } else {
-                AA = this;
-            }
-            if (transposeB) {
-                BB = ((SparseRCDoubleMatrix2D) B).getTranspose();
-            } else {
-                BB = (SparseRCDoubleMatrix2D) B;
-            }
-
-            int[] rowPointersA = AA.rowPointers;
-            int[] columnIndexesA = AA.columnIndexes;
-            double[] valuesA = AA.values;
-
-            int[] rowPointersB = BB.rowPointers;
-            int[] columnIndexesB = BB.columnIndexes;
-            double[] valuesB = BB.values;
-
-            int[] rowPointersC = CC.rowPointers;
-            int[] columnIndexesC = CC.columnIndexes;
-            double[] valuesC = CC.values;
-            int nzmax = valuesC.length;
-
-            int[] iw = new int[columnsB + 1];
-            for (int i = 0; i < iw.length; i++) {
-                iw[i] = -1;
-            }
-            int len = -1;
-            for (int ii = 0; ii < rowsA; ii++) {
-                int highA = rowPointersA[ii + 1];
-                for (int ka = rowPointersA[ii]; ka < highA; ka++) {
-                    double scal = valuesA[ka] * alpha;
-                    int jj = columnIndexesA[ka];
-                    int highB = rowPointersB[jj + 1];
-                    for (int kb = rowPointersB[jj]; kb < highB; kb++) {
-                        int jcol = columnIndexesB[kb];
-                        int jpos = iw[jcol];
-                        if (jpos == -1) {
-                            len++;
-                            if (len >= nzmax) {
-                                throw new IllegalArgumentException(
-                                        "The max number of nonzero elements in C is too small.");
-                            }
-                            columnIndexesC[len] = jcol;
-                            iw[jcol] = len;
-                            valuesC[len] = scal * valuesB[kb];
-                        } else {
-                            valuesC[jpos] += scal * valuesB[kb];
-                        }
-                    }
-                }
-                for (int k = rowPointersC[ii]; k < len + 1; k++) {
-                    iw[columnIndexesC[k]] = -1;
-                }
-                rowPointersC[ii + 1] = len + 1;
-
-                //                int length = rowPointersC[ii + 1] - rowPointersC[ii];
-                //                IntMatrix1D columnIndexesCPart = columnIndexesC.viewPart(rowPointersC[ii], length);
-                //                int[] indexes = cern.colt.matrix.tint.algo.IntSorting.quickSort.sortIndex(columnIndexesCPart);
-                //                Arrays.sort(columnIndexesCElements, rowPointersC[ii], rowPointersC[ii + 1]);
-                //                DoubleMatrix1D valuesCPart = valuesC.viewPart(rowPointersC[ii], length).viewSelection(indexes);
-                //                valuesC.viewPart(rowPointersC[ii], length).assign(valuesCPart);
-            }
-            //            CC.columnIndexes.elements((int[]) columnIndexesC.elements());
-            //            CC.columnIndexes.setSize(columnIndexesSize);
-            //            CC.values.elements((double[]) valuesC.elements());
-            //            CC.values.setSize(columnIndexesSize);
+            SparseRCDoubleMatrix2D R = multiply(AA, BB, null, ignore ? null : CC, alpha);
+            CC.rowPointers = R.rowPointers;
+            CC.columnIndexes = R.columnIndexes;
+            CC.values = R.values;
+            CC.columnIndexesSorted = true;
         } else {
             if (transposeB) {
                 B = B.viewDice();
@@ -1191,6 +1105,182 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
         return C;
     }
 
+    /**
+     * Computes the sparse product <tt>alpha * A * B</tt>, where <tt>A</tt> is
+     * this matrix, with Gustavson's row-by-row algorithm. A symbolic pass
+     * counts the number of nonzeros of each row of the result, so that it is
+     * allocated exactly, and a numeric pass accumulates each row in a dense
+     * workspace owned by the thread. Both passes process the rows concurrently.
+     * <p>
+     * If a mask is given, only the entries of the result that are in the
+     * structure of the mask are computed; all other entries are zero. The
+     * values of the mask are ignored.
+     * 
+     * @param B
+     *            the second source matrix.
+     * @param mask
+     *            the structure of the result, or <tt>null</tt> to compute all
+     *            entries.
+     * @param alpha
+     *            the scaling factor.
+     * @param transposeA
+     *            whether A must be transposed.
+     * @param transposeB
+     *            whether B must be transposed.
+     * @return a new matrix with sorted column indexes.
+     * @throws IllegalArgumentException
+     *             if the inner dimensions do not agree or if the mask does not
+     *             have the shape of the result.
+     */
+    public SparseRCDoubleMatrix2D zMultSparse(SparseRCDoubleMatrix2D B, SparseRCDoubleMatrix2D mask, double alpha,
+            boolean transposeA, boolean transposeB) {
+        SparseRCDoubleMatrix2D AA = transposeA ? getTranspose() : this;
+        SparseRCDoubleMatrix2D BB = transposeB ? B.getTranspose() : B;
+        if (BB.rows() != AA.columns())
+            throw new IllegalArgumentException("Matrix2D inner dimensions must agree:" + toStringShort() + ", "
+                    + (transposeB ? B.viewDice() : B).toStringShort());
+        if (mask != null && (mask.rows() != AA.rows() || mask.columns() != BB.columns()))
+            throw new IllegalArgumentException("Incompatible mask: " + toStringShort() + ", "
+                    + (transposeB ? B.viewDice() : B).toStringShort() + ", " + mask.toStringShort());
+        return multiply(AA, BB, mask, null, alpha);
+    }
+
+    /*
+     * Returns C + alpha * A * B, restricted to the structure of the mask if it
+     * is not null. C may be null.
+     */
+    private static SparseRCDoubleMatrix2D multiply(SparseRCDoubleMatrix2D A, SparseRCDoubleMatrix2D B,
+            SparseRCDoubleMatrix2D mask, SparseRCDoubleMatrix2D C, final double alpha) {
+        final int rowsA = A.rows();
+        final int columnsB = B.columns();
+        final int[] rowPointersA = A.rowPointers;
+        final int[] columnIndexesA = A.columnIndexes;
+        final double[] valuesA = A.values;
+        final int[] rowPointersB = B.rowPointers;
+        final int[] columnIndexesB = B.columnIndexes;
+        final double[] valuesB = B.values;
+        final int[] rowPointersM = mask == null ? null : mask.rowPointers;
+        final int[] columnIndexesM = mask == null ? null : mask.columnIndexes;
+        final int[] rowPointersC = C == null ? null : C.rowPointers;
+        final int[] columnIndexesC = C == null ? null : C.columnIndexes;
+        final double[] valuesC = C == null ? null : C.values;
+
+        long work = 1 + (long) rowPointersA[rowsA] * (1 + rowPointersB[B.rows()] / Math.max(1, B.rows()))
+                / Math.max(1, rowsA);
+        int grain = (int) Math.max(1, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV) / work);
+
+        // symbolic pass: the number of nonzeros of each row
+        final int[] rowPointersR = new int[rowsA + 1];
+        ForkJoinUtils.invoke(0, rowsA, grain, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstRow, int lastRow) {
+                int[] seen = new int[columnsB];
+                Arrays.fill(seen, -1);
+                int[] allowed = null;
+                if (rowPointersM != null) {
+                    allowed = new int[columnsB];
+                    Arrays.fill(allowed, -1);
+                }
+                for (int i = firstRow; i < lastRow; i++) {
+                    int count = 0;
+                    if (rowPointersC != null) {
+                        for (int k = rowPointersC[i]; k < rowPointersC[i + 1]; k++) {
+                            int j = columnIndexesC[k];
+                            if (seen[j] != i) {
+                                seen[j] = i;
+                                count++;
+                            }
+                        }
+                    }
+                    if (allowed != null) {
+                        for (int k = rowPointersM[i]; k < rowPointersM[i + 1]; k++) {
+                            allowed[columnIndexesM[k]] = i;
+                        }
+                    }
+                    for (int ka = rowPointersA[i]; ka < rowPointersA[i + 1]; ka++) {
+                        int jj = columnIndexesA[ka];
+                        for (int kb = rowPointersB[jj]; kb < rowPointersB[jj + 1]; kb++) {
+                            int j = columnIndexesB[kb];
+                            if (seen[j] != i && (allowed == null || allowed[j] == i)) {
+                                seen[j] = i;
+                                count++;
+                            }
+                        }
+                    }
+                    rowPointersR[i + 1] = count;
+                }
+            }
+        });
+        long nnz = 0;
+        for (int i = 0; i < rowsA; i++) {
+            nnz += rowPointersR[i + 1];
+            if (nnz > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The product has more than Integer.MAX_VALUE nonzeros");
+            }
+            rowPointersR[i + 1] = (int) nnz;
+        }
+
+        // numeric pass: accumulate each row, then gather it in column order
+        final int[] columnIndexesR = new int[(int) nnz];
+        final double[] valuesR = new double[(int) nnz];
+        ForkJoinUtils.invoke(0, rowsA, grain, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int firstRow, int lastRow) {
+                double[] acc = new double[columnsB];
+                int[] seen = new int[columnsB];
+                Arrays.fill(seen, -1);
+                int[] allowed = null;
+                if (rowPointersM != null) {
+                    allowed = new int[columnsB];
+                    Arrays.fill(allowed, -1);
+                }
+                for (int i = firstRow; i < lastRow; i++) {
+                    int low = rowPointersR[i];
+                    int pos = low;
+                    if (rowPointersC != null) {
+                        for (int k = rowPointersC[i]; k < rowPointersC[i + 1]; k++) {
+                            int j = columnIndexesC[k];
+                            if (seen[j] != i) {
+                                seen[j] = i;
+                                acc[j] = valuesC[k];
+                                columnIndexesR[pos++] = j;
+                            } else {
+                                acc[j] += valuesC[k];
+                            }
+                        }
+                    }
+                    if (allowed != null) {
+                        for (int k = rowPointersM[i]; k < rowPointersM[i + 1]; k++) {
+                            allowed[columnIndexesM[k]] = i;
+                        }
+                    }
+                    for (int ka = rowPointersA[i]; ka < rowPointersA[i + 1]; ka++) {
+                        double scal = alpha * valuesA[ka];
+                        int jj = columnIndexesA[ka];
+                        for (int kb = rowPointersB[jj]; kb < rowPointersB[jj + 1]; kb++) {
+                            int j = columnIndexesB[kb];
+                            if (allowed != null && allowed[j] != i) {
+                                continue;
+                            }
+                            if (seen[j] != i) {
+                                seen[j] = i;
+                                acc[j] = scal * valuesB[kb];
+                                columnIndexesR[pos++] = j;
+                            } else {
+                                acc[j] += scal * valuesB[kb];
+                            }
+                        }
+                    }
+                    Arrays.sort(columnIndexesR, low, pos);
+                    for (int k = low; k < pos; k++) {
+                        valuesR[k] = acc[columnIndexesR[k]];
+                    }
+                }
+            }
+        });
+        SparseRCDoubleMatrix2D R = new SparseRCDoubleMatrix2D(rowsA, columnsB, rowPointersR, columnIndexesR, valuesR);
+        R.columnIndexesSorted = true;
+        return R;
+    }
+
     private double cumsum(int[] p, int[] c, int n) {
         int nz = 0;
         double nz2 = 0;
@@ -1217,6 +1307,16 @@ public class SparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
         values = valuesNew;
     }
 
+    /*
+     * Returns the partition of the rows into the given number of pieces with
+     * the same number of nonzeros, computing it if the structure has changed.
+     */
+    private NonzeroPartition getPartition(int parts) {
+        NonzeroPartition p = NonzeroPartition.get(partition, rowPointers, rows, getVersion(), parts);
+        partition = p;
+        return p;
+    }
+
     protected DoubleMatrix2D getContent() {
         return this;
     }
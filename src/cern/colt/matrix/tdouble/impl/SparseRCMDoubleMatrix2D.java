@@ -49,6 +49,7 @@ public class SparseRCMDoubleMatrix2D extends WrapperDoubleMatrix2D {
     }
 
     public void setQuick(int row, int column, double value) {
+        markModified();
         elements[row].setQuick(column, value);
     }
 
@@ -0,0 +1,501 @@
+/*
+Copyright (C) 1999 CERN - European Organization for Nuclear Research.
+Permission to use, copy, modify, distribute and sell this software and its documentation for any purpose
+is hereby granted without fee, provided that the above copyright notice appear in all copies and
+that both that copyright notice and this permission notice appear in supporting documentation.
+CERN makes no representations about the suitability of this software for any purpose.
+It is provided "as is" without expressed or implied warranty.
+ */
+package cern.colt.matrix.tdouble.impl;
+
+import cern.colt.ConcurrencyTuning;
+import cern.colt.list.tdouble.DoubleArrayList;
+import cern.colt.list.tint.IntArrayList;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+/**
+ * Symmetric sparse 2-d matrix holding <tt>double</tt> elements, of which only
+ * the upper triangle is stored. First see the <a
+ * href="package-summary.html">package summary</a> and javadoc <a
+ * href="package-tree.html">tree view</a> to get the broad picture.
+ * <p>
+ * <b>Implementation:</b>
+ * <p>
+ * The cells <tt>(row, column)</tt> with <tt>row &lt;= column</tt> are held by
+ * a {@link SparseRCDoubleMatrix2D}, and cell <tt>(column, row)</tt> is the
+ * same cell: setting one sets the other, and the <tt>assign</tt> methods that
+ * combine a cell with its old value visit each pair of cells once. This halves
+ * the memory and the memory traffic of <tt>zMult</tt> for symmetric systems,
+ * such as those solved with
+ * {@link cern.colt.matrix.tdouble.algo.solver.DoubleCG} and
+ * {@link cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleICC}, or
+ * decomposed with
+ * {@link cern.colt.matrix.tdouble.algo.decomposition.SparseDoubleCholeskyDecomposition}.
+ * <tt>zMult</tt> of a large matrix is computed by pieces with the same number
+ * of stored nonzeros; every piece adds the contributions of the lower triangle
+ * into its own range of a buffer, and the ranges are summed concurrently.
+ * <p>
+ * <b>Memory requirements:</b>
+ * <p>
+ * <tt>memory [bytes] = 4*rows + 12 * nonZeros</tt>, where <tt>nonZeros</tt>
+ * counts the stored cells of the upper triangle, plus the buffer of a
+ * concurrent <tt>zMult</tt>, which is kept with the matrix and holds for every
+ * piece the rows from its first row to the largest column index in it.
+ */
+public class SymmetricSparseRCDoubleMatrix2D extends WrapperDoubleMatrix2D {
+    private static final long serialVersionUID = 1L;
+
+    /*
+     * The upper triangle, including the diagonal.
+     */
+    protected SparseRCDoubleMatrix2D upper;
+
+    /*
+     * Cached partition of the rows for concurrent matrix-vector products.
+     */
+    private transient volatile NonzeroPartition partition;
+
+    /**
+     * Constructs a matrix with a given number of rows and columns. All entries
+     * are initially <tt>0</tt>.
+     *
+     * @param n
+     *            the number of rows and columns the matrix shall have.
+     * @throws IllegalArgumentException
+     *             if <tt>n < 0</tt>.
+     */
+    public SymmetricSparseRCDoubleMatrix2D(int n) {
+        this(new SparseRCDoubleMatrix2D(n, n));
+    }
+
+    /**
+     * Constructs a matrix with the upper triangle of the given matrix, which is
+     * assumed to be symmetric; its lower triangle is not read. The values are
+     * copied.
+     *
+     * @param A
+     *            the matrix to convert.
+     * @throws IllegalArgumentException
+     *             if <tt>A</tt> is not square.
+     */
+    public SymmetricSparseRCDoubleMatrix2D(DoubleMatrix2D A) {
+        this(upperTriangle(A));
+    }
+
+    /**
+     * Constructs a matrix with given parameters. The arrays are not copied.
+     *
+     * @param n
+     *            the number of rows and columns the matrix shall have.
+     * @param rowPointers
+     *            row pointers of the upper triangle
+     * @param columnIndexes
+     *            column indexes of the upper triangle
+     * @param values
+     *            numerical values of the upper triangle
+     * @throws IllegalArgumentException
+     *             if <tt>rowPointers.length != n + 1</tt> or if a column
+     *             index lies outside the upper triangle.
+     */
+    public SymmetricSparseRCDoubleMatrix2D(int n, int[] rowPointers, int[] columnIndexes, double[] values) {
+        this(new SparseRCDoubleMatrix2D(n, n, rowPointers, columnIndexes, values));
+        for (int i = 0; i < n; i++) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                if (columnIndexes[k] < i || columnIndexes[k] >= n)
+                    throw new IllegalArgumentException("column index " + columnIndexes[k] + " of row " + i
+                            + " outside the upper triangle");
+            }
+        }
+    }
+
+    /*
+     * Constructs a matrix holding the given upper triangle, which is not
+     * copied.
+     */
+    private SymmetricSparseRCDoubleMatrix2D(SparseRCDoubleMatrix2D upper) {
+        super(null);
+        try {
+            setUp(upper.rows(), upper.columns());
+        } catch (IllegalArgumentException exc) { // we can hold rows*columns>Integer.MAX_VALUE cells !
+            if (!"matrix too large".equals(exc.getMessage()))
+                throw exc;
+        }
+        this.upper = upper;
+    }
+
+    public DoubleMatrix2D assign(double value) {
+        if (value != 0)
+            return super.assign(value);
+        markModified();
+        upper.assign(0);
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
+        if (function.apply(0) == 0) {
+            double[] values = upper.getValues();
+            for (int k = 0, nnz = upper.getRowPointers()[rows]; k < nnz; k++) {
+                values[k] = function.apply(values[k]);
+            }
+        } else {
+            for (int i = 0; i < rows; i++) {
+                for (int j = i; j < columns; j++) {
+                    upper.setQuick(i, j, function.apply(upper.getQuick(i, j)));
+                }
+            }
+        }
+        return this;
+    }
+
+    public DoubleMatrix2D assign(final cern.colt.function.tdouble.DoubleProcedure cond,
+            final cern.colt.function.tdouble.DoubleFunction function) {
+        markModified();
+        if (!cond.apply(0) || function.apply(0) == 0) {
+            // the cells that are not stored keep their value
+            double[] values = upper.getValues();
+            for (int k = 0, nnz = upper.getRowPointers()[rows]; k < nnz; k++) {
+                if (cond.apply(values[k]))
+                    values[k] = function.apply(values[k]);
+            }
+        } else {
+            for (int i = 0; i < rows; i++) {
+                for (int j = i; j < columns; j++) {
+                    double value = upper.getQuick(i, j);
+                    if (cond.apply(value))
+                        upper.setQuick(i, j, function.apply(value));
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Assigns the result of a function to each cell of the upper triangle;
+     * only the upper triangle of <tt>y</tt> is read.
+     */
+    public DoubleMatrix2D assign(final DoubleMatrix2D y,
+            final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        checkShape(y);
+        markModified();
+        if (function.apply(0, 0) == 0) {
+            // only the stored cells and the nonzeros of y can change; the
+            // cells that y adds are collected before the stored ones change
+            final IntArrayList rowList = new IntArrayList();
+            final IntArrayList columnList = new IntArrayList();
+            final DoubleArrayList valueList = new DoubleArrayList();
+            y.forEachNonZero(new cern.colt.function.tdouble.IntIntDoubleFunction() {
+                public double apply(int i, int j, double value) {
+                    if (i <= j && upper.getQuick(i, j) == 0) {
+                        rowList.add(i);
+                        columnList.add(j);
+                        valueList.add(function.apply(0, value));
+                    }
+                    return value;
+                }
+            });
+            int[] rowPointers = upper.getRowPointers();
+            int[] columnIndexes = upper.getColumnIndexes();
+            double[] values = upper.getValues();
+            for (int i = 0; i < rows; i++) {
+                for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                    values[k] = function.apply(values[k], y.getQuick(i, columnIndexes[k]));
+                }
+            }
+            for (int k = 0; k < rowList.size(); k++) {
+                upper.setQuick(rowList.getQuick(k), columnList.getQuick(k), valueList.getQuick(k));
+            }
+        } else {
+            for (int i = 0; i < rows; i++) {
+                for (int j = i; j < columns; j++) {
+                    upper.setQuick(i, j, function.apply(upper.getQuick(i, j), y.getQuick(i, j)));
+                }
+            }
+        }
+        return this;
+    }
+
+    public int cardinality() {
+        int[] rowPointers = upper.getRowPointers();
+        int[] columnIndexes = upper.getColumnIndexes();
+        int cardinality = 2 * rowPointers[rows];
+        for (int i = 0; i < rows; i++) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                if (columnIndexes[k] == i)
+                    cardinality--;
+            }
+        }
+        return cardinality;
+    }
+
+    public DoubleMatrix2D copy() {
+        return new SymmetricSparseRCDoubleMatrix2D((SparseRCDoubleMatrix2D) upper.copy());
+    }
+
+    public double[] elements() {
+        return upper.getValues();
+    }
+
+    /**
+     * Applies the function to the nonzero cells of both triangles. The function
+     * is called for both cells of a stored entry off the diagonal with the same
+     * value, and the value it returns for the cell of the upper triangle is
+     * stored.
+     */
+    public DoubleMatrix2D forEachNonZero(final cern.colt.function.tdouble.IntIntDoubleFunction function) {
+        if (!isFrozen())
+            markModified();
+        int[] rowPointers = upper.getRowPointers();
+        int[] columnIndexes = upper.getColumnIndexes();
+        double[] values = upper.getValues();
+        for (int i = 0; i < rows; i++) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                int j = columnIndexes[k];
+                double value = values[k];
+                if (value != 0) {
+                    double r = function.apply(i, j, value);
+                    if (j != i)
+                        function.apply(j, i, value);
+                    if (Double.doubleToLongBits(r) != Double.doubleToLongBits(value)) {
+                        checkNotFrozen();
+                        values[k] = r;
+                    }
+                }
+            }
+        }
+        return this;
+    }
+
+    public double getQuick(int row, int column) {
+        return row <= column ? upper.getQuick(row, column) : upper.getQuick(column, row);
+    }
+
+    /**
+     * Returns a new matrix in compressed row form that has the same elements
+     * as this matrix, with both triangles and sorted column indexes.
+     *
+     * @return this matrix in a compressed row form.
+     */
+    public SparseRCDoubleMatrix2D getRowCompressed() {
+        int[] rowPointers = upper.getRowPointers();
+        int[] columnIndexes = upper.getColumnIndexes();
+        double[] values = upper.getValues();
+
+        // row j holds the strictly lower entries (j, i) before the upper ones
+        int[] rowPointersR = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            rowPointersR[i + 1] += rowPointers[i + 1] - rowPointers[i];
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                if (columnIndexes[k] != i)
+                    rowPointersR[columnIndexes[k] + 1]++;
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            rowPointersR[i + 1] += rowPointersR[i];
+        }
+        int[] columnIndexesR = new int[rowPointersR[rows]];
+        double[] valuesR = new double[rowPointersR[rows]];
+        int[] positions = new int[rows];
+        System.arraycopy(rowPointersR, 0, positions, 0, rows);
+        for (int i = 0; i < rows; i++) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                int j = columnIndexes[k];
+                if (j != i) {
+                    columnIndexesR[positions[j]] = i;
+                    valuesR[positions[j]++] = values[k];
+                }
+            }
+        }
+        for (int i = 0; i < rows; i++) {
+            int length = rowPointers[i + 1] - rowPointers[i];
+            System.arraycopy(columnIndexes, rowPointers[i], columnIndexesR, positions[i], length);
+            System.arraycopy(values, rowPointers[i], valuesR, positions[i], length);
+            sort(columnIndexesR, valuesR, positions[i], rowPointersR[i + 1]);
+        }
+        SparseRCDoubleMatrix2D R = new SparseRCDoubleMatrix2D(rows, columns, rowPointersR, columnIndexesR, valuesR);
+        R.columnIndexesSorted = true;
+        return R;
+    }
+
+    /**
+     * Returns the upper triangle, including the diagonal, which holds the
+     * elements of this matrix. Modifying it modifies this matrix, and both
+     * share the version stamp; the cells below its diagonal must stay zero.
+     *
+     * @return the upper triangle.
+     */
+    public SparseRCDoubleMatrix2D getUpperTriangle() {
+        return upper;
+    }
+
+    public long getVersion() {
+        return upper.getVersion();
+    }
+
+    public boolean isFrozen() {
+        return upper.isFrozen();
+    }
+
+    public DoubleMatrix2D like(int rows, int columns) {
+        return new SparseDoubleMatrix2D(rows, columns);
+    }
+
+    public DoubleMatrix1D like1D(int size) {
+        return new SparseDoubleMatrix1D(size);
+    }
+
+    public void markModified() {
+        upper.markModified();
+    }
+
+    public void setQuick(int row, int column, double value) {
+        markModified();
+        if (row <= column)
+            upper.setQuick(row, column, value);
+        else
+            upper.setQuick(column, row, value);
+    }
+
+    public DoubleMatrix1D zMult(DoubleMatrix1D y, DoubleMatrix1D z, final double alpha, final double beta,
+            final boolean transposeA) {
+        if (z != null)
+            z.markModified();
+        // A' = A
+        boolean ignore = (z == null);
+        if (z == null)
+            z = new DenseDoubleMatrix1D(rows);
+        if (columns != y.size() || rows > z.size())
+            throw new IllegalArgumentException("Incompatible args: " + toStringShort() + ", " + y.toStringShort()
+                    + ", " + z.toStringShort());
+
+        final double[] elementsY;
+        final int zeroY;
+        final int strideY;
+        if (y instanceof DenseDoubleMatrix1D) {
+            elementsY = ((DenseDoubleMatrix1D) y).elements;
+            zeroY = (int) y.index(0);
+            strideY = y.stride();
+        } else {
+            elementsY = y.toArray();
+            zeroY = 0;
+            strideY = 1;
+        }
+        DenseDoubleMatrix1D zz = (z instanceof DenseDoubleMatrix1D) ? (DenseDoubleMatrix1D) z
+                : new DenseDoubleMatrix1D(z.toArray());
+        final double[] elementsZ = zz.elements;
+        final int zeroZ = (int) zz.index(0);
+        final int strideZ = zz.stride();
+        int[] rowPointers = upper.getRowPointers();
+        int[] columnIndexes = upper.getColumnIndexes();
+        double[] values = upper.getValues();
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+
+        if ((nthreads > 1) && (rowPointers[rows] >= ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.SPMV))) {
+            getPartition(nthreads).symmetric(columnIndexes, values, elementsY, zeroY, strideY, elementsZ, zeroZ,
+                    strideZ, alpha, ignore ? 0 : beta);
+        } else {
+            if (ignore || beta == 0) {
+                zz.assign(0);
+            } else if (beta != 1) {
+                zz.assign(cern.jet.math.tdouble.DoubleFunctions.mult(beta));
+            }
+            for (int i = 0; i < rows; i++) {
+                double yElem = alpha * elementsY[zeroY + strideY * i];
+                double sum = 0;
+                for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                    int j = columnIndexes[k];
+                    sum += values[k] * elementsY[zeroY + strideY * j];
+                    if (j != i)
+                        elementsZ[zeroZ + strideZ * j] += values[k] * yElem;
+                }
+                elementsZ[zeroZ + strideZ * i] += alpha * sum;
+            }
+        }
+        if (zz != z) {
+            z.assign(zz);
+        }
+        return z;
+    }
+
+    protected DoubleMatrix2D getContent() {
+        return this;
+    }
+
+    /*
+     * Returns the partition of the rows into the given number of pieces with
+     * the same number of stored nonzeros, computing it if the structure has
+     * changed.
+     */
+    private NonzeroPartition getPartition(int parts) {
+        NonzeroPartition p = NonzeroPartition.get(partition, upper.getRowPointers(), rows, getVersion(), parts);
+        partition = p;
+        return p;
+    }
+
+    /*
+     * Sorts the entries from to to - 1 by their index; setQuick appends to the
+     * rows of the upper triangle, which are short and mostly sorted.
+     */
+    private static void sort(int[] indexes, double[] values, int from, int to) {
+        for (int k = from + 1; k < to; k++) {
+            int index = indexes[k];
+            double value = values[k];
+            int l = k - 1;
+            for (; l >= from && indexes[l] > index; l--) {
+                indexes[l + 1] = indexes[l];
+                values[l + 1] = values[l];
+            }
+            indexes[l + 1] = index;
+            values[l + 1] = value;
+        }
+    }
+
+    /*
+     * Returns the upper triangle of the given square matrix as a compressed
+     * row matrix with sorted column indexes.
+     */
+    private static SparseRCDoubleMatrix2D upperTriangle(DoubleMatrix2D A) {
+        if (A.rows() != A.columns())
+            throw new IllegalArgumentException("Matrix must be square: " + A.toStringShort());
+        int n = A.rows();
+        if (A instanceof SparseRCDoubleMatrix2D) {
+            SparseRCDoubleMatrix2D R = (SparseRCDoubleMatrix2D) A;
+            if (!R.columnIndexesSorted) {
+                R = (SparseRCDoubleMatrix2D) R.copy();
+                R.sortColumnIndexes();
+            }
+            int[] rowPointers = R.getRowPointers();
+            int[] columnIndexes = R.getColumnIndexes();
+            double[] values = R.getValues();
+            int[] rowPointersU = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                int k = rowPointers[i];
+                while (k < rowPointers[i + 1] && columnIndexes[k] < i)
+                    k++;
+                rowPointersU[i + 1] = rowPointersU[i] + rowPointers[i + 1] - k;
+            }
+            int[] columnIndexesU = new int[rowPointersU[n]];
+            double[] valuesU = new double[rowPointersU[n]];
+            for (int i = 0; i < n; i++) {
+                int length = rowPointersU[i + 1] - rowPointersU[i];
+                int k = rowPointers[i + 1] - length;
+                System.arraycopy(columnIndexes, k, columnIndexesU, rowPointersU[i], length);
+                System.arraycopy(values, k, valuesU, rowPointersU[i], length);
+            }
+            SparseRCDoubleMatrix2D U = new SparseRCDoubleMatrix2D(n, n, rowPointersU, columnIndexesU, valuesU);
+            U.columnIndexesSorted = true;
+            return U;
+        }
+        final SparseDoubleAssembler assembler = new SparseDoubleAssembler(n, n);
+        A.forEachNonZero(new cern.colt.function.tdouble.IntIntDoubleFunction() {
+            public double apply(int i, int j, double value) {
+                if (i <= j)
+                    assembler.add(i, j, value);
+                return value;
+            }
+        });
+        return assembler.getRowCompressed();
+    }
+}
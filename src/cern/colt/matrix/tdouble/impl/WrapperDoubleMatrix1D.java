@@ -58,11 +58,44 @@ public class WrapperDoubleMatrix1D extends DoubleMatrix1D {
     }
 
     public DoubleMatrix2D reshape(int rows, int columns) {
-        throw new IllegalArgumentException("This method is not supported.");
+        if (rows * columns != size) {
+            throw new IllegalArgumentException("rows*columns != size");
+        }
+        DoubleMatrix2D M = like2D(rows, columns);
+        int idx = 0;
+        for (int c = 0; c < columns; c++) {
+            for (int r = 0; r < rows; r++) {
+                M.setQuick(r, c, getQuick(idx++));
+            }
+        }
+        return M;
     }
 
     public DoubleMatrix3D reshape(int slices, int rows, int columns) {
-        throw new IllegalArgumentException("This method is not supported.");
+        if (slices * rows * columns != size) {
+            throw new IllegalArgumentException("slices*rows*columns != size");
+        }
+        DoubleMatrix3D M = like3D(slices, rows, columns);
+        int idx = 0;
+        for (int s = 0; s < slices; s++) {
+            for (int c = 0; c < columns; c++) {
+                for (int r = 0; r < rows; r++) {
+                    M.setQuick(s, r, c, getQuick(idx++));
+                }
+            }
+        }
+        return M;
+    }
+
+    /**
+     * Returns an empty 3-d matrix of the storage type of the wrapped matrix,
+     * used by {@link #reshape(int, int, int)}.
+     */
+    DoubleMatrix3D like3D(int slices, int rows, int columns) {
+        if (content instanceof WrapperDoubleMatrix1D) {
+            return ((WrapperDoubleMatrix1D) content).like3D(slices, rows, columns);
+        }
+        return new DenseDoubleMatrix3D(slices, rows, columns);
     }
 
     public synchronized void setQuick(int index, double value) {
@@ -48,6 +48,7 @@ public class WrapperDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final double[] values) {
+        checkNotFrozen();
         if (content instanceof DiagonalDoubleMatrix2D) {
             int dlength = ((DiagonalDoubleMatrix2D) content).dlength;
             final double[] elems = ((DiagonalDoubleMatrix2D) content).elements;
@@ -84,6 +85,7 @@ public class WrapperDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final float[] values) {
+        checkNotFrozen();
         if (content instanceof DiagonalDoubleMatrix2D) {
             int dlength = ((DiagonalDoubleMatrix2D) content).dlength;
             final double[] elems = ((DiagonalDoubleMatrix2D) content).elements;
@@ -120,6 +122,7 @@ public class WrapperDoubleMatrix2D extends DoubleMatrix2D {
     }
 
     public DoubleMatrix2D assign(final DoubleMatrix2D y, final cern.colt.function.tdouble.DoubleDoubleFunction function) {
+        checkNotFrozen();
         checkShape(y);
         if (y instanceof WrapperDoubleMatrix2D) {
             IntArrayList rowList = new IntArrayList();
@@ -1022,6 +1025,28 @@ public class WrapperDoubleMatrix2D extends DoubleMatrix2D {
         return content;
     }
 
+    public long getVersion() {
+        if (content != null && content != this) {
+            return content.getVersion();
+        }
+        return super.getVersion();
+    }
+
+    public boolean isFrozen() {
+        if (content != null && content != this) {
+            return content.isFrozen();
+        }
+        return super.isFrozen();
+    }
+
+    public void markModified() {
+        if (content != null && content != this) {
+            content.markModified();
+        } else {
+            super.markModified();
+        }
+    }
+
     protected DoubleMatrix1D like1D(int size, int offset, int stride) {
         throw new InternalError(); // should never get called
     }
@@ -24,6 +24,8 @@ public class AllTests {
         suite.addTest(AllFComplexMatrixTests.suite());
         suite.addTest(AllLongMatrixTests.suite());
         suite.addTest(AllIntMatrixTests.suite());
+        suite.addTestSuite(ForkJoinUtilsTest.class);
+        suite.addTestSuite(ConcurrencyTuningTest.class);
         return suite;
     }
 
@@ -0,0 +1,120 @@
+package cern.colt;
+
+import java.io.File;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+import cern.colt.matrix.tdouble.algo.DoubleConcurrencyCalibration;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class ConcurrencyTuningTest extends TestCase {
+
+    private Properties profile;
+
+    protected void setUp() throws Exception {
+        profile = ConcurrencyTuning.toProperties();
+        ConcurrencyTuning.reset();
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.setProperties(profile);
+    }
+
+    public void testDefaults() {
+        assertEquals(ConcurrencyUtils.getThreadsBeginN_1D(), ConcurrencyTuning
+                .getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN));
+        assertEquals(ConcurrencyUtils.getThreadsBeginN_2D(), ConcurrencyTuning
+                .getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN));
+        assertEquals(7, ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, 7));
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ASSIGN, 100);
+        ConcurrencyTuning.setGrain(ConcurrencyTuning.ASSIGN, 10);
+        assertEquals(100, ConcurrencyTuning.getThreadsBeginN_1D(ConcurrencyTuning.ASSIGN));
+        assertEquals(100, ConcurrencyTuning.getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN));
+        assertEquals(10, ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, 7));
+        assertEquals(ConcurrencyUtils.getThreadsBeginN_2D(), ConcurrencyTuning
+                .getThreadsBeginN_2D(ConcurrencyTuning.AGGREGATE));
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.FFT_2THREADS, 12345);
+        assertEquals(12345, ConcurrencyUtils.getThreadsBeginN_1D_FFT_2Threads());
+        ConcurrencyTuning.reset();
+        assertEquals(ConcurrencyUtils.getThreadsBeginN_2D(), ConcurrencyTuning
+                .getThreadsBeginN_2D(ConcurrencyTuning.ASSIGN));
+        assertEquals(8192, ConcurrencyUtils.getThreadsBeginN_1D_FFT_2Threads());
+    }
+
+    public void testExternalFFTThresholds() {
+        int fft2 = ConcurrencyUtils.getThreadsBeginN_1D_FFT_2Threads();
+        int fft4 = ConcurrencyUtils.getThreadsBeginN_1D_FFT_4Threads();
+        try {
+            // thresholds set directly in JTransforms survive a reset
+            ConcurrencyUtils.setThreadsBeginN_1D_FFT_2Threads(1000);
+            ConcurrencyUtils.setThreadsBeginN_1D_FFT_4Threads(2000);
+            ConcurrencyTuning.reset();
+            assertEquals(1000, ConcurrencyUtils.getThreadsBeginN_1D_FFT_2Threads());
+            assertEquals(2000, ConcurrencyUtils.getThreadsBeginN_1D_FFT_4Threads());
+            // a threshold set here is restored to the external value
+            ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.FFT_2THREADS, 3000);
+            assertEquals(3000, ConcurrencyUtils.getThreadsBeginN_1D_FFT_2Threads());
+            ConcurrencyTuning.setProperties(new Properties());
+            assertEquals(1000, ConcurrencyUtils.getThreadsBeginN_1D_FFT_2Threads());
+            assertEquals(2000, ConcurrencyUtils.getThreadsBeginN_1D_FFT_4Threads());
+        } finally {
+            ConcurrencyUtils.setThreadsBeginN_1D_FFT_2Threads(fft2);
+            ConcurrencyUtils.setThreadsBeginN_1D_FFT_4Threads(fft4);
+        }
+    }
+
+    public void testSaveLoad() throws Exception {
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 5000);
+        ConcurrencyTuning.setGrain(ConcurrencyTuning.SPMV, 2500);
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ZMULT, Integer.MAX_VALUE);
+        File file = File.createTempFile("tuning", ".properties");
+        try {
+            ConcurrencyTuning.save(file);
+            ConcurrencyTuning.reset();
+            assertEquals(-1, ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.SPMV, -1));
+            ConcurrencyTuning.load(file);
+        } finally {
+            file.delete();
+        }
+        assertEquals(5000, ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.SPMV, -1));
+        assertEquals(2500, ConcurrencyTuning.getGrain(ConcurrencyTuning.SPMV, -1));
+        assertEquals(Integer.MAX_VALUE, ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ZMULT, -1));
+        assertEquals(-1, ConcurrencyTuning.getGrain(ConcurrencyTuning.ZMULT, -1));
+    }
+
+    public void testIllegalProfile() {
+        Properties properties = new Properties();
+        properties.setProperty(ConcurrencyTuning.ASSIGN + ".threadsBeginN", "many");
+        try {
+            ConcurrencyTuning.setProperties(properties);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testTunedKernels() {
+        // a matrix far below the default threshold runs through the parallel
+        // code path and still computes the right result
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        ConcurrencyUtils.setNumberOfThreads(4);
+        try {
+            ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ASSIGN, 1);
+            ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.AGGREGATE, 1);
+            ConcurrencyTuning.setGrain(ConcurrencyTuning.ASSIGN, 20);
+            DenseDoubleMatrix2D A = new DenseDoubleMatrix2D(31, 7);
+            A.assign(2).assign(DoubleFunctions.square);
+            assertEquals(31 * 7 * 4, A.zSum(), 0);
+            assertEquals(31 * 7 * 16, A.aggregate(DoubleFunctions.plus, DoubleFunctions.square), 0);
+        } finally {
+            ConcurrencyUtils.setNumberOfThreads(nthreads);
+        }
+    }
+
+    public void testCalibrate() {
+        int threshold = DoubleConcurrencyCalibration.calibrate(ConcurrencyTuning.ASSIGN, 1 << 12);
+        assertTrue(threshold >= 1);
+        assertEquals(threshold, ConcurrencyTuning.getThreadsBeginN(ConcurrencyTuning.ASSIGN, -1));
+        assertEquals(Math.max(1, threshold / 2), ConcurrencyTuning.getGrain(ConcurrencyTuning.ASSIGN, -1));
+    }
+}
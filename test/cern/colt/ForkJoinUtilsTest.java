@@ -0,0 +1,117 @@
+package cern.colt;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import junit.framework.TestCase;
+import cern.colt.function.tdouble.DoubleComparator;
+import cern.jet.math.tdouble.DoubleFunctions;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+public class ForkJoinUtilsTest extends TestCase {
+
+    private static final int N = 100003;
+
+    private int nthreads;
+
+    protected void setUp() throws Exception {
+        nthreads = ConcurrencyUtils.getNumberOfThreads();
+        ConcurrencyUtils.setNumberOfThreads(4);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyUtils.setNumberOfThreads(nthreads);
+    }
+
+    public void testInvoke() {
+        final AtomicIntegerArray visits = new AtomicIntegerArray(N);
+        ForkJoinUtils.invoke(0, N, 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int from, int to) {
+                assertTrue(from < to);
+                for (int i = from; i < to; i++) {
+                    visits.incrementAndGet(i);
+                }
+            }
+        });
+        for (int i = 0; i < N; i++) {
+            assertEquals(1, visits.get(i));
+        }
+    }
+
+    public void testInvokeReduction() {
+        double sum = ForkJoinUtils.invoke(0, N, 1, new ForkJoinUtils.DoubleRangeFunction() {
+            public double apply(int from, int to) {
+                double a = 0;
+                for (int i = from; i < to; i++) {
+                    a += i;
+                }
+                return a;
+            }
+        }, DoubleFunctions.plus);
+        assertEquals((double) N * (N - 1) / 2, sum, 0);
+        double max = ForkJoinUtils.invoke(0, N, 1000, new ForkJoinUtils.DoubleRangeFunction() {
+            public double apply(int from, int to) {
+                assertTrue(to - from >= 1000);
+                return to - 1;
+            }
+        }, DoubleFunctions.max);
+        assertEquals(N - 1, max, 0);
+    }
+
+    public void testNestedInvoke() {
+        // every leaf starts another parallel loop; this must neither deadlock
+        // nor lose work
+        final int outer = 64;
+        final int inner = 5000;
+        final AtomicIntegerArray visits = new AtomicIntegerArray(outer * inner);
+        ForkJoinUtils.invoke(0, outer, 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    final int offset = i * inner;
+                    ForkJoinUtils.invoke(0, inner, 1, new ForkJoinUtils.RangeProcedure() {
+                        public void apply(int from, int to) {
+                            for (int j = from; j < to; j++) {
+                                visits.incrementAndGet(offset + j);
+                            }
+                        }
+                    });
+                }
+            }
+        });
+        for (int i = 0; i < outer * inner; i++) {
+            assertEquals(1, visits.get(i));
+        }
+    }
+
+    public void testException() {
+        try {
+            ForkJoinUtils.invoke(0, N, 1, new ForkJoinUtils.RangeProcedure() {
+                public void apply(int from, int to) {
+                    if (to == N) {
+                        throw new IllegalStateException();
+                    }
+                }
+            });
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    public void testParallelQuickSort() {
+        Random r = new Random(0);
+        double[] x = new double[N];
+        for (int i = 0; i < N; i++) {
+            x[i] = r.nextInt(1000);
+        }
+        double[] expected = x.clone();
+        java.util.Arrays.sort(expected);
+        ParallelQuickSort.quickSort(x, 0, N, new DoubleComparator() {
+            public int compare(double a, double b) {
+                return a < b ? -1 : (a == b ? 0 : 1);
+            }
+        }, 8);
+        for (int i = 0; i < N; i++) {
+            assertEquals(expected[i], x[i], 0);
+        }
+    }
+}
@@ -2,7 +2,19 @@ package cern.colt.matrix.tdouble;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import cern.colt.matrix.tdouble.algo.DoubleExpressionTest;
+import cern.colt.matrix.tdouble.algo.DoubleFactorizationCacheTest;
+import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleCholeskyDecompositionTest;
+import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleLUDecompositionQuickTest;
+import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleQRDecompositionTest;
+import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleTileLUDecompositionTest;
+import cern.colt.matrix.tdouble.algo.decomposition.RandomizedDoubleSingularValueDecompositionTest;
+import cern.colt.matrix.tdouble.algo.decomposition.SparseDoubleBlockSolverTest;
+import cern.colt.matrix.tdouble.algo.decomposition.SparseDoubleEigenvalueDecompositionTest;
 import cern.colt.matrix.tdouble.algo.solver.AllDoubleMatrixSolverTests;
+import cern.colt.matrix.tdouble.impl.BandDoubleMatrix2DTest;
+import cern.colt.matrix.tdouble.impl.BlockSparseRCDoubleMatrix2DTest;
+import cern.colt.matrix.tdouble.impl.DenseBatchDoubleMatrix2DTest;
 import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2DTest;
 import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2DViewTest;
 import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1DTest;
@@ -17,10 +29,24 @@ import cern.colt.matrix.tdouble.impl.DenseLargeDoubleMatrix3DTest;
 import cern.colt.matrix.tdouble.impl.DenseLargeDoubleMatrix3DViewTest;
 import cern.colt.matrix.tdouble.impl.DiagonalDoubleMatrix2DTest;
 import cern.colt.matrix.tdouble.impl.DiagonalDoubleMatrix2DViewTest;
+import cern.colt.matrix.tdouble.impl.FrozenSparseDoubleMatrix2DTest;
+import cern.colt.matrix.tdouble.impl.MappedDoubleMatrix2DTest;
+import cern.colt.matrix.tdouble.impl.MappedDoubleMatrix2DViewTest;
+import cern.colt.matrix.tdouble.impl.NonzeroPartitionTest;
+import cern.colt.matrix.tdouble.impl.OffHeapDoubleMatrix1DTest;
+import cern.colt.matrix.tdouble.impl.OffHeapDoubleMatrix1DViewTest;
+import cern.colt.matrix.tdouble.impl.OffHeapDoubleMatrix2DTest;
+import cern.colt.matrix.tdouble.impl.OffHeapDoubleMatrix2DViewTest;
+import cern.colt.matrix.tdouble.impl.OffHeapDoubleMatrix3DTest;
+import cern.colt.matrix.tdouble.impl.OffHeapDoubleMatrix3DViewTest;
+import cern.colt.matrix.tdouble.impl.PackedSymmetricDoubleMatrix2DTest;
+import cern.colt.matrix.tdouble.impl.PackedTriangularDoubleMatrix2DTest;
+import cern.colt.matrix.tdouble.impl.SlicedEllpackDoubleMatrix2DTest;
 import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2DTest;
 import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2DViewTest;
 import cern.colt.matrix.tdouble.impl.SparseCCMDoubleMatrix2DTest;
 import cern.colt.matrix.tdouble.impl.SparseCCMDoubleMatrix2DViewTest;
+import cern.colt.matrix.tdouble.impl.SparseDoubleAssemblerTest;
 import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix1DTest;
 import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix1DViewTest;
 import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix2DTest;
@@ -31,6 +57,7 @@ import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2DTest;
 import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2DViewTest;
 import cern.colt.matrix.tdouble.impl.SparseRCMDoubleMatrix2DTest;
 import cern.colt.matrix.tdouble.impl.SparseRCMDoubleMatrix2DViewTest;
+import cern.colt.matrix.tdouble.impl.SymmetricSparseRCDoubleMatrix2DTest;
 
 public class AllDoubleMatrixTests {
 
@@ -40,6 +67,8 @@ public class AllDoubleMatrixTests {
         suite.addTestSuite(DenseDoubleMatrix1DViewTest.class);
         suite.addTestSuite(SparseDoubleMatrix1DTest.class);
         suite.addTestSuite(SparseDoubleMatrix1DViewTest.class);
+        suite.addTestSuite(OffHeapDoubleMatrix1DTest.class);
+        suite.addTestSuite(OffHeapDoubleMatrix1DViewTest.class);
 
         suite.addTestSuite(DenseDoubleMatrix2DTest.class);
         suite.addTestSuite(DenseDoubleMatrix2DViewTest.class);
@@ -47,6 +76,28 @@ public class AllDoubleMatrixTests {
         suite.addTestSuite(DenseColumnDoubleMatrix2DViewTest.class);
         suite.addTestSuite(DenseLargeDoubleMatrix2DTest.class);
         suite.addTestSuite(DenseLargeDoubleMatrix2DViewTest.class);
+        suite.addTestSuite(OffHeapDoubleMatrix2DTest.class);
+        suite.addTestSuite(OffHeapDoubleMatrix2DViewTest.class);
+        suite.addTestSuite(MappedDoubleMatrix2DTest.class);
+        suite.addTestSuite(MappedDoubleMatrix2DViewTest.class);
+        suite.addTestSuite(DenseBatchDoubleMatrix2DTest.class);
+        suite.addTestSuite(PackedSymmetricDoubleMatrix2DTest.class);
+        suite.addTestSuite(PackedTriangularDoubleMatrix2DTest.class);
+        suite.addTestSuite(BandDoubleMatrix2DTest.class);
+        suite.addTestSuite(DenseDoubleLUDecompositionQuickTest.class);
+        suite.addTestSuite(DenseDoubleTileLUDecompositionTest.class);
+        suite.addTestSuite(RandomizedDoubleSingularValueDecompositionTest.class);
+        suite.addTestSuite(SparseDoubleEigenvalueDecompositionTest.class);
+        suite.addTestSuite(DoubleFactorizationCacheTest.class);
+        suite.addTestSuite(DenseDoubleCholeskyDecompositionTest.class);
+        suite.addTestSuite(DenseDoubleQRDecompositionTest.class);
+        suite.addTestSuite(SparseDoubleBlockSolverTest.class);
+        suite.addTestSuite(NonzeroPartitionTest.class);
+        suite.addTestSuite(SlicedEllpackDoubleMatrix2DTest.class);
+        suite.addTestSuite(BlockSparseRCDoubleMatrix2DTest.class);
+        suite.addTestSuite(SparseDoubleAssemblerTest.class);
+        suite.addTestSuite(FrozenSparseDoubleMatrix2DTest.class);
+        suite.addTestSuite(SymmetricSparseRCDoubleMatrix2DTest.class);
 
         suite.addTestSuite(SparseDoubleMatrix2DTest.class);
         suite.addTestSuite(SparseDoubleMatrix2DViewTest.class);
@@ -69,6 +120,10 @@ public class AllDoubleMatrixTests {
         suite.addTestSuite(SparseDoubleMatrix3DViewTest.class);
         suite.addTestSuite(DenseLargeDoubleMatrix3DTest.class);
         suite.addTestSuite(DenseLargeDoubleMatrix3DViewTest.class);
+        suite.addTestSuite(OffHeapDoubleMatrix3DTest.class);
+        suite.addTestSuite(OffHeapDoubleMatrix3DViewTest.class);
+
+        suite.addTestSuite(DoubleExpressionTest.class);
 
         suite.addTest(AllDoubleMatrixSolverTests.suite());
 
@@ -1,6 +1,8 @@
 package cern.colt.matrix.tdouble;
 
 import junit.framework.TestCase;
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
 import cern.colt.function.tdouble.DoubleProcedure;
 import cern.colt.list.tdouble.DoubleArrayList;
 import cern.colt.list.tint.IntArrayList;
@@ -605,4 +607,58 @@ public abstract class DoubleMatrix3DTest extends TestCase {
         assertEquals(expected, sum, TOL);
     }
 
+    public void testSpecializedFunctions() {
+        A.assign(DoubleFunctions.minus(0.5));
+        DoubleMatrix3D Acopy = A.copy();
+        DoubleFunction[] functions = { DoubleFunctions.identity, DoubleFunctions.abs, DoubleFunctions.square,
+                DoubleFunctions.mult(-2.5) };
+        DoubleDoubleFunction[] aggrs = { DoubleFunctions.plus, DoubleFunctions.max, DoubleFunctions.min };
+        DoubleDoubleFunction[] functions2 = { DoubleFunctions.plus, DoubleFunctions.minus,
+                DoubleFunctions.plusMultSecond(0.3), DoubleFunctions.plusMultFirst(-2), DoubleFunctions.mult,
+                DoubleFunctions.div, DoubleFunctions.max, DoubleFunctions.min };
+        for (int i = 0; i < aggrs.length; i++) {
+            for (int j = 0; j < functions.length; j++) {
+                double expected = A.aggregate(wrap(aggrs[i]), wrap(functions[j]));
+                assertEquals(expected, A.aggregate(aggrs[i], functions[j]), TOL);
+            }
+        }
+        for (int j = 0; j < functions.length; j++) {
+            DoubleMatrix3D expected = Acopy.copy().assign(wrap(functions[j]));
+            A.assign(Acopy).assign(functions[j]);
+            for (int s = 0; s < A.slices(); s++) {
+                for (int r = 0; r < A.rows(); r++) {
+                    for (int c = 0; c < A.columns(); c++) {
+                        assertEquals(expected.getQuick(s, r, c), A.getQuick(s, r, c), TOL);
+                    }
+                }
+            }
+        }
+        for (int j = 0; j < functions2.length; j++) {
+            DoubleMatrix3D expected = Acopy.copy().assign(B, wrap(functions2[j]));
+            A.assign(Acopy).assign(B, functions2[j]);
+            for (int s = 0; s < A.slices(); s++) {
+                for (int r = 0; r < A.rows(); r++) {
+                    for (int c = 0; c < A.columns(); c++) {
+                        assertEquals(expected.getQuick(s, r, c), A.getQuick(s, r, c), TOL);
+                    }
+                }
+            }
+        }
+    }
+
+    private static DoubleFunction wrap(final DoubleFunction f) {
+        return new DoubleFunction() {
+            public double apply(double a) {
+                return f.apply(a);
+            }
+        };
+    }
+
+    private static DoubleDoubleFunction wrap(final DoubleDoubleFunction f) {
+        return new DoubleDoubleFunction() {
+            public double apply(double a, double b) {
+                return f.apply(a, b);
+            }
+        };
+    }
 }
@@ -0,0 +1,151 @@
+package cern.colt.matrix.tdouble.algo;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.DoubleMatrix3D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix3D;
+import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+public class DoubleExpressionTest extends TestCase {
+
+    private static final DoubleFunctions F = DoubleFunctions.functions;
+
+    private static final double TOL = 1e-10;
+
+    private final Random random = new Random(0);
+
+    protected void setUp() throws Exception {
+        ConcurrencyUtils.setThreadsBeginN_1D(1);
+        ConcurrencyUtils.setThreadsBeginN_2D(1);
+        ConcurrencyUtils.setThreadsBeginN_3D(1);
+    }
+
+    public void testChain1D() {
+        int n = 1234;
+        DoubleMatrix1D A = random1D(n);
+        DoubleMatrix1D B = random1D(n);
+        DoubleMatrix1D C = random1D(n);
+        DoubleMatrix1D Acopy = A.copy();
+        DoubleMatrix1D expected = A.copy().assign(B, F.plus).assign(F.square).assign(C, F.mult);
+        double sum = expected.aggregate(F.plus, F.abs);
+        DoubleExpression e = DoubleExpression.of(A).assign(B, F.plus).assign(F.square).assign(C, F.mult);
+        assertEquals(sum, e.aggregate(F.plus, F.abs), TOL);
+        assertEquals(Acopy, A); // aggregate does not store
+        assertEquals(sum, e.evaluate(F.plus, F.abs), TOL);
+        assertEquals(expected, A);
+    }
+
+    public void testChain2D() {
+        int rows = 57;
+        int columns = 31;
+        DoubleMatrix2D A = random2D(new DenseDoubleMatrix2D(rows, columns));
+        DoubleMatrix2D B = random2D(new DenseColumnDoubleMatrix2D(rows, columns));
+        DoubleMatrix2D C = random2D(new SparseDoubleMatrix2D(rows, columns));
+        DoubleMatrix2D expected = A.copy().assign(B, F.minus).assign(F.mult(2)).assign(C, F.plus)
+                .assign(B, F.plusMultSecond(-2.5));
+        DoubleExpression.of(A).assign(B, F.minus).assign(F.mult(2)).assign(C, F.plus).assign(B,
+                F.plusMultSecond(-2.5)).evaluate();
+        assertTrue(expected.equals(A));
+    }
+
+    public void testViews2D() {
+        DoubleMatrix2D A = random2D(new DenseDoubleMatrix2D(40, 30));
+        DoubleMatrix2D B = random2D(new DenseDoubleMatrix2D(30, 40));
+        DoubleMatrix2D view = A.viewPart(3, 2, 20, 25).viewRowFlip();
+        DoubleMatrix2D other = B.viewDice().viewPart(1, 4, 20, 25).viewStrides(1, 1);
+        DoubleMatrix2D expected = view.copy().assign(other, F.mult);
+        DoubleExpression.of(view).assign(other, F.mult).evaluate();
+        assertTrue(expected.equals(view));
+    }
+
+    public void testChain3D() {
+        DoubleMatrix3D A = new DenseDoubleMatrix3D(7, 11, 13).assign(F.random());
+        DoubleMatrix3D B = new DenseDoubleMatrix3D(7, 11, 13).assign(F.random());
+        DoubleMatrix3D expected = A.copy().assign(B, F.max).assign(F.sqrt);
+        double max = expected.aggregate(F.max, F.identity);
+        assertEquals(max, DoubleExpression.of(A.viewDice(0, 1, 2)).assign(B, F.max).assign(F.sqrt).evaluate(F.max,
+                F.identity), TOL);
+        assertTrue(expected.equals(A));
+    }
+
+    public void testNested() {
+        int n = 3000;
+        DoubleMatrix1D A = random1D(n);
+        DoubleMatrix1D B = random1D(n);
+        DoubleMatrix1D C = random1D(n);
+        DoubleMatrix1D D = random1D(n);
+        DoubleMatrix1D Bcopy = B.copy();
+        DoubleMatrix1D expected = A.copy().assign(B.copy().assign(C.copy().assign(D, F.plus), F.minus), F.mult);
+        DoubleExpression inner = DoubleExpression.of(B).assign(DoubleExpression.of(C).assign(D, F.plus), F.minus);
+        DoubleExpression.of(A).assign(inner, F.mult).evaluate();
+        assertEquals(expected, A);
+        assertEquals(Bcopy, B);
+    }
+
+    public void testAssignTo() {
+        DoubleMatrix2D A = random2D(new DenseDoubleMatrix2D(20, 10));
+        DoubleMatrix2D Acopy = A.copy();
+        DoubleMatrix2D C = new DenseColumnDoubleMatrix2D(20, 10);
+        DoubleExpression e = DoubleExpression.of(A).assign(F.neg);
+        e.assignTo(C);
+        assertTrue(Acopy.equals(A));
+        assertTrue(Acopy.copy().assign(F.neg).equals(C));
+        // evaluating again reads the current values
+        A.assign(1);
+        e.assignTo(C);
+        assertEquals(-1.0, C.getQuick(19, 9), 0);
+    }
+
+    public void testImmutable() {
+        DoubleMatrix1D A = random1D(100);
+        DoubleMatrix1D expected = A.copy().assign(F.plus(1));
+        DoubleExpression e = DoubleExpression.of(A).assign(F.plus(1));
+        e.assign(F.plus(2));
+        e.evaluate();
+        assertEquals(expected, A);
+    }
+
+    public void testEmpty() {
+        DoubleMatrix1D A = new DenseDoubleMatrix1D(0);
+        assertTrue(Double.isNaN(DoubleExpression.of(A).assign(F.square).aggregate(F.plus, F.identity)));
+        DoubleExpression.of(A).assign(F.square).evaluate();
+    }
+
+    public void testIncompatible() {
+        try {
+            DoubleExpression.of(new DenseDoubleMatrix2D(3, 4)).assign(new DenseDoubleMatrix2D(4, 3), F.plus);
+            fail();
+        } catch (IllegalArgumentException exc) {
+        }
+        try {
+            DoubleExpression.of(new DenseDoubleMatrix1D(3)).assignTo(new DenseDoubleMatrix2D(1, 3));
+            fail();
+        } catch (IllegalArgumentException exc) {
+        }
+    }
+
+    private DoubleMatrix1D random1D(int n) {
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(n);
+        for (int i = 0; i < n; i++) {
+            x.setQuick(i, random.nextDouble() - 0.5);
+        }
+        return x;
+    }
+
+    private DoubleMatrix2D random2D(DoubleMatrix2D x) {
+        for (int r = 0; r < x.rows(); r++) {
+            for (int c = 0; c < x.columns(); c++) {
+                x.setQuick(r, c, random.nextDouble() - 0.5);
+            }
+        }
+        return x;
+    }
+}
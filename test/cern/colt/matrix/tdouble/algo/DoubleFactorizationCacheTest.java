@@ -0,0 +1,264 @@
+package cern.colt.matrix.tdouble.algo;
+
+import junit.framework.TestCase;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseLargeDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class DoubleFactorizationCacheTest extends TestCase {
+
+    private static final double TOL = 1e-9;
+
+    public DoubleFactorizationCacheTest(String arg0) {
+        super(arg0);
+    }
+
+    public void testVersion() {
+        DoubleMatrix2D[] matrices = { new DenseDoubleMatrix2D(6, 6), new DenseColumnDoubleMatrix2D(6, 6),
+                new SparseRCDoubleMatrix2D(6, 6), new SparseCCDoubleMatrix2D(6, 6) };
+        for (int i = 0; i < matrices.length; i++) {
+            DoubleMatrix2D A = matrices[i];
+            long v = A.getVersion();
+            assertEquals(v, A.getVersion());
+            A.setQuick(1, 2, 3);
+            v = assertChanged(A, v);
+            A.assign(1);
+            v = assertChanged(A, v);
+            A.assign(DoubleFunctions.mult(2));
+            v = assertChanged(A, v);
+            A.assign(A.copy(), DoubleFunctions.plus);
+            v = assertChanged(A, v);
+            // views share the stamp
+            A.viewPart(1, 1, 3, 3).setQuick(0, 0, 5);
+            v = assertChanged(A, v);
+            A.viewDice().assign(0);
+            v = assertChanged(A, v);
+            A.viewRow(2).setQuick(1, 4);
+            v = assertChanged(A, v);
+            A.viewColumn(3).assign(DoubleFunctions.mult(2));
+            v = assertChanged(A, v);
+            A.viewSelection(new int[] { 0, 1 }, null).assign(7);
+            v = assertChanged(A, v);
+            A.viewSelection(new int[] { 0, 1 }, null).viewRow(1).assign(8);
+            v = assertChanged(A, v);
+            A.zMult(new DenseDoubleMatrix1D(6), A.viewRow(4));
+            v = assertChanged(A, v);
+            DoubleExpression.of(A).assign(DoubleFunctions.plus(1)).evaluate();
+            v = assertChanged(A, v);
+            new DenseDoubleMatrix2D(6, 6).zMult(new DenseDoubleMatrix2D(6, 6), A);
+            v = assertChanged(A, v);
+            A.markModified();
+            v = assertChanged(A, v);
+            // reads and copies do not change it
+            A.copy().setQuick(0, 0, 1);
+            A.getQuick(0, 0);
+            A.zSum();
+            assertEquals(v, A.getVersion());
+        }
+    }
+
+    public void testDenseAlgebra() {
+        int n = 30;
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+        DoubleMatrix1D b = new DenseDoubleMatrix1D(n).assign(DoubleFunctions.random());
+        DoubleFactorizationCache cache = new DoubleFactorizationCache();
+        DenseDoubleAlgebra algebra = new DenseDoubleAlgebra();
+        algebra.setFactorizationCache(cache);
+        assertSame(cache, algebra.getFactorizationCache());
+
+        DoubleMatrix1D x = algebra.solve(A, b);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(8L * n * n + 4L * n, cache.getMemoryUsage());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(x, algebra.solve(A, b));
+        }
+        assertEquals(5, cache.getHitCount());
+        assertSame(algebra.lu(A), algebra.lu(A));
+        assertEquals(algebra.det(A), DenseDoubleAlgebra.DEFAULT.det(A), Math.abs(algebra.det(A)) * 1e-12);
+
+        // a modification invalidates the factors
+        A.setQuick(3, 4, A.getQuick(3, 4) + 1);
+        long misses = cache.getMissCount();
+        x = algebra.solve(A, b);
+        assertEquals(misses + 1, cache.getMissCount());
+        assertEquals(1, cache.size());
+        assertEquals(b, A.zMult(x, null));
+
+        // other kinds are kept apart; chol and qr hand out private copies
+        DoubleMatrix2D S = A.zMult(A, null, 1, 0, true, false);
+        long hits = cache.getHitCount();
+        assertNotSame(algebra.chol(S), algebra.chol(S));
+        DoubleMatrix2D R = new DenseDoubleMatrix2D(n + 5, n).assign(DoubleFunctions.random());
+        assertNotSame(algebra.qr(R), algebra.qr(R));
+        assertEquals(hits + 2, cache.getHitCount());
+        assertEquals(3, cache.size());
+        assertSame(cache, ((DenseDoubleAlgebra) algebra.clone()).getFactorizationCache());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitRate(), 0);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMemoryUsage());
+        try {
+            DenseDoubleAlgebra.DEFAULT.setFactorizationCache(cache);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    public void testModifiedInPlace() {
+        DoubleMatrix2D[] matrices = { new DenseDoubleMatrix2D(2, 2), new DenseColumnDoubleMatrix2D(2, 2) };
+        for (int i = 0; i < matrices.length; i++) {
+            DoubleMatrix2D B = matrices[i].assign(new double[][] { { 4, 1 }, { 2, 3 } });
+            DoubleMatrix1D b = new DenseDoubleMatrix1D(new double[] { 1, 1 });
+            DenseDoubleAlgebra algebra = new DenseDoubleAlgebra();
+            algebra.setFactorizationCache(new DoubleFactorizationCache());
+            assertEquals(new DenseDoubleMatrix1D(new double[] { 0.2, 0.2 }), algebra.solve(B, b));
+
+            DoubleExpression.of(B).assign(DoubleFunctions.mult(2)).evaluate();
+            assertEquals(new DenseDoubleMatrix1D(new double[] { 0.1, 0.1 }), algebra.solve(B, b));
+            if (B instanceof DenseDoubleMatrix2D) {
+                ((DenseDoubleMatrix2D) B).transpose();
+            } else {
+                ((DenseColumnDoubleMatrix2D) B).transpose();
+            }
+            assertEquals(new DenseDoubleMatrix1D(new double[] { 0.05, 0.15 }), algebra.solve(B, b));
+            B.viewRow(0).assign(DoubleFunctions.mult(2));
+            assertEquals(b, B.zMult(algebra.solve(B, b), null));
+            B.viewColumn(1).setQuick(0, 1);
+            assertEquals(b, B.zMult(algebra.solve(B, b), null));
+            DoubleExpression.of(new DenseDoubleMatrix2D(2, 2).assign(1)).assignTo(B);
+            B.setQuick(0, 0, 2);
+            assertEquals(new DenseDoubleMatrix1D(new double[] { 0, 1 }), algebra.solve(B, b));
+        }
+    }
+
+    public void testUpdatedDecomposition() {
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(new double[][] { { 4, 1 }, { 1, 3 } });
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(new double[] { 1, 2 });
+        DenseDoubleAlgebra algebra = new DenseDoubleAlgebra();
+        algebra.setFactorizationCache(new DoubleFactorizationCache());
+        DoubleMatrix2D L = algebra.chol(A).getL();
+        algebra.chol(A).update(x);
+        assertTrue(L.equals(algebra.chol(A).getL()));
+        assertEquals(2, algebra.chol(A).getL().getQuick(0, 0), TOL);
+
+        DoubleMatrix2D B = new DenseDoubleMatrix2D(new double[][] { { 4, 1 }, { 1, 3 }, { 2, 2 } });
+        DoubleMatrix2D Rb = algebra.qr(B).getR(true);
+        algebra.qr(B).deleteRow(2);
+        algebra.qr(B).insertColumn(1, new DenseDoubleMatrix1D(3).assign(1));
+        assertTrue(Rb.equals(algebra.qr(B).getR(true)));
+        DoubleMatrix1D b = new DenseDoubleMatrix1D(new double[] { 1, 1, 1 });
+        assertEquals(DenseDoubleAlgebra.DEFAULT.solve(B, b), algebra.solve(B, b));
+    }
+
+    public void testTransformed() {
+        int n = 4;
+        DoubleMatrix2D[] matrices = { new DenseDoubleMatrix2D(n, n), new DenseLargeDoubleMatrix2D(n, n) };
+        for (int i = 0; i < matrices.length; i++) {
+            DoubleMatrix2D A = matrices[i].assign(DoubleFunctions.random());
+            DoubleMatrix1D b = new DenseDoubleMatrix1D(n).assign(DoubleFunctions.random());
+            DenseDoubleAlgebra algebra = new DenseDoubleAlgebra();
+            algebra.setFactorizationCache(new DoubleFactorizationCache());
+            algebra.det(A);
+            algebra.solve(A, b);
+            if (A instanceof DenseDoubleMatrix2D) {
+                ((DenseDoubleMatrix2D) A).dct2(false);
+            } else {
+                ((DenseLargeDoubleMatrix2D) A).dct2(false);
+            }
+            assertEquals(DenseDoubleAlgebra.DEFAULT.det(A), algebra.det(A), TOL);
+            assertEquals(DenseDoubleAlgebra.DEFAULT.solve(A, b), algebra.solve(A, b));
+            if (A instanceof DenseDoubleMatrix2D) {
+                ((DenseDoubleMatrix2D) A).dhtRows();
+            } else {
+                ((DenseLargeDoubleMatrix2D) A).dhtRows();
+            }
+            assertEquals(DenseDoubleAlgebra.DEFAULT.det(A), algebra.det(A), TOL);
+            assertEquals(DenseDoubleAlgebra.DEFAULT.solve(A, b), algebra.solve(A, b));
+        }
+    }
+
+    public void testSparseAlgebra() {
+        int n = 50;
+        DoubleMatrix2D A = new SparseRCDoubleMatrix2D(n, n);
+        for (int i = 0; i < n; i++) {
+            A.setQuick(i, i, 4);
+            if (i > 0) {
+                A.setQuick(i, i - 1, -1);
+                A.setQuick(i - 1, i, -1);
+            }
+        }
+        DoubleMatrix1D b = new DenseDoubleMatrix1D(n).assign(DoubleFunctions.random());
+        DoubleFactorizationCache cache = new DoubleFactorizationCache();
+        SparseDoubleAlgebra algebra = new SparseDoubleAlgebra();
+        algebra.setFactorizationCache(cache);
+        DoubleMatrix1D x = algebra.solve(A, b);
+        assertEquals(x, algebra.solve(A, b));
+        assertEquals(1, cache.getHitCount());
+        assertSame(algebra.chol(A, 1), algebra.chol(A, 1));
+        assertNotSame(algebra.lu(A, 0), algebra.lu(A, 1));
+        assertEquals(3, cache.size());
+        assertTrue(cache.getMemoryUsage() > 0);
+
+        A.setQuick(0, 0, 5);
+        x = algebra.solve(A, b);
+        assertEquals(b, A.zMult(x, null));
+        try {
+            SparseDoubleAlgebra.ZERO.setFactorizationCache(cache);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    public void testEviction() {
+        int n = 10;
+        long bytes = 8L * n * n + 4L * n;
+        DoubleFactorizationCache cache = new DoubleFactorizationCache(2 * bytes);
+        DenseDoubleAlgebra algebra = new DenseDoubleAlgebra();
+        algebra.setFactorizationCache(cache);
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+        DoubleMatrix2D B = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+        DoubleMatrix2D C = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+        algebra.lu(A);
+        algebra.lu(B);
+        algebra.lu(A); // B is now the least recently used
+        algebra.lu(C);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2 * bytes, cache.getMemoryUsage());
+        long hits = cache.getHitCount();
+        algebra.lu(A);
+        algebra.lu(C);
+        assertEquals(hits + 2, cache.getHitCount());
+        algebra.lu(B);
+        assertEquals(hits + 2, cache.getHitCount());
+
+        // too large to be cached
+        algebra.lu(new DenseDoubleMatrix2D(2 * n, 2 * n));
+        assertEquals(2, cache.size());
+        assertTrue(cache.toString().indexOf("evictions=2") > 0);
+    }
+
+    private long assertChanged(DoubleMatrix2D A, long version) {
+        long v = A.getVersion();
+        assertTrue(v != version);
+        return v;
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+}
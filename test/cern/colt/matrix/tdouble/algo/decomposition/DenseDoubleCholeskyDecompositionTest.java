@@ -0,0 +1,145 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+
+public class DenseDoubleCholeskyDecompositionTest extends TestCase {
+
+    private static final double TOL = 1e-9;
+
+    private final Random random = new Random(0);
+
+    public DenseDoubleCholeskyDecompositionTest(String arg0) {
+        super(arg0);
+    }
+
+    public void testUpdate() {
+        int n = 40;
+        DoubleMatrix2D[] matrices = { spd(new DenseDoubleMatrix2D(n, n)), spd(new DenseColumnDoubleMatrix2D(n, n)) };
+        for (int i = 0; i < matrices.length; i++) {
+            DoubleMatrix2D A = matrices[i];
+            DenseDoubleCholeskyDecomposition chol = new DenseDoubleCholeskyDecomposition(A);
+            chol.getL();
+            for (int k = 0; k < 5; k++) {
+                DoubleMatrix1D x = vector(n);
+                chol.update(x);
+                addOuter(A, x, 1);
+                assertEquals(new DenseDoubleCholeskyDecomposition(A).getL(), chol.getL());
+            }
+            assertSolves(A, chol);
+        }
+    }
+
+    public void testDowndate() {
+        int n = 40;
+        DoubleMatrix2D[] matrices = { spd(new DenseDoubleMatrix2D(n, n)), spd(new DenseColumnDoubleMatrix2D(n, n)) };
+        for (int i = 0; i < matrices.length; i++) {
+            DoubleMatrix2D A = matrices[i];
+            DoubleMatrix2D L = new DenseDoubleCholeskyDecomposition(A).getL();
+            DoubleMatrix1D[] x = new DoubleMatrix1D[5];
+            for (int k = 0; k < x.length; k++) {
+                x[k] = vector(n);
+                addOuter(A, x[k], 1);
+            }
+            // remove the observations again
+            DenseDoubleCholeskyDecomposition chol = new DenseDoubleCholeskyDecomposition(A);
+            for (int k = 0; k < x.length; k++) {
+                chol.downdate(x[k]);
+                addOuter(A, x[k], -1);
+                assertEquals(new DenseDoubleCholeskyDecomposition(A).getL(), chol.getL());
+            }
+            assertEquals(L, chol.getL());
+            assertSolves(A, chol);
+        }
+    }
+
+    public void testIllegalDowndate() {
+        int n = 10;
+        DoubleMatrix2D A = spd(new DenseDoubleMatrix2D(n, n));
+        DenseDoubleCholeskyDecomposition chol = new DenseDoubleCholeskyDecomposition(A);
+        DoubleMatrix2D L = chol.getL();
+        // A - x*x' is indefinite since x[0]^2 > A[0][0]
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(n);
+        x.setQuick(0, 2 * Math.sqrt(A.getQuick(0, 0)));
+        try {
+            chol.downdate(x);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+        assertEquals(L, chol.getL());
+        try {
+            chol.update(new DenseDoubleMatrix1D(n + 1));
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    private void assertSolves(DoubleMatrix2D A, DenseDoubleCholeskyDecomposition chol) {
+        int n = A.rows();
+        DoubleMatrix1D b = vector(n);
+        DoubleMatrix1D x = b.copy();
+        chol.solve(x);
+        DoubleMatrix1D Ax = A.zMult(x, null);
+        for (int i = 0; i < n; i++) {
+            assertEquals(b.getQuick(i), Ax.getQuick(i), TOL);
+        }
+        DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 3);
+        fill(B);
+        DoubleMatrix2D X = B.copy();
+        chol.solve(X);
+        assertEquals(B, A.zMult(X, null));
+    }
+
+    private void addOuter(DoubleMatrix2D A, DoubleMatrix1D x, double alpha) {
+        for (int r = 0; r < A.rows(); r++) {
+            for (int c = 0; c < A.columns(); c++) {
+                A.setQuick(r, c, A.getQuick(r, c) + alpha * x.getQuick(r) * x.getQuick(c));
+            }
+        }
+    }
+
+    private DoubleMatrix2D spd(DoubleMatrix2D A) {
+        int n = A.rows();
+        DoubleMatrix2D M = new DenseDoubleMatrix2D(n, n);
+        fill(M);
+        A.assign(M.zMult(M, null, 1, 0, false, true));
+        for (int i = 0; i < n; i++) {
+            A.setQuick(i, i, A.getQuick(i, i) + n);
+        }
+        return A;
+    }
+
+    private DoubleMatrix1D vector(int n) {
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(n);
+        for (int i = 0; i < n; i++) {
+            x.setQuick(i, random.nextGaussian());
+        }
+        return x;
+    }
+
+    private void fill(DoubleMatrix2D A) {
+        for (int r = 0; r < A.rows(); r++) {
+            for (int c = 0; c < A.columns(); c++) {
+                A.setQuick(r, c, random.nextGaussian());
+            }
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DenseDoubleAlgebra;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class DenseDoubleLUDecompositionQuickTest extends TestCase {
+
+    private static final double TOL = 1e-9;
+
+    public DenseDoubleLUDecompositionQuickTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest updates
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ZMULT, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testDecompose() {
+        int[][] shapes = { { 10, 10 }, { 65, 65 }, { 200, 200 }, { 230, 150 }, { 150, 230 } };
+        for (int s = 0; s < shapes.length; s++) {
+            int m = shapes[s][0];
+            int n = shapes[s][1];
+            DoubleMatrix2D A = new DenseDoubleMatrix2D(m, n).assign(DoubleFunctions.random());
+            assertFactors(A, A.copy());
+            // a view with swapped strides
+            assertFactors(A, A.viewDice().copy().viewDice());
+        }
+    }
+
+    public void testAgreesWithUnblocked() {
+        int n = 170;
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+        DenseDoubleLUDecompositionQuick blocked = new DenseDoubleLUDecompositionQuick();
+        blocked.decompose(A.copy());
+        DenseDoubleLUDecompositionQuick unblocked = new DenseDoubleLUDecompositionQuick();
+        unblocked.decompose(new DenseColumnDoubleMatrix2D(n, n).assign(A));
+        assertEquals(unblocked.det(), blocked.det(), Math.abs(unblocked.det()) * 1e-9);
+        assertEquals(unblocked.getLU(), blocked.getLU());
+        for (int i = 0; i < n; i++) {
+            assertEquals(unblocked.getPivot()[i], blocked.getPivot()[i]);
+        }
+        DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 3).assign(DoubleFunctions.random());
+        DoubleMatrix2D X = B.copy();
+        blocked.solve(X);
+        assertEquals(B, A.zMult(X, null));
+        DoubleMatrix1D b = B.viewColumn(0).copy();
+        DoubleMatrix1D x = b.copy();
+        blocked.solve(x);
+        assertEquals(B.viewColumn(0), A.zMult(x, null));
+    }
+
+    public void testSingular() {
+        int n = 150;
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+        A.viewColumn(100).assign(A.viewColumn(7));
+        DenseDoubleLUDecompositionQuick lu = new DenseDoubleLUDecompositionQuick();
+        lu.decompose(A);
+        assertFalse(lu.isNonsingular());
+        try {
+            lu.solve(new DenseDoubleMatrix1D(n));
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    public void testAlgebra() {
+        int n = 140;
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+        DoubleMatrix2D I = DenseDoubleAlgebra.DEFAULT.inverse(A).zMult(A, null);
+        for (int i = 0; i < n; i++) {
+            I.setQuick(i, i, I.getQuick(i, i) - 1);
+        }
+        assertEquals(0, DenseDoubleAlgebra.DEFAULT.normInfinity(I), 1e-8);
+    }
+
+    public void testSolveMultipleRightHandSides() {
+        int[] sizes = { 5, 64, 150 };
+        for (int s = 0; s < sizes.length; s++) {
+            int n = sizes[s];
+            DoubleMatrix2D A = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+            DenseDoubleLUDecompositionQuick[] lus = { new DenseDoubleLUDecompositionQuick(),
+                    new DenseDoubleLUDecompositionQuick() };
+            lus[0].decompose(A.copy());
+            lus[1].decompose(new DenseColumnDoubleMatrix2D(n, n).assign(A));
+            DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 37).assign(DoubleFunctions.random());
+            DoubleMatrix2D[] rhs = { B.copy(), new DenseColumnDoubleMatrix2D(n, 37).assign(B),
+                    B.viewDice().copy().viewDice(), B.copy().viewColumnFlip() };
+            for (int i = 0; i < lus.length; i++) {
+                for (int j = 0; j < rhs.length; j++) {
+                    DoubleMatrix2D X = rhs[j].copy();
+                    lus[i].solve(X);
+                    assertEquals(rhs[j], A.zMult(X, null));
+                    // agrees with the solution of each column
+                    DoubleMatrix1D x = rhs[j].viewColumn(5).copy();
+                    lus[i].solve(x);
+                    assertEquals(x, X.viewColumn(5));
+                }
+            }
+        }
+    }
+
+    private void assertFactors(DoubleMatrix2D A, DoubleMatrix2D LU) {
+        DenseDoubleLUDecompositionQuick lu = new DenseDoubleLUDecompositionQuick();
+        lu.decompose(LU);
+        DoubleMatrix2D L = lu.getL();
+        DoubleMatrix2D U = lu.getU();
+        int[] piv = lu.getPivot();
+        int k = Math.min(A.rows(), A.columns());
+        for (int i = 0; i < A.rows(); i++) {
+            for (int j = 0; j < Math.min(i, A.columns()); j++) {
+                // partial pivoting bounds the multipliers
+                assertTrue(Math.abs(L.getQuick(i, j)) <= 1);
+            }
+        }
+        assertEquals(DenseDoubleAlgebra.DEFAULT.subMatrix(A, piv, 0, A.columns() - 1), L.viewPart(0, 0, A.rows(), k).zMult(
+                U.viewPart(0, 0, k, A.columns()), null));
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+
+public class DenseDoubleQRDecompositionTest extends TestCase {
+
+    private static final double TOL = 1e-9;
+
+    private final Random random = new Random(0);
+
+    public DenseDoubleQRDecompositionTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ZMULT, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testUpdate() {
+        int[][] shapes = { { 30, 20 }, { 25, 25 } };
+        for (int s = 0; s < shapes.length; s++) {
+            DoubleMatrix2D[] matrices = { new DenseDoubleMatrix2D(shapes[s][0], shapes[s][1]),
+                    new DenseColumnDoubleMatrix2D(shapes[s][0], shapes[s][1]) };
+            for (int i = 0; i < matrices.length; i++) {
+                DoubleMatrix2D A = matrices[i];
+                fill(A);
+                DenseDoubleQRDecomposition qr = new DenseDoubleQRDecomposition(A);
+                for (int k = 0; k < 3; k++) {
+                    DoubleMatrix1D u = vector(A.rows());
+                    DoubleMatrix1D v = vector(A.columns());
+                    qr.update(u, v);
+                    for (int r = 0; r < A.rows(); r++) {
+                        for (int c = 0; c < A.columns(); c++) {
+                            A.setQuick(r, c, A.getQuick(r, c) + u.getQuick(r) * v.getQuick(c));
+                        }
+                    }
+                    assertDecomposition(A, qr);
+                }
+            }
+        }
+    }
+
+    public void testInsertAndDeleteRows() {
+        DoubleMatrix2D[] matrices = { new DenseDoubleMatrix2D(20, 15), new DenseColumnDoubleMatrix2D(20, 15) };
+        for (int i = 0; i < matrices.length; i++) {
+            DoubleMatrix2D A = matrices[i];
+            fill(A);
+            DenseDoubleQRDecomposition qr = new DenseDoubleQRDecomposition(A);
+            int[] rows = { 0, 7, 20, 23 };
+            for (int k = 0; k < rows.length; k++) {
+                DoubleMatrix1D x = vector(A.columns());
+                qr.insertRow(rows[k], x);
+                A = insertRow(A, rows[k], x);
+                assertDecomposition(A, qr);
+            }
+            rows = new int[] { 23, 0, 5, 10, 16, 0, 3, 1, 1 };
+            for (int k = 0; k < rows.length; k++) {
+                qr.deleteRow(rows[k]);
+                A = deleteRow(A, rows[k]);
+                assertDecomposition(A, qr);
+            }
+            assertEquals(15, A.rows());
+            try {
+                qr.deleteRow(0);
+                fail();
+            } catch (IllegalArgumentException exc) {
+                // expected
+            }
+        }
+    }
+
+    public void testSlidingWindow() {
+        // rows are appended and the oldest removed, as in recursive least
+        // squares; the storage grows only while the window fills
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(12, 8);
+        fill(A);
+        DenseDoubleQRDecomposition qr = new DenseDoubleQRDecomposition(A);
+        for (int k = 0; k < 40; k++) {
+            DoubleMatrix1D x = vector(A.columns());
+            qr.insertRow(A.rows(), x);
+            A = insertRow(A, A.rows(), x);
+            if (k % 3 != 0) {
+                qr.deleteRow(0);
+                A = deleteRow(A, 0);
+            }
+        }
+        assertDecomposition(A, qr);
+        DoubleMatrix2D Q = qr.getQ(true);
+        assertEquals(A.rows(), Q.rows());
+        assertEquals(A.columns(), Q.columns());
+        assertEquals(A, Q.zMult(qr.getR(true), null));
+    }
+
+    public void testInsertAndDeleteColumns() {
+        DoubleMatrix2D[] matrices = { new DenseDoubleMatrix2D(20, 12), new DenseColumnDoubleMatrix2D(20, 12) };
+        for (int i = 0; i < matrices.length; i++) {
+            DoubleMatrix2D A = matrices[i];
+            fill(A);
+            DenseDoubleQRDecomposition qr = new DenseDoubleQRDecomposition(A);
+            int[] columns = { 12, 0, 6 };
+            for (int k = 0; k < columns.length; k++) {
+                DoubleMatrix1D x = vector(A.rows());
+                qr.insertColumn(columns[k], x);
+                A = insertRow(A.viewDice(), columns[k], x).viewDice();
+                assertDecomposition(A, qr);
+            }
+            columns = new int[] { 0, 13, 5, 3 };
+            for (int k = 0; k < columns.length; k++) {
+                qr.deleteColumn(columns[k]);
+                A = deleteRow(A.viewDice(), columns[k]).viewDice();
+                assertDecomposition(A, qr);
+            }
+        }
+        DenseDoubleQRDecomposition qr = new DenseDoubleQRDecomposition(new DenseDoubleMatrix2D(4, 4));
+        try {
+            qr.insertColumn(0, new DenseDoubleMatrix1D(4));
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+        try {
+            new DenseDoubleQRDecomposition(new DenseDoubleMatrix2D(4, 1)).deleteColumn(0);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    private void assertDecomposition(DoubleMatrix2D A, DenseDoubleQRDecomposition qr) {
+        int m = A.rows();
+        int n = A.columns();
+        DoubleMatrix2D Q = qr.getQ(false);
+        DoubleMatrix2D R = qr.getR(false);
+        assertEquals(m, Q.rows());
+        assertEquals(n, R.columns());
+        assertEquals(A, Q.zMult(R, null));
+        DoubleMatrix2D I = Q.zMult(Q, null, 1, 0, true, false);
+        for (int r = 0; r < m; r++) {
+            for (int c = 0; c < m; c++) {
+                assertEquals(r == c ? 1 : 0, I.getQuick(r, c), TOL);
+            }
+            for (int c = 0; c < r && c < n; c++) {
+                assertEquals(0, R.getQuick(r, c), 0);
+            }
+        }
+        // least squares solutions agree with a new decomposition
+        DenseDoubleQRDecomposition expected = new DenseDoubleQRDecomposition(A);
+        DoubleMatrix1D b = vector(m);
+        DoubleMatrix1D x = b.copy();
+        DoubleMatrix1D y = b.copy();
+        qr.solve(x);
+        expected.solve(y);
+        for (int i = 0; i < n; i++) {
+            assertEquals(y.getQuick(i), x.getQuick(i), TOL);
+        }
+        DoubleMatrix2D B = new DenseDoubleMatrix2D(m, 3);
+        fill(B);
+        DoubleMatrix2D X = B.copy();
+        DoubleMatrix2D Y = B.copy();
+        qr.solve(X);
+        expected.solve(Y);
+        assertEquals(Y.viewPart(0, 0, n, 3), X.viewPart(0, 0, n, 3));
+    }
+
+    private DoubleMatrix2D insertRow(DoubleMatrix2D A, int k, DoubleMatrix1D x) {
+        DoubleMatrix2D B = A.like(A.rows() + 1, A.columns());
+        B.viewPart(0, 0, k, A.columns()).assign(A.viewPart(0, 0, k, A.columns()));
+        B.viewRow(k).assign(x);
+        B.viewPart(k + 1, 0, A.rows() - k, A.columns()).assign(A.viewPart(k, 0, A.rows() - k, A.columns()));
+        return B;
+    }
+
+    private DoubleMatrix2D deleteRow(DoubleMatrix2D A, int k) {
+        DoubleMatrix2D B = A.like(A.rows() - 1, A.columns());
+        B.viewPart(0, 0, k, A.columns()).assign(A.viewPart(0, 0, k, A.columns()));
+        B.viewPart(k, 0, A.rows() - k - 1, A.columns()).assign(A.viewPart(k + 1, 0, A.rows() - k - 1, A.columns()));
+        return B;
+    }
+
+    private DoubleMatrix1D vector(int n) {
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(n);
+        for (int i = 0; i < n; i++) {
+            x.setQuick(i, random.nextGaussian());
+        }
+        return x;
+    }
+
+    private void fill(DoubleMatrix2D A) {
+        for (int r = 0; r < A.rows(); r++) {
+            for (int c = 0; c < A.columns(); c++) {
+                A.setQuick(r, c, random.nextGaussian());
+            }
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+}
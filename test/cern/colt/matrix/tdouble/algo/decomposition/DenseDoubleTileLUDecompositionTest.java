@@ -0,0 +1,89 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import junit.framework.TestCase;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class DenseDoubleTileLUDecompositionTest extends TestCase {
+
+    private static final double TOL = 1e-8;
+
+    public DenseDoubleTileLUDecompositionTest(String arg0) {
+        super(arg0);
+    }
+
+    public void testSolve() {
+        int[] sizes = { 1, 7, 130, 301 };
+        for (int s = 0; s < sizes.length; s++) {
+            int n = sizes[s];
+            DoubleMatrix2D A = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+            DenseDoubleTileLUDecomposition lu = new DenseDoubleTileLUDecomposition(A);
+            assertTrue(lu.isNonsingular());
+
+            DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 5).assign(DoubleFunctions.random());
+            DoubleMatrix2D X = B.copy();
+            lu.solve(X);
+            assertEquals(B, A.zMult(X, null));
+            DoubleMatrix2D XC = new DenseColumnDoubleMatrix2D(n, 5).assign(B);
+            lu.solve(XC);
+            assertEquals(B, A.zMult(XC, null));
+
+            DoubleMatrix1D b = new DenseDoubleMatrix1D(n).assign(DoubleFunctions.random());
+            DoubleMatrix1D x = b.copy();
+            lu.solve(x);
+            assertEquals(b, A.zMult(x, null));
+            DoubleMatrix1D xv = B.viewColumn(2).copy();
+            DoubleMatrix2D Y = B.copy();
+            lu.solve(Y.viewColumn(2));
+            lu.solve(xv);
+            assertEquals(xv, Y.viewColumn(2));
+
+            // U is the upper triangular factor of the same matrix
+            DoubleMatrix2D U = lu.getU();
+            DoubleMatrix2D C = new DenseColumnDoubleMatrix2D(n, n).assign(A);
+            assertEquals(Math.abs(new DenseDoubleLUDecomposition(C).det()), Math.abs(product(U)), Math
+                    .abs(product(U)) * 1e-8);
+        }
+    }
+
+    public void testSingular() {
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(new double[][] { { 1, 2 }, { 2, 4 } });
+        DenseDoubleTileLUDecomposition lu = new DenseDoubleTileLUDecomposition(A);
+        assertFalse(lu.isNonsingular());
+        try {
+            lu.solve(new DenseDoubleMatrix1D(2));
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    private static double product(DoubleMatrix2D U) {
+        double p = 1;
+        for (int i = 0; i < U.rows(); i++) {
+            p *= U.getQuick(i, i);
+        }
+        return p;
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+}
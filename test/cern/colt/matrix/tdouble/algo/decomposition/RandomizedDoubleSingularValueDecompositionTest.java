@@ -0,0 +1,196 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DenseDoubleAlgebra;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.WrapperDoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class RandomizedDoubleSingularValueDecompositionTest extends TestCase {
+
+    private static final double TOL = 1e-8;
+
+    private final Random random = new Random(0);
+
+    public RandomizedDoubleSingularValueDecompositionTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ZMULT, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testLowRank() {
+        int[][] shapes = { { 300, 80 }, { 80, 300 } };
+        for (int s = 0; s < shapes.length; s++) {
+            DoubleMatrix2D A = lowRank(shapes[s][0], shapes[s][1], 12);
+            assertDecomposition(A, new RandomizedDoubleSingularValueDecomposition(A, 12, 5, 0, 1), 12);
+            DoubleMatrix2D B = new DenseColumnDoubleMatrix2D(A.rows(), A.columns()).assign(A);
+            RandomizedDoubleSingularValueDecomposition svd = new RandomizedDoubleSingularValueDecomposition(B, 12);
+            assertTrue(svd.getU() instanceof DenseColumnDoubleMatrix2D);
+            assertDecomposition(B, svd, 12);
+            assertEquals(A, svd.getApproximation());
+        }
+    }
+
+    public void testDecayingSpectrum() {
+        int m = 250;
+        int n = 120;
+        DoubleMatrix2D A = decaying(m, n);
+        DenseDoubleSingularValueDecomposition exact = new DenseDoubleSingularValueDecomposition(A, true, false);
+        RandomizedDoubleSingularValueDecomposition svd = new RandomizedDoubleSingularValueDecomposition(A, 10, 10, 2,
+                3);
+        double[] expected = exact.getSingularValues();
+        double[] actual = svd.getSingularValues();
+        assertEquals(10, actual.length);
+        for (int i = 0; i < actual.length; i++) {
+            assertEquals(expected[i], actual[i], expected[i] * 1e-6);
+        }
+        assertEquals(expected[0], svd.norm2(), expected[0] * 1e-6);
+        // the error of the best rank k approximation is sigma[k]
+        DoubleMatrix2D E = A.copy().assign(svd.getApproximation(), DoubleFunctions.minus);
+        assertEquals(expected[10], DenseDoubleAlgebra.DEFAULT.norm2(E), expected[10] * 1e-3);
+    }
+
+    public void testSparse() {
+        int m = 400;
+        int n = 150;
+        DoubleMatrix2D A = new SparseRCDoubleMatrix2D(m, n);
+        for (int i = 0; i < 3000; i++) {
+            A.setQuick(random.nextInt(m), random.nextInt(n), random.nextDouble());
+        }
+        // a dominant rank 5 part on a few rows
+        for (int r = 0; r < 5; r++) {
+            for (int c = r; c < n; c += 5) {
+                A.setQuick(r * 7, c, 100 * (r + 1));
+            }
+        }
+        DoubleMatrix2D D = new DenseDoubleMatrix2D(m, n).assign(A);
+        double[] expected = new DenseDoubleSingularValueDecomposition(D, true, false).getSingularValues();
+        RandomizedDoubleSingularValueDecomposition svd = new RandomizedDoubleSingularValueDecomposition(A, 5, 10, 3,
+                0);
+        assertOrthonormal(svd.getU());
+        assertOrthonormal(svd.getV());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(expected[i], svd.getSingularValues()[i], expected[i] * 1e-6);
+        }
+    }
+
+    public void testOperator() {
+        final DoubleMatrix2D A = lowRank(200, 90, 6);
+        final int[] products = new int[1];
+        // only the products are available
+        DoubleMatrix2D operator = new WrapperDoubleMatrix2D(A) {
+            private static final long serialVersionUID = 1L;
+
+            public double getQuick(int row, int column) {
+                throw new UnsupportedOperationException();
+            }
+
+            public DoubleMatrix2D zMult(DoubleMatrix2D B, DoubleMatrix2D C, double alpha, double beta,
+                    boolean transposeA, boolean transposeB) {
+                products[0]++;
+                return A.zMult(B, C, alpha, beta, transposeA, transposeB);
+            }
+        };
+        RandomizedDoubleSingularValueDecomposition svd = new RandomizedDoubleSingularValueDecomposition(operator, 6,
+                4, 1, 0);
+        assertEquals(4, products[0]);
+        assertDecomposition(A, svd, 6);
+    }
+
+    public void testIllegalArguments() {
+        DoubleMatrix2D A = new DenseDoubleMatrix2D(10, 5);
+        int[][] arguments = { { 0, 1, 1 }, { 6, 1, 1 }, { 2, -1, 1 }, { 2, 1, -1 } };
+        for (int i = 0; i < arguments.length; i++) {
+            try {
+                new RandomizedDoubleSingularValueDecomposition(A, arguments[i][0], arguments[i][1], arguments[i][2], 0);
+                fail();
+            } catch (IllegalArgumentException exc) {
+                // expected
+            }
+        }
+        // more samples than columns
+        RandomizedDoubleSingularValueDecomposition svd = new RandomizedDoubleSingularValueDecomposition(A, 5);
+        assertEquals(5, svd.getS().rows());
+        assertEquals(0, svd.norm2(), 0);
+    }
+
+    private void assertDecomposition(DoubleMatrix2D A, RandomizedDoubleSingularValueDecomposition svd, int k) {
+        DoubleMatrix2D U = svd.getU();
+        DoubleMatrix2D S = svd.getS();
+        DoubleMatrix2D V = svd.getV();
+        assertEquals(A.rows(), U.rows());
+        assertEquals(k, U.columns());
+        assertEquals(k, S.rows());
+        assertEquals(A.columns(), V.rows());
+        assertEquals(k, V.columns());
+        assertOrthonormal(U);
+        assertOrthonormal(V);
+        double[] sigma = svd.getSingularValues();
+        for (int i = 1; i < k; i++) {
+            assertTrue(sigma[i - 1] >= sigma[i]);
+        }
+        DoubleMatrix2D US = new DenseDoubleMatrix2D(U.rows(), k).assign(U).zMult(S, null);
+        assertEquals(A, US.zMult(new DenseDoubleMatrix2D(V.rows(), k).assign(V), null, 1, 0, false, true));
+    }
+
+    private void assertOrthonormal(DoubleMatrix2D Q) {
+        DoubleMatrix2D I = Q.zMult(Q, null, 1, 0, true, false);
+        for (int r = 0; r < I.rows(); r++) {
+            for (int c = 0; c < I.columns(); c++) {
+                assertEquals(r == c ? 1 : 0, I.getQuick(r, c), TOL);
+            }
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+
+    private DoubleMatrix2D lowRank(int m, int n, int rank) {
+        DoubleMatrix2D X = new DenseDoubleMatrix2D(m, rank);
+        DoubleMatrix2D Y = new DenseDoubleMatrix2D(rank, n);
+        fill(X);
+        fill(Y);
+        return X.zMult(Y, null);
+    }
+
+    private DoubleMatrix2D decaying(int m, int n) {
+        DoubleMatrix2D X = new DenseDoubleMatrix2D(m, n);
+        DoubleMatrix2D Y = new DenseDoubleMatrix2D(n, n);
+        fill(X);
+        fill(Y);
+        DoubleMatrix2D Qx = new DenseDoubleQRDecomposition(X).getQ(true);
+        DoubleMatrix2D Qy = new DenseDoubleQRDecomposition(Y).getQ(true);
+        for (int j = 0; j < n; j++) {
+            Qx.viewColumn(j).assign(DoubleFunctions.mult(Math.pow(0.7, j)));
+        }
+        return Qx.zMult(Qy, null, 1, 0, false, true);
+    }
+
+    private void fill(DoubleMatrix2D A) {
+        for (int r = 0; r < A.rows(); r++) {
+            for (int c = 0; c < A.columns(); c++) {
+                A.setQuick(r, c, random.nextGaussian());
+            }
+        }
+    }
+}
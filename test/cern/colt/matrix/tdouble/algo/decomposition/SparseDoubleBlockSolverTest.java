@@ -0,0 +1,178 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.SparseDoubleAlgebra;
+import cern.colt.matrix.tdouble.impl.DenseColumnDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SymmetricSparseRCDoubleMatrix2D;
+
+public class SparseDoubleBlockSolverTest extends TestCase {
+
+    private static final double TOL = 1e-9;
+
+    private static final int NRHS = 53;
+
+    private final Random random = new Random(0);
+
+    public SparseDoubleBlockSolverTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest solves
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testLU() {
+        int n = 120;
+        DoubleMatrix2D A = random(n, n, 0.05);
+        for (int order = 0; order < 4; order++) {
+            SparseDoubleLUDecomposition lu = new SparseDoubleLUDecomposition(A, order, true);
+            DoubleMatrix2D[] rhs = rightHandSides(n);
+            for (int j = 0; j < rhs.length; j++) {
+                DoubleMatrix2D X = rhs[j].copy();
+                lu.solve(X);
+                assertEquals(rhs[j], A.zMult(X, null));
+                for (int c = 0; c < X.columns(); c += 17) {
+                    DoubleMatrix1D x = rhs[j].viewColumn(c).copy();
+                    lu.solve(x);
+                    assertEquals(x, X.viewColumn(c));
+                }
+            }
+        }
+        DoubleMatrix2D B = rightHandSides(n)[0];
+        assertEquals(B, A.zMult(SparseDoubleAlgebra.DEFAULT.solve(new SparseCCDoubleMatrix2D(n, n).assign(A), B), null));
+    }
+
+    public void testCholesky() {
+        int n = 150;
+        DoubleMatrix2D M = random(n, n, 0.03);
+        DoubleMatrix2D A = M.zMult(M, null, 1, 0, false, true);
+        for (int i = 0; i < n; i++) {
+            A.setQuick(i, i, A.getQuick(i, i) + 1);
+        }
+        A = new SparseCCDoubleMatrix2D(n, n).assign(A);
+        SparseDoubleCholeskyDecomposition chol = new SparseDoubleCholeskyDecomposition(A, 1);
+        DoubleMatrix2D[] rhs = rightHandSides(n);
+        for (int j = 0; j < rhs.length; j++) {
+            DoubleMatrix2D X = rhs[j].copy();
+            chol.solve(X);
+            assertEquals(rhs[j], A.zMult(X, null));
+        }
+
+        // from the upper triangle only
+        SymmetricSparseRCDoubleMatrix2D S = new SymmetricSparseRCDoubleMatrix2D(A);
+        for (int order = 0; order < 2; order++) {
+            chol = new SparseDoubleCholeskyDecomposition(S, order);
+            DoubleMatrix2D B = rhs[0].copy();
+            chol.solve(B);
+            assertEquals(rhs[0], A.zMult(B, null));
+        }
+        DoubleMatrix2D L = new SparseDoubleCholeskyDecomposition(S, 0).getL();
+        assertEquals(A, L.zMult(L, null, 1, 0, false, true));
+    }
+
+    public void testQR() {
+        int[][] shapes = { { 90, 60 }, { 60, 90 } };
+        for (int s = 0; s < shapes.length; s++) {
+            int m = shapes[s][0];
+            int n = shapes[s][1];
+            DoubleMatrix2D A = random(m, n, 0.1);
+            SparseDoubleQRDecomposition qr = new SparseDoubleQRDecomposition(A, 3);
+            DoubleMatrix2D[] rhs = rightHandSides(Math.max(m, n));
+            for (int j = 0; j < rhs.length; j++) {
+                DoubleMatrix2D X = rhs[j].copy();
+                qr.solve(X);
+                for (int c = 0; c < X.columns(); c += 13) {
+                    DoubleMatrix1D x = rhs[j].viewColumn(c).copy();
+                    qr.solve(x);
+                    assertEquals(x.viewPart(0, n), X.viewColumn(c).viewPart(0, n));
+                }
+                if (m < n) {
+                    // the minimum norm solution of the underdetermined system
+                    assertEquals(rhs[j].viewPart(0, 0, m, X.columns()), A.zMult(X, null));
+                }
+            }
+            DoubleMatrix2D B = rhs[0].viewPart(0, 0, m, NRHS);
+            DoubleMatrix2D X = SparseDoubleAlgebra.DEFAULT.solve(A, B);
+            assertEquals(n, X.rows());
+            DoubleMatrix2D X2 = rhs[0].copy();
+            qr.solve(X2);
+            assertEquals(X2.viewPart(0, 0, n, NRHS), X);
+        }
+    }
+
+    private DoubleMatrix2D random(int m, int n, double density) {
+        DoubleMatrix2D A = new SparseRCDoubleMatrix2D(m, n);
+        for (int r = 0; r < m; r++) {
+            for (int c = 0; c < n; c++) {
+                if (random.nextDouble() < density) {
+                    A.setQuick(r, c, random.nextGaussian());
+                }
+            }
+            if (r < n) {
+                A.setQuick(r, r, 10);
+            }
+        }
+        return A;
+    }
+
+    public void testVersion() {
+        // the solution is written into B, which must count as a modification
+        int n = 40;
+        DoubleMatrix2D A = random(n, n, 0.1);
+        DoubleMatrix2D M = A.zMult(A, null, 1, 0, false, true);
+        for (int i = 0; i < n; i++) {
+            M.setQuick(i, i, M.getQuick(i, i) + 1);
+        }
+        DoubleMatrix2D B = rightHandSides(n)[0];
+        long version = B.getVersion();
+        new SparseDoubleLUDecomposition(A, 0, true).solve(B);
+        assertTrue(version != B.getVersion());
+        version = B.getVersion();
+        new SparseDoubleQRDecomposition(A, 0).solve(B);
+        assertTrue(version != B.getVersion());
+        version = B.getVersion();
+        new SparseDoubleCholeskyDecomposition(new SparseCCDoubleMatrix2D(n, n).assign(M), 0).solve(B);
+        assertTrue(version != B.getVersion());
+    }
+
+    private DoubleMatrix2D[] rightHandSides(int n) {
+        DoubleMatrix2D B = new DenseDoubleMatrix2D(n, NRHS);
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < NRHS; c++) {
+                B.setQuick(r, c, random.nextGaussian());
+            }
+        }
+        return new DoubleMatrix2D[] { B, new DenseColumnDoubleMatrix2D(n, NRHS).assign(B),
+                B.copy().viewColumnFlip(), B.viewDice().copy().viewDice().viewPart(0, 1, n, NRHS - 1) };
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+}
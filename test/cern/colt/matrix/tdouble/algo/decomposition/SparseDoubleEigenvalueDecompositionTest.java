@@ -0,0 +1,123 @@
+package cern.colt.matrix.tdouble.algo.decomposition;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.SparseDoubleAlgebra;
+import cern.colt.matrix.tdouble.algo.decomposition.SparseDoubleEigenvalueDecomposition.Which;
+import cern.colt.matrix.tdouble.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseCCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseRCDoubleMatrix2D;
+
+public class SparseDoubleEigenvalueDecompositionTest extends TestCase {
+
+    private static final double TOL = 1e-8;
+
+    private static final int N = 200;
+
+    public SparseDoubleEigenvalueDecompositionTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testLargestAndSmallest() {
+        DoubleMatrix2D A = laplacian(N);
+        double[] expected = expected(N);
+        SparseDoubleEigenvalueDecomposition eig = new SparseDoubleEigenvalueDecomposition(A, 4,
+                Which.LargestAlgebraic);
+        assertEigenpairs(A, eig, expected, N - 4);
+        eig = SparseDoubleAlgebra.DEFAULT.eig(new SparseCCDoubleMatrix2D(N, N).assign(A), 3,
+                Which.SmallestAlgebraic);
+        assertEigenpairs(A, eig, expected, 0);
+        assertTrue(eig.getNumberOfIterations() > 0);
+    }
+
+    public void testShiftInvert() {
+        DoubleMatrix2D A = laplacian(N);
+        double[] expected = expected(N);
+        // the smallest eigenvalues of a Laplacian are clustered, and found
+        // quickly only with a shift
+        SparseDoubleEigenvalueDecomposition eig = SparseDoubleAlgebra.DEFAULT.eig(A, 5, -0.01);
+        assertEigenpairs(A, eig, expected, 0);
+        // interior eigenvalues
+        eig = new SparseDoubleEigenvalueDecomposition(new SparseCCDoubleMatrix2D(N, N).assign(A), 2,
+                (expected[100] + expected[101]) / 2 + 1e-6);
+        assertEigenpairs(A, eig, expected, 100);
+    }
+
+    public void testIllegalArguments() {
+        DoubleMatrix2D A = laplacian(10);
+        int[][] arguments = { { 0, 5 }, { 10, 11 }, { 3, 3 }, { 3, 11 } };
+        for (int i = 0; i < arguments.length; i++) {
+            try {
+                new SparseDoubleEigenvalueDecomposition(A, arguments[i][0], Which.LargestMagnitude, arguments[i][1],
+                        0, 100);
+                fail();
+            } catch (IllegalArgumentException exc) {
+                // expected
+            }
+        }
+        try {
+            new SparseDoubleEigenvalueDecomposition(new DenseDoubleMatrix2D(10, 10), 2, Which.LargestMagnitude);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    private void assertEigenpairs(DoubleMatrix2D A, SparseDoubleEigenvalueDecomposition eig, double[] expected,
+            int first) {
+        DoubleMatrix1D lambda = eig.getRealEigenvalues();
+        DoubleMatrix2D V = eig.getV();
+        DoubleMatrix2D D = eig.getD();
+        int k = (int) lambda.size();
+        assertEquals(A.rows(), V.rows());
+        assertEquals(k, V.columns());
+        for (int j = 0; j < k; j++) {
+            assertEquals(expected[first + j], lambda.getQuick(j), TOL);
+            assertEquals(lambda.getQuick(j), D.getQuick(j, j), 0);
+            // A*v = lambda*v
+            DoubleMatrix1D v = V.viewColumn(j);
+            DoubleMatrix1D Av = A.zMult(v.copy(), null);
+            for (int i = 0; i < A.rows(); i++) {
+                assertEquals(lambda.getQuick(j) * v.getQuick(i), Av.getQuick(i), 1e-6);
+            }
+            assertEquals(1, v.zDotProduct(v), TOL);
+        }
+    }
+
+    /*
+     * The Laplacian of the path graph with n nodes.
+     */
+    private DoubleMatrix2D laplacian(int n) {
+        DoubleMatrix2D A = new SparseRCDoubleMatrix2D(n, n);
+        for (int i = 0; i < n; i++) {
+            A.setQuick(i, i, (i == 0 || i == n - 1) ? 1 : 2);
+            if (i > 0) {
+                A.setQuick(i, i - 1, -1);
+                A.setQuick(i - 1, i, -1);
+            }
+        }
+        return A;
+    }
+
+    private double[] expected(int n) {
+        double[] lambda = new double[n];
+        for (int k = 0; k < n; k++) {
+            lambda[k] = 2 - 2 * Math.cos(Math.PI * k / n);
+        }
+        Arrays.sort(lambda);
+        return lambda;
+    }
+}
@@ -18,6 +18,15 @@ public class AllDoubleMatrixSolverTests {
         suite.addTestSuite(DoubleCGICCTest.class);
         //                suite.addTestSuite(CGAMGTest.class);
         suite.addTestSuite(DoubleCGILUTTest.class);
+        suite.addTestSuite(DoubleCGBandLUTest.class);
+        suite.addTestSuite(DoubleCGBandTest.class);
+        suite.addTestSuite(DoubleCGSlicedEllpackTest.class);
+        suite.addTestSuite(DoubleCGICCSlicedEllpackTest.class);
+        suite.addTestSuite(DoubleCGBlockSparseRCTest.class);
+        suite.addTestSuite(DoubleCGBlockDiagonalTest.class);
+        suite.addTestSuite(DoubleCGBlockILUTest.class);
+        suite.addTestSuite(DoubleCGSymmetricSparseRCTest.class);
+        suite.addTestSuite(DoubleCGICCSymmetricSparseRCTest.class);
 
         suite.addTestSuite(DoubleCGSTest.class);
         suite.addTestSuite(DoubleCGSDiagonalTest.class);
@@ -39,6 +48,7 @@ public class AllDoubleMatrixSolverTests {
         suite.addTestSuite(DoubleBiCGDiagonalTest.class);
         suite.addTestSuite(DoubleBiCGSSORTest.class);
         suite.addTestSuite(DoubleBiCGILUTest.class);
+        suite.addTestSuite(DoubleBiCGBlockILUTest.class);
         suite.addTestSuite(DoubleBiCGICCTest.class);
         suite.addTestSuite(DoubleBiCGAMGTest.class);
         suite.addTestSuite(DoubleBiCGILUTTest.class);
@@ -58,6 +68,7 @@ public class AllDoubleMatrixSolverTests {
         suite.addTestSuite(DoubleGMRESICCTest.class);
         suite.addTestSuite(DoubleGMRESAMGTest.class);
         suite.addTestSuite(DoubleGMRESILUTTest.class);
+        suite.addTestSuite(DoubleGMRESBandLUTest.class);
 
         suite.addTestSuite(DoubleChebyshevTest.class);
         suite.addTestSuite(DoubleChebyshevDiagonalTest.class);
@@ -0,0 +1,19 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleBlockILU;
+
+/**
+ * Test of DoubleBiCG with block ILU
+ */
+public class DoubleBiCGBlockILUTest extends DoubleBiCGTest {
+
+    public DoubleBiCGBlockILUTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createSolver() throws Exception {
+        super.createSolver();
+        M = new DoubleBlockILU(A.rows(), 3);
+    }
+
+}
@@ -0,0 +1,19 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleBandLU;
+
+/**
+ * Test of DoubleCG with a tridiagonal band LU
+ */
+public class DoubleCGBandLUTest extends DoubleCGTest {
+
+    public DoubleCGBandLUTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createSolver() throws Exception {
+        super.createSolver();
+        M = new DoubleBandLU(A.rows(), 1, 1);
+    }
+
+}
@@ -0,0 +1,26 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.impl.BandDoubleMatrix2D;
+
+/**
+ * Test of DoubleCG on a system matrix in band storage
+ */
+public class DoubleCGBandTest extends DoubleCGTest {
+
+    public DoubleCGBandTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrix() throws Exception {
+        int bandwidth = 0;
+        for (int r = 0; r < matrix.length; r++) {
+            for (int c = 0; c < matrix[r].length; c++) {
+                if (matrix[r][c] != 0) {
+                    bandwidth = Math.max(bandwidth, Math.abs(r - c));
+                }
+            }
+        }
+        A = new BandDoubleMatrix2D(matrix, bandwidth, bandwidth);
+    }
+
+}
@@ -0,0 +1,19 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleBlockDiagonal;
+
+/**
+ * Test of DoubleCG with block diagonal preconditioner
+ */
+public class DoubleCGBlockDiagonalTest extends DoubleCGTest {
+
+    public DoubleCGBlockDiagonalTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createSolver() throws Exception {
+        super.createSolver();
+        M = new DoubleBlockDiagonal(A.rows(), 3);
+    }
+
+}
@@ -0,0 +1,20 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleBlockILU;
+
+/**
+ * Test of DoubleCG with block ILU on a system matrix in block compressed row
+ * storage
+ */
+public class DoubleCGBlockILUTest extends DoubleCGBlockSparseRCTest {
+
+    public DoubleCGBlockILUTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createSolver() throws Exception {
+        super.createSolver();
+        M = new DoubleBlockILU(A.rows(), 3);
+    }
+
+}
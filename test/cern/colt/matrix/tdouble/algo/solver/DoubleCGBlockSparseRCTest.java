@@ -0,0 +1,19 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.impl.BlockSparseRCDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix2D;
+
+/**
+ * Test of DoubleCG on a system matrix in block compressed row storage
+ */
+public class DoubleCGBlockSparseRCTest extends DoubleCGTest {
+
+    public DoubleCGBlockSparseRCTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrix() throws Exception {
+        A = new BlockSparseRCDoubleMatrix2D(new SparseDoubleMatrix2D(matrix).getRowCompressed(true), 3);
+    }
+
+}
@@ -0,0 +1,19 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleICC;
+
+/**
+ * Test of DoubleCG with ICC on a system matrix in sliced ELLPACK storage
+ */
+public class DoubleCGICCSlicedEllpackTest extends DoubleCGSlicedEllpackTest {
+
+    public DoubleCGICCSlicedEllpackTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createSolver() throws Exception {
+        super.createSolver();
+        M = new DoubleICC(A.rows());
+    }
+
+}
@@ -0,0 +1,20 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleICC;
+
+/**
+ * Test of DoubleCG with ICC on a system matrix of which only the upper
+ * triangle is stored
+ */
+public class DoubleCGICCSymmetricSparseRCTest extends DoubleCGSymmetricSparseRCTest {
+
+    public DoubleCGICCSymmetricSparseRCTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createSolver() throws Exception {
+        super.createSolver();
+        M = new DoubleICC(A.rows());
+    }
+
+}
@@ -0,0 +1,19 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.impl.SlicedEllpackDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix2D;
+
+/**
+ * Test of DoubleCG on a system matrix in sliced ELLPACK storage
+ */
+public class DoubleCGSlicedEllpackTest extends DoubleCGTest {
+
+    public DoubleCGSlicedEllpackTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrix() throws Exception {
+        A = new SlicedEllpackDoubleMatrix2D(new SparseDoubleMatrix2D(matrix).getRowCompressed(true), 4, 16);
+    }
+
+}
@@ -0,0 +1,20 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.impl.SparseDoubleMatrix2D;
+import cern.colt.matrix.tdouble.impl.SymmetricSparseRCDoubleMatrix2D;
+
+/**
+ * Test of DoubleCG on a system matrix of which only the upper triangle is
+ * stored
+ */
+public class DoubleCGSymmetricSparseRCTest extends DoubleCGTest {
+
+    public DoubleCGSymmetricSparseRCTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrix() throws Exception {
+        A = new SymmetricSparseRCDoubleMatrix2D(new SparseDoubleMatrix2D(matrix).getRowCompressed(true));
+    }
+
+}
@@ -0,0 +1,19 @@
+package cern.colt.matrix.tdouble.algo.solver;
+
+import cern.colt.matrix.tdouble.algo.solver.preconditioner.DoubleBandLU;
+
+/**
+ * Test of DoubleGMRES with a band LU
+ */
+public class DoubleGMRESBandLUTest extends DoubleGMRESTest {
+
+    public DoubleGMRESBandLUTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createSolver() throws Exception {
+        super.createSolver();
+        M = new DoubleBandLU(A.rows(), 2, 1);
+    }
+
+}
@@ -0,0 +1,195 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DenseDoubleAlgebra;
+import cern.colt.matrix.tdouble.algo.decomposition.BandDoubleCholeskyDecomposition;
+import cern.colt.matrix.tdouble.algo.decomposition.BandDoubleLUDecomposition;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class BandDoubleMatrix2DTest extends TestCase {
+
+    private static final double TOL = 1e-8;
+
+    private final Random random = new Random(0);
+
+    public BandDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products and solves
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testSetGet() {
+        BandDoubleMatrix2D A = new BandDoubleMatrix2D(5, 4, 2, 1);
+        A.setQuick(3, 1, 5);
+        A.setQuick(1, 2, 6);
+        A.setQuick(4, 1, 7); // ignored
+        A.setQuick(0, 2, 8); // ignored
+        assertEquals(5, A.getQuick(3, 1), 0);
+        assertEquals(6, A.getQuick(1, 2), 0);
+        assertEquals(0, A.getQuick(4, 1), 0);
+        assertEquals(0, A.getQuick(0, 2), 0);
+        assertEquals(5, A.elements()[1 + 3 - 1 + 1 * 4], 0);
+        assertEquals(2, A.cardinality());
+        assertEquals(6, A.viewDice().getQuick(2, 1), 0);
+        DoubleMatrix2D B = A.copy();
+        assertTrue(B instanceof BandDoubleMatrix2D);
+        A.setQuick(3, 1, 0);
+        assertEquals(5, B.getQuick(3, 1), 0);
+        assertEquals(B, new SparseRCDoubleMatrix2D(5, 4).assign(B));
+    }
+
+    public void testZMult() {
+        int[] sizes = { 1, 3, 40, 301 };
+        int[][] bands = { { 0, 0 }, { 1, 1 }, { 3, 0 }, { 0, 5 }, { 4, 7 } };
+        for (int s = 0; s < sizes.length; s++) {
+            for (int w = 0; w < bands.length; w++) {
+                int n = sizes[s];
+                BandDoubleMatrix2D A = random(n, n + 2, bands[w][0], bands[w][1], 0);
+                DoubleMatrix2D D = new DenseDoubleMatrix2D(n, n + 2).assign(A);
+                for (int t = 0; t < 2; t++) {
+                    boolean transpose = t == 1;
+                    int rowsA = transpose ? n + 2 : n;
+                    int columnsA = transpose ? n : n + 2;
+                    DoubleMatrix1D x = new DenseDoubleMatrix1D(columnsA).assign(DoubleFunctions.random());
+                    DoubleMatrix1D z = new DenseDoubleMatrix1D(rowsA).assign(DoubleFunctions.random());
+                    assertEquals(D.zMult(x, z.copy(), 2, 3, transpose), A.zMult(x, z.copy(), 2, 3, transpose));
+                    assertEquals(D.zMult(x, null, 2, 0, transpose), A.zMult(x, null, 2, 0, transpose));
+
+                    DoubleMatrix2D B = new DenseDoubleMatrix2D(columnsA, 7).assign(DoubleFunctions.random());
+                    DoubleMatrix2D C = new DenseDoubleMatrix2D(rowsA, 7).assign(DoubleFunctions.random());
+                    assertEquals(D.zMult(B, C.copy(), 2, 3, transpose, false), A.zMult(B, C.copy(), 2, 3, transpose,
+                            false));
+                    assertEquals(D.zMult(B.viewDice().copy(), null, 1, 0, transpose, true), A.zMult(B.viewDice()
+                            .copy(), null, 1, 0, transpose, true));
+                    DoubleMatrix2D CC = new DenseColumnDoubleMatrix2D(rowsA, 7).assign(C);
+                    assertEquals(D.zMult(B, C.copy(), 1, 1, transpose, false), A.zMult(B, CC, 1, 1, transpose, false));
+                }
+            }
+        }
+    }
+
+    public void testLU() {
+        int[] sizes = { 1, 2, 17, 200 };
+        int[][] bands = { { 0, 0 }, { 1, 1 }, { 2, 0 }, { 0, 3 }, { 5, 2 } };
+        for (int s = 0; s < sizes.length; s++) {
+            for (int w = 0; w < bands.length; w++) {
+                int n = sizes[s];
+                // no diagonal dominance, so that rows are interchanged
+                BandDoubleMatrix2D A = random(n, n, bands[w][0], bands[w][1], 1);
+                DoubleMatrix2D D = new DenseDoubleMatrix2D(n, n).assign(A);
+                BandDoubleLUDecomposition lu = new BandDoubleLUDecomposition(A);
+                assertTrue(lu.isNonsingular());
+                assertEquals(DenseDoubleAlgebra.DEFAULT.det(D), lu.det(), Math.abs(lu.det()) * 1e-8);
+
+                DoubleMatrix1D b = new DenseDoubleMatrix1D(n).assign(DoubleFunctions.random());
+                assertEquals(b, A.zMult(lu.solve(b), null));
+                assertEquals(b, A.zMult(lu.solveTranspose(b), null, 1, 0, true));
+                DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 9).assign(DoubleFunctions.random());
+                assertEquals(B, A.zMult(lu.solve(B), null));
+                assertEquals(B, A.zMult(DenseDoubleAlgebra.DEFAULT.solve(A, B), null));
+                assertEquals(DenseDoubleAlgebra.DEFAULT.solve(D, b), DenseDoubleAlgebra.DEFAULT.solve(A, b));
+            }
+        }
+    }
+
+    public void testPivoting() {
+        double[][] values = { { 0, 1, 0, 0 }, { 2, 1, 3, 0 }, { 0, 4, 1, 1 }, { 0, 0, 1, 0 } };
+        BandDoubleMatrix2D A = new BandDoubleMatrix2D(values, 1, 1);
+        BandDoubleLUDecomposition lu = new BandDoubleLUDecomposition(A);
+        assertTrue(lu.isNonsingular());
+        assertEquals(DenseDoubleAlgebra.DEFAULT.det(new DenseDoubleMatrix2D(values)), lu.det(), 1e-12);
+        assertEquals(2, lu.getU().upperBandwidth());
+        DoubleMatrix1D b = new DenseDoubleMatrix1D(new double[] { 1, 2, 3, 4 });
+        assertEquals(b, A.zMult(lu.solve(b), null));
+        assertEquals(b, A.zMult(lu.solveTranspose(b), null, 1, 0, true));
+    }
+
+    public void testSingular() {
+        BandDoubleMatrix2D A = new BandDoubleMatrix2D(4, 4, 1, 1);
+        A.assign(new double[][] { { 1, 2, 0, 0 }, { 2, 4, 0, 0 }, { 0, 0, 1, 1 }, { 0, 0, 1, 2 } });
+        BandDoubleLUDecomposition lu = new BandDoubleLUDecomposition(A);
+        assertFalse(lu.isNonsingular());
+        assertEquals(0, lu.det(), 0);
+        try {
+            lu.solve(new DenseDoubleMatrix1D(4));
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    public void testCholesky() {
+        int[] sizes = { 1, 2, 17, 200 };
+        int[] bands = { 0, 1, 4 };
+        for (int s = 0; s < sizes.length; s++) {
+            for (int w = 0; w < bands.length; w++) {
+                int n = sizes[s];
+                int kd = bands[w];
+                BandDoubleMatrix2D A = random(n, n, kd, kd, 2 * kd + 1);
+                for (int r = 0; r < n; r++) {
+                    for (int c = 0; c < r; c++) {
+                        A.setQuick(c, r, A.getQuick(r, c));
+                    }
+                }
+                BandDoubleCholeskyDecomposition chol = new BandDoubleCholeskyDecomposition(A);
+                BandDoubleMatrix2D L = chol.getL();
+                assertEquals(kd, L.lowerBandwidth());
+                assertEquals(0, L.upperBandwidth());
+                assertEquals(A, L.zMult(L, null, 1, 0, false, true));
+
+                DoubleMatrix1D b = new DenseDoubleMatrix1D(n).assign(DoubleFunctions.random());
+                assertEquals(b, A.zMult(chol.solve(b), null));
+                DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 9).assign(DoubleFunctions.random());
+                assertEquals(B, A.zMult(chol.solve(B), null));
+            }
+        }
+        BandDoubleMatrix2D A = new BandDoubleMatrix2D(3, 3, 1, 1);
+        A.assign(new double[][] { { 1, 2, 0 }, { 2, 1, 0 }, { 0, 0, 1 } });
+        try {
+            new BandDoubleCholeskyDecomposition(A);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+
+    private BandDoubleMatrix2D random(int rows, int columns, int kl, int ku, double diagonal) {
+        BandDoubleMatrix2D A = new BandDoubleMatrix2D(rows, columns, kl, ku);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                double value = random.nextDouble() - 0.5;
+                A.setQuick(r, c, (r == c) ? diagonal + value : value);
+            }
+        }
+        return A;
+    }
+}
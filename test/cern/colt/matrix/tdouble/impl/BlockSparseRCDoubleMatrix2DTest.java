@@ -0,0 +1,157 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+public class BlockSparseRCDoubleMatrix2DTest extends TestCase {
+
+    private static final double TOL = 1e-10;
+
+    private final Random random = new Random(0);
+
+    public BlockSparseRCDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testConversion() {
+        int[] blockSizes = { 1, 2, 3, 4, 6 };
+        for (int s = 0; s < blockSizes.length; s++) {
+            int b = blockSizes[s];
+            int[][] shapes = { { b, b }, { 5 * b, 3 * b }, { 24 * b, 31 * b } };
+            for (int p = 0; p < shapes.length; p++) {
+                SparseRCDoubleMatrix2D A = random(shapes[p][0], shapes[p][1], b);
+                BlockSparseRCDoubleMatrix2D B = new BlockSparseRCDoubleMatrix2D(A, b);
+                assertEquals(b, B.getBlockSize());
+                assertEquals(b * b * B.getBlockRowPointers()[A.rows() / b], B.cardinality());
+                assertEquals(A, B);
+                SparseRCDoubleMatrix2D R = B.getRowCompressed();
+                assertEquals(B.cardinality(), R.cardinality());
+                assertEquals(A, R);
+                assertEquals(A, new SparseRCDoubleMatrix2D(A.rows(), A.columns()).assign(B));
+                // the block columns of a block row are sorted
+                int[] pointers = B.getBlockRowPointers();
+                int[] indexes = B.getBlockColumnIndexes();
+                for (int I = 0; I < A.rows() / b; I++) {
+                    for (int k = pointers[I] + 1; k < pointers[I + 1]; k++) {
+                        assertTrue(indexes[k - 1] < indexes[k]);
+                    }
+                }
+            }
+        }
+        try {
+            new BlockSparseRCDoubleMatrix2D(new SparseRCDoubleMatrix2D(6, 5), 3);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+        try {
+            new BlockSparseRCDoubleMatrix2D(new SparseRCDoubleMatrix2D(6, 6), 0);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    public void testSetGet() {
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(4, 6);
+        A.setQuick(0, 5, 5);
+        A.setQuick(3, 0, 6);
+        BlockSparseRCDoubleMatrix2D B = new BlockSparseRCDoubleMatrix2D(A, 2);
+        assertEquals(8, B.cardinality());
+        B.setQuick(1, 4, 7); // inside the block of (0, 5)
+        B.setQuick(0, 0, 8); // ignored
+        assertEquals(7, B.getQuick(1, 4), 0);
+        assertEquals(0, B.getQuick(0, 0), 0);
+        assertEquals(6, B.viewDice().getQuick(0, 3), 0);
+        DoubleMatrix2D C = B.copy();
+        assertTrue(C instanceof BlockSparseRCDoubleMatrix2D);
+        B.setQuick(1, 4, 0);
+        assertEquals(7, C.getQuick(1, 4), 0);
+        C.assign(cern.jet.math.tdouble.DoubleFunctions.mult(2));
+        assertEquals(14, C.getQuick(1, 4), 0);
+        assertEquals(12, C.getQuick(3, 0), 0);
+        C.assign(1);
+        assertEquals(8, C.zSum(), 0);
+    }
+
+    public void testZMult() {
+        int[] blockSizes = { 1, 2, 3, 5, 6 };
+        for (int s = 0; s < blockSizes.length; s++) {
+            int b = blockSizes[s];
+            int[][] shapes = { { b, b }, { 7 * b, 4 * b }, { 40 * b, 50 * b } };
+            for (int p = 0; p < shapes.length; p++) {
+                SparseRCDoubleMatrix2D A = random(shapes[p][0], shapes[p][1], b);
+                BlockSparseRCDoubleMatrix2D B = new BlockSparseRCDoubleMatrix2D(A, b);
+                for (int t = 0; t < 2; t++) {
+                    boolean transposeA = t == 1;
+                    int rowsA = transposeA ? A.columns() : A.rows();
+                    int columnsA = transposeA ? A.rows() : A.columns();
+                    DoubleMatrix1D y = new DenseDoubleMatrix1D(2 * columnsA).viewStrides(2);
+                    for (int i = 0; i < columnsA; i++) {
+                        y.setQuick(i, random.nextDouble());
+                    }
+                    DoubleMatrix1D z = new DenseDoubleMatrix1D(rowsA);
+                    for (int i = 0; i < rowsA; i++) {
+                        z.setQuick(i, random.nextDouble());
+                    }
+                    assertEquals(A.zMult(y, z.copy(), 2, 3, transposeA), B.zMult(y, z.copy(), 2, 3, transposeA));
+                    assertEquals(A.zMult(y, null, 1, 0, transposeA), B.zMult(y, null, 1, 0, transposeA));
+                    // sparse operands
+                    DoubleMatrix1D sy = new SparseDoubleMatrix1D(columnsA).assign(y);
+                    DoubleMatrix1D sz = new SparseDoubleMatrix1D(rowsA).assign(z);
+                    assertEquals(A.zMult(y, z.copy(), -1, 0.5, transposeA), B.zMult(sy, sz, -1, 0.5, transposeA));
+                }
+            }
+        }
+    }
+
+    private SparseRCDoubleMatrix2D random(int rows, int columns, int blockSize) {
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(rows, columns);
+        int blockColumns = columns / blockSize;
+        for (int I = 0; I < rows / blockSize; I++) {
+            // some block rows empty, some blocks partly filled
+            int length = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(Math.min(4, blockColumns));
+            for (int k = 0; k < length; k++) {
+                int J = random.nextInt(blockColumns);
+                for (int r = 0; r < blockSize; r++) {
+                    for (int c = 0; c < blockSize; c++) {
+                        if (random.nextInt(5) > 0) {
+                            A.setQuick(I * blockSize + r, J * blockSize + c, random.nextDouble() - 0.5);
+                        }
+                    }
+                }
+            }
+        }
+        return A;
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), 0);
+            }
+        }
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+}
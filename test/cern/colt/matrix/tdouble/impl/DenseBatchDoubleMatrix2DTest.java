@@ -0,0 +1,175 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DenseDoubleAlgebra;
+
+public class DenseBatchDoubleMatrix2DTest extends TestCase {
+
+    private static final int SIZE = 37;
+
+    private static final int[] ORDERS = { 1, 2, 3, 4, 5, 7 };
+
+    private static final double TOL = 1e-9;
+
+    private final Random random = new Random(0);
+
+    public DenseBatchDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest batches
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ZMULT, 1);
+        ConcurrencyTuning.setGrain(ConcurrencyTuning.ZMULT, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testLayout() {
+        DenseBatchDoubleMatrix2D A = random(SIZE, 3, 5, false);
+        DenseBatchDoubleMatrix2D B = A.copy(true);
+        assertTrue(B.isInterleaved());
+        for (int k = 0; k < SIZE; k++) {
+            assertEquals(A.viewMatrix(k), B.viewMatrix(k));
+            assertEquals(A.getQuick(k, 2, 4), B.getQuick(k, 2, 4), 0);
+        }
+        assertEquals(1 + 2 * 5 * SIZE, B.index(1, 2, 0));
+        assertTrue(java.util.Arrays.equals(A.elements(), B.copy(false).elements()));
+        // views write through
+        B.viewMatrix(3).setQuick(1, 2, 42);
+        assertEquals(42, B.getQuick(3, 1, 2), 0);
+    }
+
+    public void testZMult() {
+        boolean[] layouts = { false, true };
+        for (int o = 0; o < ORDERS.length; o++) {
+            int n = ORDERS[o];
+            for (int la = 0; la < 2; la++) {
+                for (int lb = 0; lb < 2; lb++) {
+                    DenseBatchDoubleMatrix2D A = random(SIZE, n, n, layouts[la]);
+                    DenseBatchDoubleMatrix2D B = random(SIZE, n, n, layouts[lb]);
+                    DenseBatchDoubleMatrix2D C = A.zMult(B, null);
+                    for (int k = 0; k < SIZE; k++) {
+                        assertEquals(A.viewMatrix(k).zMult(B.viewMatrix(k), null), C.viewMatrix(k));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testZMultTranspose() {
+        boolean[] layouts = { false, true };
+        for (int l = 0; l < 2; l++) {
+            DenseBatchDoubleMatrix2D A = random(SIZE, 4, 3, layouts[l]);
+            DenseBatchDoubleMatrix2D B = random(SIZE, 5, 4, layouts[l]);
+            DenseBatchDoubleMatrix2D C = random(SIZE, 3, 5, layouts[l]);
+            DenseBatchDoubleMatrix2D Ccopy = C.copy();
+            A.zMult(B, C, 2, -0.5, true, true);
+            for (int k = 0; k < SIZE; k++) {
+                DoubleMatrix2D expected = Ccopy.viewMatrix(k).copy();
+                A.viewMatrix(k).zMult(B.viewMatrix(k), expected, 2, -0.5, true, true);
+                assertEquals(expected, C.viewMatrix(k));
+            }
+        }
+        try {
+            random(SIZE, 4, 3, false).zMult(random(SIZE, 4, 3, false), null);
+            fail();
+        } catch (IllegalArgumentException exc) {
+        }
+    }
+
+    public void testDetInverse() {
+        DenseDoubleAlgebra alg = new DenseDoubleAlgebra(TOL);
+        for (int o = 0; o < ORDERS.length; o++) {
+            int n = ORDERS[o];
+            for (int l = 0; l < 2; l++) {
+                DenseBatchDoubleMatrix2D A = random(SIZE, n, n, l == 1);
+                double[] det = A.det();
+                DenseBatchDoubleMatrix2D X = A.inverse();
+                for (int k = 0; k < SIZE; k++) {
+                    assertEquals(alg.det(A.viewMatrix(k)), det[k], TOL);
+                    assertEquals(alg.inverse(A.viewMatrix(k)), X.viewMatrix(k));
+                }
+            }
+        }
+        DenseBatchDoubleMatrix2D S = random(SIZE, 3, 3, false);
+        S.viewMatrix(5).viewRow(2).assign(S.viewMatrix(5).viewRow(0));
+        assertEquals(0, S.det()[5], TOL);
+        try {
+            S.viewMatrix(5).viewRow(2).assign(0);
+            S.inverse();
+            fail();
+        } catch (IllegalArgumentException exc) {
+        }
+    }
+
+    public void testSolve() {
+        for (int o = 0; o < ORDERS.length; o++) {
+            int n = ORDERS[o];
+            for (int l = 0; l < 2; l++) {
+                DenseBatchDoubleMatrix2D A = random(SIZE, n, n, l == 1);
+                DenseBatchDoubleMatrix2D B = random(SIZE, n, 2, l == 0);
+                DenseBatchDoubleMatrix2D Acopy = A.copy();
+                DenseBatchDoubleMatrix2D X = A.solve(B);
+                assertEquals(B.isInterleaved(), X.isInterleaved());
+                assertTrue(java.util.Arrays.equals(Acopy.elements(), A.elements()));
+                for (int k = 0; k < SIZE; k++) {
+                    assertEquals(B.viewMatrix(k), A.viewMatrix(k).zMult(X.viewMatrix(k), null));
+                }
+            }
+        }
+    }
+
+    public void testSolveCholesky() {
+        for (int o = 0; o < ORDERS.length; o++) {
+            int n = ORDERS[o];
+            DenseBatchDoubleMatrix2D R = random(SIZE, n, n, true);
+            DenseBatchDoubleMatrix2D A = R.zMult(R, null, 1, 0, false, true);
+            for (int k = 0; k < SIZE; k++) {
+                for (int i = 0; i < n; i++) {
+                    A.setQuick(k, i, i, A.getQuick(k, i, i) + n);
+                }
+            }
+            DenseBatchDoubleMatrix2D B = random(SIZE, n, 3, false);
+            DenseBatchDoubleMatrix2D X = A.solveCholesky(B);
+            for (int k = 0; k < SIZE; k++) {
+                assertEquals(B.viewMatrix(k), A.viewMatrix(k).zMult(X.viewMatrix(k), null));
+            }
+        }
+        DenseBatchDoubleMatrix2D A = random(SIZE, 3, 3, false);
+        A.viewMatrix(7).assign(0).setQuick(0, 0, -1);
+        try {
+            A.solveCholesky(random(SIZE, 3, 1, false));
+            fail();
+        } catch (IllegalArgumentException exc) {
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+
+    private DenseBatchDoubleMatrix2D random(int size, int rows, int columns, boolean interleaved) {
+        DenseBatchDoubleMatrix2D A = new DenseBatchDoubleMatrix2D(size, rows, columns, interleaved);
+        for (int k = 0; k < size; k++) {
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    A.setQuick(k, r, c, random.nextDouble() - 0.5 + (r == c ? 2 : 0));
+                }
+            }
+        }
+        return A;
+    }
+}
@@ -4,6 +4,7 @@ import cern.colt.matrix.tdcomplex.DComplexMatrix2D;
 import cern.colt.matrix.tdcomplex.impl.DenseDComplexMatrix2D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.DoubleMatrix2DTest;
+import cern.jet.math.tdouble.DoubleFunctions;
 
 public class DenseColumnDoubleMatrix2DTest extends DoubleMatrix2DTest {
 
@@ -227,4 +228,70 @@ public class DenseColumnDoubleMatrix2DTest extends DoubleMatrix2DTest {
         }
     }
 
+    public void testTranspose() {
+        // square, rectangular and larger than one block of the recursion
+        int[][] shapes = { { 40, 40 }, { 70, 45 }, { 1, 9 }, { 0, 5 } };
+        for (int k = 0; k < shapes.length; k++) {
+            DenseColumnDoubleMatrix2D M = new DenseColumnDoubleMatrix2D(shapes[k][0], shapes[k][1]);
+            for (int r = 0; r < M.rows(); r++) {
+                for (int c = 0; c < M.columns(); c++) {
+                    M.setQuick(r, c, random.nextDouble());
+                }
+            }
+            DoubleMatrix2D expected = M.viewDice().copy();
+            assertSame(M, M.transpose());
+            assertEquals(expected.rows(), M.rows());
+            assertEquals(expected.columns(), M.columns());
+            assertTrue(expected.equals(M));
+        }
+        DenseColumnDoubleMatrix2D M = new DenseColumnDoubleMatrix2D(50, 60);
+        M.assign(DoubleFunctions.random());
+        DoubleMatrix2D view = M.viewPart(3, 5, 37, 37);
+        DoubleMatrix2D Mcopy = M.copy();
+        ((DenseColumnDoubleMatrix2D) view).transpose();
+        for (int r = 0; r < M.rows(); r++) {
+            for (int c = 0; c < M.columns(); c++) {
+                boolean inView = r >= 3 && r < 40 && c >= 5 && c < 42;
+                double expected = inView ? Mcopy.getQuick(3 + c - 5, 5 + r - 3) : Mcopy.getQuick(r, c);
+                assertEquals(expected, M.getQuick(r, c), 0);
+            }
+        }
+        try {
+            ((DenseColumnDoubleMatrix2D) M.viewPart(0, 0, 2, 3)).transpose();
+            fail();
+        } catch (IllegalArgumentException exc) {
+        }
+    }
+
+    public void testRowMajor() {
+        DenseColumnDoubleMatrix2D M = new DenseColumnDoubleMatrix2D(70, 45);
+        for (int r = 0; r < M.rows(); r++) {
+            for (int c = 0; c < M.columns(); c++) {
+                M.setQuick(r, c, random.nextDouble());
+            }
+        }
+        DoubleMatrix2D R = M.getRowMajor();
+        assertTrue(R instanceof DenseDoubleMatrix2D);
+        assertTrue(M.equals(R));
+        R = ((DenseColumnDoubleMatrix2D) M.viewDice()).getRowMajor();
+        assertTrue(M.viewDice().equals(R));
+    }
+
+    public void testAssignDiced() {
+        DoubleMatrix2D M = new DenseColumnDoubleMatrix2D(70, 45);
+        for (int r = 0; r < M.rows(); r++) {
+            for (int c = 0; c < M.columns(); c++) {
+                M.setQuick(r, c, random.nextDouble());
+            }
+        }
+        DoubleMatrix2D diced = M.viewDice().viewRowFlip();
+        assertTrue(diced.equals(diced.copy()));
+        assertTrue(diced.equals(new DenseDoubleMatrix2D(45, 70).assign(diced)));
+        assertTrue(M.equals(new DenseColumnDoubleMatrix2D(70, 45).assign(new DenseDoubleMatrix2D(70, 45).assign(M))));
+        // overlapping source and destination
+        DoubleMatrix2D square = M.viewPart(0, 0, 45, 45);
+        DoubleMatrix2D expected = square.viewDice().copy();
+        square.assign(square.viewDice());
+        assertTrue(expected.equals(square));
+    }
 }
@@ -2,8 +2,11 @@ package cern.colt.matrix.tdouble.impl;
 
 import cern.colt.matrix.tdcomplex.DComplexMatrix2D;
 import cern.colt.matrix.tdcomplex.impl.DenseDComplexMatrix2D;
+import cern.colt.matrix.tdouble.DoubleFactory2D;
 import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.DoubleMatrix2DTest;
+import cern.jet.math.tdouble.DoubleFunctions;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
 
 public class DenseDoubleMatrix2DTest extends DoubleMatrix2DTest {
 
@@ -238,4 +241,108 @@ public class DenseDoubleMatrix2DTest extends DoubleMatrix2DTest {
         }
     }
 
+    public void testZMultBlocked() {
+        int m = 150;
+        int k = 270;
+        int n = 131;
+        double alpha = 3;
+        double beta = 5;
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        ConcurrencyUtils.setNumberOfThreads(4);
+        try {
+            for (int t = 0; t < 4; t++) {
+                boolean transposeA = (t & 1) != 0;
+                boolean transposeB = (t & 2) != 0;
+                DoubleMatrix2D AA = DoubleFactory2D.dense.random(transposeA ? k : m, transposeA ? m : k);
+                DoubleMatrix2D BB = DoubleFactory2D.dense.random(transposeB ? n : k, transposeB ? k : n);
+                DoubleMatrix2D CC = DoubleFactory2D.dense.random(m, n);
+                double[][] expected = CC.toArray();
+                for (int i = 0; i < m; i++) {
+                    for (int j = 0; j < n; j++) {
+                        double s = 0;
+                        for (int p = 0; p < k; p++) {
+                            s += (transposeA ? AA.getQuick(p, i) : AA.getQuick(i, p))
+                                    * (transposeB ? BB.getQuick(j, p) : BB.getQuick(p, j));
+                        }
+                        expected[i][j] = s * alpha + expected[i][j] * beta;
+                    }
+                }
+                AA.zMult(BB, CC, alpha, beta, transposeA, transposeB);
+                for (int i = 0; i < m; i++) {
+                    for (int j = 0; j < n; j++) {
+                        assertEquals(expected[i][j], CC.getQuick(i, j), TOL);
+                    }
+                }
+            }
+        } finally {
+            ConcurrencyUtils.setNumberOfThreads(nthreads);
+        }
+    }
+
+    public void testTranspose() {
+        // square, rectangular and larger than one block of the recursion
+        int[][] shapes = { { 40, 40 }, { 70, 45 }, { 1, 9 }, { 0, 5 } };
+        for (int k = 0; k < shapes.length; k++) {
+            DenseDoubleMatrix2D M = new DenseDoubleMatrix2D(shapes[k][0], shapes[k][1]);
+            for (int r = 0; r < M.rows(); r++) {
+                for (int c = 0; c < M.columns(); c++) {
+                    M.setQuick(r, c, random.nextDouble());
+                }
+            }
+            DoubleMatrix2D expected = M.viewDice().copy();
+            assertSame(M, M.transpose());
+            assertEquals(expected.rows(), M.rows());
+            assertEquals(expected.columns(), M.columns());
+            assertTrue(expected.equals(M));
+        }
+        DenseDoubleMatrix2D M = new DenseDoubleMatrix2D(50, 60);
+        M.assign(DoubleFunctions.random());
+        DoubleMatrix2D view = M.viewPart(3, 5, 37, 37);
+        DoubleMatrix2D Mcopy = M.copy();
+        ((DenseDoubleMatrix2D) view).transpose();
+        for (int r = 0; r < M.rows(); r++) {
+            for (int c = 0; c < M.columns(); c++) {
+                boolean inView = r >= 3 && r < 40 && c >= 5 && c < 42;
+                double expected = inView ? Mcopy.getQuick(3 + c - 5, 5 + r - 3) : Mcopy.getQuick(r, c);
+                assertEquals(expected, M.getQuick(r, c), 0);
+            }
+        }
+        try {
+            ((DenseDoubleMatrix2D) M.viewPart(0, 0, 2, 3)).transpose();
+            fail();
+        } catch (IllegalArgumentException exc) {
+        }
+    }
+
+    public void testColumnMajor() {
+        DenseDoubleMatrix2D M = new DenseDoubleMatrix2D(70, 45);
+        for (int r = 0; r < M.rows(); r++) {
+            for (int c = 0; c < M.columns(); c++) {
+                M.setQuick(r, c, random.nextDouble());
+            }
+        }
+        DoubleMatrix2D R = M.getColumnMajor();
+        assertTrue(R instanceof DenseColumnDoubleMatrix2D);
+        assertTrue(M.equals(R));
+        R = ((DenseDoubleMatrix2D) M.viewDice()).getColumnMajor();
+        assertTrue(M.viewDice().equals(R));
+    }
+
+    public void testAssignDiced() {
+        DoubleMatrix2D M = new DenseDoubleMatrix2D(70, 45);
+        for (int r = 0; r < M.rows(); r++) {
+            for (int c = 0; c < M.columns(); c++) {
+                M.setQuick(r, c, random.nextDouble());
+            }
+        }
+        DoubleMatrix2D diced = M.viewDice().viewRowFlip();
+        assertTrue(diced.equals(diced.copy()));
+        assertTrue(diced.equals(new DenseColumnDoubleMatrix2D(45, 70).assign(diced)));
+        assertTrue(M.equals(new DenseDoubleMatrix2D(70, 45).assign(new DenseColumnDoubleMatrix2D(70, 45).assign(M))));
+        // overlapping source and destination
+        DoubleMatrix2D square = M.viewPart(0, 0, 45, 45);
+        DoubleMatrix2D expected = square.viewDice().copy();
+        square.assign(square.viewDice());
+        assertTrue(expected.equals(square));
+    }
 }
@@ -0,0 +1,268 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.function.tdouble.IntIntDoubleFunction;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class FrozenSparseDoubleMatrix2DTest extends TestCase {
+
+    private static final int ROWS = 60;
+
+    private static final int COLUMNS = 45;
+
+    private DoubleMatrix2D expected;
+
+    public FrozenSparseDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest loops
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+        expected = new DenseDoubleMatrix2D(ROWS, COLUMNS);
+        Random random = new Random(0);
+        for (int k = 0; k < ROWS * COLUMNS / 5; k++) {
+            expected.setQuick(random.nextInt(ROWS), random.nextInt(COLUMNS), random.nextDouble() + 0.5);
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testSparseRC() {
+        // unsorted column indexes are sorted by freeze()
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(ROWS, COLUMNS);
+        for (int c = COLUMNS; --c >= 0;) {
+            for (int r = 0; r < ROWS; r++) {
+                if (expected.getQuick(r, c) != 0)
+                    A.setQuick(r, c, expected.getQuick(r, c));
+            }
+        }
+        assertSame(A, A.freeze());
+        assertTrue(A.hasColumnIndexesSorted());
+        assertEquals(A.getRowPointers()[ROWS], A.getColumnIndexes().length);
+        checkFrozen(A);
+        try {
+            A.removeZeroes();
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.removeDuplicates();
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        A.sortColumnIndexes();
+        A.trimToSize();
+        assertEquals(expected, A);
+    }
+
+    public void testSparseCC() {
+        SparseCCDoubleMatrix2D A = new SparseCCDoubleMatrix2D(ROWS, COLUMNS);
+        A.assign(expected);
+        assertSame(A, A.freeze());
+        assertTrue(A.hasRowIndexesSorted());
+        checkFrozen(A);
+        try {
+            A.removeZeroes();
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+    }
+
+    public void testSparse() {
+        SparseDoubleMatrix2D A = new SparseDoubleMatrix2D(ROWS, COLUMNS);
+        A.assign(expected);
+        assertSame(A, A.freeze());
+        checkFrozen(A);
+        try {
+            A.assign(new int[] { 0, 1 }, new int[] { 2, 3 }, 1, DoubleFunctions.plus);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.assign(new int[] { 0, 1 }, new int[] { 2, 3 }, new double[] { 1, 2 }, DoubleFunctions.plus);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        A.ensureCapacity(10 * ROWS * COLUMNS);
+        assertEquals(expected, A);
+    }
+
+    public void testNaN() {
+        expected.setQuick(3, 4, Double.NaN);
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(ROWS, COLUMNS);
+        A.assign(expected);
+        checkNaN(A.freeze());
+        SparseCCDoubleMatrix2D B = new SparseCCDoubleMatrix2D(ROWS, COLUMNS);
+        B.assign(expected);
+        checkNaN(B.freeze());
+        SparseDoubleMatrix2D C = new SparseDoubleMatrix2D(ROWS, COLUMNS);
+        C.assign(expected);
+        checkNaN(C.freeze());
+    }
+
+    private void checkNaN(DoubleMatrix2D A) {
+        // NaN != NaN, but returning the value unchanged is no write
+        long version = A.getVersion();
+        final int[] nans = new int[1];
+        IntIntDoubleFunction count = new IntIntDoubleFunction() {
+            public double apply(int first, int second, double third) {
+                if (Double.isNaN(third))
+                    nans[0]++;
+                return third;
+            }
+        };
+        A.forEachNonZero(count);
+        A.viewDice().forEachNonZero(count);
+        assertEquals(2, nans[0]);
+        assertTrue(Double.isNaN(A.getQuick(3, 4)));
+        assertEquals(version, A.getVersion());
+    }
+
+    private void checkFrozen(final DoubleMatrix2D A) {
+        long version = A.getVersion();
+        assertTrue(A.isFrozen());
+        assertTrue(A.viewDice().isFrozen());
+        assertTrue(A.viewPart(1, 2, 10, 10).isFrozen());
+        assertTrue(A.viewRow(1).isFrozen());
+        assertTrue(A.viewSelection(new int[] { 1, 2 }, null).viewColumn(0).isFrozen());
+        assertEquals(expected, A);
+
+        // mutators are rejected, also through views
+        try {
+            A.setQuick(0, 0, 1);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.assign(0);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.assign(DoubleFunctions.mult(2));
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.viewDice().setQuick(1, 2, 3);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.viewPart(1, 2, 10, 10).assign(1);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.viewRow(1).setQuick(1, 7);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.viewColumn(2).assign(3);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.viewColumn(2).assign(DoubleFunctions.plus(1));
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.viewSelection(new int[] { 1, 2 }, null).viewRow(0).assign(1);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        try {
+            A.forEachNonZero(new IntIntDoubleFunction() {
+                public double apply(int first, int second, double third) {
+                    return -third;
+                }
+            });
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+
+        // read-only traversal is allowed
+        final double[] sum = new double[1];
+        A.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int first, int second, double third) {
+                sum[0] += third;
+                return third;
+            }
+        });
+        assertEquals(expected.zSum(), sum[0], 1e-10);
+        assertEquals(expected, A);
+        assertEquals(version, A.getVersion());
+
+        // a frozen matrix can be multiplied, but not be the result
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(COLUMNS).assign(1);
+        DoubleMatrix1D y = A.zMult(x, null);
+        DoubleMatrix1D z = expected.zMult(x, null);
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(z.getQuick(i), y.getQuick(i), 1e-10);
+        }
+        try {
+            new DenseDoubleMatrix2D(ROWS, ROWS).zMult(A, A, 1, 0, false, false);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+
+        // concurrent readers see the cells
+        final boolean[] wrong = new boolean[1];
+        ForkJoinUtils.invoke(0, ROWS, 1, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                for (int r = first; r < last; r++) {
+                    for (int c = 0; c < COLUMNS; c++) {
+                        if (A.getQuick(r, c) != expected.getQuick(r, c))
+                            wrong[0] = true;
+                    }
+                }
+            }
+        });
+        assertFalse(wrong[0]);
+
+        // copies can be modified
+        DoubleMatrix2D B = A.copy();
+        assertFalse(B.isFrozen());
+        B.setQuick(0, 0, 7);
+        assertEquals(7, B.getQuick(0, 0), 0);
+        assertEquals(expected.getQuick(0, 0), A.getQuick(0, 0), 0);
+        assertEquals(version, A.getVersion());
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.DoubleMatrix2DTest;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+public class MappedDoubleMatrix2DTest extends DoubleMatrix2DTest {
+
+    /**
+     * Small tiles, so that the test matrices consist of several tiles,
+     * including padded ones.
+     */
+    protected static final int TILE_SIZE = 4;
+
+    private final List<MappedDoubleMatrix2D> matrices = new ArrayList<MappedDoubleMatrix2D>();
+
+    public MappedDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected MappedDoubleMatrix2D create(int rows, int columns, int tileSize) throws IOException {
+        File file = File.createTempFile("MappedDoubleMatrix2DTest", ".matrix");
+        MappedDoubleMatrix2D M = new MappedDoubleMatrix2D(file, rows, columns, tileSize);
+        matrices.add(M);
+        return M;
+    }
+
+    protected void createMatrices() throws Exception {
+        A = create(NROWS, NCOLUMNS, TILE_SIZE);
+        B = create(NROWS, NCOLUMNS, TILE_SIZE);
+        Bt = create(NCOLUMNS, NROWS, TILE_SIZE);
+    }
+
+    protected void tearDown() throws Exception {
+        for (MappedDoubleMatrix2D M : matrices) {
+            M.close();
+            M.getFile().delete();
+        }
+        matrices.clear();
+        super.tearDown();
+    }
+
+    public void testReopen() throws IOException {
+        MappedDoubleMatrix2D M = create(NROWS, NCOLUMNS, TILE_SIZE);
+        M.assign(A);
+        M.flush();
+        M.close();
+        M = new MappedDoubleMatrix2D(M.getFile(), true);
+        matrices.add(M);
+        assertEquals(NROWS, M.rows());
+        assertEquals(NCOLUMNS, M.columns());
+        assertEquals(TILE_SIZE, M.getTileSize());
+        for (int r = 0; r < NROWS; r++) {
+            for (int c = 0; c < NCOLUMNS; c++) {
+                assertEquals(A.getQuick(r, c), M.getQuick(r, c), 0);
+            }
+        }
+        try {
+            M.setQuick(0, 0, 1);
+            fail();
+        } catch (ReadOnlyBufferException e) {
+        }
+        M.close();
+        try {
+            M.zSum();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        File file = File.createTempFile("MappedDoubleMatrix2DTest", ".matrix");
+        try {
+            new MappedDoubleMatrix2D(file, true);
+            fail();
+        } catch (IOException e) {
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testZMultTiled() throws IOException {
+        int m = 70;
+        int k = 45;
+        int n = 33;
+        double alpha = 3;
+        double beta = 5;
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        ConcurrencyUtils.setNumberOfThreads(4);
+        try {
+            for (int t = 0; t < 8; t++) {
+                boolean transposeA = (t & 1) != 0;
+                boolean transposeB = (t & 2) != 0;
+                boolean tiledB = (t & 4) != 0;
+                DoubleMatrix2D Ad = DoubleFactory2D.dense.random(transposeA ? k : m, transposeA ? m : k);
+                DoubleMatrix2D Bd = DoubleFactory2D.dense.random(transposeB ? n : k, transposeB ? k : n);
+                DoubleMatrix2D Cd = DoubleFactory2D.dense.random(m, n);
+                DoubleMatrix2D AA = create(Ad.rows(), Ad.columns(), 8).assign(Ad);
+                DoubleMatrix2D BB = tiledB ? create(Bd.rows(), Bd.columns(), 8).assign(Bd) : Bd;
+                DoubleMatrix2D CC = create(m, n, 8).assign(Cd);
+                Ad.zMult(Bd, Cd, alpha, beta, transposeA, transposeB);
+                AA.zMult(BB, CC, alpha, beta, transposeA, transposeB);
+                for (int i = 0; i < m; i++) {
+                    for (int j = 0; j < n; j++) {
+                        assertEquals(Cd.getQuick(i, j), CC.getQuick(i, j), TOL);
+                    }
+                }
+                DoubleMatrix1D y = DoubleFactory2D.dense.random(1, Ad.columns()).viewRow(0);
+                DoubleMatrix1D z = AA.zMult(y, null);
+                DoubleMatrix1D expected = Ad.zMult(y, null);
+                for (int i = 0; i < Ad.rows(); i++) {
+                    assertEquals(expected.getQuick(i), z.getQuick(i), TOL);
+                }
+            }
+        } finally {
+            ConcurrencyUtils.setNumberOfThreads(nthreads);
+        }
+    }
+}
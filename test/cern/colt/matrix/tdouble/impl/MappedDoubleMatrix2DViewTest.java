@@ -0,0 +1,14 @@
+package cern.colt.matrix.tdouble.impl;
+
+public class MappedDoubleMatrix2DViewTest extends MappedDoubleMatrix2DTest {
+
+    public MappedDoubleMatrix2DViewTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrices() throws Exception {
+        A = create(NCOLUMNS, NROWS, TILE_SIZE).viewDice();
+        B = create(NCOLUMNS, NROWS, TILE_SIZE).viewDice();
+        Bt = create(NROWS, NCOLUMNS, TILE_SIZE).viewDice();
+    }
+}
@@ -0,0 +1,163 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+public class NonzeroPartitionTest extends TestCase {
+
+    private static final double TOL = 1e-10;
+
+    private final Random random = new Random(0);
+
+    public NonzeroPartitionTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testPartition() {
+        SparseRCDoubleMatrix2D A = powerLaw(100, 80);
+        int[] pointers = A.getRowPointers();
+        int nnz = pointers[100];
+        for (int parts = 1; parts <= 16; parts++) {
+            NonzeroPartition p = NonzeroPartition.get(null, pointers, 100, 0, parts);
+            assertEquals(parts, p.parts());
+            assertEquals(0, p.starts[0]);
+            assertEquals(0, p.offsets[0]);
+            assertEquals(100, p.starts[parts]);
+            assertEquals(nnz, p.offsets[parts]);
+            for (int t = 0; t < parts; t++) {
+                // every piece merges the same number of row ends and nonzeros
+                int length = p.starts[t + 1] - p.starts[t] + p.offsets[t + 1] - p.offsets[t];
+                assertTrue(Math.abs(length - (100.0 + nnz) / parts) <= 1);
+                assertTrue(p.offsets[t] >= pointers[p.starts[t]]);
+                assertTrue(p.offsets[t] <= pointers[p.starts[t] + 1]);
+            }
+        }
+    }
+
+    public void testKernels() {
+        SparseRCDoubleMatrix2D A = powerLaw(60, 50);
+        DoubleMatrix2D D = A.getDense();
+        double[] y = new double[100];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = random.nextDouble();
+        }
+        for (int parts = 1; parts <= 9; parts += 4) {
+            NonzeroPartition p = NonzeroPartition.get(null, A.getRowPointers(), 60, 0, parts);
+            double[] z = new double[121];
+            java.util.Arrays.fill(z, 1);
+            p.gather(A.getColumnIndexes(), A.getValues(), y, 0, 2, z, 1, 2, 3, 0.5);
+            for (int i = 0; i < 60; i++) {
+                double s = 0;
+                for (int j = 0; j < 50; j++) {
+                    s += D.getQuick(i, j) * y[2 * j];
+                }
+                assertEquals(3 * s + 0.5, z[1 + 2 * i], TOL);
+            }
+            z = new double[50];
+            java.util.Arrays.fill(z, Double.NaN);
+            p.scatter(A.getColumnIndexes(), A.getValues(), y, 1, 1, z, 0, 1, 50, 2, 0);
+            for (int j = 0; j < 50; j++) {
+                double s = 0;
+                for (int i = 0; i < 60; i++) {
+                    s += D.getQuick(i, j) * y[1 + i];
+                }
+                assertEquals(2 * s, z[j], TOL);
+            }
+        }
+    }
+
+    public void testScatterReusesBuffer() {
+        // a banded matrix, so that every piece only touches a few indexes
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(80, 80);
+        for (int i = 0; i < 80; i++) {
+            for (int j = Math.max(0, i - 2); j < Math.min(80, i + 3); j++) {
+                A.setQuick(i, j, random.nextDouble());
+            }
+        }
+        DoubleMatrix2D D = A.getDense();
+        double[] y = new double[80];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = random.nextDouble();
+        }
+        NonzeroPartition p = NonzeroPartition.get(null, A.getRowPointers(), 80, 0, 7);
+        for (int round = 0; round < 3; round++) {
+            double[] z = new double[80];
+            java.util.Arrays.fill(z, 1);
+            p.scatter(A.getColumnIndexes(), A.getValues(), y, 0, 1, z, 0, 1, 80, 1, round);
+            for (int j = 0; j < 80; j++) {
+                double s = 0;
+                for (int i = 0; i < 80; i++) {
+                    s += D.getQuick(i, j) * y[i];
+                }
+                assertEquals(s + round, z[j], TOL);
+            }
+        }
+    }
+
+    public void testZMult() {
+        SparseRCDoubleMatrix2D A = powerLaw(70, 40);
+        SparseCCDoubleMatrix2D C = A.getColumnCompressed();
+        DoubleMatrix2D D = A.getDense();
+        DoubleMatrix2D[] matrices = { A, C };
+        for (int m = 0; m < matrices.length; m++) {
+            for (int transpose = 0; transpose < 2; transpose++) {
+                boolean transposeA = transpose == 1;
+                int rowsA = transposeA ? 40 : 70;
+                int columnsA = transposeA ? 70 : 40;
+                DoubleMatrix1D y = new DenseDoubleMatrix1D(2 * columnsA).viewStrides(2);
+                DoubleMatrix1D z = new DenseDoubleMatrix1D(rowsA);
+                for (int i = 0; i < columnsA; i++) {
+                    y.setQuick(i, random.nextDouble());
+                }
+                for (int i = 0; i < rowsA; i++) {
+                    z.setQuick(i, random.nextDouble());
+                }
+                DoubleMatrix1D expected = D.zMult(y, z.copy(), 2, 3, transposeA);
+                matrices[m].zMult(y, z, 2, 3, transposeA);
+                for (int i = 0; i < rowsA; i++) {
+                    assertEquals(expected.getQuick(i), z.getQuick(i), TOL);
+                }
+                expected = D.zMult(y, null, 1, 0, transposeA);
+                z = matrices[m].zMult(y, null, 1, 0, transposeA);
+                for (int i = 0; i < rowsA; i++) {
+                    assertEquals(expected.getQuick(i), z.getQuick(i), TOL);
+                }
+            }
+        }
+    }
+
+    public void testCache() {
+        SparseRCDoubleMatrix2D A = powerLaw(30, 30);
+        NonzeroPartition p = NonzeroPartition.get(null, A.getRowPointers(), 30, A.getVersion(), 4);
+        assertSame(p, NonzeroPartition.get(p, A.getRowPointers(), 30, A.getVersion(), 4));
+        assertNotSame(p, NonzeroPartition.get(p, A.getRowPointers(), 30, A.getVersion(), 3));
+        A.setQuick(29, 0, A.getQuick(29, 0) + 1);
+        assertNotSame(p, NonzeroPartition.get(p, A.getRowPointers(), 30, A.getVersion(), 4));
+    }
+
+    /*
+     * A matrix with a few dense rows and many short or empty ones.
+     */
+    private SparseRCDoubleMatrix2D powerLaw(int rows, int columns) {
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(rows, columns);
+        for (int i = 0; i < rows; i++) {
+            int length = (i % 17 == 3) ? columns : random.nextInt(3);
+            for (int k = 0; k < length; k++) {
+                A.setQuick(i, length == columns ? k : random.nextInt(columns), random.nextDouble());
+            }
+        }
+        return A;
+    }
+}
@@ -0,0 +1,15 @@
+package cern.colt.matrix.tdouble.impl;
+
+import cern.colt.matrix.tdouble.DoubleMatrix1DTest;
+
+public class OffHeapDoubleMatrix1DTest extends DoubleMatrix1DTest {
+
+    public OffHeapDoubleMatrix1DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrices() throws Exception {
+        A = new OffHeapDoubleMatrix1D(SIZE);
+        B = new OffHeapDoubleMatrix1D(SIZE);
+    }
+}
@@ -0,0 +1,13 @@
+package cern.colt.matrix.tdouble.impl;
+
+public class OffHeapDoubleMatrix1DViewTest extends OffHeapDoubleMatrix1DTest {
+
+    public OffHeapDoubleMatrix1DViewTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrices() throws Exception {
+        A = new OffHeapDoubleMatrix1D(SIZE).viewFlip();
+        B = new OffHeapDoubleMatrix1D(SIZE).viewFlip();
+    }
+}
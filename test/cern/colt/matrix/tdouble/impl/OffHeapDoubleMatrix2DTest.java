@@ -0,0 +1,125 @@
+package cern.colt.matrix.tdouble.impl;
+
+import cern.colt.matrix.tdouble.DoubleFactory2D;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.DoubleMatrix2DTest;
+import cern.jet.math.tdouble.DoubleFunctions;
+import edu.emory.mathcs.utils.ConcurrencyUtils;
+
+public class OffHeapDoubleMatrix2DTest extends DoubleMatrix2DTest {
+
+    public OffHeapDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrices() throws Exception {
+        A = new OffHeapDoubleMatrix2D(NROWS, NCOLUMNS);
+        B = new OffHeapDoubleMatrix2D(NROWS, NCOLUMNS);
+        Bt = new OffHeapDoubleMatrix2D(NCOLUMNS, NROWS);
+    }
+
+    public void testClose() {
+        OffHeapDoubleMatrix2D C = new OffHeapDoubleMatrix2D(NROWS, NCOLUMNS);
+        C.assign(A);
+        assertFalse(C.isClosed());
+        assertNotSame(C.elements()[0], C.elements()[0]);
+        C.close();
+        C.close();
+        assertTrue(C.isClosed());
+        try {
+            C.assign(1);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        try {
+            C.zSum();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        try {
+            C.elements();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    public void testStorage() {
+        // buffers of 16 elements, so that bulk transfers cross buffer
+        // boundaries
+        int size = 5 * OffHeapDoubleStorage.BLOCK + 7;
+        OffHeapDoubleStorage x = new OffHeapDoubleStorage(size, 4);
+        OffHeapDoubleStorage y = new OffHeapDoubleStorage(size, 4);
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextDouble();
+            y.set(i, i);
+        }
+        x.set(0, values, 0, size);
+        x.assign(y, DoubleFunctions.plus, 1);
+        x.assign(DoubleFunctions.neg, 1);
+        double[] result = new double[size - 3];
+        x.get(3, result, 0, size - 3);
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            double expected = -(values[i] + i);
+            assertEquals(expected, x.get(i), 0);
+            if (i >= 3) {
+                assertEquals(expected, result[i - 3], 0);
+            }
+            sum += expected;
+        }
+        assertEquals(sum, x.aggregate(DoubleFunctions.plus, DoubleFunctions.identity, 1), TOL * size);
+        assertEquals(-size + 1 - values[size - 1], x.aggregate(DoubleFunctions.min, DoubleFunctions.identity, 1),
+                0);
+        x.assign(y, 1);
+        x.assign(2, Integer.MAX_VALUE);
+        assertEquals(2.0 * size, x.aggregate(DoubleFunctions.plus, DoubleFunctions.identity, 1), 0);
+        x.close();
+        y.close();
+    }
+
+    public void testZMultBlocked() {
+        int m = 700;
+        int k = 150;
+        int n = 131;
+        double alpha = 3;
+        double beta = 5;
+        int nthreads = ConcurrencyUtils.getNumberOfThreads();
+        ConcurrencyUtils.setNumberOfThreads(4);
+        try {
+            for (int t = 0; t < 2; t++) {
+                boolean transposeB = t == 1;
+                DoubleMatrix2D AA = new OffHeapDoubleMatrix2D(m, k).assign(DoubleFactory2D.dense.random(m, k));
+                DoubleMatrix2D BB = DoubleFactory2D.dense.random(transposeB ? n : k, transposeB ? k : n);
+                DoubleMatrix2D CC = new OffHeapDoubleMatrix2D(m, n).assign(DoubleFactory2D.dense.random(m, n));
+                DoubleMatrix2D expected0 = new DenseDoubleMatrix2D(m, n).assign(CC);
+                DoubleMatrix2D expected = new DenseDoubleMatrix2D(m, k).assign(AA).zMult(BB,
+                        new DenseDoubleMatrix2D(m, n).assign(CC), alpha, beta, false, transposeB);
+                AA.zMult(BB, CC, alpha, beta, false, transposeB);
+                for (int i = 0; i < m; i++) {
+                    for (int j = 0; j < n; j++) {
+                        assertEquals(expected.getQuick(i, j), CC.getQuick(i, j), TOL);
+                    }
+                }
+                DoubleMatrix1D y = DoubleFactory2D.dense.random(1, k).viewRow(0);
+                DoubleMatrix1D z = AA.zMult(y, null);
+                for (int i = 0; i < m; i++) {
+                    assertEquals(AA.viewRow(i).zDotProduct(y), z.getQuick(i), TOL);
+                }
+                // sparse results are not safe for concurrent writes
+                DoubleMatrix2D S = AA.zMult(BB, new SparseDoubleMatrix2D(m, n), alpha, 0, false, transposeB);
+                DoubleMatrix1D s = AA.zMult(y, new SparseDoubleMatrix1D(m));
+                for (int i = 0; i < m; i++) {
+                    for (int j = 0; j < n; j++) {
+                        assertEquals(expected.getQuick(i, j) - beta * expected0.getQuick(i, j), S.getQuick(i, j),
+                                TOL);
+                    }
+                    assertEquals(z.getQuick(i), s.getQuick(i), TOL);
+                }
+            }
+        } finally {
+            ConcurrencyUtils.setNumberOfThreads(nthreads);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package cern.colt.matrix.tdouble.impl;
+
+public class OffHeapDoubleMatrix2DViewTest extends OffHeapDoubleMatrix2DTest {
+
+    public OffHeapDoubleMatrix2DViewTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrices() throws Exception {
+        A = new OffHeapDoubleMatrix2D(NCOLUMNS, NROWS).viewDice();
+        B = new OffHeapDoubleMatrix2D(NCOLUMNS, NROWS).viewDice();
+        Bt = new OffHeapDoubleMatrix2D(NROWS, NCOLUMNS).viewDice();
+    }
+}
@@ -0,0 +1,15 @@
+package cern.colt.matrix.tdouble.impl;
+
+import cern.colt.matrix.tdouble.DoubleMatrix3DTest;
+
+public class OffHeapDoubleMatrix3DTest extends DoubleMatrix3DTest {
+
+    public OffHeapDoubleMatrix3DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrices() throws Exception {
+        A = new OffHeapDoubleMatrix3D(NSLICES, NROWS, NCOLUMNS);
+        B = new OffHeapDoubleMatrix3D(NSLICES, NROWS, NCOLUMNS);
+    }
+}
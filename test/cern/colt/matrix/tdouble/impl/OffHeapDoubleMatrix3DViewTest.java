@@ -0,0 +1,13 @@
+package cern.colt.matrix.tdouble.impl;
+
+public class OffHeapDoubleMatrix3DViewTest extends OffHeapDoubleMatrix3DTest {
+
+    public OffHeapDoubleMatrix3DViewTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void createMatrices() throws Exception {
+        A = new OffHeapDoubleMatrix3D(NCOLUMNS, NROWS, NSLICES).viewDice(2, 1, 0);
+        B = new OffHeapDoubleMatrix3D(NCOLUMNS, NROWS, NSLICES).viewDice(2, 1, 0);
+    }
+}
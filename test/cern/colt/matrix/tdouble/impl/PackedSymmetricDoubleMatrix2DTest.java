@@ -0,0 +1,136 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.DoubleStatistic;
+import cern.colt.matrix.tdouble.algo.SmpDoubleBlas;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class PackedSymmetricDoubleMatrix2DTest extends TestCase {
+
+    private static final double TOL = 1e-9;
+
+    private final Random random = new Random(0);
+
+    public PackedSymmetricDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ZMULT, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testSetGet() {
+        PackedSymmetricDoubleMatrix2D A = new PackedSymmetricDoubleMatrix2D(5);
+        assertEquals(15, A.elements().length);
+        A.setQuick(1, 3, 7);
+        assertEquals(7, A.getQuick(3, 1), 0);
+        assertEquals(7, A.elements()[3 * 4 / 2 + 1], 0);
+        A.assign(DoubleFunctions.plus(1));
+        assertEquals(8, A.getQuick(1, 3), 0);
+        assertEquals(1, A.getQuick(4, 4), 0);
+        DoubleMatrix2D B = new PackedSymmetricDoubleMatrix2D(5).assign(A);
+        assertEquals(A, B);
+        B.assign(A, DoubleFunctions.plus);
+        assertEquals(16, B.getQuick(3, 1), 0);
+        assertEquals(A.getQuick(2, 4), A.viewDice().getQuick(2, 4), 0);
+    }
+
+    public void testZMult1D() {
+        int[] sizes = { 1, 2, 17, 301 };
+        for (int s = 0; s < sizes.length; s++) {
+            int n = sizes[s];
+            PackedSymmetricDoubleMatrix2D A = random(n);
+            DoubleMatrix2D D = new DenseDoubleMatrix2D(n, n).assign(A);
+            DoubleMatrix1D x = randomVector(n);
+            DoubleMatrix1D y = randomVector(n);
+            DoubleMatrix1D expected = D.zMult(x, y.copy(), 2, -1, false);
+            assertEquals(expected, A.zMult(x, y.copy(), 2, -1, false));
+            assertEquals(expected, A.zMult(x, y.copy(), 2, -1, true));
+            DoubleMatrix1D z = y.copy();
+            new SmpDoubleBlas().dsymv(true, 2, A, x, -1, z);
+            assertEquals(expected, z);
+        }
+    }
+
+    public void testZMult2D() {
+        int n = 301;
+        PackedSymmetricDoubleMatrix2D A = random(n);
+        DoubleMatrix2D D = new DenseDoubleMatrix2D(n, n).assign(A);
+        DoubleMatrix2D B = new DenseDoubleMatrix2D(13, n).assign(DoubleFunctions.random());
+        DoubleMatrix2D C = new DenseColumnDoubleMatrix2D(n, 13).assign(DoubleFunctions.random());
+        DoubleMatrix2D expected = D.zMult(B, C.copy(), 1.5, 0.5, false, true);
+        assertEquals(expected, A.zMult(B, C.copy(), 1.5, 0.5, false, true));
+        // neither dense
+        DoubleMatrix2D S = new SparseDoubleMatrix2D(n, 13).assign(B.viewDice());
+        assertEquals(D.zMult(S, null), A.zMult(S, new SparseDoubleMatrix2D(n, 13)));
+    }
+
+    public void testSyrk() {
+        SmpDoubleBlas blas = new SmpDoubleBlas();
+        DoubleMatrix2D X = new DenseDoubleMatrix2D(150, 40).assign(DoubleFunctions.random());
+        DoubleMatrix2D expected = X.zMult(X, null, 2, 0, false, true);
+        PackedSymmetricDoubleMatrix2D C = new PackedSymmetricDoubleMatrix2D(150);
+        blas.dsyrk(false, 2, X, 0, C);
+        assertEquals(expected, C);
+        DoubleMatrix2D G = new DenseDoubleMatrix2D(40, 40).assign(1);
+        blas.dsyrk(true, 1, X, 3, G);
+        assertEquals(X.zMult(X, null, 1, 0, true, false).assign(DoubleFunctions.plus(3)), G);
+        PackedSymmetricDoubleMatrix2D P = (PackedSymmetricDoubleMatrix2D) new PackedSymmetricDoubleMatrix2D(40)
+                .assign(1);
+        blas.dsyrk(true, 1, X, 3, P);
+        assertEquals(G, P);
+    }
+
+    public void testCovariance() {
+        DoubleMatrix2D X = new DenseDoubleMatrix2D(60, 25).assign(DoubleFunctions.random());
+        DoubleMatrix2D expected = DoubleStatistic.covariance(X);
+        PackedSymmetricDoubleMatrix2D C = DoubleStatistic.covariancePacked(X);
+        assertEquals(25 * 26 / 2, C.elements().length);
+        assertEquals(expected, C);
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+
+    private PackedSymmetricDoubleMatrix2D random(int n) {
+        PackedSymmetricDoubleMatrix2D A = new PackedSymmetricDoubleMatrix2D(n);
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c <= r; c++) {
+                A.setQuick(r, c, random.nextDouble() - 0.5);
+            }
+        }
+        return A;
+    }
+
+    private DoubleMatrix1D randomVector(int n) {
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(n);
+        for (int i = 0; i < n; i++) {
+            x.setQuick(i, random.nextDouble() - 0.5);
+        }
+        return x;
+    }
+}
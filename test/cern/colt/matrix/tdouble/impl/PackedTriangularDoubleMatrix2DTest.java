@@ -0,0 +1,155 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.colt.matrix.tdouble.algo.SmpDoubleBlas;
+import cern.colt.matrix.tdouble.algo.decomposition.DenseDoubleCholeskyDecomposition;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class PackedTriangularDoubleMatrix2DTest extends TestCase {
+
+    private static final double TOL = 1e-8;
+
+    private final Random random = new Random(0);
+
+    public PackedTriangularDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.ZMULT, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testSetGet() {
+        PackedTriangularDoubleMatrix2D L = new PackedTriangularDoubleMatrix2D(4, false);
+        PackedTriangularDoubleMatrix2D U = new PackedTriangularDoubleMatrix2D(4, true);
+        L.setQuick(3, 1, 5);
+        L.setQuick(1, 3, 6); // ignored
+        U.setQuick(1, 3, 7);
+        U.setQuick(3, 1, 8); // ignored
+        assertEquals(5, L.getQuick(3, 1), 0);
+        assertEquals(0, L.getQuick(1, 3), 0);
+        assertEquals(7, U.getQuick(1, 3), 0);
+        assertEquals(0, U.getQuick(3, 1), 0);
+        assertEquals(5, L.elements()[3 * 4 / 2 + 1], 0);
+        assertEquals(7, U.elements()[4 + 2], 0);
+        assertEquals(U.viewDice().getQuick(3, 1), 7, 0);
+        U.assign(L.viewDice());
+        assertEquals(5, U.getQuick(1, 3), 0);
+    }
+
+    public void testZMult() {
+        int[] sizes = { 1, 3, 40, 301 };
+        for (int s = 0; s < sizes.length; s++) {
+            int n = sizes[s];
+            for (int u = 0; u < 2; u++) {
+                PackedTriangularDoubleMatrix2D A = random(n, u == 1);
+                DoubleMatrix2D D = new DenseDoubleMatrix2D(n, n).assign(A);
+                DoubleMatrix1D x = new DenseDoubleMatrix1D(n).assign(DoubleFunctions.random());
+                DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 7).assign(DoubleFunctions.random());
+                for (int t = 0; t < 2; t++) {
+                    boolean transpose = t == 1;
+                    assertEquals(D.zMult(x, null, 2, 0, transpose), A.zMult(x, null, 2, 0, transpose));
+                    DoubleMatrix2D C = new DenseDoubleMatrix2D(n, 7).assign(DoubleFunctions.random());
+                    assertEquals(D.zMult(B, C.copy(), 2, 3, transpose, false), A.zMult(B, C.copy(), 2, 3,
+                            transpose, false));
+                    assertEquals(D.zMult(B.viewDice(), null, 1, 0, transpose, true), A.zMult(B.viewDice(), null, 1,
+                            0, transpose, true));
+                }
+            }
+        }
+    }
+
+    public void testBlas() {
+        SmpDoubleBlas blas = new SmpDoubleBlas();
+        int n = 57;
+        for (int u = 0; u < 2; u++) {
+            boolean upper = u == 1;
+            PackedTriangularDoubleMatrix2D A = random(n, upper);
+            DoubleMatrix2D D = new DenseDoubleMatrix2D(n, n).assign(A);
+            for (int t = 0; t < 2; t++) {
+                boolean transpose = t == 1;
+                for (int d = 0; d < 2; d++) {
+                    boolean unit = d == 1;
+                    DoubleMatrix1D x = new DenseDoubleMatrix1D(n).assign(DoubleFunctions.random());
+                    DoubleMatrix1D expected1D = x.copy();
+                    blas.dtrmv(upper, transpose, unit, D, expected1D);
+                    DoubleMatrix1D actual1D = x.copy();
+                    blas.dtrmv(upper, transpose, unit, A, actual1D);
+                    assertEquals(expected1D, actual1D);
+
+                    DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 70).assign(DoubleFunctions.random());
+                    DoubleMatrix2D packedB = B.copy();
+                    DoubleMatrix2D denseB = B.copy();
+                    blas.dtrmm(upper, transpose, unit, 0.5, A, packedB);
+                    blas.dtrmm(upper, transpose, unit, 0.5, D, denseB);
+                    assertEquals(denseB, packedB);
+                    for (int j = 0; j < 70; j++) {
+                        DoubleMatrix1D column = B.viewColumn(j).copy();
+                        blas.dtrmv(upper, transpose, unit, D, column);
+                        assertEquals(column.assign(DoubleFunctions.mult(0.5)), packedB.viewColumn(j));
+                    }
+
+                    // solving undoes the product
+                    blas.dtrsm(upper, transpose, unit, 2, A, packedB);
+                    assertEquals(B, packedB);
+                    blas.dtrsm(upper, transpose, unit, 2, D, denseB);
+                    assertEquals(B, denseB);
+                }
+            }
+        }
+    }
+
+    public void testCholesky() {
+        int n = 30;
+        DoubleMatrix2D R = new DenseDoubleMatrix2D(n, n).assign(DoubleFunctions.random());
+        DoubleMatrix2D S = R.zMult(R, null, 1, 0, false, true);
+        for (int i = 0; i < n; i++) {
+            S.setQuick(i, i, S.getQuick(i, i) + n);
+        }
+        DenseDoubleCholeskyDecomposition chol = new DenseDoubleCholeskyDecomposition(S);
+        PackedTriangularDoubleMatrix2D L = chol.getLPacked();
+        assertFalse(L.isUpperTriangular());
+        assertEquals(chol.getL(), L);
+        DoubleMatrix2D B = new DenseDoubleMatrix2D(n, 3).assign(DoubleFunctions.random());
+        DoubleMatrix2D X = L.solve(true, false, L.solve(false, false, B.copy()));
+        assertEquals(B, S.zMult(X, null));
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+
+    private PackedTriangularDoubleMatrix2D random(int n, boolean upper) {
+        PackedTriangularDoubleMatrix2D A = new PackedTriangularDoubleMatrix2D(n, upper);
+        for (int r = 0; r < n; r++) {
+            for (int c = 0; c < n; c++) {
+                // well conditioned for the solves
+                A.setQuick(r, c, (r == c) ? 1 + random.nextDouble() : (random.nextDouble() - 0.5) / n);
+            }
+        }
+        return A;
+    }
+}
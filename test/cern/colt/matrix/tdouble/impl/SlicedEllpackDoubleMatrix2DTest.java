@@ -0,0 +1,143 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+public class SlicedEllpackDoubleMatrix2DTest extends TestCase {
+
+    private static final double TOL = 1e-10;
+
+    private final Random random = new Random(0);
+
+    public SlicedEllpackDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testConversion() {
+        int[][] shapes = { { 1, 1 }, { 7, 5 }, { 40, 33 }, { 101, 120 } };
+        int[][] parameters = { { 1, 1 }, { 4, 1 }, { 4, 16 }, { 8, 256 }, { 32, 8 } };
+        for (int s = 0; s < shapes.length; s++) {
+            SparseRCDoubleMatrix2D A = random(shapes[s][0], shapes[s][1]);
+            for (int p = 0; p < parameters.length; p++) {
+                SlicedEllpackDoubleMatrix2D S = new SlicedEllpackDoubleMatrix2D(A, parameters[p][0],
+                        parameters[p][1]);
+                assertEquals(parameters[p][0], S.getChunkHeight());
+                assertEquals(parameters[p][1], S.getSortingScope());
+                assertEquals(A.cardinality(), S.cardinality());
+                assertEquals(A, S);
+                assertEquals(A, S.getRowCompressed());
+                assertEquals(A, new SparseRCDoubleMatrix2D(A.rows(), A.columns()).assign(S));
+            }
+        }
+        try {
+            new SlicedEllpackDoubleMatrix2D(random(3, 3), 0, 1);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    public void testSetGet() {
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(5, 4);
+        A.setQuick(3, 1, 5);
+        A.setQuick(1, 2, 6);
+        SlicedEllpackDoubleMatrix2D S = new SlicedEllpackDoubleMatrix2D(A, 2, 4);
+        S.setQuick(3, 1, 7);
+        S.setQuick(4, 1, 8); // ignored
+        assertEquals(7, S.getQuick(3, 1), 0);
+        assertEquals(0, S.getQuick(4, 1), 0);
+        assertEquals(6, S.viewDice().getQuick(2, 1), 0);
+        DoubleMatrix2D B = S.copy();
+        assertTrue(B instanceof SlicedEllpackDoubleMatrix2D);
+        S.setQuick(3, 1, 0);
+        assertEquals(7, B.getQuick(3, 1), 0);
+        B.assign(cern.jet.math.tdouble.DoubleFunctions.mult(2));
+        assertEquals(14, B.getQuick(3, 1), 0);
+        assertEquals(12, B.getQuick(1, 2), 0);
+        assertEquals(0, B.getQuick(0, 0), 0);
+        B.assign(1);
+        assertEquals(2, B.zSum(), 0);
+    }
+
+    public void testZMult() {
+        int[][] shapes = { { 1, 1 }, { 9, 13 }, { 64, 64 }, { 203, 150 } };
+        for (int s = 0; s < shapes.length; s++) {
+            SparseRCDoubleMatrix2D A = random(shapes[s][0], shapes[s][1]);
+            SlicedEllpackDoubleMatrix2D S = new SlicedEllpackDoubleMatrix2D(A, 4, 32);
+            for (int t = 0; t < 2; t++) {
+                boolean transposeA = t == 1;
+                int rowsA = transposeA ? A.columns() : A.rows();
+                int columnsA = transposeA ? A.rows() : A.columns();
+                DoubleMatrix1D y = new DenseDoubleMatrix1D(2 * columnsA).viewStrides(2);
+                for (int i = 0; i < columnsA; i++) {
+                    y.setQuick(i, random.nextDouble());
+                }
+                DoubleMatrix1D z = new DenseDoubleMatrix1D(rowsA);
+                for (int i = 0; i < rowsA; i++) {
+                    z.setQuick(i, random.nextDouble());
+                }
+                assertEquals(A.zMult(y, z.copy(), 2, 3, transposeA), S.zMult(y, z.copy(), 2, 3, transposeA));
+                assertEquals(A.zMult(y, null, 1, 0, transposeA), S.zMult(y, null, 1, 0, transposeA));
+                // sparse operands
+                DoubleMatrix1D sy = new SparseDoubleMatrix1D(columnsA).assign(y);
+                DoubleMatrix1D sz = new SparseDoubleMatrix1D(rowsA).assign(z);
+                assertEquals(A.zMult(y, z.copy(), -1, 0.5, transposeA), S.zMult(sy, sz, -1, 0.5, transposeA));
+            }
+        }
+    }
+
+    public void testEmptyRows() {
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(6, 3);
+        A.setQuick(0, 2, 1);
+        A.setQuick(0, 1, 2);
+        A.setQuick(4, 2, 3);
+        SlicedEllpackDoubleMatrix2D S = new SlicedEllpackDoubleMatrix2D(A, 4, 1);
+        DoubleMatrix1D y = new DenseDoubleMatrix1D(new double[] { Double.NaN, 1, 1 });
+        DoubleMatrix1D z = S.zMult(y, null);
+        assertEquals(3, z.getQuick(0), 0);
+        assertEquals(0, z.getQuick(1), 0);
+        assertEquals(3, z.getQuick(4), 0);
+    }
+
+    private SparseRCDoubleMatrix2D random(int rows, int columns) {
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(rows, columns);
+        for (int r = 0; r < rows; r++) {
+            // row lengths of very different sizes, some rows empty
+            int length = random.nextInt(4) == 0 ? 0 : random.nextInt(1 + columns / (1 + random.nextInt(8)));
+            for (int k = 0; k < length; k++) {
+                A.setQuick(r, random.nextInt(columns), random.nextDouble() - 0.5);
+            }
+        }
+        return A;
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), 0);
+            }
+        }
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+}
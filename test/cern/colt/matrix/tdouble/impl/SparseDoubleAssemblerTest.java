@@ -0,0 +1,165 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.ForkJoinUtils;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+
+public class SparseDoubleAssemblerTest extends TestCase {
+
+    private static final double TOL = 1e-12;
+
+    public SparseDoubleAssemblerTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest assemblies
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testAssemble() {
+        int[][] shapes = { { 0, 0 }, { 1, 1 }, { 7, 5 }, { 60, 80 }, { 300, 2 } };
+        Random random = new Random(0);
+        for (int s = 0; s < shapes.length; s++) {
+            int rows = shapes[s][0];
+            int columns = shapes[s][1];
+            SparseDoubleAssembler assembler = new SparseDoubleAssembler(rows, columns);
+            DoubleMatrix2D expected = new DenseDoubleMatrix2D(rows, columns);
+            int n = rows * columns == 0 ? 0 : 4 * rows * columns / 3;
+            for (int k = 0; k < n; k++) {
+                int r = random.nextInt(rows);
+                int c = random.nextInt(columns);
+                double value = random.nextInt(5) == 0 ? 0 : random.nextDouble() - 0.5;
+                assembler.add(r, c, value);
+                expected.setQuick(r, c, expected.getQuick(r, c) + value);
+            }
+            assertEquals(n, assembler.size());
+            SparseRCDoubleMatrix2D R = assembler.getRowCompressed();
+            assertTrue(R.hasColumnIndexesSorted());
+            assertSorted(R.getRowPointers(), R.getColumnIndexes());
+            assertEquals(expected, R);
+            SparseCCDoubleMatrix2D C = assembler.getColumnCompressed();
+            assertTrue(C.hasRowIndexesSorted());
+            assertSorted(C.getColumnPointers(), C.getRowIndexes());
+            assertEquals(expected, C);
+            if (n > 0) {
+                // the assembled matrices do not share the buffers
+                assembler.add(0, 0, 1);
+                assertEquals(expected.getQuick(0, 0), R.getQuick(0, 0), TOL);
+                assertEquals(expected.getQuick(0, 0) + 1, assembler.getRowCompressed().getQuick(0, 0), TOL);
+            }
+        }
+    }
+
+    public void testConcurrentAssembly() {
+        // a 1-d mesh of two-node elements, with 2 unknowns per node
+        final int elements = 300;
+        final int n = 2 * (elements + 1);
+        final SparseDoubleAssembler assembler = new SparseDoubleAssembler(n, n);
+        ForkJoinUtils.invoke(0, elements, 16, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                for (int e = first; e < last; e++) {
+                    int[] dofs = { 2 * e, 2 * e + 1, 2 * e + 2, 2 * e + 3 };
+                    assembler.add(dofs, dofs, element(e));
+                }
+            }
+        });
+        DoubleMatrix2D expected = new DenseDoubleMatrix2D(n, n);
+        for (int e = 0; e < elements; e++) {
+            double[][] Ke = element(e);
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    expected.setQuick(2 * e + i, 2 * e + j, expected.getQuick(2 * e + i, 2 * e + j) + Ke[i][j]);
+                }
+            }
+        }
+        assertEquals(16L * elements, assembler.size());
+        SparseRCDoubleMatrix2D R = assembler.getRowCompressed();
+        assertEquals(16 + 6 * (n - 4), R.getRowPointers()[n]);
+        assertEquals(expected, R);
+        assertEquals(expected, assembler.getColumnCompressed());
+
+        // more elements can be added, or all removed
+        assembler.add(0, n - 1, 1);
+        expected.setQuick(0, n - 1, 1);
+        assertEquals(expected, assembler.getRowCompressed());
+        assembler.clear();
+        assertEquals(0, assembler.size());
+        assertEquals(0, assembler.getRowCompressed().cardinality());
+        assembler.add(1, 2, 3);
+        assertEquals(3, assembler.getColumnCompressed().getQuick(1, 2), 0);
+
+        // the pool threads that added elements before get new buffers
+        assembler.clear();
+        ForkJoinUtils.invoke(0, elements, 16, new ForkJoinUtils.RangeProcedure() {
+            public void apply(int first, int last) {
+                for (int e = first; e < last; e++) {
+                    int[] dofs = { 2 * e, 2 * e + 1, 2 * e + 2, 2 * e + 3 };
+                    assembler.add(dofs, dofs, element(e));
+                }
+            }
+        });
+        expected.setQuick(0, n - 1, 0);
+        assertEquals(16L * elements, assembler.size());
+        assertEquals(expected, assembler.getRowCompressed());
+    }
+
+    public void testInvalid() {
+        SparseDoubleAssembler assembler = new SparseDoubleAssembler(3, 4);
+        try {
+            assembler.add(3, 0, 1);
+            fail();
+        } catch (IndexOutOfBoundsException exc) {
+            // expected
+        }
+        try {
+            assembler.add(new int[] { 0, 1 }, new int[] { 4 }, new double[][] { { 1 }, { 2 } });
+            fail();
+        } catch (IndexOutOfBoundsException exc) {
+            // expected
+        }
+        try {
+            assembler.add(new int[] { 0, 1 }, new int[] { 0 }, new double[][] { { 1 } });
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+        assertEquals(0, assembler.size());
+        try {
+            new SparseDoubleAssembler(-1, 2);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    private static double[][] element(int e) {
+        double k = 1 + e % 7;
+        return new double[][] { { 2 * k, 1, -k, 0 }, { 1, 2 * k, 0, -k }, { -k, 0, 2 * k, 1 }, { 0, -k, 1, 2 * k } };
+    }
+
+    private void assertSorted(int[] pointers, int[] indexes) {
+        for (int m = 0; m + 1 < pointers.length; m++) {
+            for (int k = pointers[m] + 1; k < pointers[m + 1]; k++) {
+                assertTrue(indexes[k - 1] < indexes[k]);
+            }
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cern.colt.matrix.tdouble.impl;
 
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
 import cern.colt.matrix.tdouble.DoubleMatrix2DTest;
 
 public class SparseRCDoubleMatrix2DTest extends DoubleMatrix2DTest {
@@ -14,6 +15,67 @@ public class SparseRCDoubleMatrix2DTest extends DoubleMatrix2DTest {
         Bt = new SparseRCDoubleMatrix2D(NCOLUMNS, NROWS);
     }
 
+    public void testZMultSparse() {
+        SparseRCDoubleMatrix2D S = randomSparse(40, 30);
+        SparseRCDoubleMatrix2D T = randomSparse(30, 50);
+        DoubleMatrix2D expected = S.getDense().zMult(T.getDense(), null, 2, 0, false, false);
+        SparseRCDoubleMatrix2D R = S.zMultSparse(T, null, 2, false, false);
+        assertTrue(R.hasColumnIndexesSorted());
+        assertEquals(expected, R);
+        R = S.getTranspose().zMultSparse(T.getTranspose(), null, 2, true, true);
+        assertEquals(expected, R);
+
+        // only the entries in the structure of the mask are computed
+        SparseRCDoubleMatrix2D M = randomSparse(40, 50);
+        R = S.zMultSparse(T, M, 2, false, false);
+        assertTrue(R.cardinality() <= M.cardinality());
+        for (int r = 0; r < 40; r++) {
+            for (int c = 0; c < 50; c++) {
+                assertEquals(M.getQuick(r, c) != 0 ? expected.getQuick(r, c) : 0, R.getQuick(r, c), TOL);
+            }
+        }
+        try {
+            S.zMultSparse(S, null, 1, false, false);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    public void testZMultSparseResult() {
+        SparseRCDoubleMatrix2D S = randomSparse(40, 30);
+        SparseRCDoubleMatrix2D T = randomSparse(30, 50);
+        SparseRCDoubleMatrix2D C = randomSparse(40, 50);
+        DoubleMatrix2D expected = S.getDense().zMult(T.getDense(), C.getDense(), 2, 3, false, false);
+        assertSame(C, S.zMult(T, C, 2, 3, false, false));
+        assertEquals(expected, C);
+        DoubleMatrix2D R = S.zMult(T.getTranspose(), null, 2, 0, false, true);
+        assertTrue(R instanceof SparseRCDoubleMatrix2D);
+        assertEquals(S.getDense().zMult(T.getDense(), null, 2, 0, false, false), R);
+    }
+
+    private SparseRCDoubleMatrix2D randomSparse(int rows, int columns) {
+        SparseRCDoubleMatrix2D S = new SparseRCDoubleMatrix2D(rows, columns);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                if (random.nextDouble() < 0.1) {
+                    S.setQuick(r, c, random.nextDouble());
+                }
+            }
+        }
+        return S;
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), TOL);
+            }
+        }
+    }
+
     //    public void testZMultDoubleMatrix2DDoubleMatrix2DDoubleDoubleBooleanBoolean() {
     //        double alpha = 2;
     //        double beta = 5;
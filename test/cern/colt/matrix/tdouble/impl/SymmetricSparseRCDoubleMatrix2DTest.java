@@ -0,0 +1,356 @@
+package cern.colt.matrix.tdouble.impl;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import cern.colt.ConcurrencyTuning;
+import cern.colt.function.tdouble.DoubleDoubleFunction;
+import cern.colt.function.tdouble.DoubleFunction;
+import cern.colt.function.tdouble.DoubleProcedure;
+import cern.colt.function.tdouble.IntIntDoubleFunction;
+import cern.colt.matrix.tdouble.DoubleMatrix1D;
+import cern.colt.matrix.tdouble.DoubleMatrix2D;
+import cern.jet.math.tdouble.DoubleFunctions;
+
+public class SymmetricSparseRCDoubleMatrix2DTest extends TestCase {
+
+    private static final double TOL = 1e-10;
+
+    private final Random random = new Random(0);
+
+    public SymmetricSparseRCDoubleMatrix2DTest(String arg0) {
+        super(arg0);
+    }
+
+    protected void setUp() throws Exception {
+        // split even the smallest products
+        ConcurrencyTuning.setThreadsBeginN(ConcurrencyTuning.SPMV, 1);
+    }
+
+    protected void tearDown() throws Exception {
+        ConcurrencyTuning.reset();
+    }
+
+    public void testConversion() {
+        int[] sizes = { 0, 1, 7, 80 };
+        for (int s = 0; s < sizes.length; s++) {
+            int n = sizes[s];
+            SparseRCDoubleMatrix2D A = random(n);
+            SymmetricSparseRCDoubleMatrix2D S = new SymmetricSparseRCDoubleMatrix2D(A);
+            assertEquals(A, S);
+            assertEquals(A.cardinality(), S.cardinality());
+            SparseRCDoubleMatrix2D U = S.getUpperTriangle();
+            assertTrue(U.hasColumnIndexesSorted());
+            assertUpper(U);
+            assertEquals(U.cardinality(), (A.cardinality() + diagonal(A)) / 2);
+
+            // from other formats, reading only the upper triangle
+            DoubleMatrix2D D = new DenseDoubleMatrix2D(n, n).assign(A);
+            for (int i = 1; i < n; i++) {
+                D.setQuick(i, i - 1, 99);
+            }
+            assertEquals(A, new SymmetricSparseRCDoubleMatrix2D(D));
+            assertEquals(A, new SymmetricSparseRCDoubleMatrix2D(new SparseRCDoubleMatrix2D(n, n).assign(
+                    new SparseCCDoubleMatrix2D(n, n).assign(A))));
+            assertEquals(A, new SymmetricSparseRCDoubleMatrix2D(n, U.getRowPointers(), U.getColumnIndexes(), U
+                    .getValues()));
+
+            // back to both triangles
+            SparseRCDoubleMatrix2D R = S.getRowCompressed();
+            assertTrue(R.hasColumnIndexesSorted());
+            assertSorted(R);
+            assertEquals(A.cardinality(), R.cardinality());
+            assertEquals(A, R);
+            R = new SparseRCDoubleMatrix2D(n, n);
+            R.assign(S);
+            assertTrue(R.hasColumnIndexesSorted());
+            assertEquals(A, R);
+        }
+
+        // unsorted column indexes
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(3, 3);
+        A.setQuick(0, 2, 3);
+        A.setQuick(0, 1, 2);
+        A.setQuick(2, 0, 3);
+        A.setQuick(1, 0, 2);
+        A.setQuick(1, 1, 1);
+        SymmetricSparseRCDoubleMatrix2D S = new SymmetricSparseRCDoubleMatrix2D(A);
+        assertEquals(A, S);
+        assertTrue(S.getUpperTriangle().hasColumnIndexesSorted());
+        assertSorted(S.getUpperTriangle());
+
+        try {
+            new SymmetricSparseRCDoubleMatrix2D(new SparseRCDoubleMatrix2D(3, 4));
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+        try {
+            // below the diagonal
+            new SymmetricSparseRCDoubleMatrix2D(2, new int[] { 0, 1, 2 }, new int[] { 0, 0 }, new double[] { 1, 2 });
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+        try {
+            new SymmetricSparseRCDoubleMatrix2D(2, new int[] { 0, 1, 2 }, new int[] { 0, 2 }, new double[] { 1, 2 });
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+
+        // rows of the upper triangle in any order
+        S = new SymmetricSparseRCDoubleMatrix2D(3, new int[] { 0, 3, 3, 4 }, new int[] { 2, 0, 1, 2 }, new double[] {
+                1, 2, 3, 4 });
+        assertEquals(3, S.getQuick(1, 0), 0);
+        assertEquals(6, S.cardinality());
+        assertSorted(S.getRowCompressed());
+        assertEquals(S, S.getRowCompressed());
+    }
+
+    public void testSetGet() {
+        SymmetricSparseRCDoubleMatrix2D S = new SymmetricSparseRCDoubleMatrix2D(4);
+        long version = S.getVersion();
+        S.setQuick(3, 1, 5);
+        S.setQuick(2, 2, 6);
+        S.setQuick(0, 3, 7);
+        assertTrue(S.getVersion() != version);
+        assertEquals(5, S.getQuick(1, 3), 0);
+        assertEquals(5, S.getQuick(3, 1), 0);
+        assertEquals(7, S.getQuick(3, 0), 0);
+        assertEquals(5, S.cardinality());
+        assertEquals(3, S.getUpperTriangle().cardinality());
+        assertEquals(5, S.viewDice().getQuick(1, 3), 0);
+        assertEquals(7, S.viewPart(2, 0, 2, 2).getQuick(1, 0), 0);
+        S.setQuick(1, 3, 0);
+        assertEquals(0, S.getQuick(3, 1), 0);
+        assertEquals(3, S.cardinality());
+
+        DoubleMatrix2D C = S.copy();
+        assertTrue(C instanceof SymmetricSparseRCDoubleMatrix2D);
+        S.setQuick(2, 2, 1);
+        assertEquals(6, C.getQuick(2, 2), 0);
+        C.assign(DoubleFunctions.mult(2));
+        assertEquals(14, C.getQuick(3, 0), 0);
+        assertEquals(12, C.getQuick(2, 2), 0);
+        C.assign(DoubleFunctions.plus(1));
+        assertEquals(1, C.getQuick(1, 2), 0);
+        assertEquals(15, C.getQuick(0, 3), 0);
+        assertEquals(16, C.cardinality());
+        C.assign(0);
+        assertEquals(0, C.cardinality());
+        C.setQuick(1, 3, 1);
+        C.setQuick(1, 1, 2);
+        C.setQuick(0, 1, 3);
+        assertSorted(((SymmetricSparseRCDoubleMatrix2D) C).getRowCompressed());
+        assertEquals(C, ((SymmetricSparseRCDoubleMatrix2D) C).getRowCompressed());
+
+        // both cells of a pair are visited, the diagonal once
+        final double[] sum = new double[1];
+        final int[] count = new int[1];
+        S.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int first, int second, double third) {
+                sum[0] += third;
+                count[0]++;
+                return 2 * third;
+            }
+        });
+        assertEquals(15, sum[0], 0);
+        assertEquals(3, count[0]);
+        assertEquals(14, S.getQuick(3, 0), 0);
+        assertEquals(2, S.getQuick(2, 2), 0);
+
+        // the upper triangle shares the version stamp
+        version = S.getVersion();
+        S.getUpperTriangle().setQuick(1, 2, 4);
+        assertTrue(S.getVersion() != version);
+        assertEquals(4, S.getQuick(2, 1), 0);
+        S.getUpperTriangle().freeze();
+        assertTrue(S.isFrozen());
+        try {
+            S.setQuick(0, 0, 1);
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+        // read-only traversal of a frozen matrix is allowed
+        version = S.getVersion();
+        sum[0] = 0;
+        S.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int first, int second, double third) {
+                sum[0] += third;
+                return third;
+            }
+        });
+        assertEquals(S.zSum(), sum[0], 0);
+        assertEquals(version, S.getVersion());
+        try {
+            S.forEachNonZero(new IntIntDoubleFunction() {
+                public double apply(int first, int second, double third) {
+                    return -third;
+                }
+            });
+            fail();
+        } catch (IllegalStateException exc) {
+            // expected
+        }
+    }
+
+    public void testAssign() {
+        int n = 40;
+        SparseRCDoubleMatrix2D A = random(n);
+        SparseRCDoubleMatrix2D B = random(n);
+        DoubleDoubleFunction[] functions = { DoubleFunctions.plus, DoubleFunctions.minus, DoubleFunctions.mult,
+                DoubleFunctions.plusMultSecond(2), new DoubleDoubleFunction() {
+                    public double apply(double x, double y) {
+                        return x + y + 1;
+                    }
+                } };
+        DoubleMatrix2D[] operands = { B, new SymmetricSparseRCDoubleMatrix2D(B), new DenseDoubleMatrix2D(n, n).assign(B) };
+        for (int f = 0; f < functions.length; f++) {
+            for (int o = 0; o < operands.length; o++) {
+                SymmetricSparseRCDoubleMatrix2D S = new SymmetricSparseRCDoubleMatrix2D(A);
+                long version = S.getVersion();
+                S.assign(operands[o], functions[f]);
+                assertTrue(S.getVersion() != version);
+                assertUpper(S.getUpperTriangle());
+                assertEquals(new DenseDoubleMatrix2D(n, n).assign(A).assign(B, functions[f]), S);
+            }
+        }
+        SymmetricSparseRCDoubleMatrix2D S = new SymmetricSparseRCDoubleMatrix2D(A);
+        S.assign(S, DoubleFunctions.plus);
+        assertEquals(new DenseDoubleMatrix2D(n, n).assign(A).assign(DoubleFunctions.mult(2)), S);
+
+        // the cells that are not stored are selected only if they change
+        DoubleProcedure[] conditions = { DoubleFunctions.isGreater(0), DoubleFunctions.isLess(0.25) };
+        DoubleFunction[] updates = { DoubleFunctions.mult(3), DoubleFunctions.plus(1) };
+        for (int c = 0; c < conditions.length; c++) {
+            for (int u = 0; u < updates.length; u++) {
+                S = new SymmetricSparseRCDoubleMatrix2D(A);
+                S.assign(conditions[c], updates[u]);
+                assertUpper(S.getUpperTriangle());
+                assertEquals(new DenseDoubleMatrix2D(n, n).assign(A).assign(conditions[c], updates[u]), S);
+            }
+        }
+
+        // NaN returned unchanged by a read-only traversal is no write
+        S = new SymmetricSparseRCDoubleMatrix2D(A);
+        S.setQuick(1, 0, Double.NaN);
+        S.getUpperTriangle().freeze();
+        long version = S.getVersion();
+        final int[] nans = new int[1];
+        S.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int first, int second, double third) {
+                if (Double.isNaN(third))
+                    nans[0]++;
+                return third;
+            }
+        });
+        assertEquals(2, nans[0]);
+        assertEquals(version, S.getVersion());
+    }
+
+    public void testZMult() {
+        int[] sizes = { 1, 2, 9, 150 };
+        for (int s = 0; s < sizes.length; s++) {
+            int n = sizes[s];
+            SparseRCDoubleMatrix2D A = random(n);
+            SymmetricSparseRCDoubleMatrix2D S = new SymmetricSparseRCDoubleMatrix2D(A);
+            for (int t = 0; t < 2; t++) {
+                boolean transposeA = t == 1;
+                DoubleMatrix1D y = new DenseDoubleMatrix1D(2 * n).viewStrides(2);
+                for (int i = 0; i < n; i++) {
+                    y.setQuick(i, random.nextDouble());
+                }
+                DoubleMatrix1D z = new DenseDoubleMatrix1D(n);
+                for (int i = 0; i < n; i++) {
+                    z.setQuick(i, random.nextDouble());
+                }
+                assertEquals(A.zMult(y, z.copy(), 2, 3, false), S.zMult(y, z.copy(), 2, 3, transposeA));
+                assertEquals(A.zMult(y, z.copy(), -1, 1, false), S.zMult(y, z.copy(), -1, 1, transposeA));
+                assertEquals(A.zMult(y, null, 1, 0, false), S.zMult(y, null, 1, 0, transposeA));
+                DoubleMatrix1D zs = new DenseDoubleMatrix1D(3 * n).viewStrides(3).assign(z);
+                assertEquals(A.zMult(y, z.copy(), 0.5, -2, false), S.zMult(y, zs, 0.5, -2, transposeA));
+                // sparse operands
+                DoubleMatrix1D sy = new SparseDoubleMatrix1D(n).assign(y);
+                DoubleMatrix1D sz = new SparseDoubleMatrix1D(n).assign(z);
+                assertEquals(A.zMult(y, z.copy(), -1, 0.5, false), S.zMult(sy, sz, -1, 0.5, transposeA));
+            }
+        }
+        try {
+            new SymmetricSparseRCDoubleMatrix2D(3).zMult(new DenseDoubleMatrix1D(4), null);
+            fail();
+        } catch (IllegalArgumentException exc) {
+            // expected
+        }
+    }
+
+    /*
+     * Returns a random symmetric matrix with some empty rows and some rows
+     * without diagonal entry.
+     */
+    private SparseRCDoubleMatrix2D random(int n) {
+        SparseRCDoubleMatrix2D A = new SparseRCDoubleMatrix2D(n, n);
+        for (int i = 0; i < n; i++) {
+            if (random.nextInt(5) == 0)
+                continue;
+            if (random.nextInt(3) > 0)
+                A.setQuick(i, i, random.nextDouble() + 1);
+            int length = random.nextInt(Math.min(6, n - i));
+            for (int k = 0; k < length; k++) {
+                int j = i + 1 + random.nextInt(n - i - 1);
+                double value = random.nextDouble() - 0.5;
+                A.setQuick(i, j, value);
+                A.setQuick(j, i, value);
+            }
+        }
+        A.sortColumnIndexes();
+        return A;
+    }
+
+    private int diagonal(DoubleMatrix2D A) {
+        int count = 0;
+        for (int i = 0; i < A.rows(); i++) {
+            if (A.getQuick(i, i) != 0)
+                count++;
+        }
+        return count;
+    }
+
+    private void assertUpper(SparseRCDoubleMatrix2D U) {
+        int[] rowPointers = U.getRowPointers();
+        int[] columnIndexes = U.getColumnIndexes();
+        for (int i = 0; i < U.rows(); i++) {
+            for (int k = rowPointers[i]; k < rowPointers[i + 1]; k++) {
+                assertTrue(columnIndexes[k] >= i);
+            }
+        }
+    }
+
+    private void assertSorted(SparseRCDoubleMatrix2D R) {
+        int[] rowPointers = R.getRowPointers();
+        int[] columnIndexes = R.getColumnIndexes();
+        for (int i = 0; i < R.rows(); i++) {
+            for (int k = rowPointers[i] + 1; k < rowPointers[i + 1]; k++) {
+                assertTrue(columnIndexes[k - 1] < columnIndexes[k]);
+            }
+        }
+    }
+
+    private void assertEquals(DoubleMatrix2D expected, DoubleMatrix2D actual) {
+        assertEquals(expected.rows(), actual.rows());
+        assertEquals(expected.columns(), actual.columns());
+        for (int r = 0; r < expected.rows(); r++) {
+            for (int c = 0; c < expected.columns(); c++) {
+                assertEquals(expected.getQuick(r, c), actual.getQuick(r, c), 0);
+            }
+        }
+    }
+
+    private void assertEquals(DoubleMatrix1D expected, DoubleMatrix1D actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getQuick(i), actual.getQuick(i), TOL);
+        }
+    }
+}